@@ -30,7 +30,7 @@ import static org.apache.flink.util.Preconditions.checkNotNull;
 public class BlockCompressionFactoryLoader {
 
 	public enum CompressionMethod {
-		LZ4, BZIP2, GZIP
+		LZ4, BZIP2, GZIP, ZSTD, SNAPPY
 	}
 
 	/**
@@ -65,6 +65,12 @@ public class BlockCompressionFactoryLoader {
 				case GZIP:
 					blockCompressionFactory = new GzipBlockCompressionFactory();
 					break;
+				case ZSTD:
+					blockCompressionFactory = new ZstdBlockCompressionFactory();
+					break;
+				case SNAPPY:
+					blockCompressionFactory = new SnappyBlockCompressionFactory();
+					break;
 				default:
 					throw new IllegalStateException("Unknown CompressionMethod " + compressionMethod);
 			}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.api.common.io.blockcompression;
+
+import net.jpountz.util.SafeUtils;
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+
+/**
+ * Decode data written with {@link SnappyBlockCompressor}.
+ * It reads from and writes to byte arrays provided from the outside, thus reducing copy time.
+ */
+public class SnappyBlockDecompressor extends AbstractBlockDecompressor {
+
+	@Override
+	public int decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) throws InsufficientBufferException, DataCorruptionException {
+		final int compressedLen = SafeUtils.readIntLE(src, srcOff);
+		final int originalLen = SafeUtils.readIntLE(src, srcOff + 4);
+		if (originalLen < 0
+			|| compressedLen < 0
+			|| (originalLen == 0 && compressedLen != 0)
+			|| (originalLen != 0 && compressedLen == 0)) {
+			throw new DataCorruptionException("Input is corrupted, invalid length.");
+		}
+
+		if (dst.length - dstOff < originalLen) {
+			throw new InsufficientBufferException("Buffer length too small");
+		}
+
+		if (src.length - srcOff - 8 < compressedLen) {
+			throw new DataCorruptionException("Source data is not integral for decompression.");
+		}
+
+		if (originalLen == 0) {
+			return 0;
+		}
+
+		try {
+			// validate the length encoded by snappy itself before writing to the output array
+			if (Snappy.uncompressedLength(src, srcOff + 8, compressedLen) != originalLen) {
+				throw new DataCorruptionException("Input is corrupted, unexpected original length.");
+			}
+
+			final int decompressedLen = Snappy.uncompress(src, srcOff + 8, compressedLen, dst, dstOff);
+			if (decompressedLen != originalLen) {
+				throw new DataCorruptionException("Input is corrupted, unexpected original length.");
+			}
+		} catch (IOException e) {
+			throw new DataCorruptionException("Input is corrupted", e);
+		}
+
+		return originalLen;
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.api.common.io.blockcompression;
+
+import org.apache.flink.configuration.BlockCompressionOptions;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.configuration.IllegalConfigurationException;
+
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Implementation of {@link BlockCompressionFactory} for Zstandard codec.
+ *
+ * <p>The compression level and an optional dictionary are read from the configuration,
+ * see {@link BlockCompressionOptions}. The digested dictionaries are shared by all compressors
+ * and decompressors created by this factory.
+ */
+public class ZstdBlockCompressionFactory implements BlockCompressionFactory {
+
+	private static final int MIN_LEVEL = 1;
+
+	private static final int MAX_LEVEL = 22;
+
+	private int level = BlockCompressionOptions.ZSTD_LEVEL.defaultValue();
+
+	private ZstdDictCompress compressDictionary;
+
+	private ZstdDictDecompress decompressDictionary;
+
+	@Override
+	public void setConfiguration(Configuration configuration) {
+		level = configuration.getInteger(BlockCompressionOptions.ZSTD_LEVEL);
+		if (level < MIN_LEVEL || level > MAX_LEVEL) {
+			throw new IllegalConfigurationException(BlockCompressionOptions.ZSTD_LEVEL.key() +
+				" should be between " + MIN_LEVEL + " and " + MAX_LEVEL + ", but is " + level + ".");
+		}
+
+		String dictionaryPath = configuration.getString(BlockCompressionOptions.ZSTD_DICTIONARY_PATH);
+		if (dictionaryPath != null) {
+			byte[] dictionary;
+			try {
+				dictionary = Files.readAllBytes(Paths.get(dictionaryPath));
+			} catch (IOException e) {
+				throw new IllegalConfigurationException("Cannot read zstd dictionary " + dictionaryPath, e);
+			}
+			compressDictionary = new ZstdDictCompress(dictionary, level);
+			decompressDictionary = new ZstdDictDecompress(dictionary);
+		} else {
+			compressDictionary = null;
+			decompressDictionary = null;
+		}
+	}
+
+	@Override
+	public AbstractBlockCompressor getCompressor() {
+		return new ZstdBlockCompressor(level, compressDictionary);
+	}
+
+	@Override
+	public AbstractBlockDecompressor getDecompressor() {
+		return new ZstdBlockDecompressor(decompressDictionary);
+	}
+}
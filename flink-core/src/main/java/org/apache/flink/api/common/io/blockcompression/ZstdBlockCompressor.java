@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.api.common.io.blockcompression;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+
+import javax.annotation.Nullable;
+
+/**
+ * Encode data into Zstandard format. The compressed data is preceded by the same 8-byte header
+ * as in {@link Lz4BlockCompressor}, i.e. the compressed length and the original length.
+ * It reads from and writes to byte arrays provided from the outside, thus reducing copy time.
+ */
+public class ZstdBlockCompressor extends AbstractBlockCompressor {
+
+	private final int level;
+
+	@Nullable
+	private final ZstdDictCompress dictionary;
+
+	public ZstdBlockCompressor(int level, @Nullable ZstdDictCompress dictionary) {
+		this.level = level;
+		this.dictionary = dictionary;
+	}
+
+	@Override
+	public int getMaxCompressedSize(int srcSize) {
+		return 8 + (int) Zstd.compressBound(srcSize);
+	}
+
+	@Override
+	public int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) throws InsufficientBufferException {
+		if (dst.length - dstOff < 8) {
+			throw new InsufficientBufferException("Buffer length too small");
+		}
+
+		long compressedLength;
+		try {
+			if (dictionary != null) {
+				compressedLength = Zstd.compressFastDict(dst, dstOff + 8, src, srcOff, srcLen, dictionary);
+			} else {
+				compressedLength = Zstd.compressByteArray(
+					dst, dstOff + 8, dst.length - dstOff - 8, src, srcOff, srcLen, level);
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new InsufficientBufferException(e);
+		}
+
+		if (Zstd.isError(compressedLength)) {
+			throw new InsufficientBufferException(Zstd.getErrorName(compressedLength));
+		}
+
+		writeIntLE((int) compressedLength, dst, dstOff);
+		writeIntLE(srcLen, dst, dstOff + 4);
+		return 8 + (int) compressedLength;
+	}
+
+	private static void writeIntLE(int i, byte[] buf, int off) {
+		buf[off++] = (byte) i;
+		buf[off++] = (byte) (i >>> 8);
+		buf[off++] = (byte) (i >>> 16);
+		buf[off++] = (byte) (i >>> 24);
+	}
+}
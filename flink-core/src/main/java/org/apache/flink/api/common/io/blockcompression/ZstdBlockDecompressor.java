@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.api.common.io.blockcompression;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictDecompress;
+import net.jpountz.util.SafeUtils;
+
+import javax.annotation.Nullable;
+
+/**
+ * Decode data written with {@link ZstdBlockCompressor}.
+ * It reads from and writes to byte arrays provided from the outside, thus reducing copy time.
+ */
+public class ZstdBlockDecompressor extends AbstractBlockDecompressor {
+
+	@Nullable
+	private final ZstdDictDecompress dictionary;
+
+	public ZstdBlockDecompressor(@Nullable ZstdDictDecompress dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	@Override
+	public int decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) throws InsufficientBufferException, DataCorruptionException {
+		final int compressedLen = SafeUtils.readIntLE(src, srcOff);
+		final int originalLen = SafeUtils.readIntLE(src, srcOff + 4);
+		if (originalLen < 0
+			|| compressedLen < 0
+			|| (originalLen == 0 && compressedLen != 0)
+			|| (originalLen != 0 && compressedLen == 0)) {
+			throw new DataCorruptionException("Input is corrupted, invalid length.");
+		}
+
+		if (dst.length - dstOff < originalLen) {
+			throw new InsufficientBufferException("Buffer length too small");
+		}
+
+		if (src.length - srcOff - 8 < compressedLen) {
+			throw new DataCorruptionException("Source data is not integral for decompression.");
+		}
+
+		if (originalLen == 0) {
+			return 0;
+		}
+
+		final long decompressedLen;
+		if (dictionary != null) {
+			decompressedLen = Zstd.decompressFastDict(dst, dstOff, src, srcOff + 8, compressedLen, dictionary);
+		} else {
+			decompressedLen = Zstd.decompressByteArray(dst, dstOff, originalLen, src, srcOff + 8, compressedLen);
+		}
+
+		if (Zstd.isError(decompressedLen)) {
+			throw new DataCorruptionException("Input is corrupted: " + Zstd.getErrorName(decompressedLen));
+		}
+		if (decompressedLen != originalLen) {
+			throw new DataCorruptionException("Input is corrupted, unexpected original length.");
+		}
+
+		return originalLen;
+	}
+}
@@ -94,6 +94,10 @@ public abstract class StateDescriptor<S extends State, T> implements Serializabl
 	@Nullable
 	private String queryableStateName;
 
+	/** The configuration of the time-to-live of the values, null if the time-to-live is disabled. */
+	@Nullable
+	private StateTtlConfig ttlConfig;
+
 	/** The default value returned by the state when no other value is bound to a key. */
 	@Nullable
 	protected transient T defaultValue;
@@ -205,6 +209,8 @@ public abstract class StateDescriptor<S extends State, T> implements Serializabl
 	 * @throws IllegalStateException If queryable state name already set
 	 */
 	public void setQueryable(String queryableStateName) {
+		Preconditions.checkArgument(!getTtlConfig().isEnabled(),
+			"Queryable state is currently not supported with TTL");
 		if (this.queryableStateName == null) {
 			this.queryableStateName = Preconditions.checkNotNull(queryableStateName, "Registration name");
 		} else {
@@ -232,6 +238,25 @@ public abstract class StateDescriptor<S extends State, T> implements Serializabl
 		return queryableStateName != null;
 	}
 
+	/**
+	 * Configures the time-to-live of the values in the state created from this descriptor.
+	 *
+	 * @param ttlConfig The configuration of the time-to-live.
+	 */
+	public void enableTimeToLive(StateTtlConfig ttlConfig) {
+		Preconditions.checkNotNull(ttlConfig);
+		Preconditions.checkArgument(queryableStateName == null,
+			"Queryable state is currently not supported with TTL");
+		this.ttlConfig = ttlConfig;
+	}
+
+	/**
+	 * Returns the configuration of the time-to-live of the values in the state.
+	 */
+	public StateTtlConfig getTtlConfig() {
+		return ttlConfig == null ? StateTtlConfig.DISABLED : ttlConfig;
+	}
+
 	/**
 	 * Creates a new {@link State} on the given {@link StateBinder}.
 	 *
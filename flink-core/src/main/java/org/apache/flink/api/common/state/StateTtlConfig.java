@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.api.common.state;
+
+import org.apache.flink.annotation.PublicEvolving;
+import org.apache.flink.api.common.time.Time;
+import org.apache.flink.util.Preconditions;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * Configuration of the time-to-live of the values in a state. The values of a state with
+ * time-to-live are stored together with the processing time of their last update, and expire
+ * once the configured time-to-live has passed since then.
+ *
+ * <p>Expired values are never returned if the state visibility is
+ * {@link StateVisibility#NeverReturnExpired}, and are removed when they are accessed. In addition,
+ * expired values can be removed when the state is snapshotted ({@link Builder#cleanupFullSnapshot()})
+ * and incrementally on updates of the state ({@link Builder#cleanupIncrementally(int)}).
+ */
+@PublicEvolving
+public class StateTtlConfig implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The configuration of states without time-to-live. */
+	public static final StateTtlConfig DISABLED =
+		newBuilder(Time.milliseconds(Long.MAX_VALUE)).setUpdateType(UpdateType.Disabled).build();
+
+	/**
+	 * This option value configures when to update the last access timestamp which prolongs
+	 * the time-to-live of the value.
+	 */
+	public enum UpdateType {
+		/** The time-to-live is disabled. */
+		Disabled,
+		/** The last access timestamp is initialised when the value is created and updated on every write. */
+		OnCreateAndWrite,
+		/** The same as {@link #OnCreateAndWrite}, but also updated on every read. */
+		OnReadAndWrite
+	}
+
+	/**
+	 * This option configures whether expired values which have not been cleaned up yet can be returned.
+	 */
+	public enum StateVisibility {
+		/** Returns the expired value if it has not been cleaned up yet. */
+		ReturnExpiredIfNotCleanedUp,
+		/** Never returns the expired value. */
+		NeverReturnExpired
+	}
+
+	/** The time-to-live of the values. */
+	private final Time ttl;
+
+	/** When the last access timestamp of the values is updated. */
+	private final UpdateType updateType;
+
+	/** Whether expired values can be returned. */
+	private final StateVisibility stateVisibility;
+
+	/** Whether expired values are skipped when the state is snapshotted. */
+	private final boolean cleanupFullSnapshot;
+
+	/** The number of entries checked for expiration on every update of the state, 0 if disabled. */
+	private final int incrementalCleanupSize;
+
+	private StateTtlConfig(
+		Time ttl,
+		UpdateType updateType,
+		StateVisibility stateVisibility,
+		boolean cleanupFullSnapshot,
+		int incrementalCleanupSize) {
+
+		this.ttl = checkNotNull(ttl);
+		this.updateType = checkNotNull(updateType);
+		this.stateVisibility = checkNotNull(stateVisibility);
+		this.cleanupFullSnapshot = cleanupFullSnapshot;
+		this.incrementalCleanupSize = incrementalCleanupSize;
+
+		Preconditions.checkArgument(ttl.toMilliseconds() > 0, "The time-to-live must be positive.");
+		Preconditions.checkArgument(incrementalCleanupSize >= 0, "The incremental cleanup size must not be negative.");
+	}
+
+	public boolean isEnabled() {
+		return updateType != UpdateType.Disabled;
+	}
+
+	public Time getTtl() {
+		return ttl;
+	}
+
+	public UpdateType getUpdateType() {
+		return updateType;
+	}
+
+	public StateVisibility getStateVisibility() {
+		return stateVisibility;
+	}
+
+	public boolean isCleanupFullSnapshot() {
+		return cleanupFullSnapshot;
+	}
+
+	public boolean isCleanupIncrementally() {
+		return incrementalCleanupSize > 0;
+	}
+
+	public int getIncrementalCleanupSize() {
+		return incrementalCleanupSize;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+
+		StateTtlConfig that = (StateTtlConfig) o;
+		return ttl.toMilliseconds() == that.ttl.toMilliseconds() &&
+			updateType == that.updateType &&
+			stateVisibility == that.stateVisibility &&
+			cleanupFullSnapshot == that.cleanupFullSnapshot &&
+			incrementalCleanupSize == that.incrementalCleanupSize;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(ttl.toMilliseconds(), updateType, stateVisibility, cleanupFullSnapshot, incrementalCleanupSize);
+	}
+
+	@Override
+	public String toString() {
+		return "StateTtlConfig{" +
+			"ttl=" + ttl +
+			", updateType=" + updateType +
+			", stateVisibility=" + stateVisibility +
+			", cleanupFullSnapshot=" + cleanupFullSnapshot +
+			", incrementalCleanupSize=" + incrementalCleanupSize +
+			'}';
+	}
+
+	/**
+	 * Creates a builder of the configuration with the given time-to-live.
+	 *
+	 * @param ttl The time-to-live of the values.
+	 */
+	public static Builder newBuilder(Time ttl) {
+		return new Builder(ttl);
+	}
+
+	/**
+	 * Builder for the {@link StateTtlConfig}.
+	 */
+	public static class Builder {
+
+		private final Time ttl;
+
+		private UpdateType updateType = UpdateType.OnCreateAndWrite;
+
+		private StateVisibility stateVisibility = StateVisibility.NeverReturnExpired;
+
+		private boolean cleanupFullSnapshot = false;
+
+		private int incrementalCleanupSize = 0;
+
+		private Builder(Time ttl) {
+			this.ttl = checkNotNull(ttl);
+		}
+
+		/**
+		 * Sets when the last access timestamp of the values is updated.
+		 *
+		 * @param updateType The update type of the last access timestamp.
+		 */
+		public Builder setUpdateType(UpdateType updateType) {
+			this.updateType = checkNotNull(updateType);
+			return this;
+		}
+
+		/**
+		 * Sets whether expired values which have not been cleaned up yet can be returned.
+		 *
+		 * @param stateVisibility The visibility of expired values.
+		 */
+		public Builder setStateVisibility(StateVisibility stateVisibility) {
+			this.stateVisibility = checkNotNull(stateVisibility);
+			return this;
+		}
+
+		/**
+		 * Skips expired values when full snapshots of the state are taken. The values remain in
+		 * the local state until they are accessed or cleaned up otherwise.
+		 */
+		public Builder cleanupFullSnapshot() {
+			this.cleanupFullSnapshot = true;
+			return this;
+		}
+
+		/**
+		 * Checks the given number of entries of the state for expiration on every update of the
+		 * state, and removes the expired ones. State backends may batch the checks of several
+		 * updates, e.g. the RocksDB state backend checks at least 1024 entries at a time.
+		 *
+		 * @param cleanupSize The number of entries checked on every update of the state.
+		 */
+		public Builder cleanupIncrementally(int cleanupSize) {
+			Preconditions.checkArgument(cleanupSize > 0, "The incremental cleanup size must be positive.");
+			this.incrementalCleanupSize = cleanupSize;
+			return this;
+		}
+
+		public StateTtlConfig build() {
+			return new StateTtlConfig(ttl, updateType, stateVisibility, cleanupFullSnapshot, incrementalCleanupSize);
+		}
+	}
+}
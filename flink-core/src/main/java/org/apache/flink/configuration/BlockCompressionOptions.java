@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.configuration;
+
+import static org.apache.flink.configuration.ConfigOptions.key;
+
+/**
+ * Configuration parameters for the block compression codecs, which are used to compress
+ * shuffle data and spilled data.
+ */
+public class BlockCompressionOptions {
+
+	public static final ConfigOption<Integer> ZSTD_LEVEL =
+		key("compression.zstd.level")
+			.defaultValue(3)
+			.withDescription("The compression level of the zstd codec, from 1 (fastest) to 22 (best ratio). " +
+				"Lower levels are recommended for network shuffle, where the compression is on the critical path.");
+
+	public static final ConfigOption<String> ZSTD_DICTIONARY_PATH =
+		key("compression.zstd.dictionary-path")
+			.noDefaultValue()
+			.withDescription("The local path of a dictionary trained with 'zstd --train' which is used by the " +
+				"zstd codec. A dictionary improves the compression ratio of small blocks significantly. " +
+				"The same dictionary must be available to both the compressing and the decompressing side.");
+}
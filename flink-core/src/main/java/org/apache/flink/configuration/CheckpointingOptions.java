@@ -67,6 +67,17 @@ public class CheckpointingOptions {
 				" complete checkpoint state. Some state backends may not support incremental checkpoints and ignore" +
 				" this option.");
 
+	/**
+	 * The implementation of the timer services of keyed stream operators.
+	 */
+	public static final ConfigOption<String> TIMER_SERVICE = ConfigOptions
+			.key("state.backend.timer-service")
+			.defaultValue("heap")
+			.withDescription("The implementation of the timer services of keyed stream operators. Supported values" +
+				" are 'heap', which keeps timers as objects on the JVM heap, 'offheap', which keeps timers in" +
+				" serialized form in off-heap memory, and 'rocksdb', which keeps timers in the RocksDB state backend" +
+				" and checkpoints them together with the keyed state.");
+
 	/**
 	 * The config parameter defining the working directories for file-based state backend.
 	 */
@@ -128,6 +139,37 @@ public class CheckpointingOptions {
 			.withDescription("The minimum size of state data files. All state chunks smaller than that are stored" +
 				" inline in the root checkpoint metadata file.");
 
+	/** The maximum number of delta files referenced by an incremental checkpoint of the heap state backend. */
+	public static final ConfigOption<Integer> FS_INCREMENTAL_MAX_DELTAS = ConfigOptions
+			.key("state.backend.fs.incremental.max-deltas")
+			.defaultValue(10)
+			.withDescription("The maximum number of delta files referenced by an incremental checkpoint of the" +
+				" file-system-based heap state backend, including the delta file written by the checkpoint itself." +
+				" Once the limit is reached, the key groups of the oldest delta files are rewritten into the new delta" +
+				" file, which bounds the number of files read on recovery.");
+
+	/** Whether the heap state backend spills cold key groups to disk when the heap runs full. */
+	public static final ConfigOption<Boolean> FS_SPILL_ENABLED = ConfigOptions
+			.key("state.backend.fs.spill.enabled")
+			.defaultValue(false)
+			.withDescription("Whether the file-system-based heap state backend spills the least recently accessed key" +
+				" groups to the local spilling directories of the TaskManager when the heap usage after garbage" +
+				" collections exceeds the high watermark. Spilled key groups are loaded back when they are accessed.");
+
+	/** The heap usage ratio above which the heap state backend spills key groups to disk. */
+	public static final ConfigOption<Float> FS_SPILL_HIGH_WATERMARK = ConfigOptions
+			.key("state.backend.fs.spill.high-watermark")
+			.defaultValue(0.8f)
+			.withDescription("The ratio of the heap used after garbage collections above which the heap state backend" +
+				" spills key groups to disk, if spilling is enabled.");
+
+	/** The heap usage ratio which the heap state backend aims for when spilling key groups to disk. */
+	public static final ConfigOption<Float> FS_SPILL_LOW_WATERMARK = ConfigOptions
+			.key("state.backend.fs.spill.low-watermark")
+			.defaultValue(0.6f)
+			.withDescription("The ratio of the used heap which the heap state backend aims for when it spills key" +
+				" groups to disk. Must not be greater than the high watermark.");
+
 	// ------------------------------------------------------------------------
 	//  Options specific to the RocksDB state backend
 	// ------------------------------------------------------------------------
@@ -138,4 +180,18 @@ public class CheckpointingOptions {
 			.noDefaultValue()
 			.withDeprecatedKeys("state.backend.rocksdb.checkpointdir")
 			.withDescription("The local directory (on the TaskManager) where RocksDB puts its files.");
+
+	/** The number of threads used to transfer the files of incremental checkpoints of RocksDB. */
+	public static final ConfigOption<Integer> ROCKSDB_CHECKPOINT_TRANSFER_THREAD_NUM = ConfigOptions
+			.key("state.backend.rocksdb.checkpoint.transfer.thread.num")
+			.defaultValue(1)
+			.withDescription("The number of threads (per stateful operator) used to upload the files of incremental" +
+				" checkpoints to, and to download them from, the checkpoint storage.");
+
+	/** The number of times the transfer of a single file of an incremental checkpoint of RocksDB is retried. */
+	public static final ConfigOption<Integer> ROCKSDB_CHECKPOINT_TRANSFER_RETRY_TIMES = ConfigOptions
+			.key("state.backend.rocksdb.checkpoint.transfer.retry-times")
+			.defaultValue(2)
+			.withDescription("The number of times the upload or the download of a single file of an incremental" +
+				" checkpoint is retried after an I/O failure, before the checkpoint or the restore fails.");
 }
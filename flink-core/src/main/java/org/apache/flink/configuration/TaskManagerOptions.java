@@ -369,6 +369,16 @@ public class TaskManagerOptions {
 			.defaultValue(200)
 			.withDescription("The maximum number of subpartitions supported by the hash writer.");
 
+	/**
+	 * The minimum number of subpartitions to use the sort-spill writer.
+	 */
+	public static final ConfigOption<Integer> TASK_MANAGER_OUTPUT_SORT_SPILL_MIN_SUBPARTITIONS =
+		key("taskmanager.output.sort-spill.min-subpartitions")
+			.defaultValue(1000)
+			.withDescription("The minimum number of subpartitions to use the sort-spill writer, which writes a single " +
+				"data file and a single index file for all the subpartitions of a result partition. Result partitions " +
+				"with fewer subpartitions use the hash writer or the merge writer.");
+
 	/**
 	 * The maximum of file handles that can be merged at one time. And if
 	 * taskmanager.output.merge.enable-async-merge is set to false, the number of
@@ -410,6 +420,31 @@ public class TaskManagerOptions {
 			.defaultValue(2000)
 			.withDescription("The maximum number of concurrent requests in the reduce-side tasks.");
 
+	/**
+	 * Whether the number of concurrent external subpartition requests is adjusted at runtime,
+	 * between {@link #TASK_EXTERNAL_SHUFFLE_ADAPTIVE_MIN_CONCURRENT_REQUESTS} and
+	 * {@link #TASK_EXTERNAL_SHUFFLE_MAX_CONCURRENT_REQUESTS}.
+	 */
+	public static final ConfigOption<Boolean> TASK_EXTERNAL_SHUFFLE_ADAPTIVE_CONCURRENT_REQUESTS_ENABLE =
+		key("task.external.shuffle.adaptive-concurrent-requests.enable")
+			.defaultValue(false)
+			.withDescription("Whether to adjust the number of concurrent requests in the reduce-side tasks according " +
+				"to the observed throughput, the available floating buffers and the latency of the shuffle service. " +
+				"The number starts at 'task.external.shuffle.adaptive-concurrent-requests.min' and never exceeds " +
+				"'task.external.shuffle.max-concurrent-requests'.");
+
+	public static final ConfigOption<Integer> TASK_EXTERNAL_SHUFFLE_ADAPTIVE_MIN_CONCURRENT_REQUESTS =
+		key("task.external.shuffle.adaptive-concurrent-requests.min")
+			.defaultValue(100)
+			.withDescription("The initial and minimum number of concurrent requests in the reduce-side tasks if the " +
+				"number is adjusted adaptively.");
+
+	public static final ConfigOption<Long> TASK_EXTERNAL_SHUFFLE_ADAPTIVE_CONCURRENT_REQUESTS_INTERVAL =
+		key("task.external.shuffle.adaptive-concurrent-requests.interval")
+			.defaultValue(1000L)
+			.withDescription("The interval in milliseconds at which the number of concurrent requests in the " +
+				"reduce-side tasks is adjusted, if it is adjusted adaptively.");
+
 	/**
 	 * Number of network buffers to use for each external input channel.
 	 *
@@ -438,7 +473,7 @@ public class TaskManagerOptions {
 		key("task.external.shuffle.compression.codec")
 			.defaultValue("lz4")
 			.withDescription("The codec to use when compress or decompress external shuffle data. " +
-				"Currently supported codecs are lz4, bzip2, gzip. User can also implement " +
+				"Currently supported codecs are lz4, bzip2, gzip, zstd, snappy. User can also implement " +
 				"interface BlockCompressionFactory and set its class to specify other codecs.");
 
 	public static final ConfigOption<Integer> TASK_EXTERNAL_SHUFFLE_COMPRESSION_BUFFER_SIZE =
@@ -446,6 +481,25 @@ public class TaskManagerOptions {
 			.defaultValue(64 * 1024)
 			.withDescription("The max buffer size to compress external shuffle data.");
 
+	public static final ConfigOption<Boolean> TASK_EXTERNAL_SHUFFLE_COMPRESSION_ADAPTIVE_ENABLE =
+		key("task.external.shuffle.compression.adaptive.enable")
+			.defaultValue(false)
+			.withDescription("Whether to stop compressing the external shuffle data of a subpartition whose compression " +
+				"ratio is below 'task.external.shuffle.compression.adaptive.min-ratio'. Such a subpartition keeps " +
+				"sampling the ratio and resumes compression once its data becomes compressible.");
+
+	public static final ConfigOption<Double> TASK_EXTERNAL_SHUFFLE_COMPRESSION_ADAPTIVE_MIN_RATIO =
+		key("task.external.shuffle.compression.adaptive.min-ratio")
+			.defaultValue(1.1)
+			.withDescription("The minimum ratio of the original size to the compressed size of a buffer for its " +
+				"subpartition to keep compressing in adaptive compression mode.");
+
+	public static final ConfigOption<Integer> TASK_EXTERNAL_SHUFFLE_COMPRESSION_ADAPTIVE_SAMPLE_INTERVAL =
+		key("task.external.shuffle.compression.adaptive.sample-interval")
+			.defaultValue(16)
+			.withDescription("In adaptive compression mode, one out of this number of buffers of a subpartition which " +
+				"stopped compressing is compressed to sample its compression ratio.");
+
 	/**
 	 * The duration to retain a partition's data after it has been fully consumed, in seconds.
 	 */
@@ -721,6 +775,26 @@ public class TaskManagerOptions {
 				" alignment buffers more than the configured amount of data, the checkpoint is aborted (skipped)." +
 				" A value of -1 indicates that there is no limit.");
 
+	public static final ConfigOption<Long> TASK_CHECKPOINT_ALIGNMENT_MEMORY_LIMIT =
+			key("task.checkpoint.alignment.max-memory-size")
+			.defaultValue(-1L)
+			.withDescription("The maximum number of bytes that a checkpoint alignment may cache in memory when" +
+				" credit-based flow control is enabled. The data buffered beyond this amount is spilled" +
+				" asynchronously to the temp directories. A value of -1 indicates that all the data is cached in memory.");
+
+	/**
+	 * Whether exactly-once checkpoints are taken without aligning the barriers. The barriers are
+	 * forwarded as soon as they arrive on the first channel, and the data received before the
+	 * barriers of the other channels is persisted as part of the checkpoint instead of being blocked.
+	 */
+	public static final ConfigOption<Boolean> TASK_CHECKPOINT_UNALIGNED =
+			key("task.checkpoint.unaligned")
+			.defaultValue(false)
+			.withDescription("Whether exactly-once checkpoints are taken without aligning the barriers. A task" +
+				" takes its snapshot as soon as the first barrier arrives and keeps consuming all inputs, while" +
+				" the data received before the barriers of the other channels is persisted as part of the" +
+				" checkpoint and replayed on restore. Such checkpoints can only be restored with unchanged parallelism.");
+
 	public static final ConfigOption<Integer> IO_MANAGER_BUFFERED_READ_SIZE =
 			key("io.manager.buffered.read.size")
 					.defaultValue(-1)
@@ -169,6 +169,18 @@ public class DataOutputSerializer implements DataOutputView {
 		this.position += len;
 	}
 
+	@Override
+	public void write(MemorySegment segment, int off, int len) throws IOException {
+		if (len < 0 || off > segment.size() - len) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		if (this.position > this.buffer.length - len) {
+			resize(len);
+		}
+		segment.get(off, this.buffer, this.position, len);
+		this.position += len;
+	}
+
 	@Override
 	public void writeBoolean(boolean v) throws IOException {
 		write(v ? 1 : 0);
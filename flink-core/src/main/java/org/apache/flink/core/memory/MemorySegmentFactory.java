@@ -74,6 +74,22 @@ public final class MemorySegmentFactory {
 		return new HybridMemorySegment(new byte[size], owner);
 	}
 
+	/**
+	 * Allocates some unpooled off-heap memory and creates a new memory segment that
+	 * represents that memory.
+	 *
+	 * <p>The memory is allocated as a direct ByteBuffer and thus counts against the
+	 * direct memory limit of the JVM ({@code -XX:MaxDirectMemorySize}).
+	 *
+	 * @param size The size of the off-heap memory segment to allocate.
+	 * @param owner The owner to associate with the off-heap memory segment.
+	 * @return A new memory segment, backed by unpooled off-heap memory.
+	 */
+	public static MemorySegment allocateUnpooledOffHeapMemory(int size, Object owner) {
+		ByteBuffer memory = ByteBuffer.allocateDirect(size);
+		return wrapPooledOffHeapMemory(memory, owner);
+	}
+
 	/**
 	 * Creates a memory segment that wraps the given byte array.
 	 *
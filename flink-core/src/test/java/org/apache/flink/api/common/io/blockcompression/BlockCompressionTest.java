@@ -18,22 +18,32 @@
 
 package org.apache.flink.api.common.io.blockcompression;
 
+import org.apache.flink.configuration.BlockCompressionOptions;
 import org.apache.flink.configuration.Configuration;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import sun.misc.Cleaner;
 import sun.nio.ch.DirectBuffer;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
 
 import static org.apache.flink.api.common.io.blockcompression.BlockCompressionFactoryLoader.CompressionMethod;
 import static org.apache.flink.api.common.io.blockcompression.BlockCompressionFactoryLoader.CompressionMethod.BZIP2;
 import static org.apache.flink.api.common.io.blockcompression.BlockCompressionFactoryLoader.CompressionMethod.GZIP;
 import static org.apache.flink.api.common.io.blockcompression.BlockCompressionFactoryLoader.CompressionMethod.LZ4;
+import static org.apache.flink.api.common.io.blockcompression.BlockCompressionFactoryLoader.CompressionMethod.SNAPPY;
+import static org.apache.flink.api.common.io.blockcompression.BlockCompressionFactoryLoader.CompressionMethod.ZSTD;
 import static org.junit.Assert.assertEquals;
 
 public class BlockCompressionTest {
 
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 	@Test
 	public void testLz4() throws IOException {
 		runArrayTest(LZ4, 32768);
@@ -67,9 +77,53 @@ public class BlockCompressionTest {
 		runByteBufferTest(GZIP, true, 16);
 	}
 
+	@Test
+	public void testZstd() throws IOException {
+		runArrayTest(ZSTD, 32768);
+		runArrayTest(ZSTD, 16);
+
+		runByteBufferTest(ZSTD, false, 32768);
+		runByteBufferTest(ZSTD, false, 16);
+		runByteBufferTest(ZSTD, true, 32768);
+		runByteBufferTest(ZSTD, true, 16);
+	}
+
+	@Test
+	public void testZstdWithLevelAndDictionary() throws IOException {
+		// any content can be used as a raw dictionary by zstd
+		byte[] dictionary = new byte[1024];
+		for (int i = 0; i < dictionary.length; i++) {
+			dictionary[i] = (byte) (i * 31);
+		}
+		File dictionaryFile = temporaryFolder.newFile();
+		Files.write(dictionaryFile.toPath(), dictionary);
+
+		Configuration configuration = new Configuration();
+		configuration.setInteger(BlockCompressionOptions.ZSTD_LEVEL, 9);
+		configuration.setString(BlockCompressionOptions.ZSTD_DICTIONARY_PATH, dictionaryFile.getAbsolutePath());
+
+		runArrayTest(ZSTD, configuration, 32768);
+		runArrayTest(ZSTD, configuration, 16);
+	}
+
+	@Test
+	public void testSnappy() throws IOException {
+		runArrayTest(SNAPPY, 32768);
+		runArrayTest(SNAPPY, 16);
+
+		runByteBufferTest(SNAPPY, false, 32768);
+		runByteBufferTest(SNAPPY, false, 16);
+		runByteBufferTest(SNAPPY, true, 32768);
+		runByteBufferTest(SNAPPY, true, 16);
+	}
+
 	private void runArrayTest(CompressionMethod method, int originalLen) throws IOException {
+		runArrayTest(method, new Configuration(), originalLen);
+	}
+
+	private void runArrayTest(CompressionMethod method, Configuration configuration, int originalLen) throws IOException {
 		BlockCompressionFactory blockCompressionFactory = BlockCompressionFactoryLoader.createBlockCompressionFactory(
-			method.name(), new Configuration());
+			method.name(), configuration);
 		AbstractBlockCompressor compressor = blockCompressionFactory.getCompressor();
 		AbstractBlockDecompressor decompressor = blockCompressionFactory.getDecompressor();
 
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.table.dataformat.vector;
+
+/**
+ * Utilities for the vectorized operators which work directly on the primitive arrays of the
+ * {@link ColumnVector}s of a {@link VectorizedColumnBatch}.
+ *
+ * <p>The columns of a batch may be dictionary encoded or wrap the vectors of a file format,
+ * the methods of this class return a plain vector with the values of the selected rows at
+ * their row ids, which is the column itself when it is already plain.
+ */
+public final class ColumnVectorUtils {
+
+	private ColumnVectorUtils() {
+	}
+
+	public static BooleanColumnVector toBooleanVector(
+			VectorizedColumnBatch batch, int colId, BooleanColumnVector reuse) {
+		ColumnVector column = batch.columns[colId];
+		if (column instanceof BooleanColumnVector && !column.hasDictionary()) {
+			return (BooleanColumnVector) column;
+		}
+
+		reuse.noNulls = true;
+		for (int j = 0; j < batch.getNumRows(); j++) {
+			int i = batch.getSelectedRowId(j);
+			if (batch.isNullAt(i, colId)) {
+				reuse.isNull[i] = true;
+				reuse.noNulls = false;
+			} else {
+				reuse.isNull[i] = false;
+				reuse.vector[i] = batch.getBoolean(i, colId);
+			}
+		}
+		return reuse;
+	}
+
+	public static IntegerColumnVector toIntVector(
+			VectorizedColumnBatch batch, int colId, IntegerColumnVector reuse) {
+		ColumnVector column = batch.columns[colId];
+		if (column instanceof IntegerColumnVector && !column.hasDictionary()) {
+			return (IntegerColumnVector) column;
+		}
+
+		reuse.noNulls = true;
+		for (int j = 0; j < batch.getNumRows(); j++) {
+			int i = batch.getSelectedRowId(j);
+			if (batch.isNullAt(i, colId)) {
+				reuse.isNull[i] = true;
+				reuse.noNulls = false;
+			} else {
+				reuse.isNull[i] = false;
+				reuse.vector[i] = batch.getInt(i, colId);
+			}
+		}
+		return reuse;
+	}
+
+	public static LongColumnVector toLongVector(
+			VectorizedColumnBatch batch, int colId, LongColumnVector reuse) {
+		ColumnVector column = batch.columns[colId];
+		if (column instanceof LongColumnVector && !column.hasDictionary()) {
+			return (LongColumnVector) column;
+		}
+
+		reuse.noNulls = true;
+		for (int j = 0; j < batch.getNumRows(); j++) {
+			int i = batch.getSelectedRowId(j);
+			if (batch.isNullAt(i, colId)) {
+				reuse.isNull[i] = true;
+				reuse.noNulls = false;
+			} else {
+				reuse.isNull[i] = false;
+				reuse.vector[i] = batch.getLong(i, colId);
+			}
+		}
+		return reuse;
+	}
+
+	public static DoubleColumnVector toDoubleVector(
+			VectorizedColumnBatch batch, int colId, DoubleColumnVector reuse) {
+		ColumnVector column = batch.columns[colId];
+		if (column instanceof DoubleColumnVector && !column.hasDictionary()) {
+			return (DoubleColumnVector) column;
+		}
+
+		reuse.noNulls = true;
+		for (int j = 0; j < batch.getNumRows(); j++) {
+			int i = batch.getSelectedRowId(j);
+			if (batch.isNullAt(i, colId)) {
+				reuse.isNull[i] = true;
+				reuse.noNulls = false;
+			} else {
+				reuse.isNull[i] = false;
+				reuse.vector[i] = batch.getDouble(i, colId);
+			}
+		}
+		return reuse;
+	}
+}
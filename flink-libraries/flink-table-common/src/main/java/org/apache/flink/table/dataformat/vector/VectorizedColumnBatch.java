@@ -50,7 +50,18 @@ public class VectorizedColumnBatch implements Serializable {
 	private final int capacity;
 	private int numRows;
 	public final ColumnVector[] columns;
-	private final boolean copyToInternal;
+
+	/**
+	 * The ids of the rows which survived the filters of the vectorized operators, only the
+	 * first {@link #getNumRows()} entries are valid. It is only used if {@link #selectedInUse}
+	 * is set, otherwise all the rows from 0 until {@link #getNumRows()} are selected.
+	 */
+	public int[] selected;
+
+	/**
+	 * Whether the {@link #selected} vector has to be used to find the rows of this batch.
+	 */
+	public boolean selectedInUse;
 
 	public static VectorizedColumnBatch allocate(InternalType[] fieldTypes) {
 		return new VectorizedColumnBatch(fieldTypes, MAX_SIZE);
@@ -69,14 +80,17 @@ public class VectorizedColumnBatch implements Serializable {
 		for (int i = 0; i < fieldTypes.length; i++) {
 			createColumn(this.columns, i, fieldTypes[i], maxRows);
 		}
-		this.copyToInternal = true;
 	}
 
+	/**
+	 * Return a batch over the given columns. The columns may either wrap the vectors of a
+	 * file format as {@link TypeGetVector}s or be plain vectors, e.g. the columns computed
+	 * by a vectorized projection, which may be mixed in one batch.
+	 */
 	public VectorizedColumnBatch(InternalType[] fieldTypes, int maxRows, ColumnVector[] columns) {
 		this.fieldTypes = fieldTypes;
 		this.capacity = maxRows;
 		this.columns = columns;
-		this.copyToInternal = false;
 	}
 
 	private void createColumn(ColumnVector[] columns, int index, InternalType fieldType, int maxRows) {
@@ -124,6 +138,7 @@ public class VectorizedColumnBatch implements Serializable {
 			column.reset();
 		}
 		this.numRows = 0;
+		this.selectedInUse = false;
 	}
 
 	public int capacity() {
@@ -142,12 +157,30 @@ public class VectorizedColumnBatch implements Serializable {
 		return columns.length;
 	}
 
+	/**
+	 * Returns the id of the i-th selected row of this batch.
+	 */
+	public int getSelectedRowId(int i) {
+		return selectedInUse ? selected[i] : i;
+	}
+
+	/**
+	 * Returns the selection vector of this batch, allocating it if necessary. The caller
+	 * is expected to fill it and to set {@link #selectedInUse} afterwards.
+	 */
+	public int[] getOrCreateSelected() {
+		if (selected == null) {
+			selected = new int[capacity];
+		}
+		return selected;
+	}
+
 	public boolean isNullAt(int rowId, int colId) {
 		return !columns[colId].noNulls && columns[colId].isNull[rowId];
 	}
 
 	public boolean getBoolean(int rowId, int colId) {
-		if (!copyToInternal) {
+		if (columns[colId] instanceof TypeGetVector) {
 			return ((TypeGetVector) columns[colId]).getBoolean(rowId);
 		}
 
@@ -161,7 +194,7 @@ public class VectorizedColumnBatch implements Serializable {
 	}
 
 	public byte getByte(int rowId, int colId) {
-		if (!copyToInternal) {
+		if (columns[colId] instanceof TypeGetVector) {
 			return ((TypeGetVector) columns[colId]).getByte(rowId);
 		}
 
@@ -175,7 +208,7 @@ public class VectorizedColumnBatch implements Serializable {
 	}
 
 	public short getShort(int rowId, int colId) {
-		if (!copyToInternal) {
+		if (columns[colId] instanceof TypeGetVector) {
 			return ((TypeGetVector) columns[colId]).getShort(rowId);
 		}
 
@@ -189,7 +222,7 @@ public class VectorizedColumnBatch implements Serializable {
 	}
 
 	public int getInt(int rowId, int colId) {
-		if (!copyToInternal) {
+		if (columns[colId] instanceof TypeGetVector) {
 			return ((TypeGetVector) columns[colId]).getInt(rowId);
 		}
 
@@ -203,7 +236,7 @@ public class VectorizedColumnBatch implements Serializable {
 	}
 
 	public long getLong(int rowId, int colId) {
-		if (!copyToInternal) {
+		if (columns[colId] instanceof TypeGetVector) {
 			return ((TypeGetVector) columns[colId]).getLong(rowId);
 		}
 
@@ -217,7 +250,7 @@ public class VectorizedColumnBatch implements Serializable {
 	}
 
 	public float getFloat(int rowId, int colId) {
-		if (!copyToInternal) {
+		if (columns[colId] instanceof TypeGetVector) {
 			return ((TypeGetVector) columns[colId]).getFloat(rowId);
 		}
 		ColumnVector columnVector = columns[colId];
@@ -230,7 +263,7 @@ public class VectorizedColumnBatch implements Serializable {
 	}
 
 	public double getDouble(int rowId, int colId) {
-		if (!copyToInternal) {
+		if (columns[colId] instanceof TypeGetVector) {
 			return ((TypeGetVector) columns[colId]).getDouble(rowId);
 		}
 
@@ -244,7 +277,7 @@ public class VectorizedColumnBatch implements Serializable {
 	}
 
 	public ByteArray getByteArray(int rowId, int colId) {
-		if (!copyToInternal) {
+		if (columns[colId] instanceof TypeGetVector) {
 			return ((TypeGetVector) columns[colId]).getByteArray(rowId);
 		}
 
@@ -294,7 +327,7 @@ public class VectorizedColumnBatch implements Serializable {
 		int precision = decimalTypeInfo.precision();
 		int scale = decimalTypeInfo.scale();
 
-		if (!copyToInternal) {
+		if (columns[colId] instanceof TypeGetVector) {
 			return ((TypeGetVector) columns[colId]).getDecimal(rowId, precision, scale);
 		}
 
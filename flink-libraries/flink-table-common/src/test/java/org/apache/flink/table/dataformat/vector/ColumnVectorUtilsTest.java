@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.table.dataformat.vector;
+
+import org.apache.flink.table.api.types.InternalType;
+import org.apache.flink.table.api.types.Types;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ColumnVectorUtils} and the selection vector of {@link VectorizedColumnBatch}.
+ */
+public class ColumnVectorUtilsTest {
+
+	@Test
+	public void testPlainColumnIsReturnedDirectly() {
+		VectorizedColumnBatch batch = VectorizedColumnBatch.allocate(
+			new InternalType[] {Types.INT, Types.LONG, Types.DOUBLE, Types.BOOLEAN});
+		batch.setNumRows(4);
+
+		assertSame(batch.columns[0], ColumnVectorUtils.toIntVector(batch, 0, new IntegerColumnVector(4)));
+		assertSame(batch.columns[1], ColumnVectorUtils.toLongVector(batch, 1, new LongColumnVector(4)));
+		assertSame(batch.columns[2], ColumnVectorUtils.toDoubleVector(batch, 2, new DoubleColumnVector(4)));
+		assertSame(batch.columns[3], ColumnVectorUtils.toBooleanVector(batch, 3, new BooleanColumnVector(4)));
+	}
+
+	@Test
+	public void testDictionaryColumnIsDecodedForSelectedRows() {
+		VectorizedColumnBatch batch = VectorizedColumnBatch.allocate(new InternalType[] {Types.LONG});
+		batch.setNumRows(2);
+		batch.selectedInUse = true;
+		batch.getOrCreateSelected()[0] = 1;
+		batch.getOrCreateSelected()[1] = 3;
+
+		ColumnVector column = batch.columns[0];
+		IntegerColumnVector ids = column.reserveDictionaryIds(VectorizedColumnBatch.MAX_SIZE);
+		ids.vector[1] = 2;
+		ids.vector[3] = 0;
+		column.setDictionary(new LongDictionary(10L, 20L, 30L));
+		column.noNulls = false;
+		column.isNull[3] = true;
+
+		LongColumnVector reuse = new LongColumnVector(VectorizedColumnBatch.MAX_SIZE);
+		LongColumnVector result = ColumnVectorUtils.toLongVector(batch, 0, reuse);
+
+		assertSame(reuse, result);
+		assertFalse(result.noNulls);
+		assertFalse(result.isNull[1]);
+		assertEquals(30L, result.vector[1]);
+		assertTrue(result.isNull[3]);
+	}
+
+	@Test
+	public void testResetClearsSelection() {
+		VectorizedColumnBatch batch = VectorizedColumnBatch.allocate(new InternalType[] {Types.INT});
+		batch.setNumRows(3);
+		int[] selected = batch.getOrCreateSelected();
+		selected[0] = 2;
+		batch.selectedInUse = true;
+		batch.setNumRows(1);
+
+		assertEquals(2, batch.getSelectedRowId(0));
+
+		batch.reset();
+		batch.setNumRows(3);
+
+		assertFalse(batch.selectedInUse);
+		assertSame(selected, batch.getOrCreateSelected());
+		assertArrayEquals(new int[] {0, 1, 2},
+			new int[] {batch.getSelectedRowId(0), batch.getSelectedRowId(1), batch.getSelectedRowId(2)});
+	}
+
+	private static class LongDictionary implements Dictionary {
+
+		private final long[] values;
+
+		LongDictionary(long... values) {
+			this.values = values;
+		}
+
+		@Override
+		public boolean decodeToBoolean(int id) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int decodeToInt(int id) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long decodeToLong(int id) {
+			return values[id];
+		}
+
+		@Override
+		public float decodeToFloat(int id) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public double decodeToDouble(int id) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public byte[] decodeToBinary(int id) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
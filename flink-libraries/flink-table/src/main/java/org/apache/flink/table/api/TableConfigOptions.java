@@ -188,7 +188,7 @@ public class TableConfigOptions {
 	public static final ConfigOption<String> SQL_EXEC_SPILL_COMPRESSION_CODEC =
 			key("sql.exec.spill.compression.codec")
 			.defaultValue("lz4")
-			.withDescription("Use that compression codec to compress spilled file. Now we support lz4, gzip, bzip2.");
+			.withDescription("Use that compression codec to compress spilled file. Now we support lz4, gzip, bzip2, zstd, snappy.");
 
 	public static final ConfigOption<Integer> SQL_EXEC_SPILL_COMPRESSION_BLOCK_SIZE =
 			key("sql.exec.spill.compression.block-size")
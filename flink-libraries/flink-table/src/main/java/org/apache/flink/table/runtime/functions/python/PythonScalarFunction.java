@@ -110,6 +110,18 @@ public class PythonScalarFunction extends ScalarFunction {
 		return returnType;
 	}
 
+	public String getFuncName() {
+		return funcName;
+	}
+
+	public String getModuleName() {
+		return moduleName;
+	}
+
+	public InternalType getReturnType() {
+		return returnType;
+	}
+
 	public String toString() {
 		return moduleName;
 	}
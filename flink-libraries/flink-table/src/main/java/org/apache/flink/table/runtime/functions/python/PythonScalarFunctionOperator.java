@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.table.runtime.functions.python;
+
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.streaming.api.operators.AbstractStreamOperator;
+import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.runtime.tasks.ProcessingTimeCallback;
+import org.apache.flink.table.api.types.InternalType;
+import org.apache.flink.table.dataformat.BaseRow;
+import org.apache.flink.table.dataformat.GenericRow;
+import org.apache.flink.table.dataformat.JoinedRow;
+import org.apache.flink.table.dataformat.TypeGetterSetters;
+import org.apache.flink.table.runtime.functions.FunctionContextImpl;
+
+import java.io.IOException;
+import java.net.Socket;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * Evaluates a {@link PythonScalarFunction} in bundles of rows with a
+ * {@link PythonScalarFunctionRunner}, and emits every input row joined with the result of the
+ * function, in the order of the input.
+ *
+ * <p>A bundle is sent once it holds the maximum number of rows or once the maximum bundle time
+ * has passed. All the bundles are finished before a checkpoint barrier or a watermark is
+ * forwarded, so the operator does not need state.
+ */
+public class PythonScalarFunctionOperator extends AbstractStreamOperator<BaseRow>
+	implements OneInputStreamOperator<BaseRow, BaseRow>, ProcessingTimeCallback {
+
+	private static final long serialVersionUID = 1L;
+
+	private final PythonScalarFunction function;
+
+	private final int[] argFields;
+
+	private final InternalType[] argTypes;
+
+	/** The serializer to copy the input rows, which are buffered until their result is available. */
+	private final TypeSerializer<BaseRow> inputSerializer;
+
+	private final int maxBundleSize;
+
+	private final long maxBundleTimeMs;
+
+	private final int maxInFlightBundles;
+
+	private transient Socket worker;
+
+	private transient PythonScalarFunctionRunner<StreamRecord<BaseRow>> runner;
+
+	private transient PythonScalarFunctionRunner.ResultConsumer<StreamRecord<BaseRow>> resultConsumer;
+
+	public PythonScalarFunctionOperator(
+		PythonScalarFunction function,
+		int[] argFields,
+		InternalType[] argTypes,
+		TypeSerializer<BaseRow> inputSerializer,
+		int maxBundleSize,
+		long maxBundleTimeMs,
+		int maxInFlightBundles) {
+
+		checkArgument(argFields.length == argTypes.length);
+		this.function = checkNotNull(function);
+		this.argFields = argFields;
+		this.argTypes = argTypes;
+		this.inputSerializer = checkNotNull(inputSerializer);
+		this.maxBundleSize = maxBundleSize;
+		this.maxBundleTimeMs = maxBundleTimeMs;
+		this.maxInFlightBundles = maxInFlightBundles;
+	}
+
+	@Override
+	public void open() throws Exception {
+		super.open();
+
+		worker = PythonUDFUtil.createWorkerSocket(new FunctionContextImpl(getRuntimeContext()));
+		runner = new PythonScalarFunctionRunner<>(
+			function.getFuncName(),
+			function.getModuleName(),
+			argTypes,
+			function.getReturnType(),
+			worker.getInputStream(),
+			worker.getOutputStream(),
+			maxBundleSize,
+			maxInFlightBundles);
+		resultConsumer = (record, result) ->
+			output.collect(record.replace(new JoinedRow(record.getValue(), GenericRow.of(result))));
+
+		getMetricGroup().gauge("pythonBundleSize", (Gauge<Integer>) runner::getLastBundleSize);
+		getMetricGroup().gauge("pythonBundleRoundTripLatency", (Gauge<Long>) runner::getLastRoundTripMillis);
+
+		if (maxBundleTimeMs > 0) {
+			registerBundleTimer();
+		}
+	}
+
+	@Override
+	public void processElement(StreamRecord<BaseRow> element) throws Exception {
+		BaseRow row = element.getValue();
+		Object[] args = new Object[argFields.length];
+		for (int i = 0; i < argFields.length; i++) {
+			args[i] = row.isNullAt(argFields[i]) ? null : TypeGetterSetters.get(row, argFields[i], argTypes[i]);
+		}
+		runner.add(element.copy(inputSerializer.copy(row)), args, resultConsumer);
+	}
+
+	@Override
+	public void onProcessingTime(long timestamp) throws Exception {
+		runner.sendBundle(resultConsumer);
+		runner.emitCompletedBundles(resultConsumer, false);
+		registerBundleTimer();
+	}
+
+	private void registerBundleTimer() {
+		getProcessingTimeService().registerTimer(
+			getProcessingTimeService().getCurrentProcessingTime() + maxBundleTimeMs, this);
+	}
+
+	@Override
+	public void processWatermark(Watermark mark) throws Exception {
+		runner.finishBundles(resultConsumer);
+		super.processWatermark(mark);
+	}
+
+	@Override
+	public void prepareSnapshotPreBarrier(long checkpointId) throws Exception {
+		runner.finishBundles(resultConsumer);
+	}
+
+	@Override
+	public void endInput() throws Exception {
+		runner.finishBundles(resultConsumer);
+	}
+
+	@Override
+	public void close() throws Exception {
+		try {
+			runner.finishBundles(resultConsumer);
+		} finally {
+			super.close();
+		}
+	}
+
+	@Override
+	public void dispose() throws Exception {
+		try {
+			super.dispose();
+		} finally {
+			if (runner != null) {
+				runner.close();
+			}
+			if (worker != null) {
+				try {
+					worker.close();
+				} catch (IOException e) {
+					LOG.warn(e.getMessage());
+				}
+			}
+		}
+	}
+}
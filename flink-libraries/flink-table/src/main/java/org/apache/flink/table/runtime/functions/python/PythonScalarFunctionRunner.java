@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.table.runtime.functions.python;
+
+import org.apache.flink.table.api.types.InternalType;
+import org.apache.flink.table.errorcode.TableErrors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+
+/**
+ * Executes the calls of a {@link PythonScalarFunction} in bundles, instead of one synchronous
+ * round trip to the Python worker per call.
+ *
+ * <p>The call requests of a bundle are written to the worker socket at once, and several
+ * bundles may be in flight. The responses are read by a separate thread, and the results are
+ * handed to the caller in the order of the calls, together with the context of each call.
+ *
+ * <p>The runner is not thread safe, except for its metrics.
+ *
+ * @param <T> The type of the context of a call, e.g. the row which is evaluated.
+ */
+public class PythonScalarFunctionRunner<T> implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PythonScalarFunctionRunner.class);
+
+	/**
+	 * The consumer of the results of the calls.
+	 */
+	public interface ResultConsumer<T> {
+		void accept(T context, Object result) throws Exception;
+	}
+
+	private final String funcName;
+
+	private final String moduleName;
+
+	private final InternalType[] argTypes;
+
+	private final InternalType returnType;
+
+	private final int maxBundleSize;
+
+	private final int maxInFlightBundles;
+
+	private final OutputStream workerOut;
+
+	private final ByteArrayOutputStream bundleBuffer = new ByteArrayOutputStream();
+
+	private final DataOutputStream bundleOut = new DataOutputStream(bundleBuffer);
+
+	private List<T> bundleContexts = new ArrayList<>();
+
+	/** The bundles which have been sent, in order, for the response reader. */
+	private final BlockingQueue<Bundle<T>> sentBundles = new LinkedBlockingQueue<>();
+
+	/** The bundles whose responses have been read, in order. */
+	private final BlockingQueue<Bundle<T>> completedBundles = new LinkedBlockingQueue<>();
+
+	private int numInFlightBundles;
+
+	private final Thread responseReader;
+
+	private volatile boolean closed;
+
+	private volatile int lastBundleSize;
+
+	private volatile long lastRoundTripMillis;
+
+	public PythonScalarFunctionRunner(
+		String funcName,
+		String moduleName,
+		InternalType[] argTypes,
+		InternalType returnType,
+		InputStream workerIn,
+		OutputStream workerOut,
+		int maxBundleSize,
+		int maxInFlightBundles) {
+
+		checkArgument(maxBundleSize > 0, "The bundle size must be positive.");
+		checkArgument(maxInFlightBundles > 0, "The number of in-flight bundles must be positive.");
+		this.funcName = funcName;
+		this.moduleName = moduleName;
+		this.argTypes = argTypes;
+		this.returnType = returnType;
+		this.maxBundleSize = maxBundleSize;
+		this.maxInFlightBundles = maxInFlightBundles;
+		this.workerOut = new BufferedOutputStream(workerOut, 8192);
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(workerIn));
+		this.responseReader = new Thread(() -> readResponses(in), "Python UDF response reader: " + moduleName);
+		this.responseReader.setDaemon(true);
+		this.responseReader.start();
+	}
+
+	/**
+	 * Adds a call with arguments in their internal representation to the current bundle, which
+	 * is sent once it is full. The results which are already available are emitted.
+	 */
+	public void add(T context, Object[] args, ResultConsumer<T> consumer) throws Exception {
+		PythonUDFUtil.writeCallRequest(moduleName, bundleOut, argTypes, args);
+		bundleContexts.add(context);
+		if (bundleContexts.size() >= maxBundleSize) {
+			sendBundle(consumer);
+		}
+		emitCompletedBundles(consumer, false);
+	}
+
+	/**
+	 * Sends the current bundle, waiting for the oldest bundle to complete if the maximum number
+	 * of bundles is in flight.
+	 */
+	public void sendBundle(ResultConsumer<T> consumer) throws Exception {
+		if (bundleContexts.isEmpty()) {
+			return;
+		}
+
+		while (numInFlightBundles >= maxInFlightBundles) {
+			emitBundle(completedBundles.take(), consumer);
+		}
+
+		Bundle<T> bundle = new Bundle<>(bundleContexts, System.nanoTime());
+		sentBundles.add(bundle);
+		numInFlightBundles++;
+		bundleBuffer.writeTo(workerOut);
+		workerOut.flush();
+
+		lastBundleSize = bundleContexts.size();
+		bundleBuffer.reset();
+		bundleContexts = new ArrayList<>();
+	}
+
+	/**
+	 * Emits the results of the bundles which have completed, or of all the sent bundles.
+	 */
+	public void emitCompletedBundles(ResultConsumer<T> consumer, boolean waitForAll) throws Exception {
+		while (numInFlightBundles > 0) {
+			Bundle<T> bundle = waitForAll ? completedBundles.take() : completedBundles.poll();
+			if (bundle == null) {
+				return;
+			}
+			emitBundle(bundle, consumer);
+		}
+	}
+
+	/**
+	 * Sends the current bundle and emits all the results.
+	 */
+	public void finishBundles(ResultConsumer<T> consumer) throws Exception {
+		sendBundle(consumer);
+		emitCompletedBundles(consumer, true);
+	}
+
+	private void emitBundle(Bundle<T> bundle, ResultConsumer<T> consumer) throws Exception {
+		numInFlightBundles--;
+		if (bundle.failure != null) {
+			throw bundle.failure;
+		}
+		for (int i = 0; i < bundle.contexts.size(); i++) {
+			consumer.accept(bundle.contexts.get(i), bundle.results[i]);
+		}
+	}
+
+	public boolean hasPendingCalls() {
+		return !bundleContexts.isEmpty() || numInFlightBundles > 0;
+	}
+
+	/** The number of calls of the last bundle which has been sent. */
+	public int getLastBundleSize() {
+		return lastBundleSize;
+	}
+
+	/** The time between sending the last completed bundle and reading all its responses. */
+	public long getLastRoundTripMillis() {
+		return lastRoundTripMillis;
+	}
+
+	private void readResponses(DataInputStream in) {
+		Bundle<T> bundle = null;
+		try {
+			while (!closed) {
+				bundle = sentBundles.take();
+				for (int i = 0; i < bundle.results.length; i++) {
+					int protocol = in.readInt();
+					assert(protocol == PythonUDFUtil.PROTOCAL_VER);
+					int ctrlFlag = in.readInt();
+					Object res = PythonUDFUtil.getResult(in);
+
+					if (ctrlFlag == PythonUDFUtil.SCALAR_UDF_RESULT) {
+						bundle.results[i] = PythonUDFUtil.toInternalResult(res, returnType);
+					} else if (ctrlFlag == PythonUDFUtil.PYTHON_EXCEPTION_THROWN) {
+						String err = String.valueOf(res);
+						LOG.error(err);
+						// the remaining responses of the bundle are still read, to stay in sync
+						if (bundle.failure == null) {
+							bundle.failure = new RuntimeException(
+								TableErrors.INST.sqlPythonUDFRunTimeError(funcName, moduleName, err));
+						}
+					}
+				}
+				lastRoundTripMillis = (System.nanoTime() - bundle.sendNanos) / 1_000_000;
+				completedBundles.add(bundle);
+				bundle = null;
+			}
+		} catch (InterruptedException e) {
+			// closed
+		} catch (IOException ioe) {
+			if (!closed) {
+				LOG.error(ioe.getMessage());
+				RuntimeException failure = new RuntimeException(
+					TableErrors.INST.sqlPythonUDFSocketIOError(funcName, moduleName, ioe.getMessage()));
+				// fail the bundle which was read and all the bundles after it
+				if (bundle != null) {
+					bundle.failure = failure;
+					completedBundles.add(bundle);
+				}
+				while (!closed) {
+					try {
+						Bundle<T> next = sentBundles.take();
+						next.failure = failure;
+						completedBundles.add(next);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops reading responses. The worker streams are closed by the owner.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		responseReader.interrupt();
+	}
+
+	private static final class Bundle<T> {
+
+		private final List<T> contexts;
+
+		private final Object[] results;
+
+		private final long sendNanos;
+
+		private volatile RuntimeException failure;
+
+		private Bundle(List<T> contexts, long sendNanos) {
+			this.contexts = contexts;
+			this.results = new Object[contexts.size()];
+			this.sendNanos = sendNanos;
+		}
+	}
+}
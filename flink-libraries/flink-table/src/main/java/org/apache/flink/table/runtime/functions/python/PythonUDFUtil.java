@@ -26,8 +26,10 @@ import org.apache.flink.table.api.TableEnvironment;
 import org.apache.flink.table.api.functions.FunctionContext;
 import org.apache.flink.table.api.functions.UserDefinedFunction;
 import org.apache.flink.table.api.types.DataTypes;
+import org.apache.flink.table.api.types.DecimalType;
 import org.apache.flink.table.api.types.InternalType;
 import org.apache.flink.table.dataformat.BinaryString;
+import org.apache.flink.table.dataformat.Decimal;
 import org.apache.flink.table.errorcode.TableErrors;
 import org.apache.flink.table.runtime.functions.BuildInScalarFunctions;
 import org.apache.flink.util.FileUtils;
@@ -543,20 +545,12 @@ public class PythonUDFUtil {
 
 	public static void sendCallRequest(String pyFunctionName, DataOutputStream out, Object... args) throws IOException {
 
-		ByteArrayOutputStream cmdBuff = new ByteArrayOutputStream();
 		ByteArrayOutputStream argsTypesBuff = new ByteArrayOutputStream();
 		ByteArrayOutputStream argsDataBuff = new ByteArrayOutputStream();
 
-		DataOutputStream cmdOut = new DataOutputStream(cmdBuff);
 		DataOutputStream argsTypesOut = new DataOutputStream(argsTypesBuff);
 		DataOutputStream argsDataOut = new DataOutputStream(argsDataBuff);
 
-		// Header & commands & args num
-		cmdOut.writeInt(PythonUDFUtil.PROTOCAL_VER);  // protocol version
-		cmdOut.writeInt(PythonUDFUtil.SCALAR_UDF);    // action
-		cmdOut.writeUTF(pyFunctionName);              // with length
-		cmdOut.writeShort(args.length);               // args num
-
 		// types & data of arguments
 		for (Object a : args) {
 			if (a == null) {
@@ -626,6 +620,123 @@ public class PythonUDFUtil {
 			}
 		}
 
+		writeRequest(pyFunctionName, out, args.length, argsTypesBuff, argsDataBuff);
+		out.flush();
+	}
+
+	/**
+	 * Writes a call request with arguments in their internal representation, without flushing
+	 * the stream, so that the requests of a bundle can be sent at once.
+	 */
+	public static void writeCallRequest(
+		String pyFunctionName,
+		DataOutputStream out,
+		InternalType[] argTypes,
+		Object[] args) throws IOException {
+
+		ByteArrayOutputStream argsTypesBuff = new ByteArrayOutputStream();
+		ByteArrayOutputStream argsDataBuff = new ByteArrayOutputStream();
+
+		DataOutputStream argsTypesOut = new DataOutputStream(argsTypesBuff);
+		DataOutputStream argsDataOut = new DataOutputStream(argsDataBuff);
+
+		for (int i = 0; i < args.length; i++) {
+			Object a = args[i];
+			InternalType t = argTypes[i];
+			if (a == null) {
+				argsTypesOut.writeByte(PythonSerDesTypes.NONE.ordinal());
+			}
+			else if (t.equals(DataTypes.STRING)) {
+				argsTypesOut.writeByte(PythonSerDesTypes.STRING.ordinal());
+				argsDataOut.writeUTF(a.toString());
+			}
+			else if (t.equals(DataTypes.DATE)) {
+				// the internal representation of date, time and timestamp is the one of the protocol
+				argsTypesOut.writeByte(PythonSerDesTypes.DATE.ordinal());
+				argsDataOut.writeInt((Integer) a);
+			}
+			else if (t.equals(DataTypes.TIME)) {
+				argsTypesOut.writeByte(PythonSerDesTypes.TIME.ordinal());
+				argsDataOut.writeInt((Integer) a);
+			}
+			else if (t.equals(DataTypes.TIMESTAMP)) {
+				argsTypesOut.writeByte(PythonSerDesTypes.TIMESTAMP.ordinal());
+				argsDataOut.writeLong((Long) a);
+			}
+			else if (t instanceof DecimalType) {
+				argsTypesOut.writeByte(PythonSerDesTypes.DECIMAL.ordinal());
+				argsDataOut.writeUTF(((Decimal) a).toBigDecimal().toString());
+			}
+			else {
+				// the remaining internal types are the external ones
+				sendCallRequestArgument(argsTypesOut, argsDataOut, a);
+			}
+		}
+
+		writeRequest(pyFunctionName, out, args.length, argsTypesBuff, argsDataBuff);
+	}
+
+	private static void sendCallRequestArgument(
+		DataOutputStream argsTypesOut,
+		DataOutputStream argsDataOut,
+		Object a) throws IOException {
+
+		if (a instanceof Boolean) {
+			argsTypesOut.writeByte(PythonSerDesTypes.BOOLEAN.ordinal());
+			argsDataOut.writeBoolean((Boolean) a);
+		}
+		else if (a instanceof Short) {
+			argsTypesOut.writeByte(PythonSerDesTypes.SHORT.ordinal());
+			argsDataOut.writeShort((Short) a);
+		}
+		else if (a instanceof Byte) {
+			argsTypesOut.writeByte(PythonSerDesTypes.BYTE.ordinal());
+			argsDataOut.writeByte((Byte) a);
+		}
+		else if (a instanceof Integer) {
+			argsTypesOut.writeByte(PythonSerDesTypes.INT.ordinal());
+			argsDataOut.writeInt((Integer) a);
+		}
+		else if (a instanceof Long) {
+			argsTypesOut.writeByte(PythonSerDesTypes.LONG.ordinal());
+			argsDataOut.writeLong((Long) a);
+		}
+		else if (a instanceof Float) {
+			argsTypesOut.writeByte(PythonSerDesTypes.FLOAT.ordinal());
+			argsDataOut.writeFloat((Float) a);
+		}
+		else if (a instanceof Double) {
+			argsTypesOut.writeByte(PythonSerDesTypes.DOUBLE.ordinal());
+			argsDataOut.writeDouble((Double) a);
+		}
+		else if (a instanceof byte[]) {
+			argsTypesOut.writeByte(PythonSerDesTypes.BYTES.ordinal());
+
+			byte[] bytes = (byte[]) a;
+			argsDataOut.writeShort(bytes.length);
+			argsDataOut.write(bytes);
+		}
+		else {
+			throw new IOException("Unsupported argument type of python UDF: " + a.getClass().getName());
+		}
+	}
+
+	private static void writeRequest(
+		String pyFunctionName,
+		DataOutputStream out,
+		int argsNum,
+		ByteArrayOutputStream argsTypesBuff,
+		ByteArrayOutputStream argsDataBuff) throws IOException {
+
+		ByteArrayOutputStream cmdBuff = new ByteArrayOutputStream();
+		DataOutputStream cmdOut = new DataOutputStream(cmdBuff);
+
+		// Header & commands & args num
+		cmdOut.writeInt(PythonUDFUtil.PROTOCAL_VER);  // protocol version
+		cmdOut.writeInt(PythonUDFUtil.SCALAR_UDF);    // action
+		cmdOut.writeUTF(pyFunctionName);              // with length
+		cmdOut.writeShort(argsNum);                   // args num
+
 		long dataLength = cmdBuff.size() + argsTypesBuff.size() + argsDataBuff.size();
 
 		// write length (long type) into the stream,
@@ -636,7 +747,6 @@ public class PythonUDFUtil {
 		out.write(cmdBuff.toByteArray());
 		out.write(argsTypesBuff.toByteArray());
 		out.write(argsDataBuff.toByteArray());
-		out.flush();
 	}
 
 	public static Object getResult(DataInputStream in) throws IOException {
@@ -649,7 +759,7 @@ public class PythonUDFUtil {
 			// just return UTF-8 string, to avoid conversion
 			int len = in.readShort();
 			byte[] utf8bytes = new byte[len];
-			in.read(utf8bytes);
+			in.readFully(utf8bytes);
 			res = BinaryString.fromBytes(utf8bytes);
 		}
 		else if (resType == PythonSerDesTypes.BOOLEAN.ordinal()) {
@@ -676,7 +786,7 @@ public class PythonUDFUtil {
 		else if (resType == PythonSerDesTypes.BYTES.ordinal()) {
 			int len = in.readUnsignedShort();
 			byte[] bytes = new byte[len];
-			in.read(bytes);
+			in.readFully(bytes);
 			res = bytes;
 		}
 		else if (resType == PythonSerDesTypes.DATE.ordinal()) {
@@ -696,6 +806,18 @@ public class PythonUDFUtil {
 		return res;
 	}
 
+	/**
+	 * Converts a result of {@link #getResult(DataInputStream)} to the internal representation
+	 * of the given type.
+	 */
+	public static Object toInternalResult(Object res, InternalType type) {
+		if (res instanceof java.math.BigDecimal && type instanceof DecimalType) {
+			DecimalType dt = (DecimalType) type;
+			return Decimal.fromBigDecimal((java.math.BigDecimal) res, dt.precision(), dt.scale());
+		}
+		return res;
+	}
+
 	/**
 	 *  types for python udf ser/des.
 	 */
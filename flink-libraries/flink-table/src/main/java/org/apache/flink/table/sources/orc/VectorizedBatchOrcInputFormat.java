@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.table.sources.orc;
+
+import org.apache.flink.api.java.typeutils.ResultTypeQueryable;
+import org.apache.flink.core.fs.FileInputSplit;
+import org.apache.flink.core.fs.Path;
+import org.apache.flink.table.api.types.InternalType;
+import org.apache.flink.table.api.types.TypeConverters;
+import org.apache.flink.table.dataformat.vector.VectorizedColumnBatch;
+import org.apache.flink.table.sources.parquet.VectorizedColumnBatchTypeInfo;
+
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import java.io.IOException;
+
+/**
+ * A subclass of {@link OrcInputFormat} to read from Orc files and return whole
+ * {@link VectorizedColumnBatch}es, which are consumed by the vectorized operators.
+ */
+public class VectorizedBatchOrcInputFormat extends OrcInputFormat<VectorizedColumnBatch, VectorizedColumnBatch>
+		implements ResultTypeQueryable<VectorizedColumnBatch> {
+
+	private static final long serialVersionUID = 3178245706434926618L;
+
+	private final boolean copyToFlink;
+
+	public VectorizedBatchOrcInputFormat(Path filePath, InternalType[] fieldTypes, String[] fieldNames) {
+		this(filePath, fieldTypes, fieldNames, false);
+	}
+
+	public VectorizedBatchOrcInputFormat(Path filePath, InternalType[] fieldTypes, String[] fieldNames, boolean copyToFlink) {
+		super(filePath, fieldTypes, fieldNames);
+		this.copyToFlink = copyToFlink;
+	}
+
+	@Override
+	protected VectorizedColumnBatch convert(VectorizedColumnBatch current) {
+		return current;
+	}
+
+	@Override
+	protected RecordReader createReader(FileInputSplit fileSplit, TaskAttemptContext taskAttemptContext) throws IOException {
+		return new OrcVectorizedReader(fieldTypes, fieldNames, schemaFieldNames, copyToFlink, true);
+	}
+
+	@Override
+	public VectorizedColumnBatchTypeInfo getProducedType() {
+		return new VectorizedColumnBatchTypeInfo(fieldNames, TypeConverters.createExternalTypeInfoFromDataTypes(fieldTypes));
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.table.temptable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The bytes read from a table partition, as buffers over the pages of the {@link TableStorage},
+ * so that they can be served without copying. The pages stay pinned until the view is released.
+ */
+public class TableReadView {
+
+	private final List<ByteBuffer> buffers = new ArrayList<>();
+
+	private final List<TableStoragePageCache.Page> pages = new ArrayList<>();
+
+	private int size;
+
+	private boolean released;
+
+	/**
+	 * Creates a view over bytes which are not backed by the storage.
+	 */
+	public static TableReadView of(byte[] bytes) {
+		TableReadView view = new TableReadView();
+		view.buffers.add(ByteBuffer.wrap(bytes));
+		view.size = bytes.length;
+		return view;
+	}
+
+	/**
+	 * Adds the given bytes of the page, the view takes over the pin of the page.
+	 */
+	void add(TableStoragePageCache.Page page, int offset, int len) {
+		pages.add(page);
+		buffers.add(page.wrap(offset, len));
+		size += len;
+	}
+
+	public ByteBuffer[] getBuffers() {
+		return buffers.toArray(new ByteBuffer[0]);
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Copies the bytes into the given buffer, which must have room for {@link #getSize()} bytes.
+	 */
+	public void copyTo(byte[] target, int targetOffset) {
+		for (ByteBuffer buffer : buffers) {
+			int len = buffer.remaining();
+			buffer.duplicate().get(target, targetOffset, len);
+			targetOffset += len;
+		}
+	}
+
+	public void release() {
+		if (!released) {
+			released = true;
+			for (TableStoragePageCache.Page page : pages) {
+				page.release();
+			}
+		}
+	}
+}
@@ -55,6 +55,20 @@ public interface TableService {
 	 */
 	byte[] read(String tableName, int partitionId, int offset, int readCount) throws Exception;
 
+	/**
+	 * Same as {@link #read(String, int, int, int)}, but the bytes may be backed by the storage instead of being copied.
+	 * The returned view must be released once the bytes have been consumed.
+	 * @param tableName the name of the table.
+	 * @param partitionId partition id of the table.
+	 * @param offset the start index for read.
+	 * @param readCount the length for read.
+	 * @return the view of the bytes of successful read, may be shorter than readCount, never return null.
+	 * @throws Exception
+	 */
+	default TableReadView readView(String tableName, int partitionId, int offset, int readCount) throws Exception {
+		return TableReadView.of(read(tableName, partitionId, offset, readCount));
+	}
+
 	/**
 	 * initialize a table with specified partition, this request will delete the data if the given table name and partition id.
 	 * @param tableName the name of the table.
@@ -50,6 +50,7 @@ public class TableServiceImpl implements LifeCycleAware, TableService {
 		tableStorage = new TableStorage();
 		tableStorage.open(config);
 		tableServiceMetrics = new TableServiceMetrics(serviceContext.getMetricGroup());
+		tableServiceMetrics.registerPageCacheMetrics(tableStorage.getPageCache());
 		logger.info("FlinkTableService end open.");
 	}
 
@@ -86,20 +87,24 @@ public class TableServiceImpl implements LifeCycleAware, TableService {
 
 	@Override
 	public byte[] read(String tableName, int partitionId, int offset, int readCount) {
-		logger.debug("FlinkTableService receive read request");
-		byte [] buffer = new byte[readCount];
-
-		int nRead = tableStorage.read(tableName, partitionId, offset, readCount, buffer);
-		if (nRead <= 0) {
-			return new byte[0];
-		} else {
-			tableServiceMetrics.getReadTotalBytesMetrics().inc(nRead);
-			byte[] result = new byte[nRead];
-			System.arraycopy(buffer, 0, result, 0, nRead);
+		TableReadView view = readView(tableName, partitionId, offset, readCount);
+		try {
+			byte[] result = new byte[view.getSize()];
+			view.copyTo(result, 0);
 			return result;
+		} finally {
+			view.release();
 		}
 	}
 
+	@Override
+	public TableReadView readView(String tableName, int partitionId, int offset, int readCount) {
+		logger.debug("FlinkTableService receive read request");
+		TableReadView view = tableStorage.readView(tableName, partitionId, offset, readCount);
+		tableServiceMetrics.getReadTotalBytesMetrics().inc(view.getSize());
+		return view;
+	}
+
 	@Override
 	public void initializePartition(String tableName, int partitionId) throws Exception {
 		logger.debug("FlinkTableService receive acquire request");
@@ -19,6 +19,7 @@
 package org.apache.flink.table.temptable;
 
 import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.Gauge;
 import org.apache.flink.metrics.Meter;
 import org.apache.flink.metrics.MeterView;
 import org.apache.flink.metrics.MetricGroup;
@@ -37,6 +38,12 @@ public class TableServiceMetrics {
 
 	public static final String WRITE_BPS_METRIC = "tableServiceWriteBps";
 
+	public static final String CACHE_HITS_METRIC = "tableServiceCacheHits";
+
+	public static final String CACHE_MISSES_METRIC = "tableServiceCacheMisses";
+
+	public static final String CACHE_EVICTIONS_METRIC = "tableServiceCacheEvictions";
+
 	private Meter readBpsMetrics;
 
 	private Counter readTotalBytesMetrics;
@@ -55,6 +62,12 @@ public class TableServiceMetrics {
 		readBpsMetrics = metricGroup.meter(READ_BPS_METRIC, new MeterView(readTotalBytesMetrics, 10));
 	}
 
+	public void registerPageCacheMetrics(TableStoragePageCache pageCache) {
+		metricGroup.gauge(CACHE_HITS_METRIC, (Gauge<Long>) pageCache::getNumHits);
+		metricGroup.gauge(CACHE_MISSES_METRIC, (Gauge<Long>) pageCache::getNumMisses);
+		metricGroup.gauge(CACHE_EVICTIONS_METRIC, (Gauge<Long>) pageCache::getNumEvictions);
+	}
+
 	public Counter getReadTotalBytesMetrics() {
 		return readTotalBytesMetrics;
 	}
@@ -124,6 +124,40 @@ public final class TableServiceOptions {
 		.defaultValue(128 * 1024 * 1024)
 		.withDescription("Specify the maximum size (in bytes) of a table partition segment file.");
 
+	/**
+	 * Specify the size (in bytes) of the pages in which the table partition segment files are read and cached.
+	 */
+	public static final ConfigOption<Integer> TABLE_SERVICE_STORAGE_PAGE_SIZE =
+		key("flink.service.table.service.storage.page.size")
+		.defaultValue(64 * 1024)
+		.withDescription("Specify the size (in bytes) of the pages in which the table partition segment files are read and cached.");
+
+	/**
+	 * Specify the memory size (in bytes) of the page cache of the table storage.
+	 */
+	public static final ConfigOption<Long> TABLE_SERVICE_STORAGE_CACHE_SIZE =
+		key("flink.service.table.service.storage.cache.size")
+		.defaultValue(64L * 1024 * 1024)
+		.withDescription("Specify the memory size (in bytes) of the page cache of the table storage, "
+			+ "it is taken from the heap memory of TableService.");
+
+	/**
+	 * Whether to compress the table partition segment files.
+	 */
+	public static final ConfigOption<Boolean> TABLE_SERVICE_STORAGE_COMPRESSION_ENABLED =
+		key("flink.service.table.service.storage.compression.enabled")
+		.defaultValue(false)
+		.withDescription("Whether to compress the table partition segment files.");
+
+	/**
+	 * Specify the compression codec of the table partition segment files.
+	 */
+	public static final ConfigOption<String> TABLE_SERVICE_STORAGE_COMPRESSION_CODEC =
+		key("flink.service.table.service.storage.compression.codec")
+		.defaultValue("lz4")
+		.withDescription("Specify the compression codec of the table partition segment files, "
+			+ "one of lz4, bzip2, gzip, zstd and snappy or the name of a BlockCompressionFactory class.");
+
 	/**
 	 * Specify the read buffer size for TableServiceClient.
 	 */
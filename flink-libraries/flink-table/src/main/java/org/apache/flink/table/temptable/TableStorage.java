@@ -19,19 +19,26 @@
 package org.apache.flink.table.temptable;
 
 import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.api.common.io.blockcompression.AbstractBlockCompressor;
+import org.apache.flink.api.common.io.blockcompression.AbstractBlockDecompressor;
+import org.apache.flink.api.common.io.blockcompression.BlockCompressionFactory;
+import org.apache.flink.api.common.io.blockcompression.BlockCompressionFactoryLoader;
 import org.apache.flink.configuration.Configuration;
+import org.apache.flink.core.memory.MemorySegment;
 import org.apache.flink.service.LifeCycleAware;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -43,32 +50,64 @@ import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
  * A local file system based storage.
+ *
+ * <p>The partitions are split into segment files, and the segment files into pages which are
+ * read through a {@link TableStoragePageCache}, so that a cached table which is scanned
+ * repeatedly is served from memory. If compression is enabled, every page is stored as a
+ * sequence of compressed blocks, each prefixed by its uncompressed and its compressed length.
  */
 public class TableStorage implements LifeCycleAware {
 
 	private static final Logger logger = LoggerFactory.getLogger(TableStorage.class);
 
+	/**
+	 * The length in bytes of the block header, which holds the uncompressed and the compressed
+	 * length of the block.
+	 */
+	private static final int BLOCK_HEADER_SIZE = 2 * Integer.BYTES;
+
 	private int maxSegmentSize;
 
 	private String storagePath;
 
 	private Map<String, NavigableMap<Long, File>> partitionSegmentTracker;
 
+	private int pageSize;
+
+	private TableStoragePageCache pageCache;
+
+	/** The factory of the block compression codec, or null if compression is disabled. */
+	private BlockCompressionFactory compressionFactory;
+
+	/** The blocks of the compressed segment files, by file path. */
+	private Map<String, SegmentBlocks> segmentBlocks;
+
 	@Override
 	public void open(Configuration config) {
 		String tableServiceId = config.getString(TableServiceOptions.TABLE_SERVICE_ID, UUID.randomUUID().toString());
 		String rootPath = config.getString(TableServiceOptions.TABLE_SERVICE_STORAGE_ROOT_PATH, System.getProperty("user.dir"));
 		storagePath = rootPath + File.separator + "tableservice_" + tableServiceId;
 		maxSegmentSize = config.getInteger(TableServiceOptions.TABLE_SERVICE_STORAGE_SEGMENT_MAX_SIZE);
+		pageSize = config.getInteger(TableServiceOptions.TABLE_SERVICE_STORAGE_PAGE_SIZE);
+		long cacheSize = config.getLong(TableServiceOptions.TABLE_SERVICE_STORAGE_CACHE_SIZE);
+		pageCache = new TableStoragePageCache(pageSize, (int) Math.min(cacheSize / pageSize, Integer.MAX_VALUE));
+		compressionFactory = config.getBoolean(TableServiceOptions.TABLE_SERVICE_STORAGE_COMPRESSION_ENABLED)
+			? BlockCompressionFactoryLoader.createBlockCompressionFactory(
+				config.getString(TableServiceOptions.TABLE_SERVICE_STORAGE_COMPRESSION_CODEC), config)
+			: null;
 		deleteAll(storagePath);
 		createDirs(storagePath);
 		partitionSegmentTracker = new ConcurrentHashMap<>();
-		logger.info("TableStorage opened with storage path: " + storagePath);
+		segmentBlocks = new ConcurrentHashMap<>();
+		logger.info("TableStorage opened with storage path: " + storagePath + ", page size: " + pageSize
+			+ ", cache size: " + cacheSize + ", compression: " + (compressionFactory != null));
 	}
 
 	@Override
 	public void close() {
 		partitionSegmentTracker.clear();
+		segmentBlocks.clear();
+		pageCache.clear();
 		deleteAll(storagePath);
 	}
 
@@ -151,8 +190,9 @@ public class TableStorage implements LifeCycleAware {
 			lastFileOffset = lastEntry.getKey();
 		}
 		while (offset < content.length) {
-			int writeBytes = (int) Math.min(maxSegmentSize - lastFile.length(), content.length - offset);
-			writeFile(lastFile, content, offset, writeBytes);
+			int segmentLength = getSegmentLength(lastFile);
+			int writeBytes = Math.min(maxSegmentSize - segmentLength, content.length - offset);
+			appendToSegment(lastFile, segmentLength, content, offset, writeBytes);
 			offset += writeBytes;
 			if (offset < content.length) {
 				lastFileOffset += maxSegmentSize;
@@ -162,6 +202,78 @@ public class TableStorage implements LifeCycleAware {
 		}
 	}
 
+	/**
+	 * Returns the number of bytes of the partition which are stored in the given segment file.
+	 */
+	private int getSegmentLength(File segmentFile) {
+		if (compressionFactory == null) {
+			return (int) segmentFile.length();
+		}
+		SegmentBlocks blocks = segmentBlocks.get(segmentFile.getAbsolutePath());
+		return blocks == null ? 0 : blocks.length;
+	}
+
+	private void appendToSegment(File segmentFile, int segmentLength, byte[] content, int offset, int len) {
+		if (compressionFactory == null) {
+			writeFile(segmentFile, content, offset, len);
+		} else {
+			writeBlocks(segmentFile, segmentLength, content, offset, len);
+		}
+
+		// the cached pages which were extended are stale
+		if (len > 0) {
+			String path = segmentFile.getAbsolutePath();
+			for (int pageIndex = segmentLength / pageSize; pageIndex <= (segmentLength + len - 1) / pageSize; pageIndex++) {
+				pageCache.invalidate(path, pageIndex);
+			}
+		}
+	}
+
+	/**
+	 * Appends the content as compressed blocks, split at the page boundaries so that every page
+	 * can be decompressed on its own. A block which does not shrink is stored uncompressed.
+	 */
+	private void writeBlocks(File segmentFile, int segmentLength, byte[] content, int offset, int len) {
+		SegmentBlocks blocks = segmentBlocks.computeIfAbsent(segmentFile.getAbsolutePath(), p -> new SegmentBlocks());
+		AbstractBlockCompressor compressor = compressionFactory.getCompressor();
+
+		int numBlocks = (segmentLength % pageSize + len + pageSize - 1) / pageSize;
+		byte[] output = new byte[numBlocks * (BLOCK_HEADER_SIZE + compressor.getMaxCompressedSize(pageSize))];
+		ByteBuffer header = ByteBuffer.wrap(output);
+		List<Integer> blockOffsets = new ArrayList<>(numBlocks);
+		List<Long> blockPositions = new ArrayList<>(numBlocks);
+
+		int blockOffset = segmentLength;
+		int outputLength = 0;
+		while (len > 0) {
+			int blockLength = Math.min(len, pageSize - blockOffset % pageSize);
+			int dataOffset = outputLength + BLOCK_HEADER_SIZE;
+			int compressedLength = compressor.compress(content, offset, blockLength, output, dataOffset);
+			if (compressedLength >= blockLength) {
+				System.arraycopy(content, offset, output, dataOffset, blockLength);
+				compressedLength = blockLength;
+			}
+			header.putInt(outputLength, blockLength);
+			header.putInt(outputLength + Integer.BYTES, compressedLength);
+
+			blockOffsets.add(blockOffset);
+			blockPositions.add(blocks.fileLength + outputLength);
+			blockOffset += blockLength;
+			outputLength = dataOffset + compressedLength;
+			offset += blockLength;
+			len -= blockLength;
+		}
+
+		writeFile(segmentFile, output, 0, outputLength);
+
+		// publish the blocks only after they have been written
+		for (int i = 0; i < blockOffsets.size(); i++) {
+			blocks.positions.put(blockOffsets.get(i), blockPositions.get(i));
+		}
+		blocks.fileLength += outputLength;
+		blocks.length = blockOffset;
+	}
+
 	private void writeFile(File file, byte[] content, int offset, int len) {
 		OutputStream output = null;
 		BufferedOutputStream bufferedOutput = null;
@@ -187,62 +299,146 @@ public class TableStorage implements LifeCycleAware {
 		}
 	}
 
+	public int read(String tableName, int partitionId, int offset, int readCount, byte[] buffer) {
+		TableReadView view = readView(tableName, partitionId, offset, readCount);
+		try {
+			view.copyTo(buffer, 0);
+			return view.getSize();
+		} finally {
+			view.release();
+		}
+	}
+
 	/**
-	 * todo rework on mmap.
+	 * Reads up to the given number of bytes without copying them out of the page cache.
+	 * The returned view must be released once the bytes have been consumed.
 	 */
-	public int read(String tableName, int partitionId, int offset, int readCount, byte[] buffer) {
+	public TableReadView readView(String tableName, int partitionId, int offset, int readCount) {
 		String baseDirPath = getPartitionDirPath(tableName, partitionId);
 		if (!partitionSegmentTracker.containsKey(baseDirPath)) {
 			logger.error("file: " + baseDirPath + " is not ready for read.");
 			throw new RuntimeException("file: " + baseDirPath + " is not ready for read.");
 		}
 
-		int totalRead = 0;
-		NavigableMap<Long, File> offsetMap = partitionSegmentTracker.get(baseDirPath);
-		Map.Entry<Long, File> segmentEntry = offsetMap.floorEntry(Long.valueOf(offset));
-		while (segmentEntry != null && totalRead < readCount) {
-			Long segmentFileOffset = segmentEntry.getKey();
-			File segmentFile = segmentEntry.getValue();
-			long readLimit = segmentFileOffset + maxSegmentSize - offset;
-			long readBytes = readLimit >= readCount - totalRead ? readCount - totalRead : readLimit;
-			int nRead = readFile(segmentFile, offset - segmentFileOffset, readBytes, buffer, totalRead);
-			totalRead += nRead;
-			offset += nRead;
-			segmentEntry = offsetMap.higherEntry(segmentFileOffset);
+		TableReadView view = new TableReadView();
+		try {
+			NavigableMap<Long, File> offsetMap = partitionSegmentTracker.get(baseDirPath);
+			Map.Entry<Long, File> segmentEntry = offsetMap.floorEntry(Long.valueOf(offset));
+			long position = offset;
+			while (segmentEntry != null && view.getSize() < readCount) {
+				Long segmentFileOffset = segmentEntry.getKey();
+				File segmentFile = segmentEntry.getValue();
+				int segmentLength = getSegmentLength(segmentFile);
+				int fileOffset = (int) (position - segmentFileOffset);
+				while (fileOffset < segmentLength && view.getSize() < readCount) {
+					TableStoragePageCache.Page page = getLoadedPage(segmentFile, fileOffset / pageSize, segmentLength);
+					int pageOffset = fileOffset % pageSize;
+					int readBytes = Math.min(page.getLength() - pageOffset, readCount - view.getSize());
+					if (readBytes <= 0) {
+						page.release();
+						break;
+					}
+					view.add(page, pageOffset, readBytes);
+					fileOffset += readBytes;
+					position += readBytes;
+				}
+				segmentEntry = offsetMap.higherEntry(segmentFileOffset);
+				if (segmentEntry != null && segmentEntry.getKey() != position) {
+					// the segment length was read before the segment was filled up by an append
+					break;
+				}
+			}
+		} catch (Throwable t) {
+			view.release();
+			throw t;
 		}
 
-		return totalRead;
+		return view;
 	}
 
-	private int readFile(File file, long fileOffset, long readCount, byte[] buffer, int bufferOffset) {
-		FileInputStream input = null;
-		BufferedInputStream bufferedInput = null;
-
-		int nRead;
-
+	/**
+	 * Returns the pinned page of the segment file, which is loaded if it was not cached.
+	 *
+	 * <p>The segment length is read without synchronizing with the appends, so a page may have
+	 * been loaded with the length of the segment before an append, after the append invalidated
+	 * the cached pages. Such a page is extended by the bytes which are missing for the given
+	 * segment length. The bytes it holds already are not changed, as the segments are only
+	 * appended to, and every length of a compressed segment is at the end of a block.
+	 */
+	private TableStoragePageCache.Page getLoadedPage(File segmentFile, int pageIndex, int segmentLength) {
+		TableStoragePageCache.Page page = pageCache.getPage(segmentFile.getAbsolutePath(), pageIndex);
 		try {
-			input = new FileInputStream(file);
-			bufferedInput = new BufferedInputStream(input);
-			bufferedInput.skip(fileOffset);
-			nRead = bufferedInput.read(buffer, bufferOffset, (int) readCount);
+			synchronized (page) {
+				int pageOffset = pageIndex * pageSize;
+				int pageLength = Math.min(pageSize, segmentLength - pageOffset);
+				int loadedLength = Math.max(page.getLength(), 0);
+				if (!page.isLoaded() || loadedLength < pageLength) {
+					if (compressionFactory == null) {
+						readPage(segmentFile, pageOffset, loadedLength, pageLength, page.getSegment());
+					} else {
+						readCompressedPage(segmentFile, pageOffset, loadedLength, pageLength, page.getSegment());
+					}
+					page.setLoaded(pageLength);
+				}
+			}
+			return page;
 		} catch (Exception e) {
+			page.release();
 			logger.error(e.getMessage(), e);
 			throw new RuntimeException("read file error", e);
-		} finally {
-			if (bufferedInput != null) {
-				try {
-					bufferedInput.close();
-				} catch (IOException e) {
+		}
+	}
+
+	/**
+	 * Reads the bytes of the page from {@code from} (inclusive) to {@code to} (exclusive).
+	 */
+	private void readPage(File file, int pageOffset, int from, int to, MemorySegment target) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			readFully(channel, target.wrap(from, to - from), pageOffset + from);
+		}
+	}
+
+	/**
+	 * Reads the blocks of the page from {@code from} (inclusive) to {@code to} (exclusive),
+	 * both of which must be at the start or the end of a block.
+	 */
+	private void readCompressedPage(File file, int pageOffset, int from, int to, MemorySegment target) throws IOException {
+		SegmentBlocks blocks = segmentBlocks.get(file.getAbsolutePath());
+		AbstractBlockDecompressor decompressor = compressionFactory.getDecompressor();
+		ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+		byte[] compressed = null;
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			for (Map.Entry<Integer, Long> block
+					: blocks.positions.subMap(pageOffset + from, true, pageOffset + to, false).entrySet()) {
+				header.clear();
+				readFully(channel, header, block.getValue());
+				int blockLength = header.getInt(0);
+				int compressedLength = header.getInt(Integer.BYTES);
+				long dataPosition = block.getValue() + BLOCK_HEADER_SIZE;
+				int targetOffset = block.getKey() - pageOffset;
+
+				if (compressedLength == blockLength) {
+					readFully(channel, target.wrap(targetOffset, blockLength), dataPosition);
+				} else {
+					if (compressed == null || compressed.length < compressedLength) {
+						compressed = new byte[compressedLength];
+					}
+					readFully(channel, ByteBuffer.wrap(compressed, 0, compressedLength), dataPosition);
+					decompressor.decompress(compressed, 0, compressedLength, target.getArray(), targetOffset);
 				}
 			}
-			if (input != null) {
-				try {
-					input.close();
-				} catch (IOException e) {
-				}
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer target, long position) throws IOException {
+		while (target.hasRemaining()) {
+			int nRead = channel.read(target, position);
+			if (nRead < 0) {
+				throw new EOFException("Unexpected end of file at position " + position);
 			}
+			position += nRead;
 		}
-		return nRead;
 	}
 
 	/**
@@ -250,7 +446,13 @@ public class TableStorage implements LifeCycleAware {
 	 */
 	public void initializePartition(String tableName, int partitionId) {
 		String partitionPath = getPartitionDirPath(tableName, partitionId);
-		partitionSegmentTracker.remove(partitionPath);
+		NavigableMap<Long, File> offsetMap = partitionSegmentTracker.remove(partitionPath);
+		if (offsetMap != null) {
+			for (File segmentFile : offsetMap.values()) {
+				pageCache.invalidate(segmentFile.getAbsolutePath());
+				segmentBlocks.remove(segmentFile.getAbsolutePath());
+			}
+		}
 		deleteAll(partitionPath);
 		File partition = new File(partitionPath);
 		partition.mkdirs();
@@ -261,8 +463,26 @@ public class TableStorage implements LifeCycleAware {
 		return partitionSegmentTracker;
 	}
 
+	public TableStoragePageCache getPageCache() {
+		return pageCache;
+	}
+
 	@VisibleForTesting
 	String getPartitionDirPath(String tableName, int partitionId) {
 		return storagePath + File.separator + tableName + File.separator + partitionId;
 	}
+
+	/**
+	 * The blocks of a compressed segment file.
+	 */
+	private static final class SegmentBlocks {
+
+		/** The file positions of the blocks, by the offset of their bytes in the segment. */
+		private final NavigableMap<Integer, Long> positions = new ConcurrentSkipListMap<>();
+
+		/** The number of bytes of the partition stored in the segment. */
+		private volatile int length;
+
+		private long fileLength;
+	}
 }
@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.table.temptable;
+
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkState;
+
+/**
+ * An LRU cache of the pages of the {@link TableStorage} segment files, backed by a bounded
+ * number of {@link MemorySegment}s.
+ *
+ * <p>A page is pinned while it is used, e.g. while its bytes are sent to the network, and
+ * pinned pages are never evicted. If all the pages are pinned, a page is created outside of
+ * the cache and is discarded when it is released.
+ */
+public class TableStoragePageCache {
+
+	private final int pageSize;
+
+	private final int maxNumPages;
+
+	/** The cached pages in access order, the least recently used page comes first. */
+	private final LinkedHashMap<PageKey, Page> pages = new LinkedHashMap<>(16, 0.75f, true);
+
+	private final ArrayDeque<MemorySegment> freeSegments = new ArrayDeque<>();
+
+	private int numAllocatedSegments;
+
+	private long numHits;
+
+	private long numMisses;
+
+	private long numEvictions;
+
+	public TableStoragePageCache(int pageSize, int maxNumPages) {
+		checkArgument(pageSize > 0, "The page size must be positive.");
+		checkArgument(maxNumPages >= 0, "The number of pages must not be negative.");
+		this.pageSize = pageSize;
+		this.maxNumPages = maxNumPages;
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * Returns the pinned page of the given file. The page is not loaded if it was not cached,
+	 * see {@link Page#isLoaded()}.
+	 */
+	public synchronized Page getPage(String filePath, int pageIndex) {
+		PageKey key = new PageKey(filePath, pageIndex);
+		Page page = pages.get(key);
+		if (page != null) {
+			numHits++;
+		} else {
+			numMisses++;
+			MemorySegment segment = allocateSegment();
+			if (segment != null) {
+				page = new Page(this, key, segment, true);
+				pages.put(key, page);
+			} else {
+				page = new Page(this, key, MemorySegmentFactory.allocateUnpooledSegment(pageSize, this), false);
+			}
+		}
+		page.refCount++;
+		return page;
+	}
+
+	/**
+	 * Removes the given page from the cache, e.g. because the bytes of the page were changed.
+	 * A pinned page remains valid for its current users.
+	 */
+	public synchronized void invalidate(String filePath, int pageIndex) {
+		Page page = pages.remove(new PageKey(filePath, pageIndex));
+		if (page != null) {
+			removePage(page);
+		}
+	}
+
+	/**
+	 * Removes all the pages of the given file from the cache.
+	 */
+	public synchronized void invalidate(String filePath) {
+		Iterator<Page> iterator = pages.values().iterator();
+		while (iterator.hasNext()) {
+			Page page = iterator.next();
+			if (page.key.filePath.equals(filePath)) {
+				iterator.remove();
+				removePage(page);
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		for (Page page : pages.values()) {
+			removePage(page);
+		}
+		pages.clear();
+	}
+
+	private void removePage(Page page) {
+		page.cached = false;
+		if (page.refCount == 0) {
+			freeSegments.add(page.segment);
+		}
+	}
+
+	private synchronized void release(Page page) {
+		checkState(page.refCount > 0, "The page has already been released.");
+		if (--page.refCount == 0 && !page.cached && page.pooled) {
+			freeSegments.add(page.segment);
+		}
+	}
+
+	/**
+	 * Returns a free segment, allocating a new one or evicting the least recently used page
+	 * which is not pinned, or null if all the segments are pinned.
+	 */
+	private MemorySegment allocateSegment() {
+		MemorySegment segment = freeSegments.poll();
+		if (segment != null) {
+			return segment;
+		}
+
+		if (numAllocatedSegments < maxNumPages) {
+			numAllocatedSegments++;
+			return MemorySegmentFactory.allocateUnpooledSegment(pageSize, this);
+		}
+
+		Iterator<Page> iterator = pages.values().iterator();
+		while (iterator.hasNext()) {
+			Page page = iterator.next();
+			if (page.refCount == 0) {
+				iterator.remove();
+				page.cached = false;
+				numEvictions++;
+				return page.segment;
+			}
+		}
+		return null;
+	}
+
+	public synchronized long getNumHits() {
+		return numHits;
+	}
+
+	public synchronized long getNumMisses() {
+		return numMisses;
+	}
+
+	public synchronized long getNumEvictions() {
+		return numEvictions;
+	}
+
+	@VisibleForTesting
+	synchronized int getNumCachedPages() {
+		return pages.size();
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * A page of a segment file, which holds the bytes of the file from
+	 * {@code pageIndex * pageSize} on, up to the page size or the end of the file.
+	 */
+	public static final class Page {
+
+		private final TableStoragePageCache cache;
+
+		private final PageKey key;
+
+		private final MemorySegment segment;
+
+		/** Whether the segment belongs to the cache, guarded by the cache. */
+		private final boolean pooled;
+
+		/** Whether the page can still be found in the cache, guarded by the cache. */
+		private boolean cached;
+
+		/** The number of users which pinned the page, guarded by the cache. */
+		private int refCount;
+
+		/** The number of valid bytes, or -1 if the page has not been loaded yet. */
+		private volatile int length = -1;
+
+		private Page(TableStoragePageCache cache, PageKey key, MemorySegment segment, boolean pooled) {
+			this.cache = cache;
+			this.key = key;
+			this.segment = segment;
+			this.pooled = pooled;
+			this.cached = pooled;
+		}
+
+		public MemorySegment getSegment() {
+			return segment;
+		}
+
+		public boolean isLoaded() {
+			return length >= 0;
+		}
+
+		/**
+		 * Marks the page as loaded, after the given number of bytes has been written into its
+		 * segment. Loading is synchronized on the page by the caller. A loaded page may be
+		 * extended by writing the bytes after its current length and setting a larger length.
+		 */
+		public void setLoaded(int length) {
+			checkArgument(length >= 0 && length <= segment.size());
+			this.length = length;
+		}
+
+		public int getLength() {
+			return length;
+		}
+
+		/**
+		 * Returns a buffer over the given bytes of the page, which stays valid until the page
+		 * is released.
+		 */
+		public ByteBuffer wrap(int offset, int len) {
+			return segment.wrap(offset, len);
+		}
+
+		public void release() {
+			cache.release(this);
+		}
+	}
+
+	private static final class PageKey {
+
+		private final String filePath;
+
+		private final int pageIndex;
+
+		private PageKey(String filePath, int pageIndex) {
+			this.filePath = filePath;
+			this.pageIndex = pageIndex;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			PageKey that = (PageKey) o;
+			return pageIndex == that.pageIndex && filePath.equals(that.filePath);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(filePath, pageIndex);
+		}
+	}
+}
@@ -18,6 +18,7 @@
 
 package org.apache.flink.table.temptable.rpc;
 
+import org.apache.flink.table.temptable.TableReadView;
 import org.apache.flink.table.temptable.TableService;
 import org.apache.flink.table.temptable.util.BytesUtil;
 
@@ -103,7 +104,7 @@ public class TableServiceServerHandler extends ChannelInboundHandlerAdapter {
 			offset += Integer.BYTES;
 			int readCount = BytesUtil.bytesToInt(request, offset);
 			offset += Integer.BYTES;
-			byte[] result = tableService.read(tableName, partitionId, readOffset, readCount);
+			TableReadView result = tableService.readView(tableName, partitionId, readOffset, readCount);
 			sendReadResponse(ctx, result);
 		} catch (Exception e) {
 			System.out.println(e.getMessage());
@@ -202,15 +203,15 @@ public class TableServiceServerHandler extends ChannelInboundHandlerAdapter {
 		ctx.writeAndFlush(buffer);
 	}
 
-	private void sendReadResponse(ChannelHandlerContext ctx, byte[] content) {
-		int totalLength = Integer.BYTES + Byte.BYTES + content.length;
+	private void sendReadResponse(ChannelHandlerContext ctx, TableReadView content) {
+		int totalLength = Integer.BYTES + Byte.BYTES + content.getSize();
 		byte[] totalLengthBytes = BytesUtil.intToBytes(totalLength);
+		// the content is sent from the pages of the storage, which are released once it has been written
 		ByteBuf buffer = Unpooled.wrappedBuffer(
-			totalLengthBytes,
-			TableServiceMessage.SUCCESS_BYTES,
-			content
+			Unpooled.wrappedBuffer(totalLengthBytes, TableServiceMessage.SUCCESS_BYTES),
+			Unpooled.wrappedBuffer(content.getBuffers())
 		);
-		ctx.writeAndFlush(buffer);
+		ctx.writeAndFlush(buffer).addListener(future -> content.release());
 	}
 
 	private void sendInitializePartitionResponse(ChannelHandlerContext ctx) {
@@ -24,6 +24,7 @@ import org.apache.flink.core.memory.DataInputView;
 import org.apache.flink.core.memory.DataOutputView;
 import org.apache.flink.core.memory.MemorySegment;
 import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.runtime.io.network.api.serialization.ZeroCopyInputView;
 import org.apache.flink.runtime.memory.AbstractPagedInputView;
 import org.apache.flink.runtime.memory.AbstractPagedOutputView;
 import org.apache.flink.table.api.types.InternalType;
@@ -128,12 +129,20 @@ public class BinaryRowSerializer extends AbstractRowSerializer<BinaryRow> {
 
 	@Override
 	public BinaryRow deserialize(BinaryRow reuse, DataInputView source) throws IOException {
-		MemorySegment segment = reuse.getMemorySegment();
-		checkArgument(segment == null ||
-				(reuse.getAllSegments().length == 1 && reuse.getBaseOffset() == 0));
-
 		int length = source.readInt();
-		if (segment == null || segment.size() < length) {
+		if (source instanceof ZeroCopyInputView && ((ZeroCopyInputView) source).getReferenceableBytes() >= length) {
+			// point to the network buffer, which is kept alive until the next record is read
+			ZeroCopyInputView zeroCopySource = (ZeroCopyInputView) source;
+			reuse.pointTo(zeroCopySource.getCurrentSegment(), zeroCopySource.getCurrentPositionInSegment(), length);
+			zeroCopySource.skipBytesToRead(length);
+			return reuse;
+		}
+
+		// only a segment which was allocated here is reused, a row pointing to a network buffer
+		// never starts at offset 0 since the buffer holds the length of the row in front of it
+		MemorySegment segment = reuse.getMemorySegment();
+		if (segment == null || reuse.getAllSegments().length != 1 || reuse.getBaseOffset() != 0 ||
+				segment.size() < length) {
 			segment = MemorySegmentFactory.wrap(new byte[length]);
 		}
 		source.readFully(segment.getHeapMemory(), 0, length);
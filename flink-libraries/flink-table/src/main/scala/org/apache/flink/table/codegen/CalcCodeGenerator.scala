@@ -23,12 +23,13 @@ import org.apache.calcite.rex._
 import org.apache.calcite.sql.SqlKind
 import org.apache.flink.api.common.functions.Function
 import org.apache.flink.streaming.api.transformations.StreamTransformation
-import org.apache.flink.table.api.types.{DataTypes, RowType, TypeConverters}
+import org.apache.flink.table.api.types.{DataTypes, GenericType, RowType, TypeConverters}
 import org.apache.flink.table.api.{TableConfig, TableConfigOptions, TableException}
 import org.apache.flink.table.calcite.FlinkTypeFactory
-import org.apache.flink.table.codegen.CodeGenUtils.{boxedTypeTermForType, newNames}
+import org.apache.flink.table.codegen.CodeGenUtils.{boxedTypeTermForType, newName, newNames}
 import org.apache.flink.table.codegen.operator.OperatorCodeGenerator
 import org.apache.flink.table.dataformat.{BaseRow, BoxedWrapperRow}
+import org.apache.flink.table.dataformat.vector.{ColumnVector, VectorizedColumnBatch}
 import org.apache.flink.table.runtime.OneInputSubstituteStreamOperator
 import org.apache.flink.table.typeutils.BaseRowTypeInfo
 
@@ -85,6 +86,181 @@ object CalcCodeGenerator {
       references = ctx.references)
   }
 
+  /**
+    * Returns whether the calc can be translated by [[generateVectorizedCalcOperator]], i.e.
+    * its condition and all the projections which are not plain field references can be
+    * generated by the [[VectorizedExprCodeGenerator]].
+    */
+  private[flink] def isVectorizable(
+      inputType: RowType,
+      calcProgram: RexProgram,
+      condition: Option[RexNode]): Boolean = {
+    val projection = calcProgram.getProjectList.map(calcProgram.expandLocalRef)
+    condition.forall { c =>
+      FlinkTypeFactory.toInternalType(c.getType) == DataTypes.BOOLEAN &&
+        VectorizedExprCodeGenerator.isVectorizable(c, inputType)
+    } && projection.forall {
+      case _: RexInputRef => true
+      case p => VectorizedExprCodeGenerator.isVectorizable(p, inputType)
+    }
+  }
+
+  /**
+    * Generates a calc operator which processes whole [[VectorizedColumnBatch]]es instead of
+    * single rows, see [[isVectorizable]] for the supported calcs.
+    *
+    * <p>The filter does not copy any data, it only narrows the selection vector of the input
+    * batch. The projected fields are referenced by the output batch as they are and only the
+    * computed fields are written to column vectors which are reused for all batches. The
+    * filter and all computed fields are evaluated in one loop over the selected rows.
+    */
+  private[flink] def generateVectorizedCalcOperator(
+      ctx: CodeGeneratorContext,
+      inputType: RowType,
+      outputType: RowType,
+      config: TableConfig,
+      calcProgram: RexProgram,
+      condition: Option[RexNode],
+      ruleDescription: String
+  ): OneInputSubstituteStreamOperator[VectorizedColumnBatch, VectorizedColumnBatch] = {
+    if (!isVectorizable(inputType, calcProgram, condition)) {
+      throw new TableException(s"The calc program $calcProgram can not be vectorized.")
+    }
+
+    val inputTerm = CodeGeneratorContext.DEFAULT_INPUT1_TERM
+    val batchClass = classOf[VectorizedColumnBatch].getCanonicalName
+    val Seq(numRowsTerm, selectedTerm, selectedInUseTerm, loopTerm, rowIdTerm) =
+      newNames(Seq("numRows", "selected", "selectedInUse", "j", "rowId"))
+    val exprGenerator = new VectorizedExprCodeGenerator(ctx, inputType, inputTerm, rowIdTerm)
+
+    def forEachSelectedRow(body: String): String =
+      s"""
+         |for (int $loopTerm = 0; $loopTerm < $numRowsTerm; $loopTerm++) {
+         |  int $rowIdTerm = $selectedInUseTerm ? $selectedTerm[$loopTerm] : $loopTerm;
+         |  $body
+         |}
+         |""".stripMargin
+
+    // the selected rows are compacted in the selection vector, which is safe because the
+    // position a row is written to is never behind the position which is read
+    val filterCode = condition match {
+      case Some(c) =>
+        val filterExpr = exprGenerator.generateExpression(c)
+        val newSizeTerm = newName("newSize")
+        val filterBody =
+          s"""
+             |${filterExpr.code}
+             |if (!${filterExpr.nullTerm} && ${filterExpr.resultTerm}) {
+             |  $selectedTerm[$newSizeTerm++] = $rowIdTerm;
+             |}
+             |""".stripMargin
+        s"""
+           |int $newSizeTerm = 0;
+           |${forEachSelectedRow(filterBody)}
+           |if ($newSizeTerm < $numRowsTerm) {
+           |  $inputTerm.selectedInUse = true;
+           |  $inputTerm.setNumRows($newSizeTerm);
+           |  $selectedInUseTerm = true;
+           |  $numRowsTerm = $newSizeTerm;
+           |}
+           |""".stripMargin
+      case None => ""
+    }
+
+    val projection = calcProgram.getProjectList.map(calcProgram.expandLocalRef)
+    val onlyFilter = projection.lengthCompare(inputType.getArity) == 0 &&
+      projection.zipWithIndex.forall { case (rexNode, index) =>
+        rexNode.isInstanceOf[RexInputRef] && rexNode.asInstanceOf[RexInputRef].getIndex == index
+      }
+
+    val (projectionCode, resultTerm) = if (onlyFilter) {
+      ("", inputTerm)
+    } else {
+      val outBatchTerm = newName("outBatch")
+      val outputTypesTerm = ctx.addReusableObject(outputType.getFieldInternalTypes, "outputTypes")
+      ctx.addReusableMember(
+        s"private $batchClass $outBatchTerm;",
+        s"$outBatchTerm = new $batchClass($outputTypesTerm, $batchClass.MAX_SIZE, " +
+          s"new ${classOf[ColumnVector].getCanonicalName}[${outputType.getArity}]);")
+
+      val referenceCodes = projection.zipWithIndex.collect {
+        case (ref: RexInputRef, index) =>
+          s"$outBatchTerm.columns[$index] = $inputTerm.columns[${ref.getIndex}];"
+      }
+
+      val computedFields = projection.zipWithIndex.filterNot(_._1.isInstanceOf[RexInputRef])
+      val (initCodes, bodyCodes) = computedFields.map { case (rexNode, index) =>
+        val expr = exprGenerator.generateExpression(rexNode)
+        val vectorTypeTerm =
+          VectorizedExprCodeGenerator.vectorOf(expr.resultType)._1.getCanonicalName
+        val vectorTerm = newName("projectedColumn")
+        ctx.addReusableMember(
+          s"private final $vectorTypeTerm $vectorTerm = " +
+            s"new $vectorTypeTerm($batchClass.MAX_SIZE);")
+        val initCode =
+          s"""
+             |$vectorTerm.noNulls = true;
+             |$outBatchTerm.columns[$index] = $vectorTerm;
+             |""".stripMargin
+        val bodyCode =
+          s"""
+             |${expr.code}
+             |$vectorTerm.isNull[$rowIdTerm] = ${expr.nullTerm};
+             |$vectorTerm.noNulls &= !${expr.nullTerm};
+             |$vectorTerm.vector[$rowIdTerm] = ${expr.resultTerm};
+             |""".stripMargin
+        (initCode, bodyCode)
+      }.unzip
+
+      val computeCode = if (computedFields.isEmpty) {
+        ""
+      } else {
+        forEachSelectedRow(bodyCodes.mkString("\n"))
+      }
+
+      val code =
+        s"""
+           |${referenceCodes.mkString("\n")}
+           |${initCodes.mkString("\n")}
+           |$computeCode
+           |$outBatchTerm.selected = $inputTerm.selected;
+           |$outBatchTerm.selectedInUse = $inputTerm.selectedInUse;
+           |$outBatchTerm.setNumRows($numRowsTerm);
+           |""".stripMargin
+      (code, outBatchTerm)
+    }
+
+    // the referenced columns are bound after all the expressions have been generated
+    val processCode =
+      s"""
+         |int $numRowsTerm = $inputTerm.getNumRows();
+         |int[] $selectedTerm = $inputTerm.getOrCreateSelected();
+         |boolean $selectedInUseTerm = $inputTerm.selectedInUse;
+         |${exprGenerator.generateColumnBindingCode()}
+         |$filterCode
+         |if ($numRowsTerm > 0) {
+         |  $projectionCode
+         |  ${OperatorCodeGenerator.generatorCollect(resultTerm)}
+         |}
+         |""".stripMargin
+
+    val genOperatorExpression =
+      OperatorCodeGenerator.generateOneInputStreamOperator[
+        VectorizedColumnBatch, VectorizedColumnBatch](
+        ctx,
+        ruleDescription,
+        processCode,
+        "",
+        new GenericType(classOf[VectorizedColumnBatch]),
+        config,
+        inputTerm = inputTerm)
+
+    new OneInputSubstituteStreamOperator[VectorizedColumnBatch, VectorizedColumnBatch](
+      genOperatorExpression.name,
+      genOperatorExpression.code,
+      references = ctx.references)
+  }
+
   private[flink] def generateFunction[T <: Function](
       inputType: RowType,
       ruleDescription: String,
@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.table.codegen
+
+import org.apache.flink.table.api.types.{DataTypes, InternalType, RowType}
+import org.apache.flink.table.calcite.FlinkTypeFactory
+import org.apache.flink.table.codegen.CodeGenUtils.{newName, newNames, primitiveTypeTermForType}
+import org.apache.flink.table.dataformat.vector._
+
+import org.apache.calcite.rex.{RexCall, RexInputRef, RexLiteral, RexNode}
+import org.apache.calcite.sql.SqlKind
+
+import scala.collection.JavaConversions._
+import scala.collection.mutable
+
+/**
+  * Generates the code which evaluates an expression for one row of a
+  * [[VectorizedColumnBatch]], directly on the primitive arrays of its [[ColumnVector]]s.
+  *
+  * <p>The generated code of all the expressions is fused into one loop over the selected rows
+  * of a batch by the caller. Only the numeric and boolean operators, which neither branch nor
+  * call other methods, are supported, see [[VectorizedExprCodeGenerator.isVectorizable]].
+  *
+  * @param ctx The context of the generated operator.
+  * @param inputType The type of the rows of the input batches.
+  * @param inputTerm The term of the input [[VectorizedColumnBatch]].
+  * @param rowIdTerm The term of the id of the current row in the loop over the batch.
+  */
+class VectorizedExprCodeGenerator(
+    ctx: CodeGeneratorContext,
+    inputType: RowType,
+    inputTerm: String,
+    rowIdTerm: String) {
+
+  /** The terms of the bound input columns, by the index of the field. */
+  private val inputColumns = mutable.LinkedHashMap[Int, String]()
+
+  /**
+    * Generates the code which binds the columns referenced by the generated expressions at the
+    * beginning of every batch. It has to be placed in front of the loop over the batch.
+    */
+  def generateColumnBindingCode(): String = {
+    inputColumns.map { case (index, columnTerm) =>
+      val (vectorClass, method) = VectorizedExprCodeGenerator.vectorOf(
+        inputType.getInternalTypeAt(index))
+      val vectorTypeTerm = vectorClass.getCanonicalName
+      val reuseTerm = newName("reuseColumn")
+      ctx.addReusableMember(
+        s"private final $vectorTypeTerm $reuseTerm = " +
+          s"new $vectorTypeTerm(${classOf[VectorizedColumnBatch].getCanonicalName}.MAX_SIZE);")
+      s"$vectorTypeTerm $columnTerm = ${classOf[ColumnVectorUtils].getCanonicalName}" +
+        s".$method($inputTerm, $index, $reuseTerm);"
+    }.mkString("\n")
+  }
+
+  def generateExpression(rex: RexNode): GeneratedExpression = rex match {
+    case ref: RexInputRef =>
+      val columnTerm = inputColumns.getOrElseUpdate(ref.getIndex, newName("column"))
+      val resultType = inputType.getInternalTypeAt(ref.getIndex)
+      val Seq(resultTerm, nullTerm) = newNames(Seq("result", "isNull"))
+      val code =
+        s"""
+           |boolean $nullTerm = !$columnTerm.noNulls && $columnTerm.isNull[$rowIdTerm];
+           |${primitiveTypeTermForType(resultType)} $resultTerm = $columnTerm.vector[$rowIdTerm];
+           |""".stripMargin
+      GeneratedExpression(resultTerm, nullTerm, code, resultType)
+
+    case literal: RexLiteral =>
+      generateLiteral(literal, FlinkTypeFactory.toInternalType(literal.getType))
+
+    case call: RexCall if call.getKind == SqlKind.CAST =>
+      val resultType = FlinkTypeFactory.toInternalType(call.getType)
+      call.getOperands.head match {
+        case literal: RexLiteral =>
+          generateLiteral(literal, resultType)
+        case operand =>
+          val operandExpr = generateExpression(operand)
+          val resultTypeTerm = primitiveTypeTermForType(resultType)
+          val resultTerm = newName("result")
+          val code =
+            s"""
+               |${operandExpr.code}
+               |$resultTypeTerm $resultTerm = ($resultTypeTerm) ${operandExpr.resultTerm};
+               |""".stripMargin
+          GeneratedExpression(resultTerm, operandExpr.nullTerm, code, resultType)
+      }
+
+    case call: RexCall =>
+      val resultType = FlinkTypeFactory.toInternalType(call.getType)
+      val operands = call.getOperands.map(generateExpression)
+      call.getKind match {
+        case SqlKind.EQUALS => generateBinaryOperator("==", operands, resultType)
+        case SqlKind.NOT_EQUALS => generateBinaryOperator("!=", operands, resultType)
+        case SqlKind.LESS_THAN => generateBinaryOperator("<", operands, resultType)
+        case SqlKind.LESS_THAN_OR_EQUAL => generateBinaryOperator("<=", operands, resultType)
+        case SqlKind.GREATER_THAN => generateBinaryOperator(">", operands, resultType)
+        case SqlKind.GREATER_THAN_OR_EQUAL => generateBinaryOperator(">=", operands, resultType)
+        case SqlKind.PLUS => generateBinaryOperator("+", operands, resultType)
+        case SqlKind.MINUS => generateBinaryOperator("-", operands, resultType)
+        case SqlKind.TIMES => generateBinaryOperator("*", operands, resultType)
+        case SqlKind.AND => operands.reduceLeft(generateAnd)
+        case SqlKind.OR => operands.reduceLeft(generateOr)
+        case SqlKind.NOT => generateNot(operands.head)
+        case SqlKind.IS_NULL => generateIsNull(operands.head, isNull = true)
+        case SqlKind.IS_NOT_NULL => generateIsNull(operands.head, isNull = false)
+        case _ => throw new CodeGenException(s"Unsupported vectorized call: $call")
+      }
+
+    case _ => throw new CodeGenException(s"Unsupported vectorized expression: $rex")
+  }
+
+  private def generateLiteral(
+      literal: RexLiteral,
+      resultType: InternalType): GeneratedExpression = {
+    val value = literal.getValue3
+    val literalTerm = resultType match {
+      case DataTypes.BOOLEAN => value.asInstanceOf[Boolean].toString
+      case DataTypes.INT => value.asInstanceOf[java.math.BigDecimal].intValue().toString
+      case DataTypes.LONG => value.asInstanceOf[java.math.BigDecimal].longValue() + "L"
+      case DataTypes.DOUBLE => value.asInstanceOf[java.math.BigDecimal].doubleValue() + "d"
+      case _ => throw new CodeGenException(s"Unsupported vectorized literal: $literal")
+    }
+    GeneratedExpression(
+      literalTerm, "false", "", resultType, literal = true, literalValue = value)
+  }
+
+  /**
+    * The operators are evaluated for null operands too, which is safe because none of them
+    * can throw, and avoids a branch in the loop.
+    */
+  private def generateBinaryOperator(
+      operator: String,
+      operands: Seq[GeneratedExpression],
+      resultType: InternalType): GeneratedExpression = {
+    val Seq(left, right) = operands
+    val resultTypeTerm = primitiveTypeTermForType(resultType)
+    val Seq(resultTerm, nullTerm) = newNames(Seq("result", "isNull"))
+    val code =
+      s"""
+         |${left.code}
+         |${right.code}
+         |boolean $nullTerm = ${left.nullTerm} || ${right.nullTerm};
+         |$resultTypeTerm $resultTerm =
+         |  ($resultTypeTerm) (${left.resultTerm} $operator ${right.resultTerm});
+         |""".stripMargin
+    GeneratedExpression(resultTerm, nullTerm, code, resultType)
+  }
+
+  private def generateAnd(
+      left: GeneratedExpression,
+      right: GeneratedExpression): GeneratedExpression = {
+    val Seq(resultTerm, nullTerm, isFalseTerm) = newNames(Seq("result", "isNull", "isFalse"))
+    val code =
+      s"""
+         |${left.code}
+         |${right.code}
+         |boolean $isFalseTerm = (!${left.nullTerm} && !${left.resultTerm}) ||
+         |  (!${right.nullTerm} && !${right.resultTerm});
+         |boolean $nullTerm = !$isFalseTerm && (${left.nullTerm} || ${right.nullTerm});
+         |boolean $resultTerm = !$isFalseTerm && !$nullTerm;
+         |""".stripMargin
+    GeneratedExpression(resultTerm, nullTerm, code, DataTypes.BOOLEAN)
+  }
+
+  private def generateOr(
+      left: GeneratedExpression,
+      right: GeneratedExpression): GeneratedExpression = {
+    val Seq(resultTerm, nullTerm) = newNames(Seq("result", "isNull"))
+    val code =
+      s"""
+         |${left.code}
+         |${right.code}
+         |boolean $resultTerm = (!${left.nullTerm} && ${left.resultTerm}) ||
+         |  (!${right.nullTerm} && ${right.resultTerm});
+         |boolean $nullTerm = !$resultTerm && (${left.nullTerm} || ${right.nullTerm});
+         |""".stripMargin
+    GeneratedExpression(resultTerm, nullTerm, code, DataTypes.BOOLEAN)
+  }
+
+  private def generateNot(operand: GeneratedExpression): GeneratedExpression = {
+    val resultTerm = newName("result")
+    val code =
+      s"""
+         |${operand.code}
+         |boolean $resultTerm = !${operand.resultTerm};
+         |""".stripMargin
+    GeneratedExpression(resultTerm, operand.nullTerm, code, DataTypes.BOOLEAN)
+  }
+
+  private def generateIsNull(operand: GeneratedExpression, isNull: Boolean): GeneratedExpression = {
+    val resultTerm = newName("result")
+    val negation = if (isNull) "" else "!"
+    val code =
+      s"""
+         |${operand.code}
+         |boolean $resultTerm = $negation${operand.nullTerm};
+         |""".stripMargin
+    GeneratedExpression(resultTerm, "false", code, DataTypes.BOOLEAN)
+  }
+}
+
+object VectorizedExprCodeGenerator {
+
+  private val NUMERIC_TYPES: Set[InternalType] =
+    Set(DataTypes.INT, DataTypes.LONG, DataTypes.DOUBLE)
+
+  private val COMPARISONS = Set(
+    SqlKind.EQUALS,
+    SqlKind.NOT_EQUALS,
+    SqlKind.LESS_THAN,
+    SqlKind.LESS_THAN_OR_EQUAL,
+    SqlKind.GREATER_THAN,
+    SqlKind.GREATER_THAN_OR_EQUAL)
+
+  private val ARITHMETICS = Set(SqlKind.PLUS, SqlKind.MINUS, SqlKind.TIMES)
+
+  private val LOGICALS = Set(SqlKind.AND, SqlKind.OR, SqlKind.NOT)
+
+  /**
+    * Returns whether the expression can be generated by a [[VectorizedExprCodeGenerator]],
+    * i.e. it is a comparison, an arithmetic or a logical expression of INT, BIGINT, DOUBLE or
+    * BOOLEAN fields and non-null literals.
+    */
+  def isVectorizable(rex: RexNode, inputType: RowType): Boolean = {
+    val resultType = FlinkTypeFactory.toInternalType(rex.getType)
+    rex match {
+      case ref: RexInputRef =>
+        isSupportedType(inputType.getInternalTypeAt(ref.getIndex))
+
+      case literal: RexLiteral =>
+        isSupportedLiteral(literal, resultType)
+
+      case call: RexCall if call.getKind == SqlKind.CAST =>
+        NUMERIC_TYPES.contains(resultType) && (call.getOperands.head match {
+          case literal: RexLiteral =>
+            isSupportedLiteral(literal, resultType)
+          case operand =>
+            NUMERIC_TYPES.contains(FlinkTypeFactory.toInternalType(operand.getType)) &&
+              isVectorizable(operand, inputType)
+        })
+
+      case call: RexCall =>
+        val operandTypes = call.getOperands.map(o => FlinkTypeFactory.toInternalType(o.getType))
+        val supportedCall = call.getKind match {
+          case SqlKind.EQUALS | SqlKind.NOT_EQUALS =>
+            operandTypes.forall(NUMERIC_TYPES.contains) ||
+              operandTypes.forall(_ == DataTypes.BOOLEAN)
+          case kind if COMPARISONS.contains(kind) =>
+            operandTypes.forall(NUMERIC_TYPES.contains)
+          case kind if ARITHMETICS.contains(kind) =>
+            NUMERIC_TYPES.contains(resultType) && operandTypes.forall(NUMERIC_TYPES.contains)
+          case kind if LOGICALS.contains(kind) =>
+            operandTypes.forall(_ == DataTypes.BOOLEAN)
+          case SqlKind.IS_NULL | SqlKind.IS_NOT_NULL =>
+            true
+          case _ =>
+            false
+        }
+        supportedCall && call.getOperands.forall(isVectorizable(_, inputType))
+
+      case _ => false
+    }
+  }
+
+  private def isSupportedType(t: InternalType): Boolean =
+    NUMERIC_TYPES.contains(t) || t == DataTypes.BOOLEAN
+
+  private def isSupportedLiteral(literal: RexLiteral, resultType: InternalType): Boolean = {
+    !literal.isNull && (resultType match {
+      case DataTypes.BOOLEAN => literal.getValue3.isInstanceOf[java.lang.Boolean]
+      case t if NUMERIC_TYPES.contains(t) => literal.getValue3.isInstanceOf[java.math.BigDecimal]
+      case _ => false
+    })
+  }
+
+  /**
+    * Returns the class of the plain [[ColumnVector]] of the given type and the method of
+    * [[ColumnVectorUtils]] which returns the column as such a vector.
+    */
+  private[codegen] def vectorOf(t: InternalType): (Class[_ <: ColumnVector], String) = t match {
+    case DataTypes.BOOLEAN => (classOf[BooleanColumnVector], "toBooleanVector")
+    case DataTypes.INT => (classOf[IntegerColumnVector], "toIntVector")
+    case DataTypes.LONG => (classOf[LongColumnVector], "toLongVector")
+    case DataTypes.DOUBLE => (classOf[DoubleColumnVector], "toDoubleVector")
+    case _ => throw new CodeGenException(s"Unsupported vectorized type: $t")
+  }
+}
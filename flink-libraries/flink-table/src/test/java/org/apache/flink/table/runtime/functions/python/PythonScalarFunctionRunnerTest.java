@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.table.runtime.functions.python;
+
+import org.apache.flink.table.api.types.DataTypes;
+import org.apache.flink.table.api.types.InternalType;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link PythonScalarFunctionRunner}, against a worker which doubles its INT argument
+ * and fails on negative arguments.
+ */
+public class PythonScalarFunctionRunnerTest extends TestLogger {
+
+	private static final InternalType[] ARG_TYPES = {DataTypes.INT};
+
+	private PipedInputStream workerIn;
+	private PipedOutputStream runnerOut;
+	private PipedInputStream runnerIn;
+	private PipedOutputStream workerOut;
+
+	private Thread worker;
+
+	private final AtomicInteger numReceivedCalls = new AtomicInteger();
+
+	@Before
+	public void setUp() throws IOException {
+		workerIn = new PipedInputStream(64 * 1024);
+		runnerOut = new PipedOutputStream(workerIn);
+		runnerIn = new PipedInputStream(64 * 1024);
+		workerOut = new PipedOutputStream(runnerIn);
+
+		worker = new Thread(this::serveCalls);
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		worker.interrupt();
+		runnerOut.close();
+		workerOut.close();
+	}
+
+	@Test
+	public void testResultsAreEmittedInOrder() throws Exception {
+		PythonScalarFunctionRunner<Integer> runner = createRunner(7, 2);
+		List<Integer> inputs = new ArrayList<>();
+		List<Object> results = new ArrayList<>();
+		PythonScalarFunctionRunner.ResultConsumer<Integer> consumer = (input, result) -> {
+			inputs.add(input);
+			results.add(result);
+		};
+
+		for (int i = 0; i < 100; i++) {
+			runner.add(i, new Object[] {i}, consumer);
+		}
+		runner.finishBundles(consumer);
+
+		assertEquals(100, inputs.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, (int) inputs.get(i));
+			assertEquals(2 * i, results.get(i));
+		}
+		assertTrue(!runner.hasPendingCalls());
+		runner.close();
+	}
+
+	@Test
+	public void testBundleIsSentWhenFull() throws Exception {
+		PythonScalarFunctionRunner<Integer> runner = createRunner(4, 1);
+		List<Object> results = new ArrayList<>();
+		PythonScalarFunctionRunner.ResultConsumer<Integer> consumer = (input, result) -> results.add(result);
+
+		for (int i = 0; i < 3; i++) {
+			runner.add(i, new Object[] {i}, consumer);
+		}
+		Thread.sleep(50);
+		assertEquals(0, numReceivedCalls.get());
+		assertTrue(runner.hasPendingCalls());
+
+		runner.add(3, new Object[] {null}, consumer);
+		runner.emitCompletedBundles(consumer, true);
+		assertEquals(4, numReceivedCalls.get());
+		assertEquals(4, runner.getLastBundleSize());
+		assertEquals(4, results.size());
+		assertEquals(null, results.get(3));
+		runner.close();
+	}
+
+	@Test
+	public void testPythonExceptionFailsTheBundle() throws Exception {
+		PythonScalarFunctionRunner<Integer> runner = createRunner(3, 2);
+		PythonScalarFunctionRunner.ResultConsumer<Integer> consumer = (input, result) -> {};
+
+		runner.add(0, new Object[] {1}, consumer);
+		runner.add(1, new Object[] {-1}, consumer);
+		try {
+			runner.finishBundles(consumer);
+			fail("The python exception should fail the bundle.");
+		} catch (RuntimeException e) {
+			assertTrue(e.getMessage().contains("negative"));
+		}
+
+		// the worker is still in sync
+		List<Object> results = new ArrayList<>();
+		runner.add(2, new Object[] {2}, (input, result) -> results.add(result));
+		runner.finishBundles((input, result) -> results.add(result));
+		assertEquals(4, results.get(0));
+		runner.close();
+	}
+
+	private PythonScalarFunctionRunner<Integer> createRunner(int maxBundleSize, int maxInFlightBundles) {
+		return new PythonScalarFunctionRunner<>(
+			"double", "test.double", ARG_TYPES, DataTypes.INT, runnerIn, runnerOut, maxBundleSize, maxInFlightBundles);
+	}
+
+	/**
+	 * Answers the call requests like the python worker does.
+	 */
+	private void serveCalls() {
+		try {
+			DataInputStream in = new DataInputStream(workerIn);
+			DataOutputStream out = new DataOutputStream(workerOut);
+			while (!Thread.currentThread().isInterrupted()) {
+				in.readLong();
+				assertEquals(PythonUDFUtil.PROTOCAL_VER, in.readInt());
+				assertEquals(PythonUDFUtil.SCALAR_UDF, in.readInt());
+				in.readUTF();
+				assertEquals(1, in.readShort());
+				int type = in.readByte();
+				numReceivedCalls.incrementAndGet();
+
+				out.writeInt(PythonUDFUtil.PROTOCAL_VER);
+				if (type == PythonUDFUtil.PythonSerDesTypes.NONE.ordinal()) {
+					out.writeInt(PythonUDFUtil.SCALAR_UDF_RESULT);
+					out.writeByte(PythonUDFUtil.PythonSerDesTypes.NONE.ordinal());
+					continue;
+				}
+
+				int arg = in.readInt();
+				if (arg < 0) {
+					byte[] error = "negative argument".getBytes(StandardCharsets.UTF_8);
+					out.writeInt(PythonUDFUtil.PYTHON_EXCEPTION_THROWN);
+					out.writeByte(PythonUDFUtil.PythonSerDesTypes.STRING.ordinal());
+					out.writeShort(error.length);
+					out.write(error);
+				} else {
+					out.writeInt(PythonUDFUtil.SCALAR_UDF_RESULT);
+					out.writeByte(PythonUDFUtil.PythonSerDesTypes.INT.ordinal());
+					out.writeInt(2 * arg);
+				}
+				out.flush();
+			}
+		} catch (IOException e) {
+			// the streams were closed
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.table.runtime.util;
+
+import org.apache.flink.api.common.io.blockcompression.AbstractBlockCompressor;
+import org.apache.flink.api.common.io.blockcompression.AbstractBlockDecompressor;
+import org.apache.flink.api.common.io.blockcompression.BlockCompressionFactory;
+import org.apache.flink.api.common.io.blockcompression.BlockCompressionFactoryLoader;
+import org.apache.flink.api.common.io.blockcompression.BlockCompressionFactoryLoader.CompressionMethod;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.table.api.types.DataTypes;
+import org.apache.flink.table.dataformat.BinaryRow;
+import org.apache.flink.table.dataformat.BinaryRowWriter;
+import org.apache.flink.table.typeutils.BinaryRowSerializer;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Compares the throughput and the compression ratio of the block compression codecs on
+ * buffers of serialized {@link BinaryRow}s, as they are compressed by the external shuffle
+ * and by the spilling of the batch operators.
+ */
+public class BlockCompressionPerformanceTest extends TestLogger {
+
+	private static final int BLOCK_SIZE = 64 * 1024;
+
+	private static final int NUM_BLOCKS = 256;
+
+	private static final int NUM_ROUNDS = 5;
+
+	@Ignore
+	@Test
+	public void benchMark() throws Exception {
+		byte[] data = createBinaryRowData(BLOCK_SIZE * NUM_BLOCKS);
+
+		for (CompressionMethod method : CompressionMethod.values()) {
+			BlockCompressionFactory factory = BlockCompressionFactoryLoader.createBlockCompressionFactory(
+				method.name(), new Configuration());
+			AbstractBlockCompressor compressor = factory.getCompressor();
+			AbstractBlockDecompressor decompressor = factory.getDecompressor();
+
+			byte[] compressed = new byte[compressor.getMaxCompressedSize(BLOCK_SIZE)];
+			byte[] decompressed = new byte[BLOCK_SIZE];
+
+			long compressedBytes = 0;
+			long compressNanos = 0;
+			long decompressNanos = 0;
+
+			for (int round = 0; round < NUM_ROUNDS; ++round) {
+				compressedBytes = 0;
+				compressNanos = 0;
+				decompressNanos = 0;
+
+				for (int offset = 0; offset < data.length; offset += BLOCK_SIZE) {
+					long start = System.nanoTime();
+					int compressedLen = compressor.compress(data, offset, BLOCK_SIZE, compressed, 0);
+					compressNanos += System.nanoTime() - start;
+
+					start = System.nanoTime();
+					decompressor.decompress(compressed, 0, compressedLen, decompressed, 0);
+					decompressNanos += System.nanoTime() - start;
+
+					compressedBytes += compressedLen;
+				}
+
+				// only the last round is reported, the others warm up the JIT
+				assertArrayEquals(
+					Arrays.copyOfRange(data, data.length - BLOCK_SIZE, data.length), decompressed);
+			}
+
+			log.info("{}: ratio {}, compress {} MB/s, decompress {} MB/s",
+				method,
+				String.format("%.3f", (double) data.length / compressedBytes),
+				String.format("%.1f", toMegabytesPerSecond(data.length, compressNanos)),
+				String.format("%.1f", toMegabytesPerSecond(data.length, decompressNanos)));
+		}
+	}
+
+	private static double toMegabytesPerSecond(long bytes, long nanos) {
+		return bytes / (1024.0 * 1024.0) / (nanos / 1_000_000_000.0);
+	}
+
+	/**
+	 * Serializes rows of (int, long, double, string) which resemble the rows of a typical
+	 * shuffle, until the requested number of bytes is reached.
+	 */
+	private static byte[] createBinaryRowData(int numBytes) throws Exception {
+		Random random = new Random(42);
+		BinaryRowSerializer serializer = new BinaryRowSerializer(
+			DataTypes.INT, DataTypes.LONG, DataTypes.DOUBLE, DataTypes.STRING);
+		DataOutputSerializer output = new DataOutputSerializer(numBytes);
+
+		BinaryRow row = new BinaryRow(4);
+		BinaryRowWriter writer = new BinaryRowWriter(row);
+		while (output.length() < numBytes) {
+			writer.reset();
+			writer.writeInt(0, random.nextInt(1000));
+			writer.writeLong(1, System.currentTimeMillis() + random.nextInt(100_000));
+			writer.writeDouble(2, random.nextInt(10_000) / 100.0);
+			writer.writeString(3, "customer_" + random.nextInt(10_000));
+			writer.complete();
+
+			serializer.serialize(row, output);
+		}
+
+		return Arrays.copyOf(output.getSharedBuffer(), numBytes);
+	}
+}
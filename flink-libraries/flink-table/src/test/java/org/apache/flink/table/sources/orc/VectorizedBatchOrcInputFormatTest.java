@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.table.sources.orc;
+
+import org.apache.flink.core.fs.Path;
+import org.apache.flink.table.api.types.BooleanType;
+import org.apache.flink.table.api.types.DoubleType;
+import org.apache.flink.table.api.types.IntType;
+import org.apache.flink.table.api.types.InternalType;
+import org.apache.flink.table.api.types.LongType;
+import org.apache.flink.table.dataformat.GenericRow;
+import org.apache.flink.table.dataformat.vector.VectorizedColumnBatch;
+import org.apache.flink.table.sources.parquet.VectorizedColumnBatchTypeInfo;
+import org.apache.flink.types.Row;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for {@link VectorizedBatchOrcInputFormat}.
+ */
+public class VectorizedBatchOrcInputFormatTest {
+
+	private static final InternalType[] FIELD_TYPES = new InternalType[]{
+		IntType.INSTANCE,
+		LongType.INSTANCE,
+		DoubleType.INSTANCE,
+		BooleanType.INSTANCE};
+
+	private static final String[] FIELD_NAMES = new String[]{"f1", "f2", "f3", "f4"};
+
+	/** More rows than fit into one batch. */
+	private static final int NUM_ROWS = VectorizedColumnBatch.MAX_SIZE * 2 + 100;
+
+	private final String path = System.getProperty("java.io.tmpdir") + "/" + UUID.randomUUID();
+
+	@After
+	public void after() {
+		new File(path).delete();
+	}
+
+	@Test
+	public void testReadBatches() throws IOException {
+		testReadBatches(false);
+	}
+
+	@Test
+	public void testReadBatchesCopiedToFlink() throws IOException {
+		testReadBatches(true);
+	}
+
+	@Test
+	public void testReadProjectedFields() throws IOException {
+		List<Row> expectedRows = writeRows();
+
+		InternalType[] projectedTypes = new InternalType[]{DoubleType.INSTANCE, IntType.INSTANCE};
+		String[] projectedNames = new String[]{"f3", "f1"};
+		VectorizedBatchOrcInputFormat inputFormat =
+			new VectorizedBatchOrcInputFormat(new Path(path), projectedTypes, projectedNames);
+
+		List<Row> actualRows = readRows(inputFormat);
+
+		assertEquals(expectedRows.size(), actualRows.size());
+		for (int i = 0; i < expectedRows.size(); ++i) {
+			assertEquals(expectedRows.get(i).getField(2), actualRows.get(i).getField(0));
+			assertEquals(expectedRows.get(i).getField(0), actualRows.get(i).getField(1));
+		}
+	}
+
+	@Test
+	public void testProducedType() {
+		VectorizedBatchOrcInputFormat inputFormat =
+			new VectorizedBatchOrcInputFormat(new Path(path), FIELD_TYPES, FIELD_NAMES);
+
+		VectorizedColumnBatchTypeInfo producedType = inputFormat.getProducedType();
+		assertArrayEquals(FIELD_NAMES, producedType.getFiledNames());
+		assertEquals(FIELD_TYPES.length, producedType.getArity());
+	}
+
+	private void testReadBatches(boolean copyToFlink) throws IOException {
+		List<Row> expectedRows = writeRows();
+
+		VectorizedBatchOrcInputFormat inputFormat =
+			new VectorizedBatchOrcInputFormat(new Path(path), FIELD_TYPES, FIELD_NAMES, copyToFlink);
+
+		assertEquals(expectedRows, readRows(inputFormat));
+	}
+
+	/**
+	 * Writes the test rows, every 100th field is null.
+	 */
+	private List<Row> writeRows() throws IOException {
+		List<Row> expectedRows = new ArrayList<>();
+
+		OrcTestUtil.writeOrc(FIELD_TYPES, FIELD_NAMES, path, new OrcTestUtil.GeneratorRow(NUM_ROWS) {
+
+			private int index = 0;
+
+			@Override
+			public GenericRow next() {
+				GenericRow row = new GenericRow(FIELD_NAMES.length);
+				row.update(0, index % 100 == 0 ? null : index);
+				row.update(1, index % 100 == 1 ? null : (long) index * 3);
+				row.update(2, index % 100 == 2 ? null : index / 2.0);
+				row.update(3, index % 100 == 3 ? null : index % 2 == 0);
+				expectedRows.add(Row.of(row.getField(0), row.getField(1), row.getField(2), row.getField(3)));
+
+				++index;
+				return row;
+			}
+		});
+
+		return expectedRows;
+	}
+
+	/**
+	 * Reads all batches and copies their rows, as the batches may be reused.
+	 */
+	private static List<Row> readRows(VectorizedBatchOrcInputFormat inputFormat) throws IOException {
+		List<Row> rows = new ArrayList<>();
+		int[] numBatches = new int[1];
+
+		OrcTestUtil.readOrc(inputFormat, 1, record -> {
+			VectorizedColumnBatch batch = (VectorizedColumnBatch) record;
+			assertTrue(batch.getNumRows() <= VectorizedColumnBatch.MAX_SIZE);
+			numBatches[0]++;
+
+			for (int i = 0; i < batch.getNumRows(); ++i) {
+				int rowId = batch.getSelectedRowId(i);
+				Row row = new Row(batch.getArity());
+				for (int colId = 0; colId < batch.getArity(); ++colId) {
+					row.setField(colId, batch.getObject(rowId, colId));
+				}
+				rows.add(row);
+			}
+		});
+
+		assertTrue("The rows should be read in several batches.", numBatches[0] > 1);
+		return rows;
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.table.temptable;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link TableStoragePageCache}.
+ */
+public class TableStoragePageCacheTest {
+
+	@Test
+	public void testLeastRecentlyUsedPageIsEvicted() {
+		TableStoragePageCache cache = new TableStoragePageCache(16, 2);
+		load(cache, "a", 0);
+		load(cache, "a", 1);
+
+		// touch the first page, so the second one is the least recently used
+		load(cache, "a", 0);
+		Assert.assertEquals(1, cache.getNumHits());
+
+		load(cache, "b", 0);
+		Assert.assertEquals(1, cache.getNumEvictions());
+		Assert.assertEquals(2, cache.getNumCachedPages());
+
+		TableStoragePageCache.Page page = cache.getPage("a", 0);
+		Assert.assertTrue(page.isLoaded());
+		page.release();
+
+		page = cache.getPage("a", 1);
+		Assert.assertFalse(page.isLoaded());
+		page.release();
+	}
+
+	@Test
+	public void testPinnedPagesAreNotEvicted() {
+		TableStoragePageCache cache = new TableStoragePageCache(16, 1);
+		TableStoragePageCache.Page pinned = cache.getPage("a", 0);
+		pinned.setLoaded(16);
+
+		// the page is created outside of the cache
+		TableStoragePageCache.Page other = cache.getPage("a", 1);
+		Assert.assertNotSame(pinned.getSegment(), other.getSegment());
+		Assert.assertEquals(0, cache.getNumEvictions());
+		Assert.assertEquals(1, cache.getNumCachedPages());
+		other.release();
+
+		pinned.release();
+		load(cache, "a", 1);
+		Assert.assertEquals(1, cache.getNumEvictions());
+	}
+
+	@Test
+	public void testInvalidatedPageIsReusedAfterRelease() {
+		TableStoragePageCache cache = new TableStoragePageCache(16, 1);
+		TableStoragePageCache.Page page = cache.getPage("a", 0);
+		page.setLoaded(8);
+
+		cache.invalidate("a");
+		Assert.assertEquals(0, cache.getNumCachedPages());
+		// the pinned page stays valid
+		Assert.assertEquals(8, page.getLength());
+
+		TableStoragePageCache.Page other = cache.getPage("a", 0);
+		Assert.assertFalse(other.isLoaded());
+		Assert.assertNotSame(page.getSegment(), other.getSegment());
+		other.release();
+		cache.invalidate("a", 0);
+
+		page.release();
+		other = cache.getPage("b", 0);
+		Assert.assertSame(page.getSegment(), other.getSegment());
+		other.release();
+	}
+
+	private static void load(TableStoragePageCache cache, String filePath, int pageIndex) {
+		TableStoragePageCache.Page page = cache.getPage(filePath, pageIndex);
+		if (!page.isLoaded()) {
+			page.setLoaded(16);
+		}
+		page.release();
+	}
+}
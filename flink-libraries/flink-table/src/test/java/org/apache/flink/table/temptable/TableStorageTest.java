@@ -28,8 +28,12 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Unit test for {@link TableStorage}.
@@ -301,6 +305,248 @@ public class TableStorageTest {
 		tableStorage.close();
 	}
 
+	@Test
+	public void testReadIsServedFromPageCache() throws Exception {
+		File dir = createTempDir("flink_table_storage");
+		Configuration config = new Configuration();
+		config.setString(TableServiceOptions.TABLE_SERVICE_STORAGE_ROOT_PATH, dir.getAbsolutePath());
+		config.setInteger(TableServiceOptions.TABLE_SERVICE_STORAGE_SEGMENT_MAX_SIZE, 10);
+		config.setInteger(TableServiceOptions.TABLE_SERVICE_STORAGE_PAGE_SIZE, 4);
+		TableStorage tableStorage = new TableStorage();
+		tableStorage.open(config);
+		byte[] writeBytes = createBytes(30);
+		tableStorage.write("table1", 0, writeBytes);
+
+		byte[] readBuffer = new byte[30];
+		Assert.assertEquals(30, tableStorage.read("table1", 0, 0, 30, readBuffer));
+		Assert.assertArrayEquals(writeBytes, readBuffer);
+		// every segment file of 10 bytes has 3 pages
+		TableStoragePageCache pageCache = tableStorage.getPageCache();
+		Assert.assertEquals(9, pageCache.getNumMisses());
+		Assert.assertEquals(0, pageCache.getNumHits());
+
+		readBuffer = new byte[30];
+		Assert.assertEquals(30, tableStorage.read("table1", 0, 0, 30, readBuffer));
+		Assert.assertArrayEquals(writeBytes, readBuffer);
+		Assert.assertEquals(9, pageCache.getNumMisses());
+		Assert.assertEquals(9, pageCache.getNumHits());
+
+		tableStorage.close();
+	}
+
+	@Test
+	public void testWriteInvalidatesCachedPages() throws Exception {
+		File dir = createTempDir("flink_table_storage");
+		Configuration config = new Configuration();
+		config.setString(TableServiceOptions.TABLE_SERVICE_STORAGE_ROOT_PATH, dir.getAbsolutePath());
+		config.setInteger(TableServiceOptions.TABLE_SERVICE_STORAGE_PAGE_SIZE, 4);
+		TableStorage tableStorage = new TableStorage();
+		tableStorage.open(config);
+		byte[] writeBytes = createBytes(12);
+		tableStorage.write("table1", 0, Arrays.copyOf(writeBytes, 6));
+
+		byte[] readBuffer = new byte[12];
+		Assert.assertEquals(6, tableStorage.read("table1", 0, 0, 12, readBuffer));
+
+		tableStorage.write("table1", 0, Arrays.copyOfRange(writeBytes, 6, 12));
+		Assert.assertEquals(12, tableStorage.read("table1", 0, 0, 12, readBuffer));
+		Assert.assertArrayEquals(writeBytes, readBuffer);
+
+		tableStorage.close();
+	}
+
+	@Test
+	public void testReadExtendsPageLoadedBeforeAppend() throws Exception {
+		File dir = createTempDir("flink_table_storage");
+		Configuration config = new Configuration();
+		config.setString(TableServiceOptions.TABLE_SERVICE_STORAGE_ROOT_PATH, dir.getAbsolutePath());
+		config.setInteger(TableServiceOptions.TABLE_SERVICE_STORAGE_PAGE_SIZE, 4);
+		TableStorage tableStorage = new TableStorage();
+		tableStorage.open(config);
+		byte[] writeBytes = createBytes(12);
+		tableStorage.write("table1", 0, Arrays.copyOf(writeBytes, 6));
+		tableStorage.write("table1", 0, Arrays.copyOfRange(writeBytes, 6, 12));
+
+		// a reader which got the segment length before the append loads the page after the append
+		String segmentPath = new File(tableStorage.getPartitionDirPath("table1", 0), "0").getAbsolutePath();
+		TableStoragePageCache.Page page = tableStorage.getPageCache().getPage(segmentPath, 1);
+		page.getSegment().put(0, writeBytes, 4, 2);
+		page.setLoaded(2);
+		page.release();
+
+		byte[] readBuffer = new byte[12];
+		Assert.assertEquals(12, tableStorage.read("table1", 0, 0, 12, readBuffer));
+		Assert.assertArrayEquals(writeBytes, readBuffer);
+
+		TableReadView view = tableStorage.readView("table1", 0, 2, 10);
+		Assert.assertEquals(10, view.getSize());
+		byte[] viewBytes = new byte[10];
+		view.copyTo(viewBytes, 0);
+		Assert.assertArrayEquals(Arrays.copyOfRange(writeBytes, 2, 12), viewBytes);
+		view.release();
+
+		tableStorage.close();
+	}
+
+	@Test
+	public void testConcurrentWriteAndRead() throws Exception {
+		testConcurrentWriteAndRead(false);
+	}
+
+	@Test
+	public void testConcurrentCompressedWriteAndRead() throws Exception {
+		testConcurrentWriteAndRead(true);
+	}
+
+	private void testConcurrentWriteAndRead(boolean compressionEnabled) throws Exception {
+		File dir = createTempDir("flink_table_storage");
+		Configuration config = new Configuration();
+		config.setString(TableServiceOptions.TABLE_SERVICE_STORAGE_ROOT_PATH, dir.getAbsolutePath());
+		config.setInteger(TableServiceOptions.TABLE_SERVICE_STORAGE_SEGMENT_MAX_SIZE, 100);
+		config.setInteger(TableServiceOptions.TABLE_SERVICE_STORAGE_PAGE_SIZE, 16);
+		config.setBoolean(TableServiceOptions.TABLE_SERVICE_STORAGE_COMPRESSION_ENABLED, compressionEnabled);
+		TableStorage tableStorage = new TableStorage();
+		tableStorage.open(config);
+		byte[] writeBytes = createBytes(5000);
+
+		AtomicBoolean writing = new AtomicBoolean(true);
+		AtomicReference<Throwable> error = new AtomicReference<>();
+		Thread[] readers = new Thread[4];
+		for (int i = 0; i < readers.length; i++) {
+			final boolean useReadView = i % 2 == 0;
+			readers[i] = new Thread(() -> {
+				try {
+					int lastRead = 0;
+					boolean lastRound;
+					do {
+						lastRound = !writing.get();
+						int nRead;
+						byte[] readBuffer = new byte[writeBytes.length];
+						if (useReadView) {
+							TableReadView view = tableStorage.readView("table1", 0, 0, writeBytes.length);
+							nRead = view.getSize();
+							view.copyTo(readBuffer, 0);
+							view.release();
+						} else {
+							nRead = tableStorage.read("table1", 0, 0, writeBytes.length, readBuffer);
+						}
+						// every read returns the bytes written so far, without gaps
+						Assert.assertTrue(nRead >= lastRead);
+						Assert.assertArrayEquals(
+							Arrays.copyOf(writeBytes, nRead), Arrays.copyOf(readBuffer, nRead));
+						lastRead = nRead;
+					} while (!lastRound);
+					Assert.assertEquals(writeBytes.length, lastRead);
+				} catch (Throwable t) {
+					error.compareAndSet(null, t);
+				}
+			});
+		}
+
+		tableStorage.write("table1", 0, Arrays.copyOf(writeBytes, 1));
+		for (Thread reader : readers) {
+			reader.start();
+		}
+		Random random = new Random(42);
+		int offset = 1;
+		while (offset < writeBytes.length) {
+			int chunkSize = Math.min(1 + random.nextInt(40), writeBytes.length - offset);
+			tableStorage.write("table1", 0, Arrays.copyOfRange(writeBytes, offset, offset + chunkSize));
+			offset += chunkSize;
+		}
+		writing.set(false);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+
+		if (error.get() != null) {
+			throw new AssertionError("Concurrent read failed.", error.get());
+		}
+		tableStorage.close();
+	}
+
+	@Test
+	public void testCompressedWriteAndRead() throws Exception {
+		File dir = createTempDir("flink_table_storage");
+		Configuration config = new Configuration();
+		config.setString(TableServiceOptions.TABLE_SERVICE_STORAGE_ROOT_PATH, dir.getAbsolutePath());
+		config.setInteger(TableServiceOptions.TABLE_SERVICE_STORAGE_SEGMENT_MAX_SIZE, 4096);
+		config.setInteger(TableServiceOptions.TABLE_SERVICE_STORAGE_PAGE_SIZE, 1024);
+		config.setBoolean(TableServiceOptions.TABLE_SERVICE_STORAGE_COMPRESSION_ENABLED, true);
+		TableStorage tableStorage = new TableStorage();
+		tableStorage.open(config);
+
+		// compressible bytes, written in chunks which do not align with the pages and segments
+		byte[] writeBytes = new byte[10000];
+		for (int i = 0; i < writeBytes.length; i++) {
+			writeBytes[i] = (byte) (i / 100);
+		}
+		int offset = 0;
+		for (int chunkSize : new int[] {100, 1500, 3000, 5400}) {
+			tableStorage.write("table1", 0, Arrays.copyOfRange(writeBytes, offset, offset + chunkSize));
+			offset += chunkSize;
+		}
+
+		NavigableMap<Long, File> offsetTracker =
+			tableStorage.getPartitionSegmentTracker().get(tableStorage.getPartitionDirPath("table1", 0));
+		Assert.assertEquals(3, offsetTracker.size());
+		for (File segmentFile : offsetTracker.values()) {
+			Assert.assertTrue(segmentFile.length() < 4096);
+		}
+
+		byte[] readBuffer = new byte[writeBytes.length + 10];
+		Assert.assertEquals(writeBytes.length, tableStorage.read("table1", 0, 0, readBuffer.length, readBuffer));
+		Assert.assertArrayEquals(writeBytes, Arrays.copyOf(readBuffer, writeBytes.length));
+
+		readBuffer = new byte[3000];
+		Assert.assertEquals(3000, tableStorage.read("table1", 0, 3500, 3000, readBuffer));
+		Assert.assertArrayEquals(Arrays.copyOfRange(writeBytes, 3500, 6500), readBuffer);
+
+		tableStorage.close();
+	}
+
+	@Test
+	public void testReadViewPinsPages() throws Exception {
+		File dir = createTempDir("flink_table_storage");
+		Configuration config = new Configuration();
+		config.setString(TableServiceOptions.TABLE_SERVICE_STORAGE_ROOT_PATH, dir.getAbsolutePath());
+		config.setInteger(TableServiceOptions.TABLE_SERVICE_STORAGE_PAGE_SIZE, 4);
+		config.setLong(TableServiceOptions.TABLE_SERVICE_STORAGE_CACHE_SIZE, 8);
+		TableStorage tableStorage = new TableStorage();
+		tableStorage.open(config);
+		byte[] writeBytes = createBytes(16);
+		tableStorage.write("table1", 0, writeBytes);
+
+		// the view holds both pages of the cache
+		TableReadView view = tableStorage.readView("table1", 0, 2, 4);
+		Assert.assertEquals(4, view.getSize());
+		Assert.assertEquals(2, view.getBuffers().length);
+
+		// the other pages can not be cached, but are still read
+		byte[] readBuffer = new byte[8];
+		Assert.assertEquals(8, tableStorage.read("table1", 0, 8, 8, readBuffer));
+		Assert.assertArrayEquals(Arrays.copyOfRange(writeBytes, 8, 16), readBuffer);
+
+		byte[] viewBytes = new byte[4];
+		view.copyTo(viewBytes, 0);
+		Assert.assertArrayEquals(Arrays.copyOfRange(writeBytes, 2, 6), viewBytes);
+		view.release();
+
+		// now the pages of the view can be evicted
+		Assert.assertEquals(8, tableStorage.read("table1", 0, 8, 8, readBuffer));
+		Assert.assertEquals(2, tableStorage.getPageCache().getNumEvictions());
+
+		tableStorage.close();
+	}
+
+	private static byte[] createBytes(int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) i;
+		}
+		return bytes;
+	}
+
 	@Test
 	public void testClose() throws Exception {
 		File dir = createTempDir("flink_table_storage");
@@ -25,6 +25,21 @@ import org.apache.flink.api.common.typeutils.CompatibilityResult;
 import org.apache.flink.api.common.typeutils.SerializerTestInstance;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.api.common.typeutils.TypeSerializerConfigSnapshot;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.runtime.io.network.api.serialization.RecordDeserializer;
+import org.apache.flink.runtime.io.network.api.serialization.RecordDeserializer.DeserializationResult;
+import org.apache.flink.runtime.io.network.api.serialization.RecordSerializer;
+import org.apache.flink.runtime.io.network.api.serialization.SpanningRecordSerializer;
+import org.apache.flink.runtime.io.network.api.serialization.SpillingAdaptiveSpanningRecordDeserializer;
+import org.apache.flink.runtime.io.network.buffer.BufferBuilder;
+import org.apache.flink.runtime.io.network.buffer.BufferConsumer;
+import org.apache.flink.runtime.io.network.buffer.FreeingBufferRecycler;
+import org.apache.flink.runtime.plugable.DeserializationDelegate;
+import org.apache.flink.runtime.plugable.ReusingDeserializationDelegate;
+import org.apache.flink.runtime.plugable.SerializationDelegate;
 import org.apache.flink.table.dataformat.BinaryRow;
 import org.apache.flink.table.dataformat.BinaryRowWriter;
 import org.apache.flink.table.dataformat.util.BaseRowUtil;
@@ -35,6 +50,10 @@ import org.junit.Test;
 import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test for {@link BinaryRowSerializer}.
@@ -101,6 +120,59 @@ public class BinaryRowSerializerTest {
 		testInstance.testAll();
 	}
 
+	@Test
+	public void testZeroCopyDeserialization() throws Exception {
+		BinaryRowSerializer serializer = new BinaryRowSerializer(Types.INT, Types.LONG);
+		BinaryRow row = createRow(1, 1L);
+
+		// serialize the row into a network buffer as the record writer does
+		MemorySegment segment = MemorySegmentFactory.allocateUnpooledSegment(1024);
+		BufferBuilder bufferBuilder = new BufferBuilder(segment, FreeingBufferRecycler.INSTANCE);
+		BufferConsumer bufferConsumer = bufferBuilder.createBufferConsumer();
+		SerializationDelegate<BinaryRow> serializationDelegate = new SerializationDelegate<>(serializer);
+		serializationDelegate.setInstance(row);
+		RecordSerializer<SerializationDelegate<BinaryRow>> recordSerializer = new SpanningRecordSerializer<>();
+		recordSerializer.serializeRecord(serializationDelegate);
+		recordSerializer.copyToBufferBuilder(bufferBuilder);
+		bufferBuilder.finish();
+
+		RecordDeserializer<DeserializationDelegate<BinaryRow>> recordDeserializer =
+			new SpillingAdaptiveSpanningRecordDeserializer<>(new String[0], true);
+		recordDeserializer.setNextBuffer(bufferConsumer.build());
+		bufferConsumer.close();
+		BinaryRow reuse = serializer.createInstance();
+		DeserializationDelegate<BinaryRow> deserializationDelegate = new ReusingDeserializationDelegate<>(serializer);
+		deserializationDelegate.setInstance(reuse);
+
+		assertEquals(
+			DeserializationResult.LAST_RECORD_FROM_BUFFER, recordDeserializer.getNextRecord(deserializationDelegate));
+		assertSame(segment, reuse.getMemorySegment());
+		assertEquals(row, reuse);
+
+		// copying into the reused row must not overwrite the referenced buffer
+		BinaryRow other = createRow(2, 2L);
+		DataOutputSerializer output = new DataOutputSerializer(64);
+		serializer.serialize(other, output);
+		serializer.deserialize(reuse, new DataInputDeserializer(output.getSharedBuffer(), 0, output.length()));
+		assertNotSame(segment, reuse.getMemorySegment());
+		assertEquals(other, reuse);
+
+		// the consumed buffer is only recycled once the deserializer does not need it anymore
+		recordDeserializer.getCurrentBuffer().recycleBuffer();
+		assertFalse(segment.isFreed());
+		recordDeserializer.clear();
+		assertTrue(segment.isFreed());
+	}
+
+	private static BinaryRow createRow(int i, long l) {
+		BinaryRow row = new BinaryRow(2);
+		BinaryRowWriter writer = new BinaryRowWriter(row);
+		writer.writeInt(0, i);
+		writer.writeLong(1, l);
+		writer.complete();
+		return row;
+	}
+
 	// ----------------------------------------------------------------------------------------------
 
 	private class BinaryRowSerializerTestInstance extends SerializerTestInstance<BinaryRow> {
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.table.typeutils;
+
+import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.runtime.io.network.api.serialization.RecordDeserializer;
+import org.apache.flink.runtime.io.network.api.serialization.RecordDeserializer.DeserializationResult;
+import org.apache.flink.runtime.io.network.api.serialization.RecordSerializer;
+import org.apache.flink.runtime.io.network.api.serialization.RecordSerializer.SerializationResult;
+import org.apache.flink.runtime.io.network.api.serialization.SpanningRecordSerializer;
+import org.apache.flink.runtime.io.network.api.serialization.SpillingAdaptiveSpanningRecordDeserializer;
+import org.apache.flink.runtime.io.network.buffer.BufferBuilder;
+import org.apache.flink.runtime.io.network.buffer.BufferConsumer;
+import org.apache.flink.runtime.io.network.buffer.BufferRecycler;
+import org.apache.flink.runtime.plugable.DeserializationDelegate;
+import org.apache.flink.runtime.plugable.ReusingDeserializationDelegate;
+import org.apache.flink.runtime.plugable.SerializationDelegate;
+import org.apache.flink.table.dataformat.BinaryRow;
+import org.apache.flink.table.dataformat.BinaryRowWriter;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the throughput of handing {@link BinaryRow}s to a co-located consumer with and
+ * without zero copy deserialization. The rows are serialized into network buffers which are
+ * handed over by reference, as a local input channel does, and deserialized into a reused row.
+ */
+public class BinaryRowZeroCopyPerformanceTest extends TestLogger {
+
+	private static final int NUM_FIELDS = 8;
+
+	private static final int NUM_ROWS = 10_000_000;
+
+	private static final int BUFFER_SIZE = 32 * 1024;
+
+	private static final int NUM_ROUNDS = 5;
+
+	private static final BufferRecycler NO_OP_RECYCLER = segment -> {};
+
+	@Ignore
+	@Test
+	public void benchMark() throws Exception {
+		for (boolean zeroCopyEnabled : new boolean[] {false, true}) {
+			long nanos = 0;
+			// only the last round is reported, the others warm up the JIT
+			for (int round = 0; round < NUM_ROUNDS; ++round) {
+				long start = System.nanoTime();
+				transferRows(zeroCopyEnabled);
+				nanos = System.nanoTime() - start;
+			}
+
+			log.info("zero copy {}: {} rows/s", zeroCopyEnabled, String.format("%.0f", NUM_ROWS / (nanos / 1_000_000_000.0)));
+		}
+	}
+
+	private void transferRows(boolean zeroCopyEnabled) throws IOException {
+		TypeInformation<?>[] types = new TypeInformation<?>[NUM_FIELDS];
+		types[0] = BasicTypeInfo.INT_TYPE_INFO;
+		for (int i = 1; i < NUM_FIELDS; ++i) {
+			types[i] = BasicTypeInfo.LONG_TYPE_INFO;
+		}
+		BinaryRowSerializer serializer = new BinaryRowSerializer(types);
+
+		RecordSerializer<SerializationDelegate<BinaryRow>> recordSerializer = new SpanningRecordSerializer<>();
+		SerializationDelegate<BinaryRow> serializationDelegate = new SerializationDelegate<>(serializer);
+		RecordDeserializer<DeserializationDelegate<BinaryRow>> recordDeserializer =
+			new SpillingAdaptiveSpanningRecordDeserializer<>(new String[0], zeroCopyEnabled);
+		DeserializationDelegate<BinaryRow> deserializationDelegate = new ReusingDeserializationDelegate<>(serializer);
+		deserializationDelegate.setInstance(serializer.createInstance());
+
+		BinaryRow row = new BinaryRow(NUM_FIELDS);
+		BinaryRowWriter writer = new BinaryRowWriter(row);
+
+		MemorySegment segment = MemorySegmentFactory.wrapPooledOffHeapMemory(ByteBuffer.allocateDirect(BUFFER_SIZE), null);
+		BufferBuilder bufferBuilder = new BufferBuilder(segment, NO_OP_RECYCLER);
+		BufferConsumer bufferConsumer = bufferBuilder.createBufferConsumer();
+
+		long sum = 0;
+		for (int i = 0; i < NUM_ROWS; ++i) {
+			writer.reset();
+			writer.writeInt(0, i);
+			for (int j = 1; j < NUM_FIELDS; ++j) {
+				writer.writeLong(j, i + j);
+			}
+			writer.complete();
+
+			serializationDelegate.setInstance(row);
+			recordSerializer.serializeRecord(serializationDelegate);
+			SerializationResult result = recordSerializer.copyToBufferBuilder(bufferBuilder);
+			while (result.isFullBuffer()) {
+				bufferBuilder.finish();
+				sum += consumeRows(bufferConsumer, recordDeserializer, deserializationDelegate);
+
+				bufferBuilder = new BufferBuilder(segment, NO_OP_RECYCLER);
+				bufferConsumer = bufferBuilder.createBufferConsumer();
+				result = recordSerializer.copyToBufferBuilder(bufferBuilder);
+			}
+		}
+		bufferBuilder.finish();
+		sum += consumeRows(bufferConsumer, recordDeserializer, deserializationDelegate);
+		recordDeserializer.clear();
+
+		assertEquals((long) NUM_ROWS * (NUM_ROWS - 1) / 2, sum);
+	}
+
+	private static long consumeRows(
+			BufferConsumer bufferConsumer,
+			RecordDeserializer<DeserializationDelegate<BinaryRow>> recordDeserializer,
+			DeserializationDelegate<BinaryRow> deserializationDelegate) throws IOException {
+
+		// the local input channel hands the buffer over without copying it
+		recordDeserializer.setNextBuffer(bufferConsumer.build());
+		bufferConsumer.close();
+
+		long sum = 0;
+		DeserializationResult result;
+		do {
+			result = recordDeserializer.getNextRecord(deserializationDelegate);
+			if (result.isFullRecord()) {
+				sum += deserializationDelegate.getInstance().getInt(0);
+			}
+		} while (!result.isBufferConsumed());
+		recordDeserializer.getCurrentBuffer().recycleBuffer();
+
+		return sum;
+	}
+}
@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.table.codegen
+
+import java.math.BigDecimal
+
+import org.apache.flink.streaming.api.operators.{AbstractStreamOperator, OneInputStreamOperator, Output}
+import org.apache.flink.streaming.api.watermark.Watermark
+import org.apache.flink.streaming.runtime.streamrecord.{LatencyMarker, StreamRecord}
+import org.apache.flink.table.api.TableConfig
+import org.apache.flink.table.api.types.RowType
+import org.apache.flink.table.calcite.{FlinkTypeFactory, FlinkTypeSystem}
+import org.apache.flink.table.dataformat.vector._
+import org.apache.flink.util.OutputTag
+
+import org.apache.calcite.rel.`type`.RelDataType
+import org.apache.calcite.rex.{RexBuilder, RexNode, RexProgram, RexProgramBuilder}
+import org.apache.calcite.sql.SqlOperator
+import org.apache.calcite.sql.`type`.SqlTypeName
+import org.apache.calcite.sql.`type`.SqlTypeName._
+import org.apache.calcite.sql.fun.SqlStdOperatorTable
+import org.junit.Assert.{assertEquals, assertFalse, assertSame, assertTrue}
+import org.junit.Test
+
+import scala.collection.JavaConverters._
+import scala.collection.mutable.ArrayBuffer
+
+/**
+  * Tests for the vectorized calc operators which are generated by
+  * [[CalcCodeGenerator.generateVectorizedCalcOperator]]. The operators are compiled and run on
+  * [[VectorizedColumnBatch]]es of the fields a INT, b BIGINT, c DOUBLE and d BOOLEAN.
+  */
+class VectorizedCalcCodeGeneratorTest {
+
+  private val typeFactory = new FlinkTypeFactory(new FlinkTypeSystem)
+
+  private val rexBuilder = new RexBuilder(typeFactory)
+
+  private val inputRelType: RelDataType = typeFactory.createStructType(
+    Seq(INTEGER, BIGINT, DOUBLE, BOOLEAN).map(nullableType).asJava,
+    Seq("a", "b", "c", "d").asJava)
+
+  private val inputType: RowType = FlinkTypeFactory.toInternalRowType(inputRelType)
+
+  /** The batches emitted by the operator, as they are. */
+  private val outputs = new ArrayBuffer[VectorizedColumnBatch]
+
+  @Test
+  def testFilterNarrowsSelection(): Unit = {
+    val program = createProgram(
+      (0 until inputType.getArity).map(field),
+      Some(call(SqlStdOperatorTable.GREATER_THAN, field(0), literal(1))))
+    val operator = createOperator(program)
+
+    // the filter does not copy the batch, it only narrows its selection vector
+    val batch = createBatch(
+      Seq(1, 10L, 1.5, true),
+      Seq(2, 20L, 2.5, false),
+      Seq(null, 30L, 3.5, true),
+      Seq(3, null, 4.5, null))
+    operator.processElement(new StreamRecord(batch))
+    assertEquals(1, outputs.size)
+    assertSame(batch, outputs.head)
+    assertTrue(batch.selectedInUse)
+    assertEquals(
+      Seq(Seq(2, 20L, 2.5, false), Seq(3, null, 4.5, null)),
+      selectedRows(batch))
+
+    // an existing selection is narrowed further
+    val selectedBatch = createBatch(
+      Seq(2, 10L, 1.5, true),
+      Seq(1, 20L, 2.5, false),
+      Seq(3, 30L, 3.5, true))
+    selectedBatch.getOrCreateSelected()(0) = 1
+    selectedBatch.getOrCreateSelected()(1) = 2
+    selectedBatch.selectedInUse = true
+    selectedBatch.setNumRows(2)
+    operator.processElement(new StreamRecord(selectedBatch))
+    assertEquals(2, outputs.size)
+    assertEquals(Seq(Seq(3, 30L, 3.5, true)), selectedRows(selectedBatch))
+
+    // the selection is not used if all rows pass the filter
+    val passingBatch = createBatch(Seq(2, 10L, 1.5, true), Seq(3, 20L, 2.5, false))
+    operator.processElement(new StreamRecord(passingBatch))
+    assertEquals(3, outputs.size)
+    assertFalse(passingBatch.selectedInUse)
+    assertEquals(2, passingBatch.getNumRows)
+
+    // nothing is emitted if no row passes the filter
+    operator.processElement(new StreamRecord(createBatch(Seq(1, 10L, 1.5, true))))
+    assertEquals(3, outputs.size)
+  }
+
+  @Test
+  def testArithmeticsAndCasts(): Unit = {
+    val program = createProgram(Seq(
+      // a + 1
+      call(SqlStdOperatorTable.PLUS, field(0), literal(1)),
+      // b * CAST(a AS BIGINT)
+      call(SqlStdOperatorTable.MULTIPLY, field(1), cast(field(0), BIGINT)),
+      // c - CAST(b AS DOUBLE)
+      call(SqlStdOperatorTable.MINUS, field(2), cast(field(1), DOUBLE)),
+      // CAST(c AS INTEGER)
+      cast(field(2), INTEGER)))
+    val operator = createOperator(program)
+
+    operator.processElement(new StreamRecord(createBatch(
+      Seq(1, 10L, 1.5, true),
+      Seq(2, 20L, 2.5, false),
+      Seq(null, 30L, 3.5, true),
+      Seq(3, null, 4.5, null))))
+
+    assertEquals(1, outputs.size)
+    assertEquals(
+      Seq(
+        Seq(2, 10L, -8.5, 1),
+        Seq(3, 40L, -17.5, 2),
+        Seq(null, null, -26.5, 3),
+        Seq(4, null, null, 4)),
+      selectedRows(outputs.head))
+  }
+
+  @Test
+  def testNullPropagationThroughLogicalOperators(): Unit = {
+    val aGreaterThanOne = call(SqlStdOperatorTable.GREATER_THAN, field(0), literal(1))
+    val program = createProgram(Seq(
+      call(SqlStdOperatorTable.AND, aGreaterThanOne, field(3)),
+      call(SqlStdOperatorTable.OR, aGreaterThanOne, field(3)),
+      call(SqlStdOperatorTable.IS_NULL, field(0)),
+      call(SqlStdOperatorTable.IS_NOT_NULL, field(3)),
+      call(SqlStdOperatorTable.NOT, field(3))))
+    val operator = createOperator(program)
+
+    val rows = Seq(
+      Seq(null, 0L, 0.0, false),
+      Seq(null, 0L, 0.0, true),
+      Seq(2, 0L, 0.0, null),
+      Seq(0, 0L, 0.0, null),
+      Seq(2, 0L, 0.0, true))
+    operator.processElement(new StreamRecord(createBatch(rows: _*)))
+
+    // AND is false if any operand is false, OR is true if any operand is true, and both are
+    // null otherwise if any operand is null
+    assertEquals(1, outputs.size)
+    assertEquals(
+      Seq(
+        Seq(false, null, true, true, true),
+        Seq(null, true, true, true, false),
+        Seq(null, true, false, false, null),
+        Seq(false, null, false, false, null),
+        Seq(true, true, false, true, false)),
+      selectedRows(outputs.head))
+
+    // the rows for which the condition is null are filtered out
+    val filter = createOperator(createProgram(
+      (0 until inputType.getArity).map(field),
+      Some(call(SqlStdOperatorTable.OR, aGreaterThanOne, field(3)))))
+    val batch = createBatch(rows: _*)
+    filter.processElement(new StreamRecord(batch))
+    assertEquals(Seq(rows(1), rows(2), rows(4)), selectedRows(batch))
+  }
+
+  @Test
+  def testPassThroughProjection(): Unit = {
+    // c, a, a * 2
+    val program = createProgram(Seq(
+      field(2),
+      field(0),
+      call(SqlStdOperatorTable.MULTIPLY, field(0), literal(2))))
+    val operator = createOperator(program)
+
+    val batch = createBatch(
+      Seq(1, 10L, 1.5, true),
+      Seq(null, 20L, 2.5, false),
+      Seq(3, 30L, 3.5, true))
+    batch.getOrCreateSelected()(0) = 1
+    batch.getOrCreateSelected()(1) = 2
+    batch.selectedInUse = true
+    batch.setNumRows(2)
+    operator.processElement(new StreamRecord(batch))
+
+    // the projected fields reference the input columns, and the selection is kept
+    assertEquals(1, outputs.size)
+    val output = outputs.head
+    assertSame(batch.columns(2), output.columns(0))
+    assertSame(batch.columns(0), output.columns(1))
+    assertSame(batch.selected, output.selected)
+    assertTrue(output.selectedInUse)
+    assertEquals(
+      Seq(Seq(2.5, null, null), Seq(3.5, 3, 6)),
+      selectedRows(output))
+  }
+
+  // ------------------------------------------------------------------------
+
+  private def createOperator(
+      program: RexProgram): OneInputStreamOperator[VectorizedColumnBatch, VectorizedColumnBatch] = {
+    val config = new TableConfig
+    val outputType = FlinkTypeFactory.toInternalRowType(program.getOutputRowType)
+    assertTrue(CalcCodeGenerator.isVectorizable(inputType, program, condition(program)))
+
+    val substituteOperator = CalcCodeGenerator.generateVectorizedCalcOperator(
+      CodeGeneratorContext(config),
+      inputType,
+      outputType,
+      config,
+      program,
+      condition(program),
+      "VectorizedCalc")
+    val operator = substituteOperator.getActualStreamOperator(getClass.getClassLoader)
+      .asInstanceOf[OneInputStreamOperator[VectorizedColumnBatch, VectorizedColumnBatch]]
+
+    // the output is set directly, so that the emitted batches are not copied
+    val outputField = classOf[AbstractStreamOperator[_]].getDeclaredField("output")
+    outputField.setAccessible(true)
+    outputField.set(operator, new BatchOutput)
+    operator
+  }
+
+  private def condition(program: RexProgram): Option[RexNode] =
+    Option(program.getCondition).map(program.expandLocalRef)
+
+  private def createProgram(projection: Seq[RexNode], condition: Option[RexNode] = None)
+    : RexProgram = {
+    val builder = new RexProgramBuilder(inputRelType, rexBuilder)
+    projection.zipWithIndex.foreach { case (rexNode, index) =>
+      builder.addProject(rexNode, s"f$index")
+    }
+    condition.foreach(builder.addCondition)
+    builder.getProgram
+  }
+
+  private def nullableType(typeName: SqlTypeName): RelDataType =
+    typeFactory.createTypeWithNullability(typeFactory.createSqlType(typeName), true)
+
+  private def field(index: Int): RexNode =
+    rexBuilder.makeInputRef(inputRelType.getFieldList.get(index).getType, index)
+
+  private def literal(value: Int): RexNode =
+    rexBuilder.makeExactLiteral(BigDecimal.valueOf(value.toLong))
+
+  private def cast(operand: RexNode, typeName: SqlTypeName): RexNode =
+    rexBuilder.makeCast(nullableType(typeName), operand)
+
+  private def call(operator: SqlOperator, operands: RexNode*): RexNode =
+    rexBuilder.makeCall(operator, operands: _*)
+
+  private def createBatch(rows: Seq[Any]*): VectorizedColumnBatch = {
+    val batch = VectorizedColumnBatch.allocate(inputType.getFieldInternalTypes)
+    for ((row, rowId) <- rows.zipWithIndex; (value, colId) <- row.zipWithIndex) {
+      val column = batch.columns(colId)
+      if (value == null) {
+        column.noNulls = false
+        column.isNull(rowId) = true
+      } else {
+        column match {
+          case v: IntegerColumnVector => v.vector(rowId) = value.asInstanceOf[Int]
+          case v: LongColumnVector => v.vector(rowId) = value.asInstanceOf[Long]
+          case v: DoubleColumnVector => v.vector(rowId) = value.asInstanceOf[Double]
+          case v: BooleanColumnVector => v.vector(rowId) = value.asInstanceOf[Boolean]
+        }
+      }
+    }
+    batch.setNumRows(rows.size)
+    batch
+  }
+
+  private def selectedRows(batch: VectorizedColumnBatch): Seq[Seq[Any]] =
+    (0 until batch.getNumRows).map { i =>
+      val rowId = batch.getSelectedRowId(i)
+      (0 until batch.getArity).map { colId =>
+        if (batch.isNullAt(rowId, colId)) {
+          null
+        } else {
+          batch.columns(colId) match {
+            case v: IntegerColumnVector => v.vector(rowId)
+            case v: LongColumnVector => v.vector(rowId)
+            case v: DoubleColumnVector => v.vector(rowId)
+            case v: BooleanColumnVector => v.vector(rowId)
+          }
+        }
+      }
+    }
+
+  private class BatchOutput extends Output[StreamRecord[VectorizedColumnBatch]] {
+
+    override def collect(record: StreamRecord[VectorizedColumnBatch]): Unit =
+      outputs += record.getValue
+
+    override def collect[X](outputTag: OutputTag[X], record: StreamRecord[X]): Unit =
+      throw new UnsupportedOperationException
+
+    override def emitWatermark(mark: Watermark): Unit =
+      throw new UnsupportedOperationException
+
+    override def emitLatencyMarker(latencyMarker: LatencyMarker): Unit =
+      throw new UnsupportedOperationException
+
+    override def close(): Unit = {}
+  }
+}
@@ -18,6 +18,7 @@
 
 package org.apache.flink.runtime.checkpoint;
 
+import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.runtime.executiongraph.Execution;
 import org.apache.flink.runtime.executiongraph.ExecutionJobVertex;
@@ -54,6 +55,13 @@ public class StateAssignmentOperation {
 
 	private static final Logger LOG = LoggerFactory.getLogger(StateAssignmentOperation.class);
 
+	/**
+	 * The name of the operator state which tasks persist the in-flight data of checkpoints in, when
+	 * the checkpoints are taken without barrier alignment. The state is reported as a separate
+	 * handle of the subtask, and it can only be restored into the same subtask.
+	 */
+	public static final String IN_FLIGHT_DATA_STATE_NAME = "_in_flight_data_";
+
 	private final Map<JobVertexID, ExecutionJobVertex> tasks;
 	private final Map<OperatorID, OperatorState> operatorStates;
 
@@ -383,7 +391,8 @@ public class StateAssignmentOperation {
 		}
 	}
 
-	private void reDistributePartitionableStates(
+	@VisibleForTesting
+	static void reDistributePartitionableStates(
 		List<OperatorState> oldOperatorStates,
 		int newParallelism,
 		List<OperatorID> newOperatorIDs,
@@ -405,11 +414,35 @@ public class StateAssignmentOperation {
 
 		for (int operatorIndex = 0; operatorIndex < oldOperatorStates.size(); operatorIndex++) {
 			OperatorID operatorID = newOperatorIDs.get(operatorIndex);
-			int oldParallelism = oldOperatorStates.get(operatorIndex).getParallelism();
+			OperatorState oldOperatorState = oldOperatorStates.get(operatorIndex);
+			int oldParallelism = oldOperatorState.getParallelism();
+
+			List<OperatorStateHandle> oldManagedOperatorState = oldManagedOperatorStates.get(operatorIndex);
+			Map<OperatorInstanceID, List<OperatorStateHandle>> inFlightDataStates = Collections.emptyMap();
+
+			// the in-flight data is an extra handle of its subtask, which would shift the handles of the
+			// other subtasks when the old handles are assigned by their position
+			if (oldManagedOperatorState != null) {
+				inFlightDataStates = collectInFlightDataStates(oldOperatorState, operatorID);
+				if (!inFlightDataStates.isEmpty()) {
+					// the in-flight data belongs to the channels of its subtask and cannot be split
+					if (oldParallelism != newParallelism) {
+						throw new IllegalStateException("The state of operator " + operatorID + " can not be " +
+							"restored with a parallelism of " + newParallelism + ". It contains the in-flight data " +
+							"of a checkpoint taken without barrier alignment with a parallelism of " + oldParallelism +
+							", which can only be restored with the same parallelism. Please restore from a checkpoint " +
+							"with aligned barriers or a savepoint to change the parallelism.");
+					}
+
+					oldManagedOperatorState = new ArrayList<>(oldManagedOperatorState);
+					oldManagedOperatorState.removeIf(StateAssignmentOperation::isInFlightDataState);
+				}
+			}
+
 			newManagedOperatorStates.putAll(applyRepartitioner(
 				operatorID,
 				opStateRepartitioner,
-				oldManagedOperatorStates.get(operatorIndex),
+				oldManagedOperatorState,
 				oldParallelism,
 				newParallelism));
 			newRawOperatorStates.putAll(applyRepartitioner(
@@ -418,10 +451,48 @@ public class StateAssignmentOperation {
 				oldRawOperatorStates.get(operatorIndex),
 				oldParallelism,
 				newParallelism));
+
+			for (Map.Entry<OperatorInstanceID, List<OperatorStateHandle>> inFlightDataState : inFlightDataStates.entrySet()) {
+				newManagedOperatorStates
+					.computeIfAbsent(inFlightDataState.getKey(), key -> new ArrayList<>())
+					.addAll(inFlightDataState.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Collects the handles of the in-flight data of the subtasks of the given operator.
+	 */
+	private static Map<OperatorInstanceID, List<OperatorStateHandle>> collectInFlightDataStates(
+		OperatorState operatorState,
+		OperatorID operatorID) {
+
+		Map<OperatorInstanceID, List<OperatorStateHandle>> inFlightDataStates = new HashMap<>();
+
+		for (int subtaskIndex = 0; subtaskIndex < operatorState.getParallelism(); subtaskIndex++) {
+			OperatorSubtaskState operatorSubtaskState = operatorState.getState(subtaskIndex);
+			if (operatorSubtaskState == null) {
+				continue;
+			}
+
+			for (OperatorStateHandle operatorStateHandle : operatorSubtaskState.getManagedOperatorState()) {
+				if (isInFlightDataState(operatorStateHandle)) {
+					inFlightDataStates
+						.computeIfAbsent(OperatorInstanceID.of(subtaskIndex, operatorID), key -> new ArrayList<>())
+						.add(operatorStateHandle);
+				}
+			}
 		}
+
+		return inFlightDataStates;
+	}
+
+	private static boolean isInFlightDataState(OperatorStateHandle operatorStateHandle) {
+		Map<String, OperatorStateHandle.StateMetaInfo> partitionOffsets = operatorStateHandle.getStateNameToPartitionOffsets();
+		return partitionOffsets.size() == 1 && partitionOffsets.containsKey(IN_FLIGHT_DATA_STATE_NAME);
 	}
 
-	private void collectPartionableStates(
+	private static void collectPartionableStates(
 		List<OperatorState> operatorStates,
 		List<List<OperatorStateHandle>> managedOperatorStates,
 		List<List<OperatorStateHandle>> rawOperatorStates) {
@@ -59,12 +59,25 @@ public class InputGateDeploymentDescriptor implements Serializable {
 	/** An input channel for each consumed subpartition. */
 	private final InputChannelDeploymentDescriptor[] inputChannels;
 
+	/** Whether records may reference the received buffers instead of being copied out of them. */
+	private final boolean zeroCopyEnabled;
+
 	public InputGateDeploymentDescriptor(
 			IntermediateDataSetID consumedResultId,
 			ResultPartitionType consumedPartitionType,
 			int consumedSubpartitionIndex,
 			InputChannelDeploymentDescriptor[] inputChannels) {
 
+		this(consumedResultId, consumedPartitionType, consumedSubpartitionIndex, inputChannels, false);
+	}
+
+	public InputGateDeploymentDescriptor(
+			IntermediateDataSetID consumedResultId,
+			ResultPartitionType consumedPartitionType,
+			int consumedSubpartitionIndex,
+			InputChannelDeploymentDescriptor[] inputChannels,
+			boolean zeroCopyEnabled) {
+
 		this.consumedResultId = checkNotNull(consumedResultId);
 		this.consumedPartitionType = checkNotNull(consumedPartitionType);
 
@@ -72,6 +85,7 @@ public class InputGateDeploymentDescriptor implements Serializable {
 		this.consumedSubpartitionIndex = consumedSubpartitionIndex;
 
 		this.inputChannels = checkNotNull(inputChannels);
+		this.zeroCopyEnabled = zeroCopyEnabled;
 	}
 
 	public IntermediateDataSetID getConsumedResultId() {
@@ -95,6 +109,10 @@ public class InputGateDeploymentDescriptor implements Serializable {
 		return inputChannels;
 	}
 
+	public boolean isZeroCopyEnabled() {
+		return zeroCopyEnabled;
+	}
+
 	@Override
 	public String toString() {
 		return String.format("InputGateDeploymentDescriptor [result id: %s, " +
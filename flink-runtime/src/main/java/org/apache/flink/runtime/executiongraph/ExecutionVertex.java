@@ -1036,8 +1036,10 @@ public class ExecutionVertex implements AccessExecutionVertex, Archiveable<Archi
 			IntermediateResult consumedIntermediateResult = edges[0].getSource().getIntermediateResult();
 			final IntermediateDataSetID resultId = consumedIntermediateResult.getId();
 			final ResultPartitionType partitionType = consumedIntermediateResult.getResultType();
+			final boolean zeroCopyEnabled = jobVertex.getJobVertex().getInputs().get(edges[0].getInputNum()).isZeroCopyEnabled();
 
-			consumedPartitions.add(new InputGateDeploymentDescriptor(resultId, partitionType, queueToRequest, partitions));
+			consumedPartitions.add(new InputGateDeploymentDescriptor(
+				resultId, partitionType, queueToRequest, partitions, zeroCopyEnabled));
 		}
 
 		final Either<SerializedValue<JobInformation>, PermanentBlobKey> jobInformationOrBlobKey = getExecutionGraph().getJobInformationOrBlobKey();
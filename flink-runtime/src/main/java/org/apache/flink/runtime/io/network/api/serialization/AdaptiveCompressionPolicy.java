@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.api.serialization;
+
+import javax.annotation.Nullable;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+
+/**
+ * Decides per channel whether the buffers written by one writer are compressed, and reports the
+ * results to the {@link CompressionStatistics} of the result partition.
+ *
+ * <p>In adaptive mode, a channel whose compression ratio falls below the minimum ratio stops
+ * compressing. Only one out of {@code sampleInterval} buffers of such a channel is compressed
+ * to sample the ratio again, so that the channel resumes compression once its data becomes
+ * compressible. Without adaptive mode all buffers are compressed and only the statistics are
+ * collected.
+ *
+ * <p>A policy belongs to a single writer and must not be shared across threads.
+ */
+public class AdaptiveCompressionPolicy {
+
+	private final boolean adaptive;
+
+	private final double minCompressionRatio;
+
+	private final int sampleInterval;
+
+	@Nullable
+	private final CompressionStatistics statistics;
+
+	/** The number of buffers to write without compression before sampling again, per channel. */
+	private final int[] numBuffersToSkip;
+
+	private int currentChannel;
+
+	public AdaptiveCompressionPolicy(
+		int numChannels,
+		boolean adaptive,
+		double minCompressionRatio,
+		int sampleInterval,
+		@Nullable CompressionStatistics statistics) {
+
+		checkArgument(numChannels > 0, "The number of channels should be larger than 0.");
+		checkArgument(minCompressionRatio >= 1.0, "The minimum compression ratio should not be less than 1.0.");
+		checkArgument(sampleInterval > 0, "The sample interval should be larger than 0.");
+		checkArgument(statistics == null || statistics.getNumChannels() == numChannels,
+			"The statistics do not match the number of channels.");
+
+		this.adaptive = adaptive;
+		this.minCompressionRatio = minCompressionRatio;
+		this.sampleInterval = sampleInterval;
+		this.statistics = statistics;
+		this.numBuffersToSkip = new int[numChannels];
+	}
+
+	/**
+	 * Sets the channel the following buffers belong to.
+	 */
+	public void setCurrentChannel(int channel) {
+		checkArgument(channel >= 0 && channel < numBuffersToSkip.length, "Invalid channel " + channel);
+		this.currentChannel = channel;
+	}
+
+	public int getCurrentChannel() {
+		return currentChannel;
+	}
+
+	public boolean isAdaptive() {
+		return adaptive;
+	}
+
+	/**
+	 * Returns whether the next buffer of the current channel should be compressed. A buffer for
+	 * which this method returned false must be reported by {@link #onBufferSkipped(int)}.
+	 */
+	boolean shouldCompress() {
+		if (numBuffersToSkip[currentChannel] > 0) {
+			numBuffersToSkip[currentChannel]--;
+			return false;
+		}
+		return true;
+	}
+
+	void onBufferCompressed(int lengthBeforeCompression, int lengthAfterCompression, long nanos) {
+		if (statistics != null) {
+			statistics.recordCompressedBuffer(currentChannel, lengthBeforeCompression, lengthAfterCompression, nanos);
+		}
+
+		if (adaptive && lengthBeforeCompression < lengthAfterCompression * minCompressionRatio) {
+			numBuffersToSkip[currentChannel] = sampleInterval - 1;
+		}
+	}
+
+	void onBufferSkipped(int length) {
+		if (statistics != null) {
+			statistics.recordSkippedBuffer(currentChannel, length);
+		}
+	}
+}
@@ -48,10 +48,19 @@ public class CompositeSpillingAdaptiveSpanningRecordDeserializer<T extends IORea
 		RecordDeserializer<BufferDeserializationDelegate> subDeserializer,
 		BufferDeserializationDelegate subDeserializationDelegate) {
 
+		this(new SpillingAdaptiveSpanningRecordDeserializer<>(tmpDirectories), subDeserializer, subDeserializationDelegate);
+	}
+
+	public CompositeSpillingAdaptiveSpanningRecordDeserializer(
+		SpillingAdaptiveSpanningRecordDeserializer<T> innerDeserializer,
+		RecordDeserializer<BufferDeserializationDelegate> subDeserializer,
+		BufferDeserializationDelegate subDeserializationDelegate) {
+
+		assert innerDeserializer != null;
 		assert subDeserializer != null;
 		assert subDeserializationDelegate != null;
 
-		this.innerDeserializer = new SpillingAdaptiveSpanningRecordDeserializer<>(tmpDirectories);
+		this.innerDeserializer = innerDeserializer;
 		this.innerDeserializationResult = DeserializationResult.INTERMEDIATE_RECORD_FROM_BUFFER;
 		this.subDeserializer = subDeserializer;
 		this.subDeserializationDelegate = subDeserializationDelegate;
@@ -72,6 +81,16 @@ public class CompositeSpillingAdaptiveSpanningRecordDeserializer<T extends IORea
 		return subDeserializer.getCurrentBuffer();
 	}
 
+	@Override
+	public Buffer getUnconsumedBuffer() {
+		if (hasUnfinishedData()) {
+			// the data of the sub-deserializer is still in its transformed (e.g. compressed) form
+			throw new UnsupportedOperationException(
+				"The unconsumed data of transformed buffers can not be copied.");
+		}
+		return null;
+	}
+
 	@Override
 	public DeserializationResult getNextRecord(T target) throws IOException {
 		// No need to deserialize another buffer from sub-deserializer if inner deserializer hasn't fully consumed its buffer.
@@ -28,26 +28,48 @@ import org.apache.flink.runtime.io.network.buffer.Buffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
 /**
  * Implementation of {@link BufferSerializationDelegate} for compression.
+ *
+ * <p>Each buffer is preceded by an 8-byte header holding the compressed length and the original
+ * length. In adaptive mode, a buffer which is not compressed, either because the
+ * {@link AdaptiveCompressionPolicy} skipped it or because it did not shrink, is written as is and
+ * is marked by the {@link #UNCOMPRESSED_FLAG} in the compressed length.
  */
 final class CompressionBufferTransformer implements BufferSerializationDelegate {
 
 	private static final Logger LOG = LoggerFactory.getLogger(CompressionBufferTransformer.class);
 
+	/** The flag in the first header field marking a buffer which is written without compression. */
+	static final int UNCOMPRESSED_FLAG = 0x80000000;
+
 	private AbstractBlockCompressor compressor;
 	private ByteBuffer bufferToBeCompressed;
 
+	/** Decides whether a buffer is compressed and collects the statistics, may be null. */
+	@Nullable
+	private final AdaptiveCompressionPolicy compressionPolicy;
+
 	/** Used as temporary buffer for output buffer if {@link DataOutputView} for output is not backed by
 	 * {@link DataOutputSerializer}. Actually {@code bufferWrapper} won't be used according to current implementation,
 	 * so initialize it on demand. */
 	private ResizableBuffer bufferWrapper;
 
 	CompressionBufferTransformer(BlockCompressionFactory blockCompressionFactory) {
+		this(blockCompressionFactory, null);
+	}
+
+	CompressionBufferTransformer(
+		BlockCompressionFactory blockCompressionFactory,
+		@Nullable AdaptiveCompressionPolicy compressionPolicy) {
+
 		this.compressor = blockCompressionFactory.getCompressor();
+		this.compressionPolicy = compressionPolicy;
 	}
 
 	@Override
@@ -66,6 +88,30 @@ final class CompressionBufferTransformer implements BufferSerializationDelegate
 	@Override
 	public void write(DataOutputView out) throws IOException {
 		ByteBuffer inputByteBuffer = bufferToBeCompressed;
+		final int lengthBeforeCompression = inputByteBuffer.remaining();
+
+		if (compressionPolicy == null) {
+			writeCompressed(inputByteBuffer, out, false);
+		} else if (compressionPolicy.shouldCompress()) {
+			long start = System.nanoTime();
+			int lengthAfterCompression = writeCompressed(inputByteBuffer, out, compressionPolicy.isAdaptive());
+			compressionPolicy.onBufferCompressed(
+				lengthBeforeCompression, lengthAfterCompression, System.nanoTime() - start);
+		} else {
+			writeUncompressed(inputByteBuffer, out);
+			compressionPolicy.onBufferSkipped(lengthBeforeCompression);
+		}
+
+		bufferToBeCompressed = null;
+	}
+
+	/**
+	 * Compresses the input buffer to the output.
+	 *
+	 * @param allowUncompressed whether to write the buffer without compression if it does not shrink.
+	 * @return The number of bytes written without the header.
+	 */
+	private int writeCompressed(ByteBuffer inputByteBuffer, DataOutputView out, boolean allowUncompressed) throws IOException {
 		final int prevInputPosition = inputByteBuffer.position();
 		final int lengthBeforeCompression = inputByteBuffer.remaining();
 		int lengthAfterCompression;
@@ -96,6 +142,15 @@ final class CompressionBufferTransformer implements BufferSerializationDelegate
 				lengthAfterCompression = compressor.compress(inputByteBuffer, outputByteBuffer);
 			}
 			assert outputByteBuffer.position() == prevOutputPosition + lengthAfterCompression + 8;
+
+			if (allowUncompressed && lengthAfterCompression >= lengthBeforeCompression) {
+				// The data is incompressible, write the original data instead.
+				inputByteBuffer.position(prevInputPosition);
+				dataOutputSerializer.position(prevOutputPosition);
+				writeUncompressed(inputByteBuffer, out);
+				return lengthBeforeCompression;
+			}
+
 			outputByteBuffer.position(prevOutputPosition);
 			outputByteBuffer.putInt(lengthAfterCompression);
 			outputByteBuffer.putInt(lengthBeforeCompression);
@@ -123,6 +178,15 @@ final class CompressionBufferTransformer implements BufferSerializationDelegate
 				lengthAfterCompression = compressor.compress(inputByteBuffer, outputByteBuffer);
 			}
 			assert outputByteBuffer.position() == lengthAfterCompression + 8;
+
+			if (allowUncompressed && lengthAfterCompression >= lengthBeforeCompression) {
+				// The data is incompressible, write the original data instead.
+				bufferWrapper.recycle();
+				inputByteBuffer.position(prevInputPosition);
+				writeUncompressed(inputByteBuffer, out);
+				return lengthBeforeCompression;
+			}
+
 			outputByteBuffer.position(0);
 			outputByteBuffer.putInt(lengthAfterCompression);
 			outputByteBuffer.putInt(lengthBeforeCompression);
@@ -134,7 +198,21 @@ final class CompressionBufferTransformer implements BufferSerializationDelegate
 			bufferWrapper.recycle();
 		}
 
-		bufferToBeCompressed = null;
+		return lengthAfterCompression;
 	}
 
+	private static void writeUncompressed(ByteBuffer inputByteBuffer, DataOutputView out) throws IOException {
+		final int length = inputByteBuffer.remaining();
+		out.writeInt(UNCOMPRESSED_FLAG | length);
+		out.writeInt(length);
+
+		if (inputByteBuffer.hasArray()) {
+			out.write(inputByteBuffer.array(), inputByteBuffer.arrayOffset() + inputByteBuffer.position(), length);
+			inputByteBuffer.position(inputByteBuffer.position() + length);
+		} else {
+			byte[] bytes = new byte[length];
+			inputByteBuffer.get(bytes);
+			out.write(bytes);
+		}
+	}
 }
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.api.serialization;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+
+/**
+ * Collects the compression statistics of the channels of a result partition. The statistics may
+ * be updated by several writers concurrently, e.g. by the spilling and the merging thread of an
+ * external result partition, and are read by the metric gauges.
+ */
+public class CompressionStatistics {
+
+	private final int numChannels;
+
+	/** The number of bytes handed to the compressor, per channel. */
+	private final AtomicLongArray numBytesBeforeCompression;
+
+	/** The number of bytes written after compression, including the skipped buffers, per channel. */
+	private final AtomicLongArray numBytesAfterCompression;
+
+	/** The time spent in compressing buffers, per channel. */
+	private final AtomicLongArray compressionTimeNanos;
+
+	/** The number of buffers written without compression, per channel. */
+	private final AtomicLongArray numSkippedBuffers;
+
+	public CompressionStatistics(int numChannels) {
+		checkArgument(numChannels > 0, "The number of channels should be larger than 0.");
+
+		this.numChannels = numChannels;
+		this.numBytesBeforeCompression = new AtomicLongArray(numChannels);
+		this.numBytesAfterCompression = new AtomicLongArray(numChannels);
+		this.compressionTimeNanos = new AtomicLongArray(numChannels);
+		this.numSkippedBuffers = new AtomicLongArray(numChannels);
+	}
+
+	public int getNumChannels() {
+		return numChannels;
+	}
+
+	void recordCompressedBuffer(int channel, int lengthBeforeCompression, int lengthAfterCompression, long nanos) {
+		numBytesBeforeCompression.addAndGet(channel, lengthBeforeCompression);
+		numBytesAfterCompression.addAndGet(channel, lengthAfterCompression);
+		compressionTimeNanos.addAndGet(channel, nanos);
+	}
+
+	void recordSkippedBuffer(int channel, int length) {
+		numBytesBeforeCompression.addAndGet(channel, length);
+		numBytesAfterCompression.addAndGet(channel, length);
+		numSkippedBuffers.incrementAndGet(channel);
+	}
+
+	/**
+	 * Returns the ratio of the original size to the written size of the given channel,
+	 * or 1.0 if nothing has been written yet.
+	 */
+	public double getCompressionRatio(int channel) {
+		long after = numBytesAfterCompression.get(channel);
+		return after == 0 ? 1.0 : (double) numBytesBeforeCompression.get(channel) / after;
+	}
+
+	public long getCompressionTimeNanos(int channel) {
+		return compressionTimeNanos.get(channel);
+	}
+
+	public long getNumSkippedBuffers(int channel) {
+		return numSkippedBuffers.get(channel);
+	}
+
+	/**
+	 * Returns the ratio of the original size to the written size of all channels,
+	 * or 1.0 if nothing has been written yet.
+	 */
+	public double getTotalCompressionRatio() {
+		long before = 0;
+		long after = 0;
+		for (int i = 0; i < numChannels; ++i) {
+			before += numBytesBeforeCompression.get(i);
+			after += numBytesAfterCompression.get(i);
+		}
+		return after == 0 ? 1.0 : (double) before / after;
+	}
+
+	public long getTotalCompressionTimeNanos() {
+		long total = 0;
+		for (int i = 0; i < numChannels; ++i) {
+			total += compressionTimeNanos.get(i);
+		}
+		return total;
+	}
+
+	public long getTotalNumSkippedBuffers() {
+		long total = 0;
+		for (int i = 0; i < numChannels; ++i) {
+			total += numSkippedBuffers.get(i);
+		}
+		return total;
+	}
+}
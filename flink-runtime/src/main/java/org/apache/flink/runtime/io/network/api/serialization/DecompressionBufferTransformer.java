@@ -60,6 +60,17 @@ final class DecompressionBufferTransformer implements BufferDeserializationDeleg
 		int lengthBeforeDecompression = in.readInt();
 		int lengthAfterDecompression = in.readInt();
 
+		if ((lengthBeforeDecompression & CompressionBufferTransformer.UNCOMPRESSED_FLAG) != 0) {
+			// The buffer has been written without compression.
+			bufferWrapper.resetCapacity(lengthAfterDecompression);
+			in.readFully(bufferWrapper.getHeapMemory(), 0, lengthAfterDecompression);
+
+			Buffer currentBuffer = bufferWrapper.getBuffer();
+			currentBuffer.setReaderIndex(0);
+			currentBuffer.setSize(lengthAfterDecompression);
+			return;
+		}
+
 		bufferWrapper.resetCapacity(lengthAfterDecompression);
 		ByteBuffer outputByteBuffer = ByteBuffer.wrap(bufferWrapper.getHeapMemory());
 
@@ -29,7 +29,10 @@ import java.nio.ByteBuffer;
 /**
  * Implementation of {@link DataInputView} to hold non-spanning record data.
  */
-final class NonSpanningWrapper implements DataInputView {
+final class NonSpanningWrapper implements ZeroCopyInputView {
+
+	/** Whether the records may reference the memory of the segment. */
+	private final boolean zeroCopyEnabled;
 
 	protected MemorySegment segment;
 
@@ -40,6 +43,14 @@ final class NonSpanningWrapper implements DataInputView {
 	private byte[] utfByteBuffer; // reusable byte buffer for utf-8 decoding
 	private char[] utfCharBuffer; // reusable char buffer for utf-8 decoding
 
+	NonSpanningWrapper() {
+		this(false);
+	}
+
+	NonSpanningWrapper(boolean zeroCopyEnabled) {
+		this.zeroCopyEnabled = zeroCopyEnabled;
+	}
+
 	int remaining() {
 		return this.limit - this.position;
 	}
@@ -56,6 +67,12 @@ final class NonSpanningWrapper implements DataInputView {
 		this.limit = leftOverLimit;
 	}
 
+	byte[] copyRemainingBytes() {
+		byte[] bytes = new byte[remaining()];
+		this.segment.get(this.position, bytes, 0, bytes.length);
+		return bytes;
+	}
+
 	ByteBuffer wrapAsByteBuffer(int length) {
 		if (length <= (limit - position)) {
 			return segment.wrap(position, length);
@@ -65,6 +82,25 @@ final class NonSpanningWrapper implements DataInputView {
 		}
 	}
 
+	// -------------------------------------------------------------------------------------------------------------
+	//                                       ZeroCopyInputView specific methods
+	// -------------------------------------------------------------------------------------------------------------
+
+	@Override
+	public int getReferenceableBytes() {
+		return zeroCopyEnabled ? remaining() : 0;
+	}
+
+	@Override
+	public MemorySegment getCurrentSegment() {
+		return segment;
+	}
+
+	@Override
+	public int getCurrentPositionInSegment() {
+		return position;
+	}
+
 	// -------------------------------------------------------------------------------------------------------------
 	//                                       DataInput specific methods
 	// -------------------------------------------------------------------------------------------------------------
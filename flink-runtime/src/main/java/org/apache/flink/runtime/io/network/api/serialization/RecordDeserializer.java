@@ -60,6 +60,15 @@ public interface RecordDeserializer<T extends IOReadableWritable> {
 
 	Buffer getCurrentBuffer();
 
+	/**
+	 * Copies the data which has been handed to this deserializer but not been returned as records
+	 * yet, i.e. the rest of the current buffer or the gathered bytes of a partial record, including
+	 * its length. The state of the deserializer is not changed.
+	 *
+	 * @return a buffer with the unconsumed data, or {@code null} if there is no unconsumed data.
+	 */
+	Buffer getUnconsumedBuffer() throws IOException;
+
 	void clear();
 
 	boolean hasUnfinishedData();
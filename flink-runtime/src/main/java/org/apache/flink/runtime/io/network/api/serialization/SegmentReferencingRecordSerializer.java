@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.api.serialization;
+
+import org.apache.flink.core.io.IOReadableWritable;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.core.memory.MemorySegmentWritable;
+import org.apache.flink.runtime.io.network.buffer.BufferBuilder;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Record serializer which, like the {@link SpanningRecordSerializer}, serializes the complete record
+ * before copying it to the target buffers, but does not copy the larger ranges of memory segments
+ * which the record writes via {@link MemorySegmentWritable#write(MemorySegment, int, int)} to the
+ * intermediate data serialization buffer. Instead, these ranges are referenced and copied from their
+ * segments to the target buffers directly. Records which consist of memory segments, like binary
+ * rows, are thereby copied only once.
+ *
+ * <p>The referenced segments must not be modified until the record is copied to all target buffers,
+ * which is the case as long as records are copied right after they are serialized. The serialized
+ * data is the same as the one of the {@link SpanningRecordSerializer}.
+ *
+ * @param <T> The type of the records that are serialized.
+ */
+public class SegmentReferencingRecordSerializer<T extends IOReadableWritable> implements RecordSerializer<T> {
+
+	/** Ranges of memory segments shorter than this are copied, which is cheaper than referencing them. */
+	static final int MIN_REFERENCED_BYTES = 64;
+
+	/** Intermediate data serialization, holding all the data except for the referenced ranges. */
+	private final ReferencingDataOutputSerializer serializationBuffer;
+
+	/** The wrapped shared buffer of the {@link #serializationBuffer}, if already wrapped. */
+	private MemorySegment serializationSegment;
+
+	/** The segments of the parts of the serialized record, null for the serialization buffer. */
+	private MemorySegment[] partSegments = new MemorySegment[4];
+
+	private int[] partOffsets = new int[4];
+
+	private int[] partLengths = new int[4];
+
+	private int numParts;
+
+	/** The part which is copied next. */
+	private int currentPart;
+
+	/** The number of bytes of the current part which have already been copied. */
+	private int currentPartOffset;
+
+	public SegmentReferencingRecordSerializer() {
+		this.serializationBuffer = new ReferencingDataOutputSerializer(128);
+	}
+
+	/**
+	 * Serializes the complete record, except for the referenced ranges of memory segments, to an
+	 * intermediate data serialization buffer.
+	 *
+	 * @param record the record to serialize
+	 */
+	@Override
+	public void serializeRecord(T record) throws IOException {
+		numParts = 0;
+		currentPart = 0;
+		currentPartOffset = 0;
+
+		serializationBuffer.clear();
+		serializationBuffer.position(4);
+		serializationBuffer.numReferencedBytes = 0;
+		serializationBuffer.partStart = 0;
+
+		// write data and length
+		record.write(serializationBuffer);
+
+		int len = serializationBuffer.length();
+		serializationBuffer.position(0);
+		serializationBuffer.writeInt(len - 4 + serializationBuffer.numReferencedBytes);
+		serializationBuffer.position(len);
+
+		serializationBuffer.finishBufferPart();
+
+		byte[] sharedBuffer = serializationBuffer.getSharedBuffer();
+		if (serializationSegment == null || serializationSegment.getArray() != sharedBuffer) {
+			serializationSegment = MemorySegmentFactory.wrap(sharedBuffer);
+		}
+	}
+
+	/**
+	 * Copies the intermediate data serialization buffer and the referenced ranges of memory segments
+	 * to the target BufferBuilder.
+	 *
+	 * @param targetBuffer the target BufferBuilder to copy to
+	 * @return how much information was written to the target buffer and
+	 *         whether this buffer is full
+	 */
+	@Override
+	public SerializationResult copyToBufferBuilder(BufferBuilder targetBuffer) {
+		while (currentPart < numParts) {
+			MemorySegment segment = partSegments[currentPart] != null ? partSegments[currentPart] : serializationSegment;
+			int remaining = partLengths[currentPart] - currentPartOffset;
+			int copied = targetBuffer.append(segment, partOffsets[currentPart] + currentPartOffset, remaining);
+
+			if (copied < remaining) {
+				currentPartOffset += copied;
+				break;
+			}
+
+			currentPart++;
+			currentPartOffset = 0;
+		}
+		targetBuffer.commit();
+
+		if (hasSerializedData()) {
+			return SerializationResult.PARTIAL_RECORD_MEMORY_SEGMENT_FULL;
+		}
+		return !targetBuffer.isFull()
+			? SerializationResult.FULL_RECORD
+			: SerializationResult.FULL_RECORD_MEMORY_SEGMENT_FULL;
+	}
+
+	@Override
+	public SerializationResult flushToBufferBuilder(BufferBuilder targetBuffer) {
+		return copyToBufferBuilder(targetBuffer);
+	}
+
+	@Override
+	public void reset() {
+		currentPart = 0;
+		currentPartOffset = 0;
+	}
+
+	@Override
+	public void prune() {
+		serializationBuffer.pruneBuffer();
+		serializationSegment = null;
+
+		// release the referenced segments
+		Arrays.fill(partSegments, null);
+		numParts = 0;
+		currentPart = 0;
+	}
+
+	@Override
+	public boolean hasSerializedData() {
+		return currentPart < numParts;
+	}
+
+	private void addPart(MemorySegment segment, int offset, int length) {
+		if (length == 0) {
+			return;
+		}
+
+		if (numParts == partSegments.length) {
+			partSegments = Arrays.copyOf(partSegments, 2 * numParts);
+			partOffsets = Arrays.copyOf(partOffsets, 2 * numParts);
+			partLengths = Arrays.copyOf(partLengths, 2 * numParts);
+		}
+
+		partSegments[numParts] = segment;
+		partOffsets[numParts] = offset;
+		partLengths[numParts] = length;
+		numParts++;
+	}
+
+	/**
+	 * The intermediate data serialization buffer, which splits the serialized record into parts
+	 * whenever a large enough range of a memory segment is written.
+	 */
+	private final class ReferencingDataOutputSerializer extends DataOutputSerializer {
+
+		/** The start position of the current part in the serialization buffer. */
+		private int partStart;
+
+		/** The number of bytes which are referenced instead of being written to the buffer. */
+		private int numReferencedBytes;
+
+		ReferencingDataOutputSerializer(int startSize) {
+			super(startSize);
+		}
+
+		@Override
+		public void write(MemorySegment segment, int off, int len) throws IOException {
+			if (len < MIN_REFERENCED_BYTES) {
+				super.write(segment, off, len);
+			} else {
+				if (len < 0 || off > segment.size() - len) {
+					throw new ArrayIndexOutOfBoundsException();
+				}
+
+				finishBufferPart();
+				addPart(segment, off, len);
+				numReferencedBytes += len;
+			}
+		}
+
+		void finishBufferPart() {
+			addPart(null, partStart, position() - partStart);
+			partStart = position();
+		}
+	}
+}
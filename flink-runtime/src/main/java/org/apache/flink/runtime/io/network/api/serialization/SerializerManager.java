@@ -23,6 +23,8 @@ import org.apache.flink.api.common.io.blockcompression.BlockCompressionFactoryLo
 import org.apache.flink.configuration.Configuration;
 import org.apache.flink.configuration.TaskManagerOptions;
 import org.apache.flink.core.io.IOReadableWritable;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.runtime.io.disk.iomanager.IOManager;
 import org.apache.flink.runtime.io.network.partition.BlockingShuffleType;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionType;
 import org.apache.flink.runtime.io.network.partition.consumer.SingleInputGate;
@@ -30,6 +32,8 @@ import org.apache.flink.runtime.io.network.partition.consumer.SingleInputGate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 import java.util.Optional;
 
 /**
@@ -53,7 +57,23 @@ public class SerializerManager<T extends IOReadableWritable> {
 	/** The max buffer size to compress external shuffle data. */
 	private final int compressionBufferSize;
 
+	/** Whether channels with incompressible data stop compressing. */
+	private final boolean adaptiveCompression;
+
+	/** The compression ratio below which a channel stops compressing in adaptive mode. */
+	private final double minCompressionRatio;
+
+	/** One out of this number of buffers is compressed to sample the ratio of a channel which stopped compressing. */
+	private final int compressionSampleInterval;
+
+	/** Whether records may reference the memory of uncompressed buffers, see {@link ZeroCopyInputView}. */
+	private final boolean zeroCopyEnabled;
+
 	public SerializerManager(ResultPartitionType resultPartitionType, Configuration configuration) {
+		this(resultPartitionType, configuration, false);
+	}
+
+	public SerializerManager(ResultPartitionType resultPartitionType, Configuration configuration, boolean zeroCopyEnabled) {
 		// Conditions to enable compression: (1) the edge is BLOCKING
 		//                                && (2) use external shuffle service
 		//                                && (3) set TaskManagerOptions.TASK_EXTERNAL_SHUFFLE_ENABLE_COMPRESSION true
@@ -76,10 +96,19 @@ public class SerializerManager<T extends IOReadableWritable> {
 			this.compressionBufferSize = configuration.getInteger(
 				TaskManagerOptions.TASK_EXTERNAL_SHUFFLE_COMPRESSION_BUFFER_SIZE);
 		}
+
+		this.adaptiveCompression = configuration.getBoolean(
+			TaskManagerOptions.TASK_EXTERNAL_SHUFFLE_COMPRESSION_ADAPTIVE_ENABLE);
+		this.minCompressionRatio = configuration.getDouble(
+			TaskManagerOptions.TASK_EXTERNAL_SHUFFLE_COMPRESSION_ADAPTIVE_MIN_RATIO);
+		this.compressionSampleInterval = configuration.getInteger(
+			TaskManagerOptions.TASK_EXTERNAL_SHUFFLE_COMPRESSION_ADAPTIVE_SAMPLE_INTERVAL);
+
+		this.zeroCopyEnabled = zeroCopyEnabled;
 	}
 
 	public SerializerManager(SingleInputGate inputGate, Configuration configuration) {
-		this(inputGate.getConsumedPartitionType(), configuration);
+		this(inputGate.getConsumedPartitionType(), configuration, inputGate.isZeroCopyEnabled());
 	}
 
 	public boolean useCompression() {
@@ -88,7 +117,7 @@ public class SerializerManager<T extends IOReadableWritable> {
 
 	public RecordDeserializer<T> getRecordDeserializer(String[] tmpDirectories) {
 		if (!useCompression) {
-			return new SpillingAdaptiveSpanningRecordDeserializer<T>(tmpDirectories);
+			return new SpillingAdaptiveSpanningRecordDeserializer<T>(tmpDirectories, zeroCopyEnabled);
 		} else {
 			RecordDeserializer<BufferDeserializationDelegate> internalDeser = new SpillingAdaptiveSpanningRecordDeserializer<>(tmpDirectories);
 			BufferDeserializationDelegate internalDeserDelegate = new DecompressionBufferTransformer(compressionFactory.get());
@@ -96,14 +125,62 @@ public class SerializerManager<T extends IOReadableWritable> {
 		}
 	}
 
+	/**
+	 * Creates a record deserializer which spills large records asynchronously via the given I/O manager.
+	 *
+	 * @param ioManager the I/O manager to spill large records with.
+	 * @param numBytesSpilled the counter of the spilled bytes of large records.
+	 */
+	public RecordDeserializer<T> getRecordDeserializer(IOManager ioManager, Counter numBytesSpilled) {
+		if (!useCompression) {
+			return new SpillingAdaptiveSpanningRecordDeserializer<T>(ioManager, numBytesSpilled, zeroCopyEnabled);
+		} else {
+			// the compressed buffers are never larger than the compression buffer size, so only the records spill
+			RecordDeserializer<BufferDeserializationDelegate> internalDeser =
+				new SpillingAdaptiveSpanningRecordDeserializer<>(ioManager.getSpillingDirectoriesPaths());
+			BufferDeserializationDelegate internalDeserDelegate = new DecompressionBufferTransformer(compressionFactory.get());
+			return new CompositeSpillingAdaptiveSpanningRecordDeserializer<T>(
+				new SpillingAdaptiveSpanningRecordDeserializer<>(ioManager, numBytesSpilled, false),
+				internalDeser,
+				internalDeserDelegate);
+		}
+	}
+
 	public RecordSerializer<IOReadableWritable> getRecordSerializer() {
+		return getRecordSerializer(null);
+	}
+
+	/**
+	 * Creates a record serializer whose buffers are compressed according to the given policy.
+	 *
+	 * @param compressionPolicy the policy created by {@link #createCompressionPolicy(int, CompressionStatistics)},
+	 *                          or null to compress all buffers.
+	 */
+	public RecordSerializer<IOReadableWritable> getRecordSerializer(@Nullable AdaptiveCompressionPolicy compressionPolicy) {
 		if (!useCompression) {
-			return new SpanningRecordSerializer<IOReadableWritable>();
+			return new SegmentReferencingRecordSerializer<IOReadableWritable>();
 		} else {
 			SpanningRecordSerializer<BufferSerializationDelegate> internalSer = new SpanningRecordSerializer<BufferSerializationDelegate>();
-			BufferSerializationDelegate internalSerDelegate = new CompressionBufferTransformer(compressionFactory.get());
+			BufferSerializationDelegate internalSerDelegate = new CompressionBufferTransformer(compressionFactory.get(), compressionPolicy);
 			return new CompositeSpanningRecordSerializer<IOReadableWritable>(internalSer, internalSerDelegate, compressionBufferSize);
 		}
 	}
 
+	/**
+	 * Creates the compression policy for a single writer of a result partition, or returns null if
+	 * compression is disabled.
+	 *
+	 * @param numChannels the number of channels of the result partition.
+	 * @param statistics the statistics of the result partition to report to, may be null.
+	 */
+	@Nullable
+	public AdaptiveCompressionPolicy createCompressionPolicy(int numChannels, @Nullable CompressionStatistics statistics) {
+		if (!useCompression) {
+			return null;
+		}
+
+		return new AdaptiveCompressionPolicy(
+			numChannels, adaptiveCompression, minCompressionRatio, compressionSampleInterval, statistics);
+	}
+
 }
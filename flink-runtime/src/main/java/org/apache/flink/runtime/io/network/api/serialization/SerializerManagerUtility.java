@@ -20,6 +20,8 @@ package org.apache.flink.runtime.io.network.api.serialization;
 
 import org.apache.flink.configuration.Configuration;
 import org.apache.flink.core.io.IOReadableWritable;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.runtime.io.disk.iomanager.IOManager;
 import org.apache.flink.runtime.io.network.partition.consumer.InputChannel;
 import org.apache.flink.runtime.io.network.partition.consumer.InputGate;
 import org.apache.flink.runtime.io.network.partition.consumer.SingleInputGate;
@@ -66,6 +68,26 @@ public class SerializerManagerUtility<T extends IOReadableWritable> {
 		return recordDeserializers;
 	}
 
+	/**
+	 * Create {@link RecordDeserializer}s according to {@link InputChannel}s in batch, which spill large
+	 * records asynchronously via the given {@link IOManager}.
+	 *
+	 * @param inputChannels input channels corresponding to record serializers.
+	 * @param ioManager the I/O manager for spilling on demand.
+	 * @param numBytesSpilled the counter of the spilled bytes of large records.
+	 * @return record deserializers corresponding to input channels.
+	 */
+	public RecordDeserializer<T>[] createRecordDeserializers(
+			InputChannel[] inputChannels, IOManager ioManager, Counter numBytesSpilled) {
+		RecordDeserializer<T>[] recordDeserializers = new RecordDeserializer[inputChannels.length];
+		for (int i = 0; i < inputChannels.length; i++) {
+			recordDeserializers[i] = getOrCreateSerializerManager(inputChannels[i]).getRecordDeserializer(
+				ioManager, numBytesSpilled);
+		}
+		clear();
+		return recordDeserializers;
+	}
+
 	private final SerializerManager<T> getOrCreateSerializerManager(InputChannel inputChannel) {
 		SingleInputGate currentInputGate = inputChannel.getInputGate();
 		if (prevInputGate == currentInputGate) {
@@ -22,9 +22,18 @@ import org.apache.flink.core.memory.DataInputDeserializer;
 import org.apache.flink.core.memory.DataInputView;
 import org.apache.flink.core.memory.DataInputViewStreamWrapper;
 import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.SimpleCounter;
+import org.apache.flink.runtime.io.disk.iomanager.ChannelReaderInputView;
+import org.apache.flink.runtime.io.disk.iomanager.ChannelWriterOutputView;
+import org.apache.flink.runtime.io.disk.iomanager.FileIOChannel;
+import org.apache.flink.runtime.io.disk.iomanager.IOManager;
 import org.apache.flink.util.FileUtils;
 import org.apache.flink.util.StringUtils;
 
+import javax.annotation.Nullable;
+
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -33,7 +42,9 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
 final class SpanningWrapper {
@@ -66,10 +77,45 @@ final class SpanningWrapper {
 
 	private DataInputViewStreamWrapper spillFileReader;
 
+	/** The I/O manager to spill asynchronously with, or null to spill synchronously to the temp directories. */
+	@Nullable
+	private final IOManager ioManager;
+
+	/** The number of bytes of large records which have been spilled. */
+	private final Counter numBytesSpilled;
+
+	private FileIOChannel.ID spillChannel;
+
+	/** The view which writes the large record asynchronously to the {@link #spillChannel}. */
+	private ChannelWriterOutputView spillWriter;
+
+	/** The view which reads the large record back from the {@link #spillChannel} with read-ahead. */
+	private ChannelReaderInputView spillReader;
+
 	private static final int THRESHOLD_FOR_SPILLING = 5 * 1024 * 1024; // 5 MiBytes
 
+	/** The size of the segments to write and read the spilled records asynchronously with. */
+	private static final int SPILL_SEGMENT_SIZE = 64 * 1024;
+
+	/** The number of segments to write and read a spilled record with, which bounds its memory. */
+	private static final int NUM_SPILL_SEGMENTS = 4;
+
 	public SpanningWrapper(String[] tempDirs) {
+		this(tempDirs, null, new SimpleCounter());
+	}
+
+	/**
+	 * Creates a spanning wrapper which spills large records asynchronously via the given I/O manager,
+	 * so that neither writing nor reading them back blocks on each file access.
+	 */
+	public SpanningWrapper(IOManager ioManager, Counter numBytesSpilled) {
+		this(ioManager.getSpillingDirectoriesPaths(), ioManager, numBytesSpilled);
+	}
+
+	private SpanningWrapper(String[] tempDirs, @Nullable IOManager ioManager, Counter numBytesSpilled) {
 		this.tempDirs = tempDirs;
+		this.ioManager = ioManager;
+		this.numBytesSpilled = numBytesSpilled;
 
 		this.lengthBuffer = ByteBuffer.allocate(4);
 		this.lengthBuffer.order(ByteOrder.BIG_ENDIAN);
@@ -88,10 +134,8 @@ final class SpanningWrapper {
 
 		if (nextRecordLength > THRESHOLD_FOR_SPILLING) {
 			// create a spilling channel and put the data there
-			this.spillingChannel = createSpillingChannel();
-
-			ByteBuffer toWrite = partial.segment.wrap(partial.position, numBytesChunk);
-			FileUtils.writeCompletely(spillingChannel, toWrite);
+			startSpilling();
+			spill(partial.segment, partial.position, numBytesChunk);
 		}
 		else {
 			// collect in memory
@@ -124,7 +168,7 @@ final class SpanningWrapper {
 				segmentPosition += toPut;
 				segmentRemaining -= toPut;
 				if (this.recordLength > THRESHOLD_FOR_SPILLING) {
-					this.spillingChannel = createSpillingChannel();
+					startSpilling();
 				}
 			}
 		}
@@ -133,10 +177,9 @@ final class SpanningWrapper {
 		int needed = this.recordLength - this.accumulatedRecordBytes;
 		int toCopy = Math.min(needed, segmentRemaining);
 
-		if (spillingChannel != null) {
+		if (isSpilling()) {
 			// spill to file
-			ByteBuffer toWrite = segment.wrap(segmentPosition, toCopy);
-			FileUtils.writeCompletely(spillingChannel, toWrite);
+			spill(segment, segmentPosition, toCopy);
 		}
 		else {
 			ensureBufferCapacity(accumulatedRecordBytes + toCopy);
@@ -154,7 +197,15 @@ final class SpanningWrapper {
 
 		if (accumulatedRecordBytes == recordLength) {
 			// we have the full record
-			if (spillingChannel == null) {
+			if (spillWriter != null) {
+				int numBlocks = spillWriter.getBlockCount();
+				List<MemorySegment> memory = spillWriter.close();
+				spillWriter = null;
+
+				this.spillReader = new ChannelReaderInputView(
+					ioManager.createBlockChannelReader(spillChannel), memory, numBlocks, false);
+			}
+			else if (spillingChannel == null) {
 				this.serializationReadBuffer.setBuffer(buffer, 0, recordLength);
 			}
 			else {
@@ -182,6 +233,35 @@ final class SpanningWrapper {
 		return this.accumulatedRecordBytes + (this.recordLength >= 0 ? 4 : lengthBuffer.position());
 	}
 
+	/**
+	 * Copies the length and the gathered bytes of the partial record, followed by the data left
+	 * over after the record, if the record is complete.
+	 */
+	protected byte[] copyUnconsumedBytes() throws IOException {
+		if (isSpilling() || spillReader != null || spillFileReader != null) {
+			throw new IOException("Cannot copy the partial record of " + recordLength +
+				" bytes, since it has been spilled to disk.");
+		}
+
+		final int numLeftOverBytes = leftOverData != null ? leftOverLimit - leftOverStart : 0;
+		final byte[] bytes = new byte[getNumGatheredBytes() + numLeftOverBytes];
+
+		int position;
+		if (recordLength >= 0) {
+			ByteBuffer.wrap(bytes, 0, 4).order(ByteOrder.BIG_ENDIAN).putInt(recordLength);
+			System.arraycopy(buffer, 0, bytes, 4, accumulatedRecordBytes);
+			position = 4 + accumulatedRecordBytes;
+		} else {
+			position = lengthBuffer.position();
+			System.arraycopy(lengthBuffer.array(), 0, bytes, 0, position);
+		}
+
+		if (numLeftOverBytes > 0) {
+			leftOverData.get(leftOverStart, bytes, position, numLeftOverBytes);
+		}
+		return bytes;
+	}
+
 	public void clear() {
 		this.buffer = initialBuffer;
 		this.serializationReadBuffer.releaseArrays();
@@ -213,10 +293,40 @@ final class SpanningWrapper {
 			spillFile.delete();
 			spillFile = null;
 		}
+		if (spillWriter != null) {
+			try {
+				spillWriter.close();
+			}
+			catch (Throwable t) {
+				// ignore
+			}
+			spillWriter = null;
+		}
+		if (spillReader != null) {
+			try {
+				spillReader.close();
+			}
+			catch (Throwable t) {
+				// ignore
+			}
+			spillReader = null;
+		}
+		if (spillChannel != null) {
+			try {
+				ioManager.deleteChannel(spillChannel);
+			}
+			catch (Throwable t) {
+				// ignore
+			}
+			spillChannel = null;
+		}
 	}
 
 	public DataInputView getInputView() {
-		if (spillFileReader == null) {
+		if (spillReader != null) {
+			return spillReader;
+		}
+		else if (spillFileReader == null) {
 			return serializationReadBuffer;
 		}
 		else {
@@ -224,6 +334,38 @@ final class SpanningWrapper {
 		}
 	}
 
+	private boolean isSpilling() {
+		return spillingChannel != null || spillWriter != null;
+	}
+
+	private void startSpilling() throws IOException {
+		if (ioManager == null) {
+			this.spillingChannel = createSpillingChannel();
+		}
+		else {
+			// the record is written in the background, waiting only if all segments are being written
+			List<MemorySegment> memory = new ArrayList<>(NUM_SPILL_SEGMENTS);
+			for (int i = 0; i < NUM_SPILL_SEGMENTS; i++) {
+				memory.add(MemorySegmentFactory.allocateUnpooledSegment(SPILL_SEGMENT_SIZE));
+			}
+
+			this.spillChannel = ioManager.createChannel();
+			this.spillWriter = new ChannelWriterOutputView(
+				ioManager.createBlockChannelWriter(spillChannel), memory, SPILL_SEGMENT_SIZE);
+		}
+	}
+
+	private void spill(MemorySegment segment, int offset, int numBytes) throws IOException {
+		if (spillWriter != null) {
+			spillWriter.write(segment, offset, numBytes);
+		}
+		else {
+			ByteBuffer toWrite = segment.wrap(offset, numBytes);
+			FileUtils.writeCompletely(spillingChannel, toWrite);
+		}
+		numBytesSpilled.inc(numBytes);
+	}
+
 	private void ensureBufferCapacity(int minLength) {
 		if (buffer.length < minLength) {
 			byte[] newBuffer = new byte[Math.max(minLength, buffer.length * 2)];
@@ -20,7 +20,12 @@ package org.apache.flink.runtime.io.network.api.serialization;
 
 import org.apache.flink.core.io.IOReadableWritable;
 import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.runtime.io.disk.iomanager.IOManager;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.FreeingBufferRecycler;
+import org.apache.flink.runtime.io.network.buffer.NetworkBuffer;
 
 import java.io.IOException;
 
@@ -41,13 +46,40 @@ public class SpillingAdaptiveSpanningRecordDeserializer<T extends IOReadableWrit
 
 	private Buffer currentBuffer;
 
+	/** Whether records may reference the memory of the buffers, see {@link ZeroCopyInputView}. */
+	private final boolean zeroCopyEnabled;
+
+	/**
+	 * The consumed buffer which is kept alive for the last returned record, which may reference it,
+	 * until the next record is read.
+	 */
+	private Buffer retainedBuffer;
+
 	public SpillingAdaptiveSpanningRecordDeserializer(String[] tmpDirectories) {
-		this.nonSpanningWrapper = new NonSpanningWrapper();
-		this.spanningWrapper = new SpanningWrapper(tmpDirectories);
+		this(tmpDirectories, false);
+	}
+
+	public SpillingAdaptiveSpanningRecordDeserializer(String[] tmpDirectories, boolean zeroCopyEnabled) {
+		this(new SpanningWrapper(tmpDirectories), zeroCopyEnabled);
+	}
+
+	/**
+	 * Creates a deserializer which spills large records asynchronously via the given I/O manager and
+	 * reads them back with read-ahead.
+	 */
+	public SpillingAdaptiveSpanningRecordDeserializer(IOManager ioManager, Counter numBytesSpilled, boolean zeroCopyEnabled) {
+		this(new SpanningWrapper(ioManager, numBytesSpilled), zeroCopyEnabled);
+	}
+
+	private SpillingAdaptiveSpanningRecordDeserializer(SpanningWrapper spanningWrapper, boolean zeroCopyEnabled) {
+		this.nonSpanningWrapper = new NonSpanningWrapper(zeroCopyEnabled);
+		this.spanningWrapper = spanningWrapper;
+		this.zeroCopyEnabled = zeroCopyEnabled;
 	}
 
 	@Override
 	public void setNextBuffer(Buffer buffer) throws IOException {
+		releaseRetainedBuffer();
 		currentBuffer = buffer;
 
 		int offset = buffer.getMemorySegmentOffset();
@@ -70,12 +102,30 @@ public class SpillingAdaptiveSpanningRecordDeserializer<T extends IOReadableWrit
 		return tmp;
 	}
 
+	@Override
+	public Buffer getUnconsumedBuffer() throws IOException {
+		final byte[] unconsumedBytes;
+		if (this.spanningWrapper.getNumGatheredBytes() > 0) {
+			unconsumedBytes = this.spanningWrapper.copyUnconsumedBytes();
+		} else if (this.nonSpanningWrapper.remaining() > 0) {
+			unconsumedBytes = this.nonSpanningWrapper.copyRemainingBytes();
+		} else {
+			return null;
+		}
+
+		Buffer buffer = new NetworkBuffer(MemorySegmentFactory.wrap(unconsumedBytes), FreeingBufferRecycler.INSTANCE);
+		buffer.setSize(unconsumedBytes.length);
+		return buffer;
+	}
+
 	@Override
 	public DeserializationResult getNextRecord(T target) throws IOException {
 		// always check the non-spanning wrapper first.
 		// this should be the majority of the cases for small records
 		// for large records, this portion of the work is very small in comparison anyways
 
+		releaseRetainedBuffer();
+
 		int nonSpanningRemaining = this.nonSpanningWrapper.remaining();
 
 		// check if we can get a full length;
@@ -92,6 +142,10 @@ public class SpillingAdaptiveSpanningRecordDeserializer<T extends IOReadableWrit
 						return DeserializationResult.INTERMEDIATE_RECORD_FROM_BUFFER;
 					}
 					else if (remaining == 0) {
+						if (zeroCopyEnabled) {
+							// the caller recycles the consumed buffer, but the record may still reference it
+							retainedBuffer = currentBuffer.retainBuffer();
+						}
 						return DeserializationResult.LAST_RECORD_FROM_BUFFER;
 					}
 					else {
@@ -137,6 +191,7 @@ public class SpillingAdaptiveSpanningRecordDeserializer<T extends IOReadableWrit
 
 	@Override
 	public void clear() {
+		releaseRetainedBuffer();
 		this.nonSpanningWrapper.clear();
 		this.spanningWrapper.clear();
 	}
@@ -146,4 +201,11 @@ public class SpillingAdaptiveSpanningRecordDeserializer<T extends IOReadableWrit
 		return this.nonSpanningWrapper.remaining() > 0 || this.spanningWrapper.getNumGatheredBytes() > 0;
 	}
 
+	private void releaseRetainedBuffer() {
+		if (retainedBuffer != null) {
+			retainedBuffer.recycleBuffer();
+			retainedBuffer = null;
+		}
+	}
+
 }
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.api.serialization;
+
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.MemorySegment;
+
+/**
+ * A {@link DataInputView} over the memory of a network buffer, which allows serializers to point the
+ * deserialized record to that memory instead of copying the bytes out of it.
+ *
+ * <p>Referencing the memory is only allowed for the number of bytes returned by
+ * {@link #getReferenceableBytes()}. The {@link RecordDeserializer} keeps the buffer alive until the
+ * next record is read, hence a record which references the memory is only valid until then. This is
+ * the same guarantee that records have when object reuse is enabled, so serializers must only
+ * reference the memory when deserializing into a reused instance.
+ */
+public interface ZeroCopyInputView extends DataInputView {
+
+	/**
+	 * Returns the number of bytes from the current position on which may be referenced, or 0 if
+	 * the memory may not be referenced at all.
+	 */
+	int getReferenceableBytes();
+
+	/**
+	 * Returns the memory segment holding the bytes at the current position.
+	 */
+	MemorySegment getCurrentSegment();
+
+	/**
+	 * Returns the current position in the {@link #getCurrentSegment() current segment}.
+	 */
+	int getCurrentPositionInSegment();
+}
@@ -87,6 +87,23 @@ public class BufferBuilder {
 		return toCopy;
 	}
 
+	/**
+	 * Append as many bytes as possible from the given range of {@code source}. Not everything might be
+	 * copied if there is not enough space in the underlying {@link MemorySegment}
+	 *
+	 * @return number of copied bytes
+	 */
+	public int append(MemorySegment source, int offset, int length) {
+		checkState(!isFinished());
+
+		int available = getMaxCapacity() - positionMarker.getCached();
+		int toCopy = Math.min(length, available);
+
+		source.copyTo(offset, memorySegment, positionMarker.getCached(), toCopy);
+		positionMarker.move(toCopy);
+		return toCopy;
+	}
+
 	/**
 	 * Make the change visible to the readers. This is costly operation (volatile access) thus in case of bulk writes
 	 * it's better to commit them all together instead one by one.
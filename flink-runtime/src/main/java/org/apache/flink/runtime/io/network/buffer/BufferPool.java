@@ -84,4 +84,10 @@ public interface BufferPool extends BufferProvider, BufferRecycler {
 	 * Returns the number of used buffers of this buffer pool.
 	 */
 	int bestEffortGetNumOfUsedBuffers();
+
+	/**
+	 * Returns the number of listeners which wait for a buffer of this buffer pool, see
+	 * {@link #addBufferListener(BufferListener)}.
+	 */
+	int getNumberOfBufferListeners();
 }
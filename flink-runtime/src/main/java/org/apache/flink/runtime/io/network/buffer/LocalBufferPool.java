@@ -29,6 +29,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedDeque;
 
 import static org.apache.flink.util.Preconditions.checkArgument;
 import static org.apache.flink.util.Preconditions.checkNotNull;
@@ -47,6 +48,13 @@ import static org.apache.flink.util.Preconditions.checkState;
  * <p>The size of this pool can be dynamically changed at runtime ({@link #setNumBuffers(int)}. It
  * will then lazily return the required number of buffers to the {@link NetworkBufferPool} to
  * match its new size.
+ *
+ * <p>Requesting and recycling a buffer is lock-free as long as segments are available, no
+ * listener waits for a buffer and the pool neither shrinks nor is destroyed. Everything else
+ * (requesting from the network buffer pool, waiting, listeners, resizing and destroying) takes
+ * the lock on {@link #availableMemorySegments}. The fast paths change the available segments
+ * first and then re-check the conditions which the slow paths change before looking at the
+ * available segments, so that either of both sees the change of the other.
  */
 class LocalBufferPool implements BufferPool {
 	private static final Logger LOG = LoggerFactory.getLogger(LocalBufferPool.class);
@@ -66,8 +74,10 @@ class LocalBufferPool implements BufferPool {
 	 * code inside this class, e.g. with
 	 * {@link org.apache.flink.runtime.io.network.partition.consumer.RemoteInputChannel#bufferQueue}
 	 * via the {@link #registeredListeners} callback.
+	 *
+	 * <p>The segments are used as a stack, so that recently recycled segments are handed out first.
 	 */
-	private final ArrayDeque<MemorySegment> availableMemorySegments = new ArrayDeque<MemorySegment>();
+	private final ConcurrentLinkedDeque<MemorySegment> availableMemorySegments = new ConcurrentLinkedDeque<>();
 
 	/**
 	 * Buffer availability listeners, which need to be notified when a Buffer becomes available.
@@ -75,19 +85,28 @@ class LocalBufferPool implements BufferPool {
 	 */
 	private final ArrayDeque<BufferListener> registeredListeners = new ArrayDeque<>();
 
+	/**
+	 * The number of registered listeners (including one being registered), which makes the
+	 * recycling fall back to the slow path.
+	 */
+	private volatile int numberOfRegisteredListeners;
+
+	/** The number of requests waiting for a recycled segment. */
+	private volatile int numberOfWaitingRequests;
+
 	/** Maximum number of network buffers to allocate. */
 	private final int maxNumberOfMemorySegments;
 
 	/** The current size of this pool. */
-	private int currentPoolSize;
+	private volatile int currentPoolSize;
 
 	/**
 	 * Number of all memory segments, which have been requested from the network buffer pool and are
 	 * somehow referenced through this pool (e.g. wrapped in Buffer instances or as available segments).
 	 */
-	private int numberOfRequestedMemorySegments;
+	private volatile int numberOfRequestedMemorySegments;
 
-	private boolean isDestroyed;
+	private volatile boolean isDestroyed;
 
 	private BufferPoolOwner owner;
 
@@ -179,6 +198,13 @@ class LocalBufferPool implements BufferPool {
 		return Math.max(0, numberOfRequestedMemorySegments - availableMemorySegments.size());
 	}
 
+	@Override
+	public int getNumberOfBufferListeners() {
+		synchronized (availableMemorySegments) {
+			return registeredListeners.size();
+		}
+	}
+
 	@Override
 	public void setBufferPoolOwner(BufferPoolOwner owner) {
 		synchronized (availableMemorySegments) {
@@ -222,13 +248,21 @@ class LocalBufferPool implements BufferPool {
 	}
 
 	private MemorySegment requestMemorySegment(boolean isBlocking) throws InterruptedException, IOException {
+		if (!isDestroyed && numberOfRequestedMemorySegments <= currentPoolSize) {
+			final MemorySegment segment = availableMemorySegments.poll();
+			if (segment != null) {
+				return segment;
+			}
+		}
+
 		synchronized (availableMemorySegments) {
 			returnExcessMemorySegments();
 
 			boolean askToRecycle = owner != null;
 
-			// fill availableMemorySegments with at least one element, wait if required
-			while (availableMemorySegments.isEmpty()) {
+			// take one of the availableMemorySegments, wait if required
+			MemorySegment availableSegment;
+			while ((availableSegment = availableMemorySegments.poll()) == null) {
 				if (isDestroyed) {
 					throw new IllegalStateException("Buffer pool is destroyed.");
 				}
@@ -247,19 +281,50 @@ class LocalBufferPool implements BufferPool {
 				}
 
 				if (isBlocking) {
-					availableMemorySegments.wait(2000);
+					// announce the waiting request before the last check, see recycle()
+					numberOfWaitingRequests++;
+					try {
+						if (availableMemorySegments.isEmpty()) {
+							availableMemorySegments.wait(2000);
+						}
+					} finally {
+						numberOfWaitingRequests--;
+					}
 				}
 				else {
 					return null;
 				}
 			}
 
-			return availableMemorySegments.poll();
+			return availableSegment;
 		}
 	}
 
 	@Override
 	public void recycle(MemorySegment segment) {
+		if (numberOfRegisteredListeners == 0 && !isDestroyed && numberOfRequestedMemorySegments <= currentPoolSize) {
+			availableMemorySegments.push(segment);
+
+			if (numberOfRegisteredListeners > 0 || isDestroyed || numberOfRequestedMemorySegments > currentPoolSize) {
+				// A listener has been registered, the pool has been destroyed or has to shrink
+				// concurrently. Take a segment back, which may have been missed by the slow path.
+				final MemorySegment availableSegment = availableMemorySegments.poll();
+				if (availableSegment != null) {
+					recycleSlow(availableSegment);
+				}
+			}
+			else if (numberOfWaitingRequests > 0) {
+				synchronized (availableMemorySegments) {
+					availableMemorySegments.notify();
+				}
+			}
+		}
+		else {
+			recycleSlow(segment);
+		}
+	}
+
+	private void recycleSlow(MemorySegment segment) {
 		BufferListener listener;
 		NotificationResult notificationResult = NotificationResult.NONE;
 
@@ -270,9 +335,10 @@ class LocalBufferPool implements BufferPool {
 					return;
 				} else {
 					listener = registeredListeners.poll();
+					numberOfRegisteredListeners = registeredListeners.size();
 
 					if (listener == null) {
-						availableMemorySegments.add(segment);
+						availableMemorySegments.push(segment);
 						availableMemorySegments.notify();
 						return;
 					}
@@ -291,6 +357,7 @@ class LocalBufferPool implements BufferPool {
 						listener.notifyBufferDestroyed();
 					} else {
 						registeredListeners.add(listener);
+						numberOfRegisteredListeners = registeredListeners.size();
 					}
 				}
 			}
@@ -305,6 +372,9 @@ class LocalBufferPool implements BufferPool {
 		// NOTE: if you change this logic, be sure to update recycle() as well!
 		synchronized (availableMemorySegments) {
 			if (!isDestroyed) {
+				// set before returning the segments, see recycle()
+				isDestroyed = true;
+
 				MemorySegment segment;
 				while ((segment = availableMemorySegments.poll()) != null) {
 					returnMemorySegment(segment);
@@ -314,8 +384,7 @@ class LocalBufferPool implements BufferPool {
 				while ((listener = registeredListeners.poll()) != null) {
 					listener.notifyBufferDestroyed();
 				}
-
-				isDestroyed = true;
+				numberOfRegisteredListeners = 0;
 			}
 		}
 
@@ -341,7 +410,15 @@ class LocalBufferPool implements BufferPool {
 	@Override
 	public boolean addBufferListener(BufferListener listener) {
 		synchronized (availableMemorySegments) {
-			if (!availableMemorySegments.isEmpty() || isDestroyed) {
+			if (isDestroyed) {
+				return false;
+			}
+
+			// announce the listener before checking for available segments, see recycle()
+			numberOfRegisteredListeners = registeredListeners.size() + 1;
+
+			if (!availableMemorySegments.isEmpty()) {
+				numberOfRegisteredListeners = registeredListeners.size();
 				return false;
 			}
 
@@ -31,6 +31,7 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLParameters;
 import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
 
 import static org.apache.flink.util.Preconditions.checkArgument;
 import static org.apache.flink.util.Preconditions.checkNotNull;
@@ -102,6 +103,20 @@ public class NettyConfig {
 			.withDeprecatedKeys("taskmanager.net.transport")
 			.withDescription("The Netty transport type, either \"nio\" or \"epoll\"");
 
+	public static final ConfigOption<Integer> SERVER_WRITE_BATCH_MAX_BYTES = ConfigOptions
+			.key("taskmanager.network.netty.server.write-batch.max-bytes")
+			.defaultValue(0)
+			.withDescription("The maximum number of bytes of buffers which the Netty server writes to a channel" +
+				" before flushing it. Batching the buffers of the consumers of a channel into one gathering write" +
+				" saves system calls for small buffers, e.g. with a buffer timeout of 0. The default 0 flushes" +
+				" every buffer.");
+
+	public static final ConfigOption<Long> SERVER_WRITE_BATCH_TIME_BUDGET = ConfigOptions
+			.key("taskmanager.network.netty.server.write-batch.time-budget")
+			.defaultValue(50L)
+			.withDescription("The maximum time in microseconds the Netty server spends collecting buffers for a" +
+				" batched write before flushing it.");
+
 	// ------------------------------------------------------------------------
 
 	enum TransportType {
@@ -255,6 +270,14 @@ public class NettyConfig {
 		SSLUtils.setSSLVerifyHostname(config, sslParams);
 	}
 
+	public int getServerWriteBatchMaxBytes() {
+		return config.getInteger(SERVER_WRITE_BATCH_MAX_BYTES);
+	}
+
+	public long getServerWriteBatchTimeBudgetNanos() {
+		return TimeUnit.MICROSECONDS.toNanos(config.getLong(SERVER_WRITE_BATCH_TIME_BUDGET));
+	}
+
 	public boolean isCreditBasedEnabled() {
 		return config.getBoolean(TaskManagerOptions.NETWORK_CREDIT_MODEL);
 	}
@@ -35,6 +35,8 @@ public class NettyConnectionManager implements ConnectionManager {
 
 	private final PartitionRequestClientFactory partitionRequestClientFactory;
 
+	private final ServerWriteStatistics serverWriteStatistics = new ServerWriteStatistics();
+
 	public NettyConnectionManager(NettyConfig nettyConfig) {
 		this.server = new NettyServer(nettyConfig);
 		this.client = new NettyClient(nettyConfig);
@@ -45,15 +47,23 @@ public class NettyConnectionManager implements ConnectionManager {
 
 	@Override
 	public void start(ResultPartitionProvider partitionProvider, TaskEventDispatcher taskEventDispatcher) throws IOException {
+		NettyConfig config = server.getConfig();
 		NettyProtocol partitionRequestProtocol = new NettyProtocol(
 			partitionProvider,
 			taskEventDispatcher,
-			client.getConfig().isCreditBasedEnabled());
+			config.isCreditBasedEnabled(),
+			config.getServerWriteBatchMaxBytes(),
+			config.getServerWriteBatchTimeBudgetNanos(),
+			serverWriteStatistics);
 
 		client.init(partitionRequestProtocol, bufferPool);
 		server.init(partitionRequestProtocol, bufferPool);
 	}
 
+	public ServerWriteStatistics getServerWriteStatistics() {
+		return serverWriteStatistics;
+	}
+
 	@Override
 	public PartitionRequestClient createPartitionRequestClient(ConnectionID connectionId)
 			throws IOException, InterruptedException {
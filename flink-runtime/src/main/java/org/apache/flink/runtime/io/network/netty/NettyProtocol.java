@@ -25,6 +25,7 @@ import org.apache.flink.runtime.io.network.partition.ResultPartitionProvider;
 import org.apache.flink.shaded.netty4.io.netty.channel.ChannelHandler;
 
 import static org.apache.flink.runtime.io.network.netty.NettyMessage.NettyMessageEncoder.createFrameLengthDecoder;
+import static org.apache.flink.util.Preconditions.checkNotNull;
 
 /**
  * Defines the server and client channel handlers, i.e. the protocol, used by netty.
@@ -41,10 +42,29 @@ public class NettyProtocol {
 
 	private final boolean creditBasedEnabled;
 
+	private final int writeBatchMaxBytes;
+
+	private final long writeBatchTimeBudgetNanos;
+
+	private final ServerWriteStatistics writeStatistics;
+
 	public NettyProtocol(ResultPartitionProvider partitionProvider, TaskEventDispatcher taskEventDispatcher, boolean creditBasedEnabled) {
+		this(partitionProvider, taskEventDispatcher, creditBasedEnabled, 0, 0L, new ServerWriteStatistics());
+	}
+
+	public NettyProtocol(
+			ResultPartitionProvider partitionProvider,
+			TaskEventDispatcher taskEventDispatcher,
+			boolean creditBasedEnabled,
+			int writeBatchMaxBytes,
+			long writeBatchTimeBudgetNanos,
+			ServerWriteStatistics writeStatistics) {
 		this.partitionProvider = partitionProvider;
 		this.taskEventDispatcher = taskEventDispatcher;
 		this.creditBasedEnabled = creditBasedEnabled;
+		this.writeBatchMaxBytes = writeBatchMaxBytes;
+		this.writeBatchTimeBudgetNanos = writeBatchTimeBudgetNanos;
+		this.writeStatistics = checkNotNull(writeStatistics);
 	}
 
 	/**
@@ -83,7 +103,8 @@ public class NettyProtocol {
 	 * @return channel handlers
 	 */
 	public ChannelHandler[] getServerChannelHandlers() {
-		PartitionRequestQueue queueOfPartitionQueues = new PartitionRequestQueue();
+		PartitionRequestQueue queueOfPartitionQueues = new PartitionRequestQueue(
+			writeBatchMaxBytes, writeBatchTimeBudgetNanos, writeStatistics);
 		PartitionRequestServerHandler serverHandler = new PartitionRequestServerHandler(
 			partitionProvider, taskEventDispatcher, queueOfPartitionQueues, creditBasedEnabled);
 
@@ -48,10 +48,18 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import static org.apache.flink.runtime.io.network.netty.NettyMessage.BufferResponse;
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
 
 /**
  * A nonEmptyReader of partition queues, which listens for channel writability changed
  * events before writing and flushing {@link Buffer} instances.
+ *
+ * <p>By default, every buffer is written and flushed on its own. With a positive write batch
+ * size, the buffers of all available readers are written without flushing until the batch size
+ * or the time budget is exceeded, the channel becomes unwritable or no reader has data left.
+ * The flush then sends all of them with a single gathering write. The credit of the readers is
+ * respected in both cases since they only report available data if they have credit.
  */
 class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 
@@ -71,6 +79,27 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 
 	private ChannelHandlerContext ctx;
 
+	/** The maximum number of bytes written before flushing, 0 to flush every message. */
+	private final int writeBatchMaxBytes;
+
+	/** The maximum time spent collecting the messages of a batch. */
+	private final long writeBatchTimeBudgetNanos;
+
+	private final ServerWriteStatistics writeStatistics;
+
+	PartitionRequestQueue() {
+		this(0, 0L, new ServerWriteStatistics());
+	}
+
+	PartitionRequestQueue(int writeBatchMaxBytes, long writeBatchTimeBudgetNanos, ServerWriteStatistics writeStatistics) {
+		checkArgument(writeBatchMaxBytes >= 0, "The write batch size must not be negative.");
+		checkArgument(writeBatchTimeBudgetNanos >= 0, "The write batch time budget must not be negative.");
+
+		this.writeBatchMaxBytes = writeBatchMaxBytes;
+		this.writeBatchTimeBudgetNanos = writeBatchTimeBudgetNanos;
+		this.writeStatistics = checkNotNull(writeStatistics);
+	}
+
 	@Override
 	public void channelRegistered(final ChannelHandlerContext ctx) throws Exception {
 		if (this.ctx == null) {
@@ -237,6 +266,13 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 		// gate and the consumed views as the local input channels.
 
 		BufferAndAvailability next = null;
+
+		// the last message of a batch, which is written and flushed once the batch is complete
+		BufferResponse pending = null;
+		int numBatchedMessages = 0;
+		long numBatchedBytes = 0L;
+		final long batchStartNanos = writeBatchMaxBytes > 0 ? System.nanoTime() : 0L;
+
 		try {
 			while (true) {
 				NetworkSequenceViewReader reader = pollAvailableReader();
@@ -244,7 +280,7 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 				// No queue with available data. We allow this here, because
 				// of the write callbacks that are executed after each write.
 				if (reader == null) {
-					return;
+					break;
 				}
 
 				next = reader.getNextBuffer();
@@ -260,6 +296,12 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 							new ProducerFailedException(cause),
 							reader.getReceiverId());
 
+						if (pending != null) {
+							// keep the order of the messages
+							final BufferResponse previous = pending;
+							pending = null;
+							channel.write(previous, channel.voidPromise());
+						}
 						ctx.writeAndFlush(msg);
 					}
 				} else {
@@ -282,17 +324,41 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 						markAsReleased(reader.getReceiverId());
 					}
 
-					// Write and flush and wait until this is done before
-					// trying to continue with the next buffer.
-					channel.writeAndFlush(msg).addListener(writeListener);
+					// the message owns the buffer now
+					final BufferResponse previous = pending;
+					pending = msg;
+					numBatchedMessages++;
+					numBatchedBytes += next.buffer().getSize();
+					next = null;
 
-					return;
+					if (previous != null) {
+						channel.write(previous, channel.voidPromise());
+					}
+
+					if (numBatchedBytes >= writeBatchMaxBytes
+							|| !channel.isWritable()
+							|| System.nanoTime() - batchStartNanos >= writeBatchTimeBudgetNanos) {
+						break;
+					}
 				}
 			}
+
+			if (pending != null) {
+				final BufferResponse last = pending;
+				pending = null;
+
+				// Write and flush and wait until this is done before
+				// trying to continue with the next buffer.
+				channel.writeAndFlush(last).addListener(writeListener);
+				writeStatistics.reportFlush(numBatchedMessages);
+			}
 		} catch (Throwable t) {
 			if (next != null) {
 				next.buffer().recycleBuffer();
 			}
+			if (pending != null) {
+				pending.releaseBuffer();
+			}
 
 			throw new IOException(t.getMessage(), t);
 		}
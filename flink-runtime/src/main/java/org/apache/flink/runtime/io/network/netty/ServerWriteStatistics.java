@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.netty;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the messages written and the flushes done by the {@link PartitionRequestQueue}s of all
+ * channels of a netty server, which shows how well small buffers are batched into one write.
+ */
+public class ServerWriteStatistics {
+
+	private final AtomicLong numFlushes = new AtomicLong();
+
+	private final AtomicLong numFlushedMessages = new AtomicLong();
+
+	void reportFlush(int numMessages) {
+		numFlushes.incrementAndGet();
+		numFlushedMessages.addAndGet(numMessages);
+	}
+
+	public long getNumFlushes() {
+		return numFlushes.get();
+	}
+
+	public long getNumFlushedMessages() {
+		return numFlushedMessages.get();
+	}
+}
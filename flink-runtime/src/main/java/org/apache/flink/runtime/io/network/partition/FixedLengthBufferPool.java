@@ -160,6 +160,11 @@ public class FixedLengthBufferPool implements BufferPool, BufferRecycler {
 		return numberOfBuffers - memorySegments.size();
 	}
 
+	@Override
+	public int getNumberOfBufferListeners() {
+		return 0;
+	}
+
 	@Override
 	public void recycle(MemorySegment memorySegment) {
 		synchronized (memorySegments) {
@@ -27,15 +27,27 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
-import javax.annotation.concurrent.GuardedBy;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.flink.util.Preconditions.checkNotNull;
 import static org.apache.flink.util.Preconditions.checkState;
 
 /**
  * A pipelined in-memory only subpartition, which can be consumed once.
+ *
+ * <p>The buffers are handed off from the producing task to the consumer (the netty thread or the
+ * consuming local task) via a lock-free {@link SpscQueue}, so that neither side blocks the other
+ * on the hot path. The {@link #buffers} of the base class are not used. Their lock only guards the
+ * creation of the read view and the release of the subpartition.
+ *
+ * <p>The producer notifies the consumer as before, when the first finished buffer is added or
+ * on flush. Since the consumer may concurrently drain the queue, it additionally registers for a
+ * notification before it reports that no more data is available and then checks the queue again.
+ * A producer that adds data after the registration notifies the consumer, otherwise the consumer
+ * sees the data itself, so no notification is lost.
  */
 class PipelinedSubpartition extends ResultSubpartition {
 
@@ -43,14 +55,37 @@ class PipelinedSubpartition extends ResultSubpartition {
 
 	// ------------------------------------------------------------------------
 
-	/** The read view to consume this subpartition. */
-	private PipelinedSubpartitionView readView;
+	/** The buffers of this subpartition, added by the producer and removed by the consumer. */
+	private final SpscQueue<BufferConsumer> bufferQueue = new SpscQueue<>();
+
+	/** The number of non-event buffers currently in this subpartition. */
+	private final AtomicInteger backlog = new AtomicInteger();
+
+	/**
+	 * The read view to consume this subpartition. It is assigned under the lock of the
+	 * {@link #buffers}, but read without it by the producer to notify the consumer.
+	 */
+	@Nullable
+	private volatile PipelinedSubpartitionView readView;
 
-	/** Flag indicating whether the subpartition has been finished. */
+	/** Flag indicating whether the subpartition has been finished, only accessed by the producer. */
 	private boolean isFinished;
 
-	@GuardedBy("buffers")
-	private boolean flushRequested;
+	/** The number of flush requests, which may also come from the output flusher thread. */
+	private final AtomicInteger numFlushRequests = new AtomicInteger();
+
+	/** The number of flush requests which have been served, only accessed by the consumer. */
+	private int numServedFlushRequests;
+
+	/** Flag indicating whether the consumer waits for a notification before polling again. */
+	private final AtomicBoolean isConsumerWaiting = new AtomicBoolean();
+
+	/**
+	 * Guards the consumer side of the buffer queue against the release of the subpartition,
+	 * which removes the remaining buffers from another thread. It is uncontended unless the
+	 * subpartition is released.
+	 */
+	private final AtomicBoolean consumerLock = new AtomicBoolean();
 
 	/** Flag indicating whether the subpartition has been released. */
 	private volatile boolean isReleased;
@@ -68,13 +103,11 @@ class PipelinedSubpartition extends ResultSubpartition {
 
 	@Override
 	public void flush() {
-		synchronized (buffers) {
-			if (buffers.isEmpty()) {
-				return;
-			}
-			flushRequested = !buffers.isEmpty();
-			notifyDataAvailable();
+		if (bufferQueue.isEmpty()) {
+			return;
 		}
+		numFlushRequests.incrementAndGet();
+		notifyDataAvailable();
 	}
 
 	@Override
@@ -86,24 +119,31 @@ class PipelinedSubpartition extends ResultSubpartition {
 	private boolean add(BufferConsumer bufferConsumer, boolean finish) {
 		checkNotNull(bufferConsumer);
 
-		synchronized (buffers) {
-			if (isFinished || isReleased) {
-				bufferConsumer.close();
-				return false;
-			}
+		if (isFinished || isReleased) {
+			bufferConsumer.close();
+			return false;
+		}
 
-			// Add the bufferConsumer and update the stats
-			buffers.add(bufferConsumer);
-			updateStatistics(bufferConsumer);
-			increaseBuffersInBacklog(bufferConsumer);
+		// Update the stats and add the bufferConsumer, the backlog is increased first so that
+		// the consumer never sees a negative backlog
+		updateStatistics(bufferConsumer);
+		if (bufferConsumer.isBuffer()) {
+			backlog.incrementAndGet();
+		}
+		bufferQueue.offer(bufferConsumer);
 
-			if (finish) {
-				isFinished = true;
-				flush();
-			}
-			else {
-				maybeNotifyDataAvailable();
-			}
+		if (isReleased) {
+			// released concurrently, the release may have missed the bufferConsumer
+			releaseQueuedBuffers();
+			return true;
+		}
+
+		if (finish) {
+			isFinished = true;
+			flush();
+		}
+		else {
+			maybeNotifyDataAvailable(bufferConsumer);
 		}
 
 		return true;
@@ -119,12 +159,6 @@ class PipelinedSubpartition extends ResultSubpartition {
 				return;
 			}
 
-			// Release all available buffers
-			for (BufferConsumer buffer : buffers) {
-				buffer.close();
-			}
-			buffers.clear();
-
 			view = readView;
 			readView = null;
 
@@ -132,6 +166,9 @@ class PipelinedSubpartition extends ResultSubpartition {
 			isReleased = true;
 		}
 
+		// Release all available buffers
+		releaseQueuedBuffers();
+
 		LOG.debug("Released {}.", this);
 
 		if (view != null) {
@@ -139,69 +176,128 @@ class PipelinedSubpartition extends ResultSubpartition {
 		}
 	}
 
+	private void releaseQueuedBuffers() {
+		// a concurrent poll returns as soon as it sees the release
+		while (!consumerLock.compareAndSet(false, true)) {
+			Thread.yield();
+		}
+
+		try {
+			BufferConsumer bufferConsumer;
+			while ((bufferConsumer = bufferQueue.poll()) != null) {
+				bufferConsumer.close();
+			}
+		} finally {
+			consumerLock.set(false);
+		}
+	}
+
 	@Nullable
 	BufferAndBacklog pollBuffer() {
-		synchronized (buffers) {
-			Buffer buffer = null;
+		if (!consumerLock.compareAndSet(false, true)) {
+			// the subpartition is being released
+			return null;
+		}
 
-			if (buffers.isEmpty()) {
-				flushRequested = false;
+		try {
+			while (!isReleased) {
+				Buffer buffer = pollNextBuffer();
+
+				if (buffer != null) {
+					updateStatistics(buffer);
+					// Do not report last remaining buffer on buffers as available to read (assuming it's unfinished).
+					// It will be reported for reading either on flush or when the number of buffers in the queue
+					// will be 2 or more.
+					return new BufferAndBacklog(
+						buffer,
+						isAvailableUnsafe() || !waitForNotification(),
+						backlog.get(),
+						nextBufferIsEventUnsafe());
+				}
+
+				if (waitForNotification()) {
+					return null;
+				}
+				// data has been added concurrently, poll again instead of waiting for a notification
 			}
 
-			while (!buffers.isEmpty()) {
-				BufferConsumer bufferConsumer = buffers.peek();
+			return null;
+		} finally {
+			consumerLock.set(false);
+		}
+	}
 
-				buffer = bufferConsumer.build();
+	@Nullable
+	private Buffer pollNextBuffer() {
+		// flush requests after this point are served by the next poll
+		final int flushRequests = numFlushRequests.get();
 
-				checkState(bufferConsumer.isFinished() || buffers.size() == 1,
-					"When there are multiple buffers, an unfinished bufferConsumer can not be at the head of the buffers queue.");
+		if (bufferQueue.isEmpty()) {
+			numServedFlushRequests = flushRequests;
+		}
 
-				if (buffers.size() == 1) {
-					// turn off flushRequested flag if we drained all of the available data
-					flushRequested = false;
-				}
+		BufferConsumer bufferConsumer;
+		while ((bufferConsumer = bufferQueue.peek()) != null) {
+			// The size is read before building the buffer: a bufferConsumer followed by another
+			// one is finished, and this is visible to the build.
+			final int numBuffers = bufferQueue.size();
 
-				if (bufferConsumer.isFinished()) {
-					buffers.pop().close();
-					decreaseBuffersInBacklogUnsafe(bufferConsumer.isBuffer());
-				}
+			Buffer buffer = bufferConsumer.build();
 
-				if (buffer.readableBytes() > 0) {
-					break;
-				}
-				buffer.recycleBuffer();
-				buffer = null;
-				if (!bufferConsumer.isFinished()) {
-					break;
-				}
+			checkState(bufferConsumer.isFinished() || numBuffers == 1,
+				"When there are multiple buffers, an unfinished bufferConsumer can not be at the head of the buffers queue.");
+
+			if (numBuffers == 1) {
+				// serve the flush requests if we drained all of the available data
+				numServedFlushRequests = flushRequests;
 			}
 
-			if (buffer == null) {
-				return null;
+			if (bufferConsumer.isFinished()) {
+				bufferQueue.poll().close();
+				if (bufferConsumer.isBuffer()) {
+					backlog.decrementAndGet();
+				}
 			}
 
-			updateStatistics(buffer);
-			// Do not report last remaining buffer on buffers as available to read (assuming it's unfinished).
-			// It will be reported for reading either on flush or when the number of buffers in the queue
-			// will be 2 or more.
-			return new BufferAndBacklog(
-				buffer,
-				isAvailableUnsafe(),
-				getBuffersInBacklog(),
-				_nextBufferIsEvent());
+			if (buffer.readableBytes() > 0) {
+				return buffer;
+			}
+			buffer.recycleBuffer();
+			if (!bufferConsumer.isFinished()) {
+				break;
+			}
 		}
+
+		return null;
+	}
+
+	/**
+	 * Registers the consumer for a notification of the producer and checks for concurrently
+	 * added data afterwards.
+	 *
+	 * @return <tt>true</tt> if the consumer will be notified, <tt>false</tt> if data is available
+	 * and the consumer has to poll again instead
+	 */
+	private boolean waitForNotification() {
+		isConsumerWaiting.set(true);
+		return !(isAvailableUnsafe() && isConsumerWaiting.compareAndSet(true, false));
 	}
 
 	boolean nextBufferIsEvent() {
-		synchronized (buffers) {
-			return _nextBufferIsEvent();
+		if (!consumerLock.compareAndSet(false, true)) {
+			return false;
 		}
-	}
 
-	private boolean _nextBufferIsEvent() {
-		assert Thread.holdsLock(buffers);
+		try {
+			return !isReleased && nextBufferIsEventUnsafe();
+		} finally {
+			consumerLock.set(false);
+		}
+	}
 
-		return !buffers.isEmpty() && !buffers.peekFirst().isBuffer();
+	private boolean nextBufferIsEventUnsafe() {
+		BufferConsumer next = bufferQueue.peek();
+		return next != null && !next.isBuffer();
 	}
 
 	@Override
@@ -226,79 +322,96 @@ class PipelinedSubpartition extends ResultSubpartition {
 
 			LOG.debug("Creating read view for subpartition {} of partition {}.", index, parent.getPartitionId());
 
-			readView = new PipelinedSubpartitionView(this, availabilityListener);
-			if (!buffers.isEmpty()) {
+			final PipelinedSubpartitionView view = new PipelinedSubpartitionView(this, availabilityListener);
+			readView = view;
+
+			isConsumerWaiting.set(true);
+			if (!bufferQueue.isEmpty()) {
 				notifyDataAvailable();
 			}
-		}
 
-		return readView;
+			return view;
+		}
 	}
 
 	public boolean isAvailable() {
-		synchronized (buffers) {
-			return isAvailableUnsafe();
+		if (!consumerLock.compareAndSet(false, true)) {
+			return false;
+		}
+
+		try {
+			return !isReleased && isAvailableUnsafe();
+		} finally {
+			consumerLock.set(false);
 		}
 	}
 
 	private boolean isAvailableUnsafe() {
-		return flushRequested || getNumberOfFinishedBuffers() > 0;
+		return numFlushRequests.get() != numServedFlushRequests || getNumberOfFinishedBuffers() > 0;
 	}
 
 	// ------------------------------------------------------------------------
 
+	@Override
+	public int getBuffersInBacklog() {
+		return backlog.get();
+	}
+
 	int getCurrentNumberOfBuffers() {
-		return buffers.size();
+		return bufferQueue.size();
 	}
 
 	// ------------------------------------------------------------------------
 
 	@Override
 	public String toString() {
-		final long numBuffers;
-		final long numBytes;
-		final boolean finished;
-		final boolean hasReadView;
-
-		synchronized (buffers) {
-			numBuffers = getTotalNumberOfBuffers();
-			numBytes = getTotalNumberOfBytes();
-			finished = isFinished;
-			hasReadView = readView != null;
-		}
-
 		return String.format(
 			"PipelinedSubpartition [number of buffers: %d (%d bytes), number of buffers in backlog: %d, finished? %s, read view? %s]",
-			numBuffers, numBytes, getBuffersInBacklog(), finished, hasReadView);
+			getTotalNumberOfBuffers(), getTotalNumberOfBytes(), getBuffersInBacklog(), isFinished, readView != null);
 	}
 
 	@Override
 	public int unsynchronizedGetNumberOfQueuedBuffers() {
-		// since we do not synchronize, the size may actually be lower than 0!
-		return Math.max(buffers.size(), 0);
+		return bufferQueue.size();
 	}
 
-	private void maybeNotifyDataAvailable() {
-		// Notify only when we added first finished buffer.
-		if (getNumberOfFinishedBuffers() == 1) {
+	private void maybeNotifyDataAvailable(BufferConsumer lastBufferConsumer) {
+		// We assume that only last buffer is not finished.
+		final int numBuffers = bufferQueue.size();
+		final int numFinishedBuffers = numBuffers == 1
+			? (lastBufferConsumer.isFinished() ? 1 : 0)
+			: Math.max(0, numBuffers - 1);
+
+		if (numFinishedBuffers == 1) {
+			// Notify when we added first finished buffer.
 			notifyDataAvailable();
 		}
+		else if (numFinishedBuffers > 1 && isConsumerWaiting.get() && isConsumerWaiting.compareAndSet(true, false)) {
+			// The consumer has drained the queue concurrently and waits for us.
+			notifyReadView();
+		}
 	}
 
 	private void notifyDataAvailable() {
-		if (readView != null) {
-			readView.notifyDataAvailable();
+		isConsumerWaiting.set(false);
+		notifyReadView();
+	}
+
+	private void notifyReadView() {
+		final PipelinedSubpartitionView view = readView;
+		if (view != null) {
+			view.notifyDataAvailable();
 		}
 	}
 
 	private int getNumberOfFinishedBuffers() {
-		assert Thread.holdsLock(buffers);
+		final int numBuffers = bufferQueue.size();
 
-		if (buffers.size() == 1 && buffers.peekLast().isFinished()) {
+		if (numBuffers == 1 && bufferQueue.peek().isFinished()) {
 			return 1;
 		}
 
 		// We assume that only last buffer is not finished.
-		return Math.max(0, buffers.size() - 1);
+		return Math.max(0, numBuffers - 1);
 	}
 }
@@ -20,6 +20,7 @@ package org.apache.flink.runtime.io.network.partition;
 
 import org.apache.flink.metrics.Gauge;
 import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.runtime.io.network.api.serialization.CompressionStatistics;
 
 import static org.apache.flink.util.Preconditions.checkNotNull;
 
@@ -166,4 +167,24 @@ public class ResultPartitionMetrics {
 		group.gauge("maxQueueLen", metrics.getMaxQueueLenGauge());
 		group.gauge("avgQueueLen", metrics.getAvgQueueLenGauge());
 	}
+
+	/**
+	 * Registers the compression metrics of a result partition, both in total and per subpartition.
+	 */
+	public static void registerCompressionMetrics(MetricGroup group, CompressionStatistics statistics) {
+		checkNotNull(statistics);
+
+		group.gauge("compressionRatio", (Gauge<Double>) statistics::getTotalCompressionRatio);
+		group.gauge("compressionTimeNanos", (Gauge<Long>) statistics::getTotalCompressionTimeNanos);
+		group.gauge("numUncompressedBuffers", (Gauge<Long>) statistics::getTotalNumSkippedBuffers);
+
+		for (int i = 0; i < statistics.getNumChannels(); ++i) {
+			final int channel = i;
+			MetricGroup channelGroup = group.addGroup("subpartition").addGroup(channel);
+
+			channelGroup.gauge("compressionRatio", (Gauge<Double>) () -> statistics.getCompressionRatio(channel));
+			channelGroup.gauge("compressionTimeNanos", (Gauge<Long>) () -> statistics.getCompressionTimeNanos(channel));
+			channelGroup.gauge("numUncompressedBuffers", (Gauge<Long>) () -> statistics.getNumSkippedBuffers(channel));
+		}
+	}
 }
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition;
+
+import javax.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * An unbounded, lock-free queue for exactly one producer thread and one consumer thread.
+ *
+ * <p>The elements are stored in a linked list of fixed size chunks. The producer only writes the
+ * tail chunk and the producer index, the consumer only writes the head chunk and the consumer
+ * index. An element is published by the volatile write of the producer index after it has been
+ * stored, which makes it visible to a consumer that reads the producer index afterwards.
+ *
+ * <p>The indices are written with volatile semantics (not lazily), so that a thread which changes
+ * the queue and then reads another volatile variable is totally ordered with a thread which writes
+ * that variable and then reads the queue. {@link PipelinedSubpartition} relies on this to not miss
+ * data availability notifications.
+ *
+ * <p>The queue does not support multiple concurrent producers or consumers. A different thread
+ * may take over one side only after a happens-before relation with the previous thread of that
+ * side has been established, e.g. via a lock.
+ */
+final class SpscQueue<E> {
+
+	/** The number of elements per chunk. */
+	private static final int CHUNK_SIZE = 64;
+
+	// - Producer side --------------------------------------------------------
+
+	/** The chunk the next element is added to. */
+	private Chunk<E> producerChunk;
+
+	/** The position of the next element in the producer chunk. */
+	private int producerOffset;
+
+	/** The total number of elements added to the queue. */
+	private final AtomicLong producerIndex = new AtomicLong();
+
+	// - Consumer side --------------------------------------------------------
+
+	/** The chunk the head element is read from. */
+	private Chunk<E> consumerChunk;
+
+	/** The position of the head element in the consumer chunk. */
+	private int consumerOffset;
+
+	/** The total number of elements removed from the queue. */
+	private final AtomicLong consumerIndex = new AtomicLong();
+
+	SpscQueue() {
+		Chunk<E> chunk = new Chunk<>();
+		this.producerChunk = chunk;
+		this.consumerChunk = chunk;
+	}
+
+	/**
+	 * Adds the given element at the tail of the queue. Must only be called by the producer.
+	 */
+	void offer(E element) {
+		checkNotNull(element);
+
+		if (producerOffset == CHUNK_SIZE) {
+			Chunk<E> next = new Chunk<>();
+			producerChunk.next = next;
+			producerChunk = next;
+			producerOffset = 0;
+		}
+
+		producerChunk.elements[producerOffset++] = element;
+		producerIndex.set(producerIndex.get() + 1);
+	}
+
+	/**
+	 * Returns the head of the queue without removing it, or <tt>null</tt> if the queue is empty.
+	 * Must only be called by the consumer.
+	 */
+	@Nullable
+	@SuppressWarnings("unchecked")
+	E peek() {
+		if (consumerIndex.get() == producerIndex.get()) {
+			return null;
+		}
+
+		if (consumerOffset == CHUNK_SIZE) {
+			// the producer has moved on to the next chunk which is published with the element
+			consumerChunk = consumerChunk.next;
+			consumerOffset = 0;
+		}
+
+		return (E) consumerChunk.elements[consumerOffset];
+	}
+
+	/**
+	 * Removes and returns the head of the queue, or <tt>null</tt> if the queue is empty. Must only
+	 * be called by the consumer.
+	 */
+	@Nullable
+	E poll() {
+		E element = peek();
+		if (element != null) {
+			consumerChunk.elements[consumerOffset++] = null;
+			consumerIndex.set(consumerIndex.get() + 1);
+		}
+		return element;
+	}
+
+	/**
+	 * Returns the number of elements in the queue. The result is exact if called by the consumer
+	 * and may be larger than the actual size if called by the producer while the consumer removes
+	 * elements. Any other thread only gets a best effort estimate.
+	 */
+	int size() {
+		// read the consumer index first so that a concurrent poll cannot make the size negative
+		long consumed = consumerIndex.get();
+		return (int) Math.max(0L, producerIndex.get() - consumed);
+	}
+
+	boolean isEmpty() {
+		return size() == 0;
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static final class Chunk<E> {
+
+		private final Object[] elements = new Object[CHUNK_SIZE];
+
+		/** The next chunk, written by the producer before publishing its first element. */
+		private volatile Chunk<E> next;
+	}
+}
@@ -184,4 +184,17 @@ public class InputGateMetrics {
 		group.gauge("maxQueueLen", metrics.getMaxQueueLenGauge());
 		group.gauge("avgQueueLen", metrics.getAvgQueueLenGauge());
 	}
+
+	/**
+	 * Registers the metrics of the partition requests of a partition request restricted input gate,
+	 * including the task-wide number of concurrent partition requests.
+	 */
+	public static void registerPartitionRequestMetrics(MetricGroup group, SingleInputGate gate) {
+		final PartitionRequestManager manager = gate.getPartitionRequestManager();
+
+		group.gauge("concurrentPartitionRequests", (Gauge<Integer>) manager::getConcurrentPartitionRequests);
+		group.gauge("partitionRequestLatency", (Gauge<Long>) manager::getPartitionRequestLatencyMillis);
+		group.gauge("runningPartitionRequests", (Gauge<Integer>) () -> manager.getNumRunningPartitionRequests(gate));
+		group.gauge("pendingPartitionRequests", (Gauge<Integer>) () -> manager.getNumPendingPartitionRequests(gate));
+	}
 }
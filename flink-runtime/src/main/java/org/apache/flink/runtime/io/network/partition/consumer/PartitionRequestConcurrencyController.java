@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition.consumer;
+
+import org.apache.flink.util.Preconditions;
+
+/**
+ * Adjusts the number of concurrent partition requests of a task with additive increase and
+ * multiplicative decrease, in periodic steps.
+ *
+ * <p>The number is
+ * <ul>
+ *     <li>halved if most of the running partition requests wait for floating buffers, as the
+ *     buffers rather than the requests limit the throughput then,</li>
+ *     <li>decreased if the latency of the partition requests, i.e. the time from the request to
+ *     the first buffer, grows well beyond the lowest one observed, which hints at an overloaded
+ *     shuffle service,</li>
+ *     <li>reverted if the last increase did not raise the throughput by a reasonable share of the
+ *     per-channel throughput, as the task or the network is saturated then,</li>
+ *     <li>increased otherwise, as long as partition requests are waiting for quota.</li>
+ * </ul>
+ */
+class PartitionRequestConcurrencyController {
+
+	/**
+	 * The share of the running partition requests waiting for floating buffers above which the
+	 * concurrency is halved. Under credit-based flow control the floating buffers are lent to the
+	 * channels with a backlog, so their pool is usually empty without any channel starving.
+	 */
+	static final double MAX_WAITING_FOR_FLOATING_BUFFERS_RATIO = 0.5;
+
+	/** The factor of the lowest observed latency above which the concurrency is decreased. */
+	static final double MAX_LATENCY_INCREASE_FACTOR = 2.0;
+
+	/** The share of the per-channel throughput which each additional request must contribute. */
+	static final double MIN_MARGINAL_THROUGHPUT_RATIO = 0.5;
+
+	private final int minConcurrency;
+
+	private final int maxConcurrency;
+
+	private final long adjustIntervalNanos;
+
+	private int concurrency;
+
+	/** Written under the lock of the partition request manager, but read without it. */
+	private volatile long lastAdjustNanos;
+
+	private long lastBytesReceived;
+
+	/** The per-channel throughput of the last step, or -1 if not known. */
+	private double lastThroughputPerChannel = -1;
+
+	/** The throughput of the last step, in bytes per second. */
+	private double lastThroughput;
+
+	/** The increase of the last step, which is reverted if it did not pay off. */
+	private int lastIncrease;
+
+	private long minLatencyNanos = Long.MAX_VALUE;
+
+	PartitionRequestConcurrencyController(int minConcurrency, int maxConcurrency, long adjustIntervalMillis, long nowNanos) {
+		Preconditions.checkArgument(minConcurrency > 0);
+		Preconditions.checkArgument(maxConcurrency >= minConcurrency);
+		Preconditions.checkArgument(adjustIntervalMillis > 0);
+
+		this.minConcurrency = minConcurrency;
+		this.maxConcurrency = maxConcurrency;
+		this.adjustIntervalNanos = adjustIntervalMillis * 1_000_000L;
+		this.concurrency = minConcurrency;
+		this.lastAdjustNanos = nowNanos;
+	}
+
+	int getConcurrency() {
+		return concurrency;
+	}
+
+	boolean isAdjustmentDue(long nowNanos) {
+		return nowNanos - lastAdjustNanos >= adjustIntervalNanos;
+	}
+
+	/**
+	 * Adjusts the concurrency according to the observations since the last adjustment.
+	 *
+	 * @param nowNanos the current time.
+	 * @param bytesReceived the total number of bytes received by the managed input gates.
+	 * @param numRunningRequests the number of currently running partition requests.
+	 * @param numWaitingForFloatingBuffers the number of input channels which wait for floating buffers.
+	 * @param latencyNanos the average latency of the partition requests since the last adjustment,
+	 *                     or -1 if no request has received data.
+	 * @param hasPendingRequests whether partition requests are waiting for quota.
+	 * @return the new concurrency.
+	 */
+	int adjust(
+			long nowNanos,
+			long bytesReceived,
+			int numRunningRequests,
+			int numWaitingForFloatingBuffers,
+			long latencyNanos,
+			boolean hasPendingRequests) {
+
+		final double throughput = (bytesReceived - lastBytesReceived) * 1e9 / Math.max(1, nowNanos - lastAdjustNanos);
+		final double throughputPerChannel = throughput / Math.max(1, numRunningRequests);
+		lastAdjustNanos = nowNanos;
+		lastBytesReceived = bytesReceived;
+
+		if (latencyNanos >= 0) {
+			minLatencyNanos = Math.min(minLatencyNanos, latencyNanos);
+		}
+
+		final int increase;
+		if (numWaitingForFloatingBuffers > MAX_WAITING_FOR_FLOATING_BUFFERS_RATIO * numRunningRequests) {
+			increase = concurrency / 2 - concurrency;
+		} else if (latencyNanos >= 0 && latencyNanos > MAX_LATENCY_INCREASE_FACTOR * minLatencyNanos) {
+			increase = -step();
+		} else if (lastIncrease > 0 &&
+			throughput - lastThroughput < MIN_MARGINAL_THROUGHPUT_RATIO * lastIncrease * lastThroughputPerChannel) {
+			increase = -lastIncrease;
+		} else if (hasPendingRequests) {
+			increase = step();
+		} else {
+			increase = 0;
+		}
+
+		final int oldConcurrency = concurrency;
+		concurrency = Math.max(minConcurrency, Math.min(maxConcurrency, concurrency + increase));
+		lastIncrease = concurrency - oldConcurrency;
+
+		lastThroughput = throughput;
+		lastThroughputPerChannel = throughputPerChannel;
+		return concurrency;
+	}
+
+	private int step() {
+		return Math.max(1, concurrency / 8);
+	}
+}
@@ -18,9 +18,12 @@
 
 package org.apache.flink.runtime.io.network.partition.consumer;
 
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.runtime.io.network.buffer.BufferPool;
 import org.apache.flink.runtime.jobgraph.IntermediateResultPartitionID;
 import org.apache.flink.util.Preconditions;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 import java.io.IOException;
@@ -37,6 +40,9 @@ import static org.apache.flink.util.Preconditions.checkState;
  * the number of concurrent partition requests. All input channels issue the first request
  * in this partition request manager. Any possible subsequent retries are not managed
  * by this manager.
+ *
+ * <p>The number of concurrent partition requests is either fixed or, if a minimum number and an
+ * adjustment interval are given, adjusted at runtime by a {@link PartitionRequestConcurrencyController}.
  */
 public class PartitionRequestManager {
 
@@ -72,8 +78,28 @@ public class PartitionRequestManager {
 	/** The number of all single input gates. */
 	private final int numInputs;
 
-	/** The maximum concurrent partition request of the task. */
-	private final int maxConcurrentPartitionRequests;
+	/** The controller which adjusts the concurrent partition requests, or null if they are fixed. */
+	@Nullable
+	private final PartitionRequestConcurrencyController concurrencyController;
+
+	/** The current number of concurrent partition requests, which is the total quota. */
+	private volatile int concurrentPartitionRequests;
+
+	/** The quota which is revoked when the next input channels finish, after the concurrency has been decreased. */
+	@GuardedBy("lock")
+	private int quotaToRevoke;
+
+	/** The number of bytes received by the restricted input gates, only accessed by the task thread. */
+	private long bytesReceived;
+
+	@GuardedBy("lock")
+	private long partitionRequestLatencySumNanos;
+
+	@GuardedBy("lock")
+	private int numPartitionRequestLatencies;
+
+	/** The average latency of the partition requests at the last adjustment, or -1 if not known. */
+	private volatile long partitionRequestLatencyNanos = -1;
 
 	/** The partition request quotas which are not used currently. */
 	@GuardedBy("lock")
@@ -83,11 +109,44 @@ public class PartitionRequestManager {
 	private int numRegisteredInputGates;
 
 	public PartitionRequestManager(int maxConcurrentPartitionRequests, int numInputs) {
+		this(maxConcurrentPartitionRequests, numInputs, null);
+	}
+
+	/**
+	 * Creates a partition request manager which adjusts the number of concurrent partition requests
+	 * between the given minimum and maximum.
+	 *
+	 * @param maxConcurrentPartitionRequests the maximum number of concurrent partition requests.
+	 * @param minConcurrentPartitionRequests the initial and minimum number of concurrent partition requests.
+	 * @param adjustIntervalMillis the interval at which the number of concurrent partition requests is adjusted.
+	 * @param numInputs the number of single input gates.
+	 */
+	public PartitionRequestManager(
+		int maxConcurrentPartitionRequests,
+		int minConcurrentPartitionRequests,
+		long adjustIntervalMillis,
+		int numInputs) {
+
+		this(maxConcurrentPartitionRequests, numInputs, new PartitionRequestConcurrencyController(
+			Math.max(numInputs, Math.min(minConcurrentPartitionRequests, maxConcurrentPartitionRequests)),
+			maxConcurrentPartitionRequests,
+			adjustIntervalMillis,
+			System.nanoTime()));
+	}
+
+	@VisibleForTesting
+	PartitionRequestManager(
+		int maxConcurrentPartitionRequests,
+		int numInputs,
+		@Nullable PartitionRequestConcurrencyController concurrencyController) {
+
 		Preconditions.checkArgument(numInputs > 0);
 		Preconditions.checkArgument(maxConcurrentPartitionRequests >= numInputs);
 
-		this.maxConcurrentPartitionRequests = maxConcurrentPartitionRequests;
 		this.numInputs = numInputs;
+		this.concurrencyController = concurrencyController;
+		this.concurrentPartitionRequests = concurrencyController != null ?
+			concurrencyController.getConcurrency() : maxConcurrentPartitionRequests;
 
 		this.inputGates = new LinkedList<>();
 
@@ -209,6 +268,17 @@ public class PartitionRequestManager {
 		int consumedSubpartitionIndex = inputGate.getConsumedSubpartitionIndex();
 		// handle the returned quota
 		synchronized (lock) {
+			int currentUsedQuota = currentUsedPartitionRequestQuota.get(inputGate);
+			if (quotaToRevoke > 0 && (currentUsedQuota > 1 || hasReceivedAllEndOfPartitionEvents)) {
+				// the concurrency has been decreased, so the quota is revoked instead of being reassigned
+				--quotaToRevoke;
+				currentUsedPartitionRequestQuota.put(inputGate, currentUsedQuota - 1);
+				if (hasReceivedAllEndOfPartitionEvents) {
+					releaseInputGate(inputGate);
+				}
+				return;
+			}
+
 			RemoteInputChannel inputChannel = getPendingRemoteChannel(inputGate);
 			if (inputChannel != null) {
 				// assign the returned quota to the same input gate if possible
@@ -217,7 +287,6 @@ public class PartitionRequestManager {
 			}
 
 			// assign the returned quota to other input gate
-			int currentUsedQuota = currentUsedPartitionRequestQuota.get(inputGate);
 			currentUsedPartitionRequestQuota.put(inputGate, currentUsedQuota - 1);
 			if (currentUsedQuota > 1 || hasReceivedAllEndOfPartitionEvents) {
 				if (pendingPartitionRequests.size() > 0) {
@@ -255,14 +324,93 @@ public class PartitionRequestManager {
 
 			// release the related resources
 			if (hasReceivedAllEndOfPartitionEvents) {
-				inputGates.remove(inputGate);
-				pendingPartitionRequests.remove(inputGate);
-				reservedPartitionRequestQuota.remove(inputGate);
-				currentUsedPartitionRequestQuota.remove(inputGate);
+				releaseInputGate(inputGate);
 			}
 		}
 	}
 
+	/**
+	 * This method is called in task thread for each buffer or event consumed from a partition request
+	 * restricted input gate. It adjusts the number of concurrent partition requests if due.
+	 *
+	 * @param numBytes the size of the consumed buffer, 0 for events.
+	 * @throws IOException when {@link InputChannel#requestSubpartition(int)} throw IOException
+	 * @throws InterruptedException when {@link InputChannel#requestSubpartition(int)} throw InterruptedException
+	 */
+	void onBufferConsumed(int numBytes) throws IOException, InterruptedException {
+		if (concurrencyController == null) {
+			return;
+		}
+
+		bytesReceived += numBytes;
+
+		// check the time without the lock first, as this is called for every buffer
+		final long now = System.nanoTime();
+		if (!concurrencyController.isAdjustmentDue(now)) {
+			return;
+		}
+
+		synchronized (lock) {
+			if (concurrencyController.isAdjustmentDue(now)) {
+				adjustConcurrentPartitionRequests(now);
+			}
+		}
+	}
+
+	/**
+	 * This method is called in netty thread when a partition request of a restricted input gate has
+	 * received its first buffer.
+	 *
+	 * @param latencyNanos the time from the partition request to the first buffer.
+	 */
+	void reportPartitionRequestLatency(long latencyNanos) {
+		if (concurrencyController == null) {
+			return;
+		}
+
+		synchronized (lock) {
+			partitionRequestLatencySumNanos += latencyNanos;
+			++numPartitionRequestLatencies;
+		}
+	}
+
+	/**
+	 * Returns the current number of concurrent partition requests, which is fixed unless adjusted
+	 * adaptively.
+	 */
+	public int getConcurrentPartitionRequests() {
+		return concurrentPartitionRequests;
+	}
+
+	/**
+	 * Returns the average latency of the partition requests from the request to the first buffer,
+	 * as observed at the last adjustment, or -1 if not known or not adjusted adaptively.
+	 */
+	public long getPartitionRequestLatencyMillis() {
+		long latency = partitionRequestLatencyNanos;
+		return latency < 0 ? -1 : latency / 1_000_000;
+	}
+
+	/**
+	 * Returns the number of running partition requests of the given input gate.
+	 */
+	int getNumRunningPartitionRequests(SingleInputGate inputGate) {
+		synchronized (lock) {
+			Integer usedQuota = currentUsedPartitionRequestQuota.get(inputGate);
+			return usedQuota == null ? 0 : usedQuota;
+		}
+	}
+
+	/**
+	 * Returns the number of partition requests of the given input gate which wait for quota.
+	 */
+	int getNumPendingPartitionRequests(SingleInputGate inputGate) {
+		synchronized (lock) {
+			LinkedList<RemoteInputChannel> channelList = pendingPartitionRequests.get(inputGate);
+			return channelList == null ? 0 : channelList.size();
+		}
+	}
+
 	/**
 	 * This method is called in RPC thread when unknown input channel is updated to remote or local input
 	 * channel. A partition request will be issued if any partition request quotas are available.
@@ -310,8 +458,8 @@ public class PartitionRequestManager {
 	 * inputGates is larger than 0 to avoid {@link ArithmeticException}.
 	 */
 	private void distributePartitionRequestQuotasFairly() {
-		int averageQuota = maxConcurrentPartitionRequests / inputGates.size();
-		int remainingQuota = maxConcurrentPartitionRequests % inputGates.size();
+		int averageQuota = concurrentPartitionRequests / inputGates.size();
+		int remainingQuota = concurrentPartitionRequests % inputGates.size();
 		int index = 0;
 		for (SingleInputGate inputGate: inputGates) {
 			if (index++ < remainingQuota) {
@@ -322,6 +470,95 @@ public class PartitionRequestManager {
 		}
 	}
 
+	/**
+	 * Adjusts the number of concurrent partition requests via the controller. Additional quota is
+	 * assigned to the waiting channels of the input gates in turn. Quota which is taken away is
+	 * withdrawn from the available quota first and then revoked when channels finish, since
+	 * running partition requests are never cancelled.
+	 */
+	private void adjustConcurrentPartitionRequests(long now) throws IOException, InterruptedException {
+		assert Thread.holdsLock(lock);
+
+		long latencyNanos = numPartitionRequestLatencies > 0 ?
+			partitionRequestLatencySumNanos / numPartitionRequestLatencies : -1;
+		partitionRequestLatencySumNanos = 0;
+		numPartitionRequestLatencies = 0;
+		if (latencyNanos >= 0) {
+			partitionRequestLatencyNanos = latencyNanos;
+		}
+
+		int numRunningRequests = 0;
+		for (int usedQuota : currentUsedPartitionRequestQuota.values()) {
+			numRunningRequests += usedQuota;
+		}
+
+		int newConcurrency = concurrencyController.adjust(
+			now,
+			bytesReceived,
+			numRunningRequests,
+			getNumWaitingForFloatingBuffers(),
+			latencyNanos,
+			!pendingPartitionRequests.isEmpty());
+
+		int delta = newConcurrency - concurrentPartitionRequests;
+		concurrentPartitionRequests = newConcurrency;
+
+		if (delta > 0) {
+			int notRevoked = Math.min(delta, quotaToRevoke);
+			quotaToRevoke -= notRevoked;
+			availableRequestQuota += delta - notRevoked;
+
+			// poll from the head of the queue and add the input gate to the tail of the queue to ensure fairness
+			int numGatesWithoutPendingChannel = 0;
+			while (availableRequestQuota > 0 && numGatesWithoutPendingChannel < inputGates.size()) {
+				SingleInputGate currentInputGate = inputGates.pollFirst();
+				inputGates.addLast(currentInputGate);
+
+				RemoteInputChannel inputChannel = getPendingRemoteChannel(currentInputGate);
+				if (inputChannel != null) {
+					internalRequestSubpartition(
+						currentInputGate, inputChannel, currentInputGate.getConsumedSubpartitionIndex());
+					--availableRequestQuota;
+					currentUsedPartitionRequestQuota.put(
+						currentInputGate, currentUsedPartitionRequestQuota.get(currentInputGate) + 1);
+					numGatesWithoutPendingChannel = 0;
+				} else {
+					++numGatesWithoutPendingChannel;
+				}
+			}
+		} else if (delta < 0) {
+			int withdrawn = Math.min(-delta, availableRequestQuota);
+			availableRequestQuota -= withdrawn;
+			quotaToRevoke += -delta - withdrawn;
+		}
+	}
+
+	/**
+	 * Returns the number of input channels of the restricted input gates which wait for floating
+	 * buffers, i.e. which are registered as listeners at the buffer pools of the input gates.
+	 */
+	private int getNumWaitingForFloatingBuffers() {
+		assert Thread.holdsLock(lock);
+
+		int numWaiting = 0;
+		for (SingleInputGate inputGate : inputGates) {
+			BufferPool bufferPool = inputGate.getBufferPool();
+			if (bufferPool != null) {
+				numWaiting += bufferPool.getNumberOfBufferListeners();
+			}
+		}
+		return numWaiting;
+	}
+
+	private void releaseInputGate(SingleInputGate inputGate) {
+		assert Thread.holdsLock(lock);
+
+		inputGates.remove(inputGate);
+		pendingPartitionRequests.remove(inputGate);
+		reservedPartitionRequestQuota.remove(inputGate);
+		currentUsedPartitionRequestQuota.remove(inputGate);
+	}
+
 	/**
 	 * Gets a remote input channel waiting for quota of the given input gate.
 	 *
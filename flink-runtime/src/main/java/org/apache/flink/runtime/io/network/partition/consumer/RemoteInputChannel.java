@@ -89,6 +89,12 @@ public class RemoteInputChannel extends InputChannel implements BufferRecycler,
 	 */
 	private int expectedSequenceNumber = 0;
 
+	/**
+	 * The time of the partition request of a partition request restricted input gate, until the
+	 * first buffer is received, and -1 afterwards.
+	 */
+	private volatile long partitionRequestNanos = -1;
+
 	/** The initial number of exclusive buffers assigned to this channel. */
 	private int initialCredit;
 
@@ -191,6 +197,9 @@ public class RemoteInputChannel extends InputChannel implements BufferRecycler,
 			checkError();
 		}
 
+		if (inputGate.isPartitionRequestRestricted()) {
+			partitionRequestNanos = System.nanoTime();
+		}
 		partitionRequestClient.requestSubpartition(partitionId, subpartitionIndex, this, 0);
 	}
 
@@ -543,6 +552,10 @@ public class RemoteInputChannel extends InputChannel implements BufferRecycler,
 				}
 			}
 
+			if (success) {
+				reportPartitionRequestLatency();
+			}
+
 			if (success && backlog >= 0) {
 				onSenderBacklog(backlog);
 			}
@@ -553,6 +566,14 @@ public class RemoteInputChannel extends InputChannel implements BufferRecycler,
 		}
 	}
 
+	private void reportPartitionRequestLatency() {
+		long requestNanos = partitionRequestNanos;
+		if (requestNanos >= 0) {
+			partitionRequestNanos = -1;
+			inputGate.getPartitionRequestManager().reportPartitionRequestLatency(System.nanoTime() - requestNanos);
+		}
+	}
+
 	public void onEmptyBuffer(int sequenceNumber, int backlog) throws IOException {
 		boolean success = false;
 
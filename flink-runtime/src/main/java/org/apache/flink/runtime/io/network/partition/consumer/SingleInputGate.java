@@ -196,6 +196,9 @@ public class SingleInputGate implements InputGate {
 	/** Whether the partition request is restricted by quota. */
 	private final boolean isPartitionRequestRestricted;
 
+	/** Whether records may reference the received buffers instead of being copied out of them. */
+	private boolean zeroCopyEnabled;
+
 	public SingleInputGate(
 		String owningTaskName,
 		JobID jobId,
@@ -273,6 +276,18 @@ public class SingleInputGate implements InputGate {
 		return consumedPartitionType;
 	}
 
+	/**
+	 * Returns whether the records of this input gate may be deserialized by reference, see
+	 * {@link org.apache.flink.runtime.io.network.api.serialization.ZeroCopyInputView}.
+	 */
+	public boolean isZeroCopyEnabled() {
+		return zeroCopyEnabled;
+	}
+
+	public void setZeroCopyEnabled(boolean zeroCopyEnabled) {
+		this.zeroCopyEnabled = zeroCopyEnabled;
+	}
+
 	int getConsumedSubpartitionIndex() {
 		return consumedSubpartitionIndex;
 	}
@@ -281,6 +296,10 @@ public class SingleInputGate implements InputGate {
 		return isPartitionRequestRestricted;
 	}
 
+	PartitionRequestManager getPartitionRequestManager() {
+		return partitionRequestManager;
+	}
+
 	BufferProvider getBufferProvider() {
 		return bufferPool;
 	}
@@ -625,6 +644,10 @@ public class SingleInputGate implements InputGate {
 		}
 
 		final Buffer buffer = result.get().buffer();
+		if (isPartitionRequestRestricted) {
+			partitionRequestManager.onBufferConsumed(buffer.isBuffer() ? buffer.getSize() : 0);
+		}
+
 		if (buffer.isBuffer()) {
 			return Optional.of(new BufferOrEvent(buffer, currentChannel.getChannelIndex(), moreAvailable));
 		}
@@ -759,6 +782,7 @@ public class SingleInputGate implements InputGate {
 			owningTaskName, jobId, consumedResultId, consumedPartitionType,
 			consumedSubpartitionIndex, icdd.length, taskActions, metrics,
 			partitionRequestManager, executorService, networkEnvironment.isCreditBased(), isPartitionRequestRestricted);
+		inputGate.setZeroCopyEnabled(igdd.isZeroCopyEnabled());
 
 		// Create the input channels. There is one input channel for each consumed partition.
 		final InputChannel[] inputChannels = new InputChannel[icdd.length];
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition.external;
+
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.util.Comparator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The thread pool serving the reads of the subpartition views whose result partitions are located
+ * on the same disk.
+ *
+ * <p>The pending reads are ordered by the configured subpartition view comparator, so the reads of
+ * adjacent subpartitions of the same result partition are served one after another. While reads
+ * are pending, the views yield their threads after a few buffers instead of reading all their
+ * credits, see {@link #hasPendingReads()}.
+ *
+ * <p>The scheduler tracks the time the reads are queued and served. These statistics are
+ * registered as metrics of the disk and logged periodically by {@link ExternalBlockResultPartitionManager}.
+ */
+class DiskIOScheduler extends ThreadPoolExecutor {
+	private static final Logger LOG = LoggerFactory.getLogger(DiskIOScheduler.class);
+
+	/** The name of the disk, which is the mount point of the directories sharing this scheduler. */
+	private final String diskName;
+
+	private final AtomicLong numReads = new AtomicLong(0);
+
+	private final AtomicLong totalQueuedNanos = new AtomicLong(0);
+
+	private final AtomicLong totalServedNanos = new AtomicLong(0);
+
+	/** The statistics when they were logged last time. */
+	private long lastNumReads;
+	private long lastTotalQueuedNanos;
+	private long lastTotalServedNanos;
+
+	DiskIOScheduler(String diskName, int numThreads, @Nullable Comparator subpartitionViewComparator, ThreadFactory threadFactory) {
+		super(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS, createQueue(subpartitionViewComparator), threadFactory);
+		this.diskName = diskName;
+	}
+
+	/**
+	 * Creates the queue of the pending reads. The views are wrapped by {@link #newTaskFor} when
+	 * they are submitted, so they are unwrapped before being compared.
+	 */
+	@SuppressWarnings("unchecked")
+	private static BlockingQueue<Runnable> createQueue(@Nullable Comparator subpartitionViewComparator) {
+		if (subpartitionViewComparator == null) {
+			return new LinkedBlockingQueue<>();
+		}
+
+		return new PriorityBlockingQueue<>(200,
+			(r1, r2) -> subpartitionViewComparator.compare(unwrap(r1), unwrap(r2)));
+	}
+
+	private static Object unwrap(Runnable runnable) {
+		return runnable instanceof ScheduledRead ? ((ScheduledRead<?>) runnable).read : runnable;
+	}
+
+	@Override
+	protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+		return new ScheduledRead<>(runnable, value);
+	}
+
+	@Override
+	protected void beforeExecute(Thread thread, Runnable runnable) {
+		super.beforeExecute(thread, runnable);
+
+		if (runnable instanceof ScheduledRead) {
+			ScheduledRead<?> scheduledRead = (ScheduledRead<?>) runnable;
+			scheduledRead.startNanos = System.nanoTime();
+			totalQueuedNanos.addAndGet(scheduledRead.startNanos - scheduledRead.submitNanos);
+		}
+	}
+
+	@Override
+	protected void afterExecute(Runnable runnable, Throwable throwable) {
+		super.afterExecute(runnable, throwable);
+
+		if (runnable instanceof ScheduledRead) {
+			totalServedNanos.addAndGet(System.nanoTime() - ((ScheduledRead<?>) runnable).startNanos);
+			numReads.incrementAndGet();
+		}
+	}
+
+	String getDiskName() {
+		return diskName;
+	}
+
+	/**
+	 * Registers the statistics of this scheduler as metrics in the given group.
+	 */
+	void registerMetrics(MetricGroup metricGroup) {
+		metricGroup.gauge("numReads", (Gauge<Long>) this::getNumReads);
+		metricGroup.gauge("queueLength", (Gauge<Integer>) this::getQueueLength);
+		metricGroup.gauge("numActiveThreads", (Gauge<Integer>) this::getActiveCount);
+		metricGroup.gauge("totalQueuedTimeMs", (Gauge<Long>) () -> TimeUnit.NANOSECONDS.toMillis(getTotalQueuedNanos()));
+		metricGroup.gauge("totalServedTimeMs", (Gauge<Long>) () -> TimeUnit.NANOSECONDS.toMillis(getTotalServedNanos()));
+	}
+
+	/**
+	 * Returns true if there are reads waiting for an IO thread, i.e. the disk is busy.
+	 */
+	boolean hasPendingReads() {
+		return !getQueue().isEmpty();
+	}
+
+	/**
+	 * Returns the number of reads waiting for an IO thread.
+	 */
+	int getQueueLength() {
+		return getQueue().size();
+	}
+
+	long getNumReads() {
+		return numReads.get();
+	}
+
+	long getTotalQueuedNanos() {
+		return totalQueuedNanos.get();
+	}
+
+	long getTotalServedNanos() {
+		return totalServedNanos.get();
+	}
+
+	/**
+	 * Logs the average latencies of the reads since the last time, if there are any.
+	 */
+	void logStatistics() {
+		long currentNumReads = numReads.get();
+		long currentTotalQueuedNanos = totalQueuedNanos.get();
+		long currentTotalServedNanos = totalServedNanos.get();
+
+		long deltaNumReads = currentNumReads - lastNumReads;
+		if (deltaNumReads > 0) {
+			LOG.info("Disk {}: {} reads, average queued time {} ms, average served time {} ms, " +
+					"current queue length {}, active threads {}.",
+				diskName,
+				deltaNumReads,
+				TimeUnit.NANOSECONDS.toMillis((currentTotalQueuedNanos - lastTotalQueuedNanos) / deltaNumReads),
+				TimeUnit.NANOSECONDS.toMillis((currentTotalServedNanos - lastTotalServedNanos) / deltaNumReads),
+				getQueueLength(),
+				getActiveCount());
+		}
+
+		lastNumReads = currentNumReads;
+		lastTotalQueuedNanos = currentTotalQueuedNanos;
+		lastTotalServedNanos = currentTotalServedNanos;
+	}
+
+	/**
+	 * A submitted read which keeps the subpartition view for the comparator and the time to
+	 * compute the latencies.
+	 */
+	private static final class ScheduledRead<T> extends FutureTask<T> {
+
+		private final Runnable read;
+
+		private final long submitNanos = System.nanoTime();
+
+		private volatile long startNanos;
+
+		ScheduledRead(Runnable read, T value) {
+			super(read, value);
+			this.read = read;
+		}
+	}
+}
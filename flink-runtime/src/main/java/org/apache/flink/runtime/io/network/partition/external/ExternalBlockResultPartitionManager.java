@@ -20,6 +20,8 @@ package org.apache.flink.runtime.io.network.partition.external;
 
 import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.core.memory.MemoryType;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.metrics.groups.UnregisteredMetricsGroup;
 import org.apache.flink.runtime.io.network.partition.BufferAvailabilityListener;
 import org.apache.flink.runtime.io.network.partition.FixedLengthBufferPool;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionID;
@@ -30,18 +32,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Comparator;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -52,9 +51,15 @@ public class ExternalBlockResultPartitionManager implements ResultPartitionProvi
 
 	private final LocalResultPartitionResolver resultPartitionResolver;
 
-	/** Each directory has its group of threads to do disk IO operations. */
+	/**
+	 * Each disk has its group of threads to do disk IO operations, which is shared by the
+	 * directories on this disk.
+	 */
 	@VisibleForTesting
-	final Map<String, ThreadPoolExecutor> dirToThreadPool = new HashMap<>();
+	final Map<String, DiskIOScheduler> dirToThreadPool = new HashMap<>();
+
+	/** The IO schedulers of the disks, keyed by the mount point. */
+	private final Map<String, DiskIOScheduler> diskToThreadPool = new HashMap<>();
 
 	/** Cache file meta for result partitions. */
 	@VisibleForTesting
@@ -73,6 +78,13 @@ public class ExternalBlockResultPartitionManager implements ResultPartitionProvi
 	public ExternalBlockResultPartitionManager(
 		ExternalBlockShuffleServiceConfiguration shuffleServiceConfiguration) throws Exception {
 
+		this(shuffleServiceConfiguration, new UnregisteredMetricsGroup());
+	}
+
+	public ExternalBlockResultPartitionManager(
+		ExternalBlockShuffleServiceConfiguration shuffleServiceConfiguration,
+		MetricGroup metricGroup) throws Exception {
+
 		this.shuffleServiceConfiguration = shuffleServiceConfiguration;
 		this.resultPartitionResolver = LocalResultPartitionResolverFactory.create(shuffleServiceConfiguration);
 
@@ -82,7 +94,7 @@ public class ExternalBlockResultPartitionManager implements ResultPartitionProvi
 			shuffleServiceConfiguration.getMemorySizePerBufferInBytes(),
 			MemoryType.OFF_HEAP);
 
-		constructThreadPools();
+		constructThreadPools(metricGroup);
 
 		this.resultPartitionRecyclerExecutorService = Executors.newSingleThreadScheduledExecutor();
 		this.resultPartitionRecyclerExecutorService.scheduleWithFixedDelay(
@@ -127,6 +139,7 @@ public class ExternalBlockResultPartitionManager implements ResultPartitionProvi
 			resultPartitionId,
 			bufferPool,
 			shuffleServiceConfiguration.getWaitCreditDelay(),
+			shuffleServiceConfiguration.getMmapWindowSizeInBytes(),
 			availabilityListener);
 
 		resultPartitionMeta.notifySubpartitionStartConsuming(index);
@@ -164,11 +177,7 @@ public class ExternalBlockResultPartitionManager implements ResultPartitionProvi
 			}
 
 			// Stop disk IO threads immediately
-			Iterator threadPoolIter = dirToThreadPool.entrySet().iterator();
-			while (threadPoolIter.hasNext()) {
-				Map.Entry entry = (Map.Entry)threadPoolIter.next();
-				((ThreadPoolExecutor) entry.getValue()).shutdownNow();
-			}
+			diskToThreadPool.values().forEach(DiskIOScheduler::shutdownNow);
 
 			resultPartitionRecyclerExecutorService.shutdownNow();
 
@@ -186,20 +195,52 @@ public class ExternalBlockResultPartitionManager implements ResultPartitionProvi
 
 	/**
 	 * This method is called only in constructor to construct thread pools for disk IO threads.
+	 * The directories on the same mount point share a thread pool, so that a disk is not
+	 * overloaded by the threads of several directories. The statistics of each thread pool are
+	 * registered in the group "disk" of the given metric group.
 	 */
-	private void constructThreadPools() {
-		ThreadGroup threadGroup = new ThreadGroup("Disk IO Thread Group");
+	private void constructThreadPools(MetricGroup metricGroup) {
+		Map<String, Integer> diskToThreadNum = new HashMap<>();
+		Map<String, String> diskToDiskType = new HashMap<>();
+		Map<String, String> dirToDisk = new HashMap<>();
+
 		shuffleServiceConfiguration.getDirToDiskType().forEach((dir, diskType) -> {
+			String disk = getMountPoint(dir);
 			Integer threadNum = shuffleServiceConfiguration.getDiskTypeToIOThreadNum().get(diskType);
-			Comparator subpartitionViewComparator = shuffleServiceConfiguration.newSubpartitionViewComparator();
-			BlockingQueue<Runnable> blockingQueue = subpartitionViewComparator != null ?
-				new PriorityBlockingQueue<>(200, subpartitionViewComparator) :
-				new LinkedBlockingQueue<>();
-			ThreadPoolExecutor threadPool = new ThreadPoolExecutor(
-				threadNum, threadNum, 0L, TimeUnit.MILLISECONDS, blockingQueue,
-				new DispatcherThreadFactory(threadGroup, "IO thread [" + diskType + "] [" + dir + "]"));
-			dirToThreadPool.put(dir, threadPool);
+
+			dirToDisk.put(dir, disk);
+			if (diskToThreadNum.getOrDefault(disk, 0) < threadNum) {
+				diskToThreadNum.put(disk, threadNum);
+				diskToDiskType.put(disk, diskType);
+			}
 		});
+
+		ThreadGroup threadGroup = new ThreadGroup("Disk IO Thread Group");
+		diskToThreadNum.forEach((disk, threadNum) -> {
+			DiskIOScheduler threadPool = new DiskIOScheduler(
+				disk,
+				threadNum,
+				shuffleServiceConfiguration.newSubpartitionViewComparator(),
+				new DispatcherThreadFactory(threadGroup, "IO thread [" + diskToDiskType.get(disk) + "] [" + disk + "]"));
+			threadPool.registerMetrics(metricGroup.addGroup("disk", disk));
+			diskToThreadPool.put(disk, threadPool);
+		});
+
+		dirToDisk.forEach((dir, disk) -> dirToThreadPool.put(dir, diskToThreadPool.get(disk)));
+	}
+
+	private static String getMountPoint(String dir) {
+		try {
+			return Files.getFileStore(Paths.get(dir)).toString();
+		} catch (Throwable t) {
+			LOG.warn("Failed to get the mount point of {}, treat it as a separate disk.", dir, t);
+			return dir;
+		}
+	}
+
+	@VisibleForTesting
+	Map<String, DiskIOScheduler> getDiskToThreadPool() {
+		return diskToThreadPool;
 	}
 
 	@VisibleForTesting
@@ -243,6 +284,8 @@ public class ExternalBlockResultPartitionManager implements ResultPartitionProvi
 		removeResultPartitionAndMeta(partialConsumedPartitionsToRemove,
 			"PARTIAL_CONSUMED_PARTITION_TTL_TIMEOUT",
 			true);
+
+		diskToThreadPool.values().forEach(DiskIOScheduler::logStatistics);
 	}
 
 	private void removeResultPartitionAndMeta(
@@ -24,6 +24,9 @@ import org.apache.flink.runtime.io.network.netty.NettyBufferPool;
 import org.apache.flink.runtime.io.network.netty.NettyConfig;
 import org.apache.flink.runtime.io.network.netty.NettyProtocol;
 import org.apache.flink.runtime.io.network.netty.NettyServer;
+import org.apache.flink.runtime.metrics.MetricRegistryConfiguration;
+import org.apache.flink.runtime.metrics.MetricRegistryImpl;
+import org.apache.flink.runtime.metrics.groups.GenericMetricGroup;
 
 import java.io.IOException;
 
@@ -37,9 +40,15 @@ public class ExternalBlockShuffleService {
 
 	private final NettyBufferPool bufferPool;
 
+	/** The registry of the metrics of the shuffle service, reported by the configured reporters. */
+	private final MetricRegistryImpl metricRegistry;
+
 	public ExternalBlockShuffleService(Configuration configuration) throws Exception {
 		this.shuffleServiceConfiguration = ExternalBlockShuffleServiceConfiguration.fromConfiguration(configuration);
-		this.partitionProvider = new ExternalBlockResultPartitionManager(shuffleServiceConfiguration);
+		this.metricRegistry = new MetricRegistryImpl(MetricRegistryConfiguration.fromConfiguration(configuration));
+		this.partitionProvider = new ExternalBlockResultPartitionManager(
+			shuffleServiceConfiguration,
+			new GenericMetricGroup(metricRegistry, null, "externalBlockShuffleService"));
 
 		NettyConfig nettyConfig = shuffleServiceConfiguration.getNettyConfig();
 		bufferPool = new NettyBufferPool(nettyConfig.getNumberOfArenas(), nettyConfig.getMaxOrder(), nettyConfig.getChunkSize());
@@ -59,6 +68,7 @@ public class ExternalBlockShuffleService {
 	public void stop() {
 		server.shutdown();
 		partitionProvider.stop();
+		metricRegistry.shutdown();
 	}
 
 	public void initializeApplication(String user, String appId) {
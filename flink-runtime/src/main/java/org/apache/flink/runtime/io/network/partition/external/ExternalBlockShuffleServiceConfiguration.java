@@ -76,6 +76,9 @@ public class ExternalBlockShuffleServiceConfiguration {
 
 	private final Long waitCreditDelay;
 
+	/** The size of the windows to map the data files, in bytes. If not positive, the data files are not mapped. */
+	private final Long mmapWindowSizeInBytes;
+
 	/** TTL for consumed partitions, in milliseconds. */
 	private final Long defaultConsumedPartitionTTL;
 
@@ -103,6 +106,7 @@ public class ExternalBlockShuffleServiceConfiguration {
 		Integer bufferNumber,
 		Integer memorySizePerBufferInBytes,
 		Long waitCreditDelay,
+		Long mmapWindowSizeInBytes,
 		Long defaultConsumedPartitionTTL,
 		Long defaultPartialConsumedPartitionTTL,
 		Long defaultUnconsumedPartitionTTL,
@@ -118,6 +122,7 @@ public class ExternalBlockShuffleServiceConfiguration {
 		this.bufferNumber = bufferNumber;
 		this.memorySizePerBufferInBytes = memorySizePerBufferInBytes;
 		this.waitCreditDelay = waitCreditDelay;
+		this.mmapWindowSizeInBytes = mmapWindowSizeInBytes;
 		this.defaultConsumedPartitionTTL = defaultConsumedPartitionTTL;
 		this.defaultPartialConsumedPartitionTTL = defaultPartialConsumedPartitionTTL;
 		this.defaultUnconsumedPartitionTTL = defaultUnconsumedPartitionTTL;
@@ -164,6 +169,10 @@ public class ExternalBlockShuffleServiceConfiguration {
 		return waitCreditDelay;
 	}
 
+	Long getMmapWindowSizeInBytes() {
+		return mmapWindowSizeInBytes;
+	}
+
 	Long getDefaultConsumedPartitionTTL() {
 		return defaultConsumedPartitionTTL;
 	}
@@ -307,6 +316,15 @@ public class ExternalBlockShuffleServiceConfiguration {
 		long waitCreditDelay = configuration.getLong(
 			ExternalBlockShuffleServiceOptions.WAIT_CREDIT_DELAY_IN_MS);
 
+		// 7. Get the size of the windows to map if the data files are read via memory mapping.
+		long mmapWindowSizeInBytes = 0;
+		if (configuration.getBoolean(ExternalBlockShuffleServiceOptions.MMAP_READ_ENABLE)) {
+			int mmapWindowSizeInMB = configuration.getInteger(ExternalBlockShuffleServiceOptions.MMAP_READ_WINDOW_SIZE_IN_MB);
+			checkArgument(mmapWindowSizeInMB > 0,
+				"The mmap window size should be positive, actual value: " + mmapWindowSizeInMB + "MB");
+			mmapWindowSizeInBytes = ((long) mmapWindowSizeInMB) << 20;
+		}
+
 		return new ExternalBlockShuffleServiceConfiguration(
 			configuration,
 			nettyConfig,
@@ -316,6 +334,7 @@ public class ExternalBlockShuffleServiceConfiguration {
 			bufferNum,
 			memorySizePerBufferInBytes,
 			waitCreditDelay,
+			mmapWindowSizeInBytes,
 			defaultConsumedPartitionTTL,
 			defaultPartialConsumedPartitionTTL,
 			defaultUnconsumedPartitionTTL,
@@ -335,6 +354,7 @@ public class ExternalBlockShuffleServiceConfiguration {
 			.append("NettyThreadNum: ").append(configuration.getInteger(NettyConfig.NUM_THREADS_SERVER)).append(", ")
 			.append("NettyArenasNum: ").append(configuration.getInteger(NettyConfig.NUM_ARENAS)).append(", ")
 			.append("WaitCreditDelay: ").append(waitCreditDelay).append(", ")
+			.append("MmapWindowSizeInBytes: ").append(mmapWindowSizeInBytes).append(", ")
 			.append("ConsumedPartitionTTL: ").append(defaultConsumedPartitionTTL).append(", ")
 			.append("PartialConsumedPartitionTTL: ").append(defaultPartialConsumedPartitionTTL).append(", ")
 			.append("UnconsumedPartitionTTL: ").append(defaultUnconsumedPartitionTTL).append(", ")
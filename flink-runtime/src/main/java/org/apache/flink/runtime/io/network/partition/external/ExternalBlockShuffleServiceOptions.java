@@ -199,6 +199,25 @@ public class ExternalBlockShuffleServiceOptions {
 		.defaultValue("org.apache.flink.runtime.io.network.partition.external.CreditBasedSubpartitionViewComparator")
 		.withDescription("The comparator to decide the next subpartition to serve.");
 
+	/**
+	 * Whether to serve the data files by mapping them into memory.
+	 */
+	public static final ConfigOption<Boolean> MMAP_READ_ENABLE =
+		key("flink.shuffle-service.mmap-read.enable")
+			.defaultValue(false)
+			.withDescription("Whether to serve the shuffle data by mapping the data files into memory instead of " +
+				"reading them into the buffers of the shuffle service, which saves a copy of the data for each " +
+				"consumer. The files are still read into the buffers if this is disabled or a file fails to be mapped.");
+
+	/**
+	 * The size of the regions of a data file mapped at a time, in MB.
+	 */
+	public static final ConfigOption<Integer> MMAP_READ_WINDOW_SIZE_IN_MB =
+		key("flink.shuffle-service.mmap-read.window-size-in-mb")
+			.defaultValue(64)
+			.withDescription("The maximum size of the regions of a data file mapped into memory at a time when the " +
+				"mmap read is enabled. A region is unmapped once all its data has been sent.");
+
 	// ------------------------- Configurations for internal use ------------------------
 	public static final ConfigOption<String> LOCAL_RESULT_PARTITION_RESOLVER_CLASS =
 		key("flink.shuffle-service.internal.local-result-partition-resolver-class")
@@ -50,6 +50,13 @@ import static org.apache.flink.util.Preconditions.checkState;
 public class ExternalBlockSubpartitionView implements ResultSubpartitionView, Runnable {
 	private static final Logger LOG = LoggerFactory.getLogger(ExternalBlockSubpartitionView.class);
 
+	/**
+	 * The number of buffers a view reads at least before it yields the IO thread to the other
+	 * pending reads of a busy disk. The view is scheduled again to read the rest.
+	 */
+	@VisibleForTesting
+	static final int MIN_BUFFERS_BEFORE_YIELD = 8;
+
 	private final ExternalBlockResultPartitionMeta externalResultPartitionMeta;
 
 	private final int subpartitionIndex;
@@ -69,6 +76,12 @@ public class ExternalBlockSubpartitionView implements ResultSubpartitionView, Ru
 	 */
 	private final long waitCreditTimeoutInMills;
 
+	/**
+	 * The size of the windows to map if the files are read via memory mapping. If it is not
+	 * positive, the files are read into the buffers of the buffer pool.
+	 */
+	private final long mmapWindowSize;
+
 	/** The number of total length in bytes for this subpartition. */
 	private long totalLength;
 
@@ -95,6 +108,9 @@ public class ExternalBlockSubpartitionView implements ResultSubpartitionView, Ru
 	/** The current input stream of distributed or local file systems. */
 	private SynchronousBufferFileReader currFsIn = null;
 
+	/** The current reader of the mapped file, which is used instead of the input stream if mmap is enabled. */
+	private MappedFileRegionReader currMappedIn = null;
+
 	/** Remaining length in bytes to read for the current spill file. */
 	private long currRemainLength = 0;
 
@@ -122,12 +138,27 @@ public class ExternalBlockSubpartitionView implements ResultSubpartitionView, Ru
 			long waitCreditTimeoutInMills,
 			BufferAvailabilityListener listener) {
 
+		this(externalResultPartitionMeta, subpartitionIndex, threadPool, resultPartitionId, bufferPool,
+			waitCreditTimeoutInMills, 0, listener);
+	}
+
+	public ExternalBlockSubpartitionView(
+			ExternalBlockResultPartitionMeta externalResultPartitionMeta,
+			int subpartitionIndex,
+			ExecutorService threadPool,
+			ResultPartitionID resultPartitionId,
+			FixedLengthBufferPool bufferPool,
+			long waitCreditTimeoutInMills,
+			long mmapWindowSize,
+			BufferAvailabilityListener listener) {
+
 		this.externalResultPartitionMeta = checkNotNull(externalResultPartitionMeta);
 		this.subpartitionIndex = subpartitionIndex;
 		this.threadPool = checkNotNull(threadPool);
 		this.resultPartitionId = checkNotNull(resultPartitionId);
 		this.bufferPool = checkNotNull(bufferPool);
 		this.waitCreditTimeoutInMills = waitCreditTimeoutInMills;
+		this.mmapWindowSize = mmapWindowSize;
 		this.listener = checkNotNull(listener);
 	}
 
@@ -154,13 +185,20 @@ public class ExternalBlockSubpartitionView implements ResultSubpartitionView, Ru
 			}
 
 			while (true) {
+				int numBuffersRead = 0;
 				while (isAvailableForReadUnsafe()) {
 					Buffer buffer = readNextBuffer();
 					enqueueBuffer(buffer);
+
+					if (++numBuffersRead >= MIN_BUFFERS_BEFORE_YIELD && isDiskBusy()) {
+						// The view is submitted again in the finally block.
+						return;
+					}
 				}
 
-				// Check whether we need to wait for credit feedback before exiting.
-				if (waitCreditTimeoutInMills == 0 || !hasMoreDataToReadUnsafe()) {
+				// Check whether we need to wait for credit feedback before exiting. The thread is
+				// not kept waiting if other reads of the disk are pending.
+				if (waitCreditTimeoutInMills == 0 || !hasMoreDataToReadUnsafe() || isDiskBusy()) {
 					break;
 				}
 
@@ -219,6 +257,13 @@ public class ExternalBlockSubpartitionView implements ResultSubpartitionView, Ru
 		}
 	}
 
+	/**
+	 * Returns true if other reads are waiting for the IO threads of the disk of this view.
+	 */
+	private boolean isDiskBusy() {
+		return threadPool instanceof DiskIOScheduler && ((DiskIOScheduler) threadPool).hasPendingReads();
+	}
+
 	private boolean isAvailableForReadUnsafe() {
 		return hasMoreDataToReadUnsafe() && currentCredit > 0;
 	}
@@ -234,10 +279,14 @@ public class ExternalBlockSubpartitionView implements ResultSubpartitionView, Ru
 	 */
 	@Nonnull
 	private Buffer readNextBuffer() throws IOException, InterruptedException {
-		if (currFsIn == null) {
-			currFsIn = getNextFileReader();
+		if (currFsIn == null && currMappedIn == null) {
+			openNextFileReader();
+		}
+		checkState(currFsIn != null || currMappedIn != null, "No more data to read.");
+
+		if (currMappedIn != null) {
+			return readNextMappedBuffer();
 		}
-		checkState(currFsIn != null, "No more data to read.");
 
 		Buffer buffer = bufferPool.requestBufferBlocking();
 		checkState(buffer != null, "Failed to request a buffer.");
@@ -262,7 +311,30 @@ public class ExternalBlockSubpartitionView implements ResultSubpartitionView, Ru
 		return buffer;
 	}
 
+	private Buffer readNextMappedBuffer() throws IOException {
+		checkState(currRemainLength > 0, "Should have data to read from the current file.");
+
+		// The mapped buffers are sliced from the page cache and do not occupy the buffer pool.
+		Buffer buffer = currMappedIn.readNextBuffer();
+		currRemainLength -= buffer.getSize();
+
+		if (currRemainLength == 0) {
+			closeCurrentFileReader();
+		}
+
+		return buffer;
+	}
+
 	private void closeCurrentFileReader() {
+		if (currMappedIn != null) {
+			try {
+				currMappedIn.close();
+			} catch (IOException ioe) {
+				LOG.error("Ignore the close file exception.", ioe);
+			}
+			currMappedIn = null;
+		}
+
 		if (currFsIn != null) {
 			try {
 				currFsIn.close();
@@ -273,23 +345,32 @@ public class ExternalBlockSubpartitionView implements ResultSubpartitionView, Ru
 		}
 	}
 
-	private SynchronousBufferFileReader getNextFileReader() throws IOException {
-		SynchronousBufferFileReader nextFsIn = null;
-
+	private void openNextFileReader() throws IOException {
 		ExternalBlockResultPartitionMeta.ExternalSubpartitionMeta nextMeta;
 		while (metaIterator.hasNext()) {
 			nextMeta = metaIterator.next();
 			currRemainLength = nextMeta.getLength();
 			if (currRemainLength > 0) {
-				FileIOChannel.ID fileChannelID = new FileIOChannel.ID(nextMeta.getDataFile().getPath());
-				nextFsIn = new SynchronousBufferFileReader(fileChannelID, false, false);
-				nextFsIn.seekToPosition(nextMeta.getOffset());
+				String filePath = nextMeta.getDataFile().getPath();
+
+				if (mmapWindowSize > 0) {
+					try {
+						currMappedIn = new MappedFileRegionReader(
+							filePath, nextMeta.getOffset(), currRemainLength, mmapWindowSize, bufferPool.getMemorySegmentSize());
+						break;
+					} catch (IOException e) {
+						// Mapping may fail if the virtual address space is exhausted, in which case the file
+						// is still readable via the input stream.
+						LOG.warn("Failed to map {}, fall back to read it via the input stream.", filePath, e);
+					}
+				}
+
+				currFsIn = new SynchronousBufferFileReader(new FileIOChannel.ID(filePath), false, false);
+				currFsIn.seekToPosition(nextMeta.getOffset());
 
 				break;
 			}
 		}
-
-		return nextFsIn;
 	}
 
 	private void enqueueBuffer(Buffer buffer) throws IOException {
@@ -436,8 +517,14 @@ public class ExternalBlockSubpartitionView implements ResultSubpartitionView, Ru
 
 	@Override
 	public String toString() {
-		return String.format("ExternalSubpartitionView [current read file path : %s]",
-			currFsIn == null ? null : currFsIn.getChannelID().getPath());
+		String currentFilePath = null;
+		if (currMappedIn != null) {
+			currentFilePath = currMappedIn.getFilePath();
+		} else if (currFsIn != null) {
+			currentFilePath = currFsIn.getChannelID().getPath();
+		}
+
+		return String.format("ExternalSubpartitionView [current read file path : %s]", currentFilePath);
 	}
 
 	@VisibleForTesting
@@ -30,12 +30,14 @@ import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
 import org.apache.flink.core.memory.MemorySegment;
 import org.apache.flink.runtime.event.AbstractEvent;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.io.network.api.serialization.CompressionStatistics;
 import org.apache.flink.runtime.io.network.api.serialization.SerializerManager;
 import org.apache.flink.runtime.io.network.partition.ResultPartition;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionID;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionType;
 import org.apache.flink.runtime.io.network.partition.external.writer.PartitionHashFileWriter;
 import org.apache.flink.runtime.io.network.partition.external.writer.PartitionMergeFileWriter;
+import org.apache.flink.runtime.io.network.partition.external.writer.PartitionSortSpillFileWriter;
 import org.apache.flink.runtime.io.network.partition.external.writer.PersistentFileWriter;
 import org.apache.flink.runtime.memory.MemoryManager;
 import org.apache.flink.runtime.plugable.SerializationDelegate;
@@ -44,6 +46,8 @@ import org.apache.flink.util.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
@@ -63,6 +67,7 @@ public class ExternalResultPartition<T> extends ResultPartition<T> {
 	private final IOManager ioManager;
 	private final String partitionRootPath;
 	private final int hashMaxSubpartitions;
+	private final int sortSpillMinSubpartitions;
 	private final int mergeFactor;
 	private final boolean enableAsyncMerging;
 	private final boolean mergeToOneFile;
@@ -70,6 +75,10 @@ public class ExternalResultPartition<T> extends ResultPartition<T> {
 	private final int numPages;
 	private final SerializerManager<SerializationDelegate<T>> serializerManager;
 
+	/** The compression statistics of the subpartitions, null if compression is disabled. */
+	@Nullable
+	private final CompressionStatistics compressionStatistics;
+
 	/** TTL for consumed partitions, in milliseconds. */
 	private final long consumedPartitionTTL;
 
@@ -109,6 +118,8 @@ public class ExternalResultPartition<T> extends ResultPartition<T> {
 			partitionId.getProducerId().toString(), partitionId.getPartitionId().toString());
 		this.hashMaxSubpartitions = taskManagerConfiguration.getInteger(
 			TaskManagerOptions.TASK_MANAGER_OUTPUT_HASH_MAX_SUBPARTITIONS);
+		this.sortSpillMinSubpartitions = taskManagerConfiguration.getInteger(
+			TaskManagerOptions.TASK_MANAGER_OUTPUT_SORT_SPILL_MIN_SUBPARTITIONS);
 		this.mergeFactor = taskManagerConfiguration.getInteger(
 			TaskManagerOptions.TASK_MANAGER_OUTPUT_MERGE_FACTOR);
 		this.enableAsyncMerging = taskManagerConfiguration.getBoolean(
@@ -130,6 +141,8 @@ public class ExternalResultPartition<T> extends ResultPartition<T> {
 
 		this.serializerManager = new SerializerManager<SerializationDelegate<T>>(
 			ResultPartitionType.BLOCKING, taskManagerConfiguration);
+		this.compressionStatistics = serializerManager.useCompression()
+			? new CompressionStatistics(numberOfSubpartitions) : null;
 
 		this.consumedPartitionTTL = taskManagerConfiguration.getInteger(
 			TaskManagerOptions.TASK_EXTERNAL_SHUFFLE_CONSUMED_PARTITION_TTL_IN_SECONDS) * 1000;
@@ -171,8 +184,22 @@ public class ExternalResultPartition<T> extends ResultPartition<T> {
 
 			List<MemorySegment> memory = memoryManager.allocatePages(parentTask, numPages);
 
+			// A huge number of subpartitions would produce too many files with the hash writer or with
+			// the spilled files of the merge writer, so all the subpartitions are written into one file.
 			// If the memory amount is less that the number of subpartitions, it should enter partition merge process.
-			if (numberOfSubpartitions <= hashMaxSubpartitions && numberOfSubpartitions <= memory.size()
+			if (numberOfSubpartitions >= sortSpillMinSubpartitions) {
+				fileWriter = new PartitionSortSpillFileWriter<T>(
+					numberOfSubpartitions,
+					partitionRootPath,
+					memoryManager,
+					memory,
+					ioManager,
+					typeSerializer,
+					serializerManager,
+					numBytesOut,
+					numBuffersOut,
+					compressionStatistics);
+			} else if (numberOfSubpartitions <= hashMaxSubpartitions && numberOfSubpartitions <= memory.size()
 				&& !serializerManager.useCompression()) {
 				fileWriter = new PartitionHashFileWriter<T>(
 					numberOfSubpartitions,
@@ -197,7 +224,8 @@ public class ExternalResultPartition<T> extends ResultPartition<T> {
 					serializerManager,
 					parentTask,
 					numBytesOut,
-					numBuffersOut);
+					numBuffersOut,
+					compressionStatistics);
 			}
 
 			initialized = true;
@@ -392,6 +420,14 @@ public class ExternalResultPartition<T> extends ResultPartition<T> {
 		return partitionRootPath;
 	}
 
+	/**
+	 * Returns the compression statistics of the subpartitions, or null if compression is disabled.
+	 */
+	@Nullable
+	public CompressionStatistics getCompressionStatistics() {
+		return compressionStatistics;
+	}
+
 	@Override
 	public String toString() {
 		return 	"External Result Partition: {" +
@@ -400,6 +436,7 @@ public class ExternalResultPartition<T> extends ResultPartition<T> {
 				", rootPath = " + partitionRootPath +
 				", numberOfSubpartitions = " + numberOfSubpartitions +
 				", hashMaxSubpartitions = " + hashMaxSubpartitions +
+				", sortSpillMinSubpartitions = " + sortSpillMinSubpartitions +
 				", mergeFactor = " + mergeFactor +
 				", shuffleMemory = " + shuffleMemory +
 				", numPages = " + numPages +
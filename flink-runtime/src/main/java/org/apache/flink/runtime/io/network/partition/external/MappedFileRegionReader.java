@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition.external;
+
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferRecycler;
+import org.apache.flink.runtime.io.network.buffer.NetworkBuffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import sun.misc.Cleaner;
+import sun.nio.ch.DirectBuffer;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkState;
+
+/**
+ * Reader for a region of a data file of an external result partition which maps the file
+ * into memory instead of copying it into network buffers.
+ *
+ * <p>The region is mapped window by window. The buffers returned are slices of the current
+ * window and can be sent by netty directly. A window is unmapped after the reader moved past it
+ * and all the buffers sliced from it have been recycled.
+ */
+class MappedFileRegionReader implements Closeable {
+
+	private final String filePath;
+
+	private final FileChannel fileChannel;
+
+	/** The size of the windows to map, which is a multiple of the maximum buffer size. */
+	private final long windowSize;
+
+	private final int maxBufferSize;
+
+	/** The position in the file of the next window to map. */
+	private long nextWindowPosition;
+
+	/** The position in the file where the region ends. */
+	private final long endPosition;
+
+	/** The window to slice the next buffer from. */
+	private MappedWindow currentWindow;
+
+	/**
+	 * Creates a reader for the given region and maps its first window.
+	 *
+	 * @param filePath The path of the data file.
+	 * @param offset The offset of the region in the file.
+	 * @param length The length in bytes of the region.
+	 * @param windowSize The maximum size of a window to map.
+	 * @param maxBufferSize The maximum size of the buffers returned.
+	 * @throws IOException Thrown if the file cannot be opened or mapped.
+	 */
+	MappedFileRegionReader(String filePath, long offset, long length, long windowSize, int maxBufferSize) throws IOException {
+		checkArgument(offset >= 0, "The offset should not be negative.");
+		checkArgument(length > 0, "The length should be positive.");
+		checkArgument(maxBufferSize > 0, "The buffer size should be positive.");
+
+		this.filePath = filePath;
+		this.windowSize = Math.max(windowSize / maxBufferSize, 1) * maxBufferSize;
+		this.maxBufferSize = maxBufferSize;
+		this.nextWindowPosition = offset;
+		this.endPosition = offset + length;
+
+		this.fileChannel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+		try {
+			this.currentWindow = mapNextWindow();
+		} catch (Throwable t) {
+			fileChannel.close();
+			throw t;
+		}
+	}
+
+	String getFilePath() {
+		return filePath;
+	}
+
+	boolean hasRemaining() {
+		return currentWindow.hasRemaining() || nextWindowPosition < endPosition;
+	}
+
+	/**
+	 * Returns the next buffer of the region, which must be recycled after it has been consumed.
+	 */
+	Buffer readNextBuffer() throws IOException {
+		checkState(hasRemaining(), "No more data to read.");
+
+		if (!currentWindow.hasRemaining()) {
+			currentWindow.release();
+			currentWindow = mapNextWindow();
+		}
+
+		return currentWindow.slice(maxBufferSize);
+	}
+
+	@Override
+	public void close() throws IOException {
+		currentWindow.release();
+		fileChannel.close();
+	}
+
+	private MappedWindow mapNextWindow() throws IOException {
+		long size = Math.min(windowSize, endPosition - nextWindowPosition);
+		MappedByteBuffer mappedBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, nextWindowPosition, size);
+		nextWindowPosition += size;
+
+		return new MappedWindow(mappedBuffer);
+	}
+
+	/**
+	 * A mapped window of the file, which is reference counted by the reader and the buffers
+	 * sliced from it.
+	 */
+	private static final class MappedWindow implements BufferRecycler {
+
+		private final MappedByteBuffer mappedBuffer;
+
+		/** The reference held by the reader plus one reference for each buffer not recycled yet. */
+		private final AtomicInteger referenceCount = new AtomicInteger(1);
+
+		private MappedWindow(MappedByteBuffer mappedBuffer) {
+			this.mappedBuffer = mappedBuffer;
+		}
+
+		private boolean hasRemaining() {
+			return mappedBuffer.hasRemaining();
+		}
+
+		private Buffer slice(int maxSize) {
+			int size = Math.min(mappedBuffer.remaining(), maxSize);
+
+			ByteBuffer remaining = mappedBuffer.slice();
+			remaining.limit(size);
+			ByteBuffer slice = remaining.slice();
+			mappedBuffer.position(mappedBuffer.position() + size);
+
+			referenceCount.incrementAndGet();
+			MemorySegment segment = MemorySegmentFactory.wrapPooledOffHeapMemory(slice, this);
+			return new NetworkBuffer(segment, this, true, size);
+		}
+
+		@Override
+		public void recycle(MemorySegment memorySegment) {
+			release();
+		}
+
+		private void release() {
+			if (referenceCount.decrementAndGet() == 0) {
+				// Unmaps the window eagerly instead of waiting for the garbage collection,
+				// which may keep lots of unused mappings alive.
+				Cleaner cleaner = ((DirectBuffer) mappedBuffer).cleaner();
+				if (cleaner != null) {
+					cleaner.clean();
+				}
+			}
+		}
+	}
+}
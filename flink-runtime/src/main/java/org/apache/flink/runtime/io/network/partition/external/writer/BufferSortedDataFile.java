@@ -27,6 +27,7 @@ import org.apache.flink.runtime.io.disk.ChannelBackendMutableObjectIterator;
 import org.apache.flink.runtime.io.disk.iomanager.BufferFileWriter;
 import org.apache.flink.runtime.io.disk.iomanager.FileIOChannel;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.io.network.api.serialization.AdaptiveCompressionPolicy;
 import org.apache.flink.runtime.io.network.api.serialization.RecordSerializer;
 import org.apache.flink.runtime.io.network.api.serialization.SerializerManager;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
@@ -37,6 +38,8 @@ import org.apache.flink.runtime.operators.sort.SortedDataFile;
 import org.apache.flink.runtime.plugable.CopySerializationDelegate;
 import org.apache.flink.runtime.plugable.SerializationDelegate;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
 import java.util.List;
 
@@ -49,6 +52,10 @@ public class BufferSortedDataFile<T> implements SortedDataFile<T> {
 	private final FileIOChannel.ID channelID;
 	private final int fileId;
 
+	/** Decides whether the buffers of the current channel are compressed, null if compression is disabled. */
+	@Nullable
+	private final AdaptiveCompressionPolicy compressionPolicy;
+
 	private final RecordSerializer<IOReadableWritable> recordSerializer;
 	private final SerializationDelegate<T> serializationDelegate;
 	private final CopySerializationDelegate<T> copySerializationDelegate;
@@ -67,11 +74,13 @@ public class BufferSortedDataFile<T> implements SortedDataFile<T> {
 	public BufferSortedDataFile(FileIOChannel.ID channelID, int fileId, TypeSerializer<T> serializer,
 								IOManager ioManager, List<MemorySegment> writeMemory,
 								SerializerManager<SerializationDelegate<T>> serializerManager,
+								@Nullable AdaptiveCompressionPolicy compressionPolicy,
 								Counter numBytesOut, Counter numBuffersOut) throws IOException {
 		this.channelID = channelID;
 		this.fileId = fileId;
 
-		this.recordSerializer = serializerManager.getRecordSerializer();
+		this.compressionPolicy = compressionPolicy;
+		this.recordSerializer = serializerManager.getRecordSerializer(compressionPolicy);
 		this.serializationDelegate = new SerializationDelegate<>(serializer);
 		this.copySerializationDelegate = new CopySerializationDelegate<>(serializer);
 
@@ -170,6 +179,18 @@ public class BufferSortedDataFile<T> implements SortedDataFile<T> {
 		}
 	}
 
+	/**
+	 * Sets the channel the following records belong to. The serialized data of the previous channel
+	 * must have been flushed before.
+	 */
+	public void setCurrentChannel(int channel) {
+		checkState(!recordSerializer.hasSerializedData(), "The data of the previous channel should be flushed.");
+
+		if (compressionPolicy != null) {
+			compressionPolicy.setCurrentChannel(channel);
+		}
+	}
+
 	public long getBytesWritten() {
 		return bytesWritten;
 	}
@@ -22,12 +22,15 @@ import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.core.memory.MemorySegment;
 import org.apache.flink.metrics.Counter;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.io.network.api.serialization.CompressionStatistics;
 import org.apache.flink.runtime.io.network.api.serialization.SerializerManager;
 import org.apache.flink.runtime.io.network.partition.external.ExternalBlockShuffleUtils;
 import org.apache.flink.runtime.operators.sort.SortedDataFile;
 import org.apache.flink.runtime.operators.sort.SortedDataFileFactory;
 import org.apache.flink.runtime.plugable.SerializationDelegate;
 
+import javax.annotation.Nullable;
+
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
@@ -41,17 +44,25 @@ public class BufferSortedDataFileFactory<T> implements SortedDataFileFactory<T>
 	private final IOManager ioManager;
 	private final SerializerManager<SerializationDelegate<T>> serializerManager;
 
+	private final int numPartitions;
+
+	@Nullable
+	private final CompressionStatistics compressionStatistics;
+
 	private final Counter numBytesOut;
 	private final Counter numBuffersOut;
 
 	private int nextFileId;
 
 	public BufferSortedDataFileFactory(String partitionDataRootPath, TypeSerializer<T> serialize, IOManager ioManager,
-		SerializerManager<SerializationDelegate<T>> serializerManager, Counter numBytesOut, Counter numBuffersOut) {
+		SerializerManager<SerializationDelegate<T>> serializerManager, int numPartitions,
+		@Nullable CompressionStatistics compressionStatistics, Counter numBytesOut, Counter numBuffersOut) {
 		this.partitionDataRootPath = partitionDataRootPath;
 		this.serialize = serialize;
 		this.ioManager = ioManager;
 		this.serializerManager = serializerManager;
+		this.numPartitions = numPartitions;
+		this.compressionStatistics = compressionStatistics;
 
 		this.numBytesOut = numBytesOut;
 		this.numBuffersOut = numBuffersOut;
@@ -63,6 +74,7 @@ public class BufferSortedDataFileFactory<T> implements SortedDataFileFactory<T>
 		String path = ExternalBlockShuffleUtils.generateSpillPath(partitionDataRootPath, fileId);
 
 		return new BufferSortedDataFile<T>(ioManager.createChannel(new File(path)), fileId, serialize, ioManager,
-			writeMemory, serializerManager, numBytesOut, numBuffersOut);
+			writeMemory, serializerManager, serializerManager.createCompressionPolicy(numPartitions, compressionStatistics),
+			numBytesOut, numBuffersOut);
 	}
 }
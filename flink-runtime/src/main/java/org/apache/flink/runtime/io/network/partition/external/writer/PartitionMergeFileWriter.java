@@ -31,6 +31,7 @@ import org.apache.flink.core.fs.Path;
 import org.apache.flink.core.memory.MemorySegment;
 import org.apache.flink.metrics.Counter;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.io.network.api.serialization.CompressionStatistics;
 import org.apache.flink.runtime.io.network.api.serialization.SerializerManager;
 import org.apache.flink.runtime.io.network.partition.external.ExternalBlockShuffleUtils;
 import org.apache.flink.runtime.io.network.partition.external.PartitionIndex;
@@ -46,6 +47,8 @@ import org.apache.flink.runtime.plugable.SerializationDelegate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -82,7 +85,7 @@ public class PartitionMergeFileWriter<T> implements PersistentFileWriter<T> {
 		AbstractInvokable parentTask) throws IOException, MemoryAllocationException {
 
 		this(numPartitions, partitionDataRootPath, mergeFactor, enableAsyncMerging, mergeToOneFile,
-			memoryManager, memory, ioManager, serializer, serializerManager, parentTask, null, null);
+			memoryManager, memory, ioManager, serializer, serializerManager, parentTask, null, null, null);
 	}
 
 	public PartitionMergeFileWriter(
@@ -98,7 +101,8 @@ public class PartitionMergeFileWriter<T> implements PersistentFileWriter<T> {
 		SerializerManager<SerializationDelegate<T>> serializerManager,
 		AbstractInvokable parentTask,
 		Counter numBytesOut,
-		Counter numBuffersOut) throws IOException, MemoryAllocationException {
+		Counter numBuffersOut,
+		@Nullable CompressionStatistics compressionStatistics) throws IOException, MemoryAllocationException {
 		checkArgument(numPartitions > 0,
 			"The number of subpartitions should be larger than 0, but actually is: " + numPartitions);
 		checkArgument(mergeFactor >= 2, "Illegal merge factor: " + mergeFactor);
@@ -121,7 +125,8 @@ public class PartitionMergeFileWriter<T> implements PersistentFileWriter<T> {
 			keyPositions, comparators, serializers);
 
 		BufferSortedDataFileFactory<T> sortedDataFileFactory = new BufferSortedDataFileFactory<>(
-			partitionDataRootPath, typeSerializer, ioManager, serializerManager, numBytesOut, numBuffersOut);
+			partitionDataRootPath, typeSerializer, ioManager, serializerManager, numPartitions, compressionStatistics,
+			numBytesOut, numBuffersOut);
 
 		PartitionedBufferSortedDataFileFactory<T> partitionedBufferSortedDataFileFactory =
 			new PartitionedBufferSortedDataFileFactory<T>(sortedDataFileFactory, numPartitions);
@@ -0,0 +1,386 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition.external.writer;
+
+import org.apache.flink.api.common.typeutils.TypeComparator;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.IntComparator;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.api.java.typeutils.runtime.TupleComparator;
+import org.apache.flink.api.java.typeutils.runtime.TupleSerializer;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.io.network.api.serialization.CompressionStatistics;
+import org.apache.flink.runtime.io.network.api.serialization.SerializerManager;
+import org.apache.flink.runtime.io.network.partition.external.ExternalBlockShuffleUtils;
+import org.apache.flink.runtime.io.network.partition.external.PartitionIndex;
+import org.apache.flink.runtime.io.network.partition.external.PersistentFileType;
+import org.apache.flink.runtime.memory.MemoryManager;
+import org.apache.flink.runtime.operators.sort.NormalizedKeySorter;
+import org.apache.flink.runtime.operators.sort.QuickSort;
+import org.apache.flink.runtime.plugable.SerializationDelegate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+import static org.apache.flink.util.Preconditions.checkState;
+
+/**
+ * A shuffle writer who writes a single data file and a single index for all the subpartitions.
+ *
+ * <p>The records are sorted by subpartition in memory and spilled to files whose subpartitions are
+ * stored continuously. On finishing, the spilled files are merged into the data file by a k-way merge
+ * over the subpartition regions of the spilled files. The regions are copied as they are, so the
+ * records are neither deserialized nor re-sorted. If there is only one spilled file, it becomes the
+ * data file directly.
+ *
+ * <p>Compared with {@link PartitionHashFileWriter}, the number of files does not grow with the number
+ * of subpartitions, and compared with {@link PartitionMergeFileWriter}, the data is merged only once.
+ */
+public class PartitionSortSpillFileWriter<T> implements PersistentFileWriter<T> {
+	private static final Logger LOG = LoggerFactory.getLogger(PartitionSortSpillFileWriter.class);
+
+	/** The number of segments reserved to write the spilled files. */
+	private static final int NUM_WRITE_BUFFERS = 4;
+
+	/** The minimal number of segments the sorter requires. */
+	private static final int MIN_NUM_SORT_BUFFERS = 3;
+
+	private final int numPartitions;
+
+	private final String partitionDataRootPath;
+
+	private final MemoryManager memoryManager;
+	private final List<MemorySegment> memory;
+	private final List<MemorySegment> writeMemory;
+
+	private final NormalizedKeySorter<Tuple2<Integer, T>> sorter;
+	private final QuickSort quickSort = new QuickSort();
+
+	private final BufferSortedDataFileFactory<T> sortedDataFileFactory;
+
+	private final Tuple2<Integer, T> reuse = new Tuple2<>();
+
+	/** The files spilled, each of which stores the subpartitions continuously. */
+	private final List<PartitionedBufferSortedDataFile<T>> spilledFiles = new ArrayList<>();
+
+	/** The indices of the final data file, which are generated on finishing. */
+	private List<PartitionIndex> partitionIndices;
+
+	public PartitionSortSpillFileWriter(
+		int numPartitions,
+		String partitionDataRootPath,
+		MemoryManager memoryManager,
+		List<MemorySegment> memory,
+		IOManager ioManager,
+		TypeSerializer<T> serializer,
+		SerializerManager<SerializationDelegate<T>> serializerManager) {
+
+		this(numPartitions, partitionDataRootPath, memoryManager, memory, ioManager, serializer, serializerManager,
+			null, null, null);
+	}
+
+	public PartitionSortSpillFileWriter(
+		int numPartitions,
+		String partitionDataRootPath,
+		MemoryManager memoryManager,
+		List<MemorySegment> memory,
+		IOManager ioManager,
+		TypeSerializer<T> serializer,
+		SerializerManager<SerializationDelegate<T>> serializerManager,
+		Counter numBytesOut,
+		Counter numBuffersOut,
+		@Nullable CompressionStatistics compressionStatistics) {
+
+		checkArgument(numPartitions > 0,
+			"The number of subpartitions should be larger than 0, but actually is: " + numPartitions);
+		checkArgument(memory.size() >= NUM_WRITE_BUFFERS + MIN_NUM_SORT_BUFFERS,
+			"The number of memory segments should be at least " + (NUM_WRITE_BUFFERS + MIN_NUM_SORT_BUFFERS) +
+				", but actually is: " + memory.size());
+
+		this.numPartitions = numPartitions;
+		this.partitionDataRootPath = partitionDataRootPath;
+
+		this.memoryManager = checkNotNull(memoryManager);
+		this.memory = memory;
+		this.writeMemory = new ArrayList<>(memory.subList(0, NUM_WRITE_BUFFERS));
+		List<MemorySegment> sortMemory = new ArrayList<>(memory.subList(NUM_WRITE_BUFFERS, memory.size()));
+
+		// The records are sorted by the subpartition index only.
+		Class<Tuple2<Integer, T>> typedTuple = (Class<Tuple2<Integer, T>>) (Class<?>) Tuple2.class;
+		TypeSerializer<?>[] serializers = new TypeSerializer[]{IntSerializer.INSTANCE, serializer.duplicate()};
+		TypeSerializer<Tuple2<Integer, T>> tuple2Serializer = new TupleSerializer<>(typedTuple, serializers);
+		TypeComparator<?>[] comparators = new TypeComparator<?>[]{new IntComparator(true)};
+		TupleComparator<Tuple2<Integer, T>> tuple2Comparator = new TupleComparator<>(
+			new int[]{0}, comparators, serializers);
+
+		this.sorter = new NormalizedKeySorter<>(tuple2Serializer, tuple2Comparator, sortMemory);
+
+		this.sortedDataFileFactory = new BufferSortedDataFileFactory<>(
+			partitionDataRootPath, serializer, ioManager, serializerManager, numPartitions, compressionStatistics,
+			numBytesOut, numBuffersOut);
+
+		LOG.info("Sort-spill result partition writer initialized.");
+	}
+
+	@Override
+	public void add(T record, int targetPartition) throws IOException {
+		reuse.f1 = record;
+		reuse.f0 = targetPartition;
+		addToSorter(reuse);
+	}
+
+	@Override
+	public void add(T record, int[] targetPartitions) throws IOException {
+		reuse.f1 = record;
+		for (int partition : targetPartitions) {
+			reuse.f0 = partition;
+			addToSorter(reuse);
+		}
+	}
+
+	private void addToSorter(Tuple2<Integer, T> record) throws IOException {
+		if (sorter.write(record)) {
+			return;
+		}
+
+		spill();
+
+		if (!sorter.write(record)) {
+			// The record is larger than the whole sort buffer, write it to a spilled file of its own.
+			PartitionedBufferSortedDataFile<T> file = createSpilledFile();
+			file.writeRecord(record);
+			file.finishWriting();
+			spilledFiles.add(file);
+		}
+	}
+
+	private void spill() throws IOException {
+		if (sorter.isEmpty()) {
+			return;
+		}
+
+		quickSort.sort(sorter);
+
+		PartitionedBufferSortedDataFile<T> file = createSpilledFile();
+		sorter.writeToOutput(file);
+		file.finishWriting();
+		spilledFiles.add(file);
+
+		sorter.reset();
+	}
+
+	private PartitionedBufferSortedDataFile<T> createSpilledFile() throws IOException {
+		return new PartitionedBufferSortedDataFile<>(
+			numPartitions, (BufferSortedDataFile<T>) sortedDataFileFactory.createFile(writeMemory));
+	}
+
+	@Override
+	public void finish() throws IOException, InterruptedException {
+		spill();
+
+		String dataPath = ExternalBlockShuffleUtils.generateDataPath(partitionDataRootPath, 0);
+
+		if (spilledFiles.isEmpty()) {
+			// Create an empty data file so that the consumers find all the subpartitions empty.
+			Files.createFile(Paths.get(dataPath));
+			partitionIndices = new ArrayList<>(numPartitions);
+			for (int i = 0; i < numPartitions; ++i) {
+				partitionIndices.add(new PartitionIndex(i, 0, 0, 0));
+			}
+		} else if (spilledFiles.size() == 1) {
+			PartitionedBufferSortedDataFile<T> file = spilledFiles.get(0);
+			Files.move(Paths.get(file.getChannelID().getPath()), Paths.get(dataPath), StandardCopyOption.REPLACE_EXISTING);
+			partitionIndices = file.getPartitionIndexList();
+		} else {
+			partitionIndices = mergeSpilledFiles(dataPath);
+		}
+
+		LOG.info("Finish sort-spill result partition writing with {} spilled files.", spilledFiles.size());
+	}
+
+	/**
+	 * Merges the subpartition regions of all the spilled files into the data file. The regions are
+	 * polled from a heap ordered by the subpartition index, so the regions of a subpartition are
+	 * written continuously in the order of the spilled files.
+	 */
+	private List<PartitionIndex> mergeSpilledFiles(String dataPath) throws IOException {
+		List<PartitionIndex> mergedIndices = new ArrayList<>(numPartitions);
+		PriorityQueue<SpilledFileCursor> heap = new PriorityQueue<>(spilledFiles.size());
+
+		try (FileChannel dataChannel = FileChannel.open(
+				Paths.get(dataPath), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+
+			try {
+				for (int i = 0; i < spilledFiles.size(); ++i) {
+					SpilledFileCursor cursor = new SpilledFileCursor(i, spilledFiles.get(i));
+					if (cursor.advance()) {
+						heap.add(cursor);
+					} else {
+						cursor.close();
+					}
+				}
+
+				long bytesWritten = 0;
+				int currentPartition = 0;
+				long currentPartitionOffset = 0;
+				long currentPartitionRecords = 0;
+
+				while (!heap.isEmpty()) {
+					SpilledFileCursor cursor = heap.poll();
+					PartitionIndex region = cursor.getCurrentRegion();
+
+					while (currentPartition < region.getPartition()) {
+						mergedIndices.add(new PartitionIndex(currentPartition++, currentPartitionOffset,
+							bytesWritten - currentPartitionOffset, currentPartitionRecords));
+						currentPartitionOffset = bytesWritten;
+						currentPartitionRecords = 0;
+					}
+
+					bytesWritten += cursor.transferCurrentRegionTo(dataChannel);
+					currentPartitionRecords += region.getNumRecords();
+
+					if (cursor.advance()) {
+						heap.add(cursor);
+					} else {
+						cursor.close();
+					}
+				}
+
+				while (currentPartition < numPartitions) {
+					mergedIndices.add(new PartitionIndex(currentPartition++, currentPartitionOffset,
+						bytesWritten - currentPartitionOffset, currentPartitionRecords));
+					currentPartitionOffset = bytesWritten;
+					currentPartitionRecords = 0;
+				}
+			} finally {
+				for (SpilledFileCursor cursor : heap) {
+					cursor.close();
+				}
+			}
+		}
+
+		for (PartitionedBufferSortedDataFile<T> file : spilledFiles) {
+			Files.deleteIfExists(Paths.get(file.getChannelID().getPath()));
+		}
+
+		return mergedIndices;
+	}
+
+	@Override
+	public List<List<PartitionIndex>> generatePartitionIndices() throws IOException, InterruptedException {
+		checkState(partitionIndices != null, "The writer has not finished yet.");
+		return Collections.singletonList(partitionIndices);
+	}
+
+	@Override
+	public void clear() throws IOException {
+		sorter.dispose();
+		memoryManager.release(memory);
+	}
+
+	@Override
+	public PersistentFileType getExternalFileType() {
+		return PersistentFileType.MERGED_PARTITION_FILE;
+	}
+
+	/**
+	 * Iterates over the non-empty subpartition regions of a spilled file.
+	 */
+	private static final class SpilledFileCursor implements Comparable<SpilledFileCursor> {
+
+		private final int fileIndex;
+
+		private final List<PartitionIndex> regions;
+
+		private final FileChannel fileChannel;
+
+		private int nextRegion;
+
+		private PartitionIndex currentRegion;
+
+		SpilledFileCursor(int fileIndex, PartitionedBufferSortedDataFile<?> file) throws IOException {
+			this.fileIndex = fileIndex;
+			this.regions = file.getPartitionIndexList();
+			this.fileChannel = FileChannel.open(new File(file.getChannelID().getPath()).toPath(), StandardOpenOption.READ);
+		}
+
+		/**
+		 * Moves to the next non-empty region and returns whether there is one.
+		 */
+		boolean advance() {
+			while (nextRegion < regions.size()) {
+				currentRegion = regions.get(nextRegion++);
+				if (currentRegion.getLength() > 0) {
+					return true;
+				}
+			}
+
+			currentRegion = null;
+			return false;
+		}
+
+		PartitionIndex getCurrentRegion() {
+			return currentRegion;
+		}
+
+		long transferCurrentRegionTo(FileChannel target) throws IOException {
+			long position = currentRegion.getStartOffset();
+			long remaining = currentRegion.getLength();
+
+			// The zero-copy transfer may copy less than requested.
+			while (remaining > 0) {
+				long transferred = fileChannel.transferTo(position, remaining, target);
+				checkState(transferred > 0, "Unexpected end of the spilled file.");
+				position += transferred;
+				remaining -= transferred;
+			}
+
+			return currentRegion.getLength();
+		}
+
+		void close() throws IOException {
+			fileChannel.close();
+		}
+
+		@Override
+		public int compareTo(SpilledFileCursor other) {
+			int result = Integer.compare(currentRegion.getPartition(), other.currentRegion.getPartition());
+			return result != 0 ? result : Integer.compare(fileIndex, other.fileIndex);
+		}
+	}
+}
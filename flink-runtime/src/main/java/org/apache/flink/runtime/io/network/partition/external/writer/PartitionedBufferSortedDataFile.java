@@ -58,6 +58,7 @@ public class PartitionedBufferSortedDataFile<T> implements PartitionedSortedData
 		if (record.f0 != currentPartition) {
 			backendFile.flush();
 			currentPartition = record.f0;
+			backendFile.setCurrentChannel(currentPartition);
 		}
 
 		partitionIndexGenerator.updatePartitionIndexBeforeWriting(
@@ -74,6 +75,7 @@ public class PartitionedBufferSortedDataFile<T> implements PartitionedSortedData
 		if (partitionIndex != currentPartition) {
 			backendFile.flush();
 			currentPartition = partitionIndex;
+			backendFile.setCurrentChannel(currentPartition);
 		}
 
 		partitionIndexGenerator.updatePartitionIndexBeforeWriting(
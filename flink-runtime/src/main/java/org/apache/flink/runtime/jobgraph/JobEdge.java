@@ -56,6 +56,9 @@ public class JobEdge implements java.io.Serializable {
 	/** Optional description of the caching inside an operator, to be displayed in the JSON plan */
 	private String operatorLevelCachingDescription;
 
+	/** Whether the consumer may reference the received buffers instead of copying the records out of them */
+	private boolean zeroCopyEnabled;
+
 	/** This cache helps to reduce the calculation load of consumer vertices for each partition */
 	private transient Map<Integer, Collection<ExecutionVertexID>> consumerExecutionVerticesCache;
 	
@@ -208,6 +211,29 @@ public class JobEdge implements java.io.Serializable {
 		this.operatorLevelCachingDescription = operatorLevelCachingDescription;
 	}
 
+	/**
+	 * Checks whether the consumer of this edge deserializes records by reference.
+	 *
+	 * @return True, if zero copy deserialization is enabled for this input, false otherwise.
+	 */
+	public boolean isZeroCopyEnabled() {
+		return zeroCopyEnabled;
+	}
+
+	/**
+	 * Sets whether the consumer of this edge deserializes records by reference. If enabled, records
+	 * which support it (such as binary rows) point to the memory of the received network buffers
+	 * instead of being copied out of them, and the buffers are recycled once the next record is read.
+	 * This only takes effect if object reuse is enabled, since the records are only valid until the
+	 * next record is read, and is most effective for co-located producers and consumers, whose
+	 * buffers are handed over without any copy.
+	 *
+	 * @param zeroCopyEnabled True, to enable zero copy deserialization for this input.
+	 */
+	public void setZeroCopyEnabled(boolean zeroCopyEnabled) {
+		this.zeroCopyEnabled = zeroCopyEnabled;
+	}
+
 	/**
 	 * Clear the cache of consumer execution vertices, should be invoked if a parallelism
 	 * change happens to any of the producer or consumer vertices.
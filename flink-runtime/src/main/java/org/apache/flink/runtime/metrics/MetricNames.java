@@ -43,6 +43,7 @@ public class MetricNames {
 	public static final String IO_NUM_BYTES_IN = "numBytesIn";
 	public static final String IO_NUM_BYTES_IN_LOCAL = IO_NUM_BYTES_IN + "Local";
 	public static final String IO_NUM_BYTES_IN_REMOTE = IO_NUM_BYTES_IN + "Remote";
+	public static final String IO_NUM_BYTES_IN_SPILLED = IO_NUM_BYTES_IN + "Spilled";
 	public static final String IO_NUM_BYTES_OUT = "numBytesOut";
 	public static final String IO_NUM_BUFFERS_OUT = "numBuffersOut";
 	public static final String IO_NUM_BYTES_IN_LOCAL_RATE = IO_NUM_BYTES_IN_LOCAL + SUFFIX_RATE;
@@ -45,6 +45,7 @@ public class TaskIOMetricGroup extends ProxyMetricGroup<TaskMetricGroup> {
 	private final Counter numBuffersOut;
 	private final Counter numBytesInLocal;
 	private final Counter numBytesInRemote;
+	private final Counter numBytesInSpilled;
 	private final SumCounter numRecordsIn;
 	private final SumCounter numRecordsOut;
 
@@ -63,6 +64,7 @@ public class TaskIOMetricGroup extends ProxyMetricGroup<TaskMetricGroup> {
 		this.numBuffersOut = counter(MetricNames.IO_NUM_BUFFERS_OUT);
 		this.numBytesInLocal = counter(MetricNames.IO_NUM_BYTES_IN_LOCAL);
 		this.numBytesInRemote = counter(MetricNames.IO_NUM_BYTES_IN_REMOTE);
+		this.numBytesInSpilled = counter(MetricNames.IO_NUM_BYTES_IN_SPILLED);
 		this.numBytesOutRate = meter(MetricNames.IO_NUM_BYTES_OUT_RATE, new MeterView(numBytesOut, 60));
 		this.numBytesInRateLocal = meter(MetricNames.IO_NUM_BYTES_IN_LOCAL_RATE, new MeterView(numBytesInLocal, 60));
 		this.numBytesInRateRemote = meter(MetricNames.IO_NUM_BYTES_IN_REMOTE_RATE, new MeterView(numBytesInRemote, 60));
@@ -96,6 +98,10 @@ public class TaskIOMetricGroup extends ProxyMetricGroup<TaskMetricGroup> {
 		return numBytesInRemote;
 	}
 
+	public Counter getNumBytesInSpilledCounter() {
+		return numBytesInSpilled;
+	}
+
 	public Counter getNumRecordsInCounter() {
 		return numRecordsIn;
 	}
@@ -21,6 +21,8 @@ package org.apache.flink.runtime.metrics.util;
 import org.apache.flink.metrics.Gauge;
 import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.runtime.io.network.NetworkEnvironment;
+import org.apache.flink.runtime.io.network.netty.NettyConnectionManager;
+import org.apache.flink.runtime.io.network.netty.ServerWriteStatistics;
 import org.apache.flink.runtime.metrics.MetricRegistry;
 import org.apache.flink.runtime.metrics.groups.JobManagerMetricGroup;
 import org.apache.flink.runtime.metrics.groups.TaskManagerMetricGroup;
@@ -123,6 +125,37 @@ public class MetricUtils {
 				return (long) network.getNetworkBufferPool().getNumberOfAvailableMemorySegments();
 			}
 		});
+
+		if (network.getConnectionManager() instanceof NettyConnectionManager) {
+			instantiateNettyServerWriteMetrics(
+				metrics, ((NettyConnectionManager) network.getConnectionManager()).getServerWriteStatistics());
+		}
+	}
+
+	private static void instantiateNettyServerWriteMetrics(
+		MetricGroup metrics,
+		final ServerWriteStatistics statistics) {
+		metrics.<Long, Gauge<Long>>gauge("NumServerFlushes", statistics::getNumFlushes);
+		metrics.<Long, Gauge<Long>>gauge("NumServerFlushedMessages", statistics::getNumFlushedMessages);
+
+		// the average number of messages per flush since the last report
+		metrics.<Double, Gauge<Double>>gauge("ServerMessagesPerFlush", new Gauge<Double>() {
+			private long lastNumFlushes;
+			private long lastNumMessages;
+
+			@Override
+			public Double getValue() {
+				final long numFlushes = statistics.getNumFlushes();
+				final long numMessages = statistics.getNumFlushedMessages();
+				final double messagesPerFlush = numFlushes == lastNumFlushes
+					? 0.0
+					: (double) (numMessages - lastNumMessages) / (numFlushes - lastNumFlushes);
+
+				lastNumFlushes = numFlushes;
+				lastNumMessages = numMessages;
+				return messagesPerFlush;
+			}
+		});
 	}
 
 	private static void instantiateClassLoaderMetrics(MetricGroup metrics) {
@@ -20,6 +20,7 @@ package org.apache.flink.runtime.state;
 
 import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.state.StateTtlConfig;
 import org.apache.flink.core.fs.CloseableRegistry;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.keyed.KeyedListState;
@@ -52,6 +53,10 @@ import org.apache.flink.runtime.state.subkeyed.SubKeyedStateDescriptor;
 import org.apache.flink.runtime.state.subkeyed.SubKeyedValueState;
 import org.apache.flink.runtime.state.subkeyed.SubKeyedValueStateDescriptor;
 import org.apache.flink.runtime.state.subkeyed.SubKeyedValueStateImpl;
+import org.apache.flink.runtime.state.ttl.TtlIncrementalCleanup;
+import org.apache.flink.runtime.state.ttl.TtlStateFactory;
+import org.apache.flink.runtime.state.ttl.TtlTimeProvider;
+import org.apache.flink.runtime.state.ttl.TtlValue;
 import org.apache.flink.util.IOUtils;
 import org.apache.flink.util.Preconditions;
 import org.apache.flink.util.StateMigrationException;
@@ -129,6 +134,11 @@ public abstract class AbstractInternalStateBackend implements
 	 */
 	protected final StreamCompressionDecorator keyGroupCompressionDecorator;
 
+	/**
+	 * The provider of the timestamps of the accesses to the states with time-to-live.
+	 */
+	private TtlTimeProvider ttlTimeProvider = TtlTimeProvider.DEFAULT;
+
 	/**
 	 * Subclasses should implement this method to release unused resources.
 	 */
@@ -150,6 +160,35 @@ public abstract class AbstractInternalStateBackend implements
 	 */
 	protected abstract StateStorage getOrCreateStateStorageForSubKeyedState(RegisteredStateMetaInfo stateMetaInfo);
 
+	/**
+	 * Sets the transformer which is applied to the states of the given storage when full snapshots
+	 * are taken. Subclasses should override this method if they support the cleanup of states with
+	 * time-to-live in full snapshots.
+	 *
+	 * @param stateStorage The storage of the state.
+	 * @param snapshotTransformer The transformer applied to the states of the storage.
+	 */
+	protected void setStateSnapshotTransformer(StateStorage stateStorage, StateSnapshotTransformer snapshotTransformer) {
+		// Nothing to do by default.
+	}
+
+	/**
+	 * Creates the incremental cleanup of the given storage of a state with time-to-live, which is
+	 * triggered on every update of the state. Subclasses should override this method if they
+	 * support the incremental cleanup of states with time-to-live.
+	 *
+	 * @param stateStorage The storage of the state.
+	 * @param snapshotTransformer The transformer which filters out the expired states of the storage.
+	 * @param ttlConfig The configuration of the time-to-live of the state.
+	 * @return The incremental cleanup of the storage.
+	 */
+	protected TtlIncrementalCleanup createTtlIncrementalCleanup(
+		StateStorage stateStorage,
+		StateSnapshotTransformer snapshotTransformer,
+		StateTtlConfig ttlConfig) {
+		return TtlIncrementalCleanup.NONE;
+	}
+
 	//--------------------------------------------------------------------------
 
 	protected AbstractInternalStateBackend(
@@ -219,6 +258,15 @@ public abstract class AbstractInternalStateBackend implements
 		return kvStateRegistry;
 	}
 
+	public TtlTimeProvider getTtlTimeProvider() {
+		return ttlTimeProvider;
+	}
+
+	@VisibleForTesting
+	public void setTtlTimeProvider(TtlTimeProvider ttlTimeProvider) {
+		this.ttlTimeProvider = checkNotNull(ttlTimeProvider);
+	}
+
 	@Override
 	public void notifyCheckpointComplete(long checkpointId) throws Exception {
 		// Nothing to do by default.
@@ -275,9 +323,13 @@ public abstract class AbstractInternalStateBackend implements
 		KeyedValueState<K, V> keyedState = (KeyedValueState<K, V>) keyedStates.get(stateName);
 
 		if (keyedState == null) {
-			RegisteredStateMetaInfo newStateMetaInfo = tryRegisterStateMetaInfo(keyedStateDescriptor);
-			StateStorage stateStorage = getOrCreateStateStorageForKeyedState(newStateMetaInfo);
-			keyedState = new KeyedValueStateImpl<>(this, keyedStateDescriptor, stateStorage);
+			if (keyedStateDescriptor.getTtlConfig().isEnabled()) {
+				keyedState = createTtlKeyedValueState(keyedStateDescriptor);
+			} else {
+				RegisteredStateMetaInfo newStateMetaInfo = tryRegisterStateMetaInfo(keyedStateDescriptor);
+				StateStorage stateStorage = getOrCreateStateStorageForKeyedState(newStateMetaInfo);
+				keyedState = new KeyedValueStateImpl<>(this, keyedStateDescriptor, stateStorage);
+			}
 			keyedStates.put(stateName, keyedState);
 		}
 
@@ -286,6 +338,8 @@ public abstract class AbstractInternalStateBackend implements
 
 	@Override
 	public <K, E> KeyedListState<K, E> createKeyedListState(KeyedListStateDescriptor<K, E> keyedStateDescriptor) throws Exception {
+		checkTtlNotEnabled(keyedStateDescriptor);
+
 		String stateName = keyedStateDescriptor.getName();
 		KeyedListState<K, E> keyedState = (KeyedListState<K, E>) keyedStates.get(stateName);
 
@@ -305,9 +359,13 @@ public abstract class AbstractInternalStateBackend implements
 		KeyedMapState<K, MK, MV> keyedState = (KeyedMapState<K, MK, MV>) keyedStates.get(stateName);
 
 		if (keyedState == null) {
-			RegisteredStateMetaInfo newStateMetaInfo = tryRegisterStateMetaInfo(keyedStateDescriptor);
-			StateStorage stateStorage = getOrCreateStateStorageForKeyedState(newStateMetaInfo);
-			keyedState = new KeyedMapStateImpl<>(this, keyedStateDescriptor, stateStorage);
+			if (keyedStateDescriptor.getTtlConfig().isEnabled()) {
+				keyedState = createTtlKeyedMapState(keyedStateDescriptor);
+			} else {
+				RegisteredStateMetaInfo newStateMetaInfo = tryRegisterStateMetaInfo(keyedStateDescriptor);
+				StateStorage stateStorage = getOrCreateStateStorageForKeyedState(newStateMetaInfo);
+				keyedState = new KeyedMapStateImpl<>(this, keyedStateDescriptor, stateStorage);
+			}
 			keyedStates.put(stateName, keyedState);
 		}
 
@@ -316,6 +374,8 @@ public abstract class AbstractInternalStateBackend implements
 
 	@Override
 	public <K, MK, MV> KeyedSortedMapState<K, MK, MV> createKeyedSortedMapState(KeyedSortedMapStateDescriptor<K, MK, MV> keyedStateDescriptor) throws Exception {
+		checkTtlNotEnabled(keyedStateDescriptor);
+
 		String stateName = keyedStateDescriptor.getName();
 		KeyedSortedMapState<K, MK, MV> keyedState = (KeyedSortedMapState<K, MK, MV>) keyedStates.get(stateName);
 
@@ -335,9 +395,13 @@ public abstract class AbstractInternalStateBackend implements
 		SubKeyedValueState<K, N, V> subKeyedState = (SubKeyedValueState<K, N, V>) subKeyedStates.get(stateName);
 
 		if (subKeyedState == null) {
-			RegisteredStateMetaInfo newStateMetaInfo = tryRegisterStateMetaInfo(subKeyedStateDescriptor);
-			StateStorage stateStorage = getOrCreateStateStorageForSubKeyedState(newStateMetaInfo);
-			subKeyedState = new SubKeyedValueStateImpl<>(this, subKeyedStateDescriptor, stateStorage);
+			if (subKeyedStateDescriptor.getTtlConfig().isEnabled()) {
+				subKeyedState = createTtlSubKeyedValueState(subKeyedStateDescriptor);
+			} else {
+				RegisteredStateMetaInfo newStateMetaInfo = tryRegisterStateMetaInfo(subKeyedStateDescriptor);
+				StateStorage stateStorage = getOrCreateStateStorageForSubKeyedState(newStateMetaInfo);
+				subKeyedState = new SubKeyedValueStateImpl<>(this, subKeyedStateDescriptor, stateStorage);
+			}
 			subKeyedStates.put(stateName, subKeyedState);
 		}
 
@@ -346,6 +410,8 @@ public abstract class AbstractInternalStateBackend implements
 
 	@Override
 	public <K, N, E> SubKeyedListState<K, N, E> createSubKeyedListState(SubKeyedListStateDescriptor<K, N, E> subKeyedStateDescriptor) throws Exception {
+		checkTtlNotEnabled(subKeyedStateDescriptor);
+
 		String stateName = subKeyedStateDescriptor.getName();
 		SubKeyedListState<K, N, E> subKeyedState = (SubKeyedListState<K, N, E>) subKeyedStates.get(stateName);
 
@@ -365,9 +431,13 @@ public abstract class AbstractInternalStateBackend implements
 		SubKeyedMapState<K, N, MK, MV> subKeyedState = (SubKeyedMapState<K, N, MK, MV>) subKeyedStates.get(stateName);
 
 		if (subKeyedState == null) {
-			RegisteredStateMetaInfo newStateMetaInfo = tryRegisterStateMetaInfo(subKeyedStateDescriptor);
-			StateStorage stateStorage = getOrCreateStateStorageForSubKeyedState(newStateMetaInfo);
-			subKeyedState = new SubKeyedMapStateImpl<>(this, subKeyedStateDescriptor, stateStorage);
+			if (subKeyedStateDescriptor.getTtlConfig().isEnabled()) {
+				subKeyedState = createTtlSubKeyedMapState(subKeyedStateDescriptor);
+			} else {
+				RegisteredStateMetaInfo newStateMetaInfo = tryRegisterStateMetaInfo(subKeyedStateDescriptor);
+				StateStorage stateStorage = getOrCreateStateStorageForSubKeyedState(newStateMetaInfo);
+				subKeyedState = new SubKeyedMapStateImpl<>(this, subKeyedStateDescriptor, stateStorage);
+			}
 			subKeyedStates.put(stateName, subKeyedState);
 		}
 
@@ -376,6 +446,8 @@ public abstract class AbstractInternalStateBackend implements
 
 	@Override
 	public <K, N, MK, MV> SubKeyedSortedMapState<K, N, MK, MV> createSubKeyedSortedMapState(SubKeyedSortedMapStateDescriptor<K, N, MK, MV> subKeyedStateDescriptor) throws Exception {
+		checkTtlNotEnabled(subKeyedStateDescriptor);
+
 		String stateName = subKeyedStateDescriptor.getName();
 		SubKeyedSortedMapState<K, N, MK, MV> subKeyedState = (SubKeyedSortedMapState<K, N, MK, MV>) subKeyedStates.get(stateName);
 
@@ -391,6 +463,86 @@ public abstract class AbstractInternalStateBackend implements
 
 	//--------------------------------------------------------------------------
 
+	private <K, V> KeyedValueState<K, V> createTtlKeyedValueState(KeyedValueStateDescriptor<K, V> keyedStateDescriptor) throws Exception {
+		StateTtlConfig ttlConfig = keyedStateDescriptor.getTtlConfig();
+		KeyedValueStateDescriptor<K, TtlValue<V>> originalDescriptor = TtlStateFactory.createOriginalDescriptor(keyedStateDescriptor);
+
+		RegisteredStateMetaInfo newStateMetaInfo = tryRegisterStateMetaInfo(originalDescriptor);
+		StateStorage stateStorage = getOrCreateStateStorageForKeyedState(newStateMetaInfo);
+		KeyedValueState<K, TtlValue<V>> originalState = new KeyedValueStateImpl<>(this, originalDescriptor, stateStorage);
+
+		TtlIncrementalCleanup incrementalCleanup = configureTtlCleanup(
+			stateStorage, TtlStateFactory.createValueSnapshotTransformer(ttlConfig, ttlTimeProvider), ttlConfig);
+		return TtlStateFactory.createKeyedValueState(keyedStateDescriptor, originalState, ttlTimeProvider, incrementalCleanup);
+	}
+
+	private <K, MK, MV> KeyedMapState<K, MK, MV> createTtlKeyedMapState(KeyedMapStateDescriptor<K, MK, MV> keyedStateDescriptor) throws Exception {
+		StateTtlConfig ttlConfig = keyedStateDescriptor.getTtlConfig();
+		KeyedMapStateDescriptor<K, MK, TtlValue<MV>> originalDescriptor = TtlStateFactory.createOriginalDescriptor(keyedStateDescriptor);
+
+		RegisteredStateMetaInfo newStateMetaInfo = tryRegisterStateMetaInfo(originalDescriptor);
+		StateStorage stateStorage = getOrCreateStateStorageForKeyedState(newStateMetaInfo);
+		KeyedMapState<K, MK, TtlValue<MV>> originalState = new KeyedMapStateImpl<>(this, originalDescriptor, stateStorage);
+
+		TtlIncrementalCleanup incrementalCleanup = configureTtlCleanup(
+			stateStorage, TtlStateFactory.createMapSnapshotTransformer(ttlConfig, ttlTimeProvider), ttlConfig);
+		return TtlStateFactory.createKeyedMapState(keyedStateDescriptor, originalState, ttlTimeProvider, incrementalCleanup);
+	}
+
+	private <K, N, V> SubKeyedValueState<K, N, V> createTtlSubKeyedValueState(SubKeyedValueStateDescriptor<K, N, V> subKeyedStateDescriptor) throws Exception {
+		StateTtlConfig ttlConfig = subKeyedStateDescriptor.getTtlConfig();
+		SubKeyedValueStateDescriptor<K, N, TtlValue<V>> originalDescriptor = TtlStateFactory.createOriginalDescriptor(subKeyedStateDescriptor);
+
+		RegisteredStateMetaInfo newStateMetaInfo = tryRegisterStateMetaInfo(originalDescriptor);
+		StateStorage stateStorage = getOrCreateStateStorageForSubKeyedState(newStateMetaInfo);
+		SubKeyedValueState<K, N, TtlValue<V>> originalState = new SubKeyedValueStateImpl<>(this, originalDescriptor, stateStorage);
+
+		TtlIncrementalCleanup incrementalCleanup = configureTtlCleanup(
+			stateStorage, TtlStateFactory.createValueSnapshotTransformer(ttlConfig, ttlTimeProvider), ttlConfig);
+		return TtlStateFactory.createSubKeyedValueState(subKeyedStateDescriptor, originalState, ttlTimeProvider, incrementalCleanup);
+	}
+
+	private <K, N, MK, MV> SubKeyedMapState<K, N, MK, MV> createTtlSubKeyedMapState(SubKeyedMapStateDescriptor<K, N, MK, MV> subKeyedStateDescriptor) throws Exception {
+		StateTtlConfig ttlConfig = subKeyedStateDescriptor.getTtlConfig();
+		SubKeyedMapStateDescriptor<K, N, MK, TtlValue<MV>> originalDescriptor = TtlStateFactory.createOriginalDescriptor(subKeyedStateDescriptor);
+
+		RegisteredStateMetaInfo newStateMetaInfo = tryRegisterStateMetaInfo(originalDescriptor);
+		StateStorage stateStorage = getOrCreateStateStorageForSubKeyedState(newStateMetaInfo);
+		SubKeyedMapState<K, N, MK, TtlValue<MV>> originalState = new SubKeyedMapStateImpl<>(this, originalDescriptor, stateStorage);
+
+		TtlIncrementalCleanup incrementalCleanup = configureTtlCleanup(
+			stateStorage, TtlStateFactory.createMapSnapshotTransformer(ttlConfig, ttlTimeProvider), ttlConfig);
+		return TtlStateFactory.createSubKeyedMapState(subKeyedStateDescriptor, originalState, ttlTimeProvider, incrementalCleanup);
+	}
+
+	private TtlIncrementalCleanup configureTtlCleanup(
+		StateStorage stateStorage,
+		StateSnapshotTransformer snapshotTransformer,
+		StateTtlConfig ttlConfig) {
+
+		if (ttlConfig.isCleanupFullSnapshot()) {
+			setStateSnapshotTransformer(stateStorage, snapshotTransformer);
+		}
+
+		return ttlConfig.isCleanupIncrementally() ?
+			createTtlIncrementalCleanup(stateStorage, snapshotTransformer, ttlConfig) :
+			TtlIncrementalCleanup.NONE;
+	}
+
+	private static void checkTtlNotEnabled(KeyedStateDescriptor stateDescriptor) {
+		if (stateDescriptor.getTtlConfig().isEnabled()) {
+			throw new UnsupportedOperationException(
+				"Time-to-live is only supported for value and map states, state: " + stateDescriptor.getName());
+		}
+	}
+
+	private static void checkTtlNotEnabled(SubKeyedStateDescriptor stateDescriptor) {
+		if (stateDescriptor.getTtlConfig().isEnabled()) {
+			throw new UnsupportedOperationException(
+				"Time-to-live is only supported for value and map states, state: " + stateDescriptor.getName());
+		}
+	}
+
 	private RegisteredStateMetaInfo tryRegisterStateMetaInfo(KeyedStateDescriptor stateDescriptor) throws StateMigrationException {
 		Preconditions.checkNotNull(stateDescriptor);
 
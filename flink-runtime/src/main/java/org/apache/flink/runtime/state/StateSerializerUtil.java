@@ -442,6 +442,6 @@ public class StateSerializerUtil {
 		ByteArrayInputStreamWithPos inputStream = new ByteArrayInputStreamWithPos(serializedBytes);
 		DataInputViewStreamWrapper inputView = new DataInputViewStreamWrapper(inputStream);
 
-		return (inputView.readByte() << 8) + (inputView.readByte());
+		return (inputView.readUnsignedByte() << 8) + inputView.readUnsignedByte();
 	}
 }
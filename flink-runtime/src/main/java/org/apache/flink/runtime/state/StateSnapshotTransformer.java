@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import javax.annotation.Nullable;
+
+/**
+ * Transforms or filters the states of a state storage before they are written to a snapshot.
+ *
+ * <p>The given states may be shared with the storage and must not be modified. Transformed
+ * states have to be returned as new objects.
+ *
+ * @param <S> Type of the states.
+ */
+@FunctionalInterface
+public interface StateSnapshotTransformer<S> {
+
+	/**
+	 * Transforms or filters the given state.
+	 *
+	 * @param state The state to transform, not to be modified.
+	 * @return The transformed state, or null if the state is filtered out.
+	 */
+	@Nullable
+	S filterOrTransform(@Nullable S state);
+}
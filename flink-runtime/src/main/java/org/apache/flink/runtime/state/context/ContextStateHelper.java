@@ -122,6 +122,8 @@ public class ContextStateHelper implements StateBinder {
 					stateDesc.getSerializer()
 				);
 
+			keyedStateDescriptor.enableTimeToLive(stateDesc.getTtlConfig());
+
 			KeyedValueState<Object, T> keyedState = internalStateBackend.getKeyedState(keyedStateDescriptor);
 
 			state = new ContextValueState<>(keyContext, keyedState, stateDesc);
@@ -158,6 +160,8 @@ public class ContextStateHelper implements StateBinder {
 						stateDesc.getSerializer()
 					);
 
+				subKeyedValueStateDescriptor.enableTimeToLive(stateDesc.getTtlConfig());
+
 				SubKeyedValueState<Object, N, T> subKeyedValueState = internalStateBackend.getSubKeyedState(subKeyedValueStateDescriptor);
 				state = new ContextSubKeyedValueState<>(this.keyContext, subKeyedValueState, stateDesc.getDefaultValue());
 				registerAsQueryableState(stateDesc, state);
@@ -188,6 +192,8 @@ public class ContextStateHelper implements StateBinder {
 					stateDesc.getElementSerializer()
 				);
 
+			keyedStateDescriptor.enableTimeToLive(stateDesc.getTtlConfig());
+
 			KeyedListState<Object, T> keyedState = internalStateBackend.getKeyedState(keyedStateDescriptor);
 
 			state = new ContextListState<>(keyContext, keyedState);
@@ -223,6 +229,8 @@ public class ContextStateHelper implements StateBinder {
 						stateDesc.getElementSerializer()
 					);
 
+				subKeyedListStateDescriptor.enableTimeToLive(stateDesc.getTtlConfig());
+
 				SubKeyedListState<Object, N, T> subKeyedListState = internalStateBackend.getSubKeyedState(subKeyedListStateDescriptor);
 				state = new ContextSubKeyedListState<>(keyContext, subKeyedListState);
 				registerAsQueryableState(stateDesc, state);
@@ -251,6 +259,8 @@ public class ContextStateHelper implements StateBinder {
 					stateDesc.getSerializer()
 				);
 
+			keyedStateDescriptor.enableTimeToLive(stateDesc.getTtlConfig());
+
 			KeyedValueState<Object, T> keyedState = internalStateBackend.getKeyedState(keyedStateDescriptor);
 
 			state = new ContextReducingState<>(keyContext, keyedState, stateDesc.getReduceFunction());
@@ -286,6 +296,8 @@ public class ContextStateHelper implements StateBinder {
 						stateDesc.getSerializer()
 					);
 
+				subKeyedValueStateDescriptor.enableTimeToLive(stateDesc.getTtlConfig());
+
 				SubKeyedValueState<Object, N, T> subKeyedValueState = internalStateBackend.getSubKeyedState(subKeyedValueStateDescriptor);
 				state = new ContextSubKeyedReducingState<>(
 					keyContext,
@@ -317,6 +329,8 @@ public class ContextStateHelper implements StateBinder {
 					keyContext.getKeySerializer(),
 					stateDesc.getSerializer());
 
+			keyedStateDescriptor.enableTimeToLive(stateDesc.getTtlConfig());
+
 			KeyedValueState<Object, ACC> keyedState = internalStateBackend.getKeyedState(keyedStateDescriptor);
 
 			state = new ContextAggregatingState<>(keyContext, keyedState, stateDesc.getAggregateFunction());
@@ -351,6 +365,8 @@ public class ContextStateHelper implements StateBinder {
 						namespaceSerializer,
 						stateDesc.getSerializer()
 					);
+				subKeyedValueStateDescriptor.enableTimeToLive(stateDesc.getTtlConfig());
+
 				SubKeyedValueState<Object, N, ACC> subKeyedValueState = internalStateBackend.getSubKeyedState(subKeyedValueStateDescriptor);
 				state =
 					new ContextSubKeyedAggregatingState<>(
@@ -384,6 +400,8 @@ public class ContextStateHelper implements StateBinder {
 					stateDesc.getSerializer()
 				);
 
+			keyedStateDescriptor.enableTimeToLive(stateDesc.getTtlConfig());
+
 			KeyedValueState<Object, ACC> keyedState = internalStateBackend.getKeyedState(keyedStateDescriptor);
 
 			state = new ContextFoldingState<>(keyContext, keyedState, stateDesc);
@@ -419,6 +437,8 @@ public class ContextStateHelper implements StateBinder {
 						stateDesc.getSerializer()
 					);
 
+				subKeyedValueStateDescriptor.enableTimeToLive(stateDesc.getTtlConfig());
+
 				SubKeyedValueState<Object, N, ACC> subKeyedValueState = internalStateBackend.getSubKeyedState(subKeyedValueStateDescriptor);
 
 				state = new ContextSubKeyedFoldingState<>(
@@ -453,6 +473,8 @@ public class ContextStateHelper implements StateBinder {
 					stateDesc.getValueSerializer()
 				);
 
+			keyedStateDescriptor.enableTimeToLive(stateDesc.getTtlConfig());
+
 			KeyedMapState<Object, MK, MV> keyedState = internalStateBackend.getKeyedState(keyedStateDescriptor);
 
 			state = new ContextMapState<>(keyContext, keyedState);
@@ -489,6 +511,8 @@ public class ContextStateHelper implements StateBinder {
 					stateDesc.getValueSerializer()
 				);
 
+				subKeyedMapStateDescriptor.enableTimeToLive(stateDesc.getTtlConfig());
+
 				SubKeyedMapState<Object, N, MK, MV> subKeyedMapState = internalStateBackend.getSubKeyedState(subKeyedMapStateDescriptor);
 
 				state = new ContextSubKeyedMapState<Object, N, MK, MV>(
@@ -522,6 +546,8 @@ public class ContextStateHelper implements StateBinder {
 					stateDesc.getSerializer()
 				);
 
+			keyedStateDescriptor.enableTimeToLive(stateDesc.getTtlConfig());
+
 			KeyedSortedMapState<Object, MK, MV> keyedState = internalStateBackend.getKeyedState(keyedStateDescriptor);
 
 			state = new ContextSortedMapState<>(keyContext, keyedState);
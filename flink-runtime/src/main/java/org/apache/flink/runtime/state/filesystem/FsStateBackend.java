@@ -38,6 +38,7 @@ import org.apache.flink.runtime.state.OperatorStateBackend;
 import org.apache.flink.runtime.state.TaskStateManager;
 import org.apache.flink.runtime.state.heap.HeapInternalStateBackend;
 import org.apache.flink.runtime.state.heap.HeapKeyedStateBackend;
+import org.apache.flink.runtime.state.heap.spill.HeapSpillingConfig;
 import org.apache.flink.util.TernaryBoolean;
 
 import org.slf4j.LoggerFactory;
@@ -110,6 +111,26 @@ public class FsStateBackend extends AbstractFileStateBackend implements Configur
 	 * A value of 'undefined' means not yet configured, in which case the default will be used. */
 	private TernaryBoolean createCheckpointSubDirs = TernaryBoolean.UNDEFINED;
 
+	/** Switch to take incremental checkpoints of the heap internal state backend.
+	 * A value of 'undefined' means not yet configured, in which case the default will be used. */
+	private TernaryBoolean incrementalCheckpoints = TernaryBoolean.UNDEFINED;
+
+	/** The maximum number of delta files referenced by an incremental checkpoint.
+	 * A value of '-1' means not yet configured, in which case the default will be used. */
+	private int maxIncrementalDeltas = -1;
+
+	/** Switch to spill cold key groups of the heap internal state backend to disk.
+	 * A value of 'undefined' means not yet configured, in which case the default will be used. */
+	private TernaryBoolean heapSpilling = TernaryBoolean.UNDEFINED;
+
+	/** The heap usage ratio above which key groups are spilled to disk.
+	 * A value of '-1' means not yet configured, in which case the default will be used. */
+	private float spillHighWatermark = -1f;
+
+	/** The heap usage ratio which spilling key groups to disk aims for.
+	 * A value of '-1' means not yet configured, in which case the default will be used. */
+	private float spillLowWatermark = -1f;
+
 	// -----------------------------------------------------------------------
 
 	/**
@@ -367,6 +388,56 @@ public class FsStateBackend extends AbstractFileStateBackend implements Configur
 		// else check the configuration
 		this.createCheckpointSubDirs = original.createCheckpointSubDirs.resolveUndefined(
 			configuration.getBoolean(CheckpointingOptions.CHCKPOINTS_CREATE_SUBDIRS));
+
+		// if incremental checkpoints were configured, use that setting,
+		// else check the configuration
+		this.incrementalCheckpoints = original.incrementalCheckpoints.resolveUndefined(
+			configuration.getBoolean(CheckpointingOptions.INCREMENTAL_CHECKPOINTS));
+
+		final int maxDeltas = original.maxIncrementalDeltas > 0 ?
+			original.maxIncrementalDeltas :
+			configuration.getInteger(CheckpointingOptions.FS_INCREMENTAL_MAX_DELTAS);
+
+		if (maxDeltas > 0) {
+			this.maxIncrementalDeltas = maxDeltas;
+		}
+		else {
+			this.maxIncrementalDeltas = CheckpointingOptions.FS_INCREMENTAL_MAX_DELTAS.defaultValue();
+
+			LoggerFactory.getLogger(AbstractFileStateBackend.class).warn(
+				"Ignoring invalid maximum number of incremental deltas ({}): {} - using default value {} instead.",
+				CheckpointingOptions.FS_INCREMENTAL_MAX_DELTAS.key(), maxDeltas,
+				CheckpointingOptions.FS_INCREMENTAL_MAX_DELTAS.defaultValue());
+		}
+
+		// if spilling was configured, use that setting,
+		// else check the configuration
+		this.heapSpilling = original.heapSpilling.resolveUndefined(
+			configuration.getBoolean(CheckpointingOptions.FS_SPILL_ENABLED));
+
+		final float highWatermark = original.spillHighWatermark > 0 ?
+			original.spillHighWatermark :
+			configuration.getFloat(CheckpointingOptions.FS_SPILL_HIGH_WATERMARK);
+
+		final float lowWatermark = original.spillLowWatermark > 0 ?
+			original.spillLowWatermark :
+			configuration.getFloat(CheckpointingOptions.FS_SPILL_LOW_WATERMARK);
+
+		if (lowWatermark > 0 && lowWatermark <= highWatermark && highWatermark < 1) {
+			this.spillHighWatermark = highWatermark;
+			this.spillLowWatermark = lowWatermark;
+		}
+		else {
+			this.spillHighWatermark = CheckpointingOptions.FS_SPILL_HIGH_WATERMARK.defaultValue();
+			this.spillLowWatermark = CheckpointingOptions.FS_SPILL_LOW_WATERMARK.defaultValue();
+
+			LoggerFactory.getLogger(AbstractFileStateBackend.class).warn(
+				"Ignoring invalid spill watermarks ({}, {}): {}, {} - using default values {}, {} instead.",
+				CheckpointingOptions.FS_SPILL_HIGH_WATERMARK.key(), CheckpointingOptions.FS_SPILL_LOW_WATERMARK.key(),
+				highWatermark, lowWatermark,
+				CheckpointingOptions.FS_SPILL_HIGH_WATERMARK.defaultValue(),
+				CheckpointingOptions.FS_SPILL_LOW_WATERMARK.defaultValue());
+		}
 	}
 
 	// ------------------------------------------------------------------------
@@ -426,6 +497,63 @@ public class FsStateBackend extends AbstractFileStateBackend implements Configur
 		return asynchronousSnapshots.getOrDefault(CheckpointingOptions.ASYNC_SNAPSHOTS.defaultValue());
 	}
 
+	/**
+	 * Gets whether the checkpoints of the heap internal state backend are taken incrementally.
+	 * Savepoints are always full snapshots.
+	 *
+	 * <p>If not explicitly configured, this is the default value of
+	 * {@link CheckpointingOptions#INCREMENTAL_CHECKPOINTS}.
+	 */
+	public boolean isIncrementalCheckpointsEnabled() {
+		return incrementalCheckpoints.getOrDefault(CheckpointingOptions.INCREMENTAL_CHECKPOINTS.defaultValue());
+	}
+
+	/**
+	 * Gets the maximum number of delta files referenced by an incremental checkpoint.
+	 *
+	 * <p>If not explicitly configured, this is the default value of
+	 * {@link CheckpointingOptions#FS_INCREMENTAL_MAX_DELTAS}.
+	 */
+	public int getMaxIncrementalDeltas() {
+		return maxIncrementalDeltas > 0 ?
+			maxIncrementalDeltas :
+			CheckpointingOptions.FS_INCREMENTAL_MAX_DELTAS.defaultValue();
+	}
+
+	/**
+	 * Gets whether the heap internal state backend spills cold key groups to disk.
+	 *
+	 * <p>If not explicitly configured, this is the default value of
+	 * {@link CheckpointingOptions#FS_SPILL_ENABLED}.
+	 */
+	public boolean isHeapSpillingEnabled() {
+		return heapSpilling.getOrDefault(CheckpointingOptions.FS_SPILL_ENABLED.defaultValue());
+	}
+
+	/**
+	 * Gets the heap usage ratio above which key groups are spilled to disk.
+	 *
+	 * <p>If not explicitly configured, this is the default value of
+	 * {@link CheckpointingOptions#FS_SPILL_HIGH_WATERMARK}.
+	 */
+	public float getSpillHighWatermark() {
+		return spillHighWatermark > 0 ?
+			spillHighWatermark :
+			CheckpointingOptions.FS_SPILL_HIGH_WATERMARK.defaultValue();
+	}
+
+	/**
+	 * Gets the heap usage ratio which spilling key groups to disk aims for.
+	 *
+	 * <p>If not explicitly configured, this is the default value of
+	 * {@link CheckpointingOptions#FS_SPILL_LOW_WATERMARK}.
+	 */
+	public float getSpillLowWatermark() {
+		return spillLowWatermark > 0 ?
+			spillLowWatermark :
+			CheckpointingOptions.FS_SPILL_LOW_WATERMARK.defaultValue();
+	}
+
 	// ------------------------------------------------------------------------
 	//  Reconfiguration
 	// ------------------------------------------------------------------------
@@ -503,15 +631,32 @@ public class FsStateBackend extends AbstractFileStateBackend implements Configur
 		int numberOfGroups,
 		KeyGroupRange keyGroupRange) {
 
-		return new HeapInternalStateBackend(
+		final HeapSpillingConfig spillingConfig = isHeapSpillingEnabled() ?
+			new HeapSpillingConfig(
+				env.getIOManager().getSpillingDirectories(),
+				getSpillHighWatermark(),
+				getSpillLowWatermark()) :
+			null;
+
+		HeapInternalStateBackend internalStateBackend = new HeapInternalStateBackend(
 				numberOfGroups,
 				keyGroupRange,
 				env.getUserClassLoader(),
 				env.getTaskStateManager().createLocalRecoveryConfig(),
 				env.getTaskKvStateRegistry(),
 				isUsingAsynchronousSnapshots(),
-				env.getExecutionConfig()
+				env.getExecutionConfig(),
+				isIncrementalCheckpointsEnabled(),
+				getMaxIncrementalDeltas(),
+				spillingConfig
 			);
+
+		if (internalStateBackend.getSpillManager() != null) {
+			internalStateBackend.getSpillManager().registerMetrics(
+				env.getMetricGroup().addGroup("heapStateSpilling").addGroup(operatorIdentifier));
+		}
+
+		return internalStateBackend;
 	}
 
 	// ------------------------------------------------------------------------
@@ -524,6 +669,8 @@ public class FsStateBackend extends AbstractFileStateBackend implements Configur
 			"checkpoints: '" + getCheckpointPath() +
 			"', savepoints: '" + getSavepointPath() +
 			"', asynchronous: " + asynchronousSnapshots +
-			", fileStateThreshold: " + fileStateThreshold + ")";
+			", fileStateThreshold: " + fileStateThreshold +
+			", incremental: " + incrementalCheckpoints +
+			", spilling: " + heapSpilling + ")";
 	}
 }
@@ -20,41 +20,51 @@ package org.apache.flink.runtime.state.heap;
 
 import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.state.StateTtlConfig;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.core.fs.FSDataInputStream;
 import org.apache.flink.core.memory.DataInputView;
 import org.apache.flink.core.memory.DataInputViewStreamWrapper;
 import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.configuration.CheckpointingOptions;
 import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.checkpoint.CheckpointType;
 import org.apache.flink.runtime.io.async.AbstractAsyncCallableWithResources;
 import org.apache.flink.runtime.io.async.AsyncStoppableTaskWithCallback;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.CheckpointStreamFactory;
 import org.apache.flink.runtime.state.CheckpointStreamWithResultProvider;
 import org.apache.flink.runtime.state.CheckpointedStateScope;
+import org.apache.flink.runtime.state.IncrementalKeyedStateSnapshot;
 import org.apache.flink.runtime.state.InternalBackendSerializationProxy;
 import org.apache.flink.runtime.state.KeyGroupsStateSnapshot;
 import org.apache.flink.runtime.state.DoneFuture;
 import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.KeyedStateHandle;
 import org.apache.flink.runtime.state.LocalRecoveryConfig;
+import org.apache.flink.runtime.state.PlaceholderStreamStateHandle;
 import org.apache.flink.runtime.state.RegisteredStateMetaInfo;
 import org.apache.flink.runtime.state.SnappyStreamCompressionDecorator;
 import org.apache.flink.runtime.state.SnapshotResult;
+import org.apache.flink.runtime.state.StateHandleID;
+import org.apache.flink.runtime.state.StateSnapshotTransformer;
 import org.apache.flink.runtime.state.StateMetaInfoSnapshot;
 import org.apache.flink.runtime.state.StreamCompressionDecorator;
+import org.apache.flink.runtime.state.StateUtil;
 import org.apache.flink.runtime.state.StreamStateHandle;
 import org.apache.flink.runtime.state.UncompressedStreamCompressionDecorator;
 import org.apache.flink.runtime.state.VoidNamespace;
 import org.apache.flink.runtime.state.AbstractInternalStateBackend;
 import org.apache.flink.runtime.state.StateStorage;
-import org.apache.flink.runtime.state.heap.internal.StateTable;
 import org.apache.flink.runtime.state.heap.internal.StateTableSnapshot;
+import org.apache.flink.runtime.state.heap.spill.HeapSpillingConfig;
+import org.apache.flink.runtime.state.heap.spill.KeyGroupSpillManager;
 import org.apache.flink.runtime.state.keyed.KeyedState;
 import org.apache.flink.runtime.state.keyed.KeyedStateDescriptor;
 import org.apache.flink.runtime.state.subkeyed.SubKeyedState;
 import org.apache.flink.runtime.state.subkeyed.SubKeyedStateDescriptor;
+import org.apache.flink.runtime.state.ttl.TtlIncrementalCleanup;
 import org.apache.flink.util.IOUtils;
 import org.apache.flink.util.Preconditions;
 import org.apache.flink.util.function.SupplierWithException;
@@ -63,16 +73,24 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.RunnableFuture;
 import java.util.stream.Collectors;
 
@@ -94,6 +112,39 @@ public class HeapInternalStateBackend extends AbstractInternalStateBackend {
 	 */
 	private final boolean asynchronousSnapshot;
 
+	/**
+	 * Whether checkpoints are taken incrementally. Savepoints are always full snapshots.
+	 */
+	private final boolean incrementalCheckpoints;
+
+	/**
+	 * The maximum number of delta files referenced by an incremental checkpoint.
+	 */
+	private final int maxIncrementalDeltas;
+
+	/**
+	 * The key groups modified before each snapshot since the previous snapshot, keyed by the IDs of
+	 * the snapshots taken after the last completed checkpoint.
+	 */
+	private final SortedMap<Long, BitSet> dirtyKeyGroups = new TreeMap<>();
+
+	/**
+	 * The indices of the incremental checkpoints which may become the base of following checkpoints,
+	 * keyed by checkpoint ID. Accessed by the asynchronous snapshot threads.
+	 */
+	private final SortedMap<Long, IncrementalKeyGroupsIndex> materializedKeyGroups = new TreeMap<>();
+
+	/**
+	 * The ID of the last completed incremental checkpoint, which is the base of following checkpoints.
+	 */
+	private long lastCompletedCheckpointId = -1L;
+
+	/**
+	 * The manager spilling key groups to disk under heap pressure, null if spilling is disabled.
+	 */
+	@Nullable
+	private final KeyGroupSpillManager spillManager;
+
 	public HeapInternalStateBackend(
 		int numberOfGroups,
 		KeyGroupRange keyGroupRange,
@@ -102,18 +153,84 @@ public class HeapInternalStateBackend extends AbstractInternalStateBackend {
 		TaskKvStateRegistry kvStateRegistry,
 		boolean asynchronousSnapshot,
 		ExecutionConfig executionConfig
+	) {
+		this(
+			numberOfGroups,
+			keyGroupRange,
+			userClassLoader,
+			localRecoveryConfig,
+			kvStateRegistry,
+			asynchronousSnapshot,
+			executionConfig,
+			false,
+			CheckpointingOptions.FS_INCREMENTAL_MAX_DELTAS.defaultValue());
+	}
+
+	public HeapInternalStateBackend(
+		int numberOfGroups,
+		KeyGroupRange keyGroupRange,
+		ClassLoader userClassLoader,
+		LocalRecoveryConfig localRecoveryConfig,
+		TaskKvStateRegistry kvStateRegistry,
+		boolean asynchronousSnapshot,
+		ExecutionConfig executionConfig,
+		boolean incrementalCheckpoints,
+		int maxIncrementalDeltas
+	) {
+		this(
+			numberOfGroups,
+			keyGroupRange,
+			userClassLoader,
+			localRecoveryConfig,
+			kvStateRegistry,
+			asynchronousSnapshot,
+			executionConfig,
+			incrementalCheckpoints,
+			maxIncrementalDeltas,
+			null);
+	}
+
+	public HeapInternalStateBackend(
+		int numberOfGroups,
+		KeyGroupRange keyGroupRange,
+		ClassLoader userClassLoader,
+		LocalRecoveryConfig localRecoveryConfig,
+		TaskKvStateRegistry kvStateRegistry,
+		boolean asynchronousSnapshot,
+		ExecutionConfig executionConfig,
+		boolean incrementalCheckpoints,
+		int maxIncrementalDeltas,
+		@Nullable HeapSpillingConfig spillingConfig
 	) {
 		super(numberOfGroups, keyGroupRange, userClassLoader, kvStateRegistry, executionConfig);
 
+		Preconditions.checkArgument(maxIncrementalDeltas > 0, "The maximum number of incremental deltas must be positive.");
+
 		this.localRecoveryConfig = Preconditions.checkNotNull(localRecoveryConfig);
 		this.asynchronousSnapshot = asynchronousSnapshot;
-
-		LOG.info("HeapInternalStateBackend is created with {} mode.", (asynchronousSnapshot ? "async" : "sync"));
+		this.incrementalCheckpoints = incrementalCheckpoints;
+		this.maxIncrementalDeltas = maxIncrementalDeltas;
+		this.spillManager = spillingConfig == null ? null :
+			new KeyGroupSpillManager(numberOfGroups, keyGroupRange, spillingConfig);
+
+		LOG.info("HeapInternalStateBackend is created with {} mode, incremental checkpoints {}, spilling {}.",
+			(asynchronousSnapshot ? "async" : "sync"), (incrementalCheckpoints ? "enabled" : "disabled"),
+			(spillingConfig != null ? spillingConfig : "disabled"));
 	}
 
 	@Override
 	public void closeImpl() {
+		if (spillManager != null) {
+			spillManager.close();
+		}
+	}
 
+	/**
+	 * Returns the manager spilling key groups to disk, null if spilling is disabled.
+	 */
+	@Nullable
+	public KeyGroupSpillManager getSpillManager() {
+		return spillManager;
 	}
 
 	@Override
@@ -129,6 +246,12 @@ public class HeapInternalStateBackend extends AbstractInternalStateBackend {
 				false,
 				asynchronousSnapshot
 			);
+			if (incrementalCheckpoints) {
+				stateStorage.enableDirtyKeyGroupTracking();
+			}
+			if (spillManager != null) {
+				stateStorage.enableSpilling(spillManager);
+			}
 			stateStorages.put(stateMetaInfo.getName(), stateStorage);
 		}
 		stateStorage.setStateMetaInfo(stateMetaInfo);
@@ -149,6 +272,12 @@ public class HeapInternalStateBackend extends AbstractInternalStateBackend {
 				true,
 				asynchronousSnapshot
 			);
+			if (incrementalCheckpoints) {
+				stateStorage.enableDirtyKeyGroupTracking();
+			}
+			if (spillManager != null) {
+				stateStorage.enableSpilling(spillManager);
+			}
 			stateStorages.put(stateMetaInfo.getName(), stateStorage);
 		}
 		stateStorage.setStateMetaInfo(stateMetaInfo);
@@ -156,13 +285,31 @@ public class HeapInternalStateBackend extends AbstractInternalStateBackend {
 		return stateStorage;
 	}
 
+	@Override
+	@SuppressWarnings("unchecked")
+	protected void setStateSnapshotTransformer(StateStorage stateStorage, StateSnapshotTransformer snapshotTransformer) {
+		((HeapStateStorage) stateStorage).setSnapshotTransformer(snapshotTransformer);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	protected TtlIncrementalCleanup createTtlIncrementalCleanup(
+		StateStorage stateStorage,
+		StateSnapshotTransformer snapshotTransformer,
+		StateTtlConfig ttlConfig) {
+
+		HeapStateStorage heapStateStorage = (HeapStateStorage) stateStorage;
+		int cleanupSize = ttlConfig.getIncrementalCleanupSize();
+		return () -> heapStateStorage.cleanupIncrementally(cleanupSize, snapshotTransformer);
+	}
+
 	@Override
 	public int numStateEntries() {
 		int count = 0;
 		List<Object> stateStorages = getKeyedStates().values().stream().map(KeyedState::getStateStorage).collect(Collectors.toList());
 		stateStorages.addAll(getSubKeyedStates().values().stream().map(SubKeyedState::getStateStorage).collect(Collectors.toList()));
 		for (Object stateStorage : stateStorages) {
-			count += ((HeapStateStorage) stateStorage).getStateTable().size();
+			count += ((HeapStateStorage) stateStorage).size();
 		}
 		return count;
 	}
@@ -174,7 +321,7 @@ public class HeapInternalStateBackend extends AbstractInternalStateBackend {
 	public int numStateEntries(Object namespace) {
 		int count = 0;
 		for (SubKeyedState subKeyedState : getSubKeyedStates().values()) {
-			count += ((HeapStateStorage) subKeyedState.getStateStorage()).getStateTable().sizeOfNamespace(namespace);
+			count += ((HeapStateStorage) subKeyedState.getStateStorage()).sizeOfNamespace(namespace);
 		}
 		return count;
 	}
@@ -193,6 +340,10 @@ public class HeapInternalStateBackend extends AbstractInternalStateBackend {
 
 		long syncStartTime = System.currentTimeMillis();
 
+		if (incrementalCheckpoints) {
+			collectDirtyKeyGroups(checkpointId);
+		}
+
 		List<StateMetaInfoSnapshot> keyedStateMetaSnapshots = new ArrayList<>();
 
 		List<StateMetaInfoSnapshot> subKeyedStateMetaSnapshots = new ArrayList<>();
@@ -205,20 +356,33 @@ public class HeapInternalStateBackend extends AbstractInternalStateBackend {
 
 		for (Map.Entry<String, RegisteredStateMetaInfo> registeredStateMetaInfoEntry : registeredStateMetaInfos.entrySet()) {
 			String stateName = registeredStateMetaInfoEntry.getKey();
-			StateTable stateTable = ((HeapStateStorage) stateStorages.get(stateName)).getStateTable();
+			HeapStateStorage stateStorage = (HeapStateStorage) stateStorages.get(stateName);
 			RegisteredStateMetaInfo stateMetaInfo = registeredStateMetaInfoEntry.getValue();
 			if (stateMetaInfo.getStateType().isKeyedState()) {
 				keyedStateMetaSnapshots.add(stateMetaInfo.snapshot());
 				keyedStateToId.put(stateName, keyedStateToId.size());
-				keyedStateStableSnapshots.put(stateName, stateTable.createSnapshot());
+				keyedStateStableSnapshots.put(stateName, stateStorage.createSnapshot());
 			} else {
 				subKeyedStateMetaSnapshots.add(stateMetaInfo.snapshot());
 				subKeyedStateToId.put(stateName, subKeyedStateToId.size());
-				subKeyedStateStableSnapshots.put(stateName, stateTable.createSnapshot());
+				subKeyedStateStableSnapshots.put(stateName, stateStorage.createSnapshot());
 			}
 
 		}
 
+		if (incrementalCheckpoints && checkpointOptions.getCheckpointType() == CheckpointType.CHECKPOINT) {
+			return snapshotIncrementally(
+				checkpointId,
+				syncStartTime,
+				primaryStreamFactory,
+				keyedStateMetaSnapshots,
+				subKeyedStateMetaSnapshots,
+				keyedStateToId,
+				subKeyedStateToId,
+				keyedStateStableSnapshots,
+				subKeyedStateStableSnapshots);
+		}
+
 		final SupplierWithException<CheckpointStreamWithResultProvider, Exception> checkpointStreamSupplier =
 			localRecoveryConfig.isLocalRecoveryEnabled() ?
 
@@ -280,40 +444,17 @@ public class HeapInternalStateBackend extends AbstractInternalStateBackend {
 					CheckpointStreamFactory.CheckpointStateOutputStream localStream =
 						this.streamAndResultExtractor.getCheckpointOutputStream();
 
-					DataOutputViewStreamWrapper outView = new DataOutputViewStreamWrapper(localStream);
-
-					final InternalBackendSerializationProxy serializationProxy =
-						new InternalBackendSerializationProxy(
-							keyedStateMetaSnapshots,
-							subKeyedStateMetaSnapshots,
-							!Objects.equals(UncompressedStreamCompressionDecorator.INSTANCE, keyGroupCompressionDecorator));
-					serializationProxy.write(outView);
-
-					Map<Integer, Tuple2<Long, Integer>> metaInfos = new HashMap<>();
-
 					KeyGroupRange groups = getKeyGroupRange();
 
-					for (int group : groups) {
-
-						long offset = localStream.getPos();
-						int numEntries = 0;
-
-						outView.writeInt(group);
-
-						// write keyed state
-						for (Map.Entry<String, StateTableSnapshot> entry : keyedStateStableSnapshots.entrySet()) {
-							numEntries += writeGroupStates(localStream, entry.getValue(), keyedStateToId.get(entry.getKey()), group);
-						}
-
-						// write sub-keyed state
-						for (Map.Entry<String, StateTableSnapshot> entry : subKeyedStateStableSnapshots.entrySet()) {
-							numEntries += writeGroupStates(localStream, entry.getValue(), subKeyedStateToId.get(entry.getKey()), group);
-						}
-
-						if (numEntries != 0) {
-							metaInfos.put(group, new Tuple2<>(offset, numEntries));
-						}
-					}
+					Map<Integer, Tuple2<Long, Integer>> metaInfos = writeKeyGroups(
+						localStream,
+						groups,
+						keyedStateMetaSnapshots,
+						subKeyedStateMetaSnapshots,
+						keyedStateToId,
+						subKeyedStateToId,
+						keyedStateStableSnapshots,
+						subKeyedStateStableSnapshots);
 
 					if (cancelStreamRegistry.unregisterCloseable(streamAndResultExtractor)) {
 						SnapshotResult<StreamStateHandle> streamSnapshotResult =
@@ -357,6 +498,352 @@ public class HeapInternalStateBackend extends AbstractInternalStateBackend {
 		return task;
 	}
 
+	/**
+	 * Takes an incremental snapshot, which writes the key groups modified since the last completed
+	 * checkpoint into a new delta file and references the remaining key groups in the delta files
+	 * of previous checkpoints.
+	 */
+	private RunnableFuture<SnapshotResult<KeyedStateHandle>> snapshotIncrementally(
+		long checkpointId,
+		long syncStartTime,
+		CheckpointStreamFactory primaryStreamFactory,
+		List<StateMetaInfoSnapshot> keyedStateMetaSnapshots,
+		List<StateMetaInfoSnapshot> subKeyedStateMetaSnapshots,
+		Map<String, Integer> keyedStateToId,
+		Map<String, Integer> subKeyedStateToId,
+		Map<String, StateTableSnapshot> keyedStateStableSnapshots,
+		Map<String, StateTableSnapshot> subKeyedStateStableSnapshots
+	) {
+
+		final KeyGroupRange groups = getKeyGroupRange();
+
+		final long baseCheckpointId;
+		final IncrementalKeyGroupsIndex baseIndex;
+		synchronized (materializedKeyGroups) {
+			baseCheckpointId = lastCompletedCheckpointId;
+			baseIndex = materializedKeyGroups.get(baseCheckpointId);
+		}
+
+		final BitSet keyGroupsToWrite = getKeyGroupsToWrite(baseCheckpointId, baseIndex);
+		final List<Integer> groupsToWrite = new ArrayList<>(keyGroupsToWrite.cardinality());
+		for (int i = keyGroupsToWrite.nextSetBit(0); i >= 0; i = keyGroupsToWrite.nextSetBit(i + 1)) {
+			groupsToWrite.add(groups.getKeyGroupId(i));
+		}
+
+		final StateHandleID deltaFileId = new StateHandleID("heap-delta-" + checkpointId);
+
+		final AbstractAsyncCallableWithResources<SnapshotResult<KeyedStateHandle>> ioCallable =
+			new AbstractAsyncCallableWithResources<SnapshotResult<KeyedStateHandle>>() {
+
+				CheckpointStreamFactory.CheckpointStateOutputStream deltaStream = null;
+
+				CheckpointStreamFactory.CheckpointStateOutputStream indexStream = null;
+
+				@Override
+				protected void acquireResources() throws Exception {
+					// the delta file is shared by the following checkpoints referencing its key groups
+					deltaStream = primaryStreamFactory.createCheckpointStateOutputStream(checkpointId, CheckpointedStateScope.SHARED);
+					cancelStreamRegistry.registerCloseable(deltaStream);
+
+					indexStream = primaryStreamFactory.createCheckpointStateOutputStream(checkpointId, CheckpointedStateScope.EXCLUSIVE);
+					cancelStreamRegistry.registerCloseable(indexStream);
+				}
+
+				@Override
+				protected void releaseResources() {
+
+					unregisterAndCloseStreams();
+
+					for (StateTableSnapshot tableSnapshot : keyedStateStableSnapshots.values()) {
+						tableSnapshot.release();
+					}
+
+					for (StateTableSnapshot tableSnapshot : subKeyedStateStableSnapshots.values()) {
+						tableSnapshot.release();
+					}
+				}
+
+				@Override
+				protected void stopOperation() {
+					unregisterAndCloseStreams();
+				}
+
+				private void unregisterAndCloseStreams() {
+					if (cancelStreamRegistry.unregisterCloseable(deltaStream)) {
+						IOUtils.closeQuietly(deltaStream);
+						deltaStream = null;
+					}
+
+					if (cancelStreamRegistry.unregisterCloseable(indexStream)) {
+						IOUtils.closeQuietly(indexStream);
+						indexStream = null;
+					}
+				}
+
+				@Nonnull
+				@Override
+				protected SnapshotResult<KeyedStateHandle> performOperation() throws Exception {
+
+					long asyncStartTime = System.currentTimeMillis();
+
+					StreamStateHandle deltaFile = null;
+					StreamStateHandle indexHandle = null;
+
+					try {
+						Map<Integer, Tuple2<Long, Integer>> metaInfos = writeKeyGroups(
+							deltaStream,
+							groupsToWrite,
+							keyedStateMetaSnapshots,
+							subKeyedStateMetaSnapshots,
+							keyedStateToId,
+							subKeyedStateToId,
+							keyedStateStableSnapshots,
+							subKeyedStateStableSnapshots);
+
+						if (cancelStreamRegistry.unregisterCloseable(deltaStream)) {
+							deltaFile = deltaStream.closeAndGetHandle();
+							deltaStream = null;
+						} else {
+							throw new IOException("Stream already closed and cannot return a handle.");
+						}
+
+						IncrementalKeyGroupsIndex index = createIncrementalIndex(
+							baseIndex,
+							keyGroupsToWrite,
+							deltaFileId,
+							IncrementalKeyGroupsIndex.getUniqueId(deltaFile),
+							metaInfos);
+
+						index.write(new DataOutputViewStreamWrapper(indexStream));
+
+						if (cancelStreamRegistry.unregisterCloseable(indexStream)) {
+							indexHandle = indexStream.closeAndGetHandle();
+							indexStream = null;
+						} else {
+							throw new IOException("Stream already closed and cannot return a handle.");
+						}
+
+						// the delta files of previous checkpoints are replaced by the registered
+						// handles when the snapshot is registered at the shared state registry
+						Map<StateHandleID, Tuple2<String, StreamStateHandle>> sharedState = new HashMap<>();
+						for (Map.Entry<StateHandleID, String> entry : index.getDeltaFiles().entrySet()) {
+							StreamStateHandle handle = deltaFileId.equals(entry.getKey()) ?
+								deltaFile : new PlaceholderStreamStateHandle();
+							sharedState.put(entry.getKey(), Tuple2.of(entry.getValue(), handle));
+						}
+
+						synchronized (materializedKeyGroups) {
+							materializedKeyGroups.put(checkpointId, index);
+						}
+
+						LOG.info("Heap backend incremental snapshot (" + primaryStreamFactory + ", asynchronous part) in thread " +
+							Thread.currentThread() + " took " + (System.currentTimeMillis() - asyncStartTime) + " ms, wrote " +
+							groupsToWrite.size() + " of " + groups.getNumberOfKeyGroups() + " key groups, referencing " +
+							sharedState.size() + " delta files.");
+
+						return SnapshotResult.of(
+							new IncrementalKeyedStateSnapshot(
+								groups,
+								checkpointId,
+								sharedState,
+								Collections.emptyMap(),
+								indexHandle));
+					} catch (Exception e) {
+						try {
+							StateUtil.bestEffortDiscardAllStateObjects(Arrays.asList(deltaFile, indexHandle));
+						} catch (Exception discardException) {
+							e.addSuppressed(discardException);
+						}
+						throw e;
+					}
+				}
+			};
+
+		AsyncStoppableTaskWithCallback<SnapshotResult<KeyedStateHandle>> task =
+			AsyncStoppableTaskWithCallback.from(ioCallable);
+
+		if (!asynchronousSnapshot) {
+			task.run();
+		}
+
+		LOG.info("Heap backend incremental snapshot (" + primaryStreamFactory + ", synchronous part) in thread " +
+			Thread.currentThread() + " took " + (System.currentTimeMillis() - syncStartTime) + " ms.");
+
+		return task;
+	}
+
+	/**
+	 * Writes the meta data of the states and the mappings of the given key groups into the given stream.
+	 *
+	 * @return the offsets and the number of entries of the non-empty key groups written.
+	 */
+	private Map<Integer, Tuple2<Long, Integer>> writeKeyGroups(
+		CheckpointStreamFactory.CheckpointStateOutputStream localStream,
+		Iterable<Integer> groups,
+		List<StateMetaInfoSnapshot> keyedStateMetaSnapshots,
+		List<StateMetaInfoSnapshot> subKeyedStateMetaSnapshots,
+		Map<String, Integer> keyedStateToId,
+		Map<String, Integer> subKeyedStateToId,
+		Map<String, StateTableSnapshot> keyedStateStableSnapshots,
+		Map<String, StateTableSnapshot> subKeyedStateStableSnapshots
+	) throws IOException {
+
+		DataOutputViewStreamWrapper outView = new DataOutputViewStreamWrapper(localStream);
+
+		final InternalBackendSerializationProxy serializationProxy =
+			new InternalBackendSerializationProxy(
+				keyedStateMetaSnapshots,
+				subKeyedStateMetaSnapshots,
+				!Objects.equals(UncompressedStreamCompressionDecorator.INSTANCE, keyGroupCompressionDecorator));
+		serializationProxy.write(outView);
+
+		Map<Integer, Tuple2<Long, Integer>> metaInfos = new HashMap<>();
+
+		for (int group : groups) {
+
+			long offset = localStream.getPos();
+			int numEntries = 0;
+
+			outView.writeInt(group);
+
+			// write keyed state
+			for (Map.Entry<String, StateTableSnapshot> entry : keyedStateStableSnapshots.entrySet()) {
+				numEntries += writeGroupStates(localStream, entry.getValue(), keyedStateToId.get(entry.getKey()), group);
+			}
+
+			// write sub-keyed state
+			for (Map.Entry<String, StateTableSnapshot> entry : subKeyedStateStableSnapshots.entrySet()) {
+				numEntries += writeGroupStates(localStream, entry.getValue(), subKeyedStateToId.get(entry.getKey()), group);
+			}
+
+			if (numEntries != 0) {
+				metaInfos.put(group, new Tuple2<>(offset, numEntries));
+			}
+		}
+
+		return metaInfos;
+	}
+
+	/**
+	 * Takes the key groups modified in all state tables since the previous snapshot.
+	 */
+	private void collectDirtyKeyGroups(long checkpointId) {
+		BitSet modifiedKeyGroups = new BitSet(getKeyGroupRange().getNumberOfKeyGroups());
+		for (StateStorage stateStorage : stateStorages.values()) {
+			modifiedKeyGroups.or(((HeapStateStorage) stateStorage).getStateTable().takeDirtyKeyGroups());
+		}
+		dirtyKeyGroups.put(checkpointId, modifiedKeyGroups);
+	}
+
+	/**
+	 * Returns the key groups to write into the delta file of an incremental checkpoint, indexed
+	 * relative to the start of the key group range. These are all key groups if there is no base
+	 * checkpoint, otherwise the key groups modified since the base checkpoint and the key groups of
+	 * the oldest delta files which are compacted into the new delta file.
+	 */
+	private BitSet getKeyGroupsToWrite(long baseCheckpointId, @Nullable IncrementalKeyGroupsIndex baseIndex) {
+		final KeyGroupRange groups = getKeyGroupRange();
+		final BitSet keyGroupsToWrite = new BitSet(groups.getNumberOfKeyGroups());
+
+		if (baseIndex == null) {
+			keyGroupsToWrite.set(0, groups.getNumberOfKeyGroups());
+			return keyGroupsToWrite;
+		}
+
+		for (BitSet modifiedKeyGroups : dirtyKeyGroups.tailMap(baseCheckpointId + 1).values()) {
+			keyGroupsToWrite.or(modifiedKeyGroups);
+		}
+
+		// the delta files of the base which still contain unmodified key groups, oldest first
+		LinkedHashMap<StateHandleID, List<Integer>> reusedKeyGroups = new LinkedHashMap<>();
+		for (Map.Entry<StateHandleID, List<Integer>> entry : baseIndex.getKeyGroupIdsByDeltaFile().entrySet()) {
+			List<Integer> unmodifiedKeyGroups = new ArrayList<>();
+			for (int group : entry.getValue()) {
+				if (!keyGroupsToWrite.get(group - groups.getStartKeyGroup())) {
+					unmodifiedKeyGroups.add(group);
+				}
+			}
+
+			if (!unmodifiedKeyGroups.isEmpty()) {
+				reusedKeyGroups.put(entry.getKey(), unmodifiedKeyGroups);
+			}
+		}
+
+		// compacts the oldest delta files into the new one until the new one fits within the limit
+		Iterator<List<Integer>> reusedKeyGroupsIterator = reusedKeyGroups.values().iterator();
+		for (int numDeltaFiles = reusedKeyGroups.size() + 1; numDeltaFiles > maxIncrementalDeltas; --numDeltaFiles) {
+			for (int group : reusedKeyGroupsIterator.next()) {
+				keyGroupsToWrite.set(group - groups.getStartKeyGroup());
+			}
+		}
+
+		return keyGroupsToWrite;
+	}
+
+	/**
+	 * Creates the index of an incremental checkpoint from the index of its base checkpoint and the
+	 * key groups written into its delta file.
+	 */
+	private IncrementalKeyGroupsIndex createIncrementalIndex(
+		@Nullable IncrementalKeyGroupsIndex baseIndex,
+		BitSet writtenKeyGroups,
+		StateHandleID deltaFileId,
+		String deltaFileUniqueId,
+		Map<Integer, Tuple2<Long, Integer>> metaInfos
+	) {
+		final int startKeyGroup = getKeyGroupRange().getStartKeyGroup();
+
+		Map<Integer, IncrementalKeyGroupsIndex.KeyGroupLocation> keyGroups = new HashMap<>();
+		if (baseIndex != null) {
+			for (Map.Entry<Integer, IncrementalKeyGroupsIndex.KeyGroupLocation> entry : baseIndex.getKeyGroups().entrySet()) {
+				if (!writtenKeyGroups.get(entry.getKey() - startKeyGroup)) {
+					keyGroups.put(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+
+		for (Map.Entry<Integer, Tuple2<Long, Integer>> entry : metaInfos.entrySet()) {
+			keyGroups.put(
+				entry.getKey(),
+				new IncrementalKeyGroupsIndex.KeyGroupLocation(deltaFileId, entry.getValue().f0, entry.getValue().f1));
+		}
+
+		// keeps the order of the delta files, the new delta file is always referenced as the newest one
+		LinkedHashMap<StateHandleID, String> deltaFiles = new LinkedHashMap<>();
+		if (baseIndex != null) {
+			for (Map.Entry<StateHandleID, String> entry : baseIndex.getDeltaFiles().entrySet()) {
+				for (IncrementalKeyGroupsIndex.KeyGroupLocation location : keyGroups.values()) {
+					if (location.getDeltaFile().equals(entry.getKey())) {
+						deltaFiles.put(entry.getKey(), entry.getValue());
+						break;
+					}
+				}
+			}
+		}
+		deltaFiles.put(deltaFileId, deltaFileUniqueId);
+
+		return new IncrementalKeyGroupsIndex(deltaFiles, keyGroups);
+	}
+
+	@Override
+	public void notifyCheckpointComplete(long checkpointId) throws Exception {
+		if (!incrementalCheckpoints) {
+			return;
+		}
+
+		synchronized (materializedKeyGroups) {
+			// savepoints and outdated checkpoints cannot become the base of following checkpoints
+			if (checkpointId <= lastCompletedCheckpointId || !materializedKeyGroups.containsKey(checkpointId)) {
+				return;
+			}
+
+			materializedKeyGroups.headMap(checkpointId).clear();
+			lastCompletedCheckpointId = checkpointId;
+		}
+
+		dirtyKeyGroups.headMap(checkpointId + 1).clear();
+	}
+
 	private int writeGroupStates(
 		CheckpointStreamFactory.CheckpointStateOutputStream localStream,
 		StateTableSnapshot stateTableSnapshot,
@@ -382,115 +869,174 @@ public class HeapInternalStateBackend extends AbstractInternalStateBackend {
 
 		LOG.info("Initializing heap internal state backend from snapshot.");
 
+		// a restored incremental checkpoint can only become the base of following checkpoints if it
+		// contains exactly the key groups of this backend
+		KeyedStateHandle firstSnapshot = restoredSnapshots.iterator().next();
+		boolean hasExtraKeys = (restoredSnapshots.size() > 1 || firstSnapshot == null ||
+			!Objects.equals(firstSnapshot.getKeyGroupRange(), getKeyGroupRange()));
+
 		for (KeyedStateHandle rawSnapshot : restoredSnapshots) {
 			if (rawSnapshot == null) {
 				continue;
 			}
 
-			Preconditions.checkState(rawSnapshot instanceof KeyGroupsStateSnapshot);
-			KeyGroupsStateSnapshot snapshot =
-				(KeyGroupsStateSnapshot) rawSnapshot;
+			if (rawSnapshot instanceof IncrementalKeyedStateSnapshot) {
+				restoreIncrementalSnapshot((IncrementalKeyedStateSnapshot) rawSnapshot, incrementalCheckpoints && !hasExtraKeys);
+			} else {
+				Preconditions.checkState(rawSnapshot instanceof KeyGroupsStateSnapshot);
+				restoreKeyGroupsSnapshot((KeyGroupsStateSnapshot) rawSnapshot);
+			}
+		}
+	}
 
-			StreamStateHandle snapshotHandle = snapshot.getSnapshotHandle();
-			if (snapshotHandle == null) {
-				continue;
+	/**
+	 * Restores the key groups of an incremental snapshot from the delta files they were written to.
+	 *
+	 * @param snapshot the incremental snapshot to restore.
+	 * @param registerAsBase whether the restored snapshot becomes the base of following checkpoints.
+	 */
+	private void restoreIncrementalSnapshot(
+		IncrementalKeyedStateSnapshot snapshot,
+		boolean registerAsBase) throws Exception {
+
+		final IncrementalKeyGroupsIndex index;
+
+		FSDataInputStream indexInputStream = snapshot.getMetaStateHandle().openInputStream();
+		cancelStreamRegistry.registerCloseable(indexInputStream);
+		try {
+			index = IncrementalKeyGroupsIndex.read(new DataInputViewStreamWrapper(indexInputStream));
+		} finally {
+			if (cancelStreamRegistry.unregisterCloseable(indexInputStream)) {
+				IOUtils.closeQuietly(indexInputStream);
 			}
+		}
 
-			FSDataInputStream inputStream = snapshotHandle.openInputStream();
-			cancelStreamRegistry.registerCloseable(inputStream);
-
-			try {
-				DataInputViewStreamWrapper inputView =
-					new DataInputViewStreamWrapper(inputStream);
-
-				// isSerializerPresenceRequired flag is set to true, since for the heap state backend,
-				// deserialization of state happens eagerly at restore time
-				InternalBackendSerializationProxy serializationProxy =
-					new InternalBackendSerializationProxy(getUserClassLoader(), true);
-				serializationProxy.read(inputView);
-
-				Map<Integer, KeyedStateDescriptor> keyedStatesById = new HashMap<>();
-				List<StateMetaInfoSnapshot> keyedStateMetaInfos = serializationProxy.getKeyedStateMetaSnapshots();
-				for (int i = 0; i < keyedStateMetaInfos.size(); i++) {
-					StateMetaInfoSnapshot keyedStateMetaSnapshot = keyedStateMetaInfos.get(i);
-					String stateName = keyedStateMetaSnapshot.getName();
-
-					restoredKvStateMetaInfos.put(stateName, keyedStateMetaSnapshot);
-
-					RegisteredStateMetaInfo keyedStateMetaInfo = RegisteredStateMetaInfo.createKeyedStateMetaInfo(keyedStateMetaSnapshot);
-					registeredStateMetaInfos.put(stateName, keyedStateMetaInfo);
-					KeyedStateDescriptor keyedStateDescriptor = keyedStateMetaSnapshot.createKeyedStateDescriptor();
-					StateStorage stateStorage = getOrCreateStateStorageForKeyedState(keyedStateMetaInfo);
-					stateStorages.put(stateName, stateStorage);
-					keyedStatesById.put(i, keyedStateDescriptor);
-				}
+		Map<StateHandleID, Tuple2<String, StreamStateHandle>> sharedState = snapshot.getSharedState();
 
-				Map<Integer, SubKeyedStateDescriptor> subKeyedStatesById = new HashMap<>();
-				List<StateMetaInfoSnapshot> subKeyedStateMetaSnapshots = serializationProxy.getSubKeyedStateMetaSnapshots();
-				for (int i = 0; i < subKeyedStateMetaSnapshots.size(); i++) {
-					StateMetaInfoSnapshot subKeyedStateMetaSnapshot = subKeyedStateMetaSnapshots.get(i);
-					String stateName = subKeyedStateMetaSnapshot.getName();
-
-					RegisteredStateMetaInfo subKeyedStateMetaInfo = RegisteredStateMetaInfo.createSubKeyedStateMetaInfo(subKeyedStateMetaSnapshot);
-					registeredStateMetaInfos.put(stateName, subKeyedStateMetaInfo);
-					restoredKvStateMetaInfos.put(stateName, subKeyedStateMetaSnapshot);
-					SubKeyedStateDescriptor subKeyedStateDescriptor = subKeyedStateMetaSnapshot.createSubKeyedStateDescriptor();
-					StateStorage stateStorage = getOrCreateStateStorageForSubKeyedState(subKeyedStateMetaInfo);
-					stateStorages.put(stateName, stateStorage);
-					subKeyedStatesById.put(i, subKeyedStateDescriptor);
-				}
+		// the delta files are restored oldest first, so that the newest meta data of the states is registered last
+		for (Map.Entry<StateHandleID, Map<Integer, Tuple2<Long, Integer>>> entry : index.getKeyGroupsByDeltaFile().entrySet()) {
+			Tuple2<String, StreamStateHandle> deltaFile = sharedState.get(entry.getKey());
+			Preconditions.checkState(deltaFile != null, "Missing delta file " + entry.getKey() + " in restore.");
 
-				Map<Integer, Tuple2<Long, Integer>> metaInfos = snapshot.getMetaInfos();
+			restoreKeyGroupsSnapshot(
+				new KeyGroupsStateSnapshot(snapshot.getKeyGroupRange(), entry.getValue(), deltaFile.f1));
+		}
 
-				final StreamCompressionDecorator streamCompressionDecorator = serializationProxy.isUsingKeyGroupCompression() ?
-					SnappyStreamCompressionDecorator.INSTANCE : UncompressedStreamCompressionDecorator.INSTANCE;
+		if (registerAsBase) {
+			// the restored key groups are unmodified since the restored checkpoint, so following
+			// checkpoints only write the key groups modified after the restore
+			for (StateStorage stateStorage : stateStorages.values()) {
+				((HeapStateStorage) stateStorage).getStateTable().takeDirtyKeyGroups();
+			}
 
-				for (int group : getKeyGroupRange()) {
-					Tuple2<Long, Integer> tuple = metaInfos.get(group);
+			long checkpointId = snapshot.getCheckpointId();
+			synchronized (materializedKeyGroups) {
+				materializedKeyGroups.put(checkpointId, index);
+				lastCompletedCheckpointId = checkpointId;
+			}
+		}
+	}
 
-					if (tuple == null) {
-						continue;
-					}
+	private void restoreKeyGroupsSnapshot(KeyGroupsStateSnapshot snapshot) throws Exception {
+		StreamStateHandle snapshotHandle = snapshot.getSnapshotHandle();
+		if (snapshotHandle == null) {
+			return;
+		}
+
+		FSDataInputStream inputStream = snapshotHandle.openInputStream();
+		cancelStreamRegistry.registerCloseable(inputStream);
+
+		try {
+			DataInputViewStreamWrapper inputView =
+				new DataInputViewStreamWrapper(inputStream);
+
+			// isSerializerPresenceRequired flag is set to true, since for the heap state backend,
+			// deserialization of state happens eagerly at restore time
+			InternalBackendSerializationProxy serializationProxy =
+				new InternalBackendSerializationProxy(getUserClassLoader(), true);
+			serializationProxy.read(inputView);
+
+			Map<Integer, KeyedStateDescriptor> keyedStatesById = new HashMap<>();
+			List<StateMetaInfoSnapshot> keyedStateMetaInfos = serializationProxy.getKeyedStateMetaSnapshots();
+			for (int i = 0; i < keyedStateMetaInfos.size(); i++) {
+				StateMetaInfoSnapshot keyedStateMetaSnapshot = keyedStateMetaInfos.get(i);
+				String stateName = keyedStateMetaSnapshot.getName();
+
+				restoredKvStateMetaInfos.put(stateName, keyedStateMetaSnapshot);
+
+				RegisteredStateMetaInfo keyedStateMetaInfo = RegisteredStateMetaInfo.createKeyedStateMetaInfo(keyedStateMetaSnapshot);
+				registeredStateMetaInfos.put(stateName, keyedStateMetaInfo);
+				KeyedStateDescriptor keyedStateDescriptor = keyedStateMetaSnapshot.createKeyedStateDescriptor();
+				StateStorage stateStorage = getOrCreateStateStorageForKeyedState(keyedStateMetaInfo);
+				stateStorages.put(stateName, stateStorage);
+				keyedStatesById.put(i, keyedStateDescriptor);
+			}
 
-					long offset = tuple.f0;
-					int totalEntries = tuple.f1;
+			Map<Integer, SubKeyedStateDescriptor> subKeyedStatesById = new HashMap<>();
+			List<StateMetaInfoSnapshot> subKeyedStateMetaSnapshots = serializationProxy.getSubKeyedStateMetaSnapshots();
+			for (int i = 0; i < subKeyedStateMetaSnapshots.size(); i++) {
+				StateMetaInfoSnapshot subKeyedStateMetaSnapshot = subKeyedStateMetaSnapshots.get(i);
+				String stateName = subKeyedStateMetaSnapshot.getName();
+
+				RegisteredStateMetaInfo subKeyedStateMetaInfo = RegisteredStateMetaInfo.createSubKeyedStateMetaInfo(subKeyedStateMetaSnapshot);
+				registeredStateMetaInfos.put(stateName, subKeyedStateMetaInfo);
+				restoredKvStateMetaInfos.put(stateName, subKeyedStateMetaSnapshot);
+				SubKeyedStateDescriptor subKeyedStateDescriptor = subKeyedStateMetaSnapshot.createSubKeyedStateDescriptor();
+				StateStorage stateStorage = getOrCreateStateStorageForSubKeyedState(subKeyedStateMetaInfo);
+				stateStorages.put(stateName, stateStorage);
+				subKeyedStatesById.put(i, subKeyedStateDescriptor);
+			}
 
-					inputStream.seek(offset);
+			Map<Integer, Tuple2<Long, Integer>> metaInfos = snapshot.getMetaInfos();
 
-					int writtenKeyGroupIndex = inputView.readInt();
-					Preconditions.checkState(writtenKeyGroupIndex == group, "Unexpected key-group in restore.");
+			final StreamCompressionDecorator streamCompressionDecorator = serializationProxy.isUsingKeyGroupCompression() ?
+				SnappyStreamCompressionDecorator.INSTANCE : UncompressedStreamCompressionDecorator.INSTANCE;
 
-					int numEntries = 0;
+			for (int group : getKeyGroupRange()) {
+				Tuple2<Long, Integer> tuple = metaInfos.get(group);
 
-					try (InputStream kgCompressionInStream =
-							 streamCompressionDecorator.decorateWithCompression(inputStream)) {
-						DataInputViewStreamWrapper kgCompressionInView =
-							new DataInputViewStreamWrapper(kgCompressionInStream);
+				if (tuple == null) {
+					continue;
+				}
 
-						// restore keyed states
-						for (int i = 0; i < keyedStateMetaInfos.size(); i++) {
-							int stateId = kgCompressionInView.readInt();
-							KeyedStateDescriptor descriptor = keyedStatesById.get(stateId);
-							HeapStateStorage stateStorage = (HeapStateStorage) stateStorages.get(descriptor.getName());
-							numEntries += readMappingsInKeyGroupForKeyedState(kgCompressionInView, descriptor, stateStorage);
-						}
+				long offset = tuple.f0;
+				int totalEntries = tuple.f1;
 
-						// restore sub-keyed states
-						for (int i = 0; i < subKeyedStateMetaSnapshots.size(); i++) {
-							int stateId = kgCompressionInView.readInt();
-							SubKeyedStateDescriptor descriptor = subKeyedStatesById.get(stateId);
-							HeapStateStorage stateStorage = (HeapStateStorage) stateStorages.get(descriptor.getName());
-							numEntries += readMappingsInKeyGroupForSubKeyedState(kgCompressionInView, descriptor, stateStorage);
-						}
+				inputStream.seek(offset);
 
-						Preconditions.checkState(totalEntries == numEntries, "Unexpected number of entries");
+				int writtenKeyGroupIndex = inputView.readInt();
+				Preconditions.checkState(writtenKeyGroupIndex == group, "Unexpected key-group in restore.");
+
+				int numEntries = 0;
+
+				try (InputStream kgCompressionInStream =
+						 streamCompressionDecorator.decorateWithCompression(inputStream)) {
+					DataInputViewStreamWrapper kgCompressionInView =
+						new DataInputViewStreamWrapper(kgCompressionInStream);
+
+					// restore keyed states
+					for (int i = 0; i < keyedStateMetaInfos.size(); i++) {
+						int stateId = kgCompressionInView.readInt();
+						KeyedStateDescriptor descriptor = keyedStatesById.get(stateId);
+						HeapStateStorage stateStorage = (HeapStateStorage) stateStorages.get(descriptor.getName());
+						numEntries += readMappingsInKeyGroupForKeyedState(kgCompressionInView, descriptor, stateStorage);
 					}
 
+					// restore sub-keyed states
+					for (int i = 0; i < subKeyedStateMetaSnapshots.size(); i++) {
+						int stateId = kgCompressionInView.readInt();
+						SubKeyedStateDescriptor descriptor = subKeyedStatesById.get(stateId);
+						HeapStateStorage stateStorage = (HeapStateStorage) stateStorages.get(descriptor.getName());
+						numEntries += readMappingsInKeyGroupForSubKeyedState(kgCompressionInView, descriptor, stateStorage);
+					}
+
+					Preconditions.checkState(totalEntries == numEntries, "Unexpected number of entries");
 				}
-			} finally {
-				if (cancelStreamRegistry.unregisterCloseable(inputStream)) {
-					IOUtils.closeQuietly(inputStream);
-				}
+
+			}
+		} finally {
+			if (cancelStreamRegistry.unregisterCloseable(inputStream)) {
+				IOUtils.closeQuietly(inputStream);
 			}
 		}
 	}
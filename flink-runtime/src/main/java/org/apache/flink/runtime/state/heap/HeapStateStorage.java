@@ -18,7 +18,9 @@
 
 package org.apache.flink.runtime.state.heap;
 
+import org.apache.flink.runtime.state.InternalStateType;
 import org.apache.flink.runtime.state.RegisteredStateMetaInfo;
+import org.apache.flink.runtime.state.StateSnapshotTransformer;
 import org.apache.flink.runtime.state.StateTransformationFunction;
 import org.apache.flink.runtime.state.AbstractInternalStateBackend;
 import org.apache.flink.runtime.state.StateStorage;
@@ -26,12 +28,24 @@ import org.apache.flink.runtime.state.StorageInstance;
 import org.apache.flink.runtime.state.StorageIterator;
 import org.apache.flink.runtime.state.heap.internal.CopyOnWriteStateTable;
 import org.apache.flink.runtime.state.heap.internal.NestedMapsStateTable;
+import org.apache.flink.runtime.state.heap.internal.StateEntry;
 import org.apache.flink.runtime.state.heap.internal.StateTable;
+import org.apache.flink.runtime.state.heap.internal.StateTableSnapshot;
+import org.apache.flink.runtime.state.heap.spill.KeyGroupSpillManager;
+import org.apache.flink.runtime.state.heap.spill.SpillableKeyGroups;
 import org.apache.flink.types.Pair;
 import org.apache.flink.util.Preconditions;
 
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Implementation of {@link StateStorage} for heap.
@@ -42,6 +56,17 @@ public class HeapStateStorage<K, N, S> implements StateStorage<K, S>{
 
 	private N currentNamespace;
 
+	/**
+	 * The namespace of the mappings in storages without namespace.
+	 */
+	private final N defaultNamespace;
+
+	/**
+	 * The key groups of the storage which may be spilled to disk, null if spilling is disabled.
+	 */
+	@Nullable
+	private SpillableKeyGroups<K, N, S> spillableKeyGroups;
+
 	public HeapStateStorage(
 		AbstractInternalStateBackend stateBackend,
 		RegisteredStateMetaInfo stateMetaInfo,
@@ -53,6 +78,7 @@ public class HeapStateStorage<K, N, S> implements StateStorage<K, S>{
 		Preconditions.checkNotNull(stateMetaInfo);
 
 		this.currentNamespace = defaultNamespace;
+		this.defaultNamespace = defaultNamespace;
 
 		this.stateTable = asynchronous ?
 			new CopyOnWriteStateTable<>(
@@ -67,22 +93,36 @@ public class HeapStateStorage<K, N, S> implements StateStorage<K, S>{
 
 	@Override
 	public void put(K key, S state) {
+		accessKeyGroup(key);
+		stateTable.markKeyGroupDirty(key);
 		stateTable.put(key, currentNamespace, state);
 	}
 
 	@Override
 	public S get(K key) {
+		accessKeyGroup(key);
+		markKeyGroupDirtyOnRead(key);
 		return stateTable.get(key, currentNamespace);
 	}
 
 	@Override
 	public boolean remove(K key) {
+		accessKeyGroup(key);
+		stateTable.markKeyGroupDirty(key);
 		return stateTable.remove(key, currentNamespace);
 	}
 
 	@Override
 	public StorageIterator<K, S> iterator() {
-		return new HeapStorageIterator<>(stateTable.entryIterator());
+		if (spillableKeyGroups != null) {
+			return new SpillingStorageIterator(spillableKeyGroups.iterator());
+		}
+
+		Iterator<Map.Entry<K, S>> entryIterator = stateTable.entryIterator();
+		if (stateTable.isDirtyKeyGroupTrackingEnabled()) {
+			entryIterator = new DirtyKeyGroupMarkingIterator(entryIterator);
+		}
+		return new HeapStorageIterator<>(entryIterator);
 	}
 
 	@Override
@@ -115,6 +155,8 @@ public class HeapStateStorage<K, N, S> implements StateStorage<K, S>{
 		T value,
 		StateTransformationFunction<S, T> transformation
 	) throws Exception {
+		accessKeyGroup(key);
+		stateTable.markKeyGroupDirty(key);
 		stateTable.transform(key, currentNamespace, value, transformation);
 	}
 
@@ -134,6 +176,8 @@ public class HeapStateStorage<K, N, S> implements StateStorage<K, S>{
 	}
 
 	public S getAndRemove(K key) {
+		accessKeyGroup(key);
+		stateTable.markKeyGroupDirty(key);
 		return stateTable.removeAndGetOld(key, currentNamespace);
 	}
 
@@ -143,6 +187,8 @@ public class HeapStateStorage<K, N, S> implements StateStorage<K, S>{
 	 * @param key the key to get.
 	 */
 	public Map<N, S> getAll(K key) {
+		accessKeyGroup(key);
+		markKeyGroupDirtyOnRead(key);
 		return stateTable.getAll(key);
 	}
 
@@ -152,6 +198,8 @@ public class HeapStateStorage<K, N, S> implements StateStorage<K, S>{
 	 * @param key the key to remove. Not null.
 	 */
 	public void removeAll(K key) {
+		accessKeyGroup(key);
+		stateTable.markKeyGroupDirty(key);
 		stateTable.removeAll(key);
 	}
 
@@ -159,9 +207,64 @@ public class HeapStateStorage<K, N, S> implements StateStorage<K, S>{
 	 * Removes all mappings in the storage.
 	 */
 	public void removeAll() {
+		if (spillableKeyGroups != null) {
+			spillableKeyGroups.discardAll();
+		}
+		stateTable.markAllKeyGroupsDirty();
 		stateTable.removeAll();
 	}
 
+	/**
+	 * Returns the stream of all keys for the given namespace.
+	 *
+	 * @param namespace the namespace. Not null.
+	 */
+	public Stream<K> getKeys(N namespace) {
+		if (spillableKeyGroups == null) {
+			return stateTable.getKeys(namespace);
+		}
+
+		StateTable.CloseableEntryIterator<K, N, S> entryIterator = spillableKeyGroups.iterator();
+		Stream<StateEntry<K, N, S>> entries = StreamSupport
+			.stream(Spliterators.spliteratorUnknownSize(entryIterator, Spliterator.ORDERED), false)
+			.onClose(entryIterator::close);
+		if (stateTable.isUsingNamespace()) {
+			entries = entries.filter(entry -> namespace.equals(entry.getNamespace()));
+		}
+		return entries.map(StateEntry::getKey);
+	}
+
+	/**
+	 * Returns the total number of mappings in the storage, including the spilled ones.
+	 */
+	public int size() {
+		int size = stateTable.size();
+		if (spillableKeyGroups != null) {
+			size += spillableKeyGroups.getNumSpilledEntries();
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the number of mappings with the given namespace in the storage.
+	 */
+	public int sizeOfNamespace(Object namespace) {
+		int size = stateTable.sizeOfNamespace(namespace);
+		if (spillableKeyGroups != null) {
+			size += spillableKeyGroups.getNumSpilledEntries(namespace);
+		}
+		return size;
+	}
+
+	/**
+	 * Creates a snapshot of the storage, including the spilled key groups. The snapshot has to be
+	 * released after usage.
+	 */
+	public StateTableSnapshot createSnapshot() {
+		StateTableSnapshot tableSnapshot = stateTable.createSnapshot();
+		return spillableKeyGroups == null ? tableSnapshot : spillableKeyGroups.createSnapshot(tableSnapshot);
+	}
+
 	public StateTable getStateTable() {
 		return stateTable;
 	}
@@ -179,6 +282,52 @@ public class HeapStateStorage<K, N, S> implements StateStorage<K, S>{
 		stateTable.setStateMetaInfo(stateMetaInfo);
 	}
 
+	/**
+	 * Starts tracking the key groups modified in the storage, see {@link StateTable#takeDirtyKeyGroups()}.
+	 */
+	public void enableDirtyKeyGroupTracking() {
+		stateTable.enableDirtyKeyGroupTracking();
+	}
+
+	/**
+	 * Allows the key groups of the storage to be spilled to disk by the given manager.
+	 *
+	 * @param spillManager the manager deciding which key groups are spilled.
+	 */
+	public void enableSpilling(KeyGroupSpillManager spillManager) {
+		if (spillableKeyGroups == null) {
+			spillableKeyGroups = new SpillableKeyGroups<>(spillManager, stateTable, defaultNamespace);
+		}
+	}
+
+	@Nullable
+	public SpillableKeyGroups<K, N, S> getSpillableKeyGroups() {
+		return spillableKeyGroups;
+	}
+
+	/**
+	 * Sets the transformer applied to the states when they are written to snapshots.
+	 *
+	 * @param snapshotTransformer the transformer to apply, null if the states are written as they are.
+	 */
+	public void setSnapshotTransformer(StateSnapshotTransformer<S> snapshotTransformer) {
+		stateTable.setSnapshotTransformer(snapshotTransformer);
+	}
+
+	/**
+	 * Applies the given transformer to the states of the given number of entries, removing the states which are
+	 * filtered out. The entries are visited in turns over consecutive calls. Only the copy-on-write state table
+	 * supports incremental cleanup, the call is ignored by other tables.
+	 *
+	 * @param numberOfEntries the number of entries to visit.
+	 * @param transformer the transformer to apply to the states of the visited entries.
+	 */
+	public void cleanupIncrementally(int numberOfEntries, StateSnapshotTransformer<S> transformer) {
+		if (stateTable instanceof CopyOnWriteStateTable) {
+			((CopyOnWriteStateTable<K, N, S>) stateTable).cleanupIncrementally(numberOfEntries, transformer);
+		}
+	}
+
 	/**
 	 * Returns an iterator over the namespaces for the given key.
 	 *
@@ -186,6 +335,164 @@ public class HeapStateStorage<K, N, S> implements StateStorage<K, S>{
 	 * @return an iterator over the namespaces for the given key.
 	 */
 	public Iterator<N> namespaceIterator(K key) {
-		return stateTable.namespaceIterator(key);
+		accessKeyGroup(key);
+		// the namespaces may be removed through the iterator
+		stateTable.markKeyGroupDirty(key);
+		Iterator<N> namespaceIterator = stateTable.namespaceIterator(key);
+		return spillableKeyGroups == null ? namespaceIterator : new DetachedNamespaceIterator(key, namespaceIterator);
+	}
+
+	/**
+	 * Records an access to the key group of the given key, loading the key group if it is spilled.
+	 */
+	private void accessKeyGroup(K key) {
+		if (spillableKeyGroups != null) {
+			spillableKeyGroups.access(key);
+		}
+	}
+
+	/**
+	 * Marks the key group of the given key as modified if the states of the storage are containers,
+	 * because lists and maps returned by the storage are modified in place.
+	 */
+	private void markKeyGroupDirtyOnRead(K key) {
+		if (stateTable.isDirtyKeyGroupTrackingEnabled()) {
+			InternalStateType stateType = stateTable.getStateMetaInfo().getStateType();
+			if (stateType != InternalStateType.KEYED_VALUE && stateType != InternalStateType.SUBKEYED_VALUE) {
+				stateTable.markKeyGroupDirty(key);
+			}
+		}
+	}
+
+	/**
+	 * Iterator over a copy of the namespaces of a key, which stays valid when the key group of the
+	 * key is spilled. Namespaces removed through the iterator are removed from the storage.
+	 */
+	private class DetachedNamespaceIterator implements Iterator<N> {
+
+		private final K key;
+
+		private final Iterator<N> iterator;
+
+		private N namespace;
+
+		DetachedNamespaceIterator(K key, Iterator<N> namespaceIterator) {
+			this.key = key;
+
+			List<N> namespaces = new ArrayList<>();
+			namespaceIterator.forEachRemaining(namespaces::add);
+			this.iterator = namespaces.iterator();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return iterator.hasNext();
+		}
+
+		@Override
+		public N next() {
+			namespace = iterator.next();
+			return namespace;
+		}
+
+		@Override
+		public void remove() {
+			iterator.remove();
+			accessKeyGroup(key);
+			stateTable.markKeyGroupDirty(key);
+			stateTable.remove(key, namespace);
+		}
+	}
+
+	/**
+	 * Iterator over the mappings of a storage with spilled key groups, which does not load the
+	 * spilled key groups. States updated through it are put into the storage.
+	 */
+	private class SpillingStorageIterator implements StorageIterator<K, S> {
+
+		private final StateTable.CloseableEntryIterator<K, N, S> iterator;
+
+		SpillingStorageIterator(StateTable.CloseableEntryIterator<K, N, S> iterator) {
+			this.iterator = iterator;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return iterator.hasNext();
+		}
+
+		@Override
+		public Pair<K, S> next() {
+			final StateEntry<K, N, S> entry = iterator.next();
+
+			return new Pair<K, S>() {
+				@Override
+				public K getKey() {
+					return entry.getKey();
+				}
+
+				@Override
+				public S getValue() {
+					return entry.getState();
+				}
+
+				@Override
+				public S setValue(S value) {
+					accessKeyGroup(entry.getKey());
+					stateTable.markKeyGroupDirty(entry.getKey());
+					return stateTable.putAndGetOld(entry.getKey(), entry.getNamespace(), value);
+				}
+			};
+		}
+
+		@Override
+		public void close() {
+			iterator.close();
+		}
+	}
+
+	/**
+	 * Iterator which marks the key groups of the entries updated through it as modified.
+	 */
+	private class DirtyKeyGroupMarkingIterator implements Iterator<Map.Entry<K, S>> {
+
+		private final Iterator<Map.Entry<K, S>> iterator;
+
+		DirtyKeyGroupMarkingIterator(Iterator<Map.Entry<K, S>> iterator) {
+			this.iterator = iterator;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return iterator.hasNext();
+		}
+
+		@Override
+		public Map.Entry<K, S> next() {
+			final Map.Entry<K, S> entry = iterator.next();
+
+			return new Map.Entry<K, S>() {
+				@Override
+				public K getKey() {
+					return entry.getKey();
+				}
+
+				@Override
+				public S getValue() {
+					return entry.getValue();
+				}
+
+				@Override
+				public S setValue(S value) {
+					stateTable.markKeyGroupDirty(entry.getKey());
+					return entry.setValue(value);
+				}
+			};
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
 	}
 }
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap;
+
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.runtime.state.StateHandleID;
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.filesystem.FileStateHandle;
+import org.apache.flink.runtime.state.memory.ByteStreamStateHandle;
+import org.apache.flink.util.Preconditions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The index of an incremental snapshot of the {@link HeapInternalStateBackend}. An incremental
+ * snapshot consists of delta files, each of which is written in the format of full snapshots but
+ * contains only the key groups modified since the previous snapshot. The index tells for every
+ * non-empty key group the delta file and the offset which the key group is read from.
+ *
+ * <p>The delta files are kept in the order they were written, oldest first. The newest delta file
+ * is always referenced, because its meta data describes all states of the backend.
+ */
+final class IncrementalKeyGroupsIndex {
+
+	/** The version of the serialized index. */
+	private static final int VERSION = 1;
+
+	/** The delta files referenced by the snapshot, oldest first, mapped to their unique IDs. */
+	private final LinkedHashMap<StateHandleID, String> deltaFiles;
+
+	/** The locations of the non-empty key groups of the snapshot. */
+	private final Map<Integer, KeyGroupLocation> keyGroups;
+
+	IncrementalKeyGroupsIndex(LinkedHashMap<StateHandleID, String> deltaFiles, Map<Integer, KeyGroupLocation> keyGroups) {
+		this.deltaFiles = Preconditions.checkNotNull(deltaFiles);
+		this.keyGroups = Preconditions.checkNotNull(keyGroups);
+	}
+
+	/**
+	 * Returns the delta files referenced by the snapshot, oldest first, mapped to their unique IDs.
+	 */
+	LinkedHashMap<StateHandleID, String> getDeltaFiles() {
+		return deltaFiles;
+	}
+
+	/**
+	 * Returns the locations of the non-empty key groups of the snapshot.
+	 */
+	Map<Integer, KeyGroupLocation> getKeyGroups() {
+		return keyGroups;
+	}
+
+	/**
+	 * Returns the non-empty key groups of each delta file, oldest delta file first.
+	 *
+	 * @return the offsets and the number of entries of the key groups in each delta file.
+	 */
+	LinkedHashMap<StateHandleID, Map<Integer, Tuple2<Long, Integer>>> getKeyGroupsByDeltaFile() {
+		LinkedHashMap<StateHandleID, Map<Integer, Tuple2<Long, Integer>>> result = new LinkedHashMap<>();
+		for (StateHandleID deltaFile : deltaFiles.keySet()) {
+			result.put(deltaFile, new HashMap<>());
+		}
+
+		for (Map.Entry<Integer, KeyGroupLocation> entry : keyGroups.entrySet()) {
+			KeyGroupLocation location = entry.getValue();
+			Map<Integer, Tuple2<Long, Integer>> deltaFileKeyGroups = result.get(location.getDeltaFile());
+			Preconditions.checkState(deltaFileKeyGroups != null, "Unknown delta file " + location.getDeltaFile() + '.');
+			deltaFileKeyGroups.put(entry.getKey(), Tuple2.of(location.getOffset(), location.getNumEntries()));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the key groups of each delta file, oldest delta file first, skipping the files
+	 * without key groups.
+	 */
+	LinkedHashMap<StateHandleID, List<Integer>> getKeyGroupIdsByDeltaFile() {
+		LinkedHashMap<StateHandleID, List<Integer>> result = new LinkedHashMap<>();
+		for (Map.Entry<StateHandleID, Map<Integer, Tuple2<Long, Integer>>> entry : getKeyGroupsByDeltaFile().entrySet()) {
+			if (!entry.getValue().isEmpty()) {
+				List<Integer> keyGroupIds = new ArrayList<>(entry.getValue().keySet());
+				Collections.sort(keyGroupIds);
+				result.put(entry.getKey(), keyGroupIds);
+			}
+		}
+		return result;
+	}
+
+	void write(DataOutputView out) throws IOException {
+		out.writeInt(VERSION);
+
+		List<StateHandleID> deltaFileIds = new ArrayList<>(deltaFiles.keySet());
+		out.writeInt(deltaFileIds.size());
+		for (Map.Entry<StateHandleID, String> entry : deltaFiles.entrySet()) {
+			out.writeUTF(entry.getKey().getKeyString());
+			out.writeUTF(entry.getValue());
+		}
+
+		out.writeInt(keyGroups.size());
+		for (Map.Entry<Integer, KeyGroupLocation> entry : keyGroups.entrySet()) {
+			KeyGroupLocation location = entry.getValue();
+			out.writeInt(entry.getKey());
+			out.writeInt(deltaFileIds.indexOf(location.getDeltaFile()));
+			out.writeLong(location.getOffset());
+			out.writeInt(location.getNumEntries());
+		}
+	}
+
+	static IncrementalKeyGroupsIndex read(DataInputView in) throws IOException {
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported version of the incremental key groups index: " + version + '.');
+		}
+
+		int numDeltaFiles = in.readInt();
+		List<StateHandleID> deltaFileIds = new ArrayList<>(numDeltaFiles);
+		LinkedHashMap<StateHandleID, String> deltaFiles = new LinkedHashMap<>();
+		for (int i = 0; i < numDeltaFiles; ++i) {
+			StateHandleID deltaFileId = new StateHandleID(in.readUTF());
+			deltaFileIds.add(deltaFileId);
+			deltaFiles.put(deltaFileId, in.readUTF());
+		}
+
+		int numKeyGroups = in.readInt();
+		Map<Integer, KeyGroupLocation> keyGroups = new HashMap<>(numKeyGroups);
+		for (int i = 0; i < numKeyGroups; ++i) {
+			int keyGroup = in.readInt();
+			StateHandleID deltaFileId = deltaFileIds.get(in.readInt());
+			long offset = in.readLong();
+			int numEntries = in.readInt();
+			keyGroups.put(keyGroup, new KeyGroupLocation(deltaFileId, offset, numEntries));
+		}
+
+		return new IncrementalKeyGroupsIndex(deltaFiles, keyGroups);
+	}
+
+	/**
+	 * Returns the unique ID of the given delta file, which identifies the file in the shared state registry.
+	 */
+	static String getUniqueId(StreamStateHandle deltaFile) {
+		if (deltaFile instanceof FileStateHandle) {
+			return ((FileStateHandle) deltaFile).getFilePath().toString();
+		} else if (deltaFile instanceof ByteStreamStateHandle) {
+			return ((ByteStreamStateHandle) deltaFile).getHandleName();
+		} else {
+			throw new UnsupportedOperationException("Heap incremental snapshots only support FileStateHandle/ByteStreamStateHandle.");
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The location of a key group in a delta file.
+	 */
+	static final class KeyGroupLocation {
+
+		/** The delta file containing the key group. */
+		private final StateHandleID deltaFile;
+
+		/** The offset of the key group in the delta file. */
+		private final long offset;
+
+		/** The number of entries of all states in the key group. */
+		private final int numEntries;
+
+		KeyGroupLocation(StateHandleID deltaFile, long offset, int numEntries) {
+			this.deltaFile = Preconditions.checkNotNull(deltaFile);
+			this.offset = offset;
+			this.numEntries = numEntries;
+		}
+
+		StateHandleID getDeltaFile() {
+			return deltaFile;
+		}
+
+		long getOffset() {
+			return offset;
+		}
+
+		int getNumEntries() {
+			return numEntries;
+		}
+	}
+}
@@ -19,7 +19,9 @@
 package org.apache.flink.runtime.state.heap.internal;
 
 import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
 import org.apache.flink.runtime.state.RegisteredStateMetaInfo;
+import org.apache.flink.runtime.state.StateSnapshotTransformer;
 import org.apache.flink.runtime.state.StateTransformationFunction;
 import org.apache.flink.runtime.state.AbstractInternalStateBackend;
 import org.apache.flink.util.MathUtils;
@@ -28,10 +30,14 @@ import org.apache.flink.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
@@ -193,6 +199,11 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> implemen
 	 */
 	private int modCount;
 
+	/**
+	 * The position in the (concatenated) tables where the next incremental cleanup continues.
+	 */
+	private int cleanupTablePosition;
+
 	/**
 	 * Constructs a new {@code StateTable} with default capacity of 1024.
 	 */
@@ -514,6 +525,59 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> implemen
 		}
 	}
 
+	// Incremental cleanup  --------------------------------------------------------------------------------------------
+
+	/**
+	 * Applies the given transformer to the states of (at least) the given number of entries, continuing at the
+	 * position where the previous call stopped. The entries whose states are filtered out by the transformer are
+	 * removed, and the transformed states replace the states of their entries.
+	 *
+	 * <p>The transformer must not modify the given states, because they may still be referenced by snapshots.
+	 *
+	 * @param numberOfEntries the number of entries to visit.
+	 * @param transformer the transformer to apply to the states of the visited entries.
+	 */
+	public void cleanupIncrementally(int numberOfEntries, StateSnapshotTransformer<S> transformer) {
+		if (size() == 0) {
+			return;
+		}
+
+		final StateTableEntry<K, N, S>[] primary = primaryTable;
+		final StateTableEntry<K, N, S>[] rehash = incrementalRehashTable;
+		final int totalLength = primary.length + rehash.length;
+
+		// the entries are collected first, because the modifications below may rehash the tables
+		final List<StateTableEntry<K, N, S>> visitedEntries = new ArrayList<>(numberOfEntries);
+		for (int visitedBuckets = 0; visitedEntries.size() < numberOfEntries && visitedBuckets < totalLength; ++visitedBuckets) {
+			if (cleanupTablePosition >= totalLength) {
+				cleanupTablePosition = 0;
+			}
+
+			StateTableEntry<K, N, S> entry = cleanupTablePosition < primary.length ?
+				primary[cleanupTablePosition] :
+				rehash[cleanupTablePosition - primary.length];
+
+			for (; entry != null; entry = entry.next) {
+				visitedEntries.add(entry);
+			}
+
+			++cleanupTablePosition;
+		}
+
+		for (StateTableEntry<K, N, S> entry : visitedEntries) {
+			final S state = entry.state;
+			final S transformedState = transformer.filterOrTransform(state);
+
+			if (transformedState == null) {
+				markKeyGroupDirty(entry.key);
+				remove(entry.key, entry.namespace);
+			} else if (transformedState != state) {
+				markKeyGroupDirty(entry.key);
+				put(entry.key, entry.namespace, transformedState);
+			}
+		}
+	}
+
 	// Iteration  ------------------------------------------------------------------------------------------------------
 
 	@Override
@@ -550,6 +614,11 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> implemen
 		};
 	}
 
+	@Override
+	public CloseableEntryIterator<K, N, S> snapshotEntryIterator() {
+		return new SnapshotEntryIterator();
+	}
+
 	/**
 	 * TODO: NOTE: This method has a high complexity.
 	 */
@@ -597,6 +666,66 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> implemen
 		};
 	}
 
+	@Override
+	public void visitKeyGroups(BitSet keyGroups, StateEntryVisitor<K, N, S> visitor) throws IOException {
+		if (keyGroups.isEmpty()) {
+			return;
+		}
+
+		final int numberOfKeyGroups = internalStateBackend.getNumGroups();
+		for (StateEntry<K, N, S> entry : this) {
+			final int keyGroup = KeyGroupRangeAssignment.assignToKeyGroup(entry.getKey(), numberOfKeyGroups);
+			if (keyGroups.get(keyGroup)) {
+				visitor.visit(keyGroup, entry.getKey(), entry.getNamespace(), entry.getState());
+			}
+		}
+	}
+
+	@Override
+	public void removeKeyGroups(BitSet keyGroups) {
+		if (keyGroups.isEmpty() || size() == 0) {
+			return;
+		}
+
+		// the entries are unlinked in place instead of through removeEntry, which would move entries
+		// between the sub-tables by incremental rehashing
+		primaryTableSize -= removeKeyGroupsFromTable(primaryTable, keyGroups);
+		if (isRehashing()) {
+			incrementalRehashTableSize -= removeKeyGroupsFromTable(incrementalRehashTable, keyGroups);
+		}
+	}
+
+	private int removeKeyGroupsFromTable(StateTableEntry<K, N, S>[] tab, BitSet keyGroups) {
+		final int numberOfKeyGroups = internalStateBackend.getNumGroups();
+
+		int removed = 0;
+		for (int index = 0; index < tab.length; ++index) {
+			StateTableEntry<K, N, S> prev = null;
+			for (StateTableEntry<K, N, S> e = tab[index]; e != null; e = e.next) {
+				if (!keyGroups.get(KeyGroupRangeAssignment.assignToKeyGroup(e.key, numberOfKeyGroups))) {
+					prev = e;
+					continue;
+				}
+
+				if (prev == null) {
+					tab[index] = e.next;
+				} else {
+					// copy-on-write check for entry
+					if (prev.entryVersion < highestRequiredSnapshotVersion) {
+						prev = handleChainedEntryCopyOnWrite(tab, index, prev);
+					}
+					prev.next = e.next;
+				}
+				++removed;
+			}
+		}
+
+		if (removed > 0) {
+			++modCount;
+		}
+		return removed;
+	}
+
 	// Private utility functions for StateTable management -------------------------------------------------------------
 
 	/**
@@ -1117,4 +1246,68 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> implemen
 			throw new UnsupportedOperationException("Read-only iterator");
 		}
 	}
+
+	// SnapshotEntryIterator  ------------------------------------------------------------------------------------------
+
+	/**
+	 * Iterator over a snapshot of the table arrays. Like the snapshots for checkpoints, the iterated entries are
+	 * protected from modifications of the table through copy-on-write until the iterator is exhausted or closed.
+	 */
+	class SnapshotEntryIterator implements CloseableEntryIterator<K, N, S> {
+
+		private final int snapshotVersion;
+
+		private StateTableEntry<K, N, S>[] snapshotData;
+
+		private int nextTablePosition;
+
+		private StateTableEntry<K, N, S> nextEntry;
+
+		SnapshotEntryIterator() {
+			this.snapshotData = snapshotTableArrays();
+			this.snapshotVersion = getStateTableVersion();
+			advanceIterator();
+		}
+
+		private void advanceIterator() {
+			if (nextEntry != null) {
+				nextEntry = nextEntry.next;
+			}
+
+			while (nextEntry == null && snapshotData != null && nextTablePosition < snapshotData.length) {
+				nextEntry = snapshotData[nextTablePosition];
+				// visited chains are not referenced any more, so that the replaced entries can be garbage collected
+				snapshotData[nextTablePosition++] = null;
+			}
+
+			if (nextEntry == null) {
+				close();
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return nextEntry != null;
+		}
+
+		@Override
+		public StateTableEntry<K, N, S> next() {
+			if (nextEntry == null) {
+				throw new NoSuchElementException();
+			}
+
+			StateTableEntry<K, N, S> entryToReturn = nextEntry;
+			advanceIterator();
+			return entryToReturn;
+		}
+
+		@Override
+		public void close() {
+			if (snapshotData != null) {
+				snapshotData = null;
+				nextEntry = null;
+				releaseSnapshot(snapshotVersion);
+			}
+		}
+	}
 }
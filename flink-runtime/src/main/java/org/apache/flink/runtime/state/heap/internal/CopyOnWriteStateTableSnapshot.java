@@ -23,6 +23,9 @@ import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.core.memory.DataOutputView;
 import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.StateSnapshotTransformer;
+
+import javax.annotation.Nullable;
 
 import java.io.IOException;
 
@@ -85,6 +88,12 @@ public class CopyOnWriteStateTableSnapshot<K, N, S>
 	 */
 	private final TypeSerializer<S> localStateSerializer;
 
+	/**
+	 * The transformer applied to the states before they are written, null if the states are written as they are.
+	 */
+	@Nullable
+	private final StateSnapshotTransformer<S> stateSnapshotTransformer;
+
 	/**
 	 * Creates a new {@link CopyOnWriteStateTableSnapshot}.
 	 *
@@ -102,6 +111,7 @@ public class CopyOnWriteStateTableSnapshot<K, N, S>
 		this.localKeySerializer = owningStateTable.getKeySerializer().duplicate();
 		this.localNamespaceSerializer = owningStateTable.getNamespaceSerializer().duplicate();
 		this.localStateSerializer = owningStateTable.getStateSerializer().duplicate();
+		this.stateSnapshotTransformer = owningStateTable.getSnapshotTransformer();
 
 		this.keyGroupOffsets = null;
 	}
@@ -186,6 +196,11 @@ public class CopyOnWriteStateTableSnapshot<K, N, S>
 		int endOffset = keyGroupOffsets[keyGroupOffsetIdx + 1];
 
 		boolean hasNamespace = owningStateTable.isUsingNamespace();
+
+		if (stateSnapshotTransformer != null) {
+			return writeTransformedMappings(dov, groupedOut, startOffset, endOffset, hasNamespace);
+		}
+
 		int numMappings = endOffset - startOffset;
 
 		// write number of mappings in key-group
@@ -206,6 +221,53 @@ public class CopyOnWriteStateTableSnapshot<K, N, S>
 		return numMappings;
 	}
 
+	/**
+	 * Writes the mappings in the given range with their states transformed. The number of mappings is only known
+	 * after the states are transformed, so the transformed states are collected before the mappings are written.
+	 */
+	@SuppressWarnings("unchecked")
+	private int writeTransformedMappings(
+		DataOutputView dov,
+		CopyOnWriteStateTable.StateTableEntry<K, N, S>[] groupedOut,
+		int startOffset,
+		int endOffset,
+		boolean hasNamespace) throws IOException {
+
+		final Object[] transformedStates = new Object[endOffset - startOffset];
+
+		int numMappings = 0;
+		for (int i = startOffset; i < endOffset; ++i) {
+			S transformedState = stateSnapshotTransformer.filterOrTransform(groupedOut[i].state);
+			transformedStates[i - startOffset] = transformedState;
+			if (transformedState != null) {
+				++numMappings;
+			}
+		}
+
+		// write number of mappings in key-group
+		dov.writeInt(numMappings);
+
+		// write mappings
+		for (int i = startOffset; i < endOffset; ++i) {
+			CopyOnWriteStateTable.StateTableEntry<K, N, S> toWrite = groupedOut[i];
+			groupedOut[i] = null; // free asap for GC
+
+			S transformedState = (S) transformedStates[i - startOffset];
+			if (transformedState == null) {
+				continue;
+			}
+
+			localKeySerializer.serialize(toWrite.key, dov);
+			if (hasNamespace) {
+				localNamespaceSerializer.serialize(toWrite.namespace, dov);
+			}
+			localStateSerializer.serialize(transformedState, dov);
+		}
+
+		// return number of mappings in key-group
+		return numMappings;
+	}
+
 	/**
 	 * Returns true iff the given state table is the owner of this snapshot object.
 	 */
@@ -21,10 +21,12 @@ package org.apache.flink.runtime.state.heap.internal;
 import org.apache.flink.annotation.Internal;
 import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.java.tuple.Tuple3;
 import org.apache.flink.core.memory.DataOutputView;
 import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
 import org.apache.flink.runtime.state.RegisteredStateMetaInfo;
+import org.apache.flink.runtime.state.StateSnapshotTransformer;
 import org.apache.flink.runtime.state.StateTransformationFunction;
 import org.apache.flink.runtime.state.AbstractInternalStateBackend;
 import org.apache.flink.util.Preconditions;
@@ -33,11 +35,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
@@ -388,6 +393,12 @@ public class NestedMapsStateTable<K, N, S> extends StateTable<K, N, S> {
 		return new MultipleMapIterator<>((Map<K, S>[]) state);
 	}
 
+	@Override
+	public CloseableEntryIterator<K, N, S> snapshotEntryIterator() {
+		// removing key groups replaces their maps, so the maps of the key groups at this time stay intact
+		return new KeyGroupMapsEntryIterator<>(Arrays.copyOf(state, state.length), usingNamespace);
+	}
+
 	@Override
 	public Iterator<N> namespaceIterator(K key) {
 		if (!usingNamespace) {
@@ -408,6 +419,38 @@ public class NestedMapsStateTable<K, N, S> extends StateTable<K, N, S> {
 		return namespaceMap == null ? Collections.emptyIterator() : namespaceMap.keySet().iterator();
 	}
 
+	@Override
+	@SuppressWarnings("unchecked")
+	public void visitKeyGroups(BitSet keyGroups, StateEntryVisitor<K, N, S> visitor) throws IOException {
+		for (int keyGroup = keyGroups.nextSetBit(0); keyGroup >= 0; keyGroup = keyGroups.nextSetBit(keyGroup + 1)) {
+			Map keyGroupMap = getMapForKeyGroup(keyGroup);
+			if (keyGroupMap == null) {
+				continue;
+			}
+
+			if (usingNamespace) {
+				for (Map.Entry<K, Map<N, S>> keyEntry : ((Map<K, Map<N, S>>) keyGroupMap).entrySet()) {
+					for (Map.Entry<N, S> namespaceEntry : keyEntry.getValue().entrySet()) {
+						visitor.visit(keyGroup, keyEntry.getKey(), namespaceEntry.getKey(), namespaceEntry.getValue());
+					}
+				}
+			} else {
+				for (Map.Entry<K, S> keyEntry : ((Map<K, S>) keyGroupMap).entrySet()) {
+					visitor.visit(keyGroup, keyEntry.getKey(), null, keyEntry.getValue());
+				}
+			}
+		}
+	}
+
+	@Override
+	public void removeKeyGroups(BitSet keyGroups) {
+		for (int keyGroup = keyGroups.nextSetBit(0); keyGroup >= 0; keyGroup = keyGroups.nextSetBit(keyGroup + 1)) {
+			if (getMapForKeyGroup(keyGroup) != null) {
+				setMapForKeyGroup(keyGroup, null);
+			}
+		}
+	}
+
 	// snapshots ---------------------------------------------------------------------------------------------------
 
 	private static int countMappingsInKeyGroupWithNamespace(final Map<?, Map<?, ?>> keyGroupMap) {
@@ -481,6 +524,11 @@ public class NestedMapsStateTable<K, N, S> extends StateTable<K, N, S> {
 			TypeSerializer<S> stateSerializer = owningStateTable.getStateSerializer();
 			boolean usingNamespace = owningStateTable.isUsingNamespace();
 
+			StateSnapshotTransformer<S> stateSnapshotTransformer = owningStateTable.getSnapshotTransformer();
+			if (stateSnapshotTransformer != null) {
+				return writeTransformedMappings(dov, keyGroupMap, stateSnapshotTransformer);
+			}
+
 			int countMappings = usingNamespace ? countMappingsInKeyGroupWithNamespace(keyGroupMap) : countMappingsInKeyGroup(keyGroupMap);
 			dov.writeInt(countMappings);
 
@@ -504,6 +552,54 @@ public class NestedMapsStateTable<K, N, S> extends StateTable<K, N, S> {
 
 			return countMappings;
 		}
+
+		/**
+		 * Writes the mappings in the given key-group map with their states transformed. The number of mappings is
+		 * only known after the states are transformed, so the transformed mappings are collected before they are
+		 * written.
+		 */
+		@SuppressWarnings("unchecked")
+		private int writeTransformedMappings(
+			DataOutputView dov,
+			Map keyGroupMap,
+			StateSnapshotTransformer<S> stateSnapshotTransformer) throws IOException {
+
+			TypeSerializer<K> keySerializer = owningStateTable.getKeySerializer();
+			TypeSerializer<N> namespaceSerializer = owningStateTable.getNamespaceSerializer();
+			TypeSerializer<S> stateSerializer = owningStateTable.getStateSerializer();
+			boolean usingNamespace = owningStateTable.isUsingNamespace();
+
+			List<Tuple3<K, N, S>> transformedMappings = new ArrayList<>();
+			if (usingNamespace) {
+				for (Map.Entry<K, Map<N, S>> entry : ((Map<K, Map<N, S>>) keyGroupMap).entrySet()) {
+					for (Map.Entry<N, S> namespaceEntry : entry.getValue().entrySet()) {
+						S transformedState = stateSnapshotTransformer.filterOrTransform(namespaceEntry.getValue());
+						if (transformedState != null) {
+							transformedMappings.add(Tuple3.of(entry.getKey(), namespaceEntry.getKey(), transformedState));
+						}
+					}
+				}
+			} else {
+				for (Map.Entry<K, S> entry : ((Map<K, S>) keyGroupMap).entrySet()) {
+					S transformedState = stateSnapshotTransformer.filterOrTransform(entry.getValue());
+					if (transformedState != null) {
+						transformedMappings.add(Tuple3.of(entry.getKey(), null, transformedState));
+					}
+				}
+			}
+
+			dov.writeInt(transformedMappings.size());
+
+			for (Tuple3<K, N, S> mapping : transformedMappings) {
+				keySerializer.serialize(mapping.f0, dov);
+				if (usingNamespace) {
+					namespaceSerializer.serialize(mapping.f1, dov);
+				}
+				stateSerializer.serialize(mapping.f2, dov);
+			}
+
+			return transformedMappings.size();
+		}
 	}
 
 	private static class MultipleMapIterator<K, S> implements Iterator<Map.Entry<K, S>> {
@@ -553,4 +649,114 @@ public class NestedMapsStateTable<K, N, S> extends StateTable<K, N, S> {
 			return currentIterator.next();
 		}
 	}
+
+	/**
+	 * Iterator over the mappings in the given key-group maps.
+	 */
+	private static class KeyGroupMapsEntryIterator<K, N, S> implements CloseableEntryIterator<K, N, S> {
+
+		private final Map[] keyGroupMaps;
+
+		private final boolean usingNamespace;
+
+		private int nextIndex;
+
+		private Iterator<Map.Entry> keyIterator;
+
+		private K currentKey;
+
+		private Iterator<Map.Entry<N, S>> namespaceIterator;
+
+		KeyGroupMapsEntryIterator(Map[] keyGroupMaps, boolean usingNamespace) {
+			this.keyGroupMaps = keyGroupMaps;
+			this.usingNamespace = usingNamespace;
+			this.keyIterator = Collections.emptyIterator();
+			this.namespaceIterator = Collections.emptyIterator();
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public boolean hasNext() {
+			while (!namespaceIterator.hasNext()) {
+				while (!keyIterator.hasNext()) {
+					if (nextIndex >= keyGroupMaps.length) {
+						return false;
+					}
+
+					Map keyGroupMap = keyGroupMaps[nextIndex];
+					// the visited maps are not referenced any more, so that removed key groups can be garbage collected
+					keyGroupMaps[nextIndex++] = null;
+					if (keyGroupMap != null) {
+						keyIterator = keyGroupMap.entrySet().iterator();
+					}
+				}
+
+				if (!usingNamespace) {
+					return true;
+				}
+
+				Map.Entry<K, Map<N, S>> keyEntry = keyIterator.next();
+				currentKey = keyEntry.getKey();
+				namespaceIterator = keyEntry.getValue().entrySet().iterator();
+			}
+
+			return true;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public StateEntry<K, N, S> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			if (usingNamespace) {
+				Map.Entry<N, S> namespaceEntry = namespaceIterator.next();
+				return new MapStateEntry<>(currentKey, namespaceEntry.getKey(), namespaceEntry.getValue());
+			} else {
+				Map.Entry<K, S> keyEntry = keyIterator.next();
+				return new MapStateEntry<>(keyEntry.getKey(), null, keyEntry.getValue());
+			}
+		}
+
+		@Override
+		public void close() {
+			Arrays.fill(keyGroupMaps, null);
+			keyIterator = Collections.emptyIterator();
+			namespaceIterator = Collections.emptyIterator();
+		}
+	}
+
+	/**
+	 * A mapping read from the maps of the table.
+	 */
+	private static final class MapStateEntry<K, N, S> implements StateEntry<K, N, S> {
+
+		private final K key;
+
+		private final N namespace;
+
+		private final S state;
+
+		MapStateEntry(K key, N namespace, S state) {
+			this.key = key;
+			this.namespace = namespace;
+			this.state = state;
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+		@Override
+		public N getNamespace() {
+			return namespace;
+		}
+
+		@Override
+		public S getState() {
+			return state;
+		}
+	}
 }
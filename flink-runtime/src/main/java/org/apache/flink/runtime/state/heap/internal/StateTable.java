@@ -20,11 +20,19 @@ package org.apache.flink.runtime.state.heap.internal;
 
 import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
 import org.apache.flink.runtime.state.RegisteredStateMetaInfo;
+import org.apache.flink.runtime.state.StateSnapshotTransformer;
 import org.apache.flink.runtime.state.StateTransformationFunction;
 import org.apache.flink.runtime.state.AbstractInternalStateBackend;
 import org.apache.flink.util.Preconditions;
 
+import javax.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.stream.Stream;
@@ -50,6 +58,21 @@ public abstract class StateTable<K, N, S> {
 
 	protected RegisteredStateMetaInfo stateMetaInfo;
 
+	/**
+	 * The transformer applied to the states when they are written to snapshots, null if the states
+	 * are written as they are.
+	 */
+	@Nullable
+	protected StateSnapshotTransformer<S> snapshotTransformer;
+
+	/**
+	 * The key groups whose mappings may have been modified since the dirty key groups were taken
+	 * last, indexed relative to the start of the key group range of the backend. Null if the dirty
+	 * key groups are not tracked.
+	 */
+	@Nullable
+	private BitSet dirtyKeyGroups;
+
 	public StateTable(
 		AbstractInternalStateBackend internalStateBackend,
 		RegisteredStateMetaInfo stateMetaInfo,
@@ -178,6 +201,16 @@ public abstract class StateTable<K, N, S> {
 	 */
 	public abstract Iterator<Map.Entry<K, S>> entryIterator();
 
+	/**
+	 * Returns an iterator over all mappings in the table at the time of the call. Key groups removed
+	 * with {@link #removeKeyGroups(BitSet)} afterwards stay visible to the iterator, and mappings added
+	 * to key groups which were removed before the call are not visible. The iterator has to be closed
+	 * if it is not exhausted.
+	 *
+	 * @return An iterator over all mappings at the time of the call.
+	 */
+	public abstract CloseableEntryIterator<K, N, S> snapshotEntryIterator();
+
 	/**
 	 * Returns an iterator over all namespaces for the key.
 	 *
@@ -185,6 +218,23 @@ public abstract class StateTable<K, N, S> {
 	 */
 	public abstract Iterator<N> namespaceIterator(K key);
 
+	/**
+	 * Visits the mappings in the given key groups, in one pass over the table. The table must not be
+	 * modified by the visitor.
+	 *
+	 * @param keyGroups the key groups to visit, indexed by key group.
+	 * @param visitor the visitor of the mappings.
+	 * @throws IOException if the visitor fails.
+	 */
+	public abstract void visitKeyGroups(BitSet keyGroups, StateEntryVisitor<K, N, S> visitor) throws IOException;
+
+	/**
+	 * Removes all mappings in the given key groups, in one pass over the table.
+	 *
+	 * @param keyGroups the key groups to remove, indexed by key group.
+	 */
+	public abstract void removeKeyGroups(BitSet keyGroups);
+
 	/**
 	 * Applies the given {@link StateTransformationFunction} to the state (1st input argument), using the given value as
 	 * second input argument. The result of {@link StateTransformationFunction#apply(Object, Object)} is then stored as
@@ -220,6 +270,10 @@ public abstract class StateTable<K, N, S> {
 		return stateMetaInfo.getValueSerializer();
 	}
 
+	public RegisteredStateMetaInfo getStateMetaInfo() {
+		return stateMetaInfo;
+	}
+
 	public void setStateMetaInfo(RegisteredStateMetaInfo stateMetaInfo) {
 		this.stateMetaInfo = stateMetaInfo;
 	}
@@ -228,6 +282,68 @@ public abstract class StateTable<K, N, S> {
 		return usingNamespace;
 	}
 
+	@Nullable
+	public StateSnapshotTransformer<S> getSnapshotTransformer() {
+		return snapshotTransformer;
+	}
+
+	public void setSnapshotTransformer(@Nullable StateSnapshotTransformer<S> snapshotTransformer) {
+		this.snapshotTransformer = snapshotTransformer;
+	}
+
+	// Dirty key groups ---------------------------------------------------------------------------
+
+	/**
+	 * Starts tracking the key groups whose mappings are modified. Mappings are not tracked by the table
+	 * itself, callers have to mark the key groups they modify, including modifications of the states
+	 * in place.
+	 */
+	public void enableDirtyKeyGroupTracking() {
+		if (dirtyKeyGroups == null) {
+			dirtyKeyGroups = new BitSet(internalStateBackend.getKeyGroupRange().getNumberOfKeyGroups());
+		}
+	}
+
+	public boolean isDirtyKeyGroupTrackingEnabled() {
+		return dirtyKeyGroups != null;
+	}
+
+	/**
+	 * Marks the key group of the given key as modified. The call is ignored if the dirty key groups
+	 * are not tracked.
+	 *
+	 * @param key the modified key. Not null.
+	 */
+	public void markKeyGroupDirty(K key) {
+		if (dirtyKeyGroups != null) {
+			final KeyGroupRange keyGroupRange = internalStateBackend.getKeyGroupRange();
+			final int keyGroup = KeyGroupRangeAssignment.assignToKeyGroup(key, internalStateBackend.getNumGroups());
+			dirtyKeyGroups.set(keyGroup - keyGroupRange.getStartKeyGroup());
+		}
+	}
+
+	/**
+	 * Marks all key groups as modified. The call is ignored if the dirty key groups are not tracked.
+	 */
+	public void markAllKeyGroupsDirty() {
+		if (dirtyKeyGroups != null) {
+			dirtyKeyGroups.set(0, internalStateBackend.getKeyGroupRange().getNumberOfKeyGroups());
+		}
+	}
+
+	/**
+	 * Returns the key groups modified since the last call and resets the tracking.
+	 *
+	 * @return the modified key groups, indexed relative to the start of the key group range of the backend.
+	 */
+	public BitSet takeDirtyKeyGroups() {
+		Preconditions.checkState(dirtyKeyGroups != null, "The dirty key groups are not tracked.");
+
+		final BitSet result = dirtyKeyGroups;
+		dirtyKeyGroups = new BitSet(internalStateBackend.getKeyGroupRange().getNumberOfKeyGroups());
+		return result;
+	}
+
 	// Snapshot / Restore -------------------------------------------------------------------------
 
 	public abstract StateTableSnapshot createSnapshot();
@@ -236,4 +352,41 @@ public abstract class StateTable<K, N, S> {
 
 	@VisibleForTesting
 	public abstract int sizeOfNamespace(Object namespace);
+
+	// Visitor / Iterator -------------------------------------------------------------------------
+
+	/**
+	 * Visitor of the mappings in a {@link StateTable}.
+	 *
+	 * @param <K> type of key
+	 * @param <N> type of namespace
+	 * @param <S> type of state
+	 */
+	@FunctionalInterface
+	public interface StateEntryVisitor<K, N, S> {
+
+		/**
+		 * Visits one mapping of the table.
+		 *
+		 * @param keyGroup the key group of the key.
+		 * @param key the key.
+		 * @param namespace the namespace, may be null if the table has no namespace.
+		 * @param state the state.
+		 */
+		void visit(int keyGroup, K key, N namespace, S state) throws IOException;
+	}
+
+	/**
+	 * Iterator over the mappings in a {@link StateTable} which holds resources until it is exhausted
+	 * or closed.
+	 *
+	 * @param <K> type of key
+	 * @param <N> type of namespace
+	 * @param <S> type of state
+	 */
+	public interface CloseableEntryIterator<K, N, S> extends Iterator<StateEntry<K, N, S>>, Closeable {
+
+		@Override
+		void close();
+	}
 }
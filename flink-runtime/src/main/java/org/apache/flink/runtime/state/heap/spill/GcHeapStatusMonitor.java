@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap.spill;
+
+import javax.annotation.Nullable;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+
+/**
+ * {@link HeapStatusMonitor} based on the memory management beans of the JVM. The heap usage is
+ * the usage of the tenured pool after its last collection, which is the memory that survives
+ * garbage collections. If the tenured pool cannot be determined, the current usage of the whole
+ * heap is reported instead.
+ */
+public class GcHeapStatusMonitor implements HeapStatusMonitor {
+
+	/** The pool holding the long-lived objects, null if unknown. */
+	@Nullable
+	private final MemoryPoolMXBean tenuredPool;
+
+	private final List<GarbageCollectorMXBean> garbageCollectors;
+
+	public GcHeapStatusMonitor() {
+		MemoryPoolMXBean tenuredPool = null;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			// the tenured pool is the only heap pool supporting usage thresholds
+			if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported() && pool.isCollectionUsageThresholdSupported()) {
+				tenuredPool = pool;
+			}
+		}
+
+		this.tenuredPool = tenuredPool;
+		this.garbageCollectors = ManagementFactory.getGarbageCollectorMXBeans();
+	}
+
+	@Override
+	public double getHeapUsageRatio() {
+		if (tenuredPool != null) {
+			MemoryUsage usage = tenuredPool.getCollectionUsage();
+			if (usage != null && usage.getMax() > 0) {
+				return (double) usage.getUsed() / usage.getMax();
+			}
+		}
+
+		Runtime runtime = Runtime.getRuntime();
+		return (double) (runtime.totalMemory() - runtime.freeMemory()) / runtime.maxMemory();
+	}
+
+	@Override
+	public long getMaxHeapBytes() {
+		return Runtime.getRuntime().maxMemory();
+	}
+
+	@Override
+	public long getGarbageCollectionCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean garbageCollector : garbageCollectors) {
+			// the count is -1 if it is undefined for the collector
+			count += Math.max(0, garbageCollector.getCollectionCount());
+		}
+		return count;
+	}
+}
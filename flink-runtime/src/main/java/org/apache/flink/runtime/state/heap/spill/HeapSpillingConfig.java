@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap.spill;
+
+import org.apache.flink.util.Preconditions;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * The configuration of spilling the key groups of the heap internal state backend to disk.
+ */
+public final class HeapSpillingConfig {
+
+	/** The default number of state accesses between two checks of the heap usage. */
+	public static final int DEFAULT_CHECK_INTERVAL = 1000;
+
+	/** The directories which the spilled key groups are written to. */
+	private final File[] spillDirectories;
+
+	/** The heap usage ratio above which key groups are spilled. */
+	private final double highWatermark;
+
+	/** The heap usage ratio which spilling aims for. */
+	private final double lowWatermark;
+
+	/** The number of state accesses between two checks of the heap usage. */
+	private final int checkInterval;
+
+	public HeapSpillingConfig(File[] spillDirectories, double highWatermark, double lowWatermark) {
+		this(spillDirectories, highWatermark, lowWatermark, DEFAULT_CHECK_INTERVAL);
+	}
+
+	public HeapSpillingConfig(File[] spillDirectories, double highWatermark, double lowWatermark, int checkInterval) {
+		Preconditions.checkNotNull(spillDirectories);
+		Preconditions.checkArgument(spillDirectories.length > 0, "No directories to spill key groups to.");
+		Preconditions.checkArgument(lowWatermark > 0 && lowWatermark <= highWatermark && highWatermark < 1,
+			"The watermarks of the heap usage must satisfy 0 < low watermark <= high watermark < 1.");
+		Preconditions.checkArgument(checkInterval > 0, "The check interval must be positive.");
+
+		this.spillDirectories = spillDirectories;
+		this.highWatermark = highWatermark;
+		this.lowWatermark = lowWatermark;
+		this.checkInterval = checkInterval;
+	}
+
+	public File[] getSpillDirectories() {
+		return spillDirectories;
+	}
+
+	public double getHighWatermark() {
+		return highWatermark;
+	}
+
+	public double getLowWatermark() {
+		return lowWatermark;
+	}
+
+	public int getCheckInterval() {
+		return checkInterval;
+	}
+
+	@Override
+	public String toString() {
+		return "HeapSpillingConfig{" +
+			"spillDirectories=" + Arrays.toString(spillDirectories) +
+			", highWatermark=" + highWatermark +
+			", lowWatermark=" + lowWatermark +
+			", checkInterval=" + checkInterval +
+			'}';
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap.spill;
+
+/**
+ * Reports the status of the JVM heap which the {@link KeyGroupSpillManager} decides on whether
+ * to spill key groups.
+ */
+public interface HeapStatusMonitor {
+
+	/**
+	 * Returns the ratio of the used heap to the maximum heap, between 0 and 1. The ratio should
+	 * reflect the memory retained after garbage collections rather than the garbage in the heap.
+	 */
+	double getHeapUsageRatio();
+
+	/**
+	 * Returns the maximum size of the heap in bytes.
+	 */
+	long getMaxHeapBytes();
+
+	/**
+	 * Returns the total number of garbage collections so far. The heap usage is only reevaluated
+	 * once the number changes.
+	 */
+	long getGarbageCollectionCount();
+}
@@ -0,0 +1,339 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap.spill;
+
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.util.FileUtils;
+import org.apache.flink.util.Preconditions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Decides which key groups of the heap internal state backend are spilled to disk.
+ *
+ * <p>The heap usage is checked periodically on state accesses. If a garbage collection happened
+ * since the last check and the heap usage is still above the high watermark, the least recently
+ * accessed key groups are spilled until the heap usage is expected to drop to the low watermark.
+ * The expected gain of spilling a key group is the size it had when it was spilled the last time,
+ * or the average size of the key groups in memory if it was never spilled. Spilled key groups are
+ * loaded back by the {@link SpillableKeyGroups} on the first access to them.
+ *
+ * <p>All methods except the metrics have to be called by the thread accessing the states.
+ */
+public class KeyGroupSpillManager implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(KeyGroupSpillManager.class);
+
+	/** The total number of key groups of the job, i.e. the max parallelism. */
+	private final int numberOfKeyGroups;
+
+	private final KeyGroupRange keyGroupRange;
+
+	private final HeapSpillingConfig config;
+
+	private final HeapStatusMonitor heapStatusMonitor;
+
+	private final List<SpillableKeyGroups<?, ?, ?>> spillables = new ArrayList<>();
+
+	/** The tick of the last access to each key group, indexed relative to the start of the key group range. */
+	private final long[] lastAccessTicks;
+
+	/** The key groups which are accessed and not spilled since, indexed relative to the start of the key group range. */
+	private final BitSet residentKeyGroups;
+
+	/**
+	 * The size of each key group when it was spilled the last time, indexed relative to the start
+	 * of the key group range, 0 if the key group was never spilled.
+	 */
+	private final long[] keyGroupSizes;
+
+	/** The directories for the spilled files of the backend, created lazily. */
+	private final File[] spillDirectories;
+
+	private long currentTick;
+
+	private int numAccessesSinceCheck;
+
+	private long lastGarbageCollectionCount = -1L;
+
+	private int nextSpillDirectory;
+
+	// metrics, written by the thread accessing the states only
+
+	private volatile long spilledBytes;
+
+	private volatile int numSpilledKeyGroups;
+
+	private volatile long numHits;
+
+	private volatile long numMisses;
+
+	private volatile long numSpills;
+
+	private volatile long numLoads;
+
+	public KeyGroupSpillManager(int numberOfKeyGroups, KeyGroupRange keyGroupRange, HeapSpillingConfig config) {
+		this(numberOfKeyGroups, keyGroupRange, config, new GcHeapStatusMonitor());
+	}
+
+	public KeyGroupSpillManager(
+		int numberOfKeyGroups,
+		KeyGroupRange keyGroupRange,
+		HeapSpillingConfig config,
+		HeapStatusMonitor heapStatusMonitor) {
+
+		this.numberOfKeyGroups = numberOfKeyGroups;
+		this.keyGroupRange = Preconditions.checkNotNull(keyGroupRange);
+		this.config = Preconditions.checkNotNull(config);
+		this.heapStatusMonitor = Preconditions.checkNotNull(heapStatusMonitor);
+
+		final int numberOfLocalKeyGroups = keyGroupRange.getNumberOfKeyGroups();
+		this.lastAccessTicks = new long[numberOfLocalKeyGroups];
+		this.residentKeyGroups = new BitSet(numberOfLocalKeyGroups);
+		this.keyGroupSizes = new long[numberOfLocalKeyGroups];
+
+		final String directoryName = "flink-heap-spill-" + UUID.randomUUID();
+		final File[] baseDirectories = config.getSpillDirectories();
+		this.spillDirectories = new File[baseDirectories.length];
+		for (int i = 0; i < baseDirectories.length; ++i) {
+			spillDirectories[i] = new File(baseDirectories[i], directoryName);
+		}
+	}
+
+	int getNumberOfKeyGroups() {
+		return numberOfKeyGroups;
+	}
+
+	KeyGroupRange getKeyGroupRange() {
+		return keyGroupRange;
+	}
+
+	void register(SpillableKeyGroups<?, ?, ?> spillable) {
+		spillables.add(spillable);
+	}
+
+	// ------------------------------------------------------------------------
+	//  Accesses
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Records an access to the given key group, and spills key groups if it is time to check the
+	 * heap usage and the heap usage is too high. The accessed key group is not spilled.
+	 */
+	void recordAccess(int keyGroup) {
+		final int index = keyGroup - keyGroupRange.getStartKeyGroup();
+		lastAccessTicks[index] = ++currentTick;
+		residentKeyGroups.set(index);
+
+		if (++numAccessesSinceCheck >= config.getCheckInterval()) {
+			numAccessesSinceCheck = 0;
+			checkHeapUsage(index);
+		}
+	}
+
+	void recordHit() {
+		numHits++;
+	}
+
+	void recordMiss() {
+		numMisses++;
+	}
+
+	void onSpill(int keyGroup, long numBytes) {
+		keyGroupSizes[keyGroup - keyGroupRange.getStartKeyGroup()] += numBytes;
+		spilledBytes += numBytes;
+		numSpilledKeyGroups++;
+		numSpills++;
+	}
+
+	void onLoad(long numBytes) {
+		spilledBytes -= numBytes;
+		numSpilledKeyGroups--;
+		numLoads++;
+	}
+
+	void onDiscard(long numBytes) {
+		spilledBytes -= numBytes;
+		numSpilledKeyGroups--;
+	}
+
+	// ------------------------------------------------------------------------
+	//  Spilling
+	// ------------------------------------------------------------------------
+
+	private void checkHeapUsage(int accessedIndex) {
+		// the heap usage only tells the size of the states after garbage collections
+		final long garbageCollectionCount = heapStatusMonitor.getGarbageCollectionCount();
+		if (garbageCollectionCount == lastGarbageCollectionCount) {
+			return;
+		}
+		lastGarbageCollectionCount = garbageCollectionCount;
+
+		final double heapUsageRatio = heapStatusMonitor.getHeapUsageRatio();
+		if (heapUsageRatio <= config.getHighWatermark()) {
+			return;
+		}
+
+		final long maxHeapBytes = heapStatusMonitor.getMaxHeapBytes();
+		final long bytesToFree = (long) ((heapUsageRatio - config.getLowWatermark()) * maxHeapBytes);
+		final long averageKeyGroupSize =
+			(long) (heapUsageRatio * maxHeapBytes) / Math.max(1, residentKeyGroups.cardinality());
+
+		final List<Integer> candidates = new ArrayList<>(residentKeyGroups.cardinality());
+		for (int index = residentKeyGroups.nextSetBit(0); index >= 0; index = residentKeyGroups.nextSetBit(index + 1)) {
+			if (index != accessedIndex) {
+				candidates.add(index);
+			}
+		}
+		candidates.sort(Comparator.comparingLong(index -> lastAccessTicks[index]));
+
+		final Set<Integer> keyGroupsToSpill = new HashSet<>();
+		long expectedFreedBytes = 0;
+		for (int index : candidates) {
+			if (expectedFreedBytes >= bytesToFree) {
+				break;
+			}
+
+			keyGroupsToSpill.add(keyGroupRange.getStartKeyGroup() + index);
+			expectedFreedBytes += keyGroupSizes[index] > 0 ? keyGroupSizes[index] : averageKeyGroupSize;
+		}
+
+		if (!keyGroupsToSpill.isEmpty()) {
+			LOG.info("Heap usage {} is above the high watermark {}, spilling {} of {} key groups in memory.",
+				heapUsageRatio, config.getHighWatermark(), keyGroupsToSpill.size(), candidates.size() + 1);
+			spill(keyGroupsToSpill);
+		}
+	}
+
+	/**
+	 * Spills the given key groups of all states. Failures are logged, the key groups which could not
+	 * be spilled stay in memory.
+	 *
+	 * @param keyGroups the key groups to spill.
+	 */
+	@VisibleForTesting
+	void spill(Set<Integer> keyGroups) {
+		final File directory = spillDirectories[nextSpillDirectory];
+		nextSpillDirectory = (nextSpillDirectory + 1) % spillDirectories.length;
+
+		final BitSet keyGroupSet = new BitSet(numberOfKeyGroups);
+		for (int keyGroup : keyGroups) {
+			int index = keyGroup - keyGroupRange.getStartKeyGroup();
+			keyGroupSizes[index] = 0;
+			residentKeyGroups.clear(index);
+			keyGroupSet.set(keyGroup);
+		}
+
+		try {
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IOException("Could not create the spill directory " + directory + '.');
+			}
+
+			// each state is scanned once for all key groups
+			for (SpillableKeyGroups<?, ?, ?> spillable : spillables) {
+				spillable.spill(keyGroupSet, directory);
+			}
+		} catch (IOException e) {
+			LOG.warn("Could not spill key groups to {}, keeping them in memory.", directory, e);
+
+			for (int keyGroup : keyGroups) {
+				residentKeyGroups.set(keyGroup - keyGroupRange.getStartKeyGroup());
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		for (SpillableKeyGroups<?, ?, ?> spillable : spillables) {
+			spillable.discardAll();
+		}
+		spillables.clear();
+
+		for (File directory : spillDirectories) {
+			FileUtils.deleteDirectoryQuietly(directory);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//  Metrics
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Returns the number of bytes of the key groups currently spilled to disk.
+	 */
+	public long getSpilledBytes() {
+		return spilledBytes;
+	}
+
+	/**
+	 * Returns the number of key groups of all states currently spilled to disk.
+	 */
+	public int getNumSpilledKeyGroups() {
+		return numSpilledKeyGroups;
+	}
+
+	/**
+	 * Returns the ratio of the state accesses served from memory, 1 if there were no accesses yet.
+	 */
+	public double getHitRatio() {
+		long hits = numHits;
+		long accesses = hits + numMisses;
+		return accesses == 0 ? 1.0 : (double) hits / accesses;
+	}
+
+	/**
+	 * Returns the number of key groups of all states spilled so far.
+	 */
+	public long getNumSpills() {
+		return numSpills;
+	}
+
+	/**
+	 * Returns the number of key groups of all states loaded back so far.
+	 */
+	public long getNumLoads() {
+		return numLoads;
+	}
+
+	/**
+	 * Registers the metrics of spilling at the given metric group.
+	 */
+	public void registerMetrics(MetricGroup metricGroup) {
+		metricGroup.gauge("spilledBytes", (Gauge<Long>) this::getSpilledBytes);
+		metricGroup.gauge("numSpilledKeyGroups", (Gauge<Integer>) this::getNumSpilledKeyGroups);
+		metricGroup.gauge("hitRatio", (Gauge<Double>) this::getHitRatio);
+		metricGroup.gauge("numSpills", (Gauge<Long>) this::getNumSpills);
+		metricGroup.gauge("numLoads", (Gauge<Long>) this::getNumLoads);
+	}
+}
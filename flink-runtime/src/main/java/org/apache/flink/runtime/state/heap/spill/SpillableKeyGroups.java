@@ -0,0 +1,380 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap.spill;
+
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.StateAccessException;
+import org.apache.flink.runtime.state.heap.internal.StateTable;
+import org.apache.flink.runtime.state.heap.internal.StateTableSnapshot;
+import org.apache.flink.util.IOUtils;
+import org.apache.flink.util.Preconditions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The key groups of one {@link StateTable} which may be spilled to disk. The mappings of a spilled
+ * key group are removed from the table and written to a {@link SpilledKeyGroup}. They are loaded
+ * back into the table as soon as any key of the key group is accessed, while iterations over all
+ * mappings read them from the files without loading them.
+ *
+ * <p>Which key groups are spilled and when is decided by the {@link KeyGroupSpillManager} of the
+ * backend. All methods have to be called by the thread accessing the state table.
+ *
+ * @param <K> type of key
+ * @param <N> type of namespace
+ * @param <S> type of state
+ */
+public class SpillableKeyGroups<K, N, S> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SpillableKeyGroups.class);
+
+	private final KeyGroupSpillManager spillManager;
+
+	private final StateTable<K, N, S> stateTable;
+
+	/** The namespace of the mappings loaded into tables without namespace. */
+	@Nullable
+	private final N defaultNamespace;
+
+	/** The spilled key groups, indexed relative to the start of the key group range. */
+	private final SpilledKeyGroup[] spilledKeyGroups;
+
+	private int numSpilledKeyGroups;
+
+	private int numSpilledEntries;
+
+	public SpillableKeyGroups(KeyGroupSpillManager spillManager, StateTable<K, N, S> stateTable, @Nullable N defaultNamespace) {
+		this.spillManager = Preconditions.checkNotNull(spillManager);
+		this.stateTable = Preconditions.checkNotNull(stateTable);
+		this.defaultNamespace = defaultNamespace;
+		this.spilledKeyGroups = new SpilledKeyGroup[spillManager.getKeyGroupRange().getNumberOfKeyGroups()];
+
+		spillManager.register(this);
+	}
+
+	/**
+	 * Records an access to the given key, loading the mappings of its key group if they are spilled.
+	 * This has to be called before the mappings of the key are accessed in the table.
+	 *
+	 * @param key the accessed key. Not null.
+	 */
+	public void access(K key) {
+		Preconditions.checkNotNull(key, "No key set. This method should not be called outside of a keyed context.");
+
+		final int keyGroup = KeyGroupRangeAssignment.assignToKeyGroup(key, spillManager.getNumberOfKeyGroups());
+		spillManager.recordAccess(keyGroup);
+
+		final int index = keyGroup - spillManager.getKeyGroupRange().getStartKeyGroup();
+		if (spilledKeyGroups[index] == null) {
+			spillManager.recordHit();
+		} else {
+			load(index);
+			spillManager.recordMiss();
+		}
+	}
+
+	/**
+	 * Drops the mappings of all spilled key groups.
+	 */
+	public void discardAll() {
+		if (numSpilledKeyGroups == 0) {
+			return;
+		}
+
+		for (int index = 0; index < spilledKeyGroups.length; ++index) {
+			SpilledKeyGroup spilledKeyGroup = spilledKeyGroups[index];
+			if (spilledKeyGroup != null) {
+				spilledKeyGroups[index] = null;
+				spilledKeyGroup.release();
+				spillManager.onDiscard(spilledKeyGroup.getNumBytes());
+			}
+		}
+
+		numSpilledKeyGroups = 0;
+		numSpilledEntries = 0;
+	}
+
+	/**
+	 * Returns the number of mappings in the spilled key groups.
+	 */
+	public int getNumSpilledEntries() {
+		return numSpilledEntries;
+	}
+
+	/**
+	 * Returns the number of mappings with the given namespace in the spilled key groups.
+	 */
+	public int getNumSpilledEntries(Object namespace) {
+		int count = 0;
+		if (numSpilledKeyGroups > 0) {
+			for (SpilledKeyGroup spilledKeyGroup : spilledKeyGroups) {
+				if (spilledKeyGroup != null) {
+					count += spilledKeyGroup.getNumEntries(namespace);
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of spilled key groups.
+	 */
+	public int getNumSpilledKeyGroups() {
+		return numSpilledKeyGroups;
+	}
+
+	/**
+	 * Returns an iterator over the mappings of the table and of the spilled key groups at the time of
+	 * the call. The mappings of the spilled key groups are read from their files one at a time and are
+	 * not loaded into the table. Spilling and loading key groups afterwards does not affect the
+	 * iterator. The iterator has to be closed if it is not exhausted, to release the spilled files.
+	 */
+	public StateTable.CloseableEntryIterator<K, N, S> iterator() {
+		final List<SpilledKeyGroup> retainedKeyGroups = new ArrayList<>(numSpilledKeyGroups);
+		for (SpilledKeyGroup spilledKeyGroup : spilledKeyGroups) {
+			if (spilledKeyGroup != null) {
+				spilledKeyGroup.retain();
+				retainedKeyGroups.add(spilledKeyGroup);
+			}
+		}
+
+		return new SpillingEntryIterator<>(stateTable.snapshotEntryIterator(), retainedKeyGroups, stateTable, defaultNamespace);
+	}
+
+	/**
+	 * Creates a snapshot of the table which also contains the mappings of the currently spilled key
+	 * groups. The spilled files are kept until the returned snapshot is released.
+	 *
+	 * @param tableSnapshot the snapshot of the table.
+	 */
+	public StateTableSnapshot createSnapshot(StateTableSnapshot tableSnapshot) {
+		if (numSpilledKeyGroups == 0) {
+			return tableSnapshot;
+		}
+
+		final int startKeyGroup = spillManager.getKeyGroupRange().getStartKeyGroup();
+
+		final Map<Integer, SpilledKeyGroup> retainedKeyGroups = new HashMap<>(numSpilledKeyGroups);
+		for (int index = 0; index < spilledKeyGroups.length; ++index) {
+			SpilledKeyGroup spilledKeyGroup = spilledKeyGroups[index];
+			if (spilledKeyGroup != null) {
+				spilledKeyGroup.retain();
+				retainedKeyGroups.put(startKeyGroup + index, spilledKeyGroup);
+			}
+		}
+
+		return new SpillingStateTableSnapshot<>(tableSnapshot, stateTable, retainedKeyGroups);
+	}
+
+	/**
+	 * Writes the mappings of the given key groups to files in the given directory and removes them
+	 * from the table. The mappings are written while the table is scanned, and are only removed once
+	 * all files are written. The table is left unchanged if writing fails.
+	 *
+	 * @param keyGroups the key groups to spill, indexed by key group.
+	 * @param directory the directory of the files.
+	 */
+	void spill(BitSet keyGroups, File directory) throws IOException {
+		final int startKeyGroup = spillManager.getKeyGroupRange().getStartKeyGroup();
+
+		// key groups may still be spilled in this state if spilling failed for other states
+		if (numSpilledKeyGroups > 0) {
+			keyGroups = (BitSet) keyGroups.clone();
+			for (int index = 0; index < spilledKeyGroups.length; ++index) {
+				if (spilledKeyGroups[index] != null) {
+					keyGroups.clear(startKeyGroup + index);
+				}
+			}
+		}
+
+		// the files are created for the key groups with mappings only
+		@SuppressWarnings("unchecked")
+		final SpillFileWriter<K, N, S>[] writers = new SpillFileWriter[spilledKeyGroups.length];
+
+		boolean success = false;
+		try {
+			stateTable.visitKeyGroups(keyGroups, (keyGroup, key, namespace, state) -> {
+				final int index = keyGroup - startKeyGroup;
+				if (writers[index] == null) {
+					writers[index] = new SpillFileWriter<>(new File(directory, "kg-" + keyGroup + '-' + UUID.randomUUID()), stateTable);
+				}
+				writers[index].write(key, namespace, state);
+			});
+
+			for (SpillFileWriter<K, N, S> writer : writers) {
+				if (writer != null) {
+					writer.finish();
+				}
+			}
+
+			success = true;
+		} finally {
+			if (!success) {
+				for (SpillFileWriter<K, N, S> writer : writers) {
+					if (writer != null) {
+						writer.discard();
+					}
+				}
+			}
+		}
+
+		stateTable.removeKeyGroups(keyGroups);
+
+		for (int index = 0; index < writers.length; ++index) {
+			final SpillFileWriter<K, N, S> writer = writers[index];
+			if (writer == null) {
+				continue;
+			}
+
+			final SpilledKeyGroup spilledKeyGroup =
+				new SpilledKeyGroup(writer.file, writer.numEntries, writer.numBytes, writer.numEntriesPerNamespace);
+			spilledKeyGroups[index] = spilledKeyGroup;
+			++numSpilledKeyGroups;
+			numSpilledEntries += writer.numEntries;
+
+			spillManager.onSpill(startKeyGroup + index, spilledKeyGroup.getNumBytes());
+		}
+	}
+
+	private void load(int index) {
+		final SpilledKeyGroup spilledKeyGroup = spilledKeyGroups[index];
+
+		final TypeSerializer<K> keySerializer = stateTable.getKeySerializer();
+		final TypeSerializer<N> namespaceSerializer = stateTable.getNamespaceSerializer();
+		final TypeSerializer<S> stateSerializer = stateTable.getStateSerializer();
+		final boolean usingNamespace = stateTable.isUsingNamespace();
+
+		try {
+			DataInputView inView = spilledKeyGroup.openInputView();
+			int numEntries = inView.readInt();
+			for (int i = 0; i < numEntries; ++i) {
+				K key = keySerializer.deserialize(inView);
+				N namespace = usingNamespace ? namespaceSerializer.deserialize(inView) : defaultNamespace;
+				S state = stateSerializer.deserialize(inView);
+				stateTable.put(key, namespace, state);
+			}
+		} catch (IOException e) {
+			throw new StateAccessException(e);
+		}
+
+		spilledKeyGroups[index] = null;
+		--numSpilledKeyGroups;
+		numSpilledEntries -= spilledKeyGroup.getNumEntries();
+
+		spilledKeyGroup.release();
+		spillManager.onLoad(spilledKeyGroup.getNumBytes());
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Writer of the mappings of one key group to a file, in the format of the key groups in
+	 * snapshots. The number of mappings is written in front of them once all are written.
+	 */
+	private static final class SpillFileWriter<K, N, S> {
+
+		private final File file;
+
+		private final FileOutputStream fileOutputStream;
+
+		private final DataOutputViewStreamWrapper outView;
+
+		private final TypeSerializer<K> keySerializer;
+
+		@Nullable
+		private final TypeSerializer<N> namespaceSerializer;
+
+		private final TypeSerializer<S> stateSerializer;
+
+		/** The number of written mappings per namespace, null if the state has no namespace. */
+		@Nullable
+		private final Map<N, Integer> numEntriesPerNamespace;
+
+		private int numEntries;
+
+		private long numBytes;
+
+		SpillFileWriter(File file, StateTable<K, N, S> stateTable) throws IOException {
+			this.file = file;
+			this.keySerializer = stateTable.getKeySerializer();
+			this.namespaceSerializer = stateTable.isUsingNamespace() ? stateTable.getNamespaceSerializer() : null;
+			this.stateSerializer = stateTable.getStateSerializer();
+			this.numEntriesPerNamespace = stateTable.isUsingNamespace() ? new HashMap<>() : null;
+
+			this.fileOutputStream = new FileOutputStream(file);
+			this.outView = new DataOutputViewStreamWrapper(new BufferedOutputStream(fileOutputStream));
+
+			// placeholder for the number of mappings
+			outView.writeInt(0);
+		}
+
+		void write(K key, N namespace, S state) throws IOException {
+			keySerializer.serialize(key, outView);
+			if (namespaceSerializer != null) {
+				namespaceSerializer.serialize(namespace, outView);
+				numEntriesPerNamespace.merge(namespace, 1, Integer::sum);
+			}
+			stateSerializer.serialize(state, outView);
+			++numEntries;
+		}
+
+		void finish() throws IOException {
+			outView.flush();
+
+			ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+			header.putInt(0, numEntries);
+			FileChannel channel = fileOutputStream.getChannel();
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+			numBytes = channel.size();
+
+			outView.close();
+		}
+
+		void discard() {
+			IOUtils.closeQuietly(outView);
+			try {
+				Files.deleteIfExists(file.toPath());
+			} catch (IOException e) {
+				LOG.warn("Could not delete the spill file {}.", file, e);
+			}
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap.spill;
+
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.util.Preconditions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * The mappings of one state in one key group, spilled to a file. The file is written in the
+ * format of the key groups in snapshots, i.e. the number of mappings followed by the serialized
+ * mappings, and read back through a memory-mapped buffer.
+ *
+ * <p>The file is shared by the state storage and the snapshots taken while the key group is
+ * spilled, and is deleted once all of them have released it.
+ */
+final class SpilledKeyGroup {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SpilledKeyGroup.class);
+
+	/** The size of the chunks copied from the file to snapshots. */
+	private static final int COPY_BUFFER_SIZE = 4096;
+
+	private final File file;
+
+	private final int numEntries;
+
+	private final long numBytes;
+
+	/** The number of mappings per namespace, null if the state has no namespace. */
+	@Nullable
+	private final Map<?, Integer> numEntriesPerNamespace;
+
+	/** The number of holders of the file. Guarded by this object. */
+	private int referenceCount;
+
+	SpilledKeyGroup(File file, int numEntries, long numBytes, @Nullable Map<?, Integer> numEntriesPerNamespace) {
+		Preconditions.checkArgument(numBytes <= Integer.MAX_VALUE, "Spilled key groups must be smaller than 2 GB.");
+
+		this.file = Preconditions.checkNotNull(file);
+		this.numEntries = numEntries;
+		this.numBytes = numBytes;
+		this.numEntriesPerNamespace = numEntriesPerNamespace;
+		this.referenceCount = 1;
+	}
+
+	File getFile() {
+		return file;
+	}
+
+	int getNumEntries() {
+		return numEntries;
+	}
+
+	long getNumBytes() {
+		return numBytes;
+	}
+
+	/**
+	 * Returns the number of mappings with the given namespace, all mappings if the state has no namespace.
+	 */
+	int getNumEntries(Object namespace) {
+		return numEntriesPerNamespace == null ? numEntries : numEntriesPerNamespace.getOrDefault(namespace, 0);
+	}
+
+	/**
+	 * Opens a view on the mappings, starting with their number.
+	 */
+	DataInputView openInputView() throws IOException {
+		return new DataInputViewStreamWrapper(new ByteBufferInputStream(map()));
+	}
+
+	/**
+	 * Copies the mappings to the given output as they are, starting with their number.
+	 */
+	void copyTo(DataOutputView out) throws IOException {
+		MappedByteBuffer buffer = map();
+		byte[] chunk = new byte[(int) Math.min(COPY_BUFFER_SIZE, numBytes)];
+		while (buffer.hasRemaining()) {
+			int length = Math.min(chunk.length, buffer.remaining());
+			buffer.get(chunk, 0, length);
+			out.write(chunk, 0, length);
+		}
+	}
+
+	private MappedByteBuffer map() throws IOException {
+		// the mapping remains valid after the channel is closed
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, numBytes);
+		}
+	}
+
+	/**
+	 * Adds a holder of the file.
+	 */
+	synchronized void retain() {
+		Preconditions.checkState(referenceCount > 0, "The spilled key group is already released.");
+		++referenceCount;
+	}
+
+	/**
+	 * Removes a holder of the file, deleting the file when it was the last one.
+	 */
+	void release() {
+		synchronized (this) {
+			Preconditions.checkState(referenceCount > 0, "The spilled key group is already released.");
+			if (--referenceCount > 0) {
+				return;
+			}
+		}
+
+		try {
+			Files.deleteIfExists(file.toPath());
+		} catch (IOException e) {
+			LOG.warn("Could not delete the spilled key group file {}.", file, e);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Input stream reading the remaining bytes of a buffer.
+	 */
+	private static final class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+
+			int length = Math.min(len, buffer.remaining());
+			buffer.get(b, off, length);
+			return length;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
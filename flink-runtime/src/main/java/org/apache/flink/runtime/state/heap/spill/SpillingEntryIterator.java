@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap.spill;
+
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.runtime.state.StateAccessException;
+import org.apache.flink.runtime.state.heap.internal.StateEntry;
+import org.apache.flink.runtime.state.heap.internal.StateTable;
+import org.apache.flink.util.Preconditions;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator over the mappings of a {@link StateTable} followed by the mappings of its spilled key
+ * groups. The spilled mappings are deserialized one at a time, and each spilled key group is
+ * released as soon as all its mappings are read.
+ *
+ * @param <K> type of key
+ * @param <N> type of namespace
+ * @param <S> type of state
+ */
+class SpillingEntryIterator<K, N, S> implements StateTable.CloseableEntryIterator<K, N, S> {
+
+	private final StateTable.CloseableEntryIterator<K, N, S> tableIterator;
+
+	/** The retained key groups which are not read yet. */
+	private final List<SpilledKeyGroup> spilledKeyGroups;
+
+	private final TypeSerializer<K> keySerializer;
+
+	private final TypeSerializer<N> namespaceSerializer;
+
+	private final TypeSerializer<S> stateSerializer;
+
+	private final boolean usingNamespace;
+
+	/** The namespace of the spilled mappings of tables without namespace. */
+	@Nullable
+	private final N defaultNamespace;
+
+	/** The key group currently read, null if none is open. */
+	@Nullable
+	private SpilledKeyGroup currentKeyGroup;
+
+	private DataInputView currentInputView;
+
+	private int numRemainingEntries;
+
+	SpillingEntryIterator(
+		StateTable.CloseableEntryIterator<K, N, S> tableIterator,
+		List<SpilledKeyGroup> spilledKeyGroups,
+		StateTable<K, N, S> stateTable,
+		@Nullable N defaultNamespace) {
+
+		this.tableIterator = Preconditions.checkNotNull(tableIterator);
+		this.spilledKeyGroups = Preconditions.checkNotNull(spilledKeyGroups);
+		this.keySerializer = stateTable.getKeySerializer();
+		this.namespaceSerializer = stateTable.getNamespaceSerializer();
+		this.stateSerializer = stateTable.getStateSerializer();
+		this.usingNamespace = stateTable.isUsingNamespace();
+		this.defaultNamespace = defaultNamespace;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (tableIterator.hasNext()) {
+			return true;
+		}
+
+		try {
+			while (numRemainingEntries == 0) {
+				releaseCurrentKeyGroup();
+				if (spilledKeyGroups.isEmpty()) {
+					return false;
+				}
+
+				currentKeyGroup = spilledKeyGroups.remove(spilledKeyGroups.size() - 1);
+				currentInputView = currentKeyGroup.openInputView();
+				numRemainingEntries = currentInputView.readInt();
+			}
+		} catch (IOException e) {
+			throw new StateAccessException(e);
+		}
+
+		return true;
+	}
+
+	@Override
+	public StateEntry<K, N, S> next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		if (currentKeyGroup == null) {
+			return tableIterator.next();
+		}
+
+		try {
+			K key = keySerializer.deserialize(currentInputView);
+			N namespace = usingNamespace ? namespaceSerializer.deserialize(currentInputView) : defaultNamespace;
+			S state = stateSerializer.deserialize(currentInputView);
+			--numRemainingEntries;
+			return new SpilledStateEntry<>(key, namespace, state);
+		} catch (IOException e) {
+			throw new StateAccessException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		tableIterator.close();
+
+		releaseCurrentKeyGroup();
+		for (SpilledKeyGroup spilledKeyGroup : spilledKeyGroups) {
+			spilledKeyGroup.release();
+		}
+		spilledKeyGroups.clear();
+	}
+
+	private void releaseCurrentKeyGroup() {
+		if (currentKeyGroup != null) {
+			currentKeyGroup.release();
+			currentKeyGroup = null;
+			currentInputView = null;
+			numRemainingEntries = 0;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * A mapping read from a spilled key group.
+	 */
+	private static final class SpilledStateEntry<K, N, S> implements StateEntry<K, N, S> {
+
+		private final K key;
+
+		private final N namespace;
+
+		private final S state;
+
+		SpilledStateEntry(K key, N namespace, S state) {
+			this.key = key;
+			this.namespace = namespace;
+			this.state = state;
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+		@Override
+		public N getNamespace() {
+			return namespace;
+		}
+
+		@Override
+		public S getState() {
+			return state;
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap.spill;
+
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.java.tuple.Tuple3;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.runtime.state.StateSnapshotTransformer;
+import org.apache.flink.runtime.state.heap.internal.StateTable;
+import org.apache.flink.runtime.state.heap.internal.StateTableSnapshot;
+import org.apache.flink.util.Preconditions;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of a {@link StateTable} with spilled key groups. The key groups which were spilled
+ * when the snapshot was created are written from their files, all other key groups are written
+ * by the snapshot of the table.
+ *
+ * @param <K> type of key
+ * @param <N> type of namespace
+ * @param <S> type of state
+ */
+class SpillingStateTableSnapshot<K, N, S> implements StateTableSnapshot {
+
+	private final StateTableSnapshot tableSnapshot;
+
+	/** The key groups spilled when the snapshot was created, retained until the snapshot is released. */
+	private final Map<Integer, SpilledKeyGroup> spilledKeyGroups;
+
+	private final boolean usingNamespace;
+
+	/*
+	 * Local duplicates of the serializers of the table, which may be stateful and shared with the
+	 * thread accessing the table.
+	 */
+
+	private final TypeSerializer<K> localKeySerializer;
+
+	private final TypeSerializer<N> localNamespaceSerializer;
+
+	private final TypeSerializer<S> localStateSerializer;
+
+	/** The transformer applied to the states before they are written, null if the states are written as they are. */
+	@Nullable
+	private final StateSnapshotTransformer<S> stateSnapshotTransformer;
+
+	SpillingStateTableSnapshot(
+		StateTableSnapshot tableSnapshot,
+		StateTable<K, N, S> stateTable,
+		Map<Integer, SpilledKeyGroup> spilledKeyGroups) {
+
+		this.tableSnapshot = Preconditions.checkNotNull(tableSnapshot);
+		this.spilledKeyGroups = Preconditions.checkNotNull(spilledKeyGroups);
+		this.usingNamespace = stateTable.isUsingNamespace();
+		this.localKeySerializer = stateTable.getKeySerializer().duplicate();
+		this.localNamespaceSerializer = stateTable.getNamespaceSerializer().duplicate();
+		this.localStateSerializer = stateTable.getStateSerializer().duplicate();
+		this.stateSnapshotTransformer = stateTable.getSnapshotTransformer();
+	}
+
+	@Override
+	public int writeMappingsInKeyGroup(DataOutputView dov, int keyGroupId) throws IOException {
+		SpilledKeyGroup spilledKeyGroup = spilledKeyGroups.get(keyGroupId);
+		if (spilledKeyGroup == null) {
+			return tableSnapshot.writeMappingsInKeyGroup(dov, keyGroupId);
+		}
+
+		// the spilled files are written in the format of snapshots
+		if (stateSnapshotTransformer == null) {
+			spilledKeyGroup.copyTo(dov);
+			return spilledKeyGroup.getNumEntries();
+		}
+
+		return writeTransformedMappings(dov, spilledKeyGroup);
+	}
+
+	private int writeTransformedMappings(DataOutputView dov, SpilledKeyGroup spilledKeyGroup) throws IOException {
+		DataInputView inView = spilledKeyGroup.openInputView();
+
+		int numEntries = inView.readInt();
+		List<Tuple3<K, N, S>> transformedMappings = new ArrayList<>(numEntries);
+		for (int i = 0; i < numEntries; ++i) {
+			K key = localKeySerializer.deserialize(inView);
+			N namespace = usingNamespace ? localNamespaceSerializer.deserialize(inView) : null;
+			S transformedState = stateSnapshotTransformer.filterOrTransform(localStateSerializer.deserialize(inView));
+			if (transformedState != null) {
+				transformedMappings.add(Tuple3.of(key, namespace, transformedState));
+			}
+		}
+
+		dov.writeInt(transformedMappings.size());
+		for (Tuple3<K, N, S> mapping : transformedMappings) {
+			localKeySerializer.serialize(mapping.f0, dov);
+			if (usingNamespace) {
+				localNamespaceSerializer.serialize(mapping.f1, dov);
+			}
+			localStateSerializer.serialize(mapping.f2, dov);
+		}
+
+		return transformedMappings.size();
+	}
+
+	@Override
+	public void release() {
+		try {
+			tableSnapshot.release();
+		} finally {
+			for (SpilledKeyGroup spilledKeyGroup : spilledKeyGroups.values()) {
+				spilledKeyGroup.release();
+			}
+		}
+	}
+}
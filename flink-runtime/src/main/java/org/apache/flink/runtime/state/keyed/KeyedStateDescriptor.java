@@ -18,6 +18,7 @@
 
 package org.apache.flink.runtime.state.keyed;
 
+import org.apache.flink.api.common.state.StateTtlConfig;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.runtime.state.InternalStateType;
 import org.apache.flink.util.Preconditions;
@@ -62,6 +63,12 @@ public abstract class KeyedStateDescriptor<K, V, S extends KeyedState<K, V>> imp
 	@Nullable
 	private String queryableStateName;
 
+	/**
+	 * The configuration of the time-to-live of the values, null if the time-to-live is disabled.
+	 */
+	@Nullable
+	private StateTtlConfig ttlConfig;
+
 	/**
 	 * Constructor for global states with given name and the serializers for
 	 * the keys and the values in the state.
@@ -151,6 +158,24 @@ public abstract class KeyedStateDescriptor<K, V, S extends KeyedState<K, V>> imp
 		return queryableStateName != null;
 	}
 
+	/**
+	 * Configures the time-to-live of the values in the state created from this descriptor.
+	 *
+	 * @param ttlConfig The configuration of the time-to-live.
+	 */
+	public void enableTimeToLive(StateTtlConfig ttlConfig) {
+		this.ttlConfig = Preconditions.checkNotNull(ttlConfig);
+	}
+
+	/**
+	 * Returns the configuration of the time-to-live of the values in the state.
+	 *
+	 * @return The configuration of the time-to-live of the values in the state.
+	 */
+	public StateTtlConfig getTtlConfig() {
+		return ttlConfig == null ? StateTtlConfig.DISABLED : ttlConfig;
+	}
+
 	//--------------------------------------------------------------------------
 
 	@Override
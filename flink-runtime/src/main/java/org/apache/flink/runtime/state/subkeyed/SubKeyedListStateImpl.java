@@ -34,7 +34,6 @@ import org.apache.flink.runtime.state.StateSerializerUtil;
 import org.apache.flink.runtime.state.StateStorage;
 import org.apache.flink.runtime.state.StorageIterator;
 import org.apache.flink.runtime.state.heap.HeapStateStorage;
-import org.apache.flink.runtime.state.heap.internal.StateTable;
 import org.apache.flink.types.Pair;
 import org.apache.flink.util.Preconditions;
 
@@ -633,9 +632,7 @@ public final class SubKeyedListStateImpl<K, N, E> implements SubKeyedListState<K
 
 		Set<K> keys = new HashSet<>();
 		if (stateStorage.lazySerde()) {
-			StateTable stateTable = ((HeapStateStorage) stateStorage).getStateTable();
-
-			keys = (Set<K>) stateTable.getKeys(namespace).collect(Collectors.toSet());
+			keys = (Set<K>) ((HeapStateStorage) stateStorage).getKeys(namespace).collect(Collectors.toSet());
 		} else {
 			try {
 				for (int group : internalStateBackend.getKeyGroupRange()) {
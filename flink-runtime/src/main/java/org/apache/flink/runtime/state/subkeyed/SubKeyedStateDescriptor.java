@@ -18,10 +18,13 @@
 
 package org.apache.flink.runtime.state.subkeyed;
 
+import org.apache.flink.api.common.state.StateTtlConfig;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.runtime.state.InternalStateType;
 import org.apache.flink.util.Preconditions;
 
+import javax.annotation.Nullable;
+
 import java.io.Serializable;
 import java.util.Objects;
 
@@ -62,6 +65,12 @@ public abstract class SubKeyedStateDescriptor<K, N, V, S extends SubKeyedState<K
 	 */
 	private final InternalStateType stateType;
 
+	/**
+	 * The configuration of the time-to-live of the values, null if the time-to-live is disabled.
+	 */
+	@Nullable
+	private StateTtlConfig ttlConfig;
+
 	/**
 	 * Constructor for global states with given name and the serializers for
 	 * the keys, the namespaces and the values in the state.
@@ -146,6 +155,24 @@ public abstract class SubKeyedStateDescriptor<K, N, V, S extends SubKeyedState<K
 
 	//--------------------------------------------------------------------------
 
+	/**
+	 * Configures the time-to-live of the values in the state created from this descriptor.
+	 *
+	 * @param ttlConfig The configuration of the time-to-live.
+	 */
+	public void enableTimeToLive(StateTtlConfig ttlConfig) {
+		this.ttlConfig = Preconditions.checkNotNull(ttlConfig);
+	}
+
+	/**
+	 * Returns the configuration of the time-to-live of the values in the state.
+	 *
+	 * @return The configuration of the time-to-live of the values in the state.
+	 */
+	public StateTtlConfig getTtlConfig() {
+		return ttlConfig == null ? StateTtlConfig.DISABLED : ttlConfig;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) {
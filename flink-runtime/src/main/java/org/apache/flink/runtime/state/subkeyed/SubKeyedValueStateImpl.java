@@ -34,7 +34,6 @@ import org.apache.flink.runtime.state.StateStorage;
 import org.apache.flink.runtime.state.StateTransformationFunction;
 import org.apache.flink.runtime.state.StorageIterator;
 import org.apache.flink.runtime.state.heap.HeapStateStorage;
-import org.apache.flink.runtime.state.heap.internal.StateTable;
 import org.apache.flink.types.Pair;
 import org.apache.flink.util.Preconditions;
 
@@ -433,9 +432,7 @@ public final class SubKeyedValueStateImpl<K, N, V> implements SubKeyedValueState
 
 		Set<K> keys = new HashSet<>();
 		if (stateStorage.lazySerde()) {
-			StateTable stateTable = ((HeapStateStorage) stateStorage).getStateTable();
-
-			keys = (Set<K>) stateTable.getKeys(namespace).collect(Collectors.toSet());
+			keys = (Set<K>) ((HeapStateStorage) stateStorage).getKeys(namespace).collect(Collectors.toSet());
 		} else {
 			try {
 				for (int group : internalStateBackend.getKeyGroupRange()) {
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.ttl;
+
+import org.apache.flink.api.common.state.StateTtlConfig;
+import org.apache.flink.runtime.state.StateAccessException;
+import org.apache.flink.util.Preconditions;
+
+import javax.annotation.Nullable;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Base class for the states with time-to-live. A state with time-to-live decorates an original
+ * state which stores the user values wrapped in {@link TtlValue}s, together with the timestamps
+ * of their last accesses.
+ *
+ * @param <S> Type of the original state.
+ */
+abstract class AbstractTtlState<S> {
+
+	/** The original state which stores the values with their timestamps. */
+	final S original;
+
+	/** The configuration of the time-to-live. */
+	final StateTtlConfig ttlConfig;
+
+	/** The provider of the timestamps of the accesses. */
+	final TtlTimeProvider timeProvider;
+
+	/** The cleanup triggered by the updates of the state. */
+	final TtlIncrementalCleanup incrementalCleanup;
+
+	/** The time-to-live in milliseconds. */
+	final long ttl;
+
+	/** Whether the timestamps are updated when the values are read. */
+	final boolean updateTsOnRead;
+
+	/** Whether the expired values are returned until they are cleaned up. */
+	final boolean returnExpired;
+
+	AbstractTtlState(
+		S original,
+		StateTtlConfig ttlConfig,
+		TtlTimeProvider timeProvider,
+		TtlIncrementalCleanup incrementalCleanup) {
+
+		Preconditions.checkArgument(ttlConfig.isEnabled(), "The time-to-live is disabled.");
+
+		this.original = Preconditions.checkNotNull(original);
+		this.ttlConfig = ttlConfig;
+		this.timeProvider = Preconditions.checkNotNull(timeProvider);
+		this.incrementalCleanup = Preconditions.checkNotNull(incrementalCleanup);
+		this.ttl = ttlConfig.getTtl().toMilliseconds();
+		this.updateTsOnRead = ttlConfig.getUpdateType() == StateTtlConfig.UpdateType.OnReadAndWrite;
+		this.returnExpired = ttlConfig.getStateVisibility() == StateTtlConfig.StateVisibility.ReturnExpiredIfNotCleanedUp;
+	}
+
+	boolean expired(@Nullable TtlValue<?> ttlValue) {
+		return TtlUtils.expired(ttlValue, ttl, timeProvider.currentTimestamp());
+	}
+
+	<V> TtlValue<V> wrapWithTs(@Nullable V userValue) {
+		return new TtlValue<>(userValue, timeProvider.currentTimestamp());
+	}
+
+	/**
+	 * Returns whether the given value is visible, i.e. it exists and it is either unexpired or
+	 * expired values are returned until they are cleaned up.
+	 */
+	boolean visible(@Nullable TtlValue<?> ttlValue) {
+		return ttlValue != null && (returnExpired || !expired(ttlValue));
+	}
+
+	/**
+	 * Returns the user value of the given value if it is visible, otherwise null.
+	 */
+	@Nullable
+	<V> V getVisibleUserValue(@Nullable TtlValue<V> ttlValue) {
+		return visible(ttlValue) ? ttlValue.getUserValue() : null;
+	}
+
+	/**
+	 * Reads a value with the given getter. Expired values are removed with the given cleaner, and
+	 * the timestamps of unexpired values are updated with the given updater if the timestamps are
+	 * updated on reads.
+	 *
+	 * @return The read value if it is visible, otherwise null.
+	 */
+	@Nullable
+	<V> TtlValue<V> getWithTtlCheckAndUpdate(
+		Supplier<TtlValue<V>> getter,
+		Consumer<TtlValue<V>> updater,
+		Runnable cleaner) {
+
+		TtlValue<V> ttlValue = getter.get();
+		if (ttlValue == null) {
+			return null;
+		}
+
+		if (expired(ttlValue)) {
+			cleaner.run();
+			return returnExpired ? ttlValue : null;
+		}
+
+		if (updateTsOnRead) {
+			ttlValue = wrapWithTs(ttlValue.getUserValue());
+			updater.accept(ttlValue);
+		}
+
+		return ttlValue;
+	}
+
+	/**
+	 * Triggers the incremental cleanup after the state was updated.
+	 */
+	void updated() {
+		try {
+			incrementalCleanup.stateAccessed();
+		} catch (Exception e) {
+			throw new StateAccessException(e);
+		}
+	}
+}
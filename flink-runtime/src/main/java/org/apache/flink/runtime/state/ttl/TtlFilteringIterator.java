@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.ttl;
+
+import org.apache.flink.util.Preconditions;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * An iterator over the elements of an original iterator which pass the given filter, converted
+ * with the given function. The filter does not modify the iterated state, so that expired values
+ * are skipped but not removed during the iteration.
+ *
+ * @param <T> Type of the elements of the original iterator.
+ * @param <R> Type of the returned elements.
+ */
+class TtlFilteringIterator<T, R> implements Iterator<R> {
+
+	private final Iterator<T> iterator;
+
+	private final Predicate<T> filter;
+
+	private final Function<T, R> converter;
+
+	private T nextElement;
+
+	TtlFilteringIterator(Iterator<T> iterator, Predicate<T> filter, Function<T, R> converter) {
+		this.iterator = Preconditions.checkNotNull(iterator);
+		this.filter = Preconditions.checkNotNull(filter);
+		this.converter = Preconditions.checkNotNull(converter);
+		this.nextElement = null;
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (nextElement == null && iterator.hasNext()) {
+			T element = iterator.next();
+			if (filter.test(element)) {
+				nextElement = element;
+			}
+		}
+
+		return nextElement != null;
+	}
+
+	@Override
+	public R next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		T element = nextElement;
+		nextElement = null;
+		return converter.apply(element);
+	}
+
+	@Override
+	public void remove() {
+		Preconditions.checkState(nextElement == null, "The iterator has already moved to the next element.");
+		iterator.remove();
+	}
+}
@@ -0,0 +1,34 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.ttl;
+
+/**
+ * Removes the expired values of a state in small steps, which are triggered by the accesses to the state.
+ */
+@FunctionalInterface
+public interface TtlIncrementalCleanup {
+
+	/** The cleanup of the states which are not cleaned up incrementally. */
+	TtlIncrementalCleanup NONE = () -> {};
+
+	/**
+	 * Checks the next entries of the state for expiration and removes the expired ones.
+	 */
+	void stateAccessed() throws Exception;
+}
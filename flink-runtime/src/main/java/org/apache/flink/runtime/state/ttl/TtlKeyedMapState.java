@@ -0,0 +1,354 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.ttl;
+
+import org.apache.flink.api.common.state.StateTtlConfig;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.StateStorage;
+import org.apache.flink.runtime.state.keyed.KeyedMapState;
+import org.apache.flink.runtime.state.keyed.KeyedMapStateDescriptor;
+import org.apache.flink.util.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link KeyedMapState} with time-to-live, which stores the mapping values with the timestamps
+ * of their last accesses in an original {@link KeyedMapState}. Each mapping expires separately.
+ *
+ * @param <K> Type of the keys in the state.
+ * @param <MK> Type of the map keys in the state.
+ * @param <MV> Type of the map values in the state.
+ */
+class TtlKeyedMapState<K, MK, MV>
+	extends AbstractTtlState<KeyedMapState<K, MK, TtlValue<MV>>>
+	implements KeyedMapState<K, MK, MV> {
+
+	/** The descriptor of this state. */
+	private final KeyedMapStateDescriptor<K, MK, MV> descriptor;
+
+	TtlKeyedMapState(
+		KeyedMapStateDescriptor<K, MK, MV> descriptor,
+		KeyedMapState<K, MK, TtlValue<MV>> original,
+		StateTtlConfig ttlConfig,
+		TtlTimeProvider timeProvider,
+		TtlIncrementalCleanup incrementalCleanup) {
+
+		super(original, ttlConfig, timeProvider, incrementalCleanup);
+		this.descriptor = Preconditions.checkNotNull(descriptor);
+	}
+
+	@Override
+	public KeyedMapStateDescriptor<K, MK, MV> getDescriptor() {
+		return descriptor;
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override
+	public boolean contains(K key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public boolean contains(K key, MK mapKey) {
+		return getTtlValue(key, mapKey) != null;
+	}
+
+	@Override
+	public Map<MK, MV> get(K key) {
+		return getOrDefault(key, null);
+	}
+
+	@Override
+	public Map<MK, MV> getOrDefault(K key, Map<MK, MV> defaultValue) {
+		if (key == null) {
+			return defaultValue;
+		}
+
+		Map<MK, MV> results = getVisibleMappings(key, original.get(key));
+		return results == null ? defaultValue : results;
+	}
+
+	@Override
+	public MV get(K key, MK mapKey) {
+		return getOrDefault(key, mapKey, null);
+	}
+
+	@Override
+	public MV getOrDefault(K key, MK mapKey, MV defaultMapValue) {
+		TtlValue<MV> ttlValue = getTtlValue(key, mapKey);
+		return ttlValue == null ? defaultMapValue : ttlValue.getUserValue();
+	}
+
+	@Override
+	public Map<K, Map<MK, MV>> getAll(Collection<? extends K> keys) {
+		Map<K, Map<MK, MV>> results = new HashMap<>();
+		if (keys == null) {
+			return results;
+		}
+
+		for (K key : keys) {
+			Map<MK, MV> mappings = get(key);
+			if (mappings != null) {
+				results.put(key, mappings);
+			}
+		}
+
+		return results;
+	}
+
+	@Override
+	public Map<MK, MV> getAll(K key, Collection<? extends MK> mapKeys) {
+		Map<MK, MV> results = new HashMap<>();
+		if (key == null || mapKeys == null) {
+			return results;
+		}
+
+		for (MK mapKey : mapKeys) {
+			TtlValue<MV> ttlValue = getTtlValue(key, mapKey);
+			if (ttlValue != null) {
+				results.put(mapKey, ttlValue.getUserValue());
+			}
+		}
+
+		return results;
+	}
+
+	@Override
+	public Map<K, Map<MK, MV>> getAll(Map<K, ? extends Collection<? extends MK>> mapKeys) {
+		Map<K, Map<MK, MV>> results = new HashMap<>();
+		if (mapKeys == null) {
+			return results;
+		}
+
+		for (Map.Entry<K, ? extends Collection<? extends MK>> entry : mapKeys.entrySet()) {
+			Map<MK, MV> mappings = getAll(entry.getKey(), entry.getValue());
+			if (!mappings.isEmpty()) {
+				results.put(entry.getKey(), mappings);
+			}
+		}
+
+		return results;
+	}
+
+	@Override
+	public Map<K, Map<MK, MV>> getAll() {
+		Map<K, Map<MK, MV>> results = new HashMap<>();
+
+		for (Map.Entry<K, Map<MK, TtlValue<MV>>> entry : original.getAll().entrySet()) {
+			Map<MK, MV> mappings = getVisibleMappings(entry.getKey(), entry.getValue());
+			if (mappings != null) {
+				results.put(entry.getKey(), mappings);
+			}
+		}
+
+		return results;
+	}
+
+	@Override
+	public void add(K key, MK mapKey, MV mapValue) {
+		original.add(key, mapKey, wrapWithTs(mapValue));
+		updated();
+	}
+
+	@Override
+	public void addAll(K key, Map<? extends MK, ? extends MV> mappings) {
+		if (mappings == null || mappings.isEmpty()) {
+			return;
+		}
+
+		original.addAll(key, wrapMappingsWithTs(mappings));
+		updated();
+	}
+
+	@Override
+	public void addAll(Map<? extends K, ? extends Map<? extends MK, ? extends MV>> mappings) {
+		if (mappings == null || mappings.isEmpty()) {
+			return;
+		}
+
+		Map<K, Map<MK, TtlValue<MV>>> ttlMappings = new HashMap<>(mappings.size());
+		for (Map.Entry<? extends K, ? extends Map<? extends MK, ? extends MV>> entry : mappings.entrySet()) {
+			ttlMappings.put(entry.getKey(), wrapMappingsWithTs(entry.getValue()));
+		}
+
+		original.addAll(ttlMappings);
+		updated();
+	}
+
+	@Override
+	public void remove(K key) {
+		original.remove(key);
+		updated();
+	}
+
+	@Override
+	public void remove(K key, MK mapKey) {
+		original.remove(key, mapKey);
+		updated();
+	}
+
+	@Override
+	public void removeAll(Collection<? extends K> keys) {
+		original.removeAll(keys);
+		updated();
+	}
+
+	@Override
+	public void removeAll(K key, Collection<? extends MK> mapKeys) {
+		original.removeAll(key, mapKeys);
+		updated();
+	}
+
+	@Override
+	public void removeAll(Map<? extends K, ? extends Collection<? extends MK>> mapKeys) {
+		original.removeAll(mapKeys);
+		updated();
+	}
+
+	@Override
+	public void removeAll() {
+		original.removeAll();
+	}
+
+	@Override
+	public Iterable<K> keys() {
+		return () -> new TtlFilteringIterator<>(
+			original.keys().iterator(),
+			this::hasVisibleMappings,
+			key -> key);
+	}
+
+	@Override
+	public Iterator<Map.Entry<MK, MV>> iterator(K key) {
+		return new TtlFilteringIterator<>(
+			original.iterator(key),
+			entry -> visible(entry.getValue()),
+			entry -> new TtlMapEntry<>(entry, timeProvider));
+	}
+
+	@Override
+	public Iterable<Map.Entry<MK, MV>> entries(K key) {
+		return () -> iterator(key);
+	}
+
+	@Override
+	public Iterable<MK> mapKeys(K key) {
+		return () -> new TtlFilteringIterator<>(
+			original.iterator(key),
+			entry -> visible(entry.getValue()),
+			Map.Entry::getKey);
+	}
+
+	@Override
+	public Iterable<MV> mapValues(K key) {
+		return () -> new TtlFilteringIterator<>(
+			original.iterator(key),
+			entry -> visible(entry.getValue()),
+			entry -> entry.getValue().getUserValue());
+	}
+
+	@Override
+	public byte[] getSerializedValue(
+		byte[] serializedKeyAndNamespace,
+		TypeSerializer<K> safeKeySerializer,
+		TypeSerializer<Map<MK, MV>> safeValueSerializer) {
+		throw new UnsupportedOperationException("Queryable state is not supported with TTL.");
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public StateStorage<K, Map<MK, MV>> getStateStorage() {
+		return (StateStorage) original.getStateStorage();
+	}
+
+	//--------------------------------------------------------------------------
+
+	private TtlValue<MV> getTtlValue(K key, MK mapKey) {
+		if (key == null) {
+			return null;
+		}
+
+		return getWithTtlCheckAndUpdate(
+			() -> original.get(key, mapKey),
+			ttlValue -> original.add(key, mapKey, ttlValue),
+			() -> original.remove(key, mapKey));
+	}
+
+	/**
+	 * Returns the visible mappings of the given stored mappings, or null if there are none. The
+	 * expired mappings are removed, and the timestamps of the others are updated if the timestamps
+	 * are updated on reads.
+	 */
+	private Map<MK, MV> getVisibleMappings(K key, Map<MK, TtlValue<MV>> ttlMappings) {
+		if (ttlMappings == null || ttlMappings.isEmpty()) {
+			return null;
+		}
+
+		Map<MK, MV> results = new HashMap<>(ttlMappings.size());
+		List<MK> expiredMapKeys = new ArrayList<>();
+		Map<MK, TtlValue<MV>> updatedMappings = updateTsOnRead ? new HashMap<>(ttlMappings.size()) : null;
+
+		for (Map.Entry<MK, TtlValue<MV>> entry : ttlMappings.entrySet()) {
+			TtlValue<MV> ttlValue = entry.getValue();
+			if (expired(ttlValue)) {
+				expiredMapKeys.add(entry.getKey());
+			} else if (updatedMappings != null) {
+				updatedMappings.put(entry.getKey(), wrapWithTs(ttlValue.getUserValue()));
+			}
+
+			if (visible(ttlValue)) {
+				results.put(entry.getKey(), ttlValue.getUserValue());
+			}
+		}
+
+		if (!expiredMapKeys.isEmpty()) {
+			original.removeAll(key, expiredMapKeys);
+		}
+		if (updatedMappings != null && !updatedMappings.isEmpty()) {
+			original.addAll(key, updatedMappings);
+		}
+
+		return results.isEmpty() ? null : results;
+	}
+
+	private boolean hasVisibleMappings(K key) {
+		Iterator<Map.Entry<MK, TtlValue<MV>>> iterator = original.iterator(key);
+		while (iterator.hasNext()) {
+			if (visible(iterator.next().getValue())) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private Map<MK, TtlValue<MV>> wrapMappingsWithTs(Map<? extends MK, ? extends MV> mappings) {
+		Map<MK, TtlValue<MV>> ttlMappings = new HashMap<>(mappings.size());
+		for (Map.Entry<? extends MK, ? extends MV> mapping : mappings.entrySet()) {
+			ttlMappings.put(mapping.getKey(), wrapWithTs(mapping.getValue()));
+		}
+		return ttlMappings;
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.ttl;
+
+import org.apache.flink.api.common.state.StateTtlConfig;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.StateStorage;
+import org.apache.flink.runtime.state.StateTransformationFunction;
+import org.apache.flink.runtime.state.keyed.KeyedValueState;
+import org.apache.flink.runtime.state.keyed.KeyedValueStateDescriptor;
+import org.apache.flink.util.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link KeyedValueState} with time-to-live, which stores the values with the timestamps of
+ * their last accesses in an original {@link KeyedValueState}.
+ *
+ * @param <K> Type of the keys in the state.
+ * @param <V> Type of the values in the state.
+ */
+class TtlKeyedValueState<K, V>
+	extends AbstractTtlState<KeyedValueState<K, TtlValue<V>>>
+	implements KeyedValueState<K, V> {
+
+	/** The descriptor of this state. */
+	private final KeyedValueStateDescriptor<K, V> descriptor;
+
+	TtlKeyedValueState(
+		KeyedValueStateDescriptor<K, V> descriptor,
+		KeyedValueState<K, TtlValue<V>> original,
+		StateTtlConfig ttlConfig,
+		TtlTimeProvider timeProvider,
+		TtlIncrementalCleanup incrementalCleanup) {
+
+		super(original, ttlConfig, timeProvider, incrementalCleanup);
+		this.descriptor = Preconditions.checkNotNull(descriptor);
+	}
+
+	@Override
+	public KeyedValueStateDescriptor<K, V> getDescriptor() {
+		return descriptor;
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override
+	public boolean contains(K key) {
+		return getTtlValue(key) != null;
+	}
+
+	@Override
+	public V get(K key) {
+		return getOrDefault(key, null);
+	}
+
+	@Override
+	public V getOrDefault(K key, V defaultValue) {
+		TtlValue<V> ttlValue = getTtlValue(key);
+		return ttlValue == null ? defaultValue : ttlValue.getUserValue();
+	}
+
+	@Override
+	public Map<K, V> getAll(Collection<? extends K> keys) {
+		Map<K, V> results = new HashMap<>();
+		if (keys == null) {
+			return results;
+		}
+
+		for (K key : keys) {
+			TtlValue<V> ttlValue = getTtlValue(key);
+			if (ttlValue != null) {
+				results.put(key, ttlValue.getUserValue());
+			}
+		}
+
+		return results;
+	}
+
+	@Override
+	public Map<K, V> getAll() {
+		Map<K, V> results = new HashMap<>();
+		List<K> expiredKeys = new ArrayList<>();
+
+		for (Map.Entry<K, TtlValue<V>> entry : original.getAll().entrySet()) {
+			TtlValue<V> ttlValue = entry.getValue();
+			if (expired(ttlValue)) {
+				expiredKeys.add(entry.getKey());
+			}
+			if (visible(ttlValue)) {
+				results.put(entry.getKey(), ttlValue.getUserValue());
+			}
+		}
+
+		original.removeAll(expiredKeys);
+		return results;
+	}
+
+	@Override
+	public void remove(K key) {
+		original.remove(key);
+		updated();
+	}
+
+	@Override
+	public void removeAll(Collection<? extends K> keys) {
+		original.removeAll(keys);
+		updated();
+	}
+
+	@Override
+	public void removeAll() {
+		original.removeAll();
+	}
+
+	@Override
+	public Iterable<K> keys() {
+		return () -> new TtlFilteringIterator<>(
+			original.keys().iterator(),
+			key -> returnExpired || visible(original.get(key)),
+			key -> key);
+	}
+
+	@Override
+	public void put(K key, V value) {
+		if (value == null) {
+			original.remove(key);
+		} else {
+			original.put(key, wrapWithTs(value));
+		}
+		updated();
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> pairs) {
+		if (pairs == null || pairs.isEmpty()) {
+			return;
+		}
+
+		Map<K, TtlValue<V>> ttlPairs = new HashMap<>(pairs.size());
+		for (Map.Entry<? extends K, ? extends V> pair : pairs.entrySet()) {
+			if (pair.getValue() == null) {
+				original.remove(pair.getKey());
+			} else {
+				ttlPairs.put(pair.getKey(), wrapWithTs(pair.getValue()));
+			}
+		}
+
+		original.putAll(ttlPairs);
+		updated();
+	}
+
+	@Override
+	public <T> void transform(K key, T value, StateTransformationFunction<V, T> transformation) {
+		original.transform(key, value, (previousTtlValue, v) ->
+			wrapWithTs(transformation.apply(getVisibleUserValue(previousTtlValue), v)));
+		updated();
+	}
+
+	@Override
+	public byte[] getSerializedValue(
+		byte[] serializedKeyAndNamespace,
+		TypeSerializer<K> safeKeySerializer,
+		TypeSerializer<V> safeValueSerializer) {
+		throw new UnsupportedOperationException("Queryable state is not supported with TTL.");
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public StateStorage<K, V> getStateStorage() {
+		return (StateStorage) original.getStateStorage();
+	}
+
+	//--------------------------------------------------------------------------
+
+	private TtlValue<V> getTtlValue(K key) {
+		if (key == null) {
+			return null;
+		}
+
+		return getWithTtlCheckAndUpdate(
+			() -> original.get(key),
+			ttlValue -> original.put(key, ttlValue),
+			() -> original.remove(key));
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.ttl;
+
+import org.apache.flink.util.Preconditions;
+
+import java.util.Map;
+
+/**
+ * A mapping of an original map state exposed with its user value. Setting the value of the
+ * mapping updates the original mapping with a new timestamp.
+ *
+ * @param <MK> Type of the map keys.
+ * @param <MV> Type of the map values.
+ */
+class TtlMapEntry<MK, MV> implements Map.Entry<MK, MV> {
+
+	private final Map.Entry<MK, TtlValue<MV>> originalEntry;
+
+	private final TtlTimeProvider timeProvider;
+
+	TtlMapEntry(Map.Entry<MK, TtlValue<MV>> originalEntry, TtlTimeProvider timeProvider) {
+		this.originalEntry = Preconditions.checkNotNull(originalEntry);
+		this.timeProvider = Preconditions.checkNotNull(timeProvider);
+	}
+
+	@Override
+	public MK getKey() {
+		return originalEntry.getKey();
+	}
+
+	@Override
+	public MV getValue() {
+		return originalEntry.getValue().getUserValue();
+	}
+
+	@Override
+	public MV setValue(MV value) {
+		TtlValue<MV> previousTtlValue = originalEntry.setValue(new TtlValue<>(value, timeProvider.currentTimestamp()));
+		return previousTtlValue == null ? null : previousTtlValue.getUserValue();
+	}
+}
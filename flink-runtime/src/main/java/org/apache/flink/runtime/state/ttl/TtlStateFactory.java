@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.ttl;
+
+import org.apache.flink.api.common.state.StateTtlConfig;
+import org.apache.flink.api.common.typeutils.base.MapSerializer;
+import org.apache.flink.runtime.state.StateSnapshotTransformer;
+import org.apache.flink.runtime.state.keyed.KeyedMapState;
+import org.apache.flink.runtime.state.keyed.KeyedMapStateDescriptor;
+import org.apache.flink.runtime.state.keyed.KeyedValueState;
+import org.apache.flink.runtime.state.keyed.KeyedValueStateDescriptor;
+import org.apache.flink.runtime.state.subkeyed.SubKeyedMapState;
+import org.apache.flink.runtime.state.subkeyed.SubKeyedMapStateDescriptor;
+import org.apache.flink.runtime.state.subkeyed.SubKeyedValueState;
+import org.apache.flink.runtime.state.subkeyed.SubKeyedValueStateDescriptor;
+
+import java.util.Map;
+
+/**
+ * Factory of the states with time-to-live. A state with time-to-live decorates an original state
+ * with the same name whose values are wrapped in {@link TtlValue}s. The original states are
+ * created by the state backends with the descriptors returned by this factory, and are wrapped
+ * afterwards.
+ *
+ * <p>Only value and map states support time-to-live.
+ */
+public final class TtlStateFactory {
+
+	private TtlStateFactory() {
+		throw new AssertionError();
+	}
+
+	//--------------------------------------------------------------------------
+
+	public static <K, V> KeyedValueStateDescriptor<K, TtlValue<V>> createOriginalDescriptor(
+		KeyedValueStateDescriptor<K, V> descriptor) {
+
+		return new KeyedValueStateDescriptor<>(
+			descriptor.getName(),
+			descriptor.getKeySerializer(),
+			new TtlValueSerializer<>(descriptor.getValueSerializer()));
+	}
+
+	public static <K, MK, MV> KeyedMapStateDescriptor<K, MK, TtlValue<MV>> createOriginalDescriptor(
+		KeyedMapStateDescriptor<K, MK, MV> descriptor) {
+
+		return new KeyedMapStateDescriptor<>(
+			descriptor.getName(),
+			descriptor.getKeySerializer(),
+			new MapSerializer<>(
+				descriptor.getMapKeySerializer(),
+				new TtlValueSerializer<>(descriptor.getMapValueSerializer())));
+	}
+
+	public static <K, N, V> SubKeyedValueStateDescriptor<K, N, TtlValue<V>> createOriginalDescriptor(
+		SubKeyedValueStateDescriptor<K, N, V> descriptor) {
+
+		return new SubKeyedValueStateDescriptor<>(
+			descriptor.getName(),
+			descriptor.getKeySerializer(),
+			descriptor.getNamespaceSerializer(),
+			new TtlValueSerializer<>(descriptor.getValueSerializer()));
+	}
+
+	public static <K, N, MK, MV> SubKeyedMapStateDescriptor<K, N, MK, TtlValue<MV>> createOriginalDescriptor(
+		SubKeyedMapStateDescriptor<K, N, MK, MV> descriptor) {
+
+		return new SubKeyedMapStateDescriptor<>(
+			descriptor.getName(),
+			descriptor.getKeySerializer(),
+			descriptor.getNamespaceSerializer(),
+			new MapSerializer<>(
+				descriptor.getMapKeySerializer(),
+				new TtlValueSerializer<>(descriptor.getMapValueSerializer())));
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * Creates the transformer which filters out the expired values of an original value state.
+	 */
+	public static <V> StateSnapshotTransformer<TtlValue<V>> createValueSnapshotTransformer(
+		StateTtlConfig ttlConfig,
+		TtlTimeProvider timeProvider) {
+
+		return new TtlStateSnapshotTransformer.TtlValueSnapshotTransformer<>(
+			timeProvider, ttlConfig.getTtl().toMilliseconds());
+	}
+
+	/**
+	 * Creates the transformer which filters out the expired mappings of an original map state.
+	 */
+	public static <MK, MV> StateSnapshotTransformer<Map<MK, TtlValue<MV>>> createMapSnapshotTransformer(
+		StateTtlConfig ttlConfig,
+		TtlTimeProvider timeProvider) {
+
+		return new TtlStateSnapshotTransformer.TtlMapSnapshotTransformer<>(
+			timeProvider, ttlConfig.getTtl().toMilliseconds());
+	}
+
+	//--------------------------------------------------------------------------
+
+	public static <K, V> KeyedValueState<K, V> createKeyedValueState(
+		KeyedValueStateDescriptor<K, V> descriptor,
+		KeyedValueState<K, TtlValue<V>> original,
+		TtlTimeProvider timeProvider,
+		TtlIncrementalCleanup incrementalCleanup) {
+
+		return new TtlKeyedValueState<>(
+			descriptor, original, descriptor.getTtlConfig(), timeProvider, incrementalCleanup);
+	}
+
+	public static <K, MK, MV> KeyedMapState<K, MK, MV> createKeyedMapState(
+		KeyedMapStateDescriptor<K, MK, MV> descriptor,
+		KeyedMapState<K, MK, TtlValue<MV>> original,
+		TtlTimeProvider timeProvider,
+		TtlIncrementalCleanup incrementalCleanup) {
+
+		return new TtlKeyedMapState<>(
+			descriptor, original, descriptor.getTtlConfig(), timeProvider, incrementalCleanup);
+	}
+
+	public static <K, N, V> SubKeyedValueState<K, N, V> createSubKeyedValueState(
+		SubKeyedValueStateDescriptor<K, N, V> descriptor,
+		SubKeyedValueState<K, N, TtlValue<V>> original,
+		TtlTimeProvider timeProvider,
+		TtlIncrementalCleanup incrementalCleanup) {
+
+		return new TtlSubKeyedValueState<>(
+			descriptor, original, descriptor.getTtlConfig(), timeProvider, incrementalCleanup);
+	}
+
+	public static <K, N, MK, MV> SubKeyedMapState<K, N, MK, MV> createSubKeyedMapState(
+		SubKeyedMapStateDescriptor<K, N, MK, MV> descriptor,
+		SubKeyedMapState<K, N, MK, TtlValue<MV>> original,
+		TtlTimeProvider timeProvider,
+		TtlIncrementalCleanup incrementalCleanup) {
+
+		return new TtlSubKeyedMapState<>(
+			descriptor, original, descriptor.getTtlConfig(), timeProvider, incrementalCleanup);
+	}
+}
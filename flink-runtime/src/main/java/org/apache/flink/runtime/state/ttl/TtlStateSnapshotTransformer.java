@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.ttl;
+
+import org.apache.flink.runtime.state.StateSnapshotTransformer;
+import org.apache.flink.util.Preconditions;
+
+import javax.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Base class for the transformers which filter out the expired values of states with time-to-live.
+ *
+ * @param <T> Type of the states.
+ */
+abstract class TtlStateSnapshotTransformer<T> implements StateSnapshotTransformer<T> {
+
+	private final TtlTimeProvider timeProvider;
+
+	private final long ttl;
+
+	TtlStateSnapshotTransformer(TtlTimeProvider timeProvider, long ttl) {
+		this.timeProvider = Preconditions.checkNotNull(timeProvider);
+		this.ttl = ttl;
+	}
+
+	boolean expired(@Nullable TtlValue<?> ttlValue, long currentTimestamp) {
+		return TtlUtils.expired(ttlValue, ttl, currentTimestamp);
+	}
+
+	long currentTimestamp() {
+		return timeProvider.currentTimestamp();
+	}
+
+	/**
+	 * Filters out the expired values of value states.
+	 */
+	static class TtlValueSnapshotTransformer<V> extends TtlStateSnapshotTransformer<TtlValue<V>> {
+
+		TtlValueSnapshotTransformer(TtlTimeProvider timeProvider, long ttl) {
+			super(timeProvider, ttl);
+		}
+
+		@Nullable
+		@Override
+		public TtlValue<V> filterOrTransform(@Nullable TtlValue<V> value) {
+			return value == null || expired(value, currentTimestamp()) ? null : value;
+		}
+	}
+
+	/**
+	 * Filters out the expired mappings of map states, and the maps without unexpired mappings.
+	 */
+	static class TtlMapSnapshotTransformer<MK, MV> extends TtlStateSnapshotTransformer<Map<MK, TtlValue<MV>>> {
+
+		TtlMapSnapshotTransformer(TtlTimeProvider timeProvider, long ttl) {
+			super(timeProvider, ttl);
+		}
+
+		@Nullable
+		@Override
+		public Map<MK, TtlValue<MV>> filterOrTransform(@Nullable Map<MK, TtlValue<MV>> map) {
+			if (map == null) {
+				return null;
+			}
+
+			long currentTimestamp = currentTimestamp();
+
+			// the given map must not be modified, it is only copied if any mapping is expired
+			Map<MK, TtlValue<MV>> transformedMap = null;
+			for (Map.Entry<MK, TtlValue<MV>> entry : map.entrySet()) {
+				if (expired(entry.getValue(), currentTimestamp)) {
+					if (transformedMap == null) {
+						transformedMap = new HashMap<>(map);
+					}
+					transformedMap.remove(entry.getKey());
+				}
+			}
+
+			if (transformedMap == null) {
+				return map.isEmpty() ? null : map;
+			} else {
+				return transformedMap.isEmpty() ? null : transformedMap;
+			}
+		}
+	}
+}
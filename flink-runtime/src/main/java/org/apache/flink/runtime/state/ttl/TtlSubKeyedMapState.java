@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.ttl;
+
+import org.apache.flink.api.common.state.StateTtlConfig;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.StateStorage;
+import org.apache.flink.runtime.state.subkeyed.SubKeyedMapState;
+import org.apache.flink.runtime.state.subkeyed.SubKeyedMapStateDescriptor;
+import org.apache.flink.util.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link SubKeyedMapState} with time-to-live, which stores the mapping values with the
+ * timestamps of their last accesses in an original {@link SubKeyedMapState}. Each mapping
+ * expires separately.
+ *
+ * @param <K> Type of the keys in the state.
+ * @param <N> Type of the namespaces in the state.
+ * @param <MK> Type of the map keys in the state.
+ * @param <MV> Type of the map values in the state.
+ */
+class TtlSubKeyedMapState<K, N, MK, MV>
+	extends AbstractTtlState<SubKeyedMapState<K, N, MK, TtlValue<MV>>>
+	implements SubKeyedMapState<K, N, MK, MV> {
+
+	/** The descriptor of this state. */
+	private final SubKeyedMapStateDescriptor<K, N, MK, MV> descriptor;
+
+	TtlSubKeyedMapState(
+		SubKeyedMapStateDescriptor<K, N, MK, MV> descriptor,
+		SubKeyedMapState<K, N, MK, TtlValue<MV>> original,
+		StateTtlConfig ttlConfig,
+		TtlTimeProvider timeProvider,
+		TtlIncrementalCleanup incrementalCleanup) {
+
+		super(original, ttlConfig, timeProvider, incrementalCleanup);
+		this.descriptor = Preconditions.checkNotNull(descriptor);
+	}
+
+	@Override
+	public SubKeyedMapStateDescriptor<K, N, MK, MV> getDescriptor() {
+		return descriptor;
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override
+	public boolean contains(K key, N namespace) {
+		return get(key, namespace) != null;
+	}
+
+	@Override
+	public boolean contains(K key, N namespace, MK mapKey) {
+		return getTtlValue(key, namespace, mapKey) != null;
+	}
+
+	@Override
+	public Map<MK, MV> get(K key, N namespace) {
+		return getOrDefault(key, namespace, null);
+	}
+
+	@Override
+	public Map<MK, MV> getOrDefault(K key, N namespace, Map<MK, MV> defaultValue) {
+		if (key == null || namespace == null) {
+			return defaultValue;
+		}
+
+		Map<MK, MV> results = getVisibleMappings(key, namespace, original.get(key, namespace));
+		return results == null ? defaultValue : results;
+	}
+
+	@Override
+	public MV get(K key, N namespace, MK mapKey) {
+		return getOrDefault(key, namespace, mapKey, null);
+	}
+
+	@Override
+	public MV getOrDefault(K key, N namespace, MK mapKey, MV defaultMapValue) {
+		TtlValue<MV> ttlValue = getTtlValue(key, namespace, mapKey);
+		return ttlValue == null ? defaultMapValue : ttlValue.getUserValue();
+	}
+
+	@Override
+	public Map<N, Map<MK, MV>> getAll(K key) {
+		Map<N, Map<MK, MV>> results = new HashMap<>();
+		if (key == null) {
+			return results;
+		}
+
+		for (Map.Entry<N, Map<MK, TtlValue<MV>>> entry : original.getAll(key).entrySet()) {
+			Map<MK, MV> mappings = getVisibleMappings(key, entry.getKey(), entry.getValue());
+			if (mappings != null) {
+				results.put(entry.getKey(), mappings);
+			}
+		}
+
+		return results;
+	}
+
+	@Override
+	public Map<MK, MV> getAll(K key, N namespace, Collection<? extends MK> mapKeys) {
+		Map<MK, MV> results = new HashMap<>();
+		if (key == null || namespace == null || mapKeys == null) {
+			return results;
+		}
+
+		for (MK mapKey : mapKeys) {
+			TtlValue<MV> ttlValue = getTtlValue(key, namespace, mapKey);
+			if (ttlValue != null) {
+				results.put(mapKey, ttlValue.getUserValue());
+			}
+		}
+
+		return results;
+	}
+
+	@Override
+	public void add(K key, N namespace, MK mapKey, MV mapValue) {
+		original.add(key, namespace, mapKey, wrapWithTs(mapValue));
+		updated();
+	}
+
+	@Override
+	public void addAll(K key, N namespace, Map<? extends MK, ? extends MV> mappings) {
+		if (mappings == null || mappings.isEmpty()) {
+			return;
+		}
+
+		Map<MK, TtlValue<MV>> ttlMappings = new HashMap<>(mappings.size());
+		for (Map.Entry<? extends MK, ? extends MV> mapping : mappings.entrySet()) {
+			ttlMappings.put(mapping.getKey(), wrapWithTs(mapping.getValue()));
+		}
+
+		original.addAll(key, namespace, ttlMappings);
+		updated();
+	}
+
+	@Override
+	public void remove(K key, N namespace) {
+		original.remove(key, namespace);
+		updated();
+	}
+
+	@Override
+	public void remove(K key, N namespace, MK mapKey) {
+		original.remove(key, namespace, mapKey);
+		updated();
+	}
+
+	@Override
+	public void removeAll(K key) {
+		original.removeAll(key);
+		updated();
+	}
+
+	@Override
+	public void removeAll(K key, N namespace, Collection<? extends MK> mapKeys) {
+		original.removeAll(key, namespace, mapKeys);
+		updated();
+	}
+
+	@Override
+	public Iterator<N> iterator(K key) {
+		return new TtlFilteringIterator<>(
+			original.iterator(key),
+			namespace -> hasVisibleMappings(key, namespace),
+			namespace -> namespace);
+	}
+
+	@Override
+	public Iterable<K> keys(N namespace) {
+		return () -> new TtlFilteringIterator<>(
+			original.keys(namespace).iterator(),
+			key -> hasVisibleMappings(key, namespace),
+			key -> key);
+	}
+
+	@Override
+	public Iterator<Map.Entry<MK, MV>> iterator(K key, N namespace) {
+		return new TtlFilteringIterator<>(
+			original.iterator(key, namespace),
+			entry -> visible(entry.getValue()),
+			entry -> new TtlMapEntry<>(entry, timeProvider));
+	}
+
+	@Override
+	public Iterable<Map.Entry<MK, MV>> entries(K key, N namespace) {
+		return () -> iterator(key, namespace);
+	}
+
+	@Override
+	public Iterable<MK> keys(K key, N namespace) {
+		return () -> new TtlFilteringIterator<>(
+			original.iterator(key, namespace),
+			entry -> visible(entry.getValue()),
+			Map.Entry::getKey);
+	}
+
+	@Override
+	public Iterable<MV> values(K key, N namespace) {
+		return () -> new TtlFilteringIterator<>(
+			original.iterator(key, namespace),
+			entry -> visible(entry.getValue()),
+			entry -> entry.getValue().getUserValue());
+	}
+
+	@Override
+	public byte[] getSerializedValue(
+		byte[] serializedKeyAndNamespace,
+		TypeSerializer<K> safeKeySerializer,
+		TypeSerializer<N> safeNamespaceSerializer,
+		TypeSerializer<Map<MK, MV>> safeValueSerializer) {
+		throw new UnsupportedOperationException("Queryable state is not supported with TTL.");
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public StateStorage<K, Map<MK, MV>> getStateStorage() {
+		return (StateStorage) original.getStateStorage();
+	}
+
+	//--------------------------------------------------------------------------
+
+	private TtlValue<MV> getTtlValue(K key, N namespace, MK mapKey) {
+		if (key == null || namespace == null) {
+			return null;
+		}
+
+		return getWithTtlCheckAndUpdate(
+			() -> original.get(key, namespace, mapKey),
+			ttlValue -> original.add(key, namespace, mapKey, ttlValue),
+			() -> original.remove(key, namespace, mapKey));
+	}
+
+	/**
+	 * Returns the visible mappings of the given stored mappings, or null if there are none. The
+	 * expired mappings are removed, and the timestamps of the others are updated if the timestamps
+	 * are updated on reads.
+	 */
+	private Map<MK, MV> getVisibleMappings(K key, N namespace, Map<MK, TtlValue<MV>> ttlMappings) {
+		if (ttlMappings == null || ttlMappings.isEmpty()) {
+			return null;
+		}
+
+		Map<MK, MV> results = new HashMap<>(ttlMappings.size());
+		List<MK> expiredMapKeys = new ArrayList<>();
+		Map<MK, TtlValue<MV>> updatedMappings = updateTsOnRead ? new HashMap<>(ttlMappings.size()) : null;
+
+		for (Map.Entry<MK, TtlValue<MV>> entry : ttlMappings.entrySet()) {
+			TtlValue<MV> ttlValue = entry.getValue();
+			if (expired(ttlValue)) {
+				expiredMapKeys.add(entry.getKey());
+			} else if (updatedMappings != null) {
+				updatedMappings.put(entry.getKey(), wrapWithTs(ttlValue.getUserValue()));
+			}
+
+			if (visible(ttlValue)) {
+				results.put(entry.getKey(), ttlValue.getUserValue());
+			}
+		}
+
+		if (!expiredMapKeys.isEmpty()) {
+			original.removeAll(key, namespace, expiredMapKeys);
+		}
+		if (updatedMappings != null && !updatedMappings.isEmpty()) {
+			original.addAll(key, namespace, updatedMappings);
+		}
+
+		return results.isEmpty() ? null : results;
+	}
+
+	private boolean hasVisibleMappings(K key, N namespace) {
+		Iterator<Map.Entry<MK, TtlValue<MV>>> iterator = original.iterator(key, namespace);
+		while (iterator.hasNext()) {
+			if (visible(iterator.next().getValue())) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+}
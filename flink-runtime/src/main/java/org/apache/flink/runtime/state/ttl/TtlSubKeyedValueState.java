@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.ttl;
+
+import org.apache.flink.api.common.state.StateTtlConfig;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.StateStorage;
+import org.apache.flink.runtime.state.StateTransformationFunction;
+import org.apache.flink.runtime.state.subkeyed.SubKeyedValueState;
+import org.apache.flink.runtime.state.subkeyed.SubKeyedValueStateDescriptor;
+import org.apache.flink.util.Preconditions;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A {@link SubKeyedValueState} with time-to-live, which stores the values with the timestamps of
+ * their last accesses in an original {@link SubKeyedValueState}.
+ *
+ * @param <K> Type of the keys in the state.
+ * @param <N> Type of the namespaces in the state.
+ * @param <V> Type of the values in the state.
+ */
+class TtlSubKeyedValueState<K, N, V>
+	extends AbstractTtlState<SubKeyedValueState<K, N, TtlValue<V>>>
+	implements SubKeyedValueState<K, N, V> {
+
+	/** The descriptor of this state. */
+	private final SubKeyedValueStateDescriptor<K, N, V> descriptor;
+
+	TtlSubKeyedValueState(
+		SubKeyedValueStateDescriptor<K, N, V> descriptor,
+		SubKeyedValueState<K, N, TtlValue<V>> original,
+		StateTtlConfig ttlConfig,
+		TtlTimeProvider timeProvider,
+		TtlIncrementalCleanup incrementalCleanup) {
+
+		super(original, ttlConfig, timeProvider, incrementalCleanup);
+		this.descriptor = Preconditions.checkNotNull(descriptor);
+	}
+
+	@Override
+	public SubKeyedValueStateDescriptor<K, N, V> getDescriptor() {
+		return descriptor;
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override
+	public boolean contains(K key, N namespace) {
+		return getTtlValue(key, namespace) != null;
+	}
+
+	@Override
+	public V get(K key, N namespace) {
+		return getOrDefault(key, namespace, null);
+	}
+
+	@Override
+	public V getOrDefault(K key, N namespace, V defaultValue) {
+		TtlValue<V> ttlValue = getTtlValue(key, namespace);
+		return ttlValue == null ? defaultValue : ttlValue.getUserValue();
+	}
+
+	@Override
+	public Map<N, V> getAll(K key) {
+		Map<N, V> results = new HashMap<>();
+		if (key == null) {
+			return results;
+		}
+
+		for (Map.Entry<N, TtlValue<V>> entry : original.getAll(key).entrySet()) {
+			TtlValue<V> ttlValue = entry.getValue();
+			if (expired(ttlValue)) {
+				original.remove(key, entry.getKey());
+			}
+			if (visible(ttlValue)) {
+				results.put(entry.getKey(), ttlValue.getUserValue());
+			}
+		}
+
+		return results;
+	}
+
+	@Override
+	public void put(K key, N namespace, V value) {
+		if (value == null) {
+			original.remove(key, namespace);
+		} else {
+			original.put(key, namespace, wrapWithTs(value));
+		}
+		updated();
+	}
+
+	@Override
+	public V getAndRemove(K key, N namespace) {
+		TtlValue<V> ttlValue = original.getAndRemove(key, namespace);
+		updated();
+		return getVisibleUserValue(ttlValue);
+	}
+
+	@Override
+	public void remove(K key, N namespace) {
+		original.remove(key, namespace);
+		updated();
+	}
+
+	@Override
+	public void removeAll(K key) {
+		original.removeAll(key);
+		updated();
+	}
+
+	@Override
+	public <T> void transform(K key, N namespace, T value, StateTransformationFunction<V, T> transformation) {
+		original.transform(key, namespace, value, (previousTtlValue, v) ->
+			wrapWithTs(transformation.apply(getVisibleUserValue(previousTtlValue), v)));
+		updated();
+	}
+
+	@Override
+	public Iterator<N> iterator(K key) {
+		return new TtlFilteringIterator<>(
+			original.iterator(key),
+			namespace -> returnExpired || visible(original.get(key, namespace)),
+			namespace -> namespace);
+	}
+
+	@Override
+	public Iterable<K> keys(N namespace) {
+		return () -> new TtlFilteringIterator<>(
+			original.keys(namespace).iterator(),
+			key -> returnExpired || visible(original.get(key, namespace)),
+			key -> key);
+	}
+
+	@Override
+	public byte[] getSerializedValue(
+		byte[] serializedKeyAndNamespace,
+		TypeSerializer<K> safeKeySerializer,
+		TypeSerializer<N> safeNamespaceSerializer,
+		TypeSerializer<V> safeValueSerializer) {
+		throw new UnsupportedOperationException("Queryable state is not supported with TTL.");
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public StateStorage<K, V> getStateStorage() {
+		return (StateStorage) original.getStateStorage();
+	}
+
+	//--------------------------------------------------------------------------
+
+	private TtlValue<V> getTtlValue(K key, N namespace) {
+		if (key == null || namespace == null) {
+			return null;
+		}
+
+		return getWithTtlCheckAndUpdate(
+			() -> original.get(key, namespace),
+			ttlValue -> original.put(key, namespace, ttlValue),
+			() -> original.remove(key, namespace));
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.ttl;
+
+import javax.annotation.Nullable;
+
+/**
+ * Utilities for the time-to-live of state values.
+ */
+public final class TtlUtils {
+
+	private TtlUtils() {
+	}
+
+	/**
+	 * Returns whether the given value is expired at the given timestamp.
+	 */
+	static boolean expired(@Nullable TtlValue<?> ttlValue, long ttl, long currentTimestamp) {
+		return ttlValue != null && expired(ttlValue.getLastAccessTimestamp(), ttl, currentTimestamp);
+	}
+
+	/**
+	 * Returns whether a value with the given last access timestamp is expired at the given timestamp.
+	 */
+	public static boolean expired(long lastAccessTimestamp, long ttl, long currentTimestamp) {
+		return getExpirationTimestamp(lastAccessTimestamp, ttl) <= currentTimestamp;
+	}
+
+	private static long getExpirationTimestamp(long lastAccessTimestamp, long ttl) {
+		// guard against overflows for large time-to-live values
+		long ttlWithoutOverflow = lastAccessTimestamp > 0 ? Math.min(Long.MAX_VALUE - lastAccessTimestamp, ttl) : ttl;
+		return lastAccessTimestamp + ttlWithoutOverflow;
+	}
+}
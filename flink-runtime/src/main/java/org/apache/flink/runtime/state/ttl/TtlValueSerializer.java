@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.ttl;
+
+import org.apache.flink.api.common.typeutils.CompatibilityResult;
+import org.apache.flink.api.common.typeutils.CompatibilityUtil;
+import org.apache.flink.api.common.typeutils.CompositeTypeSerializerConfigSnapshot;
+import org.apache.flink.api.common.typeutils.TypeDeserializerAdapter;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.TypeSerializerConfigSnapshot;
+import org.apache.flink.api.common.typeutils.UnloadableDummyTypeSerializer;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.util.Preconditions;
+
+import java.io.IOException;
+
+/**
+ * A serializer for {@link TtlValue}s. The timestamp of the last access is written first, so that
+ * it can be read from the serialized bytes without the user value serializer, followed by a null
+ * marker and the serialized user value.
+ *
+ * @param <T> Type of the user values.
+ */
+public final class TtlValueSerializer<T> extends TypeSerializer<TtlValue<T>> {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The number of bytes of the serialized timestamp at the beginning of each serialized value. */
+	public static final int TIMESTAMP_BYTES = Long.BYTES;
+
+	/** The serializer for the user values. */
+	private final TypeSerializer<T> userValueSerializer;
+
+	public TtlValueSerializer(TypeSerializer<T> userValueSerializer) {
+		this.userValueSerializer = Preconditions.checkNotNull(userValueSerializer);
+	}
+
+	public TypeSerializer<T> getUserValueSerializer() {
+		return userValueSerializer;
+	}
+
+	@Override
+	public boolean isImmutableType() {
+		return false;
+	}
+
+	@Override
+	public TypeSerializer<TtlValue<T>> duplicate() {
+		TypeSerializer<T> duplicateUserValueSerializer = userValueSerializer.duplicate();
+		return duplicateUserValueSerializer == userValueSerializer ?
+			this : new TtlValueSerializer<>(duplicateUserValueSerializer);
+	}
+
+	@Override
+	public TtlValue<T> createInstance() {
+		return new TtlValue<>(userValueSerializer.createInstance(), 0L);
+	}
+
+	@Override
+	public TtlValue<T> copy(TtlValue<T> from) {
+		T userValue = from.getUserValue();
+		return new TtlValue<>(
+			userValue == null ? null : userValueSerializer.copy(userValue),
+			from.getLastAccessTimestamp());
+	}
+
+	@Override
+	public TtlValue<T> copy(TtlValue<T> from, TtlValue<T> reuse) {
+		return copy(from);
+	}
+
+	@Override
+	public int getLength() {
+		return -1;
+	}
+
+	@Override
+	public void serialize(TtlValue<T> record, DataOutputView target) throws IOException {
+		target.writeLong(record.getLastAccessTimestamp());
+
+		T userValue = record.getUserValue();
+		if (userValue == null) {
+			target.writeBoolean(true);
+		} else {
+			target.writeBoolean(false);
+			userValueSerializer.serialize(userValue, target);
+		}
+	}
+
+	@Override
+	public TtlValue<T> deserialize(DataInputView source) throws IOException {
+		long lastAccessTimestamp = source.readLong();
+
+		boolean isNull = source.readBoolean();
+		T userValue = isNull ? null : userValueSerializer.deserialize(source);
+
+		return new TtlValue<>(userValue, lastAccessTimestamp);
+	}
+
+	@Override
+	public TtlValue<T> deserialize(TtlValue<T> reuse, DataInputView source) throws IOException {
+		return deserialize(source);
+	}
+
+	@Override
+	public void copy(DataInputView source, DataOutputView target) throws IOException {
+		target.writeLong(source.readLong());
+
+		boolean isNull = source.readBoolean();
+		target.writeBoolean(isNull);
+
+		if (!isNull) {
+			userValueSerializer.copy(source, target);
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj == this ||
+			(obj != null && obj.getClass() == getClass() &&
+				userValueSerializer.equals(((TtlValueSerializer<?>) obj).getUserValueSerializer()));
+	}
+
+	@Override
+	public boolean canEqual(Object obj) {
+		return obj != null && obj.getClass() == getClass();
+	}
+
+	@Override
+	public int hashCode() {
+		return userValueSerializer.hashCode();
+	}
+
+	@Override
+	public TtlValueSerializerConfigSnapshot snapshotConfiguration() {
+		return new TtlValueSerializerConfigSnapshot<>(userValueSerializer);
+	}
+
+	@Override
+	public CompatibilityResult<TtlValue<T>> ensureCompatibility(TypeSerializerConfigSnapshot configSnapshot) {
+		if (configSnapshot instanceof TtlValueSerializerConfigSnapshot) {
+			Tuple2<TypeSerializer<?>, TypeSerializerConfigSnapshot> previousUserValueSerializerAndConfig =
+				((TtlValueSerializerConfigSnapshot) configSnapshot).getSingleNestedSerializerAndConfig();
+
+			CompatibilityResult<T> userValueCompatResult = CompatibilityUtil.resolveCompatibilityResult(
+				previousUserValueSerializerAndConfig.f0,
+				UnloadableDummyTypeSerializer.class,
+				previousUserValueSerializerAndConfig.f1,
+				userValueSerializer);
+
+			if (!userValueCompatResult.isRequiresMigration()) {
+				return CompatibilityResult.compatible();
+			} else if (userValueCompatResult.getConvertDeserializer() != null) {
+				return CompatibilityResult.requiresMigration(
+					new TtlValueSerializer<>(
+						new TypeDeserializerAdapter<>(userValueCompatResult.getConvertDeserializer())));
+			}
+		}
+
+		return CompatibilityResult.requiresMigration();
+	}
+
+	/**
+	 * Configuration snapshot for serializers of {@link TtlValue}s, containing the configuration
+	 * snapshot of the user value serializer.
+	 */
+	public static final class TtlValueSerializerConfigSnapshot<T> extends CompositeTypeSerializerConfigSnapshot {
+
+		private static final int VERSION = 1;
+
+		/** This empty nullary constructor is required for deserializing the configuration. */
+		public TtlValueSerializerConfigSnapshot() {}
+
+		public TtlValueSerializerConfigSnapshot(TypeSerializer<T> userValueSerializer) {
+			super(userValueSerializer);
+		}
+
+		@Override
+		public int getVersion() {
+			return VERSION;
+		}
+	}
+}
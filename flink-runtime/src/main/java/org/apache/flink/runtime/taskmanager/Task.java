@@ -49,6 +49,7 @@ import org.apache.flink.runtime.executiongraph.TaskInformation;
 import org.apache.flink.runtime.filecache.FileCache;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager;
 import org.apache.flink.runtime.io.network.NetworkEnvironment;
+import org.apache.flink.runtime.io.network.api.serialization.CompressionStatistics;
 import org.apache.flink.runtime.io.network.netty.PartitionProducerStateChecker;
 import org.apache.flink.runtime.io.network.partition.BlockingShuffleType;
 import org.apache.flink.runtime.io.network.partition.InternalResultPartition;
@@ -645,9 +646,20 @@ public class Task implements Runnable, TaskActions, CheckpointListener {
 						outputGroup.addGroup(i), internalPartitions.get(i));
 				}
 
+				for (int i = 0; i < externalPartitions.size(); i++) {
+					CompressionStatistics compressionStatistics = externalPartitions.get(i).getCompressionStatistics();
+					if (compressionStatistics != null) {
+						ResultPartitionMetrics.registerCompressionMetrics(
+							outputGroup.addGroup("external").addGroup(i), compressionStatistics);
+					}
+				}
+
 				for (int i = 0; i < inputGates.length; i++) {
-					InputGateMetrics.registerQueueLengthMetrics(
-						inputGroup.addGroup(i), inputGates[i]);
+					MetricGroup inputGateGroup = inputGroup.addGroup(i);
+					InputGateMetrics.registerQueueLengthMetrics(inputGateGroup, inputGates[i]);
+					if (inputGates[i].isPartitionRequestRestricted()) {
+						InputGateMetrics.registerPartitionRequestMetrics(inputGateGroup, inputGates[i]);
+					}
 				}
 			}
 
@@ -937,8 +949,17 @@ public class Task implements Runnable, TaskActions, CheckpointListener {
 		final BlockingShuffleType shuffleType =
 			BlockingShuffleType.getBlockingShuffleTypeFromConfiguration(taskManagerConfiguration, LOG);
 
-		PartitionRequestManager partitionRequestManager = new PartitionRequestManager(
-			maxConcurrentPartitionRequests, inputGates.length);
+		PartitionRequestManager partitionRequestManager;
+		if (taskManagerConfiguration.getBoolean(TaskManagerOptions.TASK_EXTERNAL_SHUFFLE_ADAPTIVE_CONCURRENT_REQUESTS_ENABLE)) {
+			partitionRequestManager = new PartitionRequestManager(
+				maxConcurrentPartitionRequests,
+				taskManagerConfiguration.getInteger(TaskManagerOptions.TASK_EXTERNAL_SHUFFLE_ADAPTIVE_MIN_CONCURRENT_REQUESTS),
+				taskManagerConfiguration.getLong(TaskManagerOptions.TASK_EXTERNAL_SHUFFLE_ADAPTIVE_CONCURRENT_REQUESTS_INTERVAL),
+				inputGates.length);
+		} else {
+			partitionRequestManager = new PartitionRequestManager(
+				maxConcurrentPartitionRequests, inputGates.length);
+		}
 
 		int counter = 0;
 		for (InputGateDeploymentDescriptor inputGateDeploymentDescriptor : inputGateDeploymentDescriptors) {
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.checkpoint;
+
+import org.apache.flink.runtime.jobgraph.OperatorID;
+import org.apache.flink.runtime.jobgraph.OperatorInstanceID;
+import org.apache.flink.runtime.state.OperatorStateHandle;
+import org.apache.flink.runtime.state.OperatorStreamStateHandle;
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.memory.ByteStreamStateHandle;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.apache.flink.runtime.checkpoint.StateAssignmentOperation.IN_FLIGHT_DATA_STATE_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the redistribution of operator states by the {@link StateAssignmentOperation}.
+ */
+public class StateAssignmentOperationTest extends TestLogger {
+
+	private static final int PARALLELISM = 3;
+
+	private final OperatorID operatorID = new OperatorID();
+
+	/**
+	 * Tests that the operator states of every subtask are restored into the same subtask when the
+	 * parallelism is unchanged.
+	 */
+	@Test
+	public void testOperatorStatesOfUnchangedParallelism() {
+		OperatorState operatorState = new OperatorState(operatorID, PARALLELISM, PARALLELISM);
+		for (int subtaskIndex = 0; subtaskIndex < PARALLELISM; subtaskIndex++) {
+			operatorState.putState(subtaskIndex, new OperatorSubtaskState(
+				createOperatorStateHandle("split", OperatorStateHandle.Mode.SPLIT_DISTRIBUTE, subtaskIndex),
+				createOperatorStateHandle("raw", OperatorStateHandle.Mode.SPLIT_DISTRIBUTE, subtaskIndex),
+				null,
+				null));
+		}
+
+		Map<OperatorInstanceID, List<OperatorStateHandle>> newManagedOperatorStates = new HashMap<>();
+		Map<OperatorInstanceID, List<OperatorStateHandle>> newRawOperatorStates = new HashMap<>();
+		reDistributePartitionableStates(operatorState, newManagedOperatorStates, newRawOperatorStates);
+
+		for (int subtaskIndex = 0; subtaskIndex < PARALLELISM; subtaskIndex++) {
+			OperatorInstanceID instanceID = OperatorInstanceID.of(subtaskIndex, operatorID);
+			assertEquals(
+				new ArrayList<>(operatorState.getState(subtaskIndex).getManagedOperatorState()),
+				newManagedOperatorStates.get(instanceID));
+			assertEquals(
+				new ArrayList<>(operatorState.getState(subtaskIndex).getRawOperatorState()),
+				newRawOperatorStates.get(instanceID));
+		}
+	}
+
+	/**
+	 * Tests that the in-flight data of a subtask is restored into the same subtask, and that it
+	 * does not affect the assignment of the other operator states.
+	 */
+	@Test
+	public void testInFlightDataOfUnchangedParallelism() {
+		OperatorState operatorState = new OperatorState(operatorID, PARALLELISM, PARALLELISM);
+		for (int subtaskIndex = 0; subtaskIndex < PARALLELISM; subtaskIndex++) {
+			List<OperatorStateHandle> managedOperatorState = new ArrayList<>();
+			managedOperatorState.add(createOperatorStateHandle("split", OperatorStateHandle.Mode.SPLIT_DISTRIBUTE, subtaskIndex));
+			// the second subtask has no in-flight data
+			if (subtaskIndex != 1) {
+				managedOperatorState.add(createInFlightDataStateHandle(subtaskIndex));
+			}
+
+			operatorState.putState(subtaskIndex, new OperatorSubtaskState(
+				new StateObjectCollection<>(managedOperatorState),
+				StateObjectCollection.singleton(createOperatorStateHandle("raw", OperatorStateHandle.Mode.SPLIT_DISTRIBUTE, subtaskIndex)),
+				StateObjectCollection.empty(),
+				StateObjectCollection.empty()));
+		}
+
+		Map<OperatorInstanceID, List<OperatorStateHandle>> newManagedOperatorStates = new HashMap<>();
+		Map<OperatorInstanceID, List<OperatorStateHandle>> newRawOperatorStates = new HashMap<>();
+		reDistributePartitionableStates(operatorState, newManagedOperatorStates, newRawOperatorStates);
+
+		for (int subtaskIndex = 0; subtaskIndex < PARALLELISM; subtaskIndex++) {
+			OperatorInstanceID instanceID = OperatorInstanceID.of(subtaskIndex, operatorID);
+			assertEquals(
+				new ArrayList<>(operatorState.getState(subtaskIndex).getManagedOperatorState()),
+				newManagedOperatorStates.get(instanceID));
+			assertEquals(
+				new ArrayList<>(operatorState.getState(subtaskIndex).getRawOperatorState()),
+				newRawOperatorStates.get(instanceID));
+		}
+	}
+
+	/**
+	 * Tests that the union states are restored into all subtasks, while the in-flight data is
+	 * restored into its subtask only.
+	 */
+	@Test
+	public void testInFlightDataWithUnionState() {
+		OperatorState operatorState = new OperatorState(operatorID, PARALLELISM, PARALLELISM);
+		Set<StreamStateHandle> unionStateHandles = new HashSet<>();
+		for (int subtaskIndex = 0; subtaskIndex < PARALLELISM; subtaskIndex++) {
+			OperatorStreamStateHandle unionStateHandle =
+				createOperatorStateHandle("union", OperatorStateHandle.Mode.UNION, subtaskIndex);
+			unionStateHandles.add(unionStateHandle.getDelegateStateHandle());
+
+			operatorState.putState(subtaskIndex, new OperatorSubtaskState(
+				new StateObjectCollection<>(Arrays.asList(unionStateHandle, createInFlightDataStateHandle(subtaskIndex))),
+				StateObjectCollection.empty(),
+				StateObjectCollection.empty(),
+				StateObjectCollection.empty()));
+		}
+
+		Map<OperatorInstanceID, List<OperatorStateHandle>> newManagedOperatorStates = new HashMap<>();
+		Map<OperatorInstanceID, List<OperatorStateHandle>> newRawOperatorStates = new HashMap<>();
+		reDistributePartitionableStates(operatorState, newManagedOperatorStates, newRawOperatorStates);
+
+		for (int subtaskIndex = 0; subtaskIndex < PARALLELISM; subtaskIndex++) {
+			OperatorInstanceID instanceID = OperatorInstanceID.of(subtaskIndex, operatorID);
+
+			Set<StreamStateHandle> restoredUnionStateHandles = new HashSet<>();
+			List<OperatorStateHandle> restoredInFlightDataStateHandles = new ArrayList<>();
+			for (OperatorStateHandle operatorStateHandle : newManagedOperatorStates.get(instanceID)) {
+				if (operatorStateHandle.getStateNameToPartitionOffsets().containsKey(IN_FLIGHT_DATA_STATE_NAME)) {
+					restoredInFlightDataStateHandles.add(operatorStateHandle);
+				} else {
+					restoredUnionStateHandles.add(operatorStateHandle.getDelegateStateHandle());
+				}
+			}
+
+			assertEquals(unionStateHandles, restoredUnionStateHandles);
+			assertEquals(Collections.singletonList(createInFlightDataStateHandle(subtaskIndex)), restoredInFlightDataStateHandles);
+			assertNull(newRawOperatorStates.get(instanceID));
+		}
+	}
+
+	/**
+	 * Tests that the in-flight data cannot be restored with a different parallelism.
+	 */
+	@Test
+	public void testRescaleOfInFlightDataIsRejected() {
+		OperatorState operatorState = new OperatorState(operatorID, PARALLELISM, PARALLELISM);
+		for (int subtaskIndex = 0; subtaskIndex < PARALLELISM; subtaskIndex++) {
+			operatorState.putState(subtaskIndex, new OperatorSubtaskState(
+				new StateObjectCollection<>(Arrays.asList(
+					createOperatorStateHandle("split", OperatorStateHandle.Mode.SPLIT_DISTRIBUTE, subtaskIndex),
+					createInFlightDataStateHandle(subtaskIndex))),
+				StateObjectCollection.empty(),
+				StateObjectCollection.empty(),
+				StateObjectCollection.empty()));
+		}
+
+		try {
+			reDistributePartitionableStates(
+				operatorState, PARALLELISM + 1, new HashMap<>(), new HashMap<>());
+			fail("The rescale of in-flight data should be rejected.");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("in-flight data"));
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	private void reDistributePartitionableStates(
+		OperatorState operatorState,
+		Map<OperatorInstanceID, List<OperatorStateHandle>> newManagedOperatorStates,
+		Map<OperatorInstanceID, List<OperatorStateHandle>> newRawOperatorStates) {
+
+		reDistributePartitionableStates(operatorState, PARALLELISM, newManagedOperatorStates, newRawOperatorStates);
+	}
+
+	private void reDistributePartitionableStates(
+		OperatorState operatorState,
+		int newParallelism,
+		Map<OperatorInstanceID, List<OperatorStateHandle>> newManagedOperatorStates,
+		Map<OperatorInstanceID, List<OperatorStateHandle>> newRawOperatorStates) {
+
+		StateAssignmentOperation.reDistributePartitionableStates(
+			Collections.singletonList(operatorState),
+			newParallelism,
+			Collections.singletonList(operatorID),
+			newManagedOperatorStates,
+			newRawOperatorStates);
+	}
+
+	private static OperatorStreamStateHandle createOperatorStateHandle(
+		String stateName,
+		OperatorStateHandle.Mode distributionMode,
+		int subtaskIndex) {
+
+		return new OperatorStreamStateHandle(
+			Collections.singletonMap(stateName, new OperatorStateHandle.StateMetaInfo(new long[] {0L}, distributionMode)),
+			new ByteStreamStateHandle(stateName + "-" + subtaskIndex, new byte[] {(byte) subtaskIndex}));
+	}
+
+	private static OperatorStreamStateHandle createInFlightDataStateHandle(int subtaskIndex) {
+		return createOperatorStateHandle(IN_FLIGHT_DATA_STATE_NAME, OperatorStateHandle.Mode.SPLIT_DISTRIBUTE, subtaskIndex);
+	}
+}
@@ -149,7 +149,8 @@ public class ExecutionGraphDeploymentTest extends TestLogger {
 			v3.setInvokableClass(BatchTask.class);
 			v4.setInvokableClass(BatchTask.class);
 
-			v2.connectNewDataSetAsInput(v1, DistributionPattern.ALL_TO_ALL, ResultPartitionType.PIPELINED);
+			v2.connectNewDataSetAsInput(v1, DistributionPattern.ALL_TO_ALL, ResultPartitionType.PIPELINED)
+				.setZeroCopyEnabled(true);
 			v3.connectNewDataSetAsInput(v2, DistributionPattern.ALL_TO_ALL, ResultPartitionType.PIPELINED);
 			v4.connectNewDataSetAsInput(v2, DistributionPattern.ALL_TO_ALL, ResultPartitionType.PIPELINED);
 
@@ -216,7 +217,9 @@ public class ExecutionGraphDeploymentTest extends TestLogger {
 
 			assertEquals(10, iteratorProducedPartitions.next().getNumberOfSubpartitions());
 			assertEquals(10, iteratorProducedPartitions.next().getNumberOfSubpartitions());
-			assertEquals(10, iteratorConsumedPartitions.next().getInputChannelDeploymentDescriptors().length);
+			InputGateDeploymentDescriptor consumedPartition = iteratorConsumedPartitions.next();
+			assertEquals(10, consumedPartition.getInputChannelDeploymentDescriptors().length);
+			assertTrue(consumedPartition.isZeroCopyEnabled());
 		}
 		catch (Exception e) {
 			e.printStackTrace();
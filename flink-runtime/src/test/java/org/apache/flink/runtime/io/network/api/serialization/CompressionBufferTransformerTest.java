@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.api.serialization;
+
+import org.apache.flink.api.common.io.blockcompression.BlockCompressionFactory;
+import org.apache.flink.api.common.io.blockcompression.Lz4BlockCompressionFactory;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link CompressionBufferTransformer} and {@link DecompressionBufferTransformer}.
+ */
+public class CompressionBufferTransformerTest extends TestLogger {
+
+	private static final int BUFFER_SIZE = 32 * 1024;
+
+	private final BlockCompressionFactory compressionFactory = new Lz4BlockCompressionFactory();
+
+	private final Random random = new Random(42);
+
+	@Test
+	public void testCompressibleBuffer() throws Exception {
+		CompressionBufferTransformer transformer = new CompressionBufferTransformer(compressionFactory);
+
+		byte[] data = createCompressibleData();
+		DataOutputSerializer out = new DataOutputSerializer(BUFFER_SIZE);
+		write(transformer, data, out);
+
+		assertFalse(isUncompressed(out));
+		assertTrue(out.length() < data.length);
+		assertArrayEquals(data, read(out));
+	}
+
+	@Test
+	public void testIncompressibleBufferIsCompressedWithoutAdaptiveMode() throws Exception {
+		AdaptiveCompressionPolicy policy = new AdaptiveCompressionPolicy(1, false, 1.1, 4, new CompressionStatistics(1));
+		CompressionBufferTransformer transformer = new CompressionBufferTransformer(compressionFactory, policy);
+
+		for (int i = 0; i < 4; ++i) {
+			byte[] data = createIncompressibleData();
+			DataOutputSerializer out = new DataOutputSerializer(BUFFER_SIZE);
+			write(transformer, data, out);
+
+			assertFalse(isUncompressed(out));
+			assertArrayEquals(data, read(out));
+		}
+	}
+
+	@Test
+	public void testIncompressibleBufferIsWrittenUncompressedInAdaptiveMode() throws Exception {
+		AdaptiveCompressionPolicy policy = new AdaptiveCompressionPolicy(1, true, 1.1, 4, null);
+		CompressionBufferTransformer transformer = new CompressionBufferTransformer(compressionFactory, policy);
+
+		byte[] data = createIncompressibleData();
+		DataOutputSerializer out = new DataOutputSerializer(BUFFER_SIZE);
+		write(transformer, data, out);
+
+		assertTrue(isUncompressed(out));
+		assertEquals(data.length + 8, out.length());
+		assertArrayEquals(data, read(out));
+	}
+
+	@Test
+	public void testAdaptiveCompressionSkipsIncompressibleChannel() throws Exception {
+		final int sampleInterval = 4;
+
+		CompressionStatistics statistics = new CompressionStatistics(2);
+		AdaptiveCompressionPolicy policy = new AdaptiveCompressionPolicy(2, true, 1.1, sampleInterval, statistics);
+		CompressionBufferTransformer transformer = new CompressionBufferTransformer(compressionFactory, policy);
+
+		// only the first buffer and then every sample interval of the incompressible channel is compressed
+		policy.setCurrentChannel(0);
+		for (int i = 0; i < 2 * sampleInterval; ++i) {
+			byte[] data = createIncompressibleData();
+			DataOutputSerializer out = new DataOutputSerializer(BUFFER_SIZE);
+			write(transformer, data, out);
+
+			assertTrue(isUncompressed(out));
+			assertArrayEquals(data, read(out));
+		}
+		assertEquals(2 * (sampleInterval - 1), statistics.getNumSkippedBuffers(0));
+		assertEquals(1.0, statistics.getCompressionRatio(0), 0.0);
+
+		// the other channel is not affected
+		policy.setCurrentChannel(1);
+		byte[] data = createCompressibleData();
+		DataOutputSerializer out = new DataOutputSerializer(BUFFER_SIZE);
+		write(transformer, data, out);
+
+		assertFalse(isUncompressed(out));
+		assertArrayEquals(data, read(out));
+		assertEquals(0, statistics.getNumSkippedBuffers(1));
+		assertTrue(statistics.getCompressionRatio(1) > 1.1);
+	}
+
+	@Test
+	public void testAdaptiveCompressionResumesForCompressibleData() throws Exception {
+		final int sampleInterval = 4;
+
+		CompressionStatistics statistics = new CompressionStatistics(1);
+		AdaptiveCompressionPolicy policy = new AdaptiveCompressionPolicy(1, true, 1.1, sampleInterval, statistics);
+		CompressionBufferTransformer transformer = new CompressionBufferTransformer(compressionFactory, policy);
+
+		write(transformer, createIncompressibleData(), new DataOutputSerializer(BUFFER_SIZE));
+
+		// the compressible buffers are skipped until the next sample
+		for (int i = 0; i < sampleInterval - 1; ++i) {
+			DataOutputSerializer out = new DataOutputSerializer(BUFFER_SIZE);
+			write(transformer, createCompressibleData(), out);
+			assertTrue(isUncompressed(out));
+		}
+
+		for (int i = 0; i < sampleInterval; ++i) {
+			DataOutputSerializer out = new DataOutputSerializer(BUFFER_SIZE);
+			write(transformer, createCompressibleData(), out);
+			assertFalse(isUncompressed(out));
+		}
+
+		assertEquals(sampleInterval - 1, statistics.getTotalNumSkippedBuffers());
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static void write(CompressionBufferTransformer transformer, byte[] data, DataOutputSerializer out) throws Exception {
+		transformer.setBuffer(ByteBuffer.wrap(data));
+		transformer.write(out);
+	}
+
+	private byte[] read(DataOutputSerializer out) throws Exception {
+		DecompressionBufferTransformer transformer = new DecompressionBufferTransformer(compressionFactory);
+		transformer.read(new DataInputDeserializer(out.getSharedBuffer(), 0, out.length()));
+
+		Buffer buffer = transformer.getBuffer();
+		byte[] result = new byte[buffer.getSize()];
+		buffer.getNioBufferReadable().get(result);
+		return result;
+	}
+
+	private static boolean isUncompressed(DataOutputSerializer out) {
+		return (out.wrapAsByteBuffer().getInt() & CompressionBufferTransformer.UNCOMPRESSED_FLAG) != 0;
+	}
+
+	private byte[] createCompressibleData() {
+		byte[] data = new byte[BUFFER_SIZE];
+		for (int i = 0; i < data.length; ++i) {
+			data[i] = (byte) (i % 16 == 0 ? random.nextInt() : i % 7);
+		}
+		return data;
+	}
+
+	private byte[] createIncompressibleData() {
+		byte[] data = new byte[BUFFER_SIZE];
+		random.nextBytes(data);
+		return data;
+	}
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.api.serialization;
+
+import org.apache.flink.core.io.IOReadableWritable;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferBuilder;
+import org.apache.flink.runtime.io.network.buffer.BufferConsumer;
+import org.apache.flink.testutils.serialization.types.SerializationTestType;
+import org.apache.flink.testutils.serialization.types.SerializationTestTypeFactory;
+import org.apache.flink.testutils.serialization.types.Util;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils.createBufferBuilder;
+
+/**
+ * Tests for the {@link SegmentReferencingRecordSerializer}.
+ */
+public class SegmentReferencingRecordSerializerTest extends TestLogger {
+
+	@Test
+	public void testHasSerializedData() throws IOException {
+		final SegmentReferencingRecordSerializer<IOReadableWritable> serializer = new SegmentReferencingRecordSerializer<>();
+		final SegmentRecord record = new SegmentRecord(createSegment(128, new Random(42)), 0, 128);
+
+		Assert.assertFalse(serializer.hasSerializedData());
+
+		serializer.serializeRecord(record);
+		Assert.assertTrue(serializer.hasSerializedData());
+
+		// the record is 4 + 4 + 128 + 4 bytes long
+		final BufferBuilder bufferBuilder1 = createBufferBuilder(256);
+		Assert.assertEquals(RecordSerializer.SerializationResult.FULL_RECORD,
+			serializer.copyToBufferBuilder(bufferBuilder1));
+		Assert.assertFalse(serializer.hasSerializedData());
+
+		final BufferBuilder bufferBuilder2 = createBufferBuilder(64);
+		serializer.serializeRecord(record);
+		Assert.assertEquals(RecordSerializer.SerializationResult.PARTIAL_RECORD_MEMORY_SEGMENT_FULL,
+			serializer.copyToBufferBuilder(bufferBuilder2));
+		Assert.assertTrue(serializer.hasSerializedData());
+
+		final BufferBuilder bufferBuilder3 = createBufferBuilder(76);
+		Assert.assertEquals(RecordSerializer.SerializationResult.FULL_RECORD_MEMORY_SEGMENT_FULL,
+			serializer.copyToBufferBuilder(bufferBuilder3));
+		Assert.assertFalse(serializer.hasSerializedData());
+	}
+
+	@Test
+	public void testSameDataAsSpanningRecordSerializer() throws IOException {
+		final Random random = new Random(42);
+		final MemorySegment segment = createSegment(1024, random);
+
+		final List<IOReadableWritable> records = new ArrayList<>();
+		for (SerializationTestType record : Util.randomRecords(1000)) {
+			records.add(record);
+
+			// ranges below and above the threshold for referencing
+			int length = random.nextInt(4 * SegmentReferencingRecordSerializer.MIN_REFERENCED_BYTES);
+			records.add(new SegmentRecord(segment, random.nextInt(segment.size() - length), length));
+		}
+
+		for (int bufferSize : new int[] {17, 128, 32 * 1024}) {
+			byte[] expected = serialize(new SpanningRecordSerializer<>(), records, bufferSize);
+			byte[] actual = serialize(new SegmentReferencingRecordSerializer<>(), records, bufferSize);
+
+			Assert.assertArrayEquals(expected, actual);
+		}
+	}
+
+	@Test
+	public void testResetCopiesRecordAgain() throws IOException {
+		final SegmentReferencingRecordSerializer<IOReadableWritable> serializer = new SegmentReferencingRecordSerializer<>();
+		final SegmentRecord record = new SegmentRecord(createSegment(256, new Random(42)), 16, 200);
+
+		final List<IOReadableWritable> records = new ArrayList<>();
+		records.add(record);
+		final byte[] expected = serialize(new SpanningRecordSerializer<>(), records, 1024);
+
+		serializer.serializeRecord(record);
+		for (int i = 0; i < 2; i++) {
+			// like for broadcasting, the same record is copied to several channels
+			serializer.reset();
+
+			BufferBuilder bufferBuilder = createBufferBuilder(1024);
+			BufferConsumer bufferConsumer = bufferBuilder.createBufferConsumer();
+			Assert.assertEquals(RecordSerializer.SerializationResult.FULL_RECORD,
+				serializer.copyToBufferBuilder(bufferBuilder));
+
+			Assert.assertArrayEquals(expected, toBytes(bufferConsumer));
+		}
+	}
+
+	@Test
+	public void testIntRecordsSpanningMultipleSegments() throws Exception {
+		final int segmentSize = 1;
+		final int numValues = 10;
+
+		testRoundTrip(Util.randomRecords(numValues, SerializationTestTypeFactory.INT), segmentSize);
+	}
+
+	@Test
+	public void testRandomRecords() throws Exception {
+		final int segmentSize = 127;
+		final int numValues = 10000;
+
+		testRoundTrip(Util.randomRecords(numValues), segmentSize);
+	}
+
+	// -----------------------------------------------------------------------------------------------------------------
+
+	private static void testRoundTrip(Util.MockRecords records, int segmentSize) throws Exception {
+		final List<IOReadableWritable> recordList = new ArrayList<>();
+		for (SerializationTestType record : records) {
+			recordList.add(record);
+		}
+
+		final byte[] serialized = serialize(new SegmentReferencingRecordSerializer<>(), recordList, segmentSize);
+
+		final RecordDeserializer<SerializationTestType> deserializer =
+			new SpillingAdaptiveSpanningRecordDeserializer<>(new String[0]);
+		final BufferBuilder bufferBuilder = createBufferBuilder(serialized.length);
+		final BufferConsumer bufferConsumer = bufferBuilder.createBufferConsumer();
+		bufferBuilder.appendAndCommit(ByteBuffer.wrap(serialized));
+		deserializer.setNextBuffer(bufferConsumer.build());
+
+		for (IOReadableWritable expected : recordList) {
+			SerializationTestType actual = ((SerializationTestType) expected).getClass().newInstance();
+			Assert.assertTrue(deserializer.getNextRecord(actual).isFullRecord());
+			Assert.assertEquals(expected, actual);
+		}
+		Assert.assertFalse(deserializer.hasUnfinishedData());
+	}
+
+	/**
+	 * Serializes the records to buffers of the given size, like the record writer, and returns the
+	 * concatenated content of the buffers.
+	 */
+	private static byte[] serialize(
+			RecordSerializer<IOReadableWritable> serializer,
+			List<IOReadableWritable> records,
+			int bufferSize) throws IOException {
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		BufferBuilder bufferBuilder = createBufferBuilder(bufferSize);
+		BufferConsumer bufferConsumer = bufferBuilder.createBufferConsumer();
+		for (IOReadableWritable record : records) {
+			serializer.serializeRecord(record);
+			serializer.reset();
+
+			RecordSerializer.SerializationResult result = serializer.copyToBufferBuilder(bufferBuilder);
+			while (result.isFullBuffer()) {
+				output.write(toBytes(bufferConsumer));
+
+				bufferBuilder = createBufferBuilder(bufferSize);
+				bufferConsumer = bufferBuilder.createBufferConsumer();
+				if (result.isFullRecord()) {
+					break;
+				}
+				result = serializer.copyToBufferBuilder(bufferBuilder);
+			}
+		}
+		output.write(toBytes(bufferConsumer));
+
+		return output.toByteArray();
+	}
+
+	private static byte[] toBytes(BufferConsumer bufferConsumer) {
+		Buffer buffer = bufferConsumer.build();
+		byte[] bytes = new byte[buffer.getSize()];
+		buffer.getNioBufferReadable().get(bytes);
+		buffer.recycleBuffer();
+		bufferConsumer.close();
+		return bytes;
+	}
+
+	private static MemorySegment createSegment(int size, Random random) {
+		byte[] bytes = new byte[size];
+		random.nextBytes(bytes);
+		return MemorySegmentFactory.wrap(bytes);
+	}
+
+	/**
+	 * A record which writes a range of a memory segment.
+	 */
+	private static final class SegmentRecord implements IOReadableWritable {
+
+		private final MemorySegment segment;
+
+		private final int offset;
+
+		private final int length;
+
+		SegmentRecord(MemorySegment segment, int offset, int length) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override
+		public void write(DataOutputView out) throws IOException {
+			out.writeInt(length);
+			out.write(segment, offset, length);
+			out.writeInt(-length);
+		}
+
+		@Override
+		public void read(DataInputView in) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
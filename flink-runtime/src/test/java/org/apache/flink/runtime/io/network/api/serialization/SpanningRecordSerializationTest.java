@@ -18,7 +18,11 @@
 
 package org.apache.flink.runtime.io.network.api.serialization;
 
+import org.apache.flink.core.memory.DataInputView;
 import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.metrics.SimpleCounter;
+import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.io.disk.iomanager.IOManagerAsync;
 import org.apache.flink.runtime.io.network.api.serialization.RecordDeserializer.DeserializationResult;
 import org.apache.flink.runtime.io.network.api.serialization.RecordSerializer.SerializationResult;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
@@ -43,6 +47,7 @@ import java.util.List;
 import java.util.Random;
 
 import static org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils.buildSingleBuffer;
+import static org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils.createBufferBuilder;
 import static org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils.createFilledBufferBuilder;
 
 /**
@@ -106,6 +111,89 @@ public class SpanningRecordSerializationTest extends TestLogger {
 		testSerializationRoundTrip(originalRecords, segmentSize);
 	}
 
+	@Test
+	public void testHandleMixedLargeRecordsWithAsyncSpilling() throws Exception {
+		final int numValues = 7;
+		final int segmentSize = 32 * 1024;
+
+		List<SerializationTestType> originalRecords = new ArrayList<>(numValues);
+		LargeObjectType genLarge = new LargeObjectType();
+		long numLargeRecordBytes = 0;
+
+		for (int i = 0; i < numValues; i++) {
+			if (i % 2 == 0) {
+				originalRecords.add(new IntType(42));
+			} else {
+				LargeObjectType record = genLarge.getRandom(RANDOM);
+				originalRecords.add(record);
+				numLargeRecordBytes += record.length();
+			}
+		}
+
+		IOManager ioManager = new IOManagerAsync(new String[]{ tempFolder.getRoot().getAbsolutePath() });
+		try {
+			SimpleCounter numBytesSpilled = new SimpleCounter();
+			RecordSerializer<SerializationTestType> serializer = new SpanningRecordSerializer<>();
+			RecordDeserializer<SerializationTestType> deserializer =
+				new SpillingAdaptiveSpanningRecordDeserializer<>(ioManager, numBytesSpilled, false);
+
+			testSerializationRoundTrip(originalRecords, segmentSize, serializer, deserializer);
+
+			Assert.assertEquals(numLargeRecordBytes, numBytesSpilled.getCount());
+			// the spilled records are deleted once they are read
+			Assert.assertEquals(0, ioManager.getSpillingDirectories()[0].listFiles().length);
+		} finally {
+			ioManager.shutdown();
+		}
+	}
+
+	@Test
+	public void testRandomRecordsWithZeroCopy() throws Exception {
+		final int segmentSize = 127;
+		final int numValues = 10000;
+
+		RecordSerializer<SerializationTestType> serializer = new SpanningRecordSerializer<>();
+		RecordDeserializer<SerializationTestType> deserializer =
+			new SpillingAdaptiveSpanningRecordDeserializer<>(
+				new String[]{ tempFolder.getRoot().getAbsolutePath() }, true);
+
+		testSerializationRoundTrip(Util.randomRecords(numValues), segmentSize, serializer, deserializer);
+	}
+
+	@Test
+	public void testZeroCopyRetainsConsumedBufferUntilNextRecord() throws Exception {
+		RecordSerializer<IntType> serializer = new SpanningRecordSerializer<>();
+		BufferBuilder bufferBuilder = createBufferBuilder(64);
+		BufferConsumer bufferConsumer = bufferBuilder.createBufferConsumer();
+		for (int i = 0; i < 2; i++) {
+			serializer.serializeRecord(new IntType(i));
+			Assert.assertTrue(serializer.copyToBufferBuilder(bufferBuilder).isFullRecord());
+		}
+		Buffer buffer = buildSingleBuffer(bufferConsumer);
+
+		RecordDeserializer<IntType> deserializer = new SpillingAdaptiveSpanningRecordDeserializer<>(
+			new String[]{ tempFolder.getRoot().getAbsolutePath() }, true);
+		deserializer.setNextBuffer(buffer);
+
+		ReferencingIntType record = new ReferencingIntType();
+		Assert.assertEquals(DeserializationResult.INTERMEDIATE_RECORD_FROM_BUFFER, deserializer.getNextRecord(record));
+		Assert.assertEquals(0, record.getValue());
+		Assert.assertEquals(12, record.referenceableBytes);
+
+		Assert.assertEquals(DeserializationResult.LAST_RECORD_FROM_BUFFER, deserializer.getNextRecord(record));
+		Assert.assertEquals(1, record.getValue());
+		Assert.assertEquals(4, record.referenceableBytes);
+
+		// the consumed buffer is recycled by the caller, but the last record may still reference it
+		deserializer.getCurrentBuffer().recycleBuffer();
+		Assert.assertFalse(buffer.isRecycled());
+
+		// the next record supersedes the last one
+		deserializer.setNextBuffer(buildSingleBuffer(createFilledBufferBuilder(0)));
+		Assert.assertTrue(buffer.isRecycled());
+		deserializer.getCurrentBuffer().recycleBuffer();
+	}
+
 	// -----------------------------------------------------------------------------------------------------------------
 
 	private void testSerializationRoundTrip(Iterable<SerializationTestType> records, int segmentSize) throws Exception {
@@ -206,6 +294,19 @@ public class SpanningRecordSerializationTest extends TestLogger {
 			serializer.copyToBufferBuilder(bufferBuilder));
 	}
 
+	/**
+	 * An {@link IntType} which remembers how many bytes it could have referenced.
+	 */
+	private static class ReferencingIntType extends IntType {
+		private int referenceableBytes;
+
+		@Override
+		public void read(DataInputView in) throws IOException {
+			referenceableBytes = ((ZeroCopyInputView) in).getReferenceableBytes();
+			super.read(in);
+		}
+	}
+
 	private static class BufferAndSerializerResult {
 		private final BufferBuilder bufferBuilder;
 		private final BufferConsumer bufferConsumer;
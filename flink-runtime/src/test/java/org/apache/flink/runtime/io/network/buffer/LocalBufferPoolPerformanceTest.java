@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.buffer;
+
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures the throughput of a {@link LocalBufferPool} with one thread requesting buffers, like
+ * the producing task, and a varying number of threads recycling them, like the netty threads and
+ * the consuming local tasks.
+ */
+public class LocalBufferPoolPerformanceTest extends TestLogger {
+
+	private static final int NUM_REQUESTS = 2_000_000;
+
+	private static final int POOL_SIZE = 64;
+
+	private static final int[] NUM_RECYCLERS = {1, 2, 4};
+
+	private static final int NUM_ROUNDS = 3;
+
+	/** Tells a recycler thread to stop. */
+	private static final Buffer END_OF_REQUESTS = new NetworkBuffer(
+		MemorySegmentFactory.allocateUnpooledSegment(1), FreeingBufferRecycler.INSTANCE);
+
+	@Ignore
+	@Test
+	public void benchMark() throws Exception {
+		for (int numRecyclers : NUM_RECYCLERS) {
+			for (int round = 0; round < NUM_ROUNDS; ++round) {
+				long nanos = runRequestRecycle(numRecyclers);
+				// the first rounds warm up the JIT
+				log.info("{} recycler(s), round {}: {} requests/s",
+					numRecyclers, round, String.format("%.1fM", NUM_REQUESTS / (nanos / 1000.0)));
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static long runRequestRecycle(int numRecyclers) throws Exception {
+		final NetworkBufferPool networkBufferPool = new NetworkBufferPool(POOL_SIZE, 128);
+		final BufferPool bufferPool = networkBufferPool.createBufferPool(POOL_SIZE, POOL_SIZE);
+
+		final AtomicReference<Throwable> error = new AtomicReference<>();
+		final BlockingQueue<Buffer>[] queues = new BlockingQueue[numRecyclers];
+		final Thread[] recyclers = new Thread[numRecyclers];
+
+		for (int i = 0; i < numRecyclers; ++i) {
+			final BlockingQueue<Buffer> queue = new LinkedBlockingQueue<>();
+			queues[i] = queue;
+			recyclers[i] = new Thread(() -> {
+				try {
+					Buffer buffer;
+					while ((buffer = queue.take()) != END_OF_REQUESTS) {
+						buffer.recycleBuffer();
+					}
+				} catch (Throwable t) {
+					error.set(t);
+				}
+			}, "recycler-" + i);
+			recyclers[i].start();
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < NUM_REQUESTS; ++i) {
+			queues[i % numRecyclers].add(bufferPool.requestBufferBlocking());
+		}
+		for (BlockingQueue<Buffer> queue : queues) {
+			queue.add(END_OF_REQUESTS);
+		}
+
+		for (Thread recycler : recyclers) {
+			recycler.join();
+		}
+		long nanos = System.nanoTime() - start;
+
+		if (error.get() != null) {
+			throw new AssertionError(error.get());
+		}
+		assertEquals(POOL_SIZE, bufferPool.getNumberOfAvailableMemorySegments());
+
+		bufferPool.lazyDestroy();
+		networkBufferPool.destroyAllBufferPools();
+		networkBufferPool.destroy();
+		return nanos;
+	}
+}
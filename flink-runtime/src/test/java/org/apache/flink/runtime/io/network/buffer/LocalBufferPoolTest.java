@@ -30,6 +30,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -283,6 +284,82 @@ public class LocalBufferPoolTest {
 		}
 	}
 
+	/**
+	 * Tests that a listener which is registered while the last buffer is recycled concurrently,
+	 * either sees the recycled buffer on registration or is notified about it.
+	 */
+	@Test
+	public void testConcurrentRecycleAndAddBufferListener() throws Exception {
+		for (int i = 0; i < 10_000; i++) {
+			final Buffer buffer = localBufferPool.requestBuffer();
+			assertNotNull(buffer);
+
+			final CompletableFuture<Buffer> notifiedBuffer = new CompletableFuture<>();
+			final BufferListener listener = new BufferListener() {
+				@Override
+				public NotificationResult notifyBufferAvailable(Buffer buffer) {
+					notifiedBuffer.complete(buffer);
+					return NotificationResult.BUFFER_USED_FINISHED;
+				}
+
+				@Override
+				public void notifyBufferDestroyed() {
+				}
+			};
+
+			Future<?> recycler = executor.submit(buffer::recycleBuffer);
+
+			if (localBufferPool.addBufferListener(listener)) {
+				notifiedBuffer.get(60, TimeUnit.SECONDS).recycleBuffer();
+			}
+			recycler.get();
+
+			assertEquals(1, localBufferPool.getNumberOfAvailableMemorySegments());
+		}
+	}
+
+	/**
+	 * Tests that buffers recycled concurrently to changing the size of the pool are not lost and
+	 * that the excess buffers are returned to the network buffer pool.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testConcurrentRecycleAndSetNumBuffers() throws Exception {
+		final int numRecyclers = 4;
+		final int numBuffersPerRecycler = 64;
+
+		localBufferPool.setNumBuffers(numRecyclers * numBuffersPerRecycler);
+
+		final List<Buffer>[] buffers = new List[numRecyclers];
+		for (int i = 0; i < numRecyclers; i++) {
+			buffers[i] = new ArrayList<>();
+			for (int j = 0; j < numBuffersPerRecycler; j++) {
+				buffers[i].add(localBufferPool.requestBuffer());
+			}
+		}
+
+		final Future<?>[] recyclers = new Future[numRecyclers];
+		for (int i = 0; i < numRecyclers; i++) {
+			final List<Buffer> toRecycle = buffers[i];
+			recyclers[i] = executor.submit(() -> toRecycle.forEach(Buffer::recycleBuffer));
+		}
+
+		for (int i = 0; i < 1000; i++) {
+			localBufferPool.setNumBuffers(1 + i % (numRecyclers * numBuffersPerRecycler));
+		}
+
+		for (Future<?> recycler : recyclers) {
+			recycler.get();
+		}
+
+		// the request returns the excess buffers
+		localBufferPool.setNumBuffers(1);
+		Buffer buffer = localBufferPool.requestBuffer();
+		assertNotNull(buffer);
+		assertEquals(1, getNumRequestedFromMemorySegmentPool());
+		buffer.recycleBuffer();
+	}
+
 	@Test
 	public void testDestroyDuringBlockingRequest() throws Exception {
 		// Config
@@ -160,6 +160,103 @@ public class PartitionRequestQueueTest {
 		assertNull(read);
 	}
 
+	/**
+	 * Tests that the buffers of all available readers are written with a single flush if the
+	 * write batch is large enough and that the credit of each reader is respected.
+	 */
+	@Test
+	public void testBatchedBufferWriting() throws Exception {
+		final ServerWriteStatistics statistics = new ServerWriteStatistics();
+		final PartitionRequestQueue queue = new PartitionRequestQueue(1024, Long.MAX_VALUE, statistics);
+		final EmbeddedChannel channel = new EmbeddedChannel(queue);
+
+		// block the channel so that both readers are enqueued before writing
+		ByteBuf channelBlockingBuffer = blockChannel(channel);
+
+		final CreditBasedSequenceNumberingViewReader reader1 = createAvailableReader(queue, 5, 2);
+		final CreditBasedSequenceNumberingViewReader reader2 = createAvailableReader(queue, 5, 10);
+		channel.runPendingTasks();
+		assertEquals(2, queue.getAvailableReaders().size());
+
+		channel.flush();
+		assertSame(channelBlockingBuffer, channel.readOutbound());
+
+		// reader1 only sends as many buffers as it has credit
+		assertEquals(1, statistics.getNumFlushes());
+		assertEquals(7, statistics.getNumFlushedMessages());
+		assertEquals(0, reader1.getNumCreditsAvailable());
+		assertTrue(reader1.hasBuffersAvailable());
+		assertFalse(reader2.hasBuffersAvailable());
+
+		int numMessages1 = 0;
+		int numMessages2 = 0;
+		Object msg;
+		while ((msg = channel.readOutbound()) != null) {
+			assertThat(msg, instanceOf(NettyMessage.BufferResponse.class));
+			NettyMessage.BufferResponse response = (NettyMessage.BufferResponse) msg;
+			if (response.receiverId.equals(reader1.getReceiverId())) {
+				numMessages1++;
+			} else {
+				assertEquals(reader2.getReceiverId(), response.receiverId);
+				numMessages2++;
+			}
+			response.releaseBuffer();
+		}
+		assertEquals(2, numMessages1);
+		assertEquals(5, numMessages2);
+	}
+
+	/**
+	 * Tests that a write batch is flushed once it exceeds the maximum number of bytes.
+	 */
+	@Test
+	public void testBatchedBufferWritingRespectsBatchSize() throws Exception {
+		final ServerWriteStatistics statistics = new ServerWriteStatistics();
+		// the buffers have 10 bytes each
+		final PartitionRequestQueue queue = new PartitionRequestQueue(30, Long.MAX_VALUE, statistics);
+		final EmbeddedChannel channel = new EmbeddedChannel(queue);
+
+		createAvailableReader(queue, 10, 10);
+		channel.runPendingTasks();
+
+		assertEquals(4, statistics.getNumFlushes());
+		assertEquals(10, statistics.getNumFlushedMessages());
+		assertEquals(10, channel.outboundMessages().size());
+	}
+
+	/**
+	 * Tests that every buffer is flushed on its own without write batching.
+	 */
+	@Test
+	public void testUnbatchedBufferWriting() throws Exception {
+		final ServerWriteStatistics statistics = new ServerWriteStatistics();
+		final PartitionRequestQueue queue = new PartitionRequestQueue(0, 0L, statistics);
+		final EmbeddedChannel channel = new EmbeddedChannel(queue);
+
+		createAvailableReader(queue, 10, 10);
+		channel.runPendingTasks();
+
+		assertEquals(10, statistics.getNumFlushes());
+		assertEquals(10, statistics.getNumFlushedMessages());
+		assertEquals(10, channel.outboundMessages().size());
+	}
+
+	private static CreditBasedSequenceNumberingViewReader createAvailableReader(
+			PartitionRequestQueue queue,
+			int numBuffers,
+			int initialCredit) throws IOException {
+
+		final CreditBasedSequenceNumberingViewReader reader =
+			new CreditBasedSequenceNumberingViewReader(new InputChannelID(), initialCredit, queue);
+		reader.requestSubpartitionView(
+			(partitionId, index, availabilityListener) -> new DefaultBufferResultSubpartitionView(numBuffers),
+			new ResultPartitionID(),
+			0);
+		queue.notifyReaderCreated(reader);
+		reader.notifyDataAvailable();
+		return reader;
+	}
+
 	private static class DefaultBufferResultSubpartitionView extends NoOpResultSubpartitionView {
 		/** Number of buffer in the backlog to report with every {@link #getNextBuffer()} call. */
 		private final AtomicInteger buffersInBacklog;
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition;
+
+import org.apache.flink.runtime.io.network.partition.ResultSubpartition.BufferAndBacklog;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils.createFilledBufferConsumer;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Measures the throughput of the buffer handoff of a {@link PipelinedSubpartition} between a
+ * producer thread and a consumer thread which, like the netty and the local input channel
+ * consumers, only polls after being notified about available data.
+ */
+public class PipelinedSubpartitionPerformanceTest extends TestLogger {
+
+	private static final int NUM_BUFFERS = 5_000_000;
+
+	private static final int BUFFER_SIZE = 64;
+
+	private static final int FLUSH_INTERVAL = 100;
+
+	private static final int NUM_ROUNDS = 5;
+
+	@Ignore
+	@Test
+	public void benchMark() throws Exception {
+		for (int round = 0; round < NUM_ROUNDS; ++round) {
+			long nanos = runProduceConsume();
+			// the first rounds warm up the JIT
+			log.info("Round {}: {} buffers/s", round, String.format("%.1fM", NUM_BUFFERS / (nanos / 1000.0)));
+		}
+	}
+
+	private static long runProduceConsume() throws Exception {
+		final PipelinedSubpartition subpartition = new PipelinedSubpartition(0, mock(InternalResultPartition.class));
+
+		final Semaphore notifications = new Semaphore(0);
+		final PipelinedSubpartitionView view = subpartition.createReadView(notifications::release);
+
+		final AtomicReference<Throwable> error = new AtomicReference<>();
+		final long[] numConsumed = new long[1];
+
+		Thread consumer = new Thread(() -> {
+			try {
+				while (numConsumed[0] < NUM_BUFFERS) {
+					notifications.acquire();
+
+					BufferAndBacklog next;
+					do {
+						next = view.getNextBuffer();
+						if (next != null) {
+							next.buffer().recycleBuffer();
+							numConsumed[0]++;
+						}
+					} while (next != null && next.isMoreAvailable());
+				}
+			} catch (Throwable t) {
+				error.set(t);
+			}
+		}, "consumer");
+
+		long start = System.nanoTime();
+		consumer.start();
+
+		for (int i = 1; i <= NUM_BUFFERS; ++i) {
+			subpartition.add(createFilledBufferConsumer(BUFFER_SIZE, BUFFER_SIZE));
+			if (i % FLUSH_INTERVAL == 0) {
+				subpartition.flush();
+			}
+		}
+		subpartition.flush();
+
+		consumer.join();
+		long nanos = System.nanoTime() - start;
+
+		if (error.get() != null) {
+			throw new AssertionError(error.get());
+		}
+		assertEquals(NUM_BUFFERS, numConsumed[0]);
+
+		subpartition.release();
+		return nanos;
+	}
+}
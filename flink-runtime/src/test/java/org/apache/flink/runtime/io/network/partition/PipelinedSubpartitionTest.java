@@ -21,10 +21,13 @@ package org.apache.flink.runtime.io.network.partition;
 import org.apache.flink.core.memory.MemorySegment;
 import org.apache.flink.core.memory.MemorySegmentFactory;
 import org.apache.flink.runtime.event.AbstractEvent;
+import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
+import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
 import org.apache.flink.runtime.io.network.buffer.BufferBuilder;
 import org.apache.flink.runtime.io.network.buffer.BufferConsumer;
 import org.apache.flink.runtime.io.network.buffer.BufferProvider;
+import org.apache.flink.runtime.io.network.buffer.BufferRecycler;
 import org.apache.flink.runtime.io.network.partition.ResultSubpartition.BufferAndBacklog;
 import org.apache.flink.runtime.io.network.util.TestConsumerCallback;
 import org.apache.flink.runtime.io.network.util.TestPooledBufferProvider;
@@ -37,14 +40,18 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils.createBufferBuilder;
 import static org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils.createEventBufferConsumer;
 import static org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils.createFilledBufferBuilder;
 import static org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils.createFilledBufferConsumer;
+import static org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils.fillBufferBuilder;
 import static org.apache.flink.runtime.io.network.util.TestBufferFactory.BUFFER_SIZE;
 import static org.apache.flink.util.FutureUtil.waitForAll;
 import static org.apache.flink.util.Preconditions.checkState;
@@ -367,6 +374,194 @@ public class PipelinedSubpartitionTest extends SubpartitionTestBase {
 		testProduceConsume(true, true);
 	}
 
+	/**
+	 * Races the producer, which adds unfinished buffers, flushes and finishes the subpartition,
+	 * with the consumer, which polls and waits for notifications. After some of the flushes the
+	 * producer waits until the consumer has read all of the data, so that a lost notification
+	 * fails the test instead of being covered by a later one.
+	 */
+	@Test
+	public void testConcurrentAddFlushAndPollLoseNoNotification() throws Exception {
+		final int numValues = 100_000;
+
+		final PipelinedSubpartition subpartition = createSubpartition();
+		final NotifiedConsumer consumer = new NotifiedConsumer();
+		consumer.setView(subpartition.createReadView(consumer));
+
+		Future<Boolean> producerResult = executorService.submit(() -> {
+			Random random = new Random();
+			ByteBuffer value = ByteBuffer.allocate(Integer.BYTES);
+			BufferBuilder bufferBuilder = null;
+
+			for (int i = 0; i < numValues; i++) {
+				if (bufferBuilder == null || bufferBuilder.isFull()) {
+					if (bufferBuilder != null) {
+						bufferBuilder.finish();
+					}
+					bufferBuilder = createBufferBuilder(16 * Integer.BYTES);
+					subpartition.add(bufferBuilder.createBufferConsumer());
+				}
+
+				value.putInt(0, i);
+				checkState(bufferBuilder.appendAndCommit(value) == Integer.BYTES);
+				value.rewind();
+
+				int action = random.nextInt(100);
+				if (action < 5) {
+					subpartition.flush();
+				} else if (action == 5) {
+					subpartition.flush();
+					consumer.awaitNumValues(i + 1, 30_000L);
+				}
+			}
+
+			bufferBuilder.finish();
+			subpartition.finish();
+			return true;
+		});
+		Future<Boolean> consumerResult = executorService.submit(consumer);
+
+		waitForAll(60_000L, producerResult, consumerResult);
+		assertEquals(numValues, consumer.getNumValues());
+	}
+
+	/**
+	 * Races the release of the subpartition with the producer and the consumer. Every buffer
+	 * must be recycled, no matter whether it was added before, during or after the release.
+	 */
+	@Test
+	public void testConcurrentReleaseRecyclesAllBuffers() throws Exception {
+		final Random random = new Random();
+
+		for (int round = 0; round < 100; round++) {
+			final PipelinedSubpartition subpartition = createSubpartition();
+			final PipelinedSubpartitionView view = subpartition.createReadView(new NoOpBufferAvailablityListener());
+			final AtomicInteger numAllocated = new AtomicInteger();
+			final AtomicInteger numRecycled = new AtomicInteger();
+			final BufferRecycler recycler = memorySegment -> numRecycled.incrementAndGet();
+
+			Future<Boolean> producerResult = executorService.submit(() -> {
+				for (int i = 0; i < 10_000; i++) {
+					BufferBuilder bufferBuilder = new BufferBuilder(
+						MemorySegmentFactory.allocateUnpooledSegment(64), recycler);
+					numAllocated.incrementAndGet();
+					BufferConsumer bufferConsumer = bufferBuilder.createBufferConsumer();
+					if (!subpartition.add(bufferConsumer)) {
+						return true;
+					}
+					fillBufferBuilder(bufferBuilder, 64).finish();
+					if (i % 7 == 0) {
+						subpartition.flush();
+					}
+				}
+				subpartition.finish();
+				return true;
+			});
+			Future<Boolean> consumerResult = executorService.submit(() -> {
+				while (!view.isReleased()) {
+					BufferAndBacklog next = view.getNextBuffer();
+					if (next != null) {
+						next.buffer().recycleBuffer();
+					} else {
+						view.isAvailable();
+						view.nextBufferIsEvent();
+					}
+				}
+				return true;
+			});
+
+			Thread.sleep(random.nextInt(3));
+			subpartition.release();
+
+			waitForAll(60_000L, producerResult, consumerResult);
+			assertEquals(numAllocated.get(), numRecycled.get());
+		}
+	}
+
+	/**
+	 * Consumer which polls the subpartition until no more data is available and then waits
+	 * for a notification. It expects consecutive int values and the end of the partition.
+	 */
+	private static class NotifiedConsumer implements Callable<Boolean>, BufferAvailabilityListener {
+
+		private final Object notificationLock = new Object();
+
+		private boolean isNotified;
+
+		private PipelinedSubpartitionView view;
+
+		private volatile int numValues;
+
+		void setView(PipelinedSubpartitionView view) {
+			this.view = view;
+		}
+
+		int getNumValues() {
+			return numValues;
+		}
+
+		@Override
+		public void notifyDataAvailable() {
+			synchronized (notificationLock) {
+				isNotified = true;
+				notificationLock.notifyAll();
+			}
+		}
+
+		@Override
+		public Boolean call() throws Exception {
+			while (true) {
+				awaitNotification();
+
+				BufferAndBacklog next;
+				while ((next = view.getNextBuffer()) != null) {
+					Buffer buffer = next.buffer();
+					if (!buffer.isBuffer()) {
+						assertEquals(EndOfPartitionEvent.class,
+							EventSerializer.fromBuffer(buffer, getClass().getClassLoader()).getClass());
+						buffer.recycleBuffer();
+						return true;
+					}
+
+					ByteBuffer values = buffer.getNioBufferReadable();
+					while (values.hasRemaining()) {
+						assertEquals(numValues, values.getInt());
+						numValues++;
+					}
+					buffer.recycleBuffer();
+
+					if (!next.isMoreAvailable()) {
+						break;
+					}
+				}
+			}
+		}
+
+		private void awaitNotification() throws InterruptedException {
+			synchronized (notificationLock) {
+				long deadline = System.currentTimeMillis() + 30_000L;
+				while (!isNotified) {
+					long timeout = deadline - System.currentTimeMillis();
+					if (timeout <= 0) {
+						fail("The consumer was not notified after " + numValues + " values.");
+					}
+					notificationLock.wait(timeout);
+				}
+				isNotified = false;
+			}
+		}
+
+		void awaitNumValues(int expectedNumValues, long timeoutMillis) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + timeoutMillis;
+			while (numValues < expectedNumValues) {
+				if (System.currentTimeMillis() > deadline) {
+					fail("The consumer read " + numValues + " of " + expectedNumValues + " flushed values.");
+				}
+				Thread.sleep(1);
+			}
+		}
+	}
+
 	/**
 	 * Verifies that the isReleased() check of the view checks the parent
 	 * subpartition.
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition;
+
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SpscQueue}.
+ */
+public class SpscQueueTest extends TestLogger {
+
+	@Test
+	public void testEmptyQueue() {
+		SpscQueue<Integer> queue = new SpscQueue<>();
+
+		assertTrue(queue.isEmpty());
+		assertEquals(0, queue.size());
+		assertNull(queue.peek());
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void testOfferAndPollAcrossChunks() {
+		SpscQueue<Integer> queue = new SpscQueue<>();
+
+		for (int round = 0; round < 10; ++round) {
+			// the queue grows and shrinks across multiple chunks
+			for (int i = 0; i < 100; ++i) {
+				queue.offer(round * 1000 + i);
+			}
+			assertEquals(100, queue.size());
+
+			for (int i = 0; i < 100; ++i) {
+				assertEquals(Integer.valueOf(round * 1000 + i), queue.peek());
+				assertEquals(Integer.valueOf(round * 1000 + i), queue.poll());
+			}
+			assertTrue(queue.isEmpty());
+		}
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void testConcurrentOfferAndPoll() throws Exception {
+		final int numElements = 1_000_000;
+		final SpscQueue<Integer> queue = new SpscQueue<>();
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		try {
+			Future<?> producer = executor.submit(() -> {
+				for (int i = 0; i < numElements; ++i) {
+					queue.offer(i);
+				}
+			});
+
+			int expected = 0;
+			while (expected < numElements) {
+				Integer element = queue.poll();
+				if (element == null) {
+					Thread.yield();
+					continue;
+				}
+				assertEquals(expected++, element.intValue());
+			}
+
+			producer.get();
+			assertTrue(queue.isEmpty());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
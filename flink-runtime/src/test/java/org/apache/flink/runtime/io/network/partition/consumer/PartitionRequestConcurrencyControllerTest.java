@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition.consumer;
+
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link PartitionRequestConcurrencyController}.
+ */
+public class PartitionRequestConcurrencyControllerTest extends TestLogger {
+
+	private static final long INTERVAL_NANOS = 1_000_000_000L;
+
+	private static final long LATENCY_NANOS = 10_000_000L;
+
+	private long now;
+
+	private long bytesReceived;
+
+	@Test
+	public void testIncreaseWhileThroughputScales() {
+		PartitionRequestConcurrencyController controller = new PartitionRequestConcurrencyController(16, 100, 1000, now);
+
+		// each request delivers 1 MB/s
+		assertEquals(18, adjust(controller, 16, 0, true));
+		assertEquals(20, adjust(controller, 18, 0, true));
+		assertEquals(22, adjust(controller, 20, 0, true));
+	}
+
+	@Test
+	public void testRevertIncreaseWithoutThroughputGain() {
+		PartitionRequestConcurrencyController controller = new PartitionRequestConcurrencyController(16, 100, 1000, now);
+
+		assertEquals(18, adjust(controller, 16, 0, true));
+
+		// the additional requests do not raise the throughput of 16 MB/s
+		assertEquals(16, adjustWithThroughput(controller, 16, 18, 0, true));
+	}
+
+	@Test
+	public void testHalveOnFloatingBufferShortage() {
+		PartitionRequestConcurrencyController controller = new PartitionRequestConcurrencyController(16, 100, 1000, now);
+
+		assertEquals(18, adjust(controller, 16, 0, true));
+		assertEquals(20, adjust(controller, 18, 0, true));
+		assertEquals(22, adjust(controller, 20, 0, true));
+		assertEquals(24, adjust(controller, 22, 0, true));
+		assertEquals(27, adjust(controller, 24, 0, true));
+		assertEquals(30, adjust(controller, 27, 0, true));
+		assertEquals(33, adjust(controller, 30, 0, true));
+
+		// a few channels waiting for floating buffers do not limit the throughput
+		assertEquals(37, adjust(controller, 33, 16, true));
+
+		assertEquals(18, adjust(controller, 37, 19, true));
+		// never below the minimum
+		assertEquals(16, adjust(controller, 18, 18, true));
+	}
+
+	@Test
+	public void testDecreaseOnLatencyIncrease() {
+		PartitionRequestConcurrencyController controller = new PartitionRequestConcurrencyController(16, 100, 1000, now);
+
+		assertEquals(18, adjust(controller, 16, 0, true, LATENCY_NANOS));
+		assertEquals(20, adjust(controller, 18, 0, true, LATENCY_NANOS));
+
+		// the shuffle service slows down
+		assertEquals(18, adjust(controller, 20, 0, true, 3 * LATENCY_NANOS));
+	}
+
+	@Test
+	public void testNoIncreaseWithoutPendingRequests() {
+		PartitionRequestConcurrencyController controller = new PartitionRequestConcurrencyController(16, 100, 1000, now);
+
+		assertEquals(16, adjust(controller, 16, 0, false));
+	}
+
+	@Test
+	public void testBoundedByMaximum() {
+		PartitionRequestConcurrencyController controller = new PartitionRequestConcurrencyController(16, 17, 1000, now);
+
+		assertEquals(17, adjust(controller, 16, 0, true));
+		assertEquals(17, adjust(controller, 17, 0, true));
+	}
+
+	@Test
+	public void testAdjustmentInterval() {
+		PartitionRequestConcurrencyController controller = new PartitionRequestConcurrencyController(16, 100, 1000, now);
+
+		assertEquals(false, controller.isAdjustmentDue(now + INTERVAL_NANOS - 1));
+		assertEquals(true, controller.isAdjustmentDue(now + INTERVAL_NANOS));
+	}
+
+	// ------------------------------------------------------------------------
+
+	/** Adjusts the controller after an interval in which each running request delivered 1 MB/s. */
+	private int adjust(
+			PartitionRequestConcurrencyController controller,
+			int numRunningRequests,
+			int numWaitingForFloatingBuffers,
+			boolean hasPendingRequests) {
+		return adjust(controller, numRunningRequests, numWaitingForFloatingBuffers, hasPendingRequests, -1);
+	}
+
+	private int adjust(
+			PartitionRequestConcurrencyController controller,
+			int numRunningRequests,
+			int numWaitingForFloatingBuffers,
+			boolean hasPendingRequests,
+			long latencyNanos) {
+		now += INTERVAL_NANOS;
+		bytesReceived += numRunningRequests * 1_000_000L;
+		return controller.adjust(
+			now, bytesReceived, numRunningRequests, numWaitingForFloatingBuffers, latencyNanos, hasPendingRequests);
+	}
+
+	/** Adjusts the controller after an interval with the given throughput in MB/s. */
+	private int adjustWithThroughput(
+			PartitionRequestConcurrencyController controller,
+			int throughputMegabytes,
+			int numRunningRequests,
+			int numWaitingForFloatingBuffers,
+			boolean hasPendingRequests) {
+		now += INTERVAL_NANOS;
+		bytesReceived += throughputMegabytes * 1_000_000L;
+		return controller.adjust(
+			now, bytesReceived, numRunningRequests, numWaitingForFloatingBuffers, -1, hasPendingRequests);
+	}
+}
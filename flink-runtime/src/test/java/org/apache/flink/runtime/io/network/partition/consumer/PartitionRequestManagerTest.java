@@ -48,6 +48,7 @@ import org.apache.flink.runtime.query.KvStateRegistry;
 import org.apache.flink.runtime.taskmanager.TaskActions;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
@@ -457,6 +458,146 @@ public class PartitionRequestManagerTest {
 		verify(partitionRequestClient, times(4)).requestSubpartition(any(ResultPartitionID.class), anyInt(), any(RemoteInputChannel.class), anyInt());
 	}
 
+	@Test
+	public void testAdaptiveConcurrentPartitionRequests() throws Exception {
+		final ResultPartitionManager partitionManager = mock(ResultPartitionManager.class);
+		PartitionRequestClient partitionRequestClient = mock(PartitionRequestClient.class);
+		ConnectionManager connectionManager = mock(ConnectionManager.class);
+		when(connectionManager.createPartitionRequestClient(any(ConnectionID.class))).thenReturn(partitionRequestClient);
+
+		NetworkBufferPool networkBufferPool = new NetworkBufferPool(100, 32);
+		final NetworkEnvironment network = createNetworkEnvironment(networkBufferPool, partitionManager, connectionManager,
+			2, 8, 128, 0, 2, 0, 0);
+
+		ScriptedConcurrencyController controller = new ScriptedConcurrencyController(1, 4);
+		PartitionRequestManager partitionRequestManager = new PartitionRequestManager(4, 1, controller);
+		final SingleInputGate inputGate = createInputGate(4, network, partitionRequestManager);
+
+		final ConnectionID connectionId = new ConnectionID(new InetSocketAddress("localhost", 5000), 0);
+		List<InputChannel> remotes = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			ResultPartitionID partitionId = new ResultPartitionID(new IntermediateResultPartitionID(), new ExecutionAttemptID());
+			InputChannel remote = addRemoteInputChannel(network, inputGate, connectionId, partitionId, i);
+			inputGate.setInputChannel(partitionId.getPartitionId(), remote);
+			remotes.add(remote);
+		}
+
+		// the concurrency starts at the minimum
+		inputGate.requestPartitions();
+		assertEquals(1, partitionRequestManager.getConcurrentPartitionRequests());
+		verify(partitionRequestClient, times(1)).requestSubpartition(any(ResultPartitionID.class), anyInt(), any(RemoteInputChannel.class), anyInt());
+
+		// the additional quota is assigned to the pending channels right away
+		controller.nextConcurrency = 3;
+		partitionRequestManager.onBufferConsumed(1024);
+		assertEquals(3, partitionRequestManager.getConcurrentPartitionRequests());
+		assertEquals(3, partitionRequestManager.getNumRunningPartitionRequests(inputGate));
+		assertEquals(1, partitionRequestManager.getNumPendingPartitionRequests(inputGate));
+		verify(partitionRequestClient, times(3)).requestSubpartition(any(ResultPartitionID.class), anyInt(), any(RemoteInputChannel.class), anyInt());
+		assertEquals(1024, controller.lastBytesReceived);
+
+		// the running requests are not cancelled, but their quota is revoked when they finish
+		controller.nextConcurrency = 1;
+		partitionRequestManager.onBufferConsumed(0);
+		assertEquals(1, partitionRequestManager.getConcurrentPartitionRequests());
+
+		partitionRequestManager.onInputChannelFinish(inputGate, remotes.get(0), false);
+		partitionRequestManager.onInputChannelFinish(inputGate, remotes.get(1), false);
+		assertEquals(1, partitionRequestManager.getNumRunningPartitionRequests(inputGate));
+		assertEquals(1, partitionRequestManager.getNumPendingPartitionRequests(inputGate));
+		verify(partitionRequestClient, times(3)).requestSubpartition(any(ResultPartitionID.class), anyInt(), any(RemoteInputChannel.class), anyInt());
+
+		// once the quota is revoked, it is reassigned again
+		partitionRequestManager.onInputChannelFinish(inputGate, remotes.get(2), false);
+		assertEquals(1, partitionRequestManager.getNumRunningPartitionRequests(inputGate));
+		assertEquals(0, partitionRequestManager.getNumPendingPartitionRequests(inputGate));
+		verify(partitionRequestClient, times(4)).requestSubpartition(any(ResultPartitionID.class), anyInt(), any(RemoteInputChannel.class), anyInt());
+	}
+
+	@Test
+	public void testConcurrencyUnderCreditBasedFlowControl() throws Exception {
+		final ResultPartitionManager partitionManager = mock(ResultPartitionManager.class);
+		PartitionRequestClient partitionRequestClient = mock(PartitionRequestClient.class);
+		ConnectionManager connectionManager = mock(ConnectionManager.class);
+		when(connectionManager.createPartitionRequestClient(any(ConnectionID.class))).thenReturn(partitionRequestClient);
+
+		NetworkBufferPool networkBufferPool = new NetworkBufferPool(100, 32);
+		final NetworkEnvironment network = createNetworkEnvironment(networkBufferPool, partitionManager, connectionManager,
+			2, 8, 128, 0, 2, 0, 0);
+
+		PartitionRequestConcurrencyController controller = new PartitionRequestConcurrencyController(1, 4, 1, System.nanoTime());
+		PartitionRequestManager partitionRequestManager = new PartitionRequestManager(4, 1, controller);
+		final SingleInputGate inputGate = createInputGate(4, network, partitionRequestManager);
+		inputGate.setBufferPool(networkBufferPool.createBufferPool(4, 4));
+
+		final ConnectionID connectionId = new ConnectionID(new InetSocketAddress("localhost", 5000), 0);
+		for (int i = 0; i < 4; i++) {
+			ResultPartitionID partitionId = new ResultPartitionID(new IntermediateResultPartitionID(), new ExecutionAttemptID());
+			InputChannel remote = addRemoteInputChannel(network, inputGate, connectionId, partitionId, i);
+			inputGate.setInputChannel(partitionId.getPartitionId(), remote);
+		}
+
+		// the exclusive buffers are assigned along with the partition requests
+		inputGate.requestPartitions();
+		ArgumentCaptor<RemoteInputChannel> requested = ArgumentCaptor.forClass(RemoteInputChannel.class);
+		verify(partitionRequestClient, times(1)).requestSubpartition(any(ResultPartitionID.class), anyInt(), requested.capture(), anyInt());
+		final RemoteInputChannel first = requested.getValue();
+
+		// the sender backlog takes all floating buffers, which is the steady state of credit-based flow control
+		first.onSenderBacklog(4);
+		assertEquals(0, inputGate.getBufferPool().getNumberOfAvailableMemorySegments());
+		assertEquals(0, inputGate.getBufferPool().getNumberOfBufferListeners());
+
+		Thread.sleep(2);
+		partitionRequestManager.onBufferConsumed(1024);
+		assertEquals(2, partitionRequestManager.getConcurrentPartitionRequests());
+
+		requested = ArgumentCaptor.forClass(RemoteInputChannel.class);
+		verify(partitionRequestClient, times(2)).requestSubpartition(any(ResultPartitionID.class), anyInt(), requested.capture(), anyInt());
+		final RemoteInputChannel second = requested.getAllValues().get(1);
+
+		// both running channels starve for floating buffers
+		second.onSenderBacklog(1);
+		first.onSenderBacklog(5);
+		assertEquals(2, inputGate.getBufferPool().getNumberOfBufferListeners());
+
+		Thread.sleep(2);
+		partitionRequestManager.onBufferConsumed(1024);
+		assertEquals(1, partitionRequestManager.getConcurrentPartitionRequests());
+	}
+
+	/**
+	 * A {@link PartitionRequestConcurrencyController} which adjusts the concurrency as told on each call.
+	 */
+	private static class ScriptedConcurrencyController extends PartitionRequestConcurrencyController {
+
+		int nextConcurrency;
+
+		long lastBytesReceived;
+
+		ScriptedConcurrencyController(int minConcurrency, int maxConcurrency) {
+			super(minConcurrency, maxConcurrency, 1, 0);
+			this.nextConcurrency = minConcurrency;
+		}
+
+		@Override
+		boolean isAdjustmentDue(long nowNanos) {
+			return true;
+		}
+
+		@Override
+		int adjust(
+				long nowNanos,
+				long bytesReceived,
+				int numRunningRequests,
+				int numWaitingForFloatingBuffers,
+				long latencyNanos,
+				boolean hasPendingRequests) {
+			lastBytesReceived = bytesReceived;
+			return nextConcurrency;
+		}
+	}
+
 	private static List<int[]> generateParameters() {
 		List<int[]> parameters = new LinkedList<>();
 		for (int numberOfGate = 2; numberOfGate <= 5; ++numberOfGate) {
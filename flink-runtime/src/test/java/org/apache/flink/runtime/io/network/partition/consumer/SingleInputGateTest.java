@@ -410,6 +410,42 @@ public class SingleInputGateTest {
 		}
 	}
 
+	/**
+	 * Tests that the zero copy flag of the deployment descriptor is forwarded to the input gate.
+	 */
+	@Test
+	public void testZeroCopyConfiguration() throws Exception {
+		InputChannelDeploymentDescriptor[] channelDescs = new InputChannelDeploymentDescriptor[] {
+			new InputChannelDeploymentDescriptor(new ResultPartitionID(), ResultPartitionLocation.createLocal())};
+
+		final NetworkEnvironment netEnv = createNetworkEnvironment(2, 8, 128, 0, 2, 0, 0);
+
+		for (boolean zeroCopyEnabled : new boolean[] {false, true}) {
+			InputGateDeploymentDescriptor gateDesc = new InputGateDeploymentDescriptor(
+				new IntermediateDataSetID(), ResultPartitionType.PIPELINED, 0, channelDescs, zeroCopyEnabled);
+
+			SingleInputGate gate = SingleInputGate.create(
+				"TestTask",
+				new JobID(),
+				new ExecutionAttemptID(),
+				gateDesc,
+				netEnv,
+				mock(TaskActions.class),
+				UnregisteredMetricGroups.createUnregisteredTaskMetricGroup().getIOMetricGroup(),
+				new PartitionRequestManager(Integer.MAX_VALUE, 1),
+				BlockingShuffleType.TM,
+				Executors.newSingleThreadExecutor());
+
+			try {
+				assertEquals(zeroCopyEnabled, gate.isZeroCopyEnabled());
+			} finally {
+				gate.releaseAllResources();
+			}
+		}
+
+		netEnv.shutdown();
+	}
+
 	/**
 	 * Tests that input gate requests and assigns network buffers for remote input channel.
 	 */
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition.external;
+
+import org.apache.flink.core.testutils.OneShotLatch;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.runtime.metrics.util.InterceptingOperatorMetricGroup;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link DiskIOScheduler}.
+ */
+public class DiskIOSchedulerTest extends TestLogger {
+
+	@Test
+	public void testSubmittedViewsAreOrderedByComparator() throws Exception {
+		DiskIOScheduler scheduler = new DiskIOScheduler(
+			"disk", 1, new LocalityBasedSubpartitionViewComparator(), Executors.defaultThreadFactory());
+
+		try {
+			// Occupies the only thread so that the views are queued.
+			OneShotLatch blocker = new OneShotLatch();
+			scheduler.submit(() -> {
+				try {
+					blocker.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+
+			List<Integer> servedSubpartitions = Collections.synchronizedList(new ArrayList<>());
+			List<Future<?>> futures = new ArrayList<>();
+			for (int subpartitionIndex : new int[]{3, 1, 2, 0}) {
+				futures.add(scheduler.submit(createView("dir", subpartitionIndex, servedSubpartitions)));
+			}
+			assertEquals(4, scheduler.getQueueLength());
+
+			blocker.trigger();
+			for (Future<?> future : futures) {
+				future.get(10, TimeUnit.SECONDS);
+			}
+
+			assertEquals(Arrays.asList(0, 1, 2, 3), servedSubpartitions);
+			assertEquals(0, scheduler.getQueueLength());
+			assertEquals(5, scheduler.getNumReads());
+			assertTrue(scheduler.getTotalQueuedNanos() > 0);
+			assertTrue(scheduler.getTotalServedNanos() > 0);
+
+			scheduler.logStatistics();
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testRegisterMetrics() throws Exception {
+		DiskIOScheduler scheduler = new DiskIOScheduler("disk", 1, null, Executors.defaultThreadFactory());
+
+		try {
+			InterceptingOperatorMetricGroup metricGroup = new InterceptingOperatorMetricGroup();
+			scheduler.registerMetrics(metricGroup);
+
+			OneShotLatch blocker = new OneShotLatch();
+			Future<?> blockingRead = scheduler.submit(() -> {
+				try {
+					blocker.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			Future<?> queuedRead = scheduler.submit(() -> {});
+
+			while (scheduler.getActiveCount() == 0) {
+				Thread.sleep(10);
+			}
+			assertEquals(1, ((Gauge<?>) metricGroup.get("numActiveThreads")).getValue());
+			assertEquals(1, ((Gauge<?>) metricGroup.get("queueLength")).getValue());
+			assertTrue(scheduler.hasPendingReads());
+
+			blocker.trigger();
+			blockingRead.get(10, TimeUnit.SECONDS);
+			queuedRead.get(10, TimeUnit.SECONDS);
+
+			// the statistics are updated after the futures are completed
+			while (scheduler.getNumReads() < 2) {
+				Thread.sleep(10);
+			}
+			assertEquals(2L, ((Gauge<?>) metricGroup.get("numReads")).getValue());
+			assertEquals(0, ((Gauge<?>) metricGroup.get("queueLength")).getValue());
+			assertFalse(scheduler.hasPendingReads());
+			assertNotNull(metricGroup.get("totalQueuedTimeMs"));
+			assertNotNull(metricGroup.get("totalServedTimeMs"));
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	private static ExternalBlockSubpartitionView createView(
+			String resultPartitionDir, int subpartitionIndex, List<Integer> servedSubpartitions) {
+
+		ExternalBlockSubpartitionView view = mock(ExternalBlockSubpartitionView.class);
+		when(view.getResultPartitionDir()).thenReturn(resultPartitionDir);
+		when(view.getSubpartitionIndex()).thenReturn(subpartitionIndex);
+		doAnswer(invocation -> servedSubpartitions.add(subpartitionIndex)).when(view).run();
+		return view;
+	}
+}
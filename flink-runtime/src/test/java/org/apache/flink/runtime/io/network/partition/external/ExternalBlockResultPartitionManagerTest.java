@@ -24,7 +24,9 @@ import org.apache.flink.runtime.io.network.partition.ResultPartitionID;
 import org.apache.flink.runtime.io.network.partition.ResultSubpartitionView;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -38,6 +40,7 @@ import java.util.Random;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doAnswer;
@@ -57,6 +60,9 @@ public class ExternalBlockResultPartitionManagerTest {
 
 	private ExternalBlockResultPartitionManager resultPartitionManager;
 
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 	private final LocalResultPartitionResolver localResultPartitionResolver = mock(LocalResultPartitionResolver.class);
 
 	private final Map<String, String> dirToDiskType;
@@ -115,6 +121,7 @@ public class ExternalBlockResultPartitionManagerTest {
 		when(externalBlockShuffleServiceConfiguration.getDirToDiskType()).thenReturn(dirToDiskType);
 		when(externalBlockShuffleServiceConfiguration.getDiskTypeToIOThreadNum()).thenReturn(diskTypeToIOThreadNum);
 		when(externalBlockShuffleServiceConfiguration.getWaitCreditDelay()).thenReturn(2L);
+		when(externalBlockShuffleServiceConfiguration.getMmapWindowSizeInBytes()).thenReturn(0L);
 		when(externalBlockShuffleServiceConfiguration.getDefaultConsumedPartitionTTL()).thenReturn(consumedPartitionTTL);
 		when(externalBlockShuffleServiceConfiguration.getDefaultPartialConsumedPartitionTTL()).thenReturn(partialConsumedPartitionTTL);
 
@@ -158,6 +165,33 @@ public class ExternalBlockResultPartitionManagerTest {
 		});
 	}
 
+	@Test
+	public void testDirectoriesOnSameDiskShareThreadPool() throws Exception {
+		// Both directories are on the file system of the temporary folder.
+		String ssdDir = temporaryFolder.newFolder().getAbsolutePath() + "/";
+		String mockDiskDir = temporaryFolder.newFolder().getAbsolutePath() + "/";
+
+		Map<String, String> sharedDiskDirToDiskType = new HashMap<>();
+		sharedDiskDirToDiskType.put(ssdDir, "SSD");
+		sharedDiskDirToDiskType.put(mockDiskDir, "MOCK_DISK_TYPE");
+		when(externalBlockShuffleServiceConfiguration.getDirToDiskType()).thenReturn(sharedDiskDirToDiskType);
+
+		ExternalBlockResultPartitionManager sharedDiskPartitionManager =
+			new ExternalBlockResultPartitionManager(externalBlockShuffleServiceConfiguration);
+
+		try {
+			assertEquals(1, sharedDiskPartitionManager.getDiskToThreadPool().size());
+			assertSame(sharedDiskPartitionManager.dirToThreadPool.get(ssdDir),
+				sharedDiskPartitionManager.dirToThreadPool.get(mockDiskDir));
+
+			// The disk is served by the largest number of threads configured for its directories.
+			assertEquals((int) diskTypeToIOThreadNum.get("SSD"),
+				sharedDiskPartitionManager.dirToThreadPool.get(ssdDir).getCorePoolSize());
+		} finally {
+			sharedDiskPartitionManager.stop();
+		}
+	}
+
 	@Test
 	public void testInitializeAndStopApplication() {
 		resultPartitionManager.initializeApplication("user", "flinkStreamingJob1");
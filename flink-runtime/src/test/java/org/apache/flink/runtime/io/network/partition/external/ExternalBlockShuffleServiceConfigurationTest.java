@@ -191,6 +191,8 @@ public class ExternalBlockShuffleServiceConfigurationTest {
 		configuration.setInteger(ExternalBlockShuffleServiceOptions.UNFINISHED_PARTITION_TTL_IN_SECONDS, 44);
 		configuration.setLong(ExternalBlockShuffleServiceOptions.DISK_SCAN_INTERVAL_IN_MS, 40000L);
 		configuration.setLong(ExternalBlockShuffleServiceOptions.WAIT_CREDIT_DELAY_IN_MS, 22L);
+		configuration.setBoolean(ExternalBlockShuffleServiceOptions.MMAP_READ_ENABLE, true);
+		configuration.setInteger(ExternalBlockShuffleServiceOptions.MMAP_READ_WINDOW_SIZE_IN_MB, 16);
 
 		ExternalBlockShuffleServiceConfiguration externalBlockShuffleServiceConfiguration =
 			ExternalBlockShuffleServiceConfiguration.fromConfiguration(configuration);
@@ -222,5 +224,6 @@ public class ExternalBlockShuffleServiceConfigurationTest {
 		assertEquals(new Long(44000), externalBlockShuffleServiceConfiguration.getDefaultUnfinishedPartitionTTL());
 		assertEquals(new Long(40000), externalBlockShuffleServiceConfiguration.getDiskScanIntervalInMS());
 		assertEquals(new Long(22), externalBlockShuffleServiceConfiguration.getWaitCreditDelay());
+		assertEquals(new Long(16 << 20), externalBlockShuffleServiceConfiguration.getMmapWindowSizeInBytes());
 	}
 }
@@ -57,7 +57,9 @@ import java.util.Random;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertNotNull;
@@ -97,17 +99,25 @@ public class ExternalBlockSubpartitionViewTest {
 
 	private final PersistentFileType fileType;
 
+	/** The size of the windows to map, or 0 if the files are read via the input stream. */
+	private final long mmapWindowSize;
+
 	@Parameterized.Parameters
 	public static Collection<Object[]> data() {
 		return Arrays.asList(new Object[][]{
 			/** Normal cases */
-			{PersistentFileType.HASH_PARTITION_FILE},
-			{PersistentFileType.MERGED_PARTITION_FILE},
+			{PersistentFileType.HASH_PARTITION_FILE, 0L},
+			{PersistentFileType.MERGED_PARTITION_FILE, 0L},
+
+			/** Read via memory mapping with windows smaller than the subpartitions */
+			{PersistentFileType.HASH_PARTITION_FILE, 3L * SEGMENT_SIZE + 10},
+			{PersistentFileType.MERGED_PARTITION_FILE, 3L * SEGMENT_SIZE + 10},
 		});
 	}
 
-	public ExternalBlockSubpartitionViewTest(PersistentFileType fileType) throws Exception {
+	public ExternalBlockSubpartitionViewTest(PersistentFileType fileType, long mmapWindowSize) throws Exception {
 		this.fileType = fileType;
+		this.mmapWindowSize = mmapWindowSize;
 	}
 
 	@Before
@@ -142,6 +152,7 @@ public class ExternalBlockSubpartitionViewTest {
 				meta.getResultPartitionID(),
 				bufferPool,
 				0,
+				mmapWindowSize,
 				viewReader);
 			viewReader.setView(view);
 
@@ -178,6 +189,7 @@ public class ExternalBlockSubpartitionViewTest {
 				meta.getResultPartitionID(),
 				bufferPool,
 				0,
+				mmapWindowSize,
 				viewReader);
 			viewReader.setView(view);
 
@@ -225,6 +237,7 @@ public class ExternalBlockSubpartitionViewTest {
 				meta.getResultPartitionID(),
 				bufferPool,
 				0,
+				mmapWindowSize,
 				viewReader);
 			viewReader.setView(view);
 
@@ -265,6 +278,57 @@ public class ExternalBlockSubpartitionViewTest {
 		}
 	}
 
+	@Test(timeout = 60000)
+	public void testYieldToOtherReadsOfBusyDisk() throws Exception {
+		final int subpartitionIndex = 2;
+		setupCheckForSubpartition(subpartitionIndex);
+
+		ExternalBlockResultPartitionMeta meta = spy(createFilesAndMeta());
+
+		AtomicInteger numSubmitted = new AtomicInteger(0);
+		DiskIOScheduler scheduler = new DiskIOScheduler("disk", 1, null, Executors.defaultThreadFactory()) {
+			@Override
+			public Future<?> submit(Runnable task) {
+				numSubmitted.incrementAndGet();
+				return super.submit(task);
+			}
+
+			@Override
+			boolean hasPendingReads() {
+				return true;
+			}
+		};
+
+		try {
+			ViewReader viewReader = new ViewReader();
+			ExternalBlockSubpartitionView view = new ExternalBlockSubpartitionView(meta,
+				subpartitionIndex,
+				scheduler,
+				meta.getResultPartitionID(),
+				bufferPool,
+				-1,
+				mmapWindowSize,
+				viewReader);
+			viewReader.setView(view);
+
+			int numCredits = ExternalBlockSubpartitionView.MIN_BUFFERS_BEFORE_YIELD + 4;
+			view.notifyCreditAdded(numCredits);
+			for (int i = 0; i < numCredits; ++i) {
+				checkBufferAndRecycle(viewReader.getNextBufferBlocking());
+			}
+
+			while (view.isRunning()) {
+				Thread.sleep(10);
+			}
+
+			// The view yields once after the first buffers, and does not wait for credits while the disk is busy.
+			assertEquals(2, numSubmitted.get());
+			assertEquals(0, view.getCurrentCredit());
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+
 	@Test
 	public void testReadFail() throws Exception {
 		final int subpartitionIndex = 2;
@@ -284,6 +348,7 @@ public class ExternalBlockSubpartitionViewTest {
 				meta.getResultPartitionID(),
 				bufferPool,
 				0,
+				mmapWindowSize,
 				availabilityListener));
 
 			// Remove the data files directly
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition.external;
+
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link MappedFileRegionReader}.
+ */
+public class MappedFileRegionReaderTest extends TestLogger {
+
+	private static final int BUFFER_SIZE = 128;
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testReadRegionAcrossWindows() throws Exception {
+		final int offset = 100;
+		final int length = 1000;
+
+		File file = createFile(2 * offset + length);
+
+		// The window size is rounded down to a multiple of the buffer size.
+		List<Buffer> buffers = new ArrayList<>();
+		try (MappedFileRegionReader reader = new MappedFileRegionReader(
+				file.getPath(), offset, length, 3 * BUFFER_SIZE + 10, BUFFER_SIZE)) {
+
+			while (reader.hasRemaining()) {
+				buffers.add(reader.readNextBuffer());
+			}
+			assertFalse(reader.hasRemaining());
+		}
+
+		// The buffers stay readable after the reader is closed until they are recycled.
+		int position = offset;
+		for (Buffer buffer : buffers) {
+			assertTrue(buffer.isBuffer());
+			assertTrue(buffer.getSize() <= BUFFER_SIZE);
+
+			for (int i = 0; i < buffer.getSize(); ++i) {
+				assertEquals((byte) position++, buffer.asByteBuf().getByte(i));
+			}
+			buffer.recycleBuffer();
+		}
+		assertEquals(offset + length, position);
+
+		// 3 windows of 384 bytes and 3 buffers each, the last one has 232 bytes in 2 buffers.
+		assertEquals(8, buffers.size());
+		assertEquals(BUFFER_SIZE, buffers.get(2).getSize());
+		assertEquals(232 - BUFFER_SIZE, buffers.get(7).getSize());
+	}
+
+	private File createFile(int length) throws Exception {
+		File file = tempFolder.newFile();
+
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; ++i) {
+			data[i] = (byte) i;
+		}
+
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(data);
+		}
+
+		return file;
+	}
+}
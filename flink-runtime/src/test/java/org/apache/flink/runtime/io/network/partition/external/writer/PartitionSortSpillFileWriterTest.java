@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.	See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.	The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition.external.writer;
+
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.runtime.io.network.api.serialization.SerializerManager;
+import org.apache.flink.runtime.io.network.partition.ResultPartitionType;
+import org.apache.flink.runtime.io.network.partition.external.ExternalBlockShuffleUtils;
+import org.apache.flink.runtime.io.network.partition.external.PartitionIndex;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the sort-spill file writer. The output has the same layout as that of the merge file writer.
+ */
+public class PartitionSortSpillFileWriterTest extends PartitionMergeFileWriterTest {
+	@Override
+	protected PersistentFileWriter<Integer> createFileWriter(int numberPartitions, String partitionRootPath) throws Exception {
+
+		Configuration configuration = new Configuration();
+
+		return new PartitionSortSpillFileWriter<>(
+			numberPartitions,
+			partitionRootPath,
+			memoryManager,
+			memoryManager.allocatePages(parentTask, NUM_PAGES),
+			ioManager,
+			serializer,
+			new SerializerManager<>(ResultPartitionType.BLOCKING, configuration));
+	}
+
+	@Test
+	public void testSingleDataFileForHugeFanout() throws Exception {
+		final int numPartitions = 4000;
+
+		String partitionRootPath = temporaryFolder.newFolder().getAbsolutePath() + "/";
+		PersistentFileWriter<Integer> writer = createFileWriter(numPartitions, partitionRootPath);
+
+		// Enough records to spill several times.
+		for (int i = 0; i < 200000; ++i) {
+			writer.add(i, (i * 7) % numPartitions);
+		}
+		writer.finish();
+
+		List<List<PartitionIndex>> partitionIndices = writer.generatePartitionIndices();
+		assertEquals(1, partitionIndices.size());
+		assertEquals(numPartitions, partitionIndices.get(0).size());
+
+		long expectedOffset = 0;
+		long totalRecords = 0;
+		for (int i = 0; i < numPartitions; ++i) {
+			PartitionIndex partitionIndex = partitionIndices.get(0).get(i);
+			assertEquals(i, partitionIndex.getPartition());
+			assertEquals(expectedOffset, partitionIndex.getStartOffset());
+			expectedOffset += partitionIndex.getLength();
+			totalRecords += partitionIndex.getNumRecords();
+		}
+		assertEquals(200000, totalRecords);
+
+		// The spilled files have been merged into the single data file.
+		File dataFile = new File(ExternalBlockShuffleUtils.generateDataPath(partitionRootPath, 0));
+		assertArrayEquals(new File[]{dataFile}, new File(partitionRootPath).listFiles());
+		assertEquals(expectedOffset, dataFile.length());
+
+		writer.clear();
+	}
+}
@@ -19,6 +19,7 @@
 package org.apache.flink.runtime.state.heap;
 
 import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.configuration.CheckpointingOptions;
 import org.apache.flink.runtime.checkpoint.CheckpointType;
 import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.LocalRecoveryConfig;
@@ -37,13 +38,15 @@ import java.util.Collection;
 @RunWith(Parameterized.class)
 public class HeapInternalStateCheckpointTest extends InternalStateCheckpointTestBase {
 
-	@Parameterized.Parameters(name = "checkpointType: {0}, asyncSnapshot: {1}")
+	@Parameterized.Parameters(name = "checkpointType: {0}, asyncSnapshot: {1}, incremental: {2}")
 	public static Collection<Object[]> checkpointTypes() {
 		Collection<Object[]> parameter = new ArrayList<>();
 
 		for (CheckpointType type : CheckpointType.values()) {
-			parameter.add(new Object[] {type, false});
-			parameter.add(new Object[] {type, true});
+			parameter.add(new Object[] {type, false, false});
+			parameter.add(new Object[] {type, true, false});
+			parameter.add(new Object[] {type, false, true});
+			parameter.add(new Object[] {type, true, true});
 		}
 		return parameter;
 	}
@@ -54,6 +57,9 @@ public class HeapInternalStateCheckpointTest extends InternalStateCheckpointTest
 	@Parameterized.Parameter(1)
 	public boolean asyncSnapshot;
 
+	@Parameterized.Parameter(2)
+	public boolean incremental;
+
 	@Override
 	protected AbstractInternalStateBackend createStateBackend(
 		int numberOfGroups,
@@ -68,7 +74,9 @@ public class HeapInternalStateCheckpointTest extends InternalStateCheckpointTest
 			localRecoveryConfig,
 			null,
 			asyncSnapshot,
-			executionConfig);
+			executionConfig,
+			incremental,
+			CheckpointingOptions.FS_INCREMENTAL_MAX_DELTAS.defaultValue());
 	}
 
 	@Override
@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.core.fs.FSDataInputStream;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.checkpoint.CheckpointType;
+import org.apache.flink.runtime.state.CheckpointStorageLocationReference;
+import org.apache.flink.runtime.state.CheckpointStreamFactory;
+import org.apache.flink.runtime.state.IncrementalKeyedStateSnapshot;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.KeyGroupsStateSnapshot;
+import org.apache.flink.runtime.state.KeyedStateHandle;
+import org.apache.flink.runtime.state.SharedStateRegistry;
+import org.apache.flink.runtime.state.SnapshotResult;
+import org.apache.flink.runtime.state.StateHandleID;
+import org.apache.flink.runtime.state.TestLocalRecoveryConfig;
+import org.apache.flink.runtime.state.keyed.KeyedMapState;
+import org.apache.flink.runtime.state.keyed.KeyedMapStateDescriptor;
+import org.apache.flink.runtime.state.keyed.KeyedValueState;
+import org.apache.flink.runtime.state.keyed.KeyedValueStateDescriptor;
+import org.apache.flink.runtime.state.memory.MemCheckpointStreamFactory;
+import org.apache.flink.util.FutureUtil;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the incremental checkpoints of the {@link HeapInternalStateBackend}.
+ */
+@RunWith(Parameterized.class)
+public class HeapInternalStateIncrementalCheckpointTest extends TestLogger {
+
+	private static final int MAX_PARALLELISM = 10;
+
+	private static final int NUM_KEYS = 100;
+
+	private static final int MAX_DELTAS = 3;
+
+	@Parameterized.Parameters(name = "asyncSnapshot: {0}")
+	public static Collection<Boolean> parameters() {
+		return Arrays.asList(false, true);
+	}
+
+	@Parameterized.Parameter
+	public boolean asyncSnapshot;
+
+	private final KeyedValueStateDescriptor<Integer, Integer> valueStateDescriptor =
+		new KeyedValueStateDescriptor<>("value", IntSerializer.INSTANCE, IntSerializer.INSTANCE);
+
+	private final KeyedMapStateDescriptor<Integer, Integer, Integer> mapStateDescriptor =
+		new KeyedMapStateDescriptor<>("map", IntSerializer.INSTANCE, IntSerializer.INSTANCE, IntSerializer.INSTANCE);
+
+	private final CheckpointStreamFactory checkpointStreamFactory = new MemCheckpointStreamFactory(4 * 1024 * 1024);
+
+	private final SharedStateRegistry sharedStateRegistry = new SharedStateRegistry();
+
+	private HeapInternalStateBackend stateBackend;
+
+	@Before
+	public void open() throws Exception {
+		stateBackend = createStateBackend();
+		stateBackend.restore(null);
+	}
+
+	@After
+	public void dispose() {
+		if (stateBackend != null) {
+			stateBackend.dispose();
+		}
+		sharedStateRegistry.close();
+	}
+
+	@Test
+	public void testDeltaContainsModifiedKeyGroups() throws Exception {
+		KeyedValueState<Integer, Integer> valueState = stateBackend.getKeyedState(valueStateDescriptor);
+		KeyedMapState<Integer, Integer, Integer> mapState = stateBackend.getKeyedState(mapStateDescriptor);
+		for (int i = 0; i < NUM_KEYS; ++i) {
+			valueState.put(i, i);
+			mapState.add(i, i, i);
+		}
+
+		IncrementalKeyedStateSnapshot snapshot1 = runIncrementalCheckpoint(1L);
+		assertEquals(1, snapshot1.getSharedState().size());
+		assertEquals(MAX_PARALLELISM, readIndex(snapshot1).getKeyGroups().size());
+
+		// modifies one value, one map in place and removes one key
+		valueState.put(3, 42);
+		mapState.add(5, 42, 42);
+		valueState.remove(7);
+		mapState.remove(7);
+
+		IncrementalKeyedStateSnapshot snapshot2 = runIncrementalCheckpoint(2L);
+		assertEquals(2, snapshot2.getSharedState().size());
+
+		Set<Integer> expectedDeltaKeyGroups = new HashSet<>();
+		for (int key : Arrays.asList(3, 5, 7)) {
+			expectedDeltaKeyGroups.add(KeyGroupRangeAssignment.assignToKeyGroup(key, MAX_PARALLELISM));
+		}
+		assertEquals(expectedDeltaKeyGroups, getKeyGroupsOfDeltaFile(readIndex(snapshot2), deltaFileId(2L)));
+
+		stateBackend.dispose();
+		stateBackend = createStateBackend();
+		stateBackend.restore(Collections.singleton(snapshot2));
+
+		valueState = stateBackend.getKeyedState(valueStateDescriptor);
+		mapState = stateBackend.getKeyedState(mapStateDescriptor);
+		for (int i = 0; i < NUM_KEYS; ++i) {
+			if (i == 7) {
+				assertNull(valueState.get(i));
+				assertNull(mapState.get(i));
+			} else {
+				assertEquals(i == 3 ? Integer.valueOf(42) : Integer.valueOf(i), valueState.get(i));
+				assertEquals(Integer.valueOf(i), mapState.get(i, i));
+			}
+		}
+		assertEquals(Integer.valueOf(42), mapState.get(5, 42));
+	}
+
+	@Test
+	public void testOldestDeltasAreCompacted() throws Exception {
+		KeyedValueState<Integer, Integer> valueState = stateBackend.getKeyedState(valueStateDescriptor);
+		for (int i = 0; i < NUM_KEYS; ++i) {
+			valueState.put(i, i);
+		}
+
+		IncrementalKeyedStateSnapshot snapshot = runIncrementalCheckpoint(1L);
+
+		// every checkpoint modifies a single key group, the key groups of the oldest deltas are rewritten
+		for (long checkpointId = 2L; checkpointId <= 10L; ++checkpointId) {
+			int key = (int) checkpointId;
+			valueState.put(key, -key);
+
+			snapshot = runIncrementalCheckpoint(checkpointId);
+
+			IncrementalKeyGroupsIndex index = readIndex(snapshot);
+			assertTrue(snapshot.getSharedState().size() <= MAX_DELTAS);
+			assertEquals(index.getDeltaFiles().keySet(), snapshot.getSharedState().keySet());
+			assertTrue(getKeyGroupsOfDeltaFile(index, deltaFileId(checkpointId))
+				.contains(KeyGroupRangeAssignment.assignToKeyGroup(key, MAX_PARALLELISM)));
+		}
+
+		stateBackend.dispose();
+		stateBackend = createStateBackend();
+		stateBackend.restore(Collections.singleton(snapshot));
+
+		valueState = stateBackend.getKeyedState(valueStateDescriptor);
+		for (int i = 0; i < NUM_KEYS; ++i) {
+			int expectedValue = (i >= 2 && i <= 10) ? -i : i;
+			assertEquals(Integer.valueOf(expectedValue), valueState.get(i));
+		}
+	}
+
+	@Test
+	public void testRestoredCheckpointIsBase() throws Exception {
+		KeyedValueState<Integer, Integer> valueState = stateBackend.getKeyedState(valueStateDescriptor);
+		for (int i = 0; i < NUM_KEYS; ++i) {
+			valueState.put(i, i);
+		}
+
+		IncrementalKeyedStateSnapshot snapshot1 = runIncrementalCheckpoint(1L);
+
+		stateBackend.dispose();
+		stateBackend = createStateBackend();
+		stateBackend.restore(Collections.singleton(snapshot1));
+
+		// only the key groups modified after the restore are written
+		valueState = stateBackend.getKeyedState(valueStateDescriptor);
+		valueState.put(3, 42);
+
+		IncrementalKeyedStateSnapshot snapshot2 = runIncrementalCheckpoint(2L);
+		assertEquals(2, snapshot2.getSharedState().size());
+		assertEquals(
+			Collections.singleton(KeyGroupRangeAssignment.assignToKeyGroup(3, MAX_PARALLELISM)),
+			getKeyGroupsOfDeltaFile(readIndex(snapshot2), deltaFileId(2L)));
+
+		stateBackend.dispose();
+		stateBackend = createStateBackend();
+		stateBackend.restore(Collections.singleton(snapshot2));
+
+		valueState = stateBackend.getKeyedState(valueStateDescriptor);
+		for (int i = 0; i < NUM_KEYS; ++i) {
+			assertEquals(i == 3 ? Integer.valueOf(42) : Integer.valueOf(i), valueState.get(i));
+		}
+	}
+
+	@Test
+	public void testSavepointIsFullSnapshot() throws Exception {
+		KeyedValueState<Integer, Integer> valueState = stateBackend.getKeyedState(valueStateDescriptor);
+		for (int i = 0; i < NUM_KEYS; ++i) {
+			valueState.put(i, i);
+		}
+
+		runIncrementalCheckpoint(1L);
+
+		valueState.put(3, 42);
+
+		CheckpointOptions savepointOptions = new CheckpointOptions(
+			CheckpointType.SAVEPOINT,
+			new CheckpointStorageLocationReference("savepoint".getBytes(Charset.defaultCharset())));
+		KeyedStateHandle savepoint = runSnapshot(2L, savepointOptions);
+		assertTrue(savepoint instanceof KeyGroupsStateSnapshot);
+		assertEquals(MAX_PARALLELISM, ((KeyGroupsStateSnapshot) savepoint).getMetaInfos().size());
+		stateBackend.notifyCheckpointComplete(2L);
+
+		// the modifications before the savepoint are still part of the next delta
+		valueState.put(5, 42);
+
+		IncrementalKeyedStateSnapshot snapshot = runIncrementalCheckpoint(3L);
+		Set<Integer> expectedDeltaKeyGroups = new HashSet<>();
+		expectedDeltaKeyGroups.add(KeyGroupRangeAssignment.assignToKeyGroup(3, MAX_PARALLELISM));
+		expectedDeltaKeyGroups.add(KeyGroupRangeAssignment.assignToKeyGroup(5, MAX_PARALLELISM));
+		assertEquals(expectedDeltaKeyGroups, getKeyGroupsOfDeltaFile(readIndex(snapshot), deltaFileId(3L)));
+
+		stateBackend.dispose();
+		stateBackend = createStateBackend();
+		stateBackend.restore(Collections.singleton(savepoint));
+
+		valueState = stateBackend.getKeyedState(valueStateDescriptor);
+		assertEquals(Integer.valueOf(42), valueState.get(3));
+		assertEquals(Integer.valueOf(5), valueState.get(5));
+	}
+
+	// ------------------------------------------------------------------------
+
+	private HeapInternalStateBackend createStateBackend() {
+		return new HeapInternalStateBackend(
+			MAX_PARALLELISM,
+			new KeyGroupRange(0, MAX_PARALLELISM - 1),
+			ClassLoader.getSystemClassLoader(),
+			TestLocalRecoveryConfig.disabled(),
+			null,
+			asyncSnapshot,
+			new ExecutionConfig(),
+			true,
+			MAX_DELTAS);
+	}
+
+	private IncrementalKeyedStateSnapshot runIncrementalCheckpoint(long checkpointId) throws Exception {
+		KeyedStateHandle snapshot = runSnapshot(checkpointId, CheckpointOptions.forCheckpointWithDefaultLocation());
+		assertTrue(snapshot instanceof IncrementalKeyedStateSnapshot);
+
+		// replaces the placeholders of the reused delta files with the registered handles
+		snapshot.registerSharedStates(sharedStateRegistry);
+		stateBackend.notifyCheckpointComplete(checkpointId);
+
+		return (IncrementalKeyedStateSnapshot) snapshot;
+	}
+
+	private KeyedStateHandle runSnapshot(long checkpointId, CheckpointOptions checkpointOptions) throws Exception {
+		SnapshotResult<KeyedStateHandle> snapshotResult = FutureUtil.runIfNotDoneAndGet(
+			stateBackend.snapshot(checkpointId, checkpointId, checkpointStreamFactory, checkpointOptions));
+		return snapshotResult.getJobManagerOwnedSnapshot();
+	}
+
+	private static IncrementalKeyGroupsIndex readIndex(IncrementalKeyedStateSnapshot snapshot) throws Exception {
+		try (FSDataInputStream inputStream = snapshot.getMetaStateHandle().openInputStream()) {
+			return IncrementalKeyGroupsIndex.read(new DataInputViewStreamWrapper(inputStream));
+		}
+	}
+
+	private static Set<Integer> getKeyGroupsOfDeltaFile(IncrementalKeyGroupsIndex index, StateHandleID deltaFileId) {
+		Map<StateHandleID, Map<Integer, Tuple2<Long, Integer>>> keyGroupsByDeltaFile =
+			index.getKeyGroupsByDeltaFile();
+		return keyGroupsByDeltaFile.containsKey(deltaFileId) ?
+			keyGroupsByDeltaFile.get(deltaFileId).keySet() : Collections.emptySet();
+	}
+
+	private static StateHandleID deltaFileId(long checkpointId) {
+		return new StateHandleID("heap-delta-" + checkpointId);
+	}
+}
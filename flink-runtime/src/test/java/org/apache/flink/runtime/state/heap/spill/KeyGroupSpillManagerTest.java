@@ -0,0 +1,409 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap.spill;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.KeyedStateHandle;
+import org.apache.flink.runtime.state.SnapshotResult;
+import org.apache.flink.runtime.state.TestLocalRecoveryConfig;
+import org.apache.flink.runtime.state.VoidNamespace;
+import org.apache.flink.runtime.state.heap.HeapInternalStateBackend;
+import org.apache.flink.runtime.state.heap.HeapStateStorage;
+import org.apache.flink.runtime.state.heap.internal.StateTable;
+import org.apache.flink.runtime.state.keyed.KeyedValueState;
+import org.apache.flink.runtime.state.keyed.KeyedValueStateDescriptor;
+import org.apache.flink.runtime.state.memory.MemCheckpointStreamFactory;
+import org.apache.flink.runtime.state.subkeyed.SubKeyedMapState;
+import org.apache.flink.runtime.state.subkeyed.SubKeyedMapStateDescriptor;
+import org.apache.flink.util.FutureUtil;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RunnableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for spilling the key groups of the {@link HeapInternalStateBackend} to disk.
+ */
+@RunWith(Parameterized.class)
+public class KeyGroupSpillManagerTest extends TestLogger {
+
+	private static final int MAX_PARALLELISM = 10;
+
+	private static final int NUM_KEYS = 100;
+
+	@Parameterized.Parameters(name = "asyncSnapshot: {0}")
+	public static Collection<Boolean> parameters() {
+		return Arrays.asList(false, true);
+	}
+
+	@Parameterized.Parameter
+	public boolean asyncSnapshot;
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final KeyedValueStateDescriptor<Integer, Integer> valueStateDescriptor =
+		new KeyedValueStateDescriptor<>("value", IntSerializer.INSTANCE, IntSerializer.INSTANCE);
+
+	private final SubKeyedMapStateDescriptor<Integer, String, Integer, Integer> mapStateDescriptor =
+		new SubKeyedMapStateDescriptor<>("map", IntSerializer.INSTANCE, StringSerializer.INSTANCE, IntSerializer.INSTANCE, IntSerializer.INSTANCE);
+
+	private HeapInternalStateBackend stateBackend;
+
+	@Before
+	public void open() throws Exception {
+		stateBackend = createStateBackend(new HeapSpillingConfig(new File[] {temporaryFolder.newFolder()}, 0.8, 0.6));
+		stateBackend.restore(null);
+	}
+
+	@After
+	public void dispose() {
+		if (stateBackend != null) {
+			stateBackend.dispose();
+		}
+	}
+
+	@Test
+	public void testSpilledKeyGroupsAreLoadedOnAccess() throws Exception {
+		KeyedValueState<Integer, Integer> valueState = stateBackend.getKeyedState(valueStateDescriptor);
+		for (int i = 0; i < NUM_KEYS; ++i) {
+			valueState.put(i, i);
+		}
+
+		KeyGroupSpillManager spillManager = stateBackend.getSpillManager();
+		spillManager.spill(allKeyGroups());
+
+		HeapStateStorage stateStorage = (HeapStateStorage) valueState.getStateStorage();
+		assertEquals(0, stateStorage.getStateTable().size());
+		assertEquals(NUM_KEYS, stateBackend.numStateEntries());
+		assertEquals(MAX_PARALLELISM, spillManager.getNumSpilledKeyGroups());
+		assertTrue(spillManager.getSpilledBytes() > 0);
+		assertEquals(MAX_PARALLELISM, countFiles(temporaryFolder.getRoot()));
+
+		for (int i = 0; i < NUM_KEYS; ++i) {
+			assertEquals(Integer.valueOf(i), valueState.get(i));
+		}
+
+		assertEquals(NUM_KEYS, stateStorage.getStateTable().size());
+		assertEquals(0, spillManager.getNumSpilledKeyGroups());
+		assertEquals(0L, spillManager.getSpilledBytes());
+		assertEquals(MAX_PARALLELISM, spillManager.getNumLoads());
+		// the first read of every key group misses
+		assertEquals((2.0 * NUM_KEYS - MAX_PARALLELISM) / (2.0 * NUM_KEYS), spillManager.getHitRatio(), 0.0);
+		assertEquals(0, countFiles(temporaryFolder.getRoot()));
+	}
+
+	@Test
+	public void testSnapshotContainsSpilledKeyGroups() throws Exception {
+		KeyedValueState<Integer, Integer> valueState = stateBackend.getKeyedState(valueStateDescriptor);
+		SubKeyedMapState<Integer, String, Integer, Integer> mapState = stateBackend.getSubKeyedState(mapStateDescriptor);
+		for (int i = 0; i < NUM_KEYS; ++i) {
+			valueState.put(i, i);
+			mapState.add(i, "even", i, i);
+			if (i % 2 == 1) {
+				mapState.add(i, "odd", i, -i);
+			}
+		}
+
+		// spills half of the key groups
+		Set<Integer> spilledKeyGroups = new HashSet<>();
+		for (int keyGroup = 0; keyGroup < MAX_PARALLELISM; keyGroup += 2) {
+			spilledKeyGroups.add(keyGroup);
+		}
+		stateBackend.getSpillManager().spill(spilledKeyGroups);
+		assertEquals(NUM_KEYS * 2 + NUM_KEYS / 2, stateBackend.numStateEntries());
+
+		SnapshotResult<KeyedStateHandle> snapshotResult = FutureUtil.runIfNotDoneAndGet(
+			stateBackend.snapshot(
+				1L,
+				1L,
+				new MemCheckpointStreamFactory(4 * 1024 * 1024),
+				CheckpointOptions.forCheckpointWithDefaultLocation()));
+		KeyedStateHandle snapshot = snapshotResult.getJobManagerOwnedSnapshot();
+
+		// the spilled key groups stay spilled after the snapshot released them
+		Set<Integer> oddKeys = new HashSet<>();
+		for (int key : mapState.keys("odd")) {
+			oddKeys.add(key);
+		}
+		assertEquals(NUM_KEYS / 2, oddKeys.size());
+		assertEquals(2 * spilledKeyGroups.size(), stateBackend.getSpillManager().getNumSpilledKeyGroups());
+
+		stateBackend.dispose();
+		stateBackend = createStateBackend(null);
+		stateBackend.restore(Collections.singleton(snapshot));
+
+		valueState = stateBackend.getKeyedState(valueStateDescriptor);
+		mapState = stateBackend.getSubKeyedState(mapStateDescriptor);
+		for (int i = 0; i < NUM_KEYS; ++i) {
+			assertEquals(Integer.valueOf(i), valueState.get(i));
+			assertEquals(Integer.valueOf(i), mapState.get(i, "even", i));
+			if (i % 2 == 1) {
+				assertEquals(Integer.valueOf(-i), mapState.get(i, "odd", i));
+			} else {
+				assertNull(mapState.get(i, "odd", i));
+			}
+		}
+	}
+
+	@Test
+	public void testIterationDoesNotLoadSpilledKeyGroups() throws Exception {
+		KeyedValueState<Integer, Integer> valueState = stateBackend.getKeyedState(valueStateDescriptor);
+		SubKeyedMapState<Integer, String, Integer, Integer> mapState = stateBackend.getSubKeyedState(mapStateDescriptor);
+		for (int i = 0; i < NUM_KEYS; ++i) {
+			valueState.put(i, i);
+			mapState.add(i, "even", i, i);
+			if (i % 2 == 1) {
+				mapState.add(i, "odd", i, -i);
+			}
+		}
+
+		Set<Integer> spilledKeyGroups = new HashSet<>();
+		for (int keyGroup = 0; keyGroup < MAX_PARALLELISM; keyGroup += 2) {
+			spilledKeyGroups.add(keyGroup);
+		}
+		KeyGroupSpillManager spillManager = stateBackend.getSpillManager();
+		spillManager.spill(spilledKeyGroups);
+		int numSpilledKeyGroups = spillManager.getNumSpilledKeyGroups();
+
+		Map<Integer, Integer> values = valueState.getAll();
+		assertEquals(NUM_KEYS, values.size());
+		for (int i = 0; i < NUM_KEYS; ++i) {
+			assertEquals(Integer.valueOf(i), values.get(i));
+		}
+
+		Set<Integer> oddKeys = new HashSet<>();
+		for (int key : mapState.keys("odd")) {
+			assertEquals(1, key % 2);
+			oddKeys.add(key);
+		}
+		assertEquals(NUM_KEYS / 2, oddKeys.size());
+
+		assertEquals(NUM_KEYS, stateBackend.numStateEntries("even"));
+		assertEquals(NUM_KEYS / 2, stateBackend.numStateEntries("odd"));
+
+		assertEquals(numSpilledKeyGroups, spillManager.getNumSpilledKeyGroups());
+		assertEquals(0, spillManager.getNumLoads());
+
+		// accesses load and spill key groups while the keys are iterated
+		Set<Integer> keys = new HashSet<>();
+		for (int key : valueState.keys()) {
+			assertTrue(keys.add(key));
+			assertEquals(Integer.valueOf(key), valueState.get(key));
+			if (keys.size() == NUM_KEYS / 2) {
+				spillManager.spill(allKeyGroups());
+			}
+		}
+		assertEquals(NUM_KEYS, keys.size());
+	}
+
+	@Test
+	public void testSpillingDoesNotAffectPendingSnapshot() throws Exception {
+		KeyedValueState<Integer, Integer> valueState = stateBackend.getKeyedState(valueStateDescriptor);
+		for (int i = 0; i < NUM_KEYS; ++i) {
+			valueState.put(i, i);
+		}
+
+		RunnableFuture<SnapshotResult<KeyedStateHandle>> snapshotFuture = stateBackend.snapshot(
+			1L,
+			1L,
+			new MemCheckpointStreamFactory(4 * 1024 * 1024),
+			CheckpointOptions.forCheckpointWithDefaultLocation());
+
+		// the mappings are removed from the table while the snapshot still refers to them
+		stateBackend.getSpillManager().spill(allKeyGroups());
+		for (int i = 0; i < NUM_KEYS; ++i) {
+			valueState.put(i, -i);
+		}
+
+		KeyedStateHandle snapshot = FutureUtil.runIfNotDoneAndGet(snapshotFuture).getJobManagerOwnedSnapshot();
+		for (int i = 0; i < NUM_KEYS; ++i) {
+			assertEquals(Integer.valueOf(-i), valueState.get(i));
+		}
+
+		stateBackend.dispose();
+		stateBackend = createStateBackend(null);
+		stateBackend.restore(Collections.singleton(snapshot));
+
+		valueState = stateBackend.getKeyedState(valueStateDescriptor);
+		for (int i = 0; i < NUM_KEYS; ++i) {
+			assertEquals(Integer.valueOf(i), valueState.get(i));
+		}
+	}
+
+	@Test
+	public void testLeastRecentlyAccessedKeyGroupsAreSpilledUnderHeapPressure() throws Exception {
+		HeapInternalStateBackend stateBackendWithoutSpilling = createStateBackend(null);
+		stateBackendWithoutSpilling.restore(null);
+
+		TestHeapStatusMonitor heapStatusMonitor = new TestHeapStatusMonitor();
+		KeyGroupSpillManager spillManager = new KeyGroupSpillManager(
+			MAX_PARALLELISM,
+			new KeyGroupRange(0, MAX_PARALLELISM - 1),
+			new HeapSpillingConfig(new File[] {temporaryFolder.newFolder()}, 0.8, 0.6, 1),
+			heapStatusMonitor);
+
+		try {
+			KeyedValueState<Integer, Integer> valueState = stateBackendWithoutSpilling.getKeyedState(valueStateDescriptor);
+			HeapStateStorage stateStorage = (HeapStateStorage) valueState.getStateStorage();
+			stateStorage.enableSpilling(spillManager);
+
+			heapStatusMonitor.heapUsageRatio = 0.5;
+			for (int i = 0; i < NUM_KEYS; ++i) {
+				valueState.put(i, i);
+			}
+			assertEquals(0, spillManager.getNumSpilledKeyGroups());
+
+			// the usage above the high watermark is ignored until the next garbage collection
+			heapStatusMonitor.heapUsageRatio = 0.9;
+			valueState.get(0);
+			assertEquals(0, spillManager.getNumSpilledKeyGroups());
+
+			// without any spilled key group, the average key group takes 9% of the heap, so 4 key
+			// groups have to be spilled to get from 90% to 60%
+			heapStatusMonitor.numGarbageCollections++;
+			valueState.get(0);
+			assertEquals(4, spillManager.getNumSpilledKeyGroups());
+			assertEquals(1.0, spillManager.getHitRatio(), 0.0);
+
+			// the key groups are accessed last with their largest keys, except for the key group of key 0
+			int accessedKeyGroup = KeyGroupRangeAssignment.assignToKeyGroup(0, MAX_PARALLELISM);
+			int[] lastAccessedKeys = new int[MAX_PARALLELISM];
+			for (int i = 0; i < NUM_KEYS; ++i) {
+				lastAccessedKeys[KeyGroupRangeAssignment.assignToKeyGroup(i, MAX_PARALLELISM)] = i;
+			}
+
+			List<Integer> leastRecentlyAccessedKeyGroups = new ArrayList<>();
+			for (int keyGroup = 0; keyGroup < MAX_PARALLELISM; ++keyGroup) {
+				if (keyGroup != accessedKeyGroup) {
+					leastRecentlyAccessedKeyGroups.add(keyGroup);
+				}
+			}
+			leastRecentlyAccessedKeyGroups.sort(Comparator.comparingInt(keyGroup -> lastAccessedKeys[keyGroup]));
+			Set<Integer> expectedSpilledKeyGroups = new HashSet<>(leastRecentlyAccessedKeyGroups.subList(0, 4));
+
+			StateTable stateTable = stateStorage.getStateTable();
+			for (int i = 0; i < NUM_KEYS; ++i) {
+				if (expectedSpilledKeyGroups.contains(KeyGroupRangeAssignment.assignToKeyGroup(i, MAX_PARALLELISM))) {
+					assertNull(stateTable.get(i, VoidNamespace.INSTANCE));
+				} else {
+					assertEquals(Integer.valueOf(i), stateTable.get(i, VoidNamespace.INSTANCE));
+				}
+			}
+
+			assertEquals(NUM_KEYS, stateBackendWithoutSpilling.numStateEntries());
+			for (int i = 0; i < NUM_KEYS; ++i) {
+				assertEquals(Integer.valueOf(i), valueState.get(i));
+			}
+			assertEquals(0, spillManager.getNumSpilledKeyGroups());
+			assertEquals(4, spillManager.getNumLoads());
+		} finally {
+			spillManager.close();
+			stateBackendWithoutSpilling.dispose();
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	private HeapInternalStateBackend createStateBackend(@Nullable HeapSpillingConfig spillingConfig) {
+		return new HeapInternalStateBackend(
+			MAX_PARALLELISM,
+			new KeyGroupRange(0, MAX_PARALLELISM - 1),
+			ClassLoader.getSystemClassLoader(),
+			TestLocalRecoveryConfig.disabled(),
+			null,
+			asyncSnapshot,
+			new ExecutionConfig(),
+			false,
+			1,
+			spillingConfig);
+	}
+
+	private static Set<Integer> allKeyGroups() {
+		Set<Integer> keyGroups = new HashSet<>();
+		for (int keyGroup = 0; keyGroup < MAX_PARALLELISM; ++keyGroup) {
+			keyGroups.add(keyGroup);
+		}
+		return keyGroups;
+	}
+
+	private static int countFiles(File directory) {
+		int count = 0;
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				count += file.isDirectory() ? countFiles(file) : 1;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * {@link HeapStatusMonitor} reporting the given heap usage.
+	 */
+	private static class TestHeapStatusMonitor implements HeapStatusMonitor {
+
+		double heapUsageRatio;
+
+		long numGarbageCollections;
+
+		@Override
+		public double getHeapUsageRatio() {
+			return heapUsageRatio;
+		}
+
+		@Override
+		public long getMaxHeapBytes() {
+			return 1024 * 1024;
+		}
+
+		@Override
+		public long getGarbageCollectionCount() {
+			return numGarbageCollections;
+		}
+	}
+}
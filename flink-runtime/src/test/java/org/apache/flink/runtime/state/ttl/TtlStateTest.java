@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.ttl;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.state.StateTtlConfig;
+import org.apache.flink.api.common.time.Time;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.state.AbstractInternalStateBackend;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyedStateHandle;
+import org.apache.flink.runtime.state.SnapshotResult;
+import org.apache.flink.runtime.state.TestLocalRecoveryConfig;
+import org.apache.flink.runtime.state.heap.HeapInternalStateBackend;
+import org.apache.flink.runtime.state.keyed.KeyedValueState;
+import org.apache.flink.runtime.state.keyed.KeyedValueStateDescriptor;
+import org.apache.flink.runtime.state.memory.MemCheckpointStreamFactory;
+import org.apache.flink.util.FutureUtil;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.RunnableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Unit tests for the states with time-to-live backed by {@link HeapInternalStateBackend}.
+ */
+@RunWith(Parameterized.class)
+public class TtlStateTest extends TtlStateTestBase {
+
+	@Parameterized.Parameter
+	public boolean asyncSnapshot;
+
+	@Parameterized.Parameters(name = "asyncSnapshot={0}")
+	public static Collection<Object[]> parameters() {
+		return Arrays.asList(new Object[][]{{true}, {false}});
+	}
+
+	@Override
+	protected AbstractInternalStateBackend createStateBackend() {
+		return new HeapInternalStateBackend(
+			NUMBER_OF_KEY_GROUPS,
+			new KeyGroupRange(0, NUMBER_OF_KEY_GROUPS - 1),
+			ClassLoader.getSystemClassLoader(),
+			TestLocalRecoveryConfig.disabled(),
+			null,
+			asyncSnapshot,
+			new ExecutionConfig());
+	}
+
+	@Test
+	public void testIncrementalCleanup() throws Exception {
+		assumeTrue("Only the copy-on-write state table supports incremental cleanup.", asyncSnapshot);
+
+		StateTtlConfig ttlConfig = StateTtlConfig.newBuilder(Time.milliseconds(TTL))
+			.cleanupIncrementally(10)
+			.build();
+		KeyedValueState<Integer, String> state = backend.getKeyedState(createValueDescriptor(ttlConfig));
+
+		for (int i = 0; i < 100; ++i) {
+			state.put(i, String.valueOf(i));
+		}
+		assertEquals(100, backend.numStateEntries());
+
+		timeProvider.time = 200L;
+		for (int i = 0; i < 20; ++i) {
+			state.put(1000 + i, String.valueOf(i));
+		}
+
+		// The expired values are removed by the updates without being read.
+		assertEquals(20, backend.numStateEntries());
+	}
+
+	@Test
+	public void testFullSnapshotCleanup() throws Exception {
+		StateTtlConfig ttlConfig = StateTtlConfig.newBuilder(Time.milliseconds(TTL))
+			.cleanupFullSnapshot()
+			.build();
+		KeyedValueStateDescriptor<Integer, String> descriptor = createValueDescriptor(ttlConfig);
+		KeyedValueState<Integer, String> state = backend.getKeyedState(descriptor);
+
+		state.put(1, "a");
+		timeProvider.time = 50L;
+		state.put(2, "b");
+
+		timeProvider.time = 120L;
+		KeyedStateHandle snapshot = runSnapshot();
+		backend.dispose();
+
+		backend = createStateBackendWithTimeProvider();
+		backend.restore(Collections.singleton(snapshot));
+		state = backend.getKeyedState(descriptor);
+
+		assertEquals(1, backend.numStateEntries());
+		assertEquals("b", state.get(2));
+	}
+
+	//--------------------------------------------------------------------------
+
+	private KeyedStateHandle runSnapshot() throws Exception {
+		RunnableFuture<SnapshotResult<KeyedStateHandle>> snapshotFuture = backend.snapshot(
+			0L,
+			0L,
+			new MemCheckpointStreamFactory(4 * 1024 * 1024),
+			CheckpointOptions.forCheckpointWithDefaultLocation());
+
+		SnapshotResult<KeyedStateHandle> snapshotResult = FutureUtil.runIfNotDoneAndGet(snapshotFuture);
+		return snapshotResult.getJobManagerOwnedSnapshot();
+	}
+}
@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.flink.runtime.state.ttl;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.state.ReducingState;
+import org.apache.flink.api.common.state.ReducingStateDescriptor;
+import org.apache.flink.api.common.state.StateTtlConfig;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.time.Time;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.runtime.state.AbstractInternalStateBackend;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.context.ContextStateHelper;
+import org.apache.flink.runtime.state.heap.KeyContextImpl;
+import org.apache.flink.runtime.state.keyed.KeyedListStateDescriptor;
+import org.apache.flink.runtime.state.keyed.KeyedMapState;
+import org.apache.flink.runtime.state.keyed.KeyedMapStateDescriptor;
+import org.apache.flink.runtime.state.keyed.KeyedValueState;
+import org.apache.flink.runtime.state.keyed.KeyedValueStateDescriptor;
+import org.apache.flink.runtime.state.subkeyed.SubKeyedMapState;
+import org.apache.flink.runtime.state.subkeyed.SubKeyedMapStateDescriptor;
+import org.apache.flink.runtime.state.subkeyed.SubKeyedValueState;
+import org.apache.flink.runtime.state.subkeyed.SubKeyedValueStateDescriptor;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the states with time-to-live, which are run against every internal state backend.
+ */
+public abstract class TtlStateTestBase extends TestLogger {
+
+	protected static final long TTL = 100L;
+
+	protected static final int NUMBER_OF_KEY_GROUPS = 10;
+
+	protected ManualTtlTimeProvider timeProvider;
+
+	protected AbstractInternalStateBackend backend;
+
+	/**
+	 * Creates a new state backend with {@link #NUMBER_OF_KEY_GROUPS} key groups.
+	 */
+	protected abstract AbstractInternalStateBackend createStateBackend() throws Exception;
+
+	@Before
+	public void openStateBackend() throws Exception {
+		timeProvider = new ManualTtlTimeProvider();
+		backend = createStateBackendWithTimeProvider();
+		backend.restore(null);
+	}
+
+	@After
+	public void closeStateBackend() {
+		if (backend != null) {
+			backend.dispose();
+		}
+	}
+
+	@Test
+	public void testValueExpiration() throws Exception {
+		KeyedValueState<Integer, String> state =
+			backend.getKeyedState(createValueDescriptor(StateTtlConfig.newBuilder(Time.milliseconds(TTL)).build()));
+
+		state.put(1, "a");
+		state.put(2, "b");
+
+		timeProvider.time = 50L;
+		assertEquals("a", state.get(1));
+		state.put(2, "c");
+
+		timeProvider.time = 100L;
+		assertFalse(state.contains(1));
+		assertNull(state.get(1));
+		assertEquals("c", state.get(2));
+		assertEquals(Collections.singletonMap(2, "c"), state.getAll());
+
+		// The expired value was removed when it was read.
+		assertEquals(1, backend.numStateEntries());
+
+		timeProvider.time = 150L;
+		assertNull(state.get(2));
+		assertEquals(0, backend.numStateEntries());
+	}
+
+	@Test
+	public void testUpdateOnRead() throws Exception {
+		StateTtlConfig ttlConfig = StateTtlConfig.newBuilder(Time.milliseconds(TTL))
+			.setUpdateType(StateTtlConfig.UpdateType.OnReadAndWrite)
+			.build();
+		KeyedValueState<Integer, String> state = backend.getKeyedState(createValueDescriptor(ttlConfig));
+
+		state.put(1, "a");
+
+		timeProvider.time = 90L;
+		assertEquals("a", state.get(1));
+
+		timeProvider.time = 180L;
+		assertEquals("a", state.get(1));
+
+		timeProvider.time = 280L;
+		assertNull(state.get(1));
+	}
+
+	@Test
+	public void testReturnExpiredIfNotCleanedUp() throws Exception {
+		StateTtlConfig ttlConfig = StateTtlConfig.newBuilder(Time.milliseconds(TTL))
+			.setStateVisibility(StateTtlConfig.StateVisibility.ReturnExpiredIfNotCleanedUp)
+			.build();
+		KeyedValueState<Integer, String> state = backend.getKeyedState(createValueDescriptor(ttlConfig));
+
+		state.put(1, "a");
+
+		timeProvider.time = 120L;
+		assertEquals("a", state.get(1));
+		assertNull(state.get(1));
+	}
+
+	@Test
+	public void testMapExpiration() throws Exception {
+		KeyedMapStateDescriptor<Integer, Integer, String> descriptor =
+			new KeyedMapStateDescriptor<>("map", IntSerializer.INSTANCE, IntSerializer.INSTANCE, StringSerializer.INSTANCE);
+		descriptor.enableTimeToLive(StateTtlConfig.newBuilder(Time.milliseconds(TTL)).build());
+		KeyedMapState<Integer, Integer, String> state = backend.getKeyedState(descriptor);
+
+		state.add(1, 1, "a");
+
+		timeProvider.time = 50L;
+		state.add(1, 2, "b");
+
+		timeProvider.time = 100L;
+		assertNull(state.get(1, 1));
+		assertEquals("b", state.get(1, 2));
+		assertEquals(Collections.singletonMap(2, "b"), state.get(1));
+
+		int numberOfEntries = 0;
+		for (Map.Entry<Integer, String> entry : state.entries(1)) {
+			assertEquals("b", entry.getValue());
+			numberOfEntries++;
+		}
+		assertEquals(1, numberOfEntries);
+
+		timeProvider.time = 150L;
+		assertFalse(state.contains(1));
+		assertTrue(state.getAll().isEmpty());
+	}
+
+	@Test
+	public void testSubKeyedValueExpiration() throws Exception {
+		SubKeyedValueStateDescriptor<Integer, String, String> descriptor =
+			new SubKeyedValueStateDescriptor<>("subkeyed", IntSerializer.INSTANCE, StringSerializer.INSTANCE, StringSerializer.INSTANCE);
+		descriptor.enableTimeToLive(StateTtlConfig.newBuilder(Time.milliseconds(TTL)).build());
+		SubKeyedValueState<Integer, String, String> state = backend.getSubKeyedState(descriptor);
+
+		state.put(1, "n1", "a");
+
+		timeProvider.time = 50L;
+		state.put(1, "n2", "b");
+
+		timeProvider.time = 100L;
+		assertNull(state.get(1, "n1"));
+		assertEquals(Collections.singletonMap("n2", "b"), state.getAll(1));
+		assertEquals("n2", state.iterator(1).next());
+	}
+
+	@Test
+	public void testSubKeyedMapExpiration() throws Exception {
+		SubKeyedMapStateDescriptor<Integer, String, Integer, String> descriptor =
+			new SubKeyedMapStateDescriptor<>("subkeyed-map",
+				IntSerializer.INSTANCE, StringSerializer.INSTANCE, IntSerializer.INSTANCE, StringSerializer.INSTANCE);
+		descriptor.enableTimeToLive(StateTtlConfig.newBuilder(Time.milliseconds(TTL)).build());
+		SubKeyedMapState<Integer, String, Integer, String> state = backend.getSubKeyedState(descriptor);
+
+		state.add(1, "n1", 1, "a");
+		state.add(1, "n2", 1, "b");
+
+		timeProvider.time = 50L;
+		state.add(1, "n1", 2, "c");
+
+		timeProvider.time = 100L;
+		assertNull(state.get(1, "n1", 1));
+		assertEquals("c", state.get(1, "n1", 2));
+		assertEquals(Collections.singletonMap(2, "c"), state.get(1, "n1"));
+		assertFalse(state.contains(1, "n2"));
+		assertEquals(Collections.singletonMap("n1", Collections.singletonMap(2, "c")), state.getAll(1));
+
+		int numberOfEntries = 0;
+		for (Map.Entry<Integer, String> entry : state.entries(1, "n1")) {
+			assertEquals("c", entry.getValue());
+			numberOfEntries++;
+		}
+		assertEquals(1, numberOfEntries);
+
+		timeProvider.time = 150L;
+		assertFalse(state.contains(1, "n1"));
+		assertTrue(state.getAll(1).isEmpty());
+	}
+
+	@Test
+	public void testLegacyStateDescriptor() throws Exception {
+		KeyContextImpl<Integer> keyContext =
+			new KeyContextImpl<>(IntSerializer.INSTANCE, NUMBER_OF_KEY_GROUPS, new KeyGroupRange(0, NUMBER_OF_KEY_GROUPS - 1));
+		ContextStateHelper contextStateHelper = new ContextStateHelper(keyContext, new ExecutionConfig(), backend);
+
+		ValueStateDescriptor<String> valueDescriptor = new ValueStateDescriptor<>("legacy-value", StringSerializer.INSTANCE);
+		valueDescriptor.enableTimeToLive(StateTtlConfig.newBuilder(Time.milliseconds(TTL)).build());
+		ValueState<String> valueState = contextStateHelper.createValueState(valueDescriptor);
+
+		ReducingStateDescriptor<Integer> reducingDescriptor =
+			new ReducingStateDescriptor<>("legacy-reducing", (a, b) -> a + b, IntSerializer.INSTANCE);
+		reducingDescriptor.enableTimeToLive(StateTtlConfig.newBuilder(Time.milliseconds(TTL)).build());
+		ReducingState<Integer> reducingState = contextStateHelper.createReducingState(reducingDescriptor);
+
+		keyContext.setCurrentKey(1);
+		valueState.update("a");
+		reducingState.add(1);
+
+		timeProvider.time = 50L;
+		reducingState.add(2);
+
+		timeProvider.time = 120L;
+		assertNull(valueState.value());
+		assertEquals(Integer.valueOf(3), reducingState.get());
+
+		// The reduced value expires with its last update.
+		timeProvider.time = 150L;
+		assertNull(reducingState.get());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testListStateNotSupported() throws Exception {
+		KeyedListStateDescriptor<Integer, String> descriptor =
+			new KeyedListStateDescriptor<>("list", IntSerializer.INSTANCE, StringSerializer.INSTANCE);
+		descriptor.enableTimeToLive(StateTtlConfig.newBuilder(Time.milliseconds(TTL)).build());
+		backend.getKeyedState(descriptor);
+	}
+
+	//--------------------------------------------------------------------------
+
+	protected AbstractInternalStateBackend createStateBackendWithTimeProvider() throws Exception {
+		AbstractInternalStateBackend stateBackend = createStateBackend();
+		stateBackend.setTtlTimeProvider(timeProvider);
+		return stateBackend;
+	}
+
+	protected static KeyedValueStateDescriptor<Integer, String> createValueDescriptor(StateTtlConfig ttlConfig) {
+		KeyedValueStateDescriptor<Integer, String> descriptor =
+			new KeyedValueStateDescriptor<>("value", IntSerializer.INSTANCE, StringSerializer.INSTANCE);
+		descriptor.enableTimeToLive(ttlConfig);
+		return descriptor;
+	}
+
+	/**
+	 * A {@link TtlTimeProvider} whose time is set by the tests.
+	 */
+	protected static class ManualTtlTimeProvider implements TtlTimeProvider {
+
+		public long time = 0L;
+
+		@Override
+		public long currentTimestamp() {
+			return time;
+		}
+	}
+}
@@ -21,7 +21,6 @@ package org.apache.flink.contrib.streaming.state;
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.core.fs.CloseableRegistry;
 import org.apache.flink.core.fs.FSDataInputStream;
-import org.apache.flink.core.fs.FSDataOutputStream;
 import org.apache.flink.core.fs.FileStatus;
 import org.apache.flink.core.fs.FileSystem;
 import org.apache.flink.core.fs.Path;
@@ -30,6 +29,7 @@ import org.apache.flink.core.memory.DataInputViewStreamWrapper;
 import org.apache.flink.runtime.state.IncrementalKeyedStateSnapshot;
 import org.apache.flink.runtime.state.IncrementalLocalKeyedStateSnapshot;
 import org.apache.flink.runtime.state.InternalBackendSerializationProxy;
+import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.KeyedStateHandle;
 import org.apache.flink.runtime.state.PlaceholderStreamStateHandle;
 import org.apache.flink.runtime.state.RegisteredStateMetaInfo;
@@ -42,8 +42,13 @@ import org.apache.flink.util.Preconditions;
 
 import org.rocksdb.ColumnFamilyDescriptor;
 import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.EnvOptions;
+import org.rocksdb.IngestExternalFileOptions;
+import org.rocksdb.Options;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.Slice;
+import org.rocksdb.SstFileWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,11 +57,13 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
+import static org.apache.flink.contrib.streaming.state.RocksDBStorageInstance.SST_FILE_SUFFIX;
 import static org.apache.flink.runtime.state.StateSerializerUtil.GROUP_WRITE_BYTES;
 
 /**
@@ -80,17 +87,46 @@ public class RocksDBIncrementalRestoreOperation {
 
 		if (hasExtraKeys) {
 			long startMillis = System.currentTimeMillis();
+
+			List<IncrementalKeyedStateSnapshot> stateSnapshots = new ArrayList<>(restoredSnapshots.size());
 			for (KeyedStateHandle rawStateSnapshot: restoredSnapshots) {
 				if (!(rawStateSnapshot instanceof IncrementalKeyedStateSnapshot)) {
 					throw new IllegalStateException("Unexpected state handle type, " +
 						"expected: " + IncrementalKeyedStateSnapshot.class +
 						", but found: " + rawStateSnapshot.getClass());
 				}
-				IncrementalKeyedStateSnapshot stateSnapshot = (IncrementalKeyedStateSnapshot) rawStateSnapshot;
-				// temporary path.
-				Path temporaryRestoreInstancePath = stateBackend.getLocalRestorePath(stateBackend.getKeyGroupRange());
-				restoreFragmentedTabletInstance(stateSnapshot, temporaryRestoreInstancePath);
+				stateSnapshots.add((IncrementalKeyedStateSnapshot) rawStateSnapshot);
+			}
+
+			// the instance which overlaps most with the new key-group range is restored as a whole and
+			// clipped, the other instances are imported as sst files of their overlapping key groups.
+			IncrementalKeyedStateSnapshot baseSnapshot = chooseBaseSnapshot(stateSnapshots);
+			if (baseSnapshot != null) {
+				restoreIntegratedTabletInstance(baseSnapshot);
+
+				// the shared files of the base instance contain other key groups, they are not reused
+				synchronized (stateBackend.materializedSstFiles) {
+					stateBackend.materializedSstFiles.clear();
+				}
+				stateBackend.lastCompletedCheckpointId = -1L;
+
+				clipBaseTabletInstance(baseSnapshot.getKeyGroupRange());
+			} else {
+				// none of the instances intersects with the new key-group range
+				stateBackend.createDB();
 			}
+
+			for (IncrementalKeyedStateSnapshot stateSnapshot : stateSnapshots) {
+				if (stateSnapshot != baseSnapshot) {
+					// temporary path.
+					Path temporaryRestoreInstancePath = stateBackend.getLocalRestorePath(stateBackend.getKeyGroupRange());
+					restoreFragmentedTabletInstance(stateSnapshot, temporaryRestoreInstancePath);
+				}
+			}
+
+			// the states which are not in the base instance
+			stateBackend.registerAllStates();
+
 			long endMills = System.currentTimeMillis();
 			LOG.info("Restore Fragmented Tablet using {} ms", endMills - startMillis);
 		} else {
@@ -115,22 +151,9 @@ public class RocksDBIncrementalRestoreOperation {
 				IncrementalKeyedStateSnapshot restoredStateSnapshot = (IncrementalKeyedStateSnapshot) rawStateSnapshot;
 
 				metaStateHandle = restoredStateSnapshot.getMetaStateHandle();
-				Map<StateHandleID, Tuple2<String, StreamStateHandle>> sharedStateHandle = restoredStateSnapshot.getSharedState();
 
 				// download the files into the local data path
-				for (Map.Entry<StateHandleID, Tuple2<String, StreamStateHandle>> sharedStateHandleEntry : sharedStateHandle.entrySet()) {
-					StateHandleID stateHandleID = sharedStateHandleEntry.getKey();
-					String fileName = stateHandleID.getKeyString();
-					StreamStateHandle stateHandle = sharedStateHandleEntry.getValue().f1;
-
-					restoreFile(localDataPath, fileName, stateHandle);
-				}
-
-				for (Map.Entry<StateHandleID, StreamStateHandle> privateStateHandleEntry : restoredStateSnapshot.getPrivateState().entrySet()) {
-					String stateName = privateStateHandleEntry.getKey().getKeyString();
-					StreamStateHandle stateHandle = privateStateHandleEntry.getValue();
-					restoreFile(localDataPath, stateName, stateHandle);
-				}
+				transferAllStateDataToDirectory(restoredStateSnapshot, localDataPath);
 
 				sstFiles = restoredStateSnapshot.getSharedState();
 				checkpointID = restoredStateSnapshot.getCheckpointId();
@@ -212,61 +235,15 @@ public class RocksDBIncrementalRestoreOperation {
 		LOG.info("Restore Integrated Tablet using {} ms.", endMills - startMills);
 	}
 
-	private void restoreFile(Path localRestorePath, String fileName, StreamStateHandle restoreStateHandle) throws IOException {
-		Path localFilePath = new Path(localRestorePath, fileName);
-		FileSystem localFileSystem = localFilePath.getFileSystem();
-
-		FSDataInputStream inputStream = null;
-		FSDataOutputStream outputStream = null;
-
-		try {
-			long startMillis = System.currentTimeMillis();
-
-			inputStream = restoreStateHandle.openInputStream();
-			closeableRegistry.registerCloseable(inputStream);
-
-			outputStream = localFileSystem.create(localFilePath, FileSystem.WriteMode.OVERWRITE);
-			closeableRegistry.registerCloseable(outputStream);
-
-			byte[] buffer = new byte[64 * 1024];
-			while (true) {
-				int numBytes = inputStream.read(buffer);
-
-				if (numBytes == -1) {
-					break;
-				}
-
-				outputStream.write(buffer, 0, numBytes);
-			}
-
-			long endMillis = System.currentTimeMillis();
-			LOG.debug("Successfully restored file {} from {}, {} bytes, {} ms",
-				localFilePath, restoreStateHandle, restoreStateHandle.getStateSize(),
-				(endMillis - startMillis));
-
-			outputStream.close();
-			closeableRegistry.unregisterCloseable(outputStream);
-			outputStream = null;
-
-			inputStream.close();
-			closeableRegistry.unregisterCloseable(inputStream);
-			inputStream = null;
-		} finally {
-			if (inputStream != null) {
-				inputStream.close();
-				closeableRegistry.unregisterCloseable(inputStream);
-			}
-
-			if (outputStream != null) {
-				outputStream.close();
-				closeableRegistry.unregisterCloseable(outputStream);
-			}
-		}
-	}
-
-	private void restoreMetaData(StreamStateHandle metaStateDatum) throws Exception {
+	/**
+	 * Restores the meta data of the states in the given handle.
+	 *
+	 * @return The names of the states in the given handle.
+	 */
+	private List<String> restoreMetaData(StreamStateHandle metaStateDatum) throws Exception {
 
 		FSDataInputStream inputStream = null;
+		List<String> stateNames = new ArrayList<>();
 
 		try {
 			inputStream = metaStateDatum.openInputStream();
@@ -289,6 +266,7 @@ public class RocksDBIncrementalRestoreOperation {
 
 				RegisteredStateMetaInfo keyedStateMetaInfo = RegisteredStateMetaInfo.createKeyedStateMetaInfo(keyedStateMetaSnapshot);
 				stateBackend.getRegisteredStateMetaInfos().put(stateName, keyedStateMetaInfo);
+				stateNames.add(stateName);
 			}
 
 			List<StateMetaInfoSnapshot> subKeyedStateMetaInfos = serializationProxy.getSubKeyedStateMetaSnapshots();
@@ -298,11 +276,14 @@ public class RocksDBIncrementalRestoreOperation {
 
 				RegisteredStateMetaInfo subKeyedStateMetaInfo = RegisteredStateMetaInfo.createSubKeyedStateMetaInfo(subKeyedStateMetaSnapshot);
 				stateBackend.getRegisteredStateMetaInfos().put(stateName, subKeyedStateMetaInfo);
+				stateNames.add(stateName);
 			}
 
 			inputStream.close();
 			closeableRegistry.unregisterCloseable(inputStream);
 			inputStream = null;
+
+			return stateNames;
 		} finally {
 			if (inputStream != null) {
 				inputStream.close();
@@ -311,6 +292,89 @@ public class RocksDBIncrementalRestoreOperation {
 		}
 	}
 
+	/**
+	 * Chooses the snapshot whose key-group range has the largest intersection with the key-group
+	 * range of the backend, or null if no snapshot intersects with it.
+	 */
+	private IncrementalKeyedStateSnapshot chooseBaseSnapshot(List<IncrementalKeyedStateSnapshot> stateSnapshots) {
+		IncrementalKeyedStateSnapshot baseSnapshot = null;
+		int maxNumberOfKeyGroups = 0;
+
+		for (IncrementalKeyedStateSnapshot stateSnapshot : stateSnapshots) {
+			int numberOfKeyGroups = stateBackend.getKeyGroupRange()
+				.getIntersection(stateSnapshot.getKeyGroupRange())
+				.getNumberOfKeyGroups();
+
+			if (numberOfKeyGroups > maxNumberOfKeyGroups) {
+				baseSnapshot = stateSnapshot;
+				maxNumberOfKeyGroups = numberOfKeyGroups;
+			}
+		}
+
+		return baseSnapshot;
+	}
+
+	/**
+	 * Removes the key groups of the restored base instance which are out of the key-group range of
+	 * the backend, and compacts the clipped ranges to drop the deleted keys from the sst files.
+	 */
+	private void clipBaseTabletInstance(KeyGroupRange baseKeyGroupRange) throws Exception {
+		KeyGroupRange keyGroupRange = stateBackend.getKeyGroupRange();
+		RocksDB db = stateBackend.getDbInstance();
+
+		List<ColumnFamilyHandle> columnFamilyHandles = new ArrayList<>();
+		for (Tuple2<ColumnFamilyHandle, ColumnFamilyDescriptor> columnFamily : stateBackend.getColumnFamilyHandles().values()) {
+			columnFamilyHandles.add(columnFamily.f0);
+		}
+
+		// the clipped ranges, each given by its start key group and its exclusive end key group
+		List<Tuple2<Integer, Integer>> clippedRanges = new ArrayList<>(2);
+		if (baseKeyGroupRange.getStartKeyGroup() < keyGroupRange.getStartKeyGroup()) {
+			clippedRanges.add(Tuple2.of(baseKeyGroupRange.getStartKeyGroup(), keyGroupRange.getStartKeyGroup()));
+		}
+		if (baseKeyGroupRange.getEndKeyGroup() > keyGroupRange.getEndKeyGroup()) {
+			clippedRanges.add(Tuple2.of(keyGroupRange.getEndKeyGroup() + 1, baseKeyGroupRange.getEndKeyGroup() + 1));
+		}
+
+		// rocksdbjni does not expose DeleteRange, the out-of-range keys are removed in batches
+		try (RocksDBWriteBatchWrapper writeBatchWrapper = new RocksDBWriteBatchWrapper(db, stateBackend.getWriteOptions())) {
+			for (ColumnFamilyHandle columnFamilyHandle : columnFamilyHandles) {
+				for (Tuple2<Integer, Integer> clippedRange : clippedRanges) {
+					deleteKeyGroups(db, writeBatchWrapper, columnFamilyHandle, clippedRange.f0, clippedRange.f1);
+				}
+			}
+		}
+
+		// otherwise the tombstones and the deleted keys stay in the files until they are compacted
+		for (ColumnFamilyHandle columnFamilyHandle : columnFamilyHandles) {
+			for (Tuple2<Integer, Integer> clippedRange : clippedRanges) {
+				db.compactRange(columnFamilyHandle, serializeKeyGroup(clippedRange.f0), serializeKeyGroup(clippedRange.f1));
+			}
+		}
+	}
+
+	private static void deleteKeyGroups(
+		RocksDB db,
+		RocksDBWriteBatchWrapper writeBatchWrapper,
+		ColumnFamilyHandle columnFamilyHandle,
+		int startKeyGroup,
+		int endKeyGroupExclusive) throws Exception {
+
+		try (RocksIterator iterator = db.newIterator(columnFamilyHandle)) {
+			iterator.seek(serializeKeyGroup(startKeyGroup));
+
+			while (iterator.isValid()) {
+				byte[] key = iterator.key();
+				if (StateSerializerUtil.getGroupFromSerializedKey(key) >= endKeyGroupExclusive) {
+					break;
+				}
+
+				writeBatchWrapper.remove(columnFamilyHandle, key);
+				iterator.next();
+			}
+		}
+	}
+
 	private void restoreFragmentedTabletInstance(
 		IncrementalKeyedStateSnapshot stateSnapshot,
 		Path localRestorePath
@@ -321,50 +385,59 @@ public class RocksDBIncrementalRestoreOperation {
 		}
 		localFileSystem.mkdirs(localRestorePath);
 
+		Path localSstPath = new Path(localRestorePath.getParent(), localRestorePath.getName() + "-sst");
+		if (localFileSystem.exists(localSstPath)) {
+			localFileSystem.delete(localSstPath, true);
+		}
+		localFileSystem.mkdirs(localSstPath);
+
 		try {
 			transferAllStateDataToDirectory(stateSnapshot, localRestorePath);
-			restoreMetaData(stateSnapshot.getMetaStateHandle());
+			// the instance only has the column families of its own states, other instances may have more
+			List<String> stateNames = restoreMetaData(stateSnapshot.getMetaStateHandle());
 
-			int cfSize = 1 + stateBackend.getRegisteredStateMetaInfos().size();
+			int cfSize = 1 + stateNames.size();
 			List<String> cfName = new ArrayList<>(cfSize);
 			List<ColumnFamilyDescriptor> columnFamilyDescriptors = new ArrayList<>(cfSize);
 			columnFamilyDescriptors.add(stateBackend.getDefaultColumnFamilyDescriptor());
 			cfName.add(stateBackend.getDefaultColumnFamilyName());
-			for (Map.Entry<String, RegisteredStateMetaInfo> stateMetaInfoEntry : stateBackend.getRegisteredStateMetaInfos().entrySet()) {
-				String stateName = stateMetaInfoEntry.getKey();
+			for (String stateName : stateNames) {
 				columnFamilyDescriptors.add(stateBackend.createColumnFamilyDescriptor(stateName));
 				cfName.add(stateName);
 			}
 
 			List<ColumnFamilyHandle> columnFamilyHandles = new ArrayList<>(cfSize);
 
+			KeyGroupRange intersection = stateBackend.getKeyGroupRange().getIntersection(stateSnapshot.getKeyGroupRange());
+			RocksDB targetDb = stateBackend.getDbInstance();
+
 			try (RocksDB db = RocksDB.open(localRestorePath.getPath(), columnFamilyDescriptors, columnFamilyHandles);
-				RocksDBWriteBatchWrapper writeBatchWrapper = new RocksDBWriteBatchWrapper(stateBackend.getDbInstance())) {
+				EnvOptions envOptions = new EnvOptions();
+				Options sstFileOptions = new Options(stateBackend.getDbOptions(), stateBackend.getColumnOptions());
+				IngestExternalFileOptions ingestOptions = new IngestExternalFileOptions()) {
+
+				ingestOptions.setMoveFiles(true);
+
 				final ColumnFamilyHandle defaultColumnFamily = columnFamilyHandles.get(0);
 				Preconditions.checkState(columnFamilyHandles.size() == columnFamilyDescriptors.size());
 				try {
-					ByteArrayOutputStreamWithPos outputStream = new ByteArrayOutputStreamWithPos(GROUP_WRITE_BYTES);
-
-					int startGroup = stateBackend.getKeyGroupRange().getIntersection(stateSnapshot.getKeyGroupRange()).getStartKeyGroup();
-					StateSerializerUtil.writeGroup(outputStream, startGroup);
-					byte[] startGroupBytes = outputStream.toByteArray();
-
-					for (int i = 1; i < columnFamilyDescriptors.size(); ++i) {
-						ColumnFamilyHandle columnFamilyHandle = columnFamilyHandles.get(i);
-						ColumnFamilyHandle targetFamilyHandle = stateBackend.getOrCreateColumnFamily(cfName.get(i));
-						try (RocksIterator iterator = db.newIterator(columnFamilyHandle)) {
-							iterator.seek(startGroupBytes);
-
-							while (iterator.isValid()) {
-								int keyGroup = StateSerializerUtil.getGroupFromSerializedKey(iterator.key());
-
-								if (stateBackend.getKeyGroupRange().contains(keyGroup)) {
-									writeBatchWrapper.put(targetFamilyHandle, iterator.key(), iterator.value());
-								} else {
-									break;
-								}
-
-								iterator.next();
+					if (intersection.getNumberOfKeyGroups() > 0) {
+						for (int i = 1; i < columnFamilyDescriptors.size(); ++i) {
+							String sstFilePath = new Path(localSstPath, i + SST_FILE_SUFFIX).getPath();
+
+							// the keys of the intersecting key groups are written to a sst file, which is
+							// moved into the target column family instead of putting the keys one by one
+							boolean hasData = writeKeyGroupsToSstFile(
+								db,
+								columnFamilyHandles.get(i),
+								intersection,
+								envOptions,
+								sstFileOptions,
+								sstFilePath);
+
+							if (hasData) {
+								ColumnFamilyHandle targetFamilyHandle = stateBackend.getOrCreateColumnFamily(cfName.get(i));
+								targetDb.ingestExternalFile(targetFamilyHandle, Collections.singletonList(sstFilePath), ingestOptions);
 							}
 						}
 					}
@@ -377,33 +450,101 @@ public class RocksDBIncrementalRestoreOperation {
 					}
 				}
 			}
-		} catch (Exception e) {
-			if (localFileSystem.exists(localRestorePath)) {
+		} finally {
+			for (Path path : new Path[] {localRestorePath, localSstPath}) {
 				try {
-					localFileSystem.delete(localRestorePath, true);
-				} catch (IOException e1) {
-					LOG.warn("Delete local path failed.", e);
+					if (localFileSystem.exists(path)) {
+						localFileSystem.delete(path, true);
+					}
+				} catch (IOException e) {
+					LOG.warn("Delete local path {} failed.", path, e);
 				}
 			}
-			throw e;
 		}
 	}
 
+	/**
+	 * Writes the keys of the given key groups in the given column family to a sst file.
+	 *
+	 * @return true, if the sst file was written, false if there are no keys in the key groups.
+	 */
+	private static boolean writeKeyGroupsToSstFile(
+		RocksDB db,
+		ColumnFamilyHandle columnFamilyHandle,
+		KeyGroupRange keyGroupRange,
+		EnvOptions envOptions,
+		Options options,
+		String sstFilePath) throws Exception {
+
+		SstFileWriter sstFileWriter = null;
+
+		try (RocksIterator iterator = db.newIterator(columnFamilyHandle)) {
+			iterator.seek(serializeKeyGroup(keyGroupRange.getStartKeyGroup()));
+
+			while (iterator.isValid()) {
+				byte[] key = iterator.key();
+				if (StateSerializerUtil.getGroupFromSerializedKey(key) > keyGroupRange.getEndKeyGroup()) {
+					break;
+				}
+
+				if (sstFileWriter == null) {
+					sstFileWriter = new SstFileWriter(envOptions, options);
+					sstFileWriter.open(sstFilePath);
+				}
+
+				try (Slice keySlice = new Slice(key);
+					Slice valueSlice = new Slice(iterator.value())) {
+					sstFileWriter.put(keySlice, valueSlice);
+				}
+
+				iterator.next();
+			}
+
+			if (sstFileWriter != null) {
+				sstFileWriter.finish();
+				return true;
+			} else {
+				return false;
+			}
+		} finally {
+			IOUtils.closeQuietly(sstFileWriter);
+		}
+	}
+
+	private static byte[] serializeKeyGroup(int keyGroup) {
+		ByteArrayOutputStreamWithPos outputStream = new ByteArrayOutputStreamWithPos(GROUP_WRITE_BYTES);
+		StateSerializerUtil.writeGroup(outputStream, keyGroup);
+		return outputStream.toByteArray();
+	}
+
 	private void transferAllStateDataToDirectory(
 		IncrementalKeyedStateSnapshot stateSnapshot,
-		Path localRestorePath) throws IOException {
+		Path localRestorePath) throws Exception {
+
 		Map<StateHandleID, Tuple2<String, StreamStateHandle>> sharedState = stateSnapshot.getSharedState();
+		Map<StateHandleID, StreamStateHandle> privateState = stateSnapshot.getPrivateState();
+
+		Map<String, StreamStateHandle> stateHandles = new HashMap<>(sharedState.size() + privateState.size());
 		for (Map.Entry<StateHandleID, Tuple2<String, StreamStateHandle>> stateHandleEntry : sharedState.entrySet()) {
-			String stateName = stateHandleEntry.getKey().getKeyString();
-			StreamStateHandle stateHandle = stateHandleEntry.getValue().f1;
-			restoreFile(localRestorePath, stateName, stateHandle);
+			stateHandles.put(stateHandleEntry.getKey().getKeyString(), stateHandleEntry.getValue().f1);
 		}
-
-		Map<StateHandleID, StreamStateHandle> privateState = stateSnapshot.getPrivateState();
 		for (Map.Entry<StateHandleID, StreamStateHandle> privateFileEntry : privateState.entrySet()) {
-			String privateFileName = privateFileEntry.getKey().getKeyString();
-			StreamStateHandle privateFileStateHandle = privateFileEntry.getValue();
-			restoreFile(localRestorePath, privateFileName, privateFileStateHandle);
+			stateHandles.put(privateFileEntry.getKey().getKeyString(), privateFileEntry.getValue());
+		}
+
+		// create the directory up front, the files are downloaded in parallel
+		FileSystem localFileSystem = localRestorePath.getFileSystem();
+		if (!localFileSystem.exists(localRestorePath) && !localFileSystem.mkdirs(localRestorePath)) {
+			throw new IOException("Cannot create local restore path " + localRestorePath + ".");
+		}
+
+		try (RocksDBStateDataTransfer stateDataTransfer = new RocksDBStateDataTransfer(
+			stateBackend.getNumberOfTransferingThreads(),
+			stateBackend.getTransferRetryTimes(),
+			closeableRegistry,
+			stateBackend.getStateDataTransferMetrics())) {
+
+			stateDataTransfer.downloadFiles(stateHandles, localRestorePath);
 		}
 	}
 }
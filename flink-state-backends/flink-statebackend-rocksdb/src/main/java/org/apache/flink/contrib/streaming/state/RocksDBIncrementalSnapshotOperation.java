@@ -20,7 +20,6 @@ package org.apache.flink.contrib.streaming.state;
 
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.core.fs.CloseableRegistry;
-import org.apache.flink.core.fs.FSDataInputStream;
 import org.apache.flink.core.fs.FileStatus;
 import org.apache.flink.core.fs.FileSystem;
 import org.apache.flink.core.fs.Path;
@@ -168,6 +167,9 @@ public class RocksDBIncrementalSnapshotOperation {
 
 		FileStatus[] fileStatuses = localBackupDirectory.listStatus();
 		if (fileStatuses != null) {
+			List<Path> sstFilePaths = new ArrayList<>(fileStatuses.length);
+			List<Path> miscFilePaths = new ArrayList<>(fileStatuses.length);
+
 			for (FileStatus fileStatus : fileStatuses) {
 				final Path filePath = fileStatus.getPath();
 				final String fileName = filePath.getName();
@@ -185,25 +187,14 @@ public class RocksDBIncrementalSnapshotOperation {
 							stateHandleID,
 							Tuple2.of(tuple2.f0, new PlaceholderStreamStateHandle()));
 					} else {
-						StreamStateHandle streamStateHandle = materializeStateData(filePath);
-						// unique id for the materialized stream state handle.
-						// For file state-handle, this id is the file path.
-						// For byte-stream state-handle, this id is the unique handle name.
-						String uniqueId;
-						if (streamStateHandle instanceof FileStateHandle) {
-							uniqueId = ((FileStateHandle) streamStateHandle).getFilePath().toString();
-						} else if (streamStateHandle instanceof ByteStreamStateHandle) {
-							uniqueId = ((ByteStreamStateHandle) streamStateHandle).getHandleName();
-						} else {
-							throw new UnsupportedOperationException("RocksDB incremental snapshot operation cannot support non FileStateHandle/ByteStreamStateHandle");
-						}
-						sstFiles.put(stateHandleID, Tuple2.of(uniqueId, streamStateHandle));
+						sstFilePaths.add(filePath);
 					}
 				} else {
-					StreamStateHandle fileHandle = materializeStateData(filePath);
-					miscFiles.put(stateHandleID, fileHandle);
+					miscFilePaths.add(filePath);
 				}
 			}
+
+			uploadSstAndMiscFiles(sstFilePaths, miscFilePaths);
 		}
 
 		synchronized (stateBackend.materializedSstFiles) {
@@ -316,46 +307,40 @@ public class RocksDBIncrementalSnapshotOperation {
 		}
 	}
 
-	private StreamStateHandle materializeStateData(Path filePath) throws Exception {
-		FSDataInputStream inputStream = null;
-		CheckpointStreamFactory.CheckpointStateOutputStream outputStream = null;
-
-		try {
-			final byte[] buffer = new byte[8 * 1024];
-
-			FileSystem backupFileSystem = localBackupDirectory.getFileSystem();
-			inputStream = backupFileSystem.open(filePath);
-			closeableRegistry.registerCloseable(inputStream);
-
-			outputStream = checkpointStreamFactory
-				.createCheckpointStateOutputStream(checkpointId, CheckpointedStateScope.SHARED);
-			closeableRegistry.registerCloseable(outputStream);
-
-			while (true) {
-				int numBytes = inputStream.read(buffer);
-
-				if (numBytes == -1) {
-					break;
+	private void uploadSstAndMiscFiles(List<Path> sstFilePaths, List<Path> miscFilePaths) throws Exception {
+		final FileSystem backupFileSystem = localBackupDirectory.getFileSystem();
+
+		// the files are uploaded in parallel, so that the checkpoint duration scales with the bandwidth
+		try (RocksDBStateDataTransfer stateDataTransfer = new RocksDBStateDataTransfer(
+			stateBackend.getNumberOfTransferingThreads(),
+			stateBackend.getTransferRetryTimes(),
+			closeableRegistry,
+			stateBackend.getStateDataTransferMetrics())) {
+
+			Map<Path, StreamStateHandle> sstFileHandles = stateDataTransfer.uploadFiles(
+				sstFilePaths, backupFileSystem, checkpointStreamFactory, checkpointId, CheckpointedStateScope.SHARED);
+
+			for (Map.Entry<Path, StreamStateHandle> entry : sstFileHandles.entrySet()) {
+				StreamStateHandle streamStateHandle = entry.getValue();
+				// unique id for the materialized stream state handle.
+				// For file state-handle, this id is the file path.
+				// For byte-stream state-handle, this id is the unique handle name.
+				String uniqueId;
+				if (streamStateHandle instanceof FileStateHandle) {
+					uniqueId = ((FileStateHandle) streamStateHandle).getFilePath().toString();
+				} else if (streamStateHandle instanceof ByteStreamStateHandle) {
+					uniqueId = ((ByteStreamStateHandle) streamStateHandle).getHandleName();
+				} else {
+					throw new UnsupportedOperationException("RocksDB incremental snapshot operation cannot support non FileStateHandle/ByteStreamStateHandle");
 				}
-
-				outputStream.write(buffer, 0, numBytes);
-			}
-
-			StreamStateHandle result = null;
-			if (closeableRegistry.unregisterCloseable(outputStream)) {
-				result = outputStream.closeAndGetHandle();
-				outputStream = null;
+				sstFiles.put(new StateHandleID(entry.getKey().getName()), Tuple2.of(uniqueId, streamStateHandle));
 			}
-			return result;
 
-		} finally {
-
-			if (closeableRegistry.unregisterCloseable(inputStream)) {
-				inputStream.close();
-			}
+			Map<Path, StreamStateHandle> miscFileHandles = stateDataTransfer.uploadFiles(
+				miscFilePaths, backupFileSystem, checkpointStreamFactory, checkpointId, CheckpointedStateScope.SHARED);
 
-			if (closeableRegistry.unregisterCloseable(outputStream)) {
-				outputStream.close();
+			for (Map.Entry<Path, StreamStateHandle> entry : miscFileHandles.entrySet()) {
+				miscFiles.put(new StateHandleID(entry.getKey().getName()), entry.getValue());
 			}
 		}
 	}
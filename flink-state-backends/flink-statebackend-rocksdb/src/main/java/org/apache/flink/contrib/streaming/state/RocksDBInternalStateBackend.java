@@ -19,7 +19,10 @@
 package org.apache.flink.contrib.streaming.state;
 
 import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.state.StateTtlConfig;
+import org.apache.flink.api.common.typeutils.base.array.BytePrimitiveArraySerializer;
 import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.configuration.CheckpointingOptions;
 import org.apache.flink.configuration.ConfigConstants;
 import org.apache.flink.core.fs.CloseableRegistry;
 import org.apache.flink.core.fs.Path;
@@ -35,7 +38,9 @@ import org.apache.flink.runtime.state.CheckpointedStateScope;
 import org.apache.flink.runtime.state.DoneFuture;
 import org.apache.flink.runtime.state.IncrementalKeyedStateSnapshot;
 import org.apache.flink.runtime.state.IncrementalLocalKeyedStateSnapshot;
+import org.apache.flink.runtime.state.InternalStateType;
 import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupsList;
 import org.apache.flink.runtime.state.KeyedStateHandle;
 import org.apache.flink.runtime.state.LocalRecoveryConfig;
 import org.apache.flink.runtime.state.LocalRecoveryDirectoryProvider;
@@ -43,6 +48,7 @@ import org.apache.flink.runtime.state.RegisteredStateMetaInfo;
 import org.apache.flink.runtime.state.SnapshotDirectory;
 import org.apache.flink.runtime.state.SnapshotResult;
 import org.apache.flink.runtime.state.SnapshotStrategy;
+import org.apache.flink.runtime.state.StateSnapshotTransformer;
 import org.apache.flink.runtime.state.StateAccessException;
 import org.apache.flink.runtime.state.StateHandleID;
 import org.apache.flink.runtime.state.StateStorage;
@@ -50,6 +56,11 @@ import org.apache.flink.runtime.state.StorageIterator;
 import org.apache.flink.runtime.state.StreamStateHandle;
 import org.apache.flink.runtime.state.keyed.KeyedState;
 import org.apache.flink.runtime.state.subkeyed.SubKeyedState;
+import org.apache.flink.runtime.state.ttl.TtlIncrementalCleanup;
+import org.apache.flink.streaming.api.operators.InternalTimerServiceFactory;
+import org.apache.flink.streaming.api.operators.KeyContext;
+import org.apache.flink.streaming.api.operators.KeyGroupedInternalTimerService;
+import org.apache.flink.streaming.runtime.tasks.ProcessingTimeService;
 import org.apache.flink.util.FileUtils;
 import org.apache.flink.util.IOUtils;
 import org.apache.flink.util.Preconditions;
@@ -92,8 +103,10 @@ import java.util.stream.Collectors;
  * For persistence against loss of machines, checkpoints take a snapshot of the
  * rocksDB database, and persist that snapshot in a file system (by default) or
  * another configurable state backend.
+ *
+ * <p>The backend can also store the timers of keyed stream operators, see {@link RocksDBInternalTimerService}.
  */
-public class RocksDBInternalStateBackend extends AbstractInternalStateBackend {
+public class RocksDBInternalStateBackend extends AbstractInternalStateBackend implements InternalTimerServiceFactory {
 
 	private static final Logger LOG = LoggerFactory.getLogger(RocksDBInternalStateBackend.class);
 
@@ -164,6 +177,18 @@ public class RocksDBInternalStateBackend extends AbstractInternalStateBackend {
 	/** The snapshot strategy, e.g., if we use full or incremental checkpoints, local state, and so on. */
 	private final SnapshotStrategy<SnapshotResult<KeyedStateHandle>> snapshotStrategy;
 
+	/** The number of threads used to transfer the files of incremental checkpoints. */
+	private final int numberOfTransferingThreads;
+
+	/** The number of times the transfer of a file of an incremental checkpoint is retried. */
+	private final int transferRetryTimes;
+
+	/** The metrics of the transfers of the files of incremental checkpoints. */
+	private final RocksDBStateDataTransferMetrics stateDataTransferMetrics = new RocksDBStateDataTransferMetrics();
+
+	/** The incremental cleanups of the states with time-to-live, which hold iterators to be closed with the db. */
+	private final List<RocksDBTtlIncrementalCleanup> ttlIncrementalCleanups = new ArrayList<>();
+
 	public RocksDBInternalStateBackend(
 		ClassLoader userClassLoader,
 		File instanceBasePath,
@@ -176,8 +201,44 @@ public class RocksDBInternalStateBackend extends AbstractInternalStateBackend {
 		TaskKvStateRegistry kvStateRegistry,
 		ExecutionConfig executionConfig) throws IOException {
 
+		this(
+			userClassLoader,
+			instanceBasePath,
+			dbOptions,
+			columnOptions,
+			numberOfGroups,
+			keyGroupRange,
+			enableIncrementalCheckpointing,
+			CheckpointingOptions.ROCKSDB_CHECKPOINT_TRANSFER_THREAD_NUM.defaultValue(),
+			CheckpointingOptions.ROCKSDB_CHECKPOINT_TRANSFER_RETRY_TIMES.defaultValue(),
+			localRecoveryConfig,
+			kvStateRegistry,
+			executionConfig);
+	}
+
+	public RocksDBInternalStateBackend(
+		ClassLoader userClassLoader,
+		File instanceBasePath,
+		DBOptions dbOptions,
+		ColumnFamilyOptions columnOptions,
+		int numberOfGroups,
+		KeyGroupRange keyGroupRange,
+		boolean enableIncrementalCheckpointing,
+		int numberOfTransferingThreads,
+		int transferRetryTimes,
+		LocalRecoveryConfig localRecoveryConfig,
+		TaskKvStateRegistry kvStateRegistry,
+		ExecutionConfig executionConfig) throws IOException {
+
 		super(numberOfGroups, keyGroupRange, userClassLoader, kvStateRegistry, executionConfig);
 
+		Preconditions.checkArgument(numberOfTransferingThreads > 0,
+			"The number of threads used to transfer files must be positive.");
+		Preconditions.checkArgument(transferRetryTimes >= 0,
+			"The number of retries of file transfers must not be negative.");
+		this.numberOfTransferingThreads = numberOfTransferingThreads;
+		this.transferRetryTimes = transferRetryTimes;
+
 		this.dbOptions = Preconditions.checkNotNull(dbOptions);
 		// ensure that we use the right merge operator, because other code relies on this
 		this.columnOptions = Preconditions.checkNotNull(columnOptions)
@@ -219,6 +280,11 @@ public class RocksDBInternalStateBackend extends AbstractInternalStateBackend {
 		// IMPORTANT: null reference to signal potential async checkpoint workers that the db was disposed, as
 		// working on the disposed object results in SEGFAULTS.
 		if (db != null) {
+			for (RocksDBTtlIncrementalCleanup incrementalCleanup : ttlIncrementalCleanups) {
+				IOUtils.closeQuietly(incrementalCleanup);
+			}
+			ttlIncrementalCleanups.clear();
+
 			IOUtils.closeQuietly(defaultColumnFamilyHandle);
 			for (StateStorage stateStorage : getStateStorages().values()) {
 				((RocksDBStorageInstance) stateStorage.getStorageInstance()).close();
@@ -275,6 +341,38 @@ public class RocksDBInternalStateBackend extends AbstractInternalStateBackend {
 		return new ColumnFamilyDescriptor(nameBytes, columnOptions);
 	}
 
+	/**
+	 * Returns the storage of the timers with the given name. The timers are registered as a keyed
+	 * state with binary keys and values, so that they are snapshotted, restored and rescaled
+	 * together with the other states of the backend.
+	 */
+	RocksDBStorageInstance getOrCreateTimerStorage(String timerStateName) {
+		RegisteredStateMetaInfo stateMetaInfo = registeredStateMetaInfos.get(timerStateName);
+
+		if (stateMetaInfo == null) {
+			stateMetaInfo = RegisteredStateMetaInfo.createKeyedStateMetaInfo(
+				InternalStateType.KEYED_VALUE,
+				timerStateName,
+				BytePrimitiveArraySerializer.INSTANCE,
+				BytePrimitiveArraySerializer.INSTANCE);
+			registeredStateMetaInfos.put(timerStateName, stateMetaInfo);
+		}
+
+		return (RocksDBStorageInstance) getOrCreateStateStorageForKeyedState(stateMetaInfo).getStorageInstance();
+	}
+
+	@Override
+	public <K, N> KeyGroupedInternalTimerService<K, N> createTimerService(
+		String name,
+		int totalKeyGroups,
+		KeyGroupsList localKeyGroupRange,
+		KeyContext keyContext,
+		ProcessingTimeService processingTimeService) {
+
+		return new RocksDBInternalTimerService<>(
+			this, name, totalKeyGroups, localKeyGroupRange, keyContext, processingTimeService);
+	}
+
 	public WriteOptions getWriteOptions() {
 		return this.writeOptions;
 	}
@@ -299,6 +397,21 @@ public class RocksDBInternalStateBackend extends AbstractInternalStateBackend {
 		return stateStorage;
 	}
 
+	@Override
+	protected TtlIncrementalCleanup createTtlIncrementalCleanup(
+		StateStorage stateStorage,
+		StateSnapshotTransformer snapshotTransformer,
+		StateTtlConfig ttlConfig) {
+
+		RocksDBTtlIncrementalCleanup incrementalCleanup = new RocksDBTtlIncrementalCleanup(
+			(RocksDBStorageInstance) stateStorage.getStorageInstance(),
+			getTtlTimeProvider(),
+			ttlConfig.getTtl().toMilliseconds(),
+			ttlConfig.getIncrementalCleanupSize());
+		ttlIncrementalCleanups.add(incrementalCleanup);
+		return incrementalCleanup;
+	}
+
 	@Override
 	public void notifyCheckpointComplete(long completedCheckpointId) throws Exception {
 		if (!enableIncrementalCheckpointing) {
@@ -436,6 +549,26 @@ public class RocksDBInternalStateBackend extends AbstractInternalStateBackend {
 		return cancelStreamRegistry;
 	}
 
+	DBOptions getDbOptions() {
+		return dbOptions;
+	}
+
+	ColumnFamilyOptions getColumnOptions() {
+		return columnOptions;
+	}
+
+	int getNumberOfTransferingThreads() {
+		return numberOfTransferingThreads;
+	}
+
+	int getTransferRetryTimes() {
+		return transferRetryTimes;
+	}
+
+	RocksDBStateDataTransferMetrics getStateDataTransferMetrics() {
+		return stateDataTransferMetrics;
+	}
+
 	private static void checkAndCreateDirectory(File directory) throws IOException {
 		if (directory.exists()) {
 			if (!directory.isDirectory()) {
@@ -477,7 +610,8 @@ public class RocksDBInternalStateBackend extends AbstractInternalStateBackend {
 				throw new IOException("RocksDB closed.");
 			}
 
-			if (getKeyedStates().isEmpty() && getSubKeyedStates().isEmpty()) {
+			// the registered states include the timers, which have no keyed state of their own
+			if (registeredStateMetaInfos.isEmpty()) {
 				if (LOG.isDebugEnabled()) {
 					LOG.debug("Asynchronous RocksDB snapshot performed on empty keyed state at {}. Returning empty snapshot.", checkpointTimestamp);
 				}
@@ -0,0 +1,477 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.api.common.typeutils.CompatibilityResult;
+import org.apache.flink.api.common.typeutils.CompatibilityUtil;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.KeyGroupsList;
+import org.apache.flink.streaming.api.operators.InternalTimer;
+import org.apache.flink.streaming.api.operators.InternalTimerService;
+import org.apache.flink.streaming.api.operators.InternalTimersSnapshot;
+import org.apache.flink.streaming.api.operators.KeyContext;
+import org.apache.flink.streaming.api.operators.KeyGroupedInternalTimerService;
+import org.apache.flink.streaming.api.operators.Triggerable;
+import org.apache.flink.streaming.runtime.tasks.ProcessingTimeCallback;
+import org.apache.flink.streaming.runtime.tasks.ProcessingTimeService;
+import org.apache.flink.util.FlinkRuntimeException;
+import org.apache.flink.util.Preconditions;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * {@link InternalTimerService} that stores timers in the {@link RocksDBInternalStateBackend}.
+ *
+ * <p>The timers of each time domain are kept in a {@link RocksDBTimerQueue}, backed by a column
+ * family which is registered in the backend like a keyed state. Thus the timers are part of the
+ * snapshots of the backend, incremental ones included.
+ *
+ * <p>The timers are also written to the raw keyed state of the operator, in the same format as the
+ * other timer services write them, so that a job can switch to another timer service when it is
+ * restored. Timers that are restored from the raw keyed state, e.g. because the job used another
+ * timer service before, are moved into RocksDB. Timers that are contained in the restored backend
+ * already are not added twice.
+ */
+public class RocksDBInternalTimerService<K, N> implements KeyGroupedInternalTimerService<K, N>, ProcessingTimeCallback {
+
+	/** The default number of timers cached in memory per key-group and time domain. */
+	public static final int DEFAULT_CACHE_SIZE = 128;
+
+	private static final String TIMER_STATE_PREFIX = "_timer_state/";
+
+	private final ProcessingTimeService processingTimeService;
+
+	private final KeyContext keyContext;
+
+	/**
+	 * Processing time timers that are currently in-flight.
+	 */
+	private final RocksDBTimerQueue processingTimeTimersQueue;
+
+	/**
+	 * Event time timers that are currently in-flight.
+	 */
+	private final RocksDBTimerQueue eventTimeTimersQueue;
+
+	/**
+	 * Information concerning the local key-group range.
+	 */
+	private final KeyGroupsList localKeyGroupRange;
+	private final int totalKeyGroups;
+
+	/** The buffer into which the key and namespace of timers are serialized. */
+	private final DataOutputSerializer serializationBuffer;
+
+	/** The view from which the key and namespace of fired timers are deserialized. */
+	private final DataInputDeserializer deserializationBuffer;
+
+	/**
+	 * The local event time, as denoted by the last received
+	 * {@link org.apache.flink.streaming.api.watermark.Watermark Watermark}.
+	 */
+	private long currentWatermark = Long.MIN_VALUE;
+
+	/**
+	 * The one and only Future (if any) registered to execute the
+	 * next {@link Triggerable} action, when its (processing) time arrives.
+	 * */
+	private ScheduledFuture<?> nextTimer;
+
+	// Variables to be set when the service is started.
+
+	private TypeSerializer<K> keySerializer;
+
+	private TypeSerializer<N> namespaceSerializer;
+
+	private Triggerable<K, N> triggerTarget;
+
+	private volatile boolean isInitialized;
+
+	private TypeSerializer<K> keyDeserializer;
+
+	private TypeSerializer<N> namespaceDeserializer;
+
+	/** The restored timers snapshot, if any. */
+	private InternalTimersSnapshot<K, N> restoredTimersSnapshot;
+
+	public RocksDBInternalTimerService(
+		RocksDBInternalStateBackend stateBackend,
+		String name,
+		int totalKeyGroups,
+		KeyGroupsList localKeyGroupRange,
+		KeyContext keyContext,
+		ProcessingTimeService processingTimeService) {
+
+		this(stateBackend, name, totalKeyGroups, localKeyGroupRange, keyContext, processingTimeService, DEFAULT_CACHE_SIZE);
+	}
+
+	public RocksDBInternalTimerService(
+		RocksDBInternalStateBackend stateBackend,
+		String name,
+		int totalKeyGroups,
+		KeyGroupsList localKeyGroupRange,
+		KeyContext keyContext,
+		ProcessingTimeService processingTimeService,
+		int cacheSize) {
+
+		checkNotNull(stateBackend);
+		checkNotNull(name);
+		this.keyContext = checkNotNull(keyContext);
+		this.processingTimeService = checkNotNull(processingTimeService);
+
+		this.totalKeyGroups = totalKeyGroups;
+		this.localKeyGroupRange = checkNotNull(localKeyGroupRange);
+
+		// find the starting index of the local key-group range
+		int startIdx = Integer.MAX_VALUE;
+		for (Integer keyGroupIdx : localKeyGroupRange) {
+			startIdx = Math.min(keyGroupIdx, startIdx);
+		}
+
+		this.eventTimeTimersQueue = new RocksDBTimerQueue(
+			stateBackend.getOrCreateTimerStorage(TIMER_STATE_PREFIX + name + "/event"),
+			localKeyGroupRange,
+			startIdx,
+			cacheSize);
+		this.processingTimeTimersQueue = new RocksDBTimerQueue(
+			stateBackend.getOrCreateTimerStorage(TIMER_STATE_PREFIX + name + "/processing"),
+			localKeyGroupRange,
+			startIdx,
+			cacheSize);
+
+		this.serializationBuffer = new DataOutputSerializer(64);
+		this.deserializationBuffer = new DataInputDeserializer();
+	}
+
+	@Override
+	public void startTimerService(
+			TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			Triggerable<K, N> triggerTarget) {
+
+		if (!isInitialized) {
+
+			if (keySerializer == null || namespaceSerializer == null) {
+				throw new IllegalArgumentException("The TimersService serializers cannot be null.");
+			}
+
+			if (this.keySerializer != null || this.namespaceSerializer != null || this.triggerTarget != null) {
+				throw new IllegalStateException("The TimerService has already been initialized.");
+			}
+
+			// the following is the case where we restore
+			if (restoredTimersSnapshot != null) {
+				CompatibilityResult<K> keySerializerCompatibility = CompatibilityUtil.resolveCompatibilityResult(
+					this.keyDeserializer,
+					null,
+					restoredTimersSnapshot.getKeySerializerConfigSnapshot(),
+					keySerializer);
+
+				CompatibilityResult<N> namespaceSerializerCompatibility = CompatibilityUtil.resolveCompatibilityResult(
+					this.namespaceDeserializer,
+					null,
+					restoredTimersSnapshot.getNamespaceSerializerConfigSnapshot(),
+					namespaceSerializer);
+
+				if (keySerializerCompatibility.isRequiresMigration() || namespaceSerializerCompatibility.isRequiresMigration()) {
+					throw new IllegalStateException("Tried to initialize restored TimerService " +
+						"with incompatible serializers than those used to snapshot its state.");
+				}
+			}
+
+			this.keySerializer = keySerializer;
+			this.namespaceSerializer = namespaceSerializer;
+			this.keyDeserializer = null;
+			this.namespaceDeserializer = null;
+
+			this.triggerTarget = Preconditions.checkNotNull(triggerTarget);
+
+			// re-register the restored timers (if any)
+			if (!processingTimeTimersQueue.isEmpty()) {
+				nextTimer = processingTimeService.registerTimer(processingTimeTimersQueue.peekTimestamp(), this);
+			}
+			this.isInitialized = true;
+		} else {
+			if (!(this.keySerializer.equals(keySerializer) && this.namespaceSerializer.equals(namespaceSerializer))) {
+				throw new IllegalArgumentException("Already initialized Timer Service " +
+					"tried to be initialized with different key and namespace serializers.");
+			}
+		}
+	}
+
+	@Override
+	public long currentProcessingTime() {
+		return processingTimeService.getCurrentProcessingTime();
+	}
+
+	@Override
+	public long currentWatermark() {
+		return currentWatermark;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void registerProcessingTimeTimer(N namespace, long time) {
+		K key = (K) keyContext.getCurrentKey();
+		serializeTimer(key, namespace, keySerializer, namespaceSerializer);
+
+		long nextTriggerTime = processingTimeTimersQueue.isEmpty() ?
+			Long.MAX_VALUE : processingTimeTimersQueue.peekTimestamp();
+
+		// make sure we only put one timer per key into the queue
+		if (addTimer(processingTimeTimersQueue, key, time)) {
+
+			// check if we need to re-schedule our timer to earlier
+			if (time < nextTriggerTime) {
+				if (nextTimer != null) {
+					nextTimer.cancel(false);
+				}
+				nextTimer = processingTimeService.registerTimer(time, this);
+			}
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void registerEventTimeTimer(N namespace, long time) {
+		K key = (K) keyContext.getCurrentKey();
+		serializeTimer(key, namespace, keySerializer, namespaceSerializer);
+		addTimer(eventTimeTimersQueue, key, time);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void deleteProcessingTimeTimer(N namespace, long time) {
+		K key = (K) keyContext.getCurrentKey();
+		serializeTimer(key, namespace, keySerializer, namespaceSerializer);
+		removeTimer(processingTimeTimersQueue, key, time);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void deleteEventTimeTimer(N namespace, long time) {
+		K key = (K) keyContext.getCurrentKey();
+		serializeTimer(key, namespace, keySerializer, namespaceSerializer);
+		removeTimer(eventTimeTimersQueue, key, time);
+	}
+
+	@Override
+	public void onProcessingTime(long time) throws Exception {
+		// null out the timer in case the Triggerable calls registerProcessingTimeTimer()
+		// inside the callback.
+		nextTimer = null;
+
+		while (!processingTimeTimersQueue.isEmpty() && processingTimeTimersQueue.peekTimestamp() <= time) {
+			InternalTimer<K, N> timer = pollTimer(processingTimeTimersQueue);
+
+			keyContext.setCurrentKey(timer.getKey());
+			triggerTarget.onProcessingTime(timer);
+		}
+
+		if (!processingTimeTimersQueue.isEmpty()) {
+			if (nextTimer == null) {
+				nextTimer = processingTimeService.registerTimer(processingTimeTimersQueue.peekTimestamp(), this);
+			}
+		}
+	}
+
+	@Override
+	public void advanceWatermark(long time) throws Exception {
+		currentWatermark = time;
+
+		while (!eventTimeTimersQueue.isEmpty() && eventTimeTimersQueue.peekTimestamp() <= time) {
+			InternalTimer<K, N> timer = pollTimer(eventTimeTimersQueue);
+
+			keyContext.setCurrentKey(timer.getKey());
+			triggerTarget.onEventTime(timer);
+		}
+	}
+
+	@Override
+	public InternalTimersSnapshot<K, N> snapshotTimersForKeyGroup(int keyGroupIdx) {
+		checkArgument(localKeyGroupRange.contains(keyGroupIdx),
+			"Key Group " + keyGroupIdx + " does not belong to the local range.");
+
+		return InternalTimersSnapshot.ofSerializedTimers(
+			keySerializer,
+			keySerializer.snapshotConfiguration(),
+			namespaceSerializer,
+			namespaceSerializer.snapshotConfiguration(),
+			eventTimeTimersQueue.getTimersForKeyGroup(keyGroupIdx),
+			processingTimeTimersQueue.getTimersForKeyGroup(keyGroupIdx));
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void restoreTimersForKeyGroup(InternalTimersSnapshot<?, ?> restoredTimersSnapshot, int keyGroupIdx) throws IOException {
+		this.restoredTimersSnapshot = (InternalTimersSnapshot<K, N>) restoredTimersSnapshot;
+
+		if ((this.keyDeserializer != null && !this.keyDeserializer.equals(restoredTimersSnapshot.getKeySerializer())) ||
+			(this.namespaceDeserializer != null && !this.namespaceDeserializer.equals(restoredTimersSnapshot.getNamespaceSerializer()))) {
+
+			throw new IllegalArgumentException("Tried to restore timers " +
+				"for the same service with different serializers.");
+		}
+
+		this.keyDeserializer = this.restoredTimersSnapshot.getKeySerializer();
+		this.namespaceDeserializer = this.restoredTimersSnapshot.getNamespaceSerializer();
+
+		checkArgument(localKeyGroupRange.contains(keyGroupIdx),
+			"Key Group " + keyGroupIdx + " does not belong to the local range.");
+
+		// restore the event time timers
+		restoreTimers(eventTimeTimersQueue, this.restoredTimersSnapshot.getEventTimeTimers());
+
+		// restore the processing time timers
+		restoreTimers(processingTimeTimersQueue, this.restoredTimersSnapshot.getProcessingTimeTimers());
+	}
+
+	@Override
+	public void dispose() {
+		if (nextTimer != null) {
+			nextTimer.cancel(false);
+			nextTimer = null;
+		}
+
+		// the timers are released together with the RocksDB instance of the state backend
+	}
+
+	private void restoreTimers(RocksDBTimerQueue queue, Set<InternalTimer<K, N>> timers) {
+		if (timers == null) {
+			return;
+		}
+
+		for (InternalTimer<K, N> timer : timers) {
+			serializeTimer(timer.getKey(), timer.getNamespace(), keyDeserializer, namespaceDeserializer);
+			addTimer(queue, timer.getKey(), timer.getTimestamp());
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//  Binary timer handling
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Serializes the given key and namespace into the serialization buffer.
+	 */
+	private void serializeTimer(K key, N namespace, TypeSerializer<K> keySerializer, TypeSerializer<N> namespaceSerializer) {
+		serializationBuffer.clear();
+
+		try {
+			keySerializer.serialize(key, serializationBuffer);
+			namespaceSerializer.serialize(namespace, serializationBuffer);
+		} catch (IOException e) {
+			throw new FlinkRuntimeException("Could not serialize the timer.", e);
+		}
+	}
+
+	/**
+	 * Adds the timer whose key and namespace are in the serialization buffer to the given queue.
+	 */
+	private boolean addTimer(RocksDBTimerQueue queue, K key, long timestamp) {
+		return queue.add(
+			getKeyGroupForKey(key),
+			timestamp,
+			serializationBuffer.getSharedBuffer(),
+			0,
+			serializationBuffer.length());
+	}
+
+	/**
+	 * Removes the timer whose key and namespace are in the serialization buffer from the given queue.
+	 */
+	private boolean removeTimer(RocksDBTimerQueue queue, K key, long timestamp) {
+		return queue.remove(
+			getKeyGroupForKey(key),
+			timestamp,
+			serializationBuffer.getSharedBuffer(),
+			0,
+			serializationBuffer.length());
+	}
+
+	/**
+	 * Removes the timer with the smallest timestamp from the given queue and deserializes it.
+	 */
+	private InternalTimer<K, N> pollTimer(RocksDBTimerQueue queue) throws IOException {
+		byte[] timerKey = queue.poll();
+
+		deserializationBuffer.setBuffer(
+			timerKey,
+			RocksDBTimerQueue.TIMER_PREFIX_BYTES,
+			timerKey.length - RocksDBTimerQueue.TIMER_PREFIX_BYTES);
+		K key = keySerializer.deserialize(deserializationBuffer);
+		N namespace = namespaceSerializer.deserialize(deserializationBuffer);
+
+		return new InternalTimer<>(RocksDBTimerQueue.getTimestamp(timerKey), key, namespace);
+	}
+
+	private int countTimers(RocksDBTimerQueue queue, N namespace) {
+		int[] count = new int[1];
+		queue.forEachTimer(timerKey -> {
+			try {
+				deserializationBuffer.setBuffer(
+					timerKey,
+					RocksDBTimerQueue.TIMER_PREFIX_BYTES,
+					timerKey.length - RocksDBTimerQueue.TIMER_PREFIX_BYTES);
+				keySerializer.deserialize(deserializationBuffer);
+				if (namespaceSerializer.deserialize(deserializationBuffer).equals(namespace)) {
+					count[0]++;
+				}
+			} catch (IOException e) {
+				throw new FlinkRuntimeException("Could not deserialize the timer.", e);
+			}
+		});
+		return count[0];
+	}
+
+	private int getKeyGroupForKey(K key) {
+		int keyGroupIdx = KeyGroupRangeAssignment.assignToKeyGroup(key, this.totalKeyGroups);
+		checkArgument(localKeyGroupRange.contains(keyGroupIdx),
+			"Key Group " + keyGroupIdx + " does not belong to the local range.");
+		return keyGroupIdx;
+	}
+
+	@Override
+	public int numProcessingTimeTimers() {
+		return this.processingTimeTimersQueue.size();
+	}
+
+	@Override
+	public int numEventTimeTimers() {
+		return this.eventTimeTimersQueue.size();
+	}
+
+	@Override
+	public int numProcessingTimeTimers(N namespace) {
+		return countTimers(processingTimeTimersQueue, namespace);
+	}
+
+	@Override
+	public int numEventTimeTimers(N namespace) {
+		return countTimers(eventTimeTimersQueue, namespace);
+	}
+}
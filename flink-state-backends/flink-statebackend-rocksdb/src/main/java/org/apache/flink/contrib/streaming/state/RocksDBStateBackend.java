@@ -61,6 +61,7 @@ import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
 
+import static org.apache.flink.util.Preconditions.checkArgument;
 import static org.apache.flink.util.Preconditions.checkNotNull;
 
 /**
@@ -88,6 +89,9 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 	/** Flag whether the native library has been loaded. */
 	private static boolean rocksDbInitialized = false;
 
+	/** The marker of transfer settings which are not yet set and resolved from the configuration. */
+	private static final int UNDEFINED_TRANSFER_SETTING = -1;
+
 	// ------------------------------------------------------------------------
 
 	// -- configuration values, set in the application / configuration
@@ -111,6 +115,12 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 	/** This determines if incremental checkpointing is enabled. */
 	private final TernaryBoolean enableIncrementalCheckpointing;
 
+	/** The number of threads used to transfer the files of incremental checkpoints. */
+	private int numberOfTransferingThreads;
+
+	/** The number of times the transfer of a file of an incremental checkpoint is retried. */
+	private int transferRetryTimes;
+
 	// -- runtime values, set on TaskManager when initializing / using the backend
 
 	/** Base paths for RocksDB directory, as initialized. */
@@ -223,6 +233,8 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 	public RocksDBStateBackend(StateBackend checkpointStreamBackend, TernaryBoolean enableIncrementalCheckpointing) {
 		this.checkpointStreamBackend = checkNotNull(checkpointStreamBackend);
 		this.enableIncrementalCheckpointing = enableIncrementalCheckpointing;
+		this.numberOfTransferingThreads = UNDEFINED_TRANSFER_SETTING;
+		this.transferRetryTimes = UNDEFINED_TRANSFER_SETTING;
 	}
 
 	/**
@@ -258,6 +270,29 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 		this.enableIncrementalCheckpointing = original.enableIncrementalCheckpointing.resolveUndefined(
 			config.getBoolean(CheckpointingOptions.INCREMENTAL_CHECKPOINTS));
 
+		// configure the transfer of the files of incremental checkpoints
+		if (original.numberOfTransferingThreads == UNDEFINED_TRANSFER_SETTING) {
+			int numberOfThreads = config.getInteger(CheckpointingOptions.ROCKSDB_CHECKPOINT_TRANSFER_THREAD_NUM);
+			if (numberOfThreads <= 0) {
+				throw new IllegalConfigurationException(
+					CheckpointingOptions.ROCKSDB_CHECKPOINT_TRANSFER_THREAD_NUM.key() + " must be positive.");
+			}
+			this.numberOfTransferingThreads = numberOfThreads;
+		} else {
+			this.numberOfTransferingThreads = original.numberOfTransferingThreads;
+		}
+
+		if (original.transferRetryTimes == UNDEFINED_TRANSFER_SETTING) {
+			int retryTimes = config.getInteger(CheckpointingOptions.ROCKSDB_CHECKPOINT_TRANSFER_RETRY_TIMES);
+			if (retryTimes < 0) {
+				throw new IllegalConfigurationException(
+					CheckpointingOptions.ROCKSDB_CHECKPOINT_TRANSFER_RETRY_TIMES.key() + " must not be negative.");
+			}
+			this.transferRetryTimes = retryTimes;
+		} else {
+			this.transferRetryTimes = original.transferRetryTimes;
+		}
+
 		// configure local directories
 		if (original.localRocksDbDirectories != null) {
 			this.localRocksDbDirectories = original.localRocksDbDirectories;
@@ -470,7 +505,7 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 		LocalRecoveryConfig localRecoveryConfig =
 			env.getTaskStateManager().createLocalRecoveryConfig();
 
-		return new RocksDBInternalStateBackend(
+		RocksDBInternalStateBackend internalStateBackend = new RocksDBInternalStateBackend(
 			env.getUserClassLoader(),
 			instanceBasePath,
 			getDbOptions(),
@@ -478,9 +513,16 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 			numberOfGroups,
 			keyGroupRange,
 			isIncrementalCheckpointsEnabled(),
+			getNumberOfTransferingThreads(),
+			getTransferRetryTimes(),
 			localRecoveryConfig,
 			env.getTaskKvStateRegistry(),
 			env.getExecutionConfig());
+
+		internalStateBackend.getStateDataTransferMetrics().registerMetrics(
+			env.getMetricGroup().addGroup("rocksdbStateTransfer").addGroup(operatorIdentifier));
+
+		return internalStateBackend;
 	}
 
 	// ------------------------------------------------------------------------
@@ -598,6 +640,44 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 		return enableIncrementalCheckpointing.getOrDefault(CheckpointingOptions.INCREMENTAL_CHECKPOINTS.defaultValue());
 	}
 
+	/**
+	 * Gets the number of threads used to upload and download the files of incremental checkpoints.
+	 */
+	public int getNumberOfTransferingThreads() {
+		return numberOfTransferingThreads == UNDEFINED_TRANSFER_SETTING ?
+			CheckpointingOptions.ROCKSDB_CHECKPOINT_TRANSFER_THREAD_NUM.defaultValue() : numberOfTransferingThreads;
+	}
+
+	/**
+	 * Sets the number of threads used to upload and download the files of incremental checkpoints.
+	 *
+	 * @param numberOfTransferingThreads The number of threads, must be positive.
+	 */
+	public void setNumberOfTransferingThreads(int numberOfTransferingThreads) {
+		checkArgument(numberOfTransferingThreads > 0,
+			"The number of threads used to transfer files must be positive.");
+		this.numberOfTransferingThreads = numberOfTransferingThreads;
+	}
+
+	/**
+	 * Gets the number of times the upload or the download of a file of an incremental checkpoint is retried.
+	 */
+	public int getTransferRetryTimes() {
+		return transferRetryTimes == UNDEFINED_TRANSFER_SETTING ?
+			CheckpointingOptions.ROCKSDB_CHECKPOINT_TRANSFER_RETRY_TIMES.defaultValue() : transferRetryTimes;
+	}
+
+	/**
+	 * Sets the number of times the upload or the download of a file of an incremental checkpoint is retried.
+	 *
+	 * @param transferRetryTimes The number of retries, must not be negative.
+	 */
+	public void setTransferRetryTimes(int transferRetryTimes) {
+		checkArgument(transferRetryTimes >= 0,
+			"The number of retries of file transfers must not be negative.");
+		this.transferRetryTimes = transferRetryTimes;
+	}
+
 	// ------------------------------------------------------------------------
 	//  Parametrize with RocksDB Options
 	// ------------------------------------------------------------------------
@@ -698,6 +778,8 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 				"checkpointStreamBackend=" + checkpointStreamBackend +
 				", localRocksDbDirectories=" + Arrays.toString(localRocksDbDirectories) +
 				", enableIncrementalCheckpointing=" + enableIncrementalCheckpointing +
+				", numberOfTransferingThreads=" + numberOfTransferingThreads +
+				", transferRetryTimes=" + transferRetryTimes +
 				'}';
 	}
 
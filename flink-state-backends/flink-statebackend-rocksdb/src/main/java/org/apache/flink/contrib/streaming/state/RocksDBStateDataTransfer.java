@@ -0,0 +1,365 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.core.fs.CloseableRegistry;
+import org.apache.flink.core.fs.FSDataInputStream;
+import org.apache.flink.core.fs.FSDataOutputStream;
+import org.apache.flink.core.fs.FileSystem;
+import org.apache.flink.core.fs.Path;
+import org.apache.flink.runtime.state.CheckpointStreamFactory;
+import org.apache.flink.runtime.state.CheckpointedStateScope;
+import org.apache.flink.runtime.state.StateUtil;
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.util.ExecutorThreadFactory;
+import org.apache.flink.util.ExceptionUtils;
+import org.apache.flink.util.Preconditions;
+import org.apache.flink.util.function.SupplierWithException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transfers the files of incremental checkpoints of RocksDB between the local file system and the
+ * checkpoint storage. The files are transferred by a bounded pool of threads, and the transfer of
+ * each file is retried a configurable number of times after I/O failures.
+ *
+ * <p>All opened streams are registered in the given {@link CloseableRegistry}, so that a transfer
+ * in progress is aborted when the registry is closed.
+ */
+class RocksDBStateDataTransfer implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(RocksDBStateDataTransfer.class);
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** The maximum number of files transferred concurrently. */
+	private final int numberOfThreads;
+
+	/** The number of times the transfer of a file is retried. */
+	private final int retryTimes;
+
+	/** The registry for all opened streams. */
+	private final CloseableRegistry closeableRegistry;
+
+	/** The metrics which the throughput of the transfers is reported to. */
+	private final RocksDBStateDataTransferMetrics metrics;
+
+	/** The pool which the files are transferred by, created on the first transfer of multiple files. */
+	private ExecutorService executorService;
+
+	RocksDBStateDataTransfer(
+		int numberOfThreads,
+		int retryTimes,
+		CloseableRegistry closeableRegistry,
+		RocksDBStateDataTransferMetrics metrics) {
+
+		Preconditions.checkArgument(numberOfThreads > 0, "The number of transfer threads must be positive.");
+		Preconditions.checkArgument(retryTimes >= 0, "The number of transfer retries must not be negative.");
+
+		this.numberOfThreads = numberOfThreads;
+		this.retryTimes = retryTimes;
+		this.closeableRegistry = Preconditions.checkNotNull(closeableRegistry);
+		this.metrics = Preconditions.checkNotNull(metrics);
+	}
+
+	/**
+	 * Downloads the given state handles into files of the given local directory.
+	 *
+	 * @param stateHandles The state handles to download, keyed by the names of the local files.
+	 * @param localDirectory The directory to download the files into.
+	 */
+	void downloadFiles(Map<String, StreamStateHandle> stateHandles, Path localDirectory) throws Exception {
+		final long startMillis = System.currentTimeMillis();
+		final AtomicLong numBytes = new AtomicLong();
+
+		List<SupplierWithException<Void, Exception>> transfers = new ArrayList<>(stateHandles.size());
+		for (Map.Entry<String, StreamStateHandle> entry : stateHandles.entrySet()) {
+			final Path localFilePath = new Path(localDirectory, entry.getKey());
+			final StreamStateHandle stateHandle = entry.getValue();
+
+			transfers.add(() -> {
+				numBytes.addAndGet(transferWithRetries(localFilePath, () -> downloadFile(stateHandle, localFilePath)));
+				return null;
+			});
+		}
+
+		executeTransfers(transfers);
+
+		long durationMillis = logThroughput("Downloaded", stateHandles.size(), numBytes.get(), startMillis);
+		metrics.reportDownload(numBytes.get(), durationMillis);
+	}
+
+	/**
+	 * Uploads the given local files to the checkpoint storage. If the upload of any file fails, the
+	 * uploads in progress are aborted and all uploaded files are discarded once they finished.
+	 *
+	 * @param filePaths The paths of the local files to upload.
+	 * @param fileSystem The file system of the local files.
+	 * @param checkpointStreamFactory The factory of the streams to the checkpoint storage.
+	 * @param checkpointId The ID of the checkpoint which the files are uploaded for.
+	 * @param scope The scope of the uploaded state.
+	 * @return The handles of the uploaded files.
+	 */
+	Map<Path, StreamStateHandle> uploadFiles(
+		List<Path> filePaths,
+		FileSystem fileSystem,
+		CheckpointStreamFactory checkpointStreamFactory,
+		long checkpointId,
+		CheckpointedStateScope scope) throws Exception {
+
+		final long startMillis = System.currentTimeMillis();
+		final AtomicLong numBytes = new AtomicLong();
+		final Map<Path, StreamStateHandle> stateHandles = new HashMap<>(filePaths.size());
+
+		List<SupplierWithException<Void, Exception>> transfers = new ArrayList<>(filePaths.size());
+		for (Path filePath : filePaths) {
+			transfers.add(() -> {
+				StreamStateHandle stateHandle = transferWithRetries(
+					filePath,
+					() -> uploadFile(filePath, fileSystem, checkpointStreamFactory, checkpointId, scope));
+				numBytes.addAndGet(stateHandle.getStateSize());
+				synchronized (stateHandles) {
+					stateHandles.put(filePath, stateHandle);
+				}
+				return null;
+			});
+		}
+
+		try {
+			executeTransfers(transfers);
+		} catch (Exception e) {
+			synchronized (stateHandles) {
+				try {
+					StateUtil.bestEffortDiscardAllStateObjects(stateHandles.values());
+				} catch (Exception discardException) {
+					e.addSuppressed(discardException);
+				}
+			}
+			throw e;
+		}
+
+		long durationMillis = logThroughput("Uploaded", filePaths.size(), numBytes.get(), startMillis);
+		metrics.reportUpload(numBytes.get(), durationMillis);
+
+		return stateHandles;
+	}
+
+	@Override
+	public void close() {
+		if (executorService != null) {
+			executorService.shutdownNow();
+			executorService = null;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	private void executeTransfers(List<SupplierWithException<Void, Exception>> transfers) throws Exception {
+		if (numberOfThreads == 1 || transfers.size() <= 1) {
+			for (SupplierWithException<Void, Exception> transfer : transfers) {
+				transfer.get();
+			}
+			return;
+		}
+
+		if (executorService == null) {
+			executorService = Executors.newFixedThreadPool(
+				numberOfThreads, new ExecutorThreadFactory("rocksdb-state-transfer"));
+		}
+
+		List<Future<Void>> futures = new ArrayList<>(transfers.size());
+		for (SupplierWithException<Void, Exception> transfer : transfers) {
+			futures.add(executorService.submit(transfer::get));
+		}
+
+		try {
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			abortTransfers();
+
+			Throwable cause = ExceptionUtils.stripExecutionException(e);
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw new IOException("Could not transfer the state data.", cause);
+		} catch (InterruptedException e) {
+			abortTransfers();
+
+			Thread.currentThread().interrupt();
+			throw e;
+		}
+	}
+
+	/**
+	 * Interrupts the transfers in progress and waits until they finished. A cancelled future
+	 * returns before its transfer finished, which could still create a state object after the
+	 * caller discarded the transferred ones.
+	 */
+	private void abortTransfers() {
+		executorService.shutdownNow();
+
+		boolean interrupted = false;
+		while (true) {
+			try {
+				if (executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS)) {
+					break;
+				}
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		executorService = null;
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private <T> T transferWithRetries(Path filePath, SupplierWithException<T, IOException> transfer) throws IOException {
+		int attempt = 0;
+		while (true) {
+			try {
+				return transfer.get();
+			} catch (IOException e) {
+				if (attempt >= retryTimes || closeableRegistry.isClosed() || Thread.currentThread().isInterrupted()) {
+					throw e;
+				}
+
+				attempt++;
+				LOG.warn("Could not transfer file {}, retrying ({}/{}).", filePath, attempt, retryTimes, e);
+			}
+		}
+	}
+
+	private long downloadFile(StreamStateHandle stateHandle, Path localFilePath) throws IOException {
+		FileSystem localFileSystem = localFilePath.getFileSystem();
+
+		FSDataInputStream inputStream = null;
+		FSDataOutputStream outputStream = null;
+
+		try {
+			long startMillis = System.currentTimeMillis();
+
+			inputStream = stateHandle.openInputStream();
+			closeableRegistry.registerCloseable(inputStream);
+
+			outputStream = localFileSystem.create(localFilePath, FileSystem.WriteMode.OVERWRITE);
+			closeableRegistry.registerCloseable(outputStream);
+
+			long numBytes = copy(inputStream, outputStream);
+
+			long endMillis = System.currentTimeMillis();
+			LOG.debug("Successfully restored file {} from {}, {} bytes, {} ms",
+				localFilePath, stateHandle, numBytes, (endMillis - startMillis));
+
+			if (closeableRegistry.unregisterCloseable(outputStream)) {
+				outputStream.close();
+				outputStream = null;
+			}
+
+			return numBytes;
+		} finally {
+			if (closeableRegistry.unregisterCloseable(inputStream)) {
+				inputStream.close();
+			}
+
+			if (closeableRegistry.unregisterCloseable(outputStream)) {
+				outputStream.close();
+			}
+		}
+	}
+
+	private StreamStateHandle uploadFile(
+		Path filePath,
+		FileSystem fileSystem,
+		CheckpointStreamFactory checkpointStreamFactory,
+		long checkpointId,
+		CheckpointedStateScope scope) throws IOException {
+
+		FSDataInputStream inputStream = null;
+		CheckpointStreamFactory.CheckpointStateOutputStream outputStream = null;
+
+		try {
+			inputStream = fileSystem.open(filePath);
+			closeableRegistry.registerCloseable(inputStream);
+
+			outputStream = checkpointStreamFactory.createCheckpointStateOutputStream(checkpointId, scope);
+			closeableRegistry.registerCloseable(outputStream);
+
+			copy(inputStream, outputStream);
+
+			if (closeableRegistry.unregisterCloseable(outputStream)) {
+				StreamStateHandle result = outputStream.closeAndGetHandle();
+				outputStream = null;
+				return result;
+			} else {
+				throw new IOException("Stream already closed and cannot return a handle.");
+			}
+		} finally {
+			if (closeableRegistry.unregisterCloseable(inputStream)) {
+				inputStream.close();
+			}
+
+			if (closeableRegistry.unregisterCloseable(outputStream)) {
+				outputStream.close();
+			}
+		}
+	}
+
+	private static long copy(FSDataInputStream inputStream, FSDataOutputStream outputStream) throws IOException {
+		final byte[] buffer = new byte[BUFFER_SIZE];
+
+		long numBytes = 0L;
+		while (true) {
+			int read = inputStream.read(buffer);
+
+			if (read == -1) {
+				break;
+			}
+
+			outputStream.write(buffer, 0, read);
+			numBytes += read;
+		}
+		return numBytes;
+	}
+
+	private long logThroughput(String action, int numFiles, long numBytes, long startMillis) {
+		long durationMillis = Math.max(1L, System.currentTimeMillis() - startMillis);
+		LOG.info("{} {} files ({} bytes) in {} ms using {} threads, {} bytes/s.",
+			action, numFiles, numBytes, durationMillis, Math.min(numberOfThreads, Math.max(1, numFiles)),
+			numBytes * 1000L / durationMillis);
+		return durationMillis;
+	}
+}
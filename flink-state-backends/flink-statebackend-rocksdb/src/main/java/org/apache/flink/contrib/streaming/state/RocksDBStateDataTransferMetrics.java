@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The metrics of the transfers of the files of incremental checkpoints by the
+ * {@link RocksDBStateDataTransfer}s of a state backend.
+ */
+class RocksDBStateDataTransferMetrics {
+
+	/** The throughput of the last upload, in bytes per second. */
+	private volatile long uploadThroughput;
+
+	/** The throughput of the last download, in bytes per second. */
+	private volatile long downloadThroughput;
+
+	private final AtomicLong uploadedBytes = new AtomicLong();
+
+	private final AtomicLong downloadedBytes = new AtomicLong();
+
+	void reportUpload(long numBytes, long durationMillis) {
+		uploadThroughput = numBytes * 1000L / Math.max(1L, durationMillis);
+		uploadedBytes.addAndGet(numBytes);
+	}
+
+	void reportDownload(long numBytes, long durationMillis) {
+		downloadThroughput = numBytes * 1000L / Math.max(1L, durationMillis);
+		downloadedBytes.addAndGet(numBytes);
+	}
+
+	long getUploadThroughput() {
+		return uploadThroughput;
+	}
+
+	long getDownloadThroughput() {
+		return downloadThroughput;
+	}
+
+	long getUploadedBytes() {
+		return uploadedBytes.get();
+	}
+
+	long getDownloadedBytes() {
+		return downloadedBytes.get();
+	}
+
+	/**
+	 * Registers the transfer metrics in the given metric group.
+	 */
+	void registerMetrics(MetricGroup metricGroup) {
+		metricGroup.gauge("uploadThroughput", (Gauge<Long>) this::getUploadThroughput);
+		metricGroup.gauge("downloadThroughput", (Gauge<Long>) this::getDownloadThroughput);
+		metricGroup.gauge("uploadedBytes", (Gauge<Long>) this::getUploadedBytes);
+		metricGroup.gauge("downloadedBytes", (Gauge<Long>) this::getDownloadedBytes);
+	}
+}
@@ -0,0 +1,404 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.core.memory.ByteArrayOutputStreamWithPos;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.runtime.state.KeyGroupsList;
+import org.apache.flink.runtime.state.StateSerializerUtil;
+import org.apache.flink.streaming.api.operators.InternalTimersSnapshot;
+import org.apache.flink.util.Preconditions;
+
+import org.rocksdb.RocksIterator;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import static org.apache.flink.runtime.state.StateSerializerUtil.GROUP_WRITE_BYTES;
+
+/**
+ * A queue of timers that are stored in a column family of RocksDB.
+ *
+ * <p>The RocksDB key of a timer is composed of its key-group, its timestamp and its serialized key
+ * and namespace. Because the key-group comes first, the timers are copied per key-group like the
+ * entries of all other states when the backend is restored or rescaled. Within a key-group the
+ * timers are ordered by their timestamps, which are written big-endian with the sign bit flipped.
+ *
+ * <p>To avoid seeking in RocksDB whenever the head of the queue is accessed, the first timers of
+ * each key-group are cached in memory. The cache of a key-group always holds the smallest timers
+ * of the key-group, and is reloaded from RocksDB when it runs empty.
+ */
+class RocksDBTimerQueue {
+
+	/** The number of bytes in front of the serialized key and namespace of a timer. */
+	static final int TIMER_PREFIX_BYTES = GROUP_WRITE_BYTES + Long.BYTES;
+
+	private static final byte[] EMPTY_VALUE = new byte[0];
+
+	private static final Comparator<byte[]> TIMER_KEY_COMPARATOR = RocksDBTimerQueue::compareTimerKeys;
+
+	/** The storage of the column family holding the timers. */
+	private final RocksDBStorageInstance storageInstance;
+
+	/** The maximum number of timers cached per key-group. */
+	private final int cacheSize;
+
+	private final int localKeyGroupRangeStartIdx;
+
+	/** The caches of the local key-groups. */
+	private final KeyGroupCache[] keyGroupCaches;
+
+	/** The key-groups which have timers, ordered by the timestamps of their first timers. */
+	private final TreeSet<KeyGroupCache> nonEmptyKeyGroups;
+
+	RocksDBTimerQueue(
+		RocksDBStorageInstance storageInstance,
+		KeyGroupsList localKeyGroupRange,
+		int localKeyGroupRangeStartIdx,
+		int cacheSize) {
+
+		Preconditions.checkArgument(cacheSize > 0, "The cache size must be positive.");
+
+		this.storageInstance = Preconditions.checkNotNull(storageInstance);
+		this.cacheSize = cacheSize;
+		this.localKeyGroupRangeStartIdx = localKeyGroupRangeStartIdx;
+		this.keyGroupCaches = new KeyGroupCache[localKeyGroupRange.getNumberOfKeyGroups()];
+		this.nonEmptyKeyGroups = new TreeSet<>(
+			Comparator.comparingLong(KeyGroupCache::getHeadTimestamp)
+				.thenComparingInt(KeyGroupCache::getKeyGroup));
+
+		// the timers may have been restored into the column family already
+		for (int keyGroup : localKeyGroupRange) {
+			KeyGroupCache cache = new KeyGroupCache(keyGroup);
+			cache.load();
+
+			keyGroupCaches[keyGroup - localKeyGroupRangeStartIdx] = cache;
+			if (!cache.isEmpty()) {
+				nonEmptyKeyGroups.add(cache);
+			}
+		}
+	}
+
+	/**
+	 * Adds the given timer to the queue.
+	 *
+	 * @return True if the timer was added, false if the timer was already contained.
+	 */
+	boolean add(int keyGroup, long timestamp, byte[] data, int offset, int length) {
+		KeyGroupCache cache = getCache(keyGroup);
+		byte[] timerKey = createTimerKey(cache.prefix, timestamp, data, offset, length);
+
+		if (cache.covers(timerKey)) {
+			if (cache.timers.contains(timerKey)) {
+				return false;
+			}
+
+			storageInstance.put(timerKey, EMPTY_VALUE);
+
+			if (!cache.isEmpty()) {
+				nonEmptyKeyGroups.remove(cache);
+			}
+			cache.insert(timerKey);
+			nonEmptyKeyGroups.add(cache);
+		} else {
+			if (storageInstance.get(timerKey) != null) {
+				return false;
+			}
+
+			storageInstance.put(timerKey, EMPTY_VALUE);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Removes the given timer from the queue.
+	 *
+	 * @return True if the timer was removed, false if the timer was not contained.
+	 */
+	boolean remove(int keyGroup, long timestamp, byte[] data, int offset, int length) {
+		KeyGroupCache cache = getCache(keyGroup);
+		byte[] timerKey = createTimerKey(cache.prefix, timestamp, data, offset, length);
+
+		if (cache.covers(timerKey)) {
+			if (!cache.timers.contains(timerKey)) {
+				return false;
+			}
+
+			storageInstance.delete(timerKey);
+
+			nonEmptyKeyGroups.remove(cache);
+			cache.timers.remove(timerKey);
+			cache.loadIfExhausted();
+			if (!cache.isEmpty()) {
+				nonEmptyKeyGroups.add(cache);
+			}
+		} else {
+			if (storageInstance.get(timerKey) == null) {
+				return false;
+			}
+
+			storageInstance.delete(timerKey);
+		}
+
+		return true;
+	}
+
+	boolean isEmpty() {
+		return nonEmptyKeyGroups.isEmpty();
+	}
+
+	/**
+	 * Returns the smallest timestamp of the timers in the queue. Must not be called on an empty queue.
+	 */
+	long peekTimestamp() {
+		return nonEmptyKeyGroups.first().getHeadTimestamp();
+	}
+
+	/**
+	 * Removes the timer with the smallest timestamp from the queue and returns its RocksDB key.
+	 * Must not be called on an empty queue.
+	 */
+	byte[] poll() {
+		KeyGroupCache cache = nonEmptyKeyGroups.pollFirst();
+
+		byte[] timerKey = cache.timers.pollFirst();
+		storageInstance.delete(timerKey);
+
+		cache.loadIfExhausted();
+		if (!cache.isEmpty()) {
+			nonEmptyKeyGroups.add(cache);
+		}
+
+		return timerKey;
+	}
+
+	/**
+	 * Iterates over the RocksDB keys of all timers in the queue. This is expensive as it reads all
+	 * timers from RocksDB.
+	 */
+	void forEachTimer(Consumer<byte[]> consumer) {
+		try (RocksIterator iterator = storageInstance.iterator()) {
+			for (KeyGroupCache cache : keyGroupCaches) {
+				for (iterator.seek(cache.prefix); iterator.isValid(); iterator.next()) {
+					byte[] timerKey = iterator.key();
+					if (!hasPrefix(timerKey, cache.prefix)) {
+						break;
+					}
+
+					consumer.accept(timerKey);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the timers of the given key-group in the format written by
+	 * {@link org.apache.flink.streaming.api.operators.InternalTimer.TimerSerializer}. The timers are
+	 * read from RocksDB when they are counted and written, so the queue must not be modified in
+	 * between.
+	 */
+	InternalTimersSnapshot.SerializedTimers getTimersForKeyGroup(int keyGroup) {
+		byte[] prefix = getCache(keyGroup).prefix;
+
+		return new InternalTimersSnapshot.SerializedTimers() {
+
+			@Override
+			public int size() {
+				int size = 0;
+				try (RocksIterator iterator = storageInstance.iterator()) {
+					for (iterator.seek(prefix); iterator.isValid() && hasPrefix(iterator.key(), prefix); iterator.next()) {
+						size++;
+					}
+				}
+				return size;
+			}
+
+			@Override
+			public void writeTo(DataOutputView out) throws IOException {
+				try (RocksIterator iterator = storageInstance.iterator()) {
+					for (iterator.seek(prefix); iterator.isValid(); iterator.next()) {
+						byte[] timerKey = iterator.key();
+						if (!hasPrefix(timerKey, prefix)) {
+							break;
+						}
+
+						out.write(timerKey, TIMER_PREFIX_BYTES, timerKey.length - TIMER_PREFIX_BYTES);
+						out.writeLong(getTimestamp(timerKey));
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Returns the number of timers in the queue. This is expensive as it reads all timers from RocksDB.
+	 */
+	int size() {
+		int[] size = new int[1];
+		forEachTimer(timerKey -> size[0]++);
+		return size[0];
+	}
+
+	private KeyGroupCache getCache(int keyGroup) {
+		return keyGroupCaches[keyGroup - localKeyGroupRangeStartIdx];
+	}
+
+	// ------------------------------------------------------------------------
+	//  Timer keys
+	// ------------------------------------------------------------------------
+
+	static long getTimestamp(byte[] timerKey) {
+		long value = 0;
+		for (int i = GROUP_WRITE_BYTES; i < TIMER_PREFIX_BYTES; ++i) {
+			value = (value << 8) | (timerKey[i] & 0xFF);
+		}
+		return value ^ Long.MIN_VALUE;
+	}
+
+	private static byte[] createTimerKey(byte[] groupPrefix, long timestamp, byte[] data, int offset, int length) {
+		byte[] timerKey = new byte[TIMER_PREFIX_BYTES + length];
+		System.arraycopy(groupPrefix, 0, timerKey, 0, GROUP_WRITE_BYTES);
+
+		// flip the sign bit so that the byte-wise order of RocksDB matches the order of the timestamps
+		long value = timestamp ^ Long.MIN_VALUE;
+		for (int i = TIMER_PREFIX_BYTES - 1; i >= GROUP_WRITE_BYTES; --i) {
+			timerKey[i] = (byte) value;
+			value >>>= 8;
+		}
+
+		System.arraycopy(data, offset, timerKey, TIMER_PREFIX_BYTES, length);
+		return timerKey;
+	}
+
+	private static byte[] getGroupPrefix(int keyGroup) {
+		ByteArrayOutputStreamWithPos outputStream = new ByteArrayOutputStreamWithPos(GROUP_WRITE_BYTES);
+		StateSerializerUtil.writeGroup(outputStream, keyGroup);
+		return outputStream.toByteArray();
+	}
+
+	private static boolean hasPrefix(byte[] bytes, byte[] prefix) {
+		if (bytes.length < prefix.length) {
+			return false;
+		}
+
+		for (int i = 0; i < prefix.length; ++i) {
+			if (bytes[i] != prefix[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Compares the given keys byte-wise and unsigned, like the default comparator of RocksDB.
+	 */
+	private static int compareTimerKeys(byte[] left, byte[] right) {
+		int length = Math.min(left.length, right.length);
+		for (int i = 0; i < length; ++i) {
+			int result = (left[i] & 0xFF) - (right[i] & 0xFF);
+			if (result != 0) {
+				return result;
+			}
+		}
+		return left.length - right.length;
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The in-memory cache of the first timers of a key-group.
+	 */
+	private final class KeyGroupCache {
+
+		private final int keyGroup;
+
+		private final byte[] prefix;
+
+		/** The smallest timers of the key-group, at most {@link #cacheSize} of them. */
+		private final TreeSet<byte[]> timers;
+
+		/** True if the cache holds all timers of the key-group. */
+		private boolean complete;
+
+		KeyGroupCache(int keyGroup) {
+			this.keyGroup = keyGroup;
+			this.prefix = getGroupPrefix(keyGroup);
+			this.timers = new TreeSet<>(TIMER_KEY_COMPARATOR);
+		}
+
+		int getKeyGroup() {
+			return keyGroup;
+		}
+
+		long getHeadTimestamp() {
+			return getTimestamp(timers.first());
+		}
+
+		boolean isEmpty() {
+			return timers.isEmpty();
+		}
+
+		/**
+		 * Returns true if the given timer would be in the cache if it was in the key-group.
+		 */
+		boolean covers(byte[] timerKey) {
+			return complete || (!timers.isEmpty() && compareTimerKeys(timerKey, timers.last()) <= 0);
+		}
+
+		void insert(byte[] timerKey) {
+			timers.add(timerKey);
+
+			if (timers.size() > cacheSize) {
+				timers.pollLast();
+				complete = false;
+			}
+		}
+
+		void loadIfExhausted() {
+			if (timers.isEmpty() && !complete) {
+				load();
+			}
+		}
+
+		void load() {
+			timers.clear();
+			complete = true;
+
+			try (RocksIterator iterator = storageInstance.iterator()) {
+				for (iterator.seek(prefix); iterator.isValid(); iterator.next()) {
+					byte[] timerKey = iterator.key();
+					if (!hasPrefix(timerKey, prefix)) {
+						break;
+					}
+
+					if (timers.size() == cacheSize) {
+						complete = false;
+						break;
+					}
+
+					timers.add(timerKey);
+				}
+			}
+		}
+	}
+}
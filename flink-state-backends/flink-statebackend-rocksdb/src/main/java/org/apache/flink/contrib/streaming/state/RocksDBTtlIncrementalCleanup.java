@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.runtime.state.ttl.TtlIncrementalCleanup;
+import org.apache.flink.runtime.state.ttl.TtlTimeProvider;
+import org.apache.flink.runtime.state.ttl.TtlUtils;
+import org.apache.flink.runtime.state.ttl.TtlValueSerializer;
+import org.apache.flink.util.Preconditions;
+
+import java.io.Closeable;
+
+/**
+ * The incremental cleanup of a RocksDB state with time-to-live. Every update of the state adds the
+ * configured number of rows to visit. Once enough rows are pending, a cleanup visits them,
+ * continuing after the last row visited by the previous cleanup, and deletes the rows whose values
+ * have expired. The visits wrap around at the end of the column family.
+ *
+ * <p>The iterator is kept open across cleanups, so that it is positioned only once per pass over
+ * the column family. It sees the rows as of its creation, so the rows written later are visited
+ * by the next pass, and the rows which look expired are read again before they are deleted.
+ *
+ * <p>The values of the rows are serialized by {@link TtlValueSerializer}s, so the timestamps of
+ * their last accesses are read from their first bytes without deserializing the user values.
+ */
+class RocksDBTtlIncrementalCleanup implements TtlIncrementalCleanup, Closeable {
+
+	/**
+	 * The minimum number of rows visited by a cleanup. The updates of the state accumulate rows to
+	 * visit until this many are pending, so that the cleanup is not run on every update.
+	 */
+	static final int MIN_ROWS_PER_CLEANUP = 1024;
+
+	/** The storage of the state. */
+	private final RocksDBStorageInstance storageInstance;
+
+	/** The provider of the current timestamps. */
+	private final TtlTimeProvider timeProvider;
+
+	/** The time-to-live in milliseconds. */
+	private final long ttl;
+
+	/** The number of rows to visit for each update of the state. */
+	private final int cleanupSize;
+
+	/** The number of rows to visit by the next cleanup. */
+	private int numPendingRows;
+
+	/** The iterator of the current pass over the column family, null if no pass was started. */
+	private RocksIteratorWrapper iterator;
+
+	RocksDBTtlIncrementalCleanup(
+		RocksDBStorageInstance storageInstance,
+		TtlTimeProvider timeProvider,
+		long ttl,
+		int cleanupSize) {
+
+		Preconditions.checkArgument(cleanupSize > 0, "The incremental cleanup size must be positive.");
+
+		this.storageInstance = Preconditions.checkNotNull(storageInstance);
+		this.timeProvider = Preconditions.checkNotNull(timeProvider);
+		this.ttl = ttl;
+		this.cleanupSize = cleanupSize;
+	}
+
+	@Override
+	public void stateAccessed() {
+		numPendingRows += cleanupSize;
+		if (numPendingRows < MIN_ROWS_PER_CLEANUP) {
+			return;
+		}
+
+		final int numRows = numPendingRows;
+		numPendingRows = 0;
+
+		final long currentTimestamp = timeProvider.currentTimestamp();
+
+		boolean startedPass = false;
+		for (int i = 0; i < numRows; ++i) {
+			if (iterator == null || !iterator.isValid()) {
+				if (startedPass) {
+					// All rows were visited by this cleanup.
+					break;
+				}
+
+				startPass();
+				startedPass = true;
+				if (!iterator.isValid()) {
+					// The column family is empty.
+					break;
+				}
+			}
+
+			// The row may have been updated since the iterator was created, so an expired row is
+			// read again before it is deleted.
+			if (expired(iterator.value(), ttl, currentTimestamp)) {
+				byte[] key = iterator.key();
+				if (expired(storageInstance.get(key), ttl, currentTimestamp)) {
+					storageInstance.delete(key);
+				}
+			}
+
+			iterator.next();
+		}
+	}
+
+	@Override
+	public void close() {
+		if (iterator != null) {
+			iterator.close();
+			iterator = null;
+		}
+	}
+
+	private void startPass() {
+		close();
+
+		iterator = new RocksIteratorWrapper(storageInstance.iterator());
+		iterator.seekToFirst();
+	}
+
+	/**
+	 * Returns whether the given value serialized by a {@link TtlValueSerializer} has expired.
+	 */
+	@VisibleForTesting
+	static boolean expired(byte[] value, long ttl, long currentTimestamp) {
+		if (value == null || value.length < TtlValueSerializer.TIMESTAMP_BYTES) {
+			return false;
+		}
+
+		long lastAccessTimestamp = 0L;
+		for (int i = 0; i < TtlValueSerializer.TIMESTAMP_BYTES; ++i) {
+			lastAccessTimestamp = (lastAccessTimestamp << 8) | (value[i] & 0xFF);
+		}
+
+		return TtlUtils.expired(lastAccessTimestamp, ttl, currentTimestamp);
+	}
+}
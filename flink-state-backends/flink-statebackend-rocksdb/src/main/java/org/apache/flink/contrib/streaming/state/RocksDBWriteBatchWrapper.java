@@ -79,6 +79,17 @@ public class RocksDBWriteBatchWrapper implements AutoCloseable {
 		}
 	}
 
+	public void remove(
+		@Nonnull ColumnFamilyHandle handle,
+		@Nonnull byte[] key) throws RocksDBException {
+
+		batch.remove(handle, key);
+
+		if (batch.count() == capacity) {
+			flush();
+		}
+	}
+
 	public void flush() throws RocksDBException {
 		if (options != null) {
 			db.write(options, batch);
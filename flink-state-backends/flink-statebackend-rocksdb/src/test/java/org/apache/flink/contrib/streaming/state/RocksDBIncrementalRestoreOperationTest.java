@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.KeyedStateHandle;
+import org.apache.flink.runtime.state.SharedStateRegistry;
+import org.apache.flink.runtime.state.SnapshotResult;
+import org.apache.flink.runtime.state.TestLocalRecoveryConfig;
+import org.apache.flink.runtime.state.keyed.KeyedMapState;
+import org.apache.flink.runtime.state.keyed.KeyedMapStateDescriptor;
+import org.apache.flink.runtime.state.keyed.KeyedValueState;
+import org.apache.flink.runtime.state.keyed.KeyedValueStateDescriptor;
+import org.apache.flink.runtime.state.memory.MemCheckpointStreamFactory;
+import org.apache.flink.util.FutureUtil;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.DBOptions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for restoring the {@link RocksDBInternalStateBackend} from incremental checkpoints whose
+ * key-group ranges differ from the restored one.
+ */
+public class RocksDBIncrementalRestoreOperationTest extends TestLogger {
+
+	/** More than 128 key groups, so that the low byte of serialized key groups may be negative. */
+	private static final int MAX_PARALLELISM = 256;
+
+	private static final int NUM_KEYS = 2000;
+
+	/** The keys of the sparse state are in the first key groups only. */
+	private static final int NUM_SPARSE_KEY_GROUPS = 20;
+
+	/** The partial state is only registered in the old subtask with this index. */
+	private static final int PARTIAL_STATE_SUBTASK_INDEX = 1;
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final KeyedValueStateDescriptor<Integer, Integer> valueStateDescriptor =
+		new KeyedValueStateDescriptor<>("value", IntSerializer.INSTANCE, IntSerializer.INSTANCE);
+
+	private final KeyedMapStateDescriptor<Integer, Integer, Integer> mapStateDescriptor =
+		new KeyedMapStateDescriptor<>("map", IntSerializer.INSTANCE, IntSerializer.INSTANCE, IntSerializer.INSTANCE);
+
+	private final KeyedValueStateDescriptor<Integer, Integer> sparseStateDescriptor =
+		new KeyedValueStateDescriptor<>("sparse", IntSerializer.INSTANCE, IntSerializer.INSTANCE);
+
+	private final KeyedValueStateDescriptor<Integer, Integer> partialStateDescriptor =
+		new KeyedValueStateDescriptor<>("partial", IntSerializer.INSTANCE, IntSerializer.INSTANCE);
+
+	private final SharedStateRegistry sharedStateRegistry = new SharedStateRegistry();
+
+	/**
+	 * Some new instances intersect with two old instances. The partial state is only in a non-base
+	 * instance of the second new instance.
+	 */
+	@Test
+	public void testScaleOut() throws Exception {
+		testRescale(3, 5);
+	}
+
+	/**
+	 * Every new instance intersects with three old instances and does not intersect with the
+	 * others. The key groups of the second new instance are all above 127, and the sparse state has
+	 * no keys in them.
+	 */
+	@Test
+	public void testScaleIn() throws Exception {
+		testRescale(5, 2);
+	}
+
+	/**
+	 * The base instance of the fourth new instance is clipped on both sides, all of its key groups
+	 * are above 127.
+	 */
+	@Test
+	public void testClipKeyGroupsAboveSignedByteRange() throws Exception {
+		testRescale(2, 5);
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void testRescale(int oldParallelism, int newParallelism) throws Exception {
+		List<KeyedStateHandle> snapshots = new ArrayList<>(oldParallelism);
+		for (int subtaskIndex = 0; subtaskIndex < oldParallelism; ++subtaskIndex) {
+			snapshots.add(snapshotOldInstance(getKeyGroupRange(oldParallelism, subtaskIndex), subtaskIndex));
+		}
+		KeyGroupRange partialStateKeyGroupRange = getKeyGroupRange(oldParallelism, PARTIAL_STATE_SUBTASK_INDEX);
+
+		int numRestoredKeys = 0;
+		for (int subtaskIndex = 0; subtaskIndex < newParallelism; ++subtaskIndex) {
+			KeyGroupRange keyGroupRange = getKeyGroupRange(newParallelism, subtaskIndex);
+
+			// the instances which do not intersect with the key-group range are restored as well
+			List<KeyedStateHandle> restoredSnapshots = new ArrayList<>(oldParallelism);
+			for (KeyedStateHandle snapshot : snapshots) {
+				restoredSnapshots.add(snapshot.getIntersection(keyGroupRange));
+			}
+
+			RocksDBInternalStateBackend stateBackend = createStateBackend(keyGroupRange);
+			try {
+				stateBackend.restore(restoredSnapshots);
+
+				KeyedValueState<Integer, Integer> valueState = stateBackend.getKeyedState(valueStateDescriptor);
+				KeyedMapState<Integer, Integer, Integer> mapState = stateBackend.getKeyedState(mapStateDescriptor);
+				KeyedValueState<Integer, Integer> sparseState = stateBackend.getKeyedState(sparseStateDescriptor);
+				KeyedValueState<Integer, Integer> partialState = stateBackend.getKeyedState(partialStateDescriptor);
+
+				Map<Integer, Integer> expectedValues = new HashMap<>();
+				Map<Integer, Map<Integer, Integer>> expectedMaps = new HashMap<>();
+				Map<Integer, Integer> expectedSparseValues = new HashMap<>();
+				Map<Integer, Integer> expectedPartialValues = new HashMap<>();
+				for (int key = 0; key < NUM_KEYS; ++key) {
+					int keyGroup = getKeyGroup(key);
+					if (!keyGroupRange.contains(keyGroup)) {
+						continue;
+					}
+
+					expectedValues.put(key, key);
+					expectedMaps.put(key, Collections.singletonMap(key, -key));
+					if (keyGroup < NUM_SPARSE_KEY_GROUPS) {
+						expectedSparseValues.put(key, key);
+					}
+					if (partialStateKeyGroupRange.contains(keyGroup)) {
+						expectedPartialValues.put(key, 2 * key);
+					}
+				}
+
+				assertEquals(expectedValues, valueState.getAll());
+				assertEquals(expectedMaps, mapState.getAll());
+				assertEquals(expectedSparseValues, sparseState.getAll());
+				assertEquals(expectedPartialValues, partialState.getAll());
+
+				numRestoredKeys += valueState.getAll().size();
+			} finally {
+				stateBackend.dispose();
+			}
+		}
+
+		assertEquals(NUM_KEYS, numRestoredKeys);
+	}
+
+	private KeyedStateHandle snapshotOldInstance(KeyGroupRange keyGroupRange, int subtaskIndex) throws Exception {
+		RocksDBInternalStateBackend stateBackend = createStateBackend(keyGroupRange);
+		try {
+			stateBackend.restore(null);
+
+			KeyedValueState<Integer, Integer> valueState = stateBackend.getKeyedState(valueStateDescriptor);
+			KeyedMapState<Integer, Integer, Integer> mapState = stateBackend.getKeyedState(mapStateDescriptor);
+			KeyedValueState<Integer, Integer> sparseState = stateBackend.getKeyedState(sparseStateDescriptor);
+			KeyedValueState<Integer, Integer> partialState = subtaskIndex == PARTIAL_STATE_SUBTASK_INDEX ?
+				stateBackend.getKeyedState(partialStateDescriptor) : null;
+
+			for (int key = 0; key < NUM_KEYS; ++key) {
+				int keyGroup = getKeyGroup(key);
+				if (!keyGroupRange.contains(keyGroup)) {
+					continue;
+				}
+
+				valueState.put(key, key);
+				mapState.add(key, key, -key);
+				if (keyGroup < NUM_SPARSE_KEY_GROUPS) {
+					sparseState.put(key, key);
+				}
+				if (partialState != null) {
+					partialState.put(key, 2 * key);
+				}
+			}
+
+			SnapshotResult<KeyedStateHandle> snapshotResult = FutureUtil.runIfNotDoneAndGet(
+				stateBackend.snapshot(
+					1L,
+					1L,
+					new MemCheckpointStreamFactory(4 * 1024 * 1024),
+					CheckpointOptions.forCheckpointWithDefaultLocation()));
+			KeyedStateHandle snapshot = snapshotResult.getJobManagerOwnedSnapshot();
+			snapshot.registerSharedStates(sharedStateRegistry);
+			return snapshot;
+		} finally {
+			stateBackend.dispose();
+		}
+	}
+
+	private RocksDBInternalStateBackend createStateBackend(KeyGroupRange keyGroupRange) throws IOException {
+		return new RocksDBInternalStateBackend(
+			Thread.currentThread().getContextClassLoader(),
+			temporaryFolder.newFolder().getAbsoluteFile(),
+			new DBOptions().setCreateIfMissing(true),
+			new ColumnFamilyOptions(),
+			MAX_PARALLELISM,
+			keyGroupRange,
+			true,
+			TestLocalRecoveryConfig.disabled(),
+			null,
+			new ExecutionConfig());
+	}
+
+	private static KeyGroupRange getKeyGroupRange(int parallelism, int subtaskIndex) {
+		return KeyGroupRangeAssignment.computeKeyGroupRangeForOperatorIndex(MAX_PARALLELISM, parallelism, subtaskIndex);
+	}
+
+	private static int getKeyGroup(int key) {
+		return KeyGroupRangeAssignment.assignToKeyGroup(key, MAX_PARALLELISM);
+	}
+}
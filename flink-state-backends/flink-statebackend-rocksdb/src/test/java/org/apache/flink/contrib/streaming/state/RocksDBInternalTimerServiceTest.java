@@ -0,0 +1,480 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.core.memory.ByteArrayInputStreamWithPos;
+import org.apache.flink.core.memory.ByteArrayOutputStreamWithPos;
+import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.KeyedStateHandle;
+import org.apache.flink.runtime.state.SharedStateRegistry;
+import org.apache.flink.runtime.state.SnapshotResult;
+import org.apache.flink.runtime.state.TestLocalRecoveryConfig;
+import org.apache.flink.runtime.state.memory.MemCheckpointStreamFactory;
+import org.apache.flink.streaming.api.operators.HeapInternalTimerService;
+import org.apache.flink.streaming.api.operators.InternalTimer;
+import org.apache.flink.streaming.api.operators.InternalTimerServiceFactory;
+import org.apache.flink.streaming.api.operators.InternalTimerServiceSerializationProxy;
+import org.apache.flink.streaming.api.operators.KeyContext;
+import org.apache.flink.streaming.api.operators.KeyGroupedInternalTimerService;
+import org.apache.flink.streaming.api.operators.Triggerable;
+import org.apache.flink.streaming.runtime.tasks.TestProcessingTimeService;
+import org.apache.flink.util.FutureUtil;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.DBOptions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.RunnableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link RocksDBInternalTimerService}.
+ */
+@RunWith(Parameterized.class)
+public class RocksDBInternalTimerServiceTest extends TestLogger {
+
+	private static final int MAX_PARALLELISM = 10;
+
+	private static final KeyGroupRange KEY_GROUP_RANGE = new KeyGroupRange(0, MAX_PARALLELISM - 1);
+
+	/** A small cache size, so that the caches of the key-groups are reloaded frequently. */
+	private static final int CACHE_SIZE = 2;
+
+	private static final String SERVICE_NAME = "test-timers";
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Parameterized.Parameter
+	public boolean enableIncrementalCheckpointing;
+
+	@Parameterized.Parameters(name = "incremental checkpointing: {0}")
+	public static Collection<Boolean> parameters() {
+		return Arrays.asList(true, false);
+	}
+
+	@Test
+	public void testFireTimersInOrder() throws Exception {
+		RocksDBInternalStateBackend stateBackend = createStateBackend(KEY_GROUP_RANGE, null);
+		TestKeyContext keyContext = new TestKeyContext();
+		RecordingTriggerable triggerable = new RecordingTriggerable(keyContext);
+
+		try {
+			RocksDBInternalTimerService<Integer, String> timerService =
+				createTimerService(stateBackend, KEY_GROUP_RANGE, keyContext, new TestProcessingTimeService(), triggerable);
+
+			Random random = new Random(42);
+			int numRegistered = 0;
+			for (int key = 0; key < 200; ++key) {
+				keyContext.setCurrentKey(key);
+				long timestamp = random.nextInt(1000);
+
+				timerService.registerEventTimeTimer("ciao", timestamp);
+				timerService.registerEventTimeTimer("ciao", timestamp);
+				timerService.registerEventTimeTimer("hello", timestamp + 1);
+				numRegistered += 2;
+
+				if (key % 10 == 0) {
+					timerService.deleteEventTimeTimer("hello", timestamp + 1);
+					numRegistered--;
+				}
+			}
+
+			assertEquals(numRegistered, timerService.numEventTimeTimers());
+			assertEquals(200, timerService.numEventTimeTimers("ciao"));
+
+			timerService.advanceWatermark(500);
+			timerService.advanceWatermark(2000);
+
+			assertEquals(0, timerService.numEventTimeTimers());
+			assertEquals(numRegistered, triggerable.eventTimeTimers.size());
+
+			long lastTimestamp = Long.MIN_VALUE;
+			for (InternalTimer<Integer, String> timer : triggerable.eventTimeTimers) {
+				assertTrue(timer.getTimestamp() >= lastTimestamp);
+				assertFalse(timer.getNamespace().equals("hello") && timer.getKey() % 10 == 0);
+				lastTimestamp = timer.getTimestamp();
+			}
+
+			timerService.dispose();
+		} finally {
+			stateBackend.dispose();
+		}
+	}
+
+	@Test
+	public void testProcessingTimeTimers() throws Exception {
+		RocksDBInternalStateBackend stateBackend = createStateBackend(KEY_GROUP_RANGE, null);
+		TestKeyContext keyContext = new TestKeyContext();
+		RecordingTriggerable triggerable = new RecordingTriggerable(keyContext);
+		TestProcessingTimeService processingTimeService = new TestProcessingTimeService();
+
+		try {
+			RocksDBInternalTimerService<Integer, String> timerService =
+				createTimerService(stateBackend, KEY_GROUP_RANGE, keyContext, processingTimeService, triggerable);
+
+			for (int key = 0; key < 20; ++key) {
+				keyContext.setCurrentKey(key);
+				timerService.registerProcessingTimeTimer("ciao", 20 - key);
+			}
+
+			assertEquals(1, processingTimeService.getNumActiveTimers());
+
+			processingTimeService.setCurrentTime(10);
+			assertEquals(10, triggerable.processingTimeTimers.size());
+			assertEquals(10, timerService.numProcessingTimeTimers());
+
+			processingTimeService.setCurrentTime(20);
+			assertEquals(20, triggerable.processingTimeTimers.size());
+			assertEquals(0, timerService.numProcessingTimeTimers());
+			assertEquals(0, processingTimeService.getNumActiveTimers());
+
+			timerService.dispose();
+		} finally {
+			stateBackend.dispose();
+		}
+	}
+
+	@Test
+	public void testSnapshotAndRescale() throws Exception {
+		RocksDBInternalStateBackend stateBackend = createStateBackend(KEY_GROUP_RANGE, null);
+		TestKeyContext keyContext = new TestKeyContext();
+
+		KeyedStateHandle snapshot;
+		try {
+			RocksDBInternalTimerService<Integer, String> timerService = createTimerService(
+				stateBackend, KEY_GROUP_RANGE, keyContext, new TestProcessingTimeService(), new RecordingTriggerable(keyContext));
+
+			for (int key = 0; key < 100; ++key) {
+				keyContext.setCurrentKey(key);
+				timerService.registerEventTimeTimer("event", key);
+				timerService.registerProcessingTimeTimer("processing", key);
+			}
+
+			snapshot = snapshot(stateBackend);
+			timerService.dispose();
+		} finally {
+			stateBackend.dispose();
+		}
+
+		KeyGroupRange[] keyGroupRanges = {new KeyGroupRange(0, 4), new KeyGroupRange(5, 9)};
+		int numRestoredTimers = 0;
+		for (KeyGroupRange keyGroupRange : keyGroupRanges) {
+			RocksDBInternalStateBackend restoredBackend = createStateBackend(keyGroupRange, snapshot);
+			RecordingTriggerable triggerable = new RecordingTriggerable(keyContext);
+			TestProcessingTimeService processingTimeService = new TestProcessingTimeService();
+
+			try {
+				RocksDBInternalTimerService<Integer, String> restoredService = createTimerService(
+					restoredBackend, keyGroupRange, keyContext, processingTimeService, triggerable);
+
+				restoredService.advanceWatermark(Long.MAX_VALUE);
+				processingTimeService.setCurrentTime(Long.MAX_VALUE);
+
+				assertEquals(triggerable.eventTimeTimers.size(), triggerable.processingTimeTimers.size());
+				for (InternalTimer<Integer, String> timer : triggerable.eventTimeTimers) {
+					assertTrue(keyGroupRange.contains(
+						KeyGroupRangeAssignment.assignToKeyGroup(timer.getKey(), MAX_PARALLELISM)));
+					assertEquals((long) timer.getKey(), timer.getTimestamp());
+					assertEquals("event", timer.getNamespace());
+				}
+				numRestoredTimers += triggerable.eventTimeTimers.size();
+
+				restoredService.dispose();
+			} finally {
+				restoredBackend.dispose();
+			}
+		}
+
+		assertEquals(100, numRestoredTimers);
+	}
+
+	@Test
+	public void testRestoreIntoHeapTimerService() throws Exception {
+		RocksDBInternalStateBackend stateBackend = createStateBackend(KEY_GROUP_RANGE, null);
+		TestKeyContext keyContext = new TestKeyContext();
+
+		byte[][] rawKeyedState;
+		try {
+			RocksDBInternalTimerService<Integer, String> timerService = createTimerService(
+				stateBackend, KEY_GROUP_RANGE, keyContext, new TestProcessingTimeService(), new RecordingTriggerable(keyContext));
+
+			registerTimers(timerService, keyContext);
+			rawKeyedState = writeTimers(timerService);
+			timerService.dispose();
+		} finally {
+			stateBackend.dispose();
+		}
+
+		RecordingTriggerable triggerable = new RecordingTriggerable(keyContext);
+		TestProcessingTimeService processingTimeService = new TestProcessingTimeService();
+		HeapInternalTimerService<Integer, String> restoredService =
+			new HeapInternalTimerService<>(MAX_PARALLELISM, KEY_GROUP_RANGE, keyContext, processingTimeService);
+
+		readTimers(rawKeyedState, restoredService, keyContext, processingTimeService);
+		restoredService.startTimerService(IntSerializer.INSTANCE, StringSerializer.INSTANCE, triggerable);
+
+		verifyRegisteredTimers(restoredService, triggerable, processingTimeService);
+	}
+
+	@Test
+	public void testRestoreFromHeapTimerService() throws Exception {
+		TestKeyContext keyContext = new TestKeyContext();
+		HeapInternalTimerService<Integer, String> timerService =
+			new HeapInternalTimerService<>(MAX_PARALLELISM, KEY_GROUP_RANGE, keyContext, new TestProcessingTimeService());
+		timerService.startTimerService(IntSerializer.INSTANCE, StringSerializer.INSTANCE, new RecordingTriggerable(keyContext));
+
+		registerTimers(timerService, keyContext);
+		byte[][] rawKeyedState = writeTimers(timerService);
+
+		RocksDBInternalStateBackend restoredBackend = createStateBackend(KEY_GROUP_RANGE, null);
+		try {
+			RecordingTriggerable triggerable = new RecordingTriggerable(keyContext);
+			TestProcessingTimeService processingTimeService = new TestProcessingTimeService();
+			RocksDBInternalTimerService<Integer, String> restoredService = new RocksDBInternalTimerService<>(
+				restoredBackend, SERVICE_NAME, MAX_PARALLELISM, KEY_GROUP_RANGE, keyContext, processingTimeService, CACHE_SIZE);
+
+			readTimers(rawKeyedState, restoredService, keyContext, processingTimeService);
+			restoredService.startTimerService(IntSerializer.INSTANCE, StringSerializer.INSTANCE, triggerable);
+
+			verifyRegisteredTimers(restoredService, triggerable, processingTimeService);
+			restoredService.dispose();
+		} finally {
+			restoredBackend.dispose();
+		}
+	}
+
+	@Test
+	public void testRestoreTimersContainedInBackendAndRawKeyedState() throws Exception {
+		RocksDBInternalStateBackend stateBackend = createStateBackend(KEY_GROUP_RANGE, null);
+		TestKeyContext keyContext = new TestKeyContext();
+
+		KeyedStateHandle snapshot;
+		byte[][] rawKeyedState;
+		try {
+			RocksDBInternalTimerService<Integer, String> timerService = createTimerService(
+				stateBackend, KEY_GROUP_RANGE, keyContext, new TestProcessingTimeService(), new RecordingTriggerable(keyContext));
+
+			registerTimers(timerService, keyContext);
+			rawKeyedState = writeTimers(timerService);
+			snapshot = snapshot(stateBackend);
+			timerService.dispose();
+		} finally {
+			stateBackend.dispose();
+		}
+
+		RocksDBInternalStateBackend restoredBackend = createStateBackend(KEY_GROUP_RANGE, snapshot);
+		try {
+			RecordingTriggerable triggerable = new RecordingTriggerable(keyContext);
+			TestProcessingTimeService processingTimeService = new TestProcessingTimeService();
+			RocksDBInternalTimerService<Integer, String> restoredService = new RocksDBInternalTimerService<>(
+				restoredBackend, SERVICE_NAME, MAX_PARALLELISM, KEY_GROUP_RANGE, keyContext, processingTimeService, CACHE_SIZE);
+
+			readTimers(rawKeyedState, restoredService, keyContext, processingTimeService);
+			restoredService.startTimerService(IntSerializer.INSTANCE, StringSerializer.INSTANCE, triggerable);
+
+			verifyRegisteredTimers(restoredService, triggerable, processingTimeService);
+			restoredService.dispose();
+		} finally {
+			restoredBackend.dispose();
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	private RocksDBInternalStateBackend createStateBackend(
+		KeyGroupRange keyGroupRange,
+		KeyedStateHandle snapshot) throws Exception {
+
+		RocksDBInternalStateBackend stateBackend = new RocksDBInternalStateBackend(
+			getClass().getClassLoader(),
+			temporaryFolder.newFolder().getAbsoluteFile(),
+			new DBOptions().setCreateIfMissing(true),
+			new ColumnFamilyOptions(),
+			MAX_PARALLELISM,
+			keyGroupRange,
+			enableIncrementalCheckpointing,
+			TestLocalRecoveryConfig.disabled(),
+			null,
+			new ExecutionConfig());
+
+		stateBackend.restore(snapshot == null ? null : Collections.singleton(snapshot));
+		return stateBackend;
+	}
+
+	private static RocksDBInternalTimerService<Integer, String> createTimerService(
+		RocksDBInternalStateBackend stateBackend,
+		KeyGroupRange keyGroupRange,
+		KeyContext keyContext,
+		TestProcessingTimeService processingTimeService,
+		Triggerable<Integer, String> triggerable) {
+
+		RocksDBInternalTimerService<Integer, String> timerService = new RocksDBInternalTimerService<>(
+			stateBackend, SERVICE_NAME, MAX_PARALLELISM, keyGroupRange, keyContext, processingTimeService, CACHE_SIZE);
+
+		timerService.startTimerService(IntSerializer.INSTANCE, StringSerializer.INSTANCE, triggerable);
+		return timerService;
+	}
+
+	private static KeyedStateHandle snapshot(RocksDBInternalStateBackend stateBackend) throws Exception {
+		RunnableFuture<SnapshotResult<KeyedStateHandle>> snapshotFuture = stateBackend.snapshot(
+			1L, 1L, new MemCheckpointStreamFactory(4 * 1024 * 1024), CheckpointOptions.forCheckpointWithDefaultLocation());
+
+		KeyedStateHandle snapshot = FutureUtil.runIfNotDoneAndGet(snapshotFuture).getJobManagerOwnedSnapshot();
+
+		// replace the place holders of the shared states with the actual handles
+		snapshot.registerSharedStates(new SharedStateRegistry());
+		return snapshot;
+	}
+
+	private static void registerTimers(KeyGroupedInternalTimerService<Integer, String> timerService, TestKeyContext keyContext) {
+		for (int key = 0; key < 100; ++key) {
+			keyContext.setCurrentKey(key);
+			timerService.registerEventTimeTimer("event", key);
+			timerService.registerProcessingTimeTimer("processing", key + 1);
+		}
+	}
+
+	private static void verifyRegisteredTimers(
+		KeyGroupedInternalTimerService<Integer, String> timerService,
+		RecordingTriggerable triggerable,
+		TestProcessingTimeService processingTimeService) throws Exception {
+
+		assertEquals(100, timerService.numEventTimeTimers());
+		assertEquals(100, timerService.numProcessingTimeTimers());
+
+		timerService.advanceWatermark(Long.MAX_VALUE);
+		processingTimeService.setCurrentTime(Long.MAX_VALUE);
+
+		assertEquals(100, triggerable.eventTimeTimers.size());
+		assertEquals(100, triggerable.processingTimeTimers.size());
+
+		for (int i = 0; i < 100; ++i) {
+			InternalTimer<Integer, String> eventTimeTimer = triggerable.eventTimeTimers.get(i);
+			assertEquals(i, eventTimeTimer.getTimestamp());
+			assertEquals(Integer.valueOf(i), eventTimeTimer.getKey());
+			assertEquals("event", eventTimeTimer.getNamespace());
+
+			InternalTimer<Integer, String> processingTimeTimer = triggerable.processingTimeTimers.get(i);
+			assertEquals(i + 1, processingTimeTimer.getTimestamp());
+			assertEquals(Integer.valueOf(i), processingTimeTimer.getKey());
+			assertEquals("processing", processingTimeTimer.getNamespace());
+		}
+	}
+
+	/**
+	 * Writes the timers of every key-group like the operator writes them to its raw keyed state.
+	 */
+	private static byte[][] writeTimers(KeyGroupedInternalTimerService<Integer, String> timerService) throws Exception {
+		byte[][] rawKeyedState = new byte[MAX_PARALLELISM][];
+
+		for (int keyGroup : KEY_GROUP_RANGE) {
+			ByteArrayOutputStreamWithPos outputStream = new ByteArrayOutputStreamWithPos();
+			new InternalTimerServiceSerializationProxy<>(Collections.singletonMap(SERVICE_NAME, timerService), keyGroup)
+				.write(new DataOutputViewStreamWrapper(outputStream));
+			rawKeyedState[keyGroup] = outputStream.toByteArray();
+		}
+
+		return rawKeyedState;
+	}
+
+	private static void readTimers(
+		byte[][] rawKeyedState,
+		KeyGroupedInternalTimerService<Integer, String> timerService,
+		KeyContext keyContext,
+		TestProcessingTimeService processingTimeService) throws Exception {
+
+		Map<String, KeyGroupedInternalTimerService<Integer, String>> timerServices = new HashMap<>();
+		timerServices.put(SERVICE_NAME, timerService);
+
+		for (int keyGroup : KEY_GROUP_RANGE) {
+			new InternalTimerServiceSerializationProxy<>(
+				timerServices,
+				RocksDBInternalTimerServiceTest.class.getClassLoader(),
+				MAX_PARALLELISM,
+				KEY_GROUP_RANGE,
+				keyContext,
+				processingTimeService,
+				InternalTimerServiceFactory.HEAP,
+				keyGroup).read(new ByteArrayInputStreamWithPos(rawKeyedState[keyGroup]));
+		}
+	}
+
+	private static class RecordingTriggerable implements Triggerable<Integer, String> {
+
+		private final KeyContext keyContext;
+
+		private final List<InternalTimer<Integer, String>> eventTimeTimers = new ArrayList<>();
+
+		private final List<InternalTimer<Integer, String>> processingTimeTimers = new ArrayList<>();
+
+		RecordingTriggerable(KeyContext keyContext) {
+			this.keyContext = keyContext;
+		}
+
+		@Override
+		public void onEventTime(InternalTimer<Integer, String> timer) {
+			assertEquals(timer.getKey(), keyContext.getCurrentKey());
+			eventTimeTimers.add(timer);
+		}
+
+		@Override
+		public void onProcessingTime(InternalTimer<Integer, String> timer) {
+			assertEquals(timer.getKey(), keyContext.getCurrentKey());
+			processingTimeTimers.add(timer);
+		}
+	}
+
+	private static class TestKeyContext implements KeyContext {
+
+		private Object key;
+
+		@Override
+		public void setCurrentKey(Object key) {
+			this.key = key;
+		}
+
+		@Override
+		public Object getCurrentKey() {
+			return key;
+		}
+	}
+}
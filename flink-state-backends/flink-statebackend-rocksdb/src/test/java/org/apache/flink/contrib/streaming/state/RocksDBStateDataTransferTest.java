@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.core.fs.CloseableRegistry;
+import org.apache.flink.core.fs.FSDataInputStream;
+import org.apache.flink.core.fs.FileSystem;
+import org.apache.flink.core.fs.Path;
+import org.apache.flink.runtime.state.CheckpointStreamFactory;
+import org.apache.flink.runtime.state.CheckpointedStateScope;
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.memory.ByteStreamStateHandle;
+import org.apache.flink.runtime.state.memory.MemCheckpointStreamFactory;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the {@link RocksDBStateDataTransfer}.
+ */
+public class RocksDBStateDataTransferTest extends TestLogger {
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testMultiThreadedUploadAndDownload() throws Exception {
+		File sourceDirectory = temporaryFolder.newFolder();
+		List<Path> filePaths = new ArrayList<>();
+		Map<String, byte[]> contents = new HashMap<>();
+		for (int i = 0; i < 10; i++) {
+			byte[] content = new byte[1024 + i];
+			for (int j = 0; j < content.length; j++) {
+				content[j] = (byte) (i + j);
+			}
+
+			File file = new File(sourceDirectory, i + ".sst");
+			Files.write(file.toPath(), content);
+			filePaths.add(new Path(file.toURI()));
+			contents.put(file.getName(), content);
+		}
+
+		Map<String, StreamStateHandle> stateHandles = new HashMap<>();
+		RocksDBStateDataTransferMetrics metrics = new RocksDBStateDataTransferMetrics();
+		try (RocksDBStateDataTransfer stateDataTransfer = new RocksDBStateDataTransfer(4, 0, new CloseableRegistry(), metrics)) {
+			Map<Path, StreamStateHandle> uploaded = stateDataTransfer.uploadFiles(
+				filePaths,
+				FileSystem.getLocalFileSystem(),
+				new MemCheckpointStreamFactory(1024 * 1024),
+				1L,
+				CheckpointedStateScope.SHARED);
+
+			assertEquals(filePaths.size(), uploaded.size());
+			assertEquals(10 * 1024 + 45, metrics.getUploadedBytes());
+			assertTrue(metrics.getUploadThroughput() > 0);
+			for (Map.Entry<Path, StreamStateHandle> entry : uploaded.entrySet()) {
+				assertArrayEquals(contents.get(entry.getKey().getName()), ((ByteStreamStateHandle) entry.getValue()).getData());
+				stateHandles.put(entry.getKey().getName(), entry.getValue());
+			}
+
+			File targetDirectory = temporaryFolder.newFolder();
+			stateDataTransfer.downloadFiles(stateHandles, new Path(targetDirectory.toURI()));
+
+			for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+				assertArrayEquals(entry.getValue(), Files.readAllBytes(new File(targetDirectory, entry.getKey()).toPath()));
+			}
+			assertEquals(10 * 1024 + 45, metrics.getDownloadedBytes());
+			assertTrue(metrics.getDownloadThroughput() > 0);
+		}
+	}
+
+	@Test
+	public void testRetryFailedDownload() throws Exception {
+		byte[] content = new byte[]{1, 2, 3, 4};
+		FailingStreamStateHandle stateHandle = new FailingStreamStateHandle(content, 2);
+
+		Map<String, StreamStateHandle> stateHandles = new HashMap<>();
+		stateHandles.put("000001.sst", stateHandle);
+		stateHandles.put("000002.sst", new ByteStreamStateHandle("000002", content));
+
+		File targetDirectory = temporaryFolder.newFolder();
+		try (RocksDBStateDataTransfer stateDataTransfer = new RocksDBStateDataTransfer(2, 2, new CloseableRegistry(), new RocksDBStateDataTransferMetrics())) {
+			stateDataTransfer.downloadFiles(stateHandles, new Path(targetDirectory.toURI()));
+		}
+
+		assertEquals(3, stateHandle.attempts.get());
+		assertArrayEquals(content, Files.readAllBytes(new File(targetDirectory, "000001.sst").toPath()));
+		assertArrayEquals(content, Files.readAllBytes(new File(targetDirectory, "000002.sst").toPath()));
+
+		// the download fails once the retries are exhausted
+		stateHandles.put("000001.sst", new FailingStreamStateHandle(content, 3));
+		try (RocksDBStateDataTransfer stateDataTransfer = new RocksDBStateDataTransfer(2, 2, new CloseableRegistry(), new RocksDBStateDataTransferMetrics())) {
+			stateDataTransfer.downloadFiles(stateHandles, new Path(temporaryFolder.newFolder().toURI()));
+			fail("Expected an IOException");
+		} catch (IOException expected) {
+			assertTrue(expected.getMessage().contains("Expected test failure"));
+		}
+	}
+
+	@Test
+	public void testDiscardUploadsFinishedAfterFailure() throws Exception {
+		File file = temporaryFolder.newFile("000001.sst");
+		Files.write(file.toPath(), new byte[]{1, 2, 3, 4});
+
+		List<Path> filePaths = new ArrayList<>();
+		filePaths.add(new Path(file.toURI()));
+		filePaths.add(new Path(new File(temporaryFolder.getRoot(), "000002.sst").toURI()));
+
+		// the upload of the existing file finishes after the upload of the missing file failed
+		List<DiscardRecordingStateHandle> uploaded = Collections.synchronizedList(new ArrayList<>());
+		CheckpointStreamFactory slowStreamFactory = (checkpointId, scope) -> {
+			sleepUninterruptibly(200L);
+			return new MemCheckpointStreamFactory.MemoryCheckpointOutputStream(1024) {
+				@Override
+				public StreamStateHandle closeAndGetHandle() throws IOException {
+					DiscardRecordingStateHandle stateHandle = new DiscardRecordingStateHandle(closeAndGetBytes());
+					uploaded.add(stateHandle);
+					return stateHandle;
+				}
+			};
+		};
+
+		try (RocksDBStateDataTransfer stateDataTransfer = new RocksDBStateDataTransfer(2, 0, new CloseableRegistry(), new RocksDBStateDataTransferMetrics())) {
+			stateDataTransfer.uploadFiles(
+				filePaths,
+				FileSystem.getLocalFileSystem(),
+				slowStreamFactory,
+				1L,
+				CheckpointedStateScope.SHARED);
+			fail("Expected an IOException");
+		} catch (IOException expected) {
+			// the missing file cannot be opened
+		}
+
+		assertEquals(1, uploaded.size());
+		assertTrue(uploaded.get(0).discarded);
+	}
+
+	private static void sleepUninterruptibly(long millis) {
+		final long deadline = System.currentTimeMillis() + millis;
+		long remaining;
+		while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+			try {
+				Thread.sleep(remaining);
+			} catch (InterruptedException ignored) {
+				// the transfer is aborted, but finishes anyway
+			}
+		}
+	}
+
+	/**
+	 * A {@link ByteStreamStateHandle} which records whether it was discarded.
+	 */
+	private static class DiscardRecordingStateHandle extends ByteStreamStateHandle {
+
+		private static final long serialVersionUID = 1L;
+
+		private volatile boolean discarded;
+
+		DiscardRecordingStateHandle(byte[] data) {
+			super("uploaded", data);
+		}
+
+		@Override
+		public void discardState() {
+			discarded = true;
+		}
+	}
+
+	/**
+	 * A {@link ByteStreamStateHandle} which fails to be opened a given number of times.
+	 */
+	private static class FailingStreamStateHandle extends ByteStreamStateHandle {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int numberOfFailures;
+
+		private final AtomicInteger attempts = new AtomicInteger();
+
+		FailingStreamStateHandle(byte[] data, int numberOfFailures) {
+			super("failing", data);
+			this.numberOfFailures = numberOfFailures;
+		}
+
+		@Override
+		public FSDataInputStream openInputStream() throws IOException {
+			if (attempts.incrementAndGet() <= numberOfFailures) {
+				throw new IOException("Expected test failure");
+			}
+			return super.openInputStream();
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.state.StateTtlConfig;
+import org.apache.flink.api.common.time.Time;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.runtime.state.AbstractInternalStateBackend;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.StateStorage;
+import org.apache.flink.runtime.state.StorageIterator;
+import org.apache.flink.runtime.state.TestLocalRecoveryConfig;
+import org.apache.flink.runtime.state.keyed.KeyedMapState;
+import org.apache.flink.runtime.state.keyed.KeyedMapStateDescriptor;
+import org.apache.flink.runtime.state.keyed.KeyedValueState;
+import org.apache.flink.runtime.state.ttl.TtlStateTestBase;
+import org.apache.flink.runtime.state.ttl.TtlValue;
+import org.apache.flink.runtime.state.ttl.TtlValueSerializer;
+import org.apache.flink.types.Pair;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.DBOptions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the states with time-to-live backed by {@link RocksDBInternalStateBackend}.
+ */
+public class RocksDBTtlStateTest extends TtlStateTestBase {
+
+	@ClassRule
+	public static TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Override
+	protected AbstractInternalStateBackend createStateBackend() throws Exception {
+		return new RocksDBInternalStateBackend(
+			getClass().getClassLoader(),
+			temporaryFolder.newFolder().getAbsoluteFile(),
+			new DBOptions().setCreateIfMissing(true),
+			new ColumnFamilyOptions(),
+			NUMBER_OF_KEY_GROUPS,
+			new KeyGroupRange(0, NUMBER_OF_KEY_GROUPS - 1),
+			true,
+			TestLocalRecoveryConfig.disabled(),
+			null,
+			new ExecutionConfig());
+	}
+
+	@Test
+	public void testIncrementalCleanup() throws Exception {
+		StateTtlConfig ttlConfig = StateTtlConfig.newBuilder(Time.milliseconds(TTL))
+			.cleanupIncrementally(10)
+			.build();
+		KeyedValueState<Integer, String> state = backend.getKeyedState(createValueDescriptor(ttlConfig));
+
+		for (int i = 0; i < 100; ++i) {
+			state.put(i, String.valueOf(i));
+		}
+		assertEquals(100, backend.numStateEntries());
+
+		// The updates have accumulated 1000 rows to visit, so the third of the following updates runs a cleanup.
+		timeProvider.time = 200L;
+		state.put(1000, "a");
+		state.put(1001, "b");
+		assertEquals(102, backend.numStateEntries());
+
+		for (int i = 2; i < 10; ++i) {
+			state.put(1000 + i, String.valueOf(i));
+		}
+
+		// The expired values are removed by the updates without being read.
+		assertEquals(10, backend.numStateEntries());
+	}
+
+	@Test
+	public void testValueLayout() throws Exception {
+		StateTtlConfig ttlConfig = StateTtlConfig.newBuilder(Time.milliseconds(TTL)).build();
+
+		KeyedValueState<Integer, String> valueState = backend.getKeyedState(createValueDescriptor(ttlConfig));
+		valueState.put(1, "a");
+
+		KeyedMapStateDescriptor<Integer, Integer, String> mapDescriptor = new KeyedMapStateDescriptor<>(
+			"map", IntSerializer.INSTANCE, IntSerializer.INSTANCE, StringSerializer.INSTANCE);
+		mapDescriptor.enableTimeToLive(ttlConfig);
+		KeyedMapState<Integer, Integer, String> mapState = backend.getKeyedState(mapDescriptor);
+		mapState.add(1, 1, "b");
+		mapState.add(2, 1, "c");
+
+		// The cleanup reads the timestamps from the rows written by the states.
+		assertRowsExpired("value", 1, TTL - 1, false);
+		assertRowsExpired("value", 1, TTL, true);
+		assertRowsExpired("map", 2, TTL - 1, false);
+		assertRowsExpired("map", 2, TTL, true);
+	}
+
+	@Test
+	public void testSerializedValueExpiration() throws Exception {
+		TtlValueSerializer<String> serializer = new TtlValueSerializer<>(StringSerializer.INSTANCE);
+		DataOutputSerializer outputView = new DataOutputSerializer(32);
+		serializer.serialize(new TtlValue<>("a", 1000L), outputView);
+		byte[] value = outputView.getCopyOfBuffer();
+
+		assertFalse(RocksDBTtlIncrementalCleanup.expired(value, TTL, 1000L + TTL - 1));
+		assertTrue(RocksDBTtlIncrementalCleanup.expired(value, TTL, 1000L + TTL));
+
+		assertFalse(RocksDBTtlIncrementalCleanup.expired(null, TTL, Long.MAX_VALUE));
+		assertFalse(RocksDBTtlIncrementalCleanup.expired(new byte[1], TTL, Long.MAX_VALUE));
+	}
+
+	//--------------------------------------------------------------------------
+
+	@SuppressWarnings("unchecked")
+	private void assertRowsExpired(String stateName, int expectedNumRows, long currentTimestamp, boolean expected) throws Exception {
+		StateStorage<byte[], byte[]> stateStorage = backend.getStateStorages().get(stateName);
+
+		int numRows = 0;
+		try (StorageIterator<byte[], byte[]> iterator = stateStorage.iterator()) {
+			while (iterator.hasNext()) {
+				Pair<byte[], byte[]> row = iterator.next();
+				assertEquals(expected, RocksDBTtlIncrementalCleanup.expired(row.getValue(), TTL, currentTimestamp));
+				numRows++;
+			}
+		}
+
+		assertEquals(expectedNumRows, numRows);
+	}
+}
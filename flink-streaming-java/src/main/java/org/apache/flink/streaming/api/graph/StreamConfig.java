@@ -28,6 +28,7 @@ import org.apache.flink.runtime.util.ClassLoaderUtil;
 import org.apache.flink.streaming.api.CheckpointingMode;
 import org.apache.flink.streaming.api.TimeCharacteristic;
 import org.apache.flink.streaming.api.collector.selector.OutputSelector;
+import org.apache.flink.streaming.api.environment.CheckpointConfig;
 import org.apache.flink.streaming.api.operators.StreamOperator;
 import org.apache.flink.streaming.api.operators.StreamOperatorSubstitutor;
 import org.apache.flink.streaming.runtime.tasks.StreamTaskException;
@@ -77,6 +78,7 @@ public class StreamConfig implements Serializable {
 
 	private static final String CHECKPOINTING_ENABLED = "checkpointing";
 	private static final String CHECKPOINT_MODE = "checkpointMode";
+	private static final String MAX_CONCURRENT_CHECKPOINTS = "maxConcurrentCheckpoints";
 
 	private static final String STATE_BACKEND = "statebackend";
 	private static final String STATE_PARTITIONER = "statePartitioner";
@@ -367,6 +369,14 @@ public class StreamConfig implements Serializable {
 		}
 	}
 
+	public void setMaxConcurrentCheckpoints(int maxConcurrentCheckpoints) {
+		config.setInteger(MAX_CONCURRENT_CHECKPOINTS, maxConcurrentCheckpoints);
+	}
+
+	public int getMaxConcurrentCheckpoints() {
+		return config.getInteger(MAX_CONCURRENT_CHECKPOINTS, CheckpointConfig.DEFAULT_MAX_CONCURRENT_CHECKPOINTS);
+	}
+
 	public void setOperatorID(OperatorID operatorID) {
 		this.config.setBytes(OPERATOR_ID, operatorID.getBytes());
 	}
@@ -77,6 +77,12 @@ public class StreamEdge implements Serializable {
 	 */
 	private final DamBehavior damBehavior;
 
+	/**
+	 * Whether the target deserializes the records of this {@link StreamEdge} by reference,
+	 * see {@link org.apache.flink.runtime.jobgraph.JobEdge#setZeroCopyEnabled(boolean)}.
+	 */
+	private boolean zeroCopyEnabled;
+
 	@VisibleForTesting
 	public StreamEdge(StreamNode sourceVertex, StreamNode targetVertex, int typeNumber,
 			List<String> selectedNames, StreamPartitioner<?> outputPartitioner, OutputTag outputTag) {
@@ -146,6 +152,18 @@ public class StreamEdge implements Serializable {
 		this.dataExchangeMode = dataExchangeMode;
 	}
 
+	public boolean isZeroCopyEnabled() {
+		return zeroCopyEnabled;
+	}
+
+	/**
+	 * Sets whether the target deserializes the records of this edge by reference. This only
+	 * takes effect if object reuse is enabled for the job.
+	 */
+	public void setZeroCopyEnabled(boolean zeroCopyEnabled) {
+		this.zeroCopyEnabled = zeroCopyEnabled;
+	}
+
 	@Override
 	public int hashCode() {
 		return Objects.hash(edgeName, edgeID);
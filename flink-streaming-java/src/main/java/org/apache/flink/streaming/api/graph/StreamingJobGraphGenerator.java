@@ -1080,6 +1080,7 @@ public class StreamingJobGraphGenerator {
 		config.setCheckpointingEnabled(ceckpointCfg.isCheckpointingEnabled());
 		if (ceckpointCfg.isCheckpointingEnabled()) {
 			config.setCheckpointMode(ceckpointCfg.getCheckpointingMode());
+			config.setMaxConcurrentCheckpoints(ceckpointCfg.getMaxConcurrentCheckpoints());
 		}
 		else {
 			// the "at-least-once" input handler is slightly cheaper (in the absence of checkpoints),
@@ -1188,6 +1189,9 @@ public class StreamingJobGraphGenerator {
 			}
 			// set strategy name so that web interface can show it.
 			jobEdge.setShipStrategyName(partitioner.toString());
+			// records may only reference the network buffers if they are not kept by the operators
+			jobEdge.setZeroCopyEnabled(
+				edge.isZeroCopyEnabled() && streamGraph.getExecutionConfig().isObjectReuseEnabled());
 
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("CONNECTED: {} - {} -> {}", partitioner.getClass().getSimpleName(),
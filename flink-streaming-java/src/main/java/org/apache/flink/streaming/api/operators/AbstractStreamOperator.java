@@ -370,6 +370,10 @@ public abstract class AbstractStreamOperator<OUT>
 			contextStateHelper.dispose();
 		}
 
+		if (timeServiceManager != null) {
+			timeServiceManager.dispose();
+		}
+
 		if (exception != null) {
 			throw exception;
 		}
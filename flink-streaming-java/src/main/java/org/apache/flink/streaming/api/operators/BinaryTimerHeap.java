@@ -0,0 +1,596 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.util.MathUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkState;
+
+/**
+ * A binary min-heap of the timers of a single key-group, ordered by timestamp.
+ *
+ * <p>Timers are kept in binary form. Every timer is a fixed-size record in off-heap
+ * {@link MemorySegment} pages, which points to the serialized key and namespace of the timer
+ * in an append-only data area. The heap itself is an array of record ids, and every record
+ * remembers its position in the heap. Duplicates are detected with an open-addressed index
+ * from the hash of the timer to its record. Thus, adding, deleting and polling timers all take
+ * O(log n) and do not create any objects per timer.
+ *
+ * <p>The data area is compacted once more than half of it is occupied by removed timers.
+ *
+ * <p>The pages are allocated with {@link MemorySegmentFactory#allocateUnpooledOffHeapMemory(int, Object)}
+ * as the heap grows and are freed in {@link #dispose()}. They are not taken from the managed
+ * memory of the task, but count against the direct memory of the JVM. A heap with {@code n}
+ * timers whose serialized key and namespace take {@code s} bytes on average needs about
+ * {@code n * (32 + s)} bytes, rounded up to whole pages, plus up to the same amount again for
+ * removed timers until the data area is compacted. This memory has to be reserved with
+ * {@code taskmanager.direct.memory.mb}.
+ *
+ * <p>This class is not thread-safe.
+ */
+@Internal
+public final class BinaryTimerHeap implements InternalTimersSnapshot.SerializedTimers {
+
+	/** Record layout: timestamp (8 bytes), data pointer (8 bytes), data length, heap index and hash (4 bytes each). */
+	private static final int RECORD_SIZE = 32;
+	private static final int TIMESTAMP_OFFSET = 0;
+	private static final int POINTER_OFFSET = 8;
+	private static final int LENGTH_OFFSET = 16;
+	private static final int HEAP_INDEX_OFFSET = 20;
+	private static final int HASH_OFFSET = 24;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** Marks a slot of the index that does not point to any record. */
+	private static final int EMPTY_SLOT = -1;
+
+	private final int pageSize;
+
+	private final int recordsPerPage;
+
+	private final List<MemorySegment> recordPages;
+
+	private List<MemorySegment> dataPages;
+
+	/** The ids of the records, in heap order. */
+	private int[] heap;
+
+	/** The number of timers in the heap. */
+	private int size;
+
+	/** The number of record ids handed out so far. */
+	private int numRecords;
+
+	/** The ids of the records released by removed timers. */
+	private int[] freeRecords;
+	private int numFreeRecords;
+
+	/** The position at which the next serialized timer is appended to the data area. */
+	private long dataPosition;
+
+	/** The number of bytes in the data area that belong to timers in the heap. */
+	private long liveDataBytes;
+
+	/** Open-addressed index (with linear probing) from the hash of a timer to its record id. */
+	private int[] indexRecords;
+	private int[] indexHashes;
+
+	public BinaryTimerHeap(int pageSize) {
+		checkArgument(pageSize >= RECORD_SIZE, "The page size must be at least " + RECORD_SIZE + " bytes.");
+
+		this.pageSize = pageSize;
+		this.recordsPerPage = pageSize / RECORD_SIZE;
+		this.recordPages = new ArrayList<>();
+		this.dataPages = new ArrayList<>();
+
+		this.heap = new int[INITIAL_CAPACITY];
+		this.freeRecords = new int[INITIAL_CAPACITY];
+
+		this.indexRecords = new int[INITIAL_CAPACITY];
+		this.indexHashes = new int[INITIAL_CAPACITY];
+		Arrays.fill(indexRecords, EMPTY_SLOT);
+	}
+
+	// ------------------------------------------------------------------------
+	//  Queue operations
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Adds the given timer to the heap, unless the heap already contains an equal timer.
+	 *
+	 * @param timestamp the timestamp of the timer.
+	 * @param data the buffer holding the serialized key and namespace of the timer.
+	 * @param offset the offset of the serialized key and namespace in the buffer.
+	 * @param length the length of the serialized key and namespace.
+	 * @param hash the hash of the timer, see {@link #hash(long, byte[], int, int)}.
+	 * @return true if the timer was added, false if it was already contained.
+	 */
+	public boolean add(long timestamp, byte[] data, int offset, int length, int hash) {
+		int slot = findSlot(timestamp, data, offset, length, hash);
+		if (indexRecords[slot] != EMPTY_SLOT) {
+			return false;
+		}
+
+		int record = allocateRecord();
+		long pointer = appendData(dataPages, data, offset, length);
+
+		MemorySegment page = recordPages.get(record / recordsPerPage);
+		int recordOffset = (record % recordsPerPage) * RECORD_SIZE;
+		page.putLong(recordOffset + TIMESTAMP_OFFSET, timestamp);
+		page.putLong(recordOffset + POINTER_OFFSET, pointer);
+		page.putInt(recordOffset + LENGTH_OFFSET, length);
+		page.putInt(recordOffset + HASH_OFFSET, hash);
+
+		indexRecords[slot] = record;
+		indexHashes[slot] = hash;
+
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, size * 2);
+		}
+		heap[size] = record;
+		siftUp(size++);
+
+		if (size * 4 > indexRecords.length * 3) {
+			rehashIndex(indexRecords.length * 2);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Removes the given timer from the heap.
+	 *
+	 * @return true if the timer was contained in the heap, false otherwise.
+	 */
+	public boolean remove(long timestamp, byte[] data, int offset, int length, int hash) {
+		int slot = findSlot(timestamp, data, offset, length, hash);
+		int record = indexRecords[slot];
+		if (record == EMPTY_SLOT) {
+			return false;
+		}
+
+		deleteSlot(slot);
+		removeFromHeap(getInt(record, HEAP_INDEX_OFFSET));
+		return true;
+	}
+
+	/**
+	 * Removes the timer with the smallest timestamp from the heap.
+	 */
+	public void poll() {
+		checkState(size > 0, "The heap is empty.");
+
+		int record = heap[0];
+		deleteSlot(findSlotOfRecord(record));
+		removeFromHeap(0);
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the smallest timestamp of all timers in the heap.
+	 */
+	public long peekTimestamp() {
+		checkState(size > 0, "The heap is empty.");
+		return getTimestamp(0);
+	}
+
+	/**
+	 * Returns the timestamp of the timer at the given position of the heap.
+	 */
+	public long getTimestamp(int heapIndex) {
+		return getLong(heap[heapIndex], TIMESTAMP_OFFSET);
+	}
+
+	/**
+	 * Returns the length of the serialized key and namespace of the timer at the given
+	 * position of the heap.
+	 */
+	public int getDataLength(int heapIndex) {
+		return getInt(heap[heapIndex], LENGTH_OFFSET);
+	}
+
+	/**
+	 * Copies the serialized key and namespace of the timer at the given position of the heap
+	 * into the given buffer.
+	 */
+	public void copyData(int heapIndex, byte[] target) {
+		int record = heap[heapIndex];
+		copyData(dataPages, getLong(record, POINTER_OFFSET), getInt(record, LENGTH_OFFSET), target);
+	}
+
+	/**
+	 * Writes all timers in the heap in the format of {@link InternalTimer.TimerSerializer}.
+	 * The order in which the timers are written is undefined.
+	 */
+	@Override
+	public void writeTo(DataOutputView out) throws IOException {
+		for (int i = 0; i < size; ++i) {
+			int record = heap[i];
+
+			long pointer = getLong(record, POINTER_OFFSET);
+			int remaining = getInt(record, LENGTH_OFFSET);
+			while (remaining > 0) {
+				MemorySegment page = dataPages.get((int) (pointer / pageSize));
+				int pageOffset = (int) (pointer % pageSize);
+				int numBytes = Math.min(remaining, pageSize - pageOffset);
+
+				page.get(out, pageOffset, numBytes);
+
+				pointer += numBytes;
+				remaining -= numBytes;
+			}
+
+			out.writeLong(getLong(record, TIMESTAMP_OFFSET));
+		}
+	}
+
+	/**
+	 * Releases all memory held by the heap. The heap must not be used afterwards.
+	 */
+	public void dispose() {
+		for (MemorySegment page : recordPages) {
+			page.free();
+		}
+		recordPages.clear();
+
+		for (MemorySegment page : dataPages) {
+			page.free();
+		}
+		dataPages.clear();
+
+		Arrays.fill(indexRecords, EMPTY_SLOT);
+		size = 0;
+		numRecords = 0;
+		numFreeRecords = 0;
+		dataPosition = 0;
+		liveDataBytes = 0;
+	}
+
+	/**
+	 * Computes the hash of a timer which is used to find duplicates.
+	 */
+	public static int hash(long timestamp, byte[] data, int offset, int length) {
+		int hash = (int) (timestamp ^ (timestamp >>> 32));
+		for (int i = offset; i < offset + length; ++i) {
+			hash = 31 * hash + data[i];
+		}
+		return MathUtils.bitMix(hash);
+	}
+
+	// ------------------------------------------------------------------------
+	//  Heap maintenance
+	// ------------------------------------------------------------------------
+
+	private void removeFromHeap(int heapIndex) {
+		int record = heap[heapIndex];
+
+		size--;
+		if (heapIndex != size) {
+			int last = heap[size];
+			heap[heapIndex] = last;
+			siftDown(heapIndex);
+			if (heap[heapIndex] == last) {
+				siftUp(heapIndex);
+			}
+		}
+
+		releaseRecord(record);
+	}
+
+	private void siftUp(int heapIndex) {
+		int record = heap[heapIndex];
+		long timestamp = getLong(record, TIMESTAMP_OFFSET);
+
+		while (heapIndex > 0) {
+			int parentIndex = (heapIndex - 1) >>> 1;
+			int parent = heap[parentIndex];
+			if (getLong(parent, TIMESTAMP_OFFSET) <= timestamp) {
+				break;
+			}
+
+			heap[heapIndex] = parent;
+			putInt(parent, HEAP_INDEX_OFFSET, heapIndex);
+			heapIndex = parentIndex;
+		}
+
+		heap[heapIndex] = record;
+		putInt(record, HEAP_INDEX_OFFSET, heapIndex);
+	}
+
+	private void siftDown(int heapIndex) {
+		int record = heap[heapIndex];
+		long timestamp = getLong(record, TIMESTAMP_OFFSET);
+		int half = size >>> 1;
+
+		while (heapIndex < half) {
+			int childIndex = 2 * heapIndex + 1;
+			int child = heap[childIndex];
+			long childTimestamp = getLong(child, TIMESTAMP_OFFSET);
+
+			int rightIndex = childIndex + 1;
+			if (rightIndex < size) {
+				int right = heap[rightIndex];
+				long rightTimestamp = getLong(right, TIMESTAMP_OFFSET);
+				if (rightTimestamp < childTimestamp) {
+					childIndex = rightIndex;
+					child = right;
+					childTimestamp = rightTimestamp;
+				}
+			}
+
+			if (timestamp <= childTimestamp) {
+				break;
+			}
+
+			heap[heapIndex] = child;
+			putInt(child, HEAP_INDEX_OFFSET, heapIndex);
+			heapIndex = childIndex;
+		}
+
+		heap[heapIndex] = record;
+		putInt(record, HEAP_INDEX_OFFSET, heapIndex);
+	}
+
+	// ------------------------------------------------------------------------
+	//  Index maintenance
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Returns the slot of the index that holds the given timer, or the empty slot at which the
+	 * timer would have to be inserted if it is not contained.
+	 */
+	private int findSlot(long timestamp, byte[] data, int offset, int length, int hash) {
+		int mask = indexRecords.length - 1;
+		int slot = hash & mask;
+
+		while (true) {
+			int record = indexRecords[slot];
+			if (record == EMPTY_SLOT) {
+				return slot;
+			}
+
+			if (indexHashes[slot] == hash &&
+				getLong(record, TIMESTAMP_OFFSET) == timestamp &&
+				getInt(record, LENGTH_OFFSET) == length &&
+				dataEquals(getLong(record, POINTER_OFFSET), data, offset, length)) {
+				return slot;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private int findSlotOfRecord(int record) {
+		int mask = indexRecords.length - 1;
+		int slot = getInt(record, HASH_OFFSET) & mask;
+
+		while (indexRecords[slot] != record) {
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Clears the given slot of the index and moves following entries of the same probe
+	 * sequence backwards, so that no tombstones are needed.
+	 */
+	private void deleteSlot(int slot) {
+		int mask = indexRecords.length - 1;
+
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (indexRecords[next] != EMPTY_SLOT) {
+			int home = indexHashes[next] & mask;
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				indexRecords[hole] = indexRecords[next];
+				indexHashes[hole] = indexHashes[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+
+		indexRecords[hole] = EMPTY_SLOT;
+	}
+
+	private void rehashIndex(int capacity) {
+		int[] newRecords = new int[capacity];
+		int[] newHashes = new int[capacity];
+		Arrays.fill(newRecords, EMPTY_SLOT);
+
+		int mask = capacity - 1;
+		for (int i = 0; i < size; ++i) {
+			int record = heap[i];
+			int hash = getInt(record, HASH_OFFSET);
+
+			int slot = hash & mask;
+			while (newRecords[slot] != EMPTY_SLOT) {
+				slot = (slot + 1) & mask;
+			}
+
+			newRecords[slot] = record;
+			newHashes[slot] = hash;
+		}
+
+		indexRecords = newRecords;
+		indexHashes = newHashes;
+	}
+
+	// ------------------------------------------------------------------------
+	//  Memory management
+	// ------------------------------------------------------------------------
+
+	private int allocateRecord() {
+		if (numFreeRecords > 0) {
+			return freeRecords[--numFreeRecords];
+		}
+
+		if (numRecords == recordPages.size() * recordsPerPage) {
+			recordPages.add(allocatePage());
+		}
+
+		return numRecords++;
+	}
+
+	private void releaseRecord(int record) {
+		liveDataBytes -= getInt(record, LENGTH_OFFSET);
+
+		if (size == 0) {
+			// the heap is empty, so all records and the whole data area can be reused
+			numRecords = 0;
+			numFreeRecords = 0;
+			dataPosition = 0;
+			liveDataBytes = 0;
+			return;
+		}
+
+		if (numFreeRecords == freeRecords.length) {
+			freeRecords = Arrays.copyOf(freeRecords, numFreeRecords * 2);
+		}
+		freeRecords[numFreeRecords++] = record;
+
+		long garbageBytes = dataPosition - liveDataBytes;
+		if (garbageBytes > pageSize && garbageBytes > liveDataBytes) {
+			compactData();
+		}
+	}
+
+	/**
+	 * Rewrites the serialized keys and namespaces of all timers in the heap into new pages,
+	 * dropping the data of removed timers.
+	 */
+	private void compactData() {
+		List<MemorySegment> oldPages = dataPages;
+
+		dataPages = new ArrayList<>();
+		dataPosition = 0;
+		liveDataBytes = 0;
+
+		byte[] buffer = new byte[INITIAL_CAPACITY];
+		for (int i = 0; i < size; ++i) {
+			int record = heap[i];
+			int length = getInt(record, LENGTH_OFFSET);
+			if (buffer.length < length) {
+				buffer = new byte[Math.max(length, buffer.length * 2)];
+			}
+
+			copyData(oldPages, getLong(record, POINTER_OFFSET), length, buffer);
+			putLong(record, POINTER_OFFSET, appendData(dataPages, buffer, 0, length));
+		}
+
+		for (MemorySegment page : oldPages) {
+			page.free();
+		}
+	}
+
+	private long appendData(List<MemorySegment> pages, byte[] data, int offset, int length) {
+		long pointer = dataPosition;
+
+		int remaining = length;
+		while (remaining > 0) {
+			int pageIndex = (int) (dataPosition / pageSize);
+			int pageOffset = (int) (dataPosition % pageSize);
+			if (pageIndex == pages.size()) {
+				pages.add(allocatePage());
+			}
+
+			int numBytes = Math.min(remaining, pageSize - pageOffset);
+			pages.get(pageIndex).put(pageOffset, data, offset, numBytes);
+
+			offset += numBytes;
+			remaining -= numBytes;
+			dataPosition += numBytes;
+		}
+
+		liveDataBytes += length;
+		return pointer;
+	}
+
+	private void copyData(List<MemorySegment> pages, long pointer, int length, byte[] target) {
+		int targetOffset = 0;
+		while (targetOffset < length) {
+			MemorySegment page = pages.get((int) (pointer / pageSize));
+			int pageOffset = (int) (pointer % pageSize);
+			int numBytes = Math.min(length - targetOffset, pageSize - pageOffset);
+
+			page.get(pageOffset, target, targetOffset, numBytes);
+
+			pointer += numBytes;
+			targetOffset += numBytes;
+		}
+	}
+
+	private boolean dataEquals(long pointer, byte[] data, int offset, int length) {
+		int end = offset + length;
+		while (offset < end) {
+			MemorySegment page = dataPages.get((int) (pointer / pageSize));
+			int pageOffset = (int) (pointer % pageSize);
+			int numBytes = Math.min(end - offset, pageSize - pageOffset);
+
+			for (int i = 0; i < numBytes; ++i) {
+				if (page.get(pageOffset + i) != data[offset + i]) {
+					return false;
+				}
+			}
+
+			pointer += numBytes;
+			offset += numBytes;
+		}
+
+		return true;
+	}
+
+	private MemorySegment allocatePage() {
+		return MemorySegmentFactory.allocateUnpooledOffHeapMemory(pageSize, this);
+	}
+
+	private long getLong(int record, int fieldOffset) {
+		return recordPages.get(record / recordsPerPage).getLong((record % recordsPerPage) * RECORD_SIZE + fieldOffset);
+	}
+
+	private void putLong(int record, int fieldOffset, long value) {
+		recordPages.get(record / recordsPerPage).putLong((record % recordsPerPage) * RECORD_SIZE + fieldOffset, value);
+	}
+
+	private int getInt(int record, int fieldOffset) {
+		return recordPages.get(record / recordsPerPage).getInt((record % recordsPerPage) * RECORD_SIZE + fieldOffset);
+	}
+
+	private void putInt(int record, int fieldOffset, int value) {
+		recordPages.get(record / recordsPerPage).putInt((record % recordsPerPage) * RECORD_SIZE + fieldOffset, value);
+	}
+}
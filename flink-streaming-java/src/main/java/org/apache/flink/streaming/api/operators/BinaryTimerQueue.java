@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkState;
+
+/**
+ * A priority queue of timers in binary form which is partitioned by key-group. The timers of
+ * each key-group are kept in their own {@link BinaryTimerHeap}, and the non-empty heaps are
+ * ordered by their smallest timestamp in a second, small heap. Thus, the timers of a key-group
+ * can be snapshotted without touching the timers of any other key-group.
+ *
+ * <p>Key-groups are addressed by their index in the local key-group range.
+ *
+ * <p>This class is not thread-safe.
+ */
+@Internal
+public final class BinaryTimerQueue {
+
+	/** Marks a key-group that is not contained in the heap of key-groups. */
+	private static final int NOT_CONTAINED = -1;
+
+	private final int pageSize;
+
+	/** The timers per key-group, created lazily. */
+	private final BinaryTimerHeap[] keyGroupTimers;
+
+	/** The non-empty key-groups, ordered by the smallest timestamp of their timers. */
+	private final int[] keyGroupHeap;
+
+	/** The position of each key-group in the heap of key-groups. */
+	private final int[] keyGroupHeapIndex;
+
+	private int numNonEmptyKeyGroups;
+
+	private int size;
+
+	public BinaryTimerQueue(int numKeyGroups, int pageSize) {
+		checkArgument(numKeyGroups >= 0, "The number of key-groups must not be negative.");
+
+		this.pageSize = pageSize;
+		this.keyGroupTimers = new BinaryTimerHeap[numKeyGroups];
+		this.keyGroupHeap = new int[numKeyGroups];
+		this.keyGroupHeapIndex = new int[numKeyGroups];
+		Arrays.fill(keyGroupHeapIndex, NOT_CONTAINED);
+	}
+
+	/**
+	 * Adds the given timer to the queue, unless the queue already contains an equal timer.
+	 *
+	 * @return true if the timer was added, false if it was already contained.
+	 * @see BinaryTimerHeap#add(long, byte[], int, int, int)
+	 */
+	public boolean add(int keyGroupIndex, long timestamp, byte[] data, int offset, int length, int hash) {
+		BinaryTimerHeap timers = keyGroupTimers[keyGroupIndex];
+		if (timers == null) {
+			timers = new BinaryTimerHeap(pageSize);
+			keyGroupTimers[keyGroupIndex] = timers;
+		}
+
+		if (!timers.add(timestamp, data, offset, length, hash)) {
+			return false;
+		}
+
+		size++;
+		updateKeyGroup(keyGroupIndex);
+		return true;
+	}
+
+	/**
+	 * Removes the given timer from the queue.
+	 *
+	 * @return true if the timer was contained in the queue, false otherwise.
+	 */
+	public boolean remove(int keyGroupIndex, long timestamp, byte[] data, int offset, int length, int hash) {
+		BinaryTimerHeap timers = keyGroupTimers[keyGroupIndex];
+		if (timers == null || !timers.remove(timestamp, data, offset, length, hash)) {
+			return false;
+		}
+
+		size--;
+		updateKeyGroup(keyGroupIndex);
+		return true;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the smallest timestamp of all timers in the queue.
+	 */
+	public long peekTimestamp() {
+		return peekHeap().peekTimestamp();
+	}
+
+	/**
+	 * Returns the length of the serialized key and namespace of the timer with the smallest
+	 * timestamp.
+	 */
+	public int getHeadDataLength() {
+		return peekHeap().getDataLength(0);
+	}
+
+	/**
+	 * Copies the serialized key and namespace of the timer with the smallest timestamp into the
+	 * given buffer.
+	 */
+	public void copyHeadData(byte[] target) {
+		peekHeap().copyData(0, target);
+	}
+
+	/**
+	 * Removes the timer with the smallest timestamp from the queue.
+	 */
+	public void poll() {
+		int keyGroupIndex = keyGroupHeap[0];
+		peekHeap().poll();
+
+		size--;
+		updateKeyGroup(keyGroupIndex);
+	}
+
+	/**
+	 * Returns the timers of the given key-group, or null if no timer was ever added for it.
+	 */
+	@Nullable
+	public BinaryTimerHeap getTimersForKeyGroup(int keyGroupIndex) {
+		return keyGroupTimers[keyGroupIndex];
+	}
+
+	/**
+	 * Releases the memory of all timers. The queue must not be used afterwards.
+	 */
+	public void dispose() {
+		for (int i = 0; i < keyGroupTimers.length; ++i) {
+			if (keyGroupTimers[i] != null) {
+				keyGroupTimers[i].dispose();
+				keyGroupTimers[i] = null;
+			}
+		}
+
+		Arrays.fill(keyGroupHeapIndex, NOT_CONTAINED);
+		numNonEmptyKeyGroups = 0;
+		size = 0;
+	}
+
+	// ------------------------------------------------------------------------
+
+	private BinaryTimerHeap peekHeap() {
+		checkState(numNonEmptyKeyGroups > 0, "The queue is empty.");
+		return keyGroupTimers[keyGroupHeap[0]];
+	}
+
+	/**
+	 * Restores the order of the heap of key-groups after the timers of the given key-group
+	 * have changed.
+	 */
+	private void updateKeyGroup(int keyGroupIndex) {
+		int heapIndex = keyGroupHeapIndex[keyGroupIndex];
+
+		if (keyGroupTimers[keyGroupIndex].isEmpty()) {
+			if (heapIndex != NOT_CONTAINED) {
+				keyGroupHeapIndex[keyGroupIndex] = NOT_CONTAINED;
+
+				numNonEmptyKeyGroups--;
+				if (heapIndex != numNonEmptyKeyGroups) {
+					int last = keyGroupHeap[numNonEmptyKeyGroups];
+					keyGroupHeap[heapIndex] = last;
+					keyGroupHeapIndex[last] = heapIndex;
+					siftDown(heapIndex);
+					siftUp(keyGroupHeapIndex[last]);
+				}
+			}
+		} else if (heapIndex == NOT_CONTAINED) {
+			keyGroupHeap[numNonEmptyKeyGroups] = keyGroupIndex;
+			keyGroupHeapIndex[keyGroupIndex] = numNonEmptyKeyGroups;
+			siftUp(numNonEmptyKeyGroups++);
+		} else {
+			siftUp(heapIndex);
+			siftDown(keyGroupHeapIndex[keyGroupIndex]);
+		}
+	}
+
+	private void siftUp(int heapIndex) {
+		int keyGroupIndex = keyGroupHeap[heapIndex];
+		long timestamp = keyGroupTimers[keyGroupIndex].peekTimestamp();
+
+		while (heapIndex > 0) {
+			int parentIndex = (heapIndex - 1) >>> 1;
+			int parent = keyGroupHeap[parentIndex];
+			if (keyGroupTimers[parent].peekTimestamp() <= timestamp) {
+				break;
+			}
+
+			keyGroupHeap[heapIndex] = parent;
+			keyGroupHeapIndex[parent] = heapIndex;
+			heapIndex = parentIndex;
+		}
+
+		keyGroupHeap[heapIndex] = keyGroupIndex;
+		keyGroupHeapIndex[keyGroupIndex] = heapIndex;
+	}
+
+	private void siftDown(int heapIndex) {
+		int keyGroupIndex = keyGroupHeap[heapIndex];
+		long timestamp = keyGroupTimers[keyGroupIndex].peekTimestamp();
+		int half = numNonEmptyKeyGroups >>> 1;
+
+		while (heapIndex < half) {
+			int childIndex = 2 * heapIndex + 1;
+			int child = keyGroupHeap[childIndex];
+			long childTimestamp = keyGroupTimers[child].peekTimestamp();
+
+			int rightIndex = childIndex + 1;
+			if (rightIndex < numNonEmptyKeyGroups) {
+				int right = keyGroupHeap[rightIndex];
+				long rightTimestamp = keyGroupTimers[right].peekTimestamp();
+				if (rightTimestamp < childTimestamp) {
+					childIndex = rightIndex;
+					child = right;
+					childTimestamp = rightTimestamp;
+				}
+			}
+
+			if (timestamp <= childTimestamp) {
+				break;
+			}
+
+			keyGroupHeap[heapIndex] = child;
+			keyGroupHeapIndex[child] = heapIndex;
+			heapIndex = childIndex;
+		}
+
+		keyGroupHeap[heapIndex] = keyGroupIndex;
+		keyGroupHeapIndex[keyGroupIndex] = heapIndex;
+	}
+}
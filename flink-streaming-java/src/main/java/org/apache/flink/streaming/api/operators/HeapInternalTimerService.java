@@ -40,7 +40,7 @@ import static org.apache.flink.util.Preconditions.checkNotNull;
 /**
  * {@link InternalTimerService} that stores timers on the Java heap.
  */
-public class HeapInternalTimerService<K, N> implements InternalTimerService<N>, ProcessingTimeCallback {
+public class HeapInternalTimerService<K, N> implements KeyGroupedInternalTimerService<K, N>, ProcessingTimeCallback {
 
 	private final ProcessingTimeService processingTimeService;
 
@@ -132,6 +132,7 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 	 * </ol>
 	 * This method can be called multiple times, as long as it is called with the same serializers.
 	 */
+	@Override
 	public void startTimerService(
 			TypeSerializer<K> keySerializer,
 			TypeSerializer<N> namespaceSerializer,
@@ -273,6 +274,7 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 		}
 	}
 
+	@Override
 	public void advanceWatermark(long time) throws Exception {
 		currentWatermark = time;
 
@@ -295,6 +297,7 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 	 * @param keyGroupIdx the id of the key-group to be put in the snapshot.
 	 * @return a snapshot containing the timers for the given key-group, and the serializers for them
 	 */
+	@Override
 	public InternalTimersSnapshot<K, N> snapshotTimersForKeyGroup(int keyGroupIdx) {
 		return new InternalTimersSnapshot<>(
 				keySerializer,
@@ -312,6 +315,7 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 	 *                       and the serializers that were used to write them
 	 * @param keyGroupIdx the id of the key-group to be put in the snapshot.
 	 */
+	@Override
 	@SuppressWarnings("unchecked")
 	public void restoreTimersForKeyGroup(InternalTimersSnapshot<?, ?> restoredTimersSnapshot, int keyGroupIdx) throws IOException {
 		this.restoredTimersSnapshot = (InternalTimersSnapshot<K, N>) restoredTimersSnapshot;
@@ -411,14 +415,22 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 		return keyGroupIdx - this.localKeyGroupRangeStartIdx;
 	}
 
+	@Override
+	public void dispose() {
+		// the timers are released by the garbage collector
+	}
+
+	@Override
 	public int numProcessingTimeTimers() {
 		return this.processingTimeTimersQueue.size();
 	}
 
+	@Override
 	public int numEventTimeTimers() {
 		return this.eventTimeTimersQueue.size();
 	}
 
+	@Override
 	public int numProcessingTimeTimers(N namespace) {
 		int count = 0;
 		for (InternalTimer<K, N> timer : processingTimeTimersQueue) {
@@ -429,6 +441,7 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 		return count;
 	}
 
+	@Override
 	public int numEventTimeTimers(N namespace) {
 		int count = 0;
 		for (InternalTimer<K, N> timer : eventTimeTimersQueue) {
@@ -36,7 +36,8 @@ import java.util.Map;
 /**
  * An entity keeping all the time-related services available to all operators extending the
  * {@link AbstractStreamOperator}. Right now, this is only a
- * {@link HeapInternalTimerService timer services}.
+ * {@link KeyGroupedInternalTimerService timer services}, which are created by the configured
+ * {@link InternalTimerServiceFactory}.
  *
  * <b>NOTE:</b> These services are only available to keyed operators.
  *
@@ -52,7 +53,9 @@ public class InternalTimeServiceManager<K, N> {
 
 	private final ProcessingTimeService processingTimeService;
 
-	private final Map<String, HeapInternalTimerService<K, N>> timerServices;
+	private final InternalTimerServiceFactory timerServiceFactory;
+
+	private final Map<String, KeyGroupedInternalTimerService<K, N>> timerServices;
 
 	InternalTimeServiceManager(
 			int totalKeyGroups,
@@ -60,12 +63,23 @@ public class InternalTimeServiceManager<K, N> {
 			KeyContext keyContext,
 			ProcessingTimeService processingTimeService) {
 
+		this(totalKeyGroups, localKeyGroupRange, keyContext, processingTimeService, InternalTimerServiceFactory.HEAP);
+	}
+
+	InternalTimeServiceManager(
+			int totalKeyGroups,
+			KeyGroupsList localKeyGroupRange,
+			KeyContext keyContext,
+			ProcessingTimeService processingTimeService,
+			InternalTimerServiceFactory timerServiceFactory) {
+
 		Preconditions.checkArgument(totalKeyGroups > 0);
 		this.totalKeyGroups = totalKeyGroups;
 		this.localKeyGroupRange = Preconditions.checkNotNull(localKeyGroupRange);
 
 		this.keyContext = Preconditions.checkNotNull(keyContext);
 		this.processingTimeService = Preconditions.checkNotNull(processingTimeService);
+		this.timerServiceFactory = Preconditions.checkNotNull(timerServiceFactory);
 
 		this.timerServices = new HashMap<>();
 	}
@@ -93,9 +107,9 @@ public class InternalTimeServiceManager<K, N> {
 	public InternalTimerService<N> getInternalTimerService(String name, TypeSerializer<K> keySerializer,
 														TypeSerializer<N> namespaceSerializer, Triggerable<K, N> triggerable) {
 
-		HeapInternalTimerService<K, N> timerService = timerServices.get(name);
+		KeyGroupedInternalTimerService<K, N> timerService = timerServices.get(name);
 		if (timerService == null) {
-			timerService = new HeapInternalTimerService<>(totalKeyGroups,
+			timerService = timerServiceFactory.createTimerService(name, totalKeyGroups,
 				localKeyGroupRange, keyContext, processingTimeService);
 			timerServices.put(name, timerService);
 		}
@@ -104,7 +118,7 @@ public class InternalTimeServiceManager<K, N> {
 	}
 
 	public void advanceWatermark(Watermark watermark) throws Exception {
-		for (HeapInternalTimerService<?, ?> service : timerServices.values()) {
+		for (KeyGroupedInternalTimerService<?, ?> service : timerServices.values()) {
 			service.advanceWatermark(watermark.getTimestamp());
 		}
 	}
@@ -131,17 +145,27 @@ public class InternalTimeServiceManager<K, N> {
 				localKeyGroupRange,
 				keyContext,
 				processingTimeService,
+				timerServiceFactory,
 				keyGroupIdx);
 
 		serializationProxy.read(stream);
 	}
 
+	/**
+	 * Releases the resources of all timer services.
+	 */
+	public void dispose() {
+		for (KeyGroupedInternalTimerService<?, ?> timerService : timerServices.values()) {
+			timerService.dispose();
+		}
+	}
+
 	////////////////////			Methods used ONLY IN TESTS				////////////////////
 
 	@VisibleForTesting
 	public int numProcessingTimeTimers() {
 		int count = 0;
-		for (HeapInternalTimerService<?, ?> timerService : timerServices.values()) {
+		for (KeyGroupedInternalTimerService<?, ?> timerService : timerServices.values()) {
 			count += timerService.numProcessingTimeTimers();
 		}
 		return count;
@@ -150,7 +174,7 @@ public class InternalTimeServiceManager<K, N> {
 	@VisibleForTesting
 	public int numEventTimeTimers() {
 		int count = 0;
-		for (HeapInternalTimerService<?, ?> timerService : timerServices.values()) {
+		for (KeyGroupedInternalTimerService<?, ?> timerService : timerServices.values()) {
 			count += timerService.numEventTimeTimers();
 		}
 		return count;
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.runtime.state.KeyGroupsList;
+import org.apache.flink.streaming.runtime.tasks.ProcessingTimeService;
+
+/**
+ * A factory for the {@link KeyGroupedInternalTimerService timer services} created by the
+ * {@link InternalTimeServiceManager}.
+ */
+@Internal
+public interface InternalTimerServiceFactory {
+
+	/** Creates timer services that keep their timers as objects on the Java heap. */
+	InternalTimerServiceFactory HEAP = new InternalTimerServiceFactory() {
+		@Override
+		public <K, N> KeyGroupedInternalTimerService<K, N> createTimerService(
+			String name,
+			int totalKeyGroups,
+			KeyGroupsList localKeyGroupRange,
+			KeyContext keyContext,
+			ProcessingTimeService processingTimeService) {
+
+			return new HeapInternalTimerService<>(totalKeyGroups, localKeyGroupRange, keyContext, processingTimeService);
+		}
+	};
+
+	/** Creates timer services that keep their timers in serialized form in off-heap memory. */
+	InternalTimerServiceFactory OFF_HEAP = new InternalTimerServiceFactory() {
+		@Override
+		public <K, N> KeyGroupedInternalTimerService<K, N> createTimerService(
+			String name,
+			int totalKeyGroups,
+			KeyGroupsList localKeyGroupRange,
+			KeyContext keyContext,
+			ProcessingTimeService processingTimeService) {
+
+			return new OffHeapInternalTimerService<>(totalKeyGroups, localKeyGroupRange, keyContext, processingTimeService);
+		}
+	};
+
+	/**
+	 * Creates a new timer service.
+	 *
+	 * @param name the name of the timer service, unique within the operator.
+	 * @param totalKeyGroups the total number of key-groups of the job.
+	 * @param localKeyGroupRange the key-groups the timer service is responsible for.
+	 * @param keyContext the context to get and set the current key.
+	 * @param processingTimeService the service to register processing time callbacks.
+	 */
+	<K, N> KeyGroupedInternalTimerService<K, N> createTimerService(
+		String name,
+		int totalKeyGroups,
+		KeyGroupsList localKeyGroupRange,
+		KeyContext keyContext,
+		ProcessingTimeService processingTimeService);
+}
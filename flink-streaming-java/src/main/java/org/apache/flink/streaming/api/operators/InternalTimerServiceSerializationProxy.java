@@ -39,7 +39,7 @@ public class InternalTimerServiceSerializationProxy<K, N> extends PostVersionedI
 	public static final int VERSION = 1;
 
 	/** The key-group timer services to write / read. */
-	private Map<String, HeapInternalTimerService<K, N>> timerServices;
+	private Map<String, KeyGroupedInternalTimerService<K, N>> timerServices;
 
 	/** The user classloader; only relevant if the proxy is used to restore timer services. */
 	private ClassLoader userCodeClassLoader;
@@ -50,17 +50,19 @@ public class InternalTimerServiceSerializationProxy<K, N> extends PostVersionedI
 	private KeyGroupsList localKeyGroupRange;
 	private KeyContext keyContext;
 	private ProcessingTimeService processingTimeService;
+	private InternalTimerServiceFactory timerServiceFactory;
 
 	/**
 	 * Constructor to use when restoring timer services.
 	 */
 	public InternalTimerServiceSerializationProxy(
-			Map<String, HeapInternalTimerService<K, N>> timerServicesMapToPopulate,
+			Map<String, KeyGroupedInternalTimerService<K, N>> timerServicesMapToPopulate,
 			ClassLoader userCodeClassLoader,
 			int totalKeyGroups,
 			KeyGroupsList localKeyGroupRange,
 			KeyContext keyContext,
 			ProcessingTimeService processingTimeService,
+			InternalTimerServiceFactory timerServiceFactory,
 			int keyGroupIdx) {
 
 		this.timerServices = checkNotNull(timerServicesMapToPopulate);
@@ -69,6 +71,7 @@ public class InternalTimerServiceSerializationProxy<K, N> extends PostVersionedI
 		this.localKeyGroupRange = checkNotNull(localKeyGroupRange);
 		this.keyContext = checkNotNull(keyContext);
 		this.processingTimeService = checkNotNull(processingTimeService);
+		this.timerServiceFactory = checkNotNull(timerServiceFactory);
 		this.keyGroupIdx = keyGroupIdx;
 	}
 
@@ -76,7 +79,7 @@ public class InternalTimerServiceSerializationProxy<K, N> extends PostVersionedI
 	 * Constructor to use when writing timer services.
 	 */
 	public InternalTimerServiceSerializationProxy(
-			Map<String, HeapInternalTimerService<K, N>> timerServices,
+			Map<String, KeyGroupedInternalTimerService<K, N>> timerServices,
 			int keyGroupIdx) {
 
 		this.timerServices = checkNotNull(timerServices);
@@ -93,9 +96,9 @@ public class InternalTimerServiceSerializationProxy<K, N> extends PostVersionedI
 		super.write(out);
 
 		out.writeInt(timerServices.size());
-		for (Map.Entry<String, HeapInternalTimerService<K, N>> entry : timerServices.entrySet()) {
+		for (Map.Entry<String, KeyGroupedInternalTimerService<K, N>> entry : timerServices.entrySet()) {
 			String serviceName = entry.getKey();
-			HeapInternalTimerService<K, N> timerService = entry.getValue();
+			KeyGroupedInternalTimerService<K, N> timerService = entry.getValue();
 
 			out.writeUTF(serviceName);
 			InternalTimersSnapshotReaderWriters
@@ -111,9 +114,10 @@ public class InternalTimerServiceSerializationProxy<K, N> extends PostVersionedI
 		for (int i = 0; i < noOfTimerServices; i++) {
 			String serviceName = in.readUTF();
 
-			HeapInternalTimerService<K, N> timerService = timerServices.get(serviceName);
+			KeyGroupedInternalTimerService<K, N> timerService = timerServices.get(serviceName);
 			if (timerService == null) {
-				timerService = new HeapInternalTimerService<>(
+				timerService = timerServiceFactory.createTimerService(
+					serviceName,
 					totalKeyGroups,
 					localKeyGroupRange,
 					keyContext,
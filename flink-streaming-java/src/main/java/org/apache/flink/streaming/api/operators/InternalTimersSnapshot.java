@@ -20,10 +20,12 @@ package org.apache.flink.streaming.api.operators;
 
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.api.common.typeutils.TypeSerializerConfigSnapshot;
+import org.apache.flink.core.memory.DataOutputView;
 import org.apache.flink.util.Preconditions;
 
 import javax.annotation.Nullable;
 
+import java.io.IOException;
 import java.util.Set;
 
 /**
@@ -40,6 +42,9 @@ public class InternalTimersSnapshot<K, N> {
 	private Set<InternalTimer<K, N>> eventTimeTimers;
 	private Set<InternalTimer<K, N>> processingTimeTimers;
 
+	private SerializedTimers serializedEventTimeTimers;
+	private SerializedTimers serializedProcessingTimeTimers;
+
 	/** Empty constructor used when restoring the timers. */
 	public InternalTimersSnapshot() {}
 
@@ -60,6 +65,32 @@ public class InternalTimersSnapshot<K, N> {
 		this.processingTimeTimers = processingTimeTimers;
 	}
 
+	/**
+	 * Creates a snapshot of timers that are already kept in serialized form. When written, the
+	 * timers are copied to the output as they are, without creating an {@link InternalTimer}
+	 * for each of them.
+	 */
+	public static <K, N> InternalTimersSnapshot<K, N> ofSerializedTimers(
+			TypeSerializer<K> keySerializer,
+			TypeSerializerConfigSnapshot keySerializerConfigSnapshot,
+			TypeSerializer<N> namespaceSerializer,
+			TypeSerializerConfigSnapshot namespaceSerializerConfigSnapshot,
+			@Nullable SerializedTimers eventTimeTimers,
+			@Nullable SerializedTimers processingTimeTimers) {
+
+		InternalTimersSnapshot<K, N> snapshot = new InternalTimersSnapshot<>(
+			keySerializer,
+			keySerializerConfigSnapshot,
+			namespaceSerializer,
+			namespaceSerializerConfigSnapshot,
+			null,
+			null);
+
+		snapshot.serializedEventTimeTimers = eventTimeTimers;
+		snapshot.serializedProcessingTimeTimers = processingTimeTimers;
+		return snapshot;
+	}
+
 	public TypeSerializer<K> getKeySerializer() {
 		return keySerializer;
 	}
@@ -108,6 +139,16 @@ public class InternalTimersSnapshot<K, N> {
 		this.processingTimeTimers = processingTimeTimers;
 	}
 
+	@Nullable
+	public SerializedTimers getSerializedEventTimeTimers() {
+		return serializedEventTimeTimers;
+	}
+
+	@Nullable
+	public SerializedTimers getSerializedProcessingTimeTimers() {
+		return serializedProcessingTimeTimers;
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		return super.equals(obj);
@@ -117,4 +158,21 @@ public class InternalTimersSnapshot<K, N> {
 	public int hashCode() {
 		return super.hashCode();
 	}
+
+	/**
+	 * The timers of one key-group and time domain, in the format written by
+	 * {@link InternalTimer.TimerSerializer}.
+	 */
+	public interface SerializedTimers {
+
+		/**
+		 * Returns the number of timers.
+		 */
+		int size();
+
+		/**
+		 * Writes all timers to the given output view.
+		 */
+		void writeTo(DataOutputView out) throws IOException;
+	}
 }
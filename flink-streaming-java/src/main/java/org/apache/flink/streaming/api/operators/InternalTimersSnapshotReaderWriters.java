@@ -101,22 +101,33 @@ public class InternalTimersSnapshotReaderWriters {
 				timersSnapshot.getNamespaceSerializer());
 
 			// write the event time timers
-			Set<InternalTimer<K, N>> eventTimers = timersSnapshot.getEventTimeTimers();
-			if (eventTimers != null) {
-				out.writeInt(eventTimers.size());
-				for (InternalTimer<K, N> eventTimer : eventTimers) {
-					timerSerializer.serialize(eventTimer, out);
-				}
-			} else {
-				out.writeInt(0);
-			}
+			writeTimers(
+				out,
+				timerSerializer,
+				timersSnapshot.getEventTimeTimers(),
+				timersSnapshot.getSerializedEventTimeTimers());
 
 			// write the processing time timers
-			Set<InternalTimer<K, N>> processingTimers = timersSnapshot.getProcessingTimeTimers();
-			if (processingTimers != null) {
-				out.writeInt(processingTimers.size());
-				for (InternalTimer<K, N> processingTimer : processingTimers) {
-					timerSerializer.serialize(processingTimer, out);
+			writeTimers(
+				out,
+				timerSerializer,
+				timersSnapshot.getProcessingTimeTimers(),
+				timersSnapshot.getSerializedProcessingTimeTimers());
+		}
+
+		private void writeTimers(
+				DataOutputView out,
+				InternalTimer.TimerSerializer<K, N> timerSerializer,
+				Set<InternalTimer<K, N>> timers,
+				InternalTimersSnapshot.SerializedTimers serializedTimers) throws IOException {
+
+			if (serializedTimers != null) {
+				out.writeInt(serializedTimers.size());
+				serializedTimers.writeTo(out);
+			} else if (timers != null) {
+				out.writeInt(timers.size());
+				for (InternalTimer<K, N> timer : timers) {
+					timerSerializer.serialize(timer, out);
 				}
 			} else {
 				out.writeInt(0);
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+
+import java.io.IOException;
+
+/**
+ * An {@link InternalTimerService} whose timers are partitioned by key-group, so that they can be
+ * snapshotted and restored per key-group by the {@link InternalTimeServiceManager}.
+ *
+ * @param <K> The type of keys used for the timers.
+ * @param <N> The type of namespace used for the timers.
+ */
+@Internal
+public interface KeyGroupedInternalTimerService<K, N> extends InternalTimerService<N> {
+
+	/**
+	 * Starts the timer service by setting the serializers of the timers and the target that is
+	 * invoked when timers fire. This method can be called multiple times, as long as it is
+	 * called with the same serializers.
+	 */
+	void startTimerService(
+		TypeSerializer<K> keySerializer,
+		TypeSerializer<N> namespaceSerializer,
+		Triggerable<K, N> triggerTarget);
+
+	/**
+	 * Advances the event time to the given watermark, firing all event time timers that are due.
+	 */
+	void advanceWatermark(long time) throws Exception;
+
+	/**
+	 * Snapshots the timers (both processing and event time ones) for a given {@code keyGroupIdx}.
+	 *
+	 * @param keyGroupIdx the id of the key-group to be put in the snapshot.
+	 * @return a snapshot containing the timers for the given key-group, and the serializers for them
+	 */
+	InternalTimersSnapshot<K, N> snapshotTimersForKeyGroup(int keyGroupIdx);
+
+	/**
+	 * Restore the timers (both processing and event time ones) for a given {@code keyGroupIdx}.
+	 *
+	 * @param restoredTimersSnapshot the restored snapshot containing the key-group's timers,
+	 *                       and the serializers that were used to write them
+	 * @param keyGroupIdx the id of the key-group to be put in the snapshot.
+	 */
+	void restoreTimersForKeyGroup(InternalTimersSnapshot<?, ?> restoredTimersSnapshot, int keyGroupIdx) throws IOException;
+
+	/**
+	 * Releases all resources held by the timer service.
+	 */
+	void dispose();
+
+	@VisibleForTesting
+	int numProcessingTimeTimers();
+
+	@VisibleForTesting
+	int numEventTimeTimers();
+
+	@VisibleForTesting
+	int numProcessingTimeTimers(N namespace);
+
+	@VisibleForTesting
+	int numEventTimeTimers(N namespace);
+}
@@ -0,0 +1,494 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.api.common.typeutils.CompatibilityResult;
+import org.apache.flink.api.common.typeutils.CompatibilityUtil;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.KeyGroupsList;
+import org.apache.flink.streaming.runtime.tasks.ProcessingTimeCallback;
+import org.apache.flink.streaming.runtime.tasks.ProcessingTimeService;
+import org.apache.flink.util.FlinkRuntimeException;
+import org.apache.flink.util.Preconditions;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * {@link InternalTimerService} that stores timers in serialized form in off-heap memory.
+ *
+ * <p>The timers of each time domain are kept in a {@link BinaryTimerQueue}, which holds one
+ * {@link BinaryTimerHeap} per key-group. In contrast to the {@link HeapInternalTimerService},
+ * no objects are kept per timer, deleting a timer takes O(log n), and the timers of a key-group
+ * are written to snapshots as they are, without deserializing them.
+ *
+ * <p>Two timers are considered equal if their timestamps and their serialized keys and
+ * namespaces are equal.
+ *
+ * <p>The timers live in direct memory outside of the managed memory of the task. See
+ * {@link BinaryTimerHeap} for how much memory they take and how it has to be reserved.
+ */
+public class OffHeapInternalTimerService<K, N> implements KeyGroupedInternalTimerService<K, N>, ProcessingTimeCallback {
+
+	/** The default size of the memory pages in which the timers are stored. */
+	public static final int DEFAULT_PAGE_SIZE = 32 * 1024;
+
+	private final ProcessingTimeService processingTimeService;
+
+	private final KeyContext keyContext;
+
+	/**
+	 * Processing time timers that are currently in-flight.
+	 */
+	private final BinaryTimerQueue processingTimeTimersQueue;
+
+	/**
+	 * Event time timers that are currently in-flight.
+	 */
+	private final BinaryTimerQueue eventTimeTimersQueue;
+
+	/**
+	 * Information concerning the local key-group range.
+	 */
+	private final KeyGroupsList localKeyGroupRange;
+	private final int totalKeyGroups;
+	private final int localKeyGroupRangeStartIdx;
+
+	/** The buffer into which the key and namespace of timers are serialized. */
+	private final DataOutputSerializer serializationBuffer;
+
+	/** The view from which the key and namespace of fired timers are deserialized. */
+	private final DataInputDeserializer deserializationBuffer;
+
+	/** The buffer holding the serialized key and namespace of fired timers. */
+	private byte[] headBuffer;
+
+	/**
+	 * The local event time, as denoted by the last received
+	 * {@link org.apache.flink.streaming.api.watermark.Watermark Watermark}.
+	 */
+	private long currentWatermark = Long.MIN_VALUE;
+
+	/**
+	 * The one and only Future (if any) registered to execute the
+	 * next {@link Triggerable} action, when its (processing) time arrives.
+	 * */
+	private ScheduledFuture<?> nextTimer;
+
+	// Variables to be set when the service is started.
+
+	private TypeSerializer<K> keySerializer;
+
+	private TypeSerializer<N> namespaceSerializer;
+
+	private Triggerable<K, N> triggerTarget;
+
+	private volatile boolean isInitialized;
+
+	private TypeSerializer<K> keyDeserializer;
+
+	private TypeSerializer<N> namespaceDeserializer;
+
+	/** The restored timers snapshot, if any. */
+	private InternalTimersSnapshot<K, N> restoredTimersSnapshot;
+
+	public OffHeapInternalTimerService(
+		int totalKeyGroups,
+		KeyGroupsList localKeyGroupRange,
+		KeyContext keyContext,
+		ProcessingTimeService processingTimeService) {
+
+		this(totalKeyGroups, localKeyGroupRange, keyContext, processingTimeService, DEFAULT_PAGE_SIZE);
+	}
+
+	public OffHeapInternalTimerService(
+		int totalKeyGroups,
+		KeyGroupsList localKeyGroupRange,
+		KeyContext keyContext,
+		ProcessingTimeService processingTimeService,
+		int pageSize) {
+
+		this.keyContext = checkNotNull(keyContext);
+		this.processingTimeService = checkNotNull(processingTimeService);
+
+		this.totalKeyGroups = totalKeyGroups;
+		this.localKeyGroupRange = checkNotNull(localKeyGroupRange);
+
+		// find the starting index of the local key-group range
+		int startIdx = Integer.MAX_VALUE;
+		for (Integer keyGroupIdx : localKeyGroupRange) {
+			startIdx = Math.min(keyGroupIdx, startIdx);
+		}
+		this.localKeyGroupRangeStartIdx = startIdx;
+
+		// the list of ids of the key-groups this task is responsible for
+		int localKeyGroups = this.localKeyGroupRange.getNumberOfKeyGroups();
+
+		this.eventTimeTimersQueue = new BinaryTimerQueue(localKeyGroups, pageSize);
+		this.processingTimeTimersQueue = new BinaryTimerQueue(localKeyGroups, pageSize);
+
+		this.serializationBuffer = new DataOutputSerializer(64);
+		this.deserializationBuffer = new DataInputDeserializer();
+		this.headBuffer = new byte[64];
+	}
+
+	@Override
+	public void startTimerService(
+			TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			Triggerable<K, N> triggerTarget) {
+
+		if (!isInitialized) {
+
+			if (keySerializer == null || namespaceSerializer == null) {
+				throw new IllegalArgumentException("The TimersService serializers cannot be null.");
+			}
+
+			if (this.keySerializer != null || this.namespaceSerializer != null || this.triggerTarget != null) {
+				throw new IllegalStateException("The TimerService has already been initialized.");
+			}
+
+			// the following is the case where we restore
+			if (restoredTimersSnapshot != null) {
+				CompatibilityResult<K> keySerializerCompatibility = CompatibilityUtil.resolveCompatibilityResult(
+					this.keyDeserializer,
+					null,
+					restoredTimersSnapshot.getKeySerializerConfigSnapshot(),
+					keySerializer);
+
+				CompatibilityResult<N> namespaceSerializerCompatibility = CompatibilityUtil.resolveCompatibilityResult(
+					this.namespaceDeserializer,
+					null,
+					restoredTimersSnapshot.getNamespaceSerializerConfigSnapshot(),
+					namespaceSerializer);
+
+				if (keySerializerCompatibility.isRequiresMigration() || namespaceSerializerCompatibility.isRequiresMigration()) {
+					throw new IllegalStateException("Tried to initialize restored TimerService " +
+						"with incompatible serializers than those used to snapshot its state.");
+				}
+			}
+
+			this.keySerializer = keySerializer;
+			this.namespaceSerializer = namespaceSerializer;
+			this.keyDeserializer = null;
+			this.namespaceDeserializer = null;
+
+			this.triggerTarget = Preconditions.checkNotNull(triggerTarget);
+
+			// re-register the restored timers (if any)
+			if (!processingTimeTimersQueue.isEmpty()) {
+				nextTimer = processingTimeService.registerTimer(processingTimeTimersQueue.peekTimestamp(), this);
+			}
+			this.isInitialized = true;
+		} else {
+			if (!(this.keySerializer.equals(keySerializer) && this.namespaceSerializer.equals(namespaceSerializer))) {
+				throw new IllegalArgumentException("Already initialized Timer Service " +
+					"tried to be initialized with different key and namespace serializers.");
+			}
+		}
+	}
+
+	@Override
+	public long currentProcessingTime() {
+		return processingTimeService.getCurrentProcessingTime();
+	}
+
+	@Override
+	public long currentWatermark() {
+		return currentWatermark;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void registerProcessingTimeTimer(N namespace, long time) {
+		K key = (K) keyContext.getCurrentKey();
+		serializeTimer(key, namespace, keySerializer, namespaceSerializer);
+
+		long nextTriggerTime = processingTimeTimersQueue.isEmpty() ?
+			Long.MAX_VALUE : processingTimeTimersQueue.peekTimestamp();
+
+		// make sure we only put one timer per key into the queue
+		if (addTimer(processingTimeTimersQueue, key, time)) {
+
+			// check if we need to re-schedule our timer to earlier
+			if (time < nextTriggerTime) {
+				if (nextTimer != null) {
+					nextTimer.cancel(false);
+				}
+				nextTimer = processingTimeService.registerTimer(time, this);
+			}
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void registerEventTimeTimer(N namespace, long time) {
+		K key = (K) keyContext.getCurrentKey();
+		serializeTimer(key, namespace, keySerializer, namespaceSerializer);
+		addTimer(eventTimeTimersQueue, key, time);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void deleteProcessingTimeTimer(N namespace, long time) {
+		K key = (K) keyContext.getCurrentKey();
+		serializeTimer(key, namespace, keySerializer, namespaceSerializer);
+		removeTimer(processingTimeTimersQueue, key, time);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void deleteEventTimeTimer(N namespace, long time) {
+		K key = (K) keyContext.getCurrentKey();
+		serializeTimer(key, namespace, keySerializer, namespaceSerializer);
+		removeTimer(eventTimeTimersQueue, key, time);
+	}
+
+	@Override
+	public void onProcessingTime(long time) throws Exception {
+		// null out the timer in case the Triggerable calls registerProcessingTimeTimer()
+		// inside the callback.
+		nextTimer = null;
+
+		while (!processingTimeTimersQueue.isEmpty() && processingTimeTimersQueue.peekTimestamp() <= time) {
+			InternalTimer<K, N> timer = pollTimer(processingTimeTimersQueue);
+
+			keyContext.setCurrentKey(timer.getKey());
+			triggerTarget.onProcessingTime(timer);
+		}
+
+		if (!processingTimeTimersQueue.isEmpty()) {
+			if (nextTimer == null) {
+				nextTimer = processingTimeService.registerTimer(processingTimeTimersQueue.peekTimestamp(), this);
+			}
+		}
+	}
+
+	@Override
+	public void advanceWatermark(long time) throws Exception {
+		currentWatermark = time;
+
+		while (!eventTimeTimersQueue.isEmpty() && eventTimeTimersQueue.peekTimestamp() <= time) {
+			InternalTimer<K, N> timer = pollTimer(eventTimeTimersQueue);
+
+			keyContext.setCurrentKey(timer.getKey());
+			triggerTarget.onEventTime(timer);
+		}
+	}
+
+	@Override
+	public InternalTimersSnapshot<K, N> snapshotTimersForKeyGroup(int keyGroupIdx) {
+		int localIdx = getIndexForKeyGroup(keyGroupIdx);
+
+		return InternalTimersSnapshot.ofSerializedTimers(
+			keySerializer,
+			keySerializer.snapshotConfiguration(),
+			namespaceSerializer,
+			namespaceSerializer.snapshotConfiguration(),
+			eventTimeTimersQueue.getTimersForKeyGroup(localIdx),
+			processingTimeTimersQueue.getTimersForKeyGroup(localIdx));
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void restoreTimersForKeyGroup(InternalTimersSnapshot<?, ?> restoredTimersSnapshot, int keyGroupIdx) throws IOException {
+		this.restoredTimersSnapshot = (InternalTimersSnapshot<K, N>) restoredTimersSnapshot;
+
+		if ((this.keyDeserializer != null && !this.keyDeserializer.equals(restoredTimersSnapshot.getKeySerializer())) ||
+			(this.namespaceDeserializer != null && !this.namespaceDeserializer.equals(restoredTimersSnapshot.getNamespaceSerializer()))) {
+
+			throw new IllegalArgumentException("Tried to restore timers " +
+				"for the same service with different serializers.");
+		}
+
+		this.keyDeserializer = this.restoredTimersSnapshot.getKeySerializer();
+		this.namespaceDeserializer = this.restoredTimersSnapshot.getNamespaceSerializer();
+
+		checkArgument(localKeyGroupRange.contains(keyGroupIdx),
+			"Key Group " + keyGroupIdx + " does not belong to the local range.");
+
+		// restore the event time timers
+		restoreTimers(eventTimeTimersQueue, this.restoredTimersSnapshot.getEventTimeTimers());
+
+		// restore the processing time timers
+		restoreTimers(processingTimeTimersQueue, this.restoredTimersSnapshot.getProcessingTimeTimers());
+	}
+
+	@Override
+	public void dispose() {
+		if (nextTimer != null) {
+			nextTimer.cancel(false);
+			nextTimer = null;
+		}
+
+		eventTimeTimersQueue.dispose();
+		processingTimeTimersQueue.dispose();
+	}
+
+	private void restoreTimers(BinaryTimerQueue queue, Set<InternalTimer<K, N>> timers) {
+		if (timers == null) {
+			return;
+		}
+
+		for (InternalTimer<K, N> timer : timers) {
+			serializeTimer(timer.getKey(), timer.getNamespace(), keyDeserializer, namespaceDeserializer);
+			addTimer(queue, timer.getKey(), timer.getTimestamp());
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//  Binary timer handling
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Serializes the given key and namespace into the serialization buffer.
+	 */
+	private void serializeTimer(K key, N namespace, TypeSerializer<K> keySerializer, TypeSerializer<N> namespaceSerializer) {
+		serializationBuffer.clear();
+
+		try {
+			keySerializer.serialize(key, serializationBuffer);
+			namespaceSerializer.serialize(namespace, serializationBuffer);
+		} catch (IOException e) {
+			throw new FlinkRuntimeException("Could not serialize the timer.", e);
+		}
+	}
+
+	/**
+	 * Adds the timer whose key and namespace are in the serialization buffer to the given queue.
+	 */
+	private boolean addTimer(BinaryTimerQueue queue, K key, long timestamp) {
+		byte[] data = serializationBuffer.getSharedBuffer();
+		int length = serializationBuffer.length();
+
+		return queue.add(
+			getIndexForKey(key),
+			timestamp,
+			data,
+			0,
+			length,
+			BinaryTimerHeap.hash(timestamp, data, 0, length));
+	}
+
+	/**
+	 * Removes the timer whose key and namespace are in the serialization buffer from the given queue.
+	 */
+	private boolean removeTimer(BinaryTimerQueue queue, K key, long timestamp) {
+		byte[] data = serializationBuffer.getSharedBuffer();
+		int length = serializationBuffer.length();
+
+		return queue.remove(
+			getIndexForKey(key),
+			timestamp,
+			data,
+			0,
+			length,
+			BinaryTimerHeap.hash(timestamp, data, 0, length));
+	}
+
+	/**
+	 * Removes the timer with the smallest timestamp from the given queue and deserializes it.
+	 */
+	private InternalTimer<K, N> pollTimer(BinaryTimerQueue queue) throws IOException {
+		long timestamp = queue.peekTimestamp();
+
+		int length = queue.getHeadDataLength();
+		if (headBuffer.length < length) {
+			headBuffer = new byte[Math.max(length, headBuffer.length * 2)];
+		}
+		queue.copyHeadData(headBuffer);
+		queue.poll();
+
+		deserializationBuffer.setBuffer(headBuffer, 0, length);
+		K key = keySerializer.deserialize(deserializationBuffer);
+		N namespace = namespaceSerializer.deserialize(deserializationBuffer);
+
+		return new InternalTimer<>(timestamp, key, namespace);
+	}
+
+	private int countTimers(BinaryTimerQueue queue, N namespace) {
+		int count = 0;
+		for (int i = 0; i < localKeyGroupRange.getNumberOfKeyGroups(); ++i) {
+			BinaryTimerHeap timers = queue.getTimersForKeyGroup(i);
+			if (timers == null) {
+				continue;
+			}
+
+			for (int j = 0; j < timers.size(); ++j) {
+				byte[] data = new byte[timers.getDataLength(j)];
+				timers.copyData(j, data);
+
+				try {
+					deserializationBuffer.setBuffer(data, 0, data.length);
+					keySerializer.deserialize(deserializationBuffer);
+					if (namespaceSerializer.deserialize(deserializationBuffer).equals(namespace)) {
+						count++;
+					}
+				} catch (IOException e) {
+					throw new FlinkRuntimeException("Could not deserialize the timer.", e);
+				}
+			}
+		}
+		return count;
+	}
+
+	private int getIndexForKey(K key) {
+		checkArgument(localKeyGroupRange != null, "The operator has not been initialized.");
+		return getIndexForKeyGroup(KeyGroupRangeAssignment.assignToKeyGroup(key, this.totalKeyGroups));
+	}
+
+	/**
+	 * Computes the index of the requested key-group in the local datastructures.
+	 *
+	 * <p>Currently we assume that each task is assigned a continuous range of key-groups,
+	 * e.g. 1,2,3,4, and not 1,3,5.
+	 */
+	private int getIndexForKeyGroup(int keyGroupIdx) {
+		checkArgument(localKeyGroupRange.contains(keyGroupIdx),
+			"Key Group " + keyGroupIdx + " does not belong to the local range.");
+		return keyGroupIdx - this.localKeyGroupRangeStartIdx;
+	}
+
+	@Override
+	public int numProcessingTimeTimers() {
+		return this.processingTimeTimersQueue.size();
+	}
+
+	@Override
+	public int numEventTimeTimers() {
+		return this.eventTimeTimersQueue.size();
+	}
+
+	@Override
+	public int numProcessingTimeTimers(N namespace) {
+		return countTimers(processingTimeTimersQueue, namespace);
+	}
+
+	@Override
+	public int numEventTimeTimers(N namespace) {
+		return countTimers(eventTimeTimersQueue, namespace);
+	}
+}
@@ -19,13 +19,17 @@
 package org.apache.flink.streaming.api.operators;
 
 import org.apache.flink.runtime.checkpoint.OperatorSubtaskState;
+import org.apache.flink.runtime.checkpoint.StateObjectCollection;
 import org.apache.flink.runtime.state.KeyedStateHandle;
 import org.apache.flink.runtime.state.OperatorStateHandle;
 import org.apache.flink.runtime.state.SnapshotResult;
+import org.apache.flink.runtime.state.StateObject;
 import org.apache.flink.util.FutureUtil;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import java.util.Arrays;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -55,11 +59,15 @@ public class OperatorSnapshotFinalizer {
 		SnapshotResult<OperatorStateHandle> operatorRaw =
 			FutureUtil.runIfNotDoneAndGet(snapshotFutures.getOperatorStateRawFuture());
 
+		SnapshotResult<OperatorStateHandle> inFlightData =
+			FutureUtil.runIfNotDoneAndGet(snapshotFutures.getInFlightDataFuture());
+
+		// the in-flight data is restored through the operator state backend, but is never kept task-locally
 		jobManagerOwnedState = new OperatorSubtaskState(
-			operatorManaged.getJobManagerOwnedSnapshot(),
-			operatorRaw.getJobManagerOwnedSnapshot(),
-			keyedManaged.getJobManagerOwnedSnapshot(),
-			keyedRaw.getJobManagerOwnedSnapshot()
+			managedOperatorStateOf(operatorManaged.getJobManagerOwnedSnapshot(), inFlightData.getJobManagerOwnedSnapshot()),
+			singletonOrEmptyOnNull(operatorRaw.getJobManagerOwnedSnapshot()),
+			singletonOrEmptyOnNull(keyedManaged.getJobManagerOwnedSnapshot()),
+			singletonOrEmptyOnNull(keyedRaw.getJobManagerOwnedSnapshot())
 		);
 
 		taskLocalState = new OperatorSubtaskState(
@@ -70,6 +78,20 @@ public class OperatorSnapshotFinalizer {
 		);
 	}
 
+	private static StateObjectCollection<OperatorStateHandle> managedOperatorStateOf(
+		@Nullable OperatorStateHandle operatorManaged,
+		@Nullable OperatorStateHandle inFlightData) {
+
+		if (operatorManaged == null || inFlightData == null) {
+			return singletonOrEmptyOnNull(operatorManaged != null ? operatorManaged : inFlightData);
+		}
+		return new StateObjectCollection<>(Arrays.asList(operatorManaged, inFlightData));
+	}
+
+	private static <T extends StateObject> StateObjectCollection<T> singletonOrEmptyOnNull(@Nullable T element) {
+		return element != null ? StateObjectCollection.singleton(element) : StateObjectCollection.empty();
+	}
+
 	public OperatorSubtaskState getTaskLocalState() {
 		return taskLocalState;
 	}
@@ -46,6 +46,10 @@ public class OperatorSnapshotFutures {
 	@Nonnull
 	private RunnableFuture<SnapshotResult<OperatorStateHandle>> operatorStateRawFuture;
 
+	/** The in-flight input data of an unaligned checkpoint, reported as part of the managed operator state. */
+	@Nonnull
+	private RunnableFuture<SnapshotResult<OperatorStateHandle>> inFlightDataFuture = DoneFuture.of(SnapshotResult.empty());
+
 	public OperatorSnapshotFutures() {
 		this(
 			DoneFuture.of(SnapshotResult.empty()),
@@ -105,6 +109,16 @@ public class OperatorSnapshotFutures {
 		this.operatorStateRawFuture = operatorStateRawFuture;
 	}
 
+	@Nonnull
+	public RunnableFuture<SnapshotResult<OperatorStateHandle>> getInFlightDataFuture() {
+		return inFlightDataFuture;
+	}
+
+	public void setInFlightDataFuture(
+		@Nonnull RunnableFuture<SnapshotResult<OperatorStateHandle>> inFlightDataFuture) {
+		this.inFlightDataFuture = inFlightDataFuture;
+	}
+
 	public void cancel() throws Exception {
 		Exception exception = null;
 
@@ -138,6 +152,14 @@ public class OperatorSnapshotFutures {
 				exception);
 		}
 
+		try {
+			StateUtil.discardStateFuture(getInFlightDataFuture());
+		} catch (Exception e) {
+			exception = ExceptionUtils.firstOrSuppressed(
+				new Exception("Could not properly cancel in-flight data future.", e),
+				exception);
+		}
+
 		if (exception != null) {
 			throw exception;
 		}
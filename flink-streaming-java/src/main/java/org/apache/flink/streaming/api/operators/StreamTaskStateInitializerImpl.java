@@ -21,6 +21,8 @@ package org.apache.flink.streaming.api.operators;
 import org.apache.flink.api.common.TaskInfo;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.configuration.CheckpointingOptions;
+import org.apache.flink.configuration.IllegalConfigurationException;
 import org.apache.flink.core.fs.CloseableRegistry;
 import org.apache.flink.core.fs.FSDataInputStream;
 import org.apache.flink.runtime.checkpoint.PrioritizedOperatorSubtaskState;
@@ -155,7 +157,7 @@ public class StreamTaskStateInitializerImpl implements StreamTaskStateInitialize
 			// -------------- Internal Timer Service Manager --------------
 			KeyContextImpl<?> keyContextImpl = keyContext(keySerializer);
 
-			timeServiceManager = internalTimeServiceManager(keyContextImpl, keyContext, rawKeyedStateInputs);
+			timeServiceManager = internalTimeServiceManager(internalStateBackend, keyContextImpl, keyContext, rawKeyedStateInputs);
 
 			// -------------- Preparing return value --------------
 
@@ -195,6 +197,7 @@ public class StreamTaskStateInitializerImpl implements StreamTaskStateInitialize
 	}
 
 	protected <K> InternalTimeServiceManager<?, K> internalTimeServiceManager(
+		AbstractInternalStateBackend internalStateBackend,
 		KeyContextImpl<K> keyContextImpl,
 		KeyContext keyContext, //the operator
 		Iterable<KeyGroupStatePartitionStreamProvider> rawKeyedStates) throws Exception {
@@ -209,7 +212,8 @@ public class StreamTaskStateInitializerImpl implements StreamTaskStateInitialize
 			keyContextImpl.getNumberOfKeyGroups(),
 			keyGroupRange,
 			keyContext,
-			processingTimeService);
+			processingTimeService,
+			timerServiceFactory(internalStateBackend));
 
 		// and then initialize the timer services
 		for (KeyGroupStatePartitionStreamProvider streamProvider : rawKeyedStates) {
@@ -226,6 +230,30 @@ public class StreamTaskStateInitializerImpl implements StreamTaskStateInitialize
 		return timeServiceManager;
 	}
 
+	/**
+	 * Returns the factory for the timer services, as configured by {@link CheckpointingOptions#TIMER_SERVICE}.
+	 * Internal state backends that can store timers themselves implement {@link InternalTimerServiceFactory}.
+	 */
+	protected InternalTimerServiceFactory timerServiceFactory(AbstractInternalStateBackend internalStateBackend) {
+		String timerService = environment.getTaskManagerInfo().getConfiguration()
+			.getString(CheckpointingOptions.TIMER_SERVICE);
+
+		switch (timerService.toLowerCase()) {
+			case "heap":
+				return InternalTimerServiceFactory.HEAP;
+			case "offheap":
+				return InternalTimerServiceFactory.OFF_HEAP;
+			case "rocksdb":
+				if (!(internalStateBackend instanceof InternalTimerServiceFactory)) {
+					throw new IllegalConfigurationException("The timer service " + timerService +
+						" can not be used with the state backend " + stateBackend + ".");
+				}
+				return (InternalTimerServiceFactory) internalStateBackend;
+			default:
+				throw new IllegalConfigurationException("Unrecognized timer service: " + timerService);
+		}
+	}
+
 	protected OperatorStateBackend operatorStateBackend(
 		String operatorIdentifierText,
 		PrioritizedOperatorSubtaskState prioritizedOperatorSubtaskStates,
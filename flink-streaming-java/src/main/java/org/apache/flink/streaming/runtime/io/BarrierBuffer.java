@@ -110,6 +110,12 @@ public class BarrierBuffer implements SelectedReadingBarrierHandler {
 	/** The time (in nanoseconds) that the latest alignment took. */
 	private long latestAlignmentDurationNanos;
 
+	/** The number of bytes that the latest alignment buffered in memory. */
+	private long latestAlignmentBytesInMemory;
+
+	/** The number of bytes that the latest alignment spilled to disk. */
+	private long latestAlignmentBytesOnDisk;
+
 	/** Flag to indicate whether we have drawn all available input. */
 	private boolean endOfStream;
 
@@ -529,6 +535,9 @@ public class BarrierBuffer implements SelectedReadingBarrierHandler {
 	private void releaseBlocksAndResetBarriers() throws IOException {
 		LOG.debug("End of stream alignment, feeding buffered data back");
 
+		final long bytesBlocked = bufferBlocker.getBytesBlocked();
+		final long bytesSpilled = bufferBlocker.getBytesSpilled();
+
 		for (int i = 0; i < blockedChannels.length; i++) {
 			blockedChannels[i] = false;
 		}
@@ -566,6 +575,8 @@ public class BarrierBuffer implements SelectedReadingBarrierHandler {
 
 		if (startOfAlignmentTimestamp > 0) {
 			latestAlignmentDurationNanos = System.nanoTime() - startOfAlignmentTimestamp;
+			latestAlignmentBytesInMemory = bytesBlocked - bytesSpilled;
+			latestAlignmentBytesOnDisk = bytesSpilled;
 			startOfAlignmentTimestamp = 0;
 		}
 	}
@@ -593,6 +604,24 @@ public class BarrierBuffer implements SelectedReadingBarrierHandler {
 		}
 	}
 
+	@Override
+	public long getAlignmentBytesInMemory() {
+		if (startOfAlignmentTimestamp <= 0) {
+			return latestAlignmentBytesInMemory;
+		} else {
+			return bufferBlocker.getBytesBlocked() - bufferBlocker.getBytesSpilled();
+		}
+	}
+
+	@Override
+	public long getAlignmentBytesOnDisk() {
+		if (startOfAlignmentTimestamp <= 0) {
+			return latestAlignmentBytesOnDisk;
+		} else {
+			return bufferBlocker.getBytesSpilled();
+		}
+	}
+
 	// ------------------------------------------------------------------------
 	// Utilities
 	// ------------------------------------------------------------------------
@@ -164,6 +164,16 @@ public class BarrierTracker implements SelectedReadingBarrierHandler {
 		return 0L;
 	}
 
+	@Override
+	public long getAlignmentBytesInMemory() {
+		return 0L;
+	}
+
+	@Override
+	public long getAlignmentBytesOnDisk() {
+		return 0L;
+	}
+
 	private BufferOrEvent getNext(Optional<InputGate> subInputGate, boolean blocking) throws Exception {
 		while (true) {
 			final Optional<BufferOrEvent> next;
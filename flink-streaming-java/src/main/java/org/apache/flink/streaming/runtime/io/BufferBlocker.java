@@ -65,4 +65,11 @@ public interface BufferBlocker {
 	 * @return the number of bytes blocked in the current sequence.
 	 */
 	long getBytesBlocked();
+
+	/**
+	 * Gets the number of bytes of the current sequence which have been spilled to disk.
+	 *
+	 * @return the number of bytes spilled in the current sequence.
+	 */
+	long getBytesSpilled();
 }
@@ -235,6 +235,11 @@ public class BufferSpiller implements BufferBlocker {
 		return bytesWritten;
 	}
 
+	@Override
+	public long getBytesSpilled() {
+		return bytesWritten;
+	}
+
 	// ------------------------------------------------------------------------
 	//  For testing
 	// ------------------------------------------------------------------------
@@ -96,6 +96,11 @@ public class CachedBufferBlocker implements BufferBlocker {
 		return bytesBlocked;
 	}
 
+	@Override
+	public long getBytesSpilled() {
+		return 0L;
+	}
+
 	// ------------------------------------------------------------------------
 
 	/**
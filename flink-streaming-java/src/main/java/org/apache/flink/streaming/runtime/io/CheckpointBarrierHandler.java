@@ -98,4 +98,22 @@ public interface CheckpointBarrierHandler {
 	 * @return The duration in nanoseconds
 	 */
 	long getAlignmentDurationNanos();
+
+	/**
+	 * Gets the number of bytes that the latest alignment buffered in memory.
+	 * If there is currently an alignment in progress, it will return the bytes buffered in
+	 * memory by the current alignment so far.
+	 *
+	 * @return The number of bytes buffered in memory
+	 */
+	long getAlignmentBytesInMemory();
+
+	/**
+	 * Gets the number of bytes that the latest alignment spilled to disk.
+	 * If there is currently an alignment in progress, it will return the bytes spilled
+	 * by the current alignment so far.
+	 *
+	 * @return The number of bytes spilled to disk
+	 */
+	long getAlignmentBytesOnDisk();
 }
@@ -0,0 +1,866 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.typeutils.base.array.BytePrimitiveArraySerializer;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.runtime.checkpoint.CheckpointMetaData;
+import org.apache.flink.runtime.checkpoint.CheckpointMetrics;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.checkpoint.StateAssignmentOperation;
+import org.apache.flink.runtime.checkpoint.decline.CheckpointDeclineOnCancellationBarrierException;
+import org.apache.flink.runtime.checkpoint.decline.CheckpointDeclineSubsumedException;
+import org.apache.flink.runtime.io.async.AbstractAsyncCallableWithResources;
+import org.apache.flink.runtime.io.async.AsyncStoppableTaskWithCallback;
+import org.apache.flink.runtime.io.network.api.CancelCheckpointMarker;
+import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
+import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
+import org.apache.flink.runtime.io.network.api.serialization.RecordDeserializer;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.FreeingBufferRecycler;
+import org.apache.flink.runtime.io.network.buffer.NetworkBuffer;
+import org.apache.flink.runtime.io.network.partition.consumer.BufferOrEvent;
+import org.apache.flink.runtime.io.network.partition.consumer.InputChannel;
+import org.apache.flink.runtime.io.network.partition.consumer.InputGate;
+import org.apache.flink.runtime.jobgraph.tasks.AbstractInvokable;
+import org.apache.flink.runtime.state.CheckpointStreamFactory;
+import org.apache.flink.runtime.state.CheckpointedStateScope;
+import org.apache.flink.runtime.state.DoneFuture;
+import org.apache.flink.runtime.state.OperatorBackendSerializationProxy;
+import org.apache.flink.runtime.state.OperatorStateHandle;
+import org.apache.flink.runtime.state.OperatorStreamStateHandle;
+import org.apache.flink.runtime.state.RegisteredOperatorBackendStateMetaInfo;
+import org.apache.flink.runtime.state.SnapshotResult;
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.util.IOUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.RunnableFuture;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The CheckpointBarrierUnaligner takes exactly-once checkpoints without aligning the barriers.
+ * It notifies the task of a checkpoint as soon as the first barrier of the checkpoint arrives,
+ * so that the barrier is forwarded right away, and keeps consuming all input channels.
+ *
+ * <p>The records which are not covered by the snapshot of the operators are the data that the
+ * record deserializers have not consumed yet when the checkpoint is taken, and the buffers which
+ * arrive on each channel before the barrier of that channel. This in-flight data is copied and
+ * written asynchronously to the checkpoint storage as part of the managed operator state of the
+ * head operator, see {@link #snapshotInFlightData(long, CheckpointStreamFactory)}. On restore,
+ * the data is handed back via {@link #restoreInFlightData(Iterable)} and is replayed to the
+ * record deserializers of its channels before any data from the network.
+ *
+ * <p>Unlike the {@link BarrierBuffer}, no channel is ever blocked, so that the alignment is
+ * removed from the critical path of the checkpoint under backpressure.
+ *
+ * <p>NOTE: This implementation strictly assumes that newer checkpoints have higher checkpoint IDs.
+ */
+@Internal
+public class CheckpointBarrierUnaligner implements SelectedReadingBarrierHandler {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CheckpointBarrierUnaligner.class);
+
+	/** The name of the operator state which the in-flight data is persisted in. */
+	public static final String IN_FLIGHT_DATA_STATE_NAME = StateAssignmentOperation.IN_FLIGHT_DATA_STATE_NAME;
+
+	/**
+	 * The default maximum number of bytes of in-flight data which each pending checkpoint queues
+	 * for its writer. The task waits for the writer once more data is queued.
+	 */
+	private static final long DEFAULT_MAX_QUEUED_BYTES = 4L * 1024 * 1024;
+
+	/**
+	 * Size of the header of each persisted element: number of subtasks (4 bytes) + subtask index
+	 * (4 bytes) + number of channels (4 bytes) + channel index (4 bytes).
+	 */
+	@VisibleForTesting
+	static final int HEADER_SIZE = 16;
+
+	// ------------------------------------------------------------------------
+
+	/** The input gate, to draw the buffers and events from. */
+	private final InputGate inputGate;
+
+	/** The total number of channels that this handler reads from. */
+	private final int totalNumberOfInputChannels;
+
+	/** The index of the subtask, which is verified when restoring the in-flight data. */
+	private final int subtaskIndex;
+
+	/** The parallelism of the task, which is verified when restoring the in-flight data. */
+	private final int numberOfSubtasks;
+
+	/** The offset of the channel indices of each sub input gate. */
+	private final Map<InputGate, Integer> subInputGateChannelOffsets;
+
+	/** The deserializers of the channels, whose unconsumed data is persisted with each checkpoint. */
+	private final RecordDeserializer<?>[] recordDeserializers;
+
+	/** Flags that indicate whether a channel has received its end of partition. */
+	private final boolean[] closedChannels;
+
+	/** All checkpoints for which some (but not all) barriers have been received. */
+	private final ArrayDeque<PendingCheckpoint> pendingCheckpoints;
+
+	/**
+	 * The maximum number of pending checkpoints, which is the maximum number of concurrent
+	 * checkpoints of the job. The oldest checkpoint is declined once more checkpoints are pending.
+	 */
+	private final int maxPendingCheckpoints;
+
+	/** The maximum number of bytes of in-flight data which each pending checkpoint queues for its writer. */
+	private final long maxQueuedBytes;
+
+	/** The restored in-flight data which has not been replayed yet. */
+	private final ArrayDeque<BufferOrEvent> restoredBuffers;
+
+	/** The listener to be notified on checkpoints. */
+	private AbstractInvokable toNotifyOnCheckpoint;
+
+	/** The highest checkpoint ID encountered so far. */
+	private long latestCheckpointId = -1L;
+
+	/** The number of bytes of in-flight data which the latest checkpoint has collected. */
+	private long latestInFlightBytes;
+
+	// ------------------------------------------------------------------------
+
+	public CheckpointBarrierUnaligner(
+			InputGate inputGate,
+			int subtaskIndex,
+			int numberOfSubtasks,
+			int maxPendingCheckpoints) {
+		this(inputGate, subtaskIndex, numberOfSubtasks, maxPendingCheckpoints, DEFAULT_MAX_QUEUED_BYTES);
+	}
+
+	@VisibleForTesting
+	CheckpointBarrierUnaligner(
+			InputGate inputGate,
+			int subtaskIndex,
+			int numberOfSubtasks,
+			int maxPendingCheckpoints,
+			long maxQueuedBytes) {
+		checkArgument(subtaskIndex >= 0 && subtaskIndex < numberOfSubtasks);
+		checkArgument(maxPendingCheckpoints > 0, "The maximum number of pending checkpoints must be positive.");
+		checkArgument(maxQueuedBytes > 0, "The maximum number of queued bytes must be positive.");
+
+		this.inputGate = checkNotNull(inputGate);
+		this.totalNumberOfInputChannels = inputGate.getNumberOfInputChannels();
+		this.subtaskIndex = subtaskIndex;
+		this.numberOfSubtasks = numberOfSubtasks;
+
+		this.subInputGateChannelOffsets = new IdentityHashMap<>();
+		int channelOffset = 0;
+		for (int i = 0; i < inputGate.getSubInputGateCount(); i++) {
+			InputGate subInputGate = inputGate.getSubInputGate(i);
+			subInputGateChannelOffsets.put(subInputGate, channelOffset);
+			channelOffset += subInputGate.getNumberOfInputChannels();
+		}
+
+		this.recordDeserializers = new RecordDeserializer<?>[totalNumberOfInputChannels];
+		this.closedChannels = new boolean[totalNumberOfInputChannels];
+		this.pendingCheckpoints = new ArrayDeque<>();
+		this.maxPendingCheckpoints = maxPendingCheckpoints;
+		this.maxQueuedBytes = maxQueuedBytes;
+		this.restoredBuffers = new ArrayDeque<>();
+	}
+
+	/**
+	 * Registers the record deserializers of a range of channels. The data which they have not
+	 * consumed yet when a checkpoint is taken is persisted as part of the checkpoint.
+	 *
+	 * @param channelOffset The index of the channel of the first deserializer.
+	 * @param deserializers The record deserializers, one per channel.
+	 */
+	public void registerRecordDeserializers(int channelOffset, RecordDeserializer<?>[] deserializers) {
+		checkArgument(channelOffset >= 0 && channelOffset + deserializers.length <= totalNumberOfInputChannels);
+		System.arraycopy(deserializers, 0, recordDeserializers, channelOffset, deserializers.length);
+	}
+
+	// ------------------------------------------------------------------------
+	//  Buffer and barrier handling
+	// ------------------------------------------------------------------------
+
+	@Override
+	public BufferOrEvent getNextNonBlocked() throws Exception {
+		return getNext(null, true);
+	}
+
+	@Override
+	public BufferOrEvent pollNext() throws Exception {
+		return getNext(null, false);
+	}
+
+	@Override
+	public boolean isFinished() {
+		return restoredBuffers.isEmpty() && inputGate.isFinished();
+	}
+
+	@Override
+	public BufferOrEvent getNextNonBlocked(InputGate subInputGate) throws Exception {
+		checkNotNull(subInputGate, "subInputGate is null");
+		return getNext(subInputGate, true);
+	}
+
+	@Override
+	public BufferOrEvent pollNext(InputGate subInputGate) throws Exception {
+		checkNotNull(subInputGate, "subInputGate is null");
+		return getNext(subInputGate, false);
+	}
+
+	@Override
+	public int getSubInputGateCount() {
+		return inputGate.getSubInputGateCount();
+	}
+
+	@Override
+	public InputGate getSubInputGate(int index) {
+		return inputGate.getSubInputGate(index);
+	}
+
+	@Override
+	public int getNumberOfInputChannels() {
+		return totalNumberOfInputChannels;
+	}
+
+	@Override
+	public InputChannel[] getAllInputChannels() {
+		return inputGate.getAllInputChannels();
+	}
+
+	@Override
+	public void registerCheckpointEventHandler(AbstractInvokable toNotifyOnCheckpoint) {
+		if (this.toNotifyOnCheckpoint == null) {
+			this.toNotifyOnCheckpoint = toNotifyOnCheckpoint;
+		}
+		else {
+			throw new IllegalStateException("CheckpointBarrierUnaligner already has a registered checkpoint notifyee");
+		}
+	}
+
+	@Override
+	public void cleanup() {
+		PendingCheckpoint pendingCheckpoint;
+		while ((pendingCheckpoint = pendingCheckpoints.pollFirst()) != null) {
+			pendingCheckpoint.abort();
+		}
+
+		BufferOrEvent restored;
+		while ((restored = restoredBuffers.pollFirst()) != null) {
+			restored.getBuffer().recycleBuffer();
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return restoredBuffers.isEmpty();
+	}
+
+	@Override
+	public long getAlignmentDurationNanos() {
+		// no channel is ever blocked
+		return 0L;
+	}
+
+	@Override
+	public long getAlignmentBytesInMemory() {
+		PendingCheckpoint latestPendingCheckpoint = pendingCheckpoints.peekLast();
+		return latestPendingCheckpoint != null ? latestPendingCheckpoint.numBytes : latestInFlightBytes;
+	}
+
+	@Override
+	public long getAlignmentBytesOnDisk() {
+		return 0L;
+	}
+
+	private BufferOrEvent getNext(@Nullable InputGate subInputGate, boolean blocking) throws Exception {
+		BufferOrEvent restored = pollRestoredBuffer(subInputGate);
+		if (restored != null) {
+			return restored;
+		}
+
+		while (true) {
+			final Optional<BufferOrEvent> next;
+			if (subInputGate != null) {
+				next = blocking ? inputGate.getNextBufferOrEvent(subInputGate) : inputGate.pollNextBufferOrEvent(subInputGate);
+			} else {
+				next = blocking ? inputGate.getNextBufferOrEvent() : inputGate.pollNextBufferOrEvent();
+			}
+
+			if (!next.isPresent()) {
+				return null;
+			}
+
+			BufferOrEvent bufferOrEvent = next.get();
+			if (bufferOrEvent.isBuffer()) {
+				if (!pendingCheckpoints.isEmpty()) {
+					collectInFlightBuffer(bufferOrEvent.getChannelIndex(), bufferOrEvent.getBuffer());
+				}
+				return bufferOrEvent;
+			}
+			else if (bufferOrEvent.getEvent().getClass() == CheckpointBarrier.class) {
+				processBarrier((CheckpointBarrier) bufferOrEvent.getEvent(), bufferOrEvent.getChannelIndex());
+			}
+			else if (bufferOrEvent.getEvent().getClass() == CancelCheckpointMarker.class) {
+				processCancellationBarrier((CancelCheckpointMarker) bufferOrEvent.getEvent(), bufferOrEvent.getChannelIndex());
+			}
+			else {
+				if (bufferOrEvent.getEvent().getClass() == EndOfPartitionEvent.class) {
+					processEndOfPartition(bufferOrEvent.getChannelIndex());
+				}
+				return bufferOrEvent;
+			}
+		}
+	}
+
+	private void processBarrier(CheckpointBarrier receivedBarrier, int channelIndex) throws Exception {
+		final long barrierId = receivedBarrier.getId();
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Received barrier for checkpoint {} from channel {}", barrierId, channelIndex);
+		}
+
+		if (barrierId > latestCheckpointId) {
+			// first barrier of a new checkpoint
+			latestCheckpointId = barrierId;
+
+			final PendingCheckpoint pendingCheckpoint = new PendingCheckpoint(barrierId, totalNumberOfInputChannels, maxQueuedBytes);
+			try {
+				for (int i = 0; i < totalNumberOfInputChannels; i++) {
+					if (closedChannels[i]) {
+						pendingCheckpoint.onBarrier(i);
+					} else {
+						collectUnconsumedData(pendingCheckpoint, i);
+					}
+				}
+			} catch (Exception e) {
+				LOG.warn("Could not collect the in-flight data of checkpoint {}. Declining the checkpoint.", barrierId, e);
+				notifyAbort(barrierId, e);
+				return;
+			}
+
+			pendingCheckpoints.addLast(pendingCheckpoint);
+			if (pendingCheckpoints.size() > maxPendingCheckpoints) {
+				PendingCheckpoint subsumed = pendingCheckpoints.pollFirst();
+				notifyAbort(subsumed.checkpointId, new CheckpointDeclineSubsumedException(barrierId));
+				completePendingCheckpoint(subsumed);
+			}
+
+			// the snapshot of the in-flight data is requested while the checkpoint is taken
+			notifyCheckpoint(receivedBarrier.getId(), receivedBarrier.getTimestamp(), receivedBarrier.getCheckpointOptions());
+
+			if (!pendingCheckpoint.isSnapshotRequested()) {
+				// no writer would ever consume the in-flight data of the checkpoint
+				pendingCheckpoints.remove(pendingCheckpoint);
+				completePendingCheckpoint(pendingCheckpoint);
+			}
+		}
+
+		PendingCheckpoint pendingCheckpoint = getPendingCheckpoint(barrierId);
+		if (pendingCheckpoint != null && pendingCheckpoint.onBarrier(channelIndex)) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Received all barriers for checkpoint {}", barrierId);
+			}
+
+			pendingCheckpoints.remove(pendingCheckpoint);
+			completePendingCheckpoint(pendingCheckpoint);
+		}
+	}
+
+	private void processCancellationBarrier(CancelCheckpointMarker cancelBarrier, int channelIndex) throws Exception {
+		final long cancelledId = cancelBarrier.getCheckpointId();
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Received cancellation barrier for checkpoint {} from channel {}", cancelledId, channelIndex);
+		}
+
+		PendingCheckpoint pendingCheckpoint = getPendingCheckpoint(cancelledId);
+		if (pendingCheckpoint != null) {
+			// the checkpoint was already taken, its in-flight data is discarded with the declined checkpoint
+			pendingCheckpoints.remove(pendingCheckpoint);
+			notifyAbort(cancelledId, new CheckpointDeclineOnCancellationBarrierException());
+			completePendingCheckpoint(pendingCheckpoint);
+		}
+		else if (cancelledId > latestCheckpointId) {
+			// no barrier of this checkpoint has been seen, the trailing barriers are ignored
+			latestCheckpointId = cancelledId;
+			notifyAbort(cancelledId, new CheckpointDeclineOnCancellationBarrierException());
+		}
+	}
+
+	private void processEndOfPartition(int channelIndex) {
+		closedChannels[channelIndex] = true;
+
+		// no more data can arrive before the barriers of the closed channel
+		Iterator<PendingCheckpoint> iterator = pendingCheckpoints.iterator();
+		while (iterator.hasNext()) {
+			PendingCheckpoint pendingCheckpoint = iterator.next();
+			if (pendingCheckpoint.onBarrier(channelIndex)) {
+				iterator.remove();
+				completePendingCheckpoint(pendingCheckpoint);
+			}
+		}
+	}
+
+	private void completePendingCheckpoint(PendingCheckpoint pendingCheckpoint) {
+		latestInFlightBytes = pendingCheckpoint.numBytes;
+		pendingCheckpoint.finish();
+	}
+
+	@Nullable
+	private PendingCheckpoint getPendingCheckpoint(long checkpointId) {
+		for (PendingCheckpoint pendingCheckpoint : pendingCheckpoints) {
+			if (pendingCheckpoint.checkpointId == checkpointId) {
+				return pendingCheckpoint;
+			}
+		}
+		return null;
+	}
+
+	private void notifyCheckpoint(long checkpointId, long timestamp, CheckpointOptions checkpointOptions) throws Exception {
+		if (toNotifyOnCheckpoint != null) {
+			CheckpointMetaData checkpointMetaData = new CheckpointMetaData(checkpointId, timestamp);
+			CheckpointMetrics checkpointMetrics = new CheckpointMetrics()
+				.setBytesBufferedInAlignment(0L)
+				.setAlignmentDurationNanos(0L);
+
+			toNotifyOnCheckpoint.triggerCheckpointOnBarrier(checkpointMetaData, checkpointOptions, checkpointMetrics);
+		}
+	}
+
+	private void notifyAbort(long checkpointId, Throwable cause) throws Exception {
+		if (toNotifyOnCheckpoint != null) {
+			toNotifyOnCheckpoint.abortCheckpointOnBarrier(checkpointId, cause);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//  In-flight data
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Collects the data of the given channel which will be processed after the checkpoint has been
+	 * taken: the data which the deserializer has not consumed yet, followed by the restored data
+	 * which has not been replayed yet.
+	 */
+	private void collectUnconsumedData(PendingCheckpoint pendingCheckpoint, int channelIndex) throws Exception {
+		RecordDeserializer<?> deserializer = recordDeserializers[channelIndex];
+		if (deserializer != null) {
+			Buffer unconsumed = deserializer.getUnconsumedBuffer();
+			if (unconsumed != null) {
+				try {
+					pendingCheckpoint.add(encode(channelIndex, unconsumed));
+				} finally {
+					unconsumed.recycleBuffer();
+				}
+			}
+		}
+
+		for (BufferOrEvent restored : restoredBuffers) {
+			if (restored.getChannelIndex() == channelIndex) {
+				pendingCheckpoint.add(encode(channelIndex, restored.getBuffer()));
+			}
+		}
+	}
+
+	private void collectInFlightBuffer(int channelIndex, Buffer buffer) throws InterruptedException {
+		byte[] element = null;
+		for (PendingCheckpoint pendingCheckpoint : pendingCheckpoints) {
+			if (!pendingCheckpoint.hasReceivedBarrier(channelIndex)) {
+				if (element == null) {
+					element = encode(channelIndex, buffer);
+				}
+				pendingCheckpoint.add(element);
+			}
+		}
+	}
+
+	private byte[] encode(int channelIndex, Buffer buffer) {
+		final int size = buffer.getSize();
+		final byte[] element = new byte[HEADER_SIZE + size];
+
+		ByteBuffer.wrap(element, 0, HEADER_SIZE)
+			.putInt(numberOfSubtasks)
+			.putInt(subtaskIndex)
+			.putInt(totalNumberOfInputChannels)
+			.putInt(channelIndex);
+		buffer.getMemorySegment().get(buffer.getMemorySegmentOffset(), element, HEADER_SIZE, size);
+
+		return element;
+	}
+
+	@Nullable
+	private BufferOrEvent pollRestoredBuffer(@Nullable InputGate subInputGate) {
+		if (restoredBuffers.isEmpty()) {
+			return null;
+		}
+
+		if (subInputGate == null || subInputGate == inputGate) {
+			return restoredBuffers.pollFirst();
+		}
+
+		final int channelOffset = checkNotNull(subInputGateChannelOffsets.get(subInputGate), "Unknown sub input gate.");
+		final int channelLimit = channelOffset + subInputGate.getNumberOfInputChannels();
+
+		Iterator<BufferOrEvent> iterator = restoredBuffers.iterator();
+		while (iterator.hasNext()) {
+			BufferOrEvent restored = iterator.next();
+			if (restored.getChannelIndex() >= channelOffset && restored.getChannelIndex() < channelLimit) {
+				iterator.remove();
+				return restored;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Creates the future which writes the in-flight data of the given checkpoint to the checkpoint
+	 * storage. The future completes once the barriers of all channels have arrived.
+	 *
+	 * @param checkpointId The ID of the checkpoint which is being taken.
+	 * @param streamFactory The factory for the stream to write the in-flight data to.
+	 * @return The future of the handle of the in-flight data, which is managed operator state.
+	 */
+	public RunnableFuture<SnapshotResult<OperatorStateHandle>> snapshotInFlightData(
+			long checkpointId,
+			CheckpointStreamFactory streamFactory) {
+
+		PendingCheckpoint pendingCheckpoint = getPendingCheckpoint(checkpointId);
+		if (pendingCheckpoint == null) {
+			return DoneFuture.of(SnapshotResult.empty());
+		}
+
+		pendingCheckpoint.onSnapshotRequested();
+		return AsyncStoppableTaskWithCallback.from(new InFlightDataWriter(checkpointId, pendingCheckpoint, streamFactory));
+	}
+
+	/**
+	 * Restores the in-flight data of the checkpoint which the task is restored from. The data is
+	 * replayed before any data from the network.
+	 *
+	 * @param elements The elements of the operator state of the in-flight data.
+	 */
+	public void restoreInFlightData(Iterable<byte[]> elements) {
+		for (byte[] element : elements) {
+			ByteBuffer header = ByteBuffer.wrap(element, 0, HEADER_SIZE);
+			int restoredNumberOfSubtasks = header.getInt();
+			int restoredSubtaskIndex = header.getInt();
+			int restoredNumberOfChannels = header.getInt();
+			int channelIndex = header.getInt();
+
+			if (restoredNumberOfSubtasks != numberOfSubtasks ||
+				restoredSubtaskIndex != subtaskIndex ||
+				restoredNumberOfChannels != totalNumberOfInputChannels) {
+
+				throw new IllegalStateException(String.format("Cannot restore the in-flight data of subtask %d of %d " +
+					"with %d input channels into subtask %d of %d with %d input channels. Checkpoints which are " +
+					"taken without barrier alignment can only be restored with unchanged parallelism.",
+					restoredSubtaskIndex, restoredNumberOfSubtasks, restoredNumberOfChannels,
+					subtaskIndex, numberOfSubtasks, totalNumberOfInputChannels));
+			}
+
+			MemorySegment segment = MemorySegmentFactory.wrap(Arrays.copyOfRange(element, HEADER_SIZE, element.length));
+			Buffer buffer = new NetworkBuffer(segment, FreeingBufferRecycler.INSTANCE);
+			buffer.setSize(element.length - HEADER_SIZE);
+
+			restoredBuffers.addLast(new BufferOrEvent(buffer, channelIndex));
+		}
+
+		LOG.info("Restored {} buffers of in-flight data.", restoredBuffers.size());
+	}
+
+	/**
+	 * Creates the descriptor of the operator state which the in-flight data is persisted in.
+	 */
+	public static ListStateDescriptor<byte[]> createInFlightDataStateDescriptor() {
+		return new ListStateDescriptor<>(IN_FLIGHT_DATA_STATE_NAME, BytePrimitiveArraySerializer.INSTANCE);
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The in-flight data of a checkpoint for which some, but not all barriers have arrived. The
+	 * data is handed over to the {@link InFlightDataWriter} through a bounded queue, so that it is
+	 * written while it is being collected. Once the writer runs, the task waits for it whenever the
+	 * queue is full, i.e. the speed of the checkpoint storage backpressures the task instead of the
+	 * in-flight data piling up on the heap.
+	 */
+	private static final class PendingCheckpoint {
+
+		private final long checkpointId;
+
+		private final boolean[] barrierReceived;
+
+		private int numBarriersReceived;
+
+		private boolean snapshotRequested;
+
+		private final long maxQueuedBytes;
+
+		/** The queued elements, guarded by the monitor of the pending checkpoint. */
+		private final ArrayDeque<byte[]> elements;
+
+		private long queuedBytes;
+
+		private boolean writing;
+
+		private boolean released;
+
+		private boolean finished;
+
+		private boolean aborted;
+
+		private volatile long numBytes;
+
+		PendingCheckpoint(long checkpointId, int numberOfChannels, long maxQueuedBytes) {
+			this.checkpointId = checkpointId;
+			this.barrierReceived = new boolean[numberOfChannels];
+			this.maxQueuedBytes = maxQueuedBytes;
+			this.elements = new ArrayDeque<>();
+		}
+
+		boolean hasReceivedBarrier(int channelIndex) {
+			return barrierReceived[channelIndex];
+		}
+
+		/**
+		 * Marks the barrier of the given channel as received.
+		 *
+		 * @return true, if the barriers of all channels have been received.
+		 */
+		boolean onBarrier(int channelIndex) {
+			if (!barrierReceived[channelIndex]) {
+				barrierReceived[channelIndex] = true;
+				numBarriersReceived++;
+			}
+			return numBarriersReceived == barrierReceived.length;
+		}
+
+		void onSnapshotRequested() {
+			snapshotRequested = true;
+		}
+
+		boolean isSnapshotRequested() {
+			return snapshotRequested;
+		}
+
+		/**
+		 * Queues an element for the writer. Blocks while the writer is running and the queue is
+		 * full. The element is dropped if the writer has already been released.
+		 */
+		synchronized void add(byte[] element) throws InterruptedException {
+			while (writing && !released && queuedBytes >= maxQueuedBytes) {
+				wait();
+			}
+
+			if (!released) {
+				elements.addLast(element);
+				queuedBytes += element.length;
+				notifyAll();
+			}
+			numBytes += element.length - HEADER_SIZE;
+		}
+
+		synchronized void finish() {
+			finished = true;
+			notifyAll();
+		}
+
+		synchronized void abort() {
+			aborted = true;
+			notifyAll();
+		}
+
+		/**
+		 * Called by the writer before it takes the first element. From then on, the writer applies
+		 * backpressure to the task.
+		 */
+		synchronized void onWriterStarted() {
+			writing = true;
+		}
+
+		/**
+		 * Called once the writer has completed, failed or been stopped. The queued elements are
+		 * dropped and the task never waits for the writer again.
+		 */
+		synchronized void onWriterReleased() {
+			released = true;
+			elements.clear();
+			queuedBytes = 0L;
+			notifyAll();
+		}
+
+		/**
+		 * Takes the next element from the queue, waiting for it if necessary.
+		 *
+		 * @return The next element, or null if all in-flight data has been taken.
+		 */
+		@Nullable
+		synchronized byte[] take() throws InterruptedException, IOException {
+			while (elements.isEmpty() && !finished && !aborted && !released) {
+				wait();
+			}
+
+			if (aborted) {
+				throw new IOException("The collection of the in-flight data of checkpoint " + checkpointId + " was aborted.");
+			}
+			if (released) {
+				throw new IOException("The writer of the in-flight data of checkpoint " + checkpointId + " was stopped.");
+			}
+
+			byte[] element = elements.pollFirst();
+			if (element != null) {
+				queuedBytes -= element.length;
+				notifyAll();
+			}
+			return element;
+		}
+	}
+
+	/**
+	 * Writes the in-flight data of a checkpoint in the format of the managed operator state, so
+	 * that it is restored by the operator state backend of the head operator.
+	 */
+	private static final class InFlightDataWriter
+		extends AbstractAsyncCallableWithResources<SnapshotResult<OperatorStateHandle>> {
+
+		private final long checkpointId;
+
+		private final PendingCheckpoint pendingCheckpoint;
+
+		private final CheckpointStreamFactory streamFactory;
+
+		private CheckpointStreamFactory.CheckpointStateOutputStream out;
+
+		InFlightDataWriter(long checkpointId, PendingCheckpoint pendingCheckpoint, CheckpointStreamFactory streamFactory) {
+			this.checkpointId = checkpointId;
+			this.pendingCheckpoint = pendingCheckpoint;
+			this.streamFactory = streamFactory;
+		}
+
+		@Override
+		protected void acquireResources() {
+			// the stream is only opened when there is in-flight data
+			pendingCheckpoint.onWriterStarted();
+		}
+
+		@Override
+		protected void releaseResources() {
+			pendingCheckpoint.onWriterReleased();
+			closeOutStream();
+		}
+
+		@Override
+		protected void stopOperation() {
+			pendingCheckpoint.onWriterReleased();
+			closeOutStream();
+		}
+
+		private synchronized void closeOutStream() {
+			if (out != null) {
+				IOUtils.closeQuietly(out);
+				out = null;
+			}
+		}
+
+		@Nonnull
+		@Override
+		protected SnapshotResult<OperatorStateHandle> performOperation() throws Exception {
+			List<Long> offsets = new ArrayList<>();
+			DataOutputView dov = null;
+
+			byte[] element;
+			while ((element = pendingCheckpoint.take()) != null) {
+				if (dov == null) {
+					dov = openOutStream();
+				}
+
+				offsets.add(out.getPos());
+				BytePrimitiveArraySerializer.INSTANCE.serialize(element, dov);
+			}
+
+			if (dov == null) {
+				return SnapshotResult.empty();
+			}
+
+			long[] partitionOffsets = new long[offsets.size()];
+			for (int i = 0; i < partitionOffsets.length; i++) {
+				partitionOffsets[i] = offsets.get(i);
+			}
+
+			final StreamStateHandle stateHandle;
+			synchronized (this) {
+				if (out == null) {
+					throw new IOException("The stream of the in-flight data was closed.");
+				}
+				stateHandle = out.closeAndGetHandle();
+				out = null;
+			}
+
+			Map<String, OperatorStateHandle.StateMetaInfo> writtenStatesMetaData = Collections.singletonMap(
+				IN_FLIGHT_DATA_STATE_NAME,
+				new OperatorStateHandle.StateMetaInfo(partitionOffsets, OperatorStateHandle.Mode.SPLIT_DISTRIBUTE));
+
+			return SnapshotResult.of(new OperatorStreamStateHandle(writtenStatesMetaData, stateHandle));
+		}
+
+		private synchronized DataOutputView openOutStream() throws IOException {
+			out = streamFactory.createCheckpointStateOutputStream(checkpointId, CheckpointedStateScope.EXCLUSIVE);
+
+			DataOutputView dov = new DataOutputViewStreamWrapper(out);
+
+			RegisteredOperatorBackendStateMetaInfo<byte[]> metaInfo = new RegisteredOperatorBackendStateMetaInfo<>(
+				IN_FLIGHT_DATA_STATE_NAME,
+				BytePrimitiveArraySerializer.INSTANCE,
+				OperatorStateHandle.Mode.SPLIT_DISTRIBUTE);
+
+			OperatorBackendSerializationProxy backendSerializationProxy = new OperatorBackendSerializationProxy(
+				Collections.singletonList(metaInfo.snapshot()),
+				Collections.emptyList());
+			backendSerializationProxy.write(dov);
+
+			return dov;
+		}
+	}
+}
@@ -0,0 +1,344 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.runtime.event.AbstractEvent;
+import org.apache.flink.runtime.io.disk.iomanager.ChannelReaderInputView;
+import org.apache.flink.runtime.io.disk.iomanager.ChannelWriterOutputView;
+import org.apache.flink.runtime.io.disk.iomanager.FileIOChannel;
+import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.FreeingBufferRecycler;
+import org.apache.flink.runtime.io.network.buffer.NetworkBuffer;
+import org.apache.flink.runtime.io.network.partition.consumer.BufferOrEvent;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The hybrid buffer blocker caches the buffers and events from a data stream in a memory queue like
+ * the {@link CachedBufferBlocker}, until the cached data reaches the configured memory budget. All
+ * further buffers and events of the same sequence overflow to a spill file which is written
+ * asynchronously via the {@link IOManager}, and their network buffers are recycled right away.
+ *
+ * <p>When rolling over, the readable sequence presents the cached elements first and then reads the
+ * spilled elements back with read-ahead, which keeps the order in which they were added. Small
+ * alignments therefore never touch the disk, while skewed barriers cannot exhaust the heap.
+ *
+ * <p>This buffer blocker can be used in credit-based flow control for better barrier alignment in
+ * exactly-once mode.
+ */
+@Internal
+public class HybridBufferBlocker implements BufferBlocker {
+
+	/** Size of header in bytes: channel index (4 bytes) + length (4 bytes) + buffer/event (1 byte). */
+	static final int HEADER_SIZE = 9;
+
+	/** The number of segments to write and read back a spill file with. */
+	private static final int NUM_SPILL_SEGMENTS = 4;
+
+	/** The I/O manager to spill the overflowing buffers and events with. */
+	private final IOManager ioManager;
+
+	/** The page size, to estimate the cached data size and to re-create spilled buffers. */
+	private final int pageSize;
+
+	/** The maximum number of bytes which are cached in memory per sequence. */
+	private final long memoryBudget;
+
+	/** The current memory queue for caching the buffers or events. */
+	private ArrayDeque<BufferOrEvent> currentBuffers;
+
+	/** The number of bytes cached in memory since the last roll over. */
+	private long bytesCached;
+
+	/** The channel which the current sequence overflows to, or null if nothing was spilled. */
+	private FileIOChannel.ID currentChannel;
+
+	/** The view which writes the overflowing buffers and events asynchronously. */
+	private ChannelWriterOutputView currentWriter;
+
+	/** The number of buffers and events spilled since the last roll over. */
+	private int numElementsSpilled;
+
+	/** The number of bytes spilled since the last roll over. */
+	private long bytesSpilled;
+
+	/**
+	 * Creates a new buffer blocker, caching the buffers or events in a memory queue up to the given
+	 * budget and spilling the rest via the given I/O manager.
+	 *
+	 * @param ioManager The I/O manager to spill the overflowing buffers and events with.
+	 * @param pageSize The page size used to estimate the cached size and to re-create spilled buffers.
+	 * @param memoryBudget The maximum number of bytes to cache in memory per sequence.
+	 */
+	public HybridBufferBlocker(IOManager ioManager, int pageSize, long memoryBudget) {
+		checkArgument(pageSize > 0, "The page size must be positive.");
+		checkArgument(memoryBudget >= 0, "The memory budget must not be negative.");
+
+		this.ioManager = checkNotNull(ioManager);
+		this.pageSize = pageSize;
+		this.memoryBudget = memoryBudget;
+		this.currentBuffers = new ArrayDeque<>();
+	}
+
+	@Override
+	public void add(BufferOrEvent boe) throws IOException {
+		if (currentWriter == null && bytesCached + pageSize <= memoryBudget) {
+			bytesCached += pageSize;
+			currentBuffers.add(boe);
+		} else {
+			spill(boe);
+		}
+	}
+
+	/**
+	 * It is never reusing resources and is defaulting to {@link #rollOverWithoutReusingResources()}.
+	 */
+	@Override
+	public BufferOrEventSequence rollOverReusingResources() throws IOException {
+		return rollOverWithoutReusingResources();
+	}
+
+	@Override
+	public BufferOrEventSequence rollOverWithoutReusingResources() throws IOException {
+		if (bytesCached == 0 && bytesSpilled == 0) {
+			return null;
+		}
+
+		ChannelReaderInputView spilledReader = null;
+		if (currentWriter != null) {
+			int numBlocks = currentWriter.getBlockCount();
+			List<MemorySegment> memory = currentWriter.close();
+			currentWriter = null;
+
+			spilledReader = new ChannelReaderInputView(
+				ioManager.createBlockChannelReader(currentChannel), memory, numBlocks, false);
+		}
+
+		HybridBufferOrEventSequence currentSequence = new HybridBufferOrEventSequence(
+			currentBuffers, bytesCached, ioManager, currentChannel, spilledReader, numElementsSpilled, bytesSpilled, pageSize);
+
+		currentBuffers = new ArrayDeque<>();
+		bytesCached = 0L;
+		currentChannel = null;
+		numElementsSpilled = 0;
+		bytesSpilled = 0L;
+
+		return currentSequence;
+	}
+
+	@Override
+	public void close() throws IOException {
+		BufferOrEvent boe;
+		while ((boe = currentBuffers.poll()) != null) {
+			if (boe.isBuffer()) {
+				boe.getBuffer().recycleBuffer();
+			}
+		}
+
+		if (currentWriter != null) {
+			try {
+				currentWriter.close();
+			} finally {
+				ioManager.deleteChannel(currentChannel);
+				currentWriter = null;
+				currentChannel = null;
+			}
+		}
+	}
+
+	@Override
+	public long getBytesBlocked() {
+		return bytesCached + bytesSpilled;
+	}
+
+	@Override
+	public long getBytesSpilled() {
+		return bytesSpilled;
+	}
+
+	// ------------------------------------------------------------------------
+	//  Utilities
+	// ------------------------------------------------------------------------
+
+	private void spill(BufferOrEvent boe) throws IOException {
+		try {
+			if (currentWriter == null) {
+				List<MemorySegment> memory = new ArrayList<>(NUM_SPILL_SEGMENTS);
+				for (int i = 0; i < NUM_SPILL_SEGMENTS; i++) {
+					memory.add(MemorySegmentFactory.allocateUnpooledSegment(pageSize));
+				}
+
+				currentChannel = ioManager.createChannel();
+				currentWriter = new ChannelWriterOutputView(
+					ioManager.createBlockChannelWriter(currentChannel), memory, pageSize);
+			}
+
+			currentWriter.writeInt(boe.getChannelIndex());
+			if (boe.isBuffer()) {
+				Buffer buffer = boe.getBuffer();
+				currentWriter.writeInt(buffer.getSize());
+				currentWriter.writeByte(0);
+				currentWriter.write(buffer.getMemorySegment(), buffer.getMemorySegmentOffset(), buffer.getSize());
+				bytesSpilled += HEADER_SIZE + buffer.getSize();
+			} else {
+				ByteBuffer event = EventSerializer.toSerializedEvent(boe.getEvent());
+				int length = event.remaining();
+				currentWriter.writeInt(length);
+				currentWriter.writeByte(1);
+				byte[] bytes = new byte[length];
+				event.get(bytes);
+				currentWriter.write(bytes);
+				bytesSpilled += HEADER_SIZE + length;
+			}
+
+			numElementsSpilled++;
+		} finally {
+			if (boe.isBuffer()) {
+				boe.getBuffer().recycleBuffer();
+			}
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * This class represents a sequence of cached and spilled buffers and events, created by the
+	 * {@link HybridBufferBlocker}.
+	 */
+	public static class HybridBufferOrEventSequence implements BufferOrEventSequence {
+
+		/** The cached buffers and events, which are consumed before the spilled ones. */
+		private final ArrayDeque<BufferOrEvent> queuedBuffers;
+
+		/** The I/O manager to delete the spill file with. */
+		private final IOManager ioManager;
+
+		/** The channel of the spill file, or null if nothing was spilled. */
+		@Nullable
+		private final FileIOChannel.ID spilledChannel;
+
+		/** The view which reads the spilled buffers and events back, or null if nothing was spilled. */
+		@Nullable
+		private ChannelReaderInputView spilledReader;
+
+		/** The number of spilled buffers and events which have not been read yet. */
+		private int numElementsRemaining;
+
+		/** The total size of the cached and spilled data. */
+		private final long size;
+
+		/** The page size to instantiate properly sized memory segments. */
+		private final int pageSize;
+
+		HybridBufferOrEventSequence(
+				ArrayDeque<BufferOrEvent> buffers,
+				long bytesCached,
+				IOManager ioManager,
+				@Nullable FileIOChannel.ID spilledChannel,
+				@Nullable ChannelReaderInputView spilledReader,
+				int numElementsSpilled,
+				long bytesSpilled,
+				int pageSize) {
+			this.queuedBuffers = buffers;
+			this.ioManager = ioManager;
+			this.spilledChannel = spilledChannel;
+			this.spilledReader = spilledReader;
+			this.numElementsRemaining = numElementsSpilled;
+			this.size = bytesCached + bytesSpilled;
+			this.pageSize = pageSize;
+		}
+
+		@Override
+		public void open() {}
+
+		@Override
+		@Nullable
+		public BufferOrEvent getNext() throws IOException {
+			BufferOrEvent next = queuedBuffers.poll();
+			if (next != null || numElementsRemaining == 0) {
+				return next;
+			}
+
+			numElementsRemaining--;
+
+			final int channel = spilledReader.readInt();
+			final int length = spilledReader.readInt();
+			final boolean isBuffer = spilledReader.readByte() == 0;
+
+			if (isBuffer) {
+				if (length > pageSize) {
+					throw new IOException(String.format(
+						"Spilled buffer (%d bytes) is larger than page size of (%d bytes)", length, pageSize));
+				}
+
+				MemorySegment seg = MemorySegmentFactory.allocateUnpooledSegment(pageSize);
+				seg.put(spilledReader, 0, length);
+
+				Buffer buf = new NetworkBuffer(seg, FreeingBufferRecycler.INSTANCE);
+				buf.setSize(length);
+
+				return new BufferOrEvent(buf, channel);
+			} else {
+				byte[] bytes = new byte[length];
+				spilledReader.readFully(bytes);
+				AbstractEvent evt = EventSerializer.fromSerializedEvent(ByteBuffer.wrap(bytes), getClass().getClassLoader());
+
+				return new BufferOrEvent(evt, channel);
+			}
+		}
+
+		@Override
+		public void cleanup() throws IOException {
+			BufferOrEvent boe;
+			while ((boe = queuedBuffers.poll()) != null) {
+				if (boe.isBuffer()) {
+					boe.getBuffer().recycleBuffer();
+				}
+			}
+
+			numElementsRemaining = 0;
+			if (spilledReader != null) {
+				try {
+					spilledReader.close();
+				} finally {
+					spilledReader = null;
+					ioManager.deleteChannel(spilledChannel);
+				}
+			}
+		}
+
+		@Override
+		public long size() {
+			return size;
+		}
+	}
+}
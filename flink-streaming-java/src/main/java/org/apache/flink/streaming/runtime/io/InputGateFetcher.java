@@ -20,6 +20,8 @@ package org.apache.flink.streaming.runtime.io;
 import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.SimpleCounter;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager;
 import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
 import org.apache.flink.runtime.io.network.api.serialization.RecordDeserializer;
@@ -104,6 +106,37 @@ class InputGateFetcher<IN> implements InputFetcher, InputGateListener {
 		boolean objectReuse,
 		Configuration taskManagerConfig) {
 
+		this(inputSelection, inputGate, serializer, barrierHandler, ioManager, new SimpleCounter(),
+			inputProcessor, checkpointLock, basedChannelCount, objectReuse, taskManagerConfig);
+	}
+
+	/**
+	 * Instantiates a new Input gate fetcher.
+	 *
+	 * @param inputSelection 	the input selection of this input fetcher
+	 * @param inputGate         the input gate
+	 * @param serializer        the serializer
+	 * @param barrierHandler    the barrier handler
+	 * @param ioManager         the io manager
+	 * @param numBytesSpilled   the counter of the spilled bytes of large records
+	 * @param inputProcessor    the input processor
+	 * @param checkpointLock    the checkpoint lock
+	 * @param basedChannelCount the based channel count
+	 * @param objectReuse 		the object is reusable or not
+	 */
+	public InputGateFetcher(
+		InputSelection inputSelection,
+		InputGate inputGate,
+		TypeSerializer<IN> serializer,
+		SelectedReadingBarrierHandler barrierHandler,
+		IOManager ioManager,
+		Counter numBytesSpilled,
+		InputProcessor inputProcessor,
+		Object checkpointLock,
+		int basedChannelCount,
+		boolean objectReuse,
+		Configuration taskManagerConfig) {
+
 		this.inputSelection = checkNotNull(inputSelection);
 		this.inputGate = checkNotNull(inputGate);
 		this.barrierHandler = checkNotNull(barrierHandler);
@@ -116,7 +149,10 @@ class InputGateFetcher<IN> implements InputFetcher, InputGateListener {
 		SerializerManagerUtility<DeserializationDelegate<StreamElement>> serializerManagerUtility =
 			new SerializerManagerUtility<>(taskManagerConfig);
 		this.recordDeserializers = serializerManagerUtility.createRecordDeserializers(
-			inputGate.getAllInputChannels(), ioManager.getSpillingDirectoriesPaths());
+			inputGate.getAllInputChannels(), ioManager, numBytesSpilled);
+		if (barrierHandler instanceof CheckpointBarrierUnaligner) {
+			((CheckpointBarrierUnaligner) barrierHandler).registerRecordDeserializers(basedChannelCount, recordDeserializers);
+		}
 
 		if (objectReuse) {
 			reusedObject = serializer.createInstance();
@@ -18,6 +18,7 @@
 package org.apache.flink.streaming.runtime.io;
 
 import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.TaskInfo;
 import org.apache.flink.configuration.Configuration;
 import org.apache.flink.configuration.IllegalConfigurationException;
 import org.apache.flink.configuration.TaskManagerOptions;
@@ -29,6 +30,7 @@ import org.apache.flink.streaming.runtime.tasks.StreamTask;
 import java.io.IOException;
 import java.util.Collection;
 
+import static org.apache.flink.util.Preconditions.checkNotNull;
 import static org.apache.flink.util.Preconditions.checkState;
 
 /**
@@ -87,9 +89,33 @@ public class InputProcessorUtil {
 						+ " must be positive or -1 (infinite)");
 			}
 
+			long maxAlignInMemory = taskManagerConfig.getLong(TaskManagerOptions.TASK_CHECKPOINT_ALIGNMENT_MEMORY_LIMIT);
+			if (maxAlignInMemory < -1) {
+				throw new IllegalConfigurationException(
+					TaskManagerOptions.TASK_CHECKPOINT_ALIGNMENT_MEMORY_LIMIT.key()
+						+ " must be non-negative or -1 (infinite)");
+			}
+
 			InputGate unionInputGate = InputGateUtil.createInputGate(inputGateGroups);
-			if (taskManagerConfig.getBoolean(TaskManagerOptions.NETWORK_CREDIT_MODEL)) {
-				barrierHandler = new BarrierBuffer(unionInputGate, new CachedBufferBlocker(unionInputGate.getPageSize()), maxAlign);
+			if (taskManagerConfig.getBoolean(TaskManagerOptions.TASK_CHECKPOINT_UNALIGNED)) {
+				checkNotNull(checkpointedTask, "Checkpoints without barrier alignment require a checkpointed task.");
+
+				TaskInfo taskInfo = checkpointedTask.getEnvironment().getTaskInfo();
+				CheckpointBarrierUnaligner barrierUnaligner = new CheckpointBarrierUnaligner(
+					unionInputGate,
+					taskInfo.getIndexOfThisSubtask(),
+					taskInfo.getNumberOfParallelSubtasks(),
+					checkpointedTask.getConfiguration().getMaxConcurrentCheckpoints());
+				checkpointedTask.setBarrierUnaligner(barrierUnaligner);
+
+				barrierHandler = barrierUnaligner;
+			} else if (taskManagerConfig.getBoolean(TaskManagerOptions.NETWORK_CREDIT_MODEL)) {
+				if (maxAlignInMemory == -1) {
+					barrierHandler = new BarrierBuffer(unionInputGate, new CachedBufferBlocker(unionInputGate.getPageSize()), maxAlign);
+				} else {
+					barrierHandler = new BarrierBuffer(
+						unionInputGate, new HybridBufferBlocker(ioManager, unionInputGate.getPageSize(), maxAlignInMemory), maxAlign);
+				}
 			} else {
 				barrierHandler = new BarrierBuffer(unionInputGate, new BufferSpiller(ioManager, unionInputGate.getPageSize()), maxAlign);
 			}
@@ -190,6 +190,7 @@ public class StreamArbitraryInputProcessor implements SelectionChangedListener,
 			typeSerializer,
 			barrierHandler,
 			ioManager,
+			taskMetricGroup.getIOMetricGroup().getNumBytesInSpilledCounter(),
 			new OneInputProcessor(
 				streamStatusSubMaintainer,
 				operator,
@@ -226,6 +227,7 @@ public class StreamArbitraryInputProcessor implements SelectionChangedListener,
 			typeSerializer,
 			barrierHandler,
 			ioManager,
+			taskMetricGroup.getIOMetricGroup().getNumBytesInSpilledCounter(),
 			new FirstOfTwoInputProcessor(
 				streamStatusSubMaintainer,
 				operator,
@@ -262,6 +264,7 @@ public class StreamArbitraryInputProcessor implements SelectionChangedListener,
 			typeSerializer,
 			barrierHandler,
 			ioManager,
+			taskMetricGroup.getIOMetricGroup().getNumBytesInSpilledCounter(),
 			new SecondOfTwoInputProcessor(
 				streamStatusSubMaintainer,
 				operator,
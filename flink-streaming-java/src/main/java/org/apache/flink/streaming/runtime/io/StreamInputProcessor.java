@@ -159,7 +159,10 @@ public class StreamInputProcessor<IN> {
 		SerializerManagerUtility<DeserializationDelegate<StreamElement>> serializerManagerUtility =
 			new SerializerManagerUtility<>(taskManagerConfig);
 		this.recordDeserializers = serializerManagerUtility.createRecordDeserializers(
-			barrierHandler.getAllInputChannels(), ioManager.getSpillingDirectoriesPaths());
+			barrierHandler.getAllInputChannels(), ioManager, metrics.getNumBytesInSpilledCounter());
+		if (barrierHandler instanceof CheckpointBarrierUnaligner) {
+			((CheckpointBarrierUnaligner) barrierHandler).registerRecordDeserializers(0, recordDeserializers);
+		}
 
 		this.channelsWithEndOfPartitionEvents = new BitSet(this.numInputChannels);
 
@@ -172,6 +175,8 @@ public class StreamInputProcessor<IN> {
 
 		this.watermarkGauge = watermarkGauge;
 		metrics.gauge("checkpointAlignmentTime", barrierHandler::getAlignmentDurationNanos);
+		metrics.gauge("checkpointAlignmentBytesInMemory", barrierHandler::getAlignmentBytesInMemory);
+		metrics.gauge("checkpointAlignmentBytesOnDisk", barrierHandler::getAlignmentBytesOnDisk);
 
 		this.enableTracingMetrics = enableTracingMetrics;
 		this.tracingMetricsInterval = tracingMetricsInterval;
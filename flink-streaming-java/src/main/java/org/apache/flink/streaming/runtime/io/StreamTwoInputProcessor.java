@@ -202,7 +202,10 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 		SerializerManagerUtility<DeserializationDelegate<StreamElement>> serializerManagerUtility =
 			new SerializerManagerUtility<>(taskManagerConfig);
 		this.recordDeserializerOfChannels = serializerManagerUtility.createRecordDeserializers(
-			barrierHandler.getAllInputChannels(), ioManager.getSpillingDirectoriesPaths());
+			barrierHandler.getAllInputChannels(), ioManager, metrics.getNumBytesInSpilledCounter());
+		if (barrierHandler instanceof CheckpointBarrierUnaligner) {
+			((CheckpointBarrierUnaligner) barrierHandler).registerRecordDeserializers(0, recordDeserializerOfChannels);
+		}
 
 		// determine which unioned channels belong to input 1 and which belong to input 2
 		this.numChannelsOfInputs = new int[numberOfInputs];
@@ -231,6 +234,8 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 			input2WatermarkGauge
 		};
 		metrics.gauge("checkpointAlignmentTime", barrierHandler::getAlignmentDurationNanos);
+		metrics.gauge("checkpointAlignmentBytesInMemory", barrierHandler::getAlignmentBytesInMemory);
+		metrics.gauge("checkpointAlignmentBytesOnDisk", barrierHandler::getAlignmentBytesOnDisk);
 
 		this.currentRecordDeserializerOfInputs = new RecordDeserializer[numberOfInputs];
 		this.currentChannelOfInputs = new int[]{-1, -1};
@@ -20,6 +20,7 @@ package org.apache.flink.streaming.runtime.tasks;
 import org.apache.flink.annotation.Internal;
 import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.api.common.TaskInfo;
+import org.apache.flink.api.common.state.ListState;
 import org.apache.flink.configuration.Configuration;
 import org.apache.flink.configuration.TaskManagerOptions;
 import org.apache.flink.core.fs.CloseableRegistry;
@@ -37,6 +38,7 @@ import org.apache.flink.runtime.jobgraph.OperatorID;
 import org.apache.flink.runtime.jobgraph.tasks.AbstractInvokable;
 import org.apache.flink.runtime.state.CheckpointStorage;
 import org.apache.flink.runtime.state.CheckpointStreamFactory;
+import org.apache.flink.runtime.state.OperatorStateBackend;
 import org.apache.flink.runtime.state.StateBackend;
 import org.apache.flink.runtime.state.StateBackendLoader;
 import org.apache.flink.runtime.state.TaskStateManager;
@@ -45,11 +47,13 @@ import org.apache.flink.runtime.util.OperatorSubtaskDescriptionText;
 import org.apache.flink.streaming.api.TimeCharacteristic;
 import org.apache.flink.streaming.api.graph.StreamConfig;
 import org.apache.flink.streaming.api.graph.StreamEdge;
+import org.apache.flink.streaming.api.operators.AbstractStreamOperator;
 import org.apache.flink.streaming.api.operators.OperatorSnapshotFinalizer;
 import org.apache.flink.streaming.api.operators.OperatorSnapshotFutures;
 import org.apache.flink.streaming.api.operators.StreamOperator;
 import org.apache.flink.streaming.api.operators.StreamTaskStateInitializer;
 import org.apache.flink.streaming.api.operators.StreamTaskStateInitializerImpl;
+import org.apache.flink.streaming.runtime.io.CheckpointBarrierUnaligner;
 import org.apache.flink.streaming.runtime.io.RecordWriterOutput;
 import org.apache.flink.streaming.runtime.io.StreamRecordWriter;
 import org.apache.flink.streaming.runtime.partitioner.ConfigurableStreamPartitioner;
@@ -183,6 +187,10 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 
 	private final List<StreamRecordWriter<StreamRecord<?>>> streamRecordWriters;
 
+	/** The barrier handler which snapshots the in-flight data, if checkpoints are taken without barrier alignment. */
+	@Nullable
+	private CheckpointBarrierUnaligner barrierUnaligner;
+
 	// ------------------------------------------------------------------------
 
 	/**
@@ -760,6 +768,43 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 				operator.initializeState();
 			}
 		}
+
+		restoreInFlightData();
+	}
+
+	/**
+	 * Hands the restored in-flight data of checkpoints which were taken without barrier alignment
+	 * over to the barrier handler, which replays it before any data from the network.
+	 */
+	private void restoreInFlightData() throws Exception {
+		for (StreamOperator<?> headOperator : operatorChain.getHeadOperators()) {
+			if (!(headOperator instanceof AbstractStreamOperator)) {
+				continue;
+			}
+
+			OperatorStateBackend operatorStateBackend = ((AbstractStreamOperator<?>) headOperator).getOperatorStateBackend();
+			if (operatorStateBackend == null ||
+				!operatorStateBackend.getRegisteredStateNames().contains(CheckpointBarrierUnaligner.IN_FLIGHT_DATA_STATE_NAME)) {
+				continue;
+			}
+
+			ListState<byte[]> inFlightDataState =
+				operatorStateBackend.getListState(CheckpointBarrierUnaligner.createInFlightDataStateDescriptor());
+
+			List<byte[]> inFlightData = new ArrayList<>();
+			for (byte[] element : inFlightDataState.get()) {
+				inFlightData.add(element);
+			}
+			inFlightDataState.clear();
+
+			if (!inFlightData.isEmpty()) {
+				if (barrierUnaligner == null) {
+					throw new IllegalStateException("The task is restored from a checkpoint which was taken without " +
+						"barrier alignment, but " + TaskManagerOptions.TASK_CHECKPOINT_UNALIGNED.key() + " is disabled.");
+				}
+				barrierUnaligner.restoreInFlightData(inFlightData);
+			}
+		}
 	}
 
 	// ------------------------------------------------------------------------
@@ -1042,6 +1087,14 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 		return cancelables;
 	}
 
+	/**
+	 * Sets the barrier handler which snapshots the in-flight data of the task, if checkpoints are
+	 * taken without barrier alignment.
+	 */
+	public void setBarrierUnaligner(CheckpointBarrierUnaligner barrierUnaligner) {
+		this.barrierUnaligner = barrierUnaligner;
+	}
+
 	// ------------------------------------------------------------------------
 
 	private static final class CheckpointingOperation {
@@ -1148,6 +1201,12 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 						checkpointMetaData.getTimestamp(),
 						checkpointOptions,
 						storageLocation);
+
+				// the in-flight data is persisted as operator state of the first head operator
+				if (owner.barrierUnaligner != null && op == owner.operatorChain.getHeadOperators()[0]) {
+					snapshotInProgress.setInFlightDataFuture(
+						owner.barrierUnaligner.snapshotInFlightData(checkpointMetaData.getCheckpointId(), storageLocation));
+				}
 				operatorSnapshotsInProgress.put(op.getOperatorID(), snapshotInProgress);
 			}
 		}
@@ -608,6 +608,46 @@ public class StreamingJobGraphGeneratorTest extends TestLogger {
 		}
 	}
 
+	@Test
+	public void testZeroCopyEdge() {
+		StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
+		env.setParallelism(5);
+
+		// fromElements -> Map -> Print
+		env.fromElements(1, 2, 3).name("source1")
+			.map((MapFunction<Integer, Integer>) value -> value).name("map1")
+			.print().name("print1");
+
+		StreamGraph streamGraph = env.getStreamGraph();
+		StreamNode mapNode = null;
+		for (StreamNode node : streamGraph.getStreamNodes()) {
+			if (node.getOperatorName().equals("map1")) {
+				mapNode = node;
+			}
+		}
+		assertNotNull(mapNode);
+		assertEquals(1, mapNode.getInEdges().size());
+		mapNode.getInEdges().get(0).setZeroCopyEnabled(true);
+
+		// records are only deserialized by reference if object reuse is enabled
+		{
+			JobGraph jobGraph = createJobGraph(streamGraph);
+
+			JobVertex mapPrintVertex = jobGraph.getVerticesSortedTopologicallyFromSources().get(1);
+			assertEquals(1, mapPrintVertex.getInputs().size());
+			assertFalse(mapPrintVertex.getInputs().get(0).isZeroCopyEnabled());
+		}
+
+		{
+			streamGraph.getExecutionConfig().enableObjectReuse();
+			JobGraph jobGraph = createJobGraph(streamGraph);
+
+			JobVertex mapPrintVertex = jobGraph.getVerticesSortedTopologicallyFromSources().get(1);
+			assertEquals("map1 -> Sink: print1", mapPrintVertex.getName());
+			assertTrue(mapPrintVertex.getInputs().get(0).isZeroCopyEnabled());
+		}
+	}
+
 	@Test
 	public void testAutoDataExchangeEdgeChained() {
 		StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link BinaryTimerHeap} and {@link BinaryTimerQueue}.
+ */
+public class BinaryTimerHeapTest {
+
+	/** A small page size, so that records and data span many pages. */
+	private static final int PAGE_SIZE = 128;
+
+	@Test
+	public void testPollsInTimestampOrder() {
+		BinaryTimerHeap heap = new BinaryTimerHeap(PAGE_SIZE);
+
+		Random random = new Random(42);
+		for (int i = 0; i < 1000; ++i) {
+			add(heap, random.nextInt(500), "key-" + i);
+		}
+		assertEquals(1000, heap.size());
+
+		long lastTimestamp = Long.MIN_VALUE;
+		while (!heap.isEmpty()) {
+			long timestamp = heap.peekTimestamp();
+			assertTrue(timestamp >= lastTimestamp);
+			lastTimestamp = timestamp;
+			heap.poll();
+		}
+
+		heap.dispose();
+	}
+
+	@Test
+	public void testDeduplication() {
+		BinaryTimerHeap heap = new BinaryTimerHeap(PAGE_SIZE);
+
+		assertTrue(add(heap, 10, "a"));
+		assertFalse(add(heap, 10, "a"));
+		assertTrue(add(heap, 11, "a"));
+		assertTrue(add(heap, 10, "b"));
+		assertEquals(3, heap.size());
+
+		assertTrue(remove(heap, 10, "a"));
+		assertFalse(remove(heap, 10, "a"));
+		assertFalse(remove(heap, 12, "a"));
+		assertEquals(2, heap.size());
+
+		assertEquals(10, heap.peekTimestamp());
+		assertEquals("b", headData(heap));
+
+		heap.dispose();
+	}
+
+	@Test
+	public void testRandomOperationsAgainstReference() {
+		BinaryTimerHeap heap = new BinaryTimerHeap(PAGE_SIZE);
+		Set<String> reference = new HashSet<>();
+
+		Random random = new Random(7);
+		for (int i = 0; i < 50_000; ++i) {
+			long timestamp = random.nextInt(100);
+			String key = "key-" + random.nextInt(200);
+			String entry = timestamp + "@" + key;
+
+			int operation = random.nextInt(10);
+			if (operation < 5) {
+				assertEquals(reference.add(entry), add(heap, timestamp, key));
+			} else if (operation < 9) {
+				assertEquals(reference.remove(entry), remove(heap, timestamp, key));
+			} else if (!heap.isEmpty()) {
+				String head = heap.peekTimestamp() + "@" + headData(heap);
+				for (String other : reference) {
+					assertTrue(Long.parseLong(other.substring(0, other.indexOf('@'))) >= heap.peekTimestamp());
+				}
+				assertTrue(reference.remove(head));
+				heap.poll();
+			}
+
+			assertEquals(reference.size(), heap.size());
+		}
+
+		heap.dispose();
+	}
+
+	@Test
+	public void testWriteTo() throws Exception {
+		BinaryTimerHeap heap = new BinaryTimerHeap(PAGE_SIZE);
+
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 100; ++i) {
+			// keys longer than a page
+			String key = new String(new char[PAGE_SIZE + i]).replace('\0', 'x');
+			add(heap, i, key);
+			expected.add(i + "@" + key.length());
+		}
+
+		DataOutputSerializer out = new DataOutputSerializer(1024);
+		heap.writeTo(out);
+
+		DataInputDeserializer in = new DataInputDeserializer(out.getSharedBuffer(), 0, out.length());
+		Set<String> actual = new HashSet<>();
+		for (int i = 0; i < heap.size(); ++i) {
+			int length = heap.getDataLength(i);
+			in.skipBytesToRead(length);
+			actual.add(in.readLong() + "@" + length);
+		}
+
+		assertEquals(new HashSet<>(expected), actual);
+		assertEquals(0, in.available());
+
+		heap.dispose();
+	}
+
+	@Test
+	public void testQueueOrdersAcrossKeyGroups() {
+		BinaryTimerQueue queue = new BinaryTimerQueue(8, PAGE_SIZE);
+
+		Random random = new Random(13);
+		for (int i = 0; i < 1000; ++i) {
+			byte[] data = ("key-" + i).getBytes(StandardCharsets.UTF_8);
+			long timestamp = random.nextInt(300);
+			queue.add(i % 8, timestamp, data, 0, data.length, BinaryTimerHeap.hash(timestamp, data, 0, data.length));
+		}
+
+		for (int i = 0; i < 300; ++i) {
+			byte[] data = ("key-" + i).getBytes(StandardCharsets.UTF_8);
+			for (long timestamp = 0; timestamp < 300; ++timestamp) {
+				queue.remove(i % 8, timestamp, data, 0, data.length, BinaryTimerHeap.hash(timestamp, data, 0, data.length));
+			}
+		}
+		assertEquals(700, queue.size());
+
+		long lastTimestamp = Long.MIN_VALUE;
+		while (!queue.isEmpty()) {
+			assertTrue(queue.peekTimestamp() >= lastTimestamp);
+			lastTimestamp = queue.peekTimestamp();
+			queue.poll();
+		}
+
+		queue.dispose();
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static boolean add(BinaryTimerHeap heap, long timestamp, String key) {
+		byte[] data = key.getBytes(StandardCharsets.UTF_8);
+		return heap.add(timestamp, data, 0, data.length, BinaryTimerHeap.hash(timestamp, data, 0, data.length));
+	}
+
+	private static boolean remove(BinaryTimerHeap heap, long timestamp, String key) {
+		byte[] data = key.getBytes(StandardCharsets.UTF_8);
+		return heap.remove(timestamp, data, 0, data.length, BinaryTimerHeap.hash(timestamp, data, 0, data.length));
+	}
+
+	private static String headData(BinaryTimerHeap heap) {
+		byte[] data = new byte[heap.getDataLength(0)];
+		heap.copyData(0, data);
+		return new String(data, StandardCharsets.UTF_8);
+	}
+}
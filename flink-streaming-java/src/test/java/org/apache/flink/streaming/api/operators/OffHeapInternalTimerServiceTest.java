@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.streaming.runtime.tasks.TestProcessingTimeService;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link OffHeapInternalTimerService}.
+ */
+public class OffHeapInternalTimerServiceTest {
+
+	private static final int MAX_PARALLELISM = 128;
+
+	private static final KeyGroupRange KEY_GROUP_RANGE = new KeyGroupRange(0, MAX_PARALLELISM - 1);
+
+	/** A small page size, so that timers span many pages. */
+	private static final int PAGE_SIZE = 64;
+
+	private static InternalTimer<Integer, String> anyInternalTimer() {
+		return any();
+	}
+
+	@Test
+	public void testSetAndFireEventTimeTimers() throws Exception {
+		@SuppressWarnings("unchecked")
+		Triggerable<Integer, String> mockTriggerable = mock(Triggerable.class);
+
+		TestKeyContext keyContext = new TestKeyContext();
+		OffHeapInternalTimerService<Integer, String> timerService =
+			createTimerService(mockTriggerable, keyContext, new TestProcessingTimeService());
+
+		keyContext.setCurrentKey(1);
+		timerService.registerEventTimeTimer("ciao", 20);
+		timerService.registerEventTimeTimer("ciao", 10);
+		timerService.registerEventTimeTimer("ciao", 10);
+
+		keyContext.setCurrentKey(2);
+		timerService.registerEventTimeTimer("hello", 15);
+		timerService.registerEventTimeTimer("hello", 30);
+
+		assertEquals(4, timerService.numEventTimeTimers());
+		assertEquals(2, timerService.numEventTimeTimers("hello"));
+		assertEquals(2, timerService.numEventTimeTimers("ciao"));
+
+		timerService.advanceWatermark(20);
+
+		org.mockito.InOrder inOrder = inOrder(mockTriggerable);
+		inOrder.verify(mockTriggerable).onEventTime(eq(new InternalTimer<>(10, 1, "ciao")));
+		inOrder.verify(mockTriggerable).onEventTime(eq(new InternalTimer<>(15, 2, "hello")));
+		inOrder.verify(mockTriggerable).onEventTime(eq(new InternalTimer<>(20, 1, "ciao")));
+
+		assertEquals(1, timerService.numEventTimeTimers());
+		assertEquals(20, timerService.currentWatermark());
+
+		timerService.dispose();
+	}
+
+	@Test
+	public void testSetAndFireProcessingTimeTimers() throws Exception {
+		@SuppressWarnings("unchecked")
+		Triggerable<Integer, String> mockTriggerable = mock(Triggerable.class);
+
+		TestKeyContext keyContext = new TestKeyContext();
+		TestProcessingTimeService processingTimeService = new TestProcessingTimeService();
+		OffHeapInternalTimerService<Integer, String> timerService =
+			createTimerService(mockTriggerable, keyContext, processingTimeService);
+
+		keyContext.setCurrentKey(1);
+		timerService.registerProcessingTimeTimer("ciao", 20);
+		timerService.registerProcessingTimeTimer("ciao", 30);
+
+		keyContext.setCurrentKey(2);
+		timerService.registerProcessingTimeTimer("hello", 10);
+
+		// only one physical timer for the earliest timestamp
+		assertEquals(1, processingTimeService.getNumActiveTimers());
+		assertThat(processingTimeService.getActiveTimerTimestamps(), containsInAnyOrder(10L));
+
+		processingTimeService.setCurrentTime(20);
+
+		verify(mockTriggerable, times(2)).onProcessingTime(anyInternalTimer());
+		verify(mockTriggerable).onProcessingTime(eq(new InternalTimer<>(10, 2, "hello")));
+		verify(mockTriggerable).onProcessingTime(eq(new InternalTimer<>(20, 1, "ciao")));
+
+		assertEquals(1, timerService.numProcessingTimeTimers());
+		assertThat(processingTimeService.getActiveTimerTimestamps(), containsInAnyOrder(30L));
+
+		timerService.dispose();
+	}
+
+	@Test
+	public void testDeleteTimers() throws Exception {
+		@SuppressWarnings("unchecked")
+		Triggerable<Integer, String> mockTriggerable = mock(Triggerable.class);
+
+		TestKeyContext keyContext = new TestKeyContext();
+		TestProcessingTimeService processingTimeService = new TestProcessingTimeService();
+		OffHeapInternalTimerService<Integer, String> timerService =
+			createTimerService(mockTriggerable, keyContext, processingTimeService);
+
+		for (int key = 0; key < 100; ++key) {
+			keyContext.setCurrentKey(key);
+			timerService.registerEventTimeTimer("window", key);
+			timerService.registerProcessingTimeTimer("window", key);
+		}
+
+		for (int key = 0; key < 100; key += 2) {
+			keyContext.setCurrentKey(key);
+			timerService.deleteEventTimeTimer("window", key);
+			timerService.deleteProcessingTimeTimer("window", key);
+
+			// deleting a non-existing timer has no effect
+			timerService.deleteEventTimeTimer("other", key);
+		}
+
+		assertEquals(50, timerService.numEventTimeTimers());
+		assertEquals(50, timerService.numProcessingTimeTimers());
+
+		timerService.advanceWatermark(100);
+		processingTimeService.setCurrentTime(100);
+
+		verify(mockTriggerable, times(50)).onEventTime(anyInternalTimer());
+		verify(mockTriggerable, times(50)).onProcessingTime(anyInternalTimer());
+		for (int key = 1; key < 100; key += 2) {
+			verify(mockTriggerable).onEventTime(eq(new InternalTimer<>(key, key, "window")));
+		}
+
+		timerService.dispose();
+	}
+
+	@Test
+	public void testSnapshotAndRestore() throws Exception {
+		TestKeyContext keyContext = new TestKeyContext();
+		OffHeapInternalTimerService<Integer, String> timerService =
+			createTimerService(mock(Triggerable.class), keyContext, new TestProcessingTimeService());
+
+		for (int key = 0; key < 20; ++key) {
+			keyContext.setCurrentKey(key);
+			timerService.registerEventTimeTimer("event", 10 + key);
+			timerService.registerProcessingTimeTimer("processing", 10 + key);
+		}
+
+		Map<Integer, byte[]> snapshot = snapshot(timerService);
+
+		// timers written by the off-heap service can be restored by both implementations
+		@SuppressWarnings("unchecked")
+		Triggerable<Integer, String> offHeapTriggerable = mock(Triggerable.class);
+		TestProcessingTimeService offHeapProcessingTimeService = new TestProcessingTimeService();
+		KeyGroupedInternalTimerService<Integer, String> restoredOffHeap = restore(
+			snapshot,
+			new OffHeapInternalTimerService<>(MAX_PARALLELISM, KEY_GROUP_RANGE, keyContext, offHeapProcessingTimeService, PAGE_SIZE),
+			offHeapTriggerable);
+
+		@SuppressWarnings("unchecked")
+		Triggerable<Integer, String> heapTriggerable = mock(Triggerable.class);
+		TestProcessingTimeService heapProcessingTimeService = new TestProcessingTimeService();
+		KeyGroupedInternalTimerService<Integer, String> restoredHeap = restore(
+			snapshot,
+			new HeapInternalTimerService<>(MAX_PARALLELISM, KEY_GROUP_RANGE, keyContext, heapProcessingTimeService),
+			heapTriggerable);
+
+		assertEquals(20, restoredOffHeap.numEventTimeTimers());
+		assertEquals(20, restoredOffHeap.numProcessingTimeTimers());
+		assertEquals(20, restoredHeap.numEventTimeTimers());
+		assertEquals(20, restoredHeap.numProcessingTimeTimers());
+
+		restoredOffHeap.advanceWatermark(100);
+		offHeapProcessingTimeService.setCurrentTime(100);
+		restoredHeap.advanceWatermark(100);
+		heapProcessingTimeService.setCurrentTime(100);
+
+		for (int key = 0; key < 20; ++key) {
+			verify(offHeapTriggerable).onEventTime(eq(new InternalTimer<>(10 + key, key, "event")));
+			verify(offHeapTriggerable).onProcessingTime(eq(new InternalTimer<>(10 + key, key, "processing")));
+			verify(heapTriggerable).onEventTime(eq(new InternalTimer<>(10 + key, key, "event")));
+			verify(heapTriggerable).onProcessingTime(eq(new InternalTimer<>(10 + key, key, "processing")));
+		}
+
+		timerService.dispose();
+		restoredOffHeap.dispose();
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static OffHeapInternalTimerService<Integer, String> createTimerService(
+			Triggerable<Integer, String> triggerable,
+			KeyContext keyContext,
+			TestProcessingTimeService processingTimeService) {
+
+		OffHeapInternalTimerService<Integer, String> service = new OffHeapInternalTimerService<>(
+			MAX_PARALLELISM, KEY_GROUP_RANGE, keyContext, processingTimeService, PAGE_SIZE);
+
+		service.startTimerService(IntSerializer.INSTANCE, StringSerializer.INSTANCE, triggerable);
+		return service;
+	}
+
+	private static Map<Integer, byte[]> snapshot(KeyGroupedInternalTimerService<Integer, String> timerService) throws Exception {
+		Map<Integer, byte[]> snapshot = new HashMap<>();
+		for (Integer keyGroupIndex : KEY_GROUP_RANGE) {
+			try (ByteArrayOutputStream outStream = new ByteArrayOutputStream()) {
+				InternalTimersSnapshotReaderWriters
+					.getWriterForVersion(InternalTimerServiceSerializationProxy.VERSION, timerService.snapshotTimersForKeyGroup(keyGroupIndex))
+					.writeTimersSnapshot(new DataOutputViewStreamWrapper(outStream));
+
+				snapshot.put(keyGroupIndex, outStream.toByteArray());
+			}
+		}
+		return snapshot;
+	}
+
+	private static KeyGroupedInternalTimerService<Integer, String> restore(
+			Map<Integer, byte[]> snapshot,
+			KeyGroupedInternalTimerService<Integer, String> service,
+			Triggerable<Integer, String> triggerable) throws Exception {
+
+		for (Map.Entry<Integer, byte[]> entry : snapshot.entrySet()) {
+			try (ByteArrayInputStream inputStream = new ByteArrayInputStream(entry.getValue())) {
+				InternalTimersSnapshot<?, ?> restoredTimersSnapshot =
+					InternalTimersSnapshotReaderWriters
+						.getReaderForVersion(InternalTimerServiceSerializationProxy.VERSION, OffHeapInternalTimerServiceTest.class.getClassLoader())
+						.readTimersSnapshot(new DataInputViewStreamWrapper(inputStream));
+
+				service.restoreTimersForKeyGroup(restoredTimersSnapshot, entry.getKey());
+			}
+		}
+
+		service.startTimerService(IntSerializer.INSTANCE, StringSerializer.INSTANCE, triggerable);
+		return service;
+	}
+
+	private static class TestKeyContext implements KeyContext {
+
+		private Object key;
+
+		@Override
+		public void setCurrentKey(Object key) {
+			this.key = key;
+		}
+
+		@Override
+		public Object getCurrentKey() {
+			return key;
+		}
+	}
+}
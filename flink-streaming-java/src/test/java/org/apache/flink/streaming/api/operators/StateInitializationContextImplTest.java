@@ -35,6 +35,7 @@ import org.apache.flink.runtime.checkpoint.TaskStateSnapshot;
 import org.apache.flink.runtime.executiongraph.ExecutionAttemptID;
 import org.apache.flink.runtime.jobgraph.OperatorID;
 import org.apache.flink.runtime.operators.testutils.DummyEnvironment;
+import org.apache.flink.runtime.state.AbstractInternalStateBackend;
 import org.apache.flink.runtime.state.DefaultOperatorStateBackend;
 import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
@@ -175,7 +176,7 @@ public class StateInitializationContextImplTest {
 
 			@Override
 			protected <K> InternalTimeServiceManager<?, K> internalTimeServiceManager(
-				KeyContextImpl<K> keyContextImpl, KeyContext keyContext, Iterable<KeyGroupStatePartitionStreamProvider> rawKeyedStates) throws Exception {
+				AbstractInternalStateBackend internalStateBackend, KeyContextImpl<K> keyContextImpl, KeyContext keyContext, Iterable<KeyGroupStatePartitionStreamProvider> rawKeyedStates) throws Exception {
 
 				// We do not initialize a timer service manager here, because it would already consume the raw keyed
 				// state as part of initialization. For the purpose of this test, we want an unconsumed raw keyed
@@ -283,7 +283,7 @@ public class StreamTaskStateInitializerImplTest {
 				processingTimeService) {
 				@Override
 				protected <K> InternalTimeServiceManager<?, K> internalTimeServiceManager(
-					KeyContextImpl<K> keyContextImpl, KeyContext keyContext, Iterable<KeyGroupStatePartitionStreamProvider> rawKeyedStates) throws Exception {
+					AbstractInternalStateBackend internalStateBackend, KeyContextImpl<K> keyContextImpl, KeyContext keyContext, Iterable<KeyGroupStatePartitionStreamProvider> rawKeyedStates) throws Exception {
 					return null;
 				}
 			};
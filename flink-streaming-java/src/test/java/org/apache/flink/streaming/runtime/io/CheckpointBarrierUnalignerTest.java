@@ -0,0 +1,467 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.api.common.typeutils.base.array.BytePrimitiveArraySerializer;
+import org.apache.flink.core.fs.FSDataInputStream;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.core.testutils.CheckedThread;
+import org.apache.flink.core.testutils.OneShotLatch;
+import org.apache.flink.runtime.checkpoint.CheckpointMetaData;
+import org.apache.flink.runtime.checkpoint.CheckpointMetrics;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.io.network.api.CancelCheckpointMarker;
+import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
+import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.FreeingBufferRecycler;
+import org.apache.flink.runtime.io.network.buffer.NetworkBuffer;
+import org.apache.flink.runtime.io.network.partition.consumer.BufferOrEvent;
+import org.apache.flink.runtime.jobgraph.tasks.AbstractInvokable;
+import org.apache.flink.runtime.operators.testutils.DummyEnvironment;
+import org.apache.flink.runtime.state.CheckpointStreamFactory;
+import org.apache.flink.runtime.state.CheckpointedStateScope;
+import org.apache.flink.runtime.state.OperatorStateHandle;
+import org.apache.flink.runtime.state.SnapshotResult;
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.memory.MemCheckpointStreamFactory;
+
+import org.junit.Test;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RunnableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the {@link CheckpointBarrierUnaligner}.
+ */
+public class CheckpointBarrierUnalignerTest {
+
+	private static final int PAGE_SIZE = 512;
+
+	private static final int MAX_PENDING_CHECKPOINTS = 2;
+
+	@Test
+	public void testTriggersOnFirstBarrierWithoutBlocking() throws Exception {
+		BufferOrEvent[] sequence = {
+			createBuffer(0, 1), createBarrier(1, 0),
+			createBuffer(0, 2), createBuffer(1, 3), createBuffer(2, 4),
+			createBarrier(1, 2), createBuffer(1, 5), createBarrier(1, 1),
+			createBuffer(0, 6)
+		};
+
+		MockInputGate gate = new MockInputGate(PAGE_SIZE, 3, Arrays.asList(sequence));
+		CheckpointBarrierUnaligner unaligner = new CheckpointBarrierUnaligner(gate, 0, 1, MAX_PENDING_CHECKPOINTS);
+		SnapshottingInvokable invokable = new SnapshottingInvokable(unaligner);
+		unaligner.registerCheckpointEventHandler(invokable);
+
+		// all buffers are returned in the order of arrival, no channel is blocked
+		for (BufferOrEvent boe : sequence) {
+			if (boe.isBuffer()) {
+				assertEquals(boe, unaligner.getNextNonBlocked());
+				if (boe.getBuffer().getMemorySegment().get(0) == 2) {
+					assertEquals(Collections.singletonList(1L), invokable.triggeredCheckpoints);
+				}
+			}
+		}
+		assertNull(unaligner.getNextNonBlocked());
+
+		// the buffers before the barriers of channels 1 and 2 are in-flight data
+		List<byte[]> elements = readElements(invokable.snapshots.get(1L));
+		assertEquals(3, elements.size());
+		assertEquals(1, getChannelIndex(elements.get(0)));
+		assertEquals(3, elements.get(0)[CheckpointBarrierUnaligner.HEADER_SIZE]);
+		assertEquals(2, getChannelIndex(elements.get(1)));
+		assertEquals(4, elements.get(1)[CheckpointBarrierUnaligner.HEADER_SIZE]);
+		assertEquals(1, getChannelIndex(elements.get(2)));
+		assertEquals(5, elements.get(2)[CheckpointBarrierUnaligner.HEADER_SIZE]);
+
+		assertEquals(0L, unaligner.getAlignmentDurationNanos());
+		assertEquals(2L * 3, unaligner.getAlignmentBytesInMemory());
+	}
+
+	@Test
+	public void testConcurrentCheckpoints() throws Exception {
+		BufferOrEvent[] sequence = {
+			createBarrier(1, 0), createBuffer(1, 1),
+			createBarrier(2, 0), createBuffer(1, 2),
+			createBarrier(1, 1), createBuffer(1, 3),
+			createBarrier(2, 1)
+		};
+
+		MockInputGate gate = new MockInputGate(PAGE_SIZE, 2, Arrays.asList(sequence));
+		CheckpointBarrierUnaligner unaligner = new CheckpointBarrierUnaligner(gate, 0, 1, MAX_PENDING_CHECKPOINTS);
+		SnapshottingInvokable invokable = new SnapshottingInvokable(unaligner);
+		unaligner.registerCheckpointEventHandler(invokable);
+
+		while (unaligner.getNextNonBlocked() != null) {
+			// consume all buffers
+		}
+
+		assertEquals(Arrays.asList(1L, 2L), invokable.triggeredCheckpoints);
+		assertEquals(2, readElements(invokable.snapshots.get(1L)).size());
+		assertEquals(2, readElements(invokable.snapshots.get(2L)).size());
+	}
+
+	@Test
+	public void testSubsumesCheckpointsAboveMaxPendingCheckpoints() throws Exception {
+		BufferOrEvent[] sequence = {
+			createBarrier(1, 0), createBuffer(1, 1),
+			createBarrier(2, 0), createBuffer(1, 2),
+			createBarrier(3, 0), createBuffer(1, 3),
+			createBarrier(1, 1), createBarrier(2, 1), createBarrier(3, 1)
+		};
+
+		MockInputGate gate = new MockInputGate(PAGE_SIZE, 2, Arrays.asList(sequence));
+		CheckpointBarrierUnaligner unaligner = new CheckpointBarrierUnaligner(gate, 0, 1, MAX_PENDING_CHECKPOINTS);
+		SnapshottingInvokable invokable = new SnapshottingInvokable(unaligner);
+		unaligner.registerCheckpointEventHandler(invokable);
+
+		while (unaligner.getNextNonBlocked() != null) {
+			// consume all buffers
+		}
+
+		// the first checkpoint is declined once the third one is pending
+		assertEquals(Arrays.asList(1L, 2L, 3L), invokable.triggeredCheckpoints);
+		assertEquals(Collections.singletonList(1L), invokable.abortedCheckpoints);
+		assertEquals(2, readElements(invokable.snapshots.get(2L)).size());
+		assertEquals(1, readElements(invokable.snapshots.get(3L)).size());
+	}
+
+	/**
+	 * Tests that the task waits for the writer of the in-flight data once the queue of the pending
+	 * checkpoint is full.
+	 */
+	@Test
+	public void testWriterBackpressuresTask() throws Exception {
+		BufferOrEvent[] sequence = {
+			createBarrier(1, 0), createBuffer(1, 1), createBuffer(1, 2), createBuffer(1, 3), createBarrier(1, 1)
+		};
+
+		// the queue is full with a single element
+		MockInputGate gate = new MockInputGate(PAGE_SIZE, 2, Arrays.asList(sequence));
+		CheckpointBarrierUnaligner unaligner = new CheckpointBarrierUnaligner(
+			gate, 0, 1, MAX_PENDING_CHECKPOINTS, CheckpointBarrierUnaligner.HEADER_SIZE + 2);
+		BlockingStreamFactory streamFactory = new BlockingStreamFactory();
+		SnapshottingInvokable invokable = new SnapshottingInvokable(unaligner, streamFactory);
+		unaligner.registerCheckpointEventHandler(invokable);
+
+		// the task does not wait as long as the writer has not started
+		assertEquals(sequence[1], unaligner.getNextNonBlocked());
+
+		// the writer takes the first element and blocks on writing it
+		RunnableFuture<SnapshotResult<OperatorStateHandle>> snapshot = invokable.snapshots.get(1L);
+		CheckedThread writer = new CheckedThread() {
+			@Override
+			public void go() {
+				snapshot.run();
+			}
+		};
+		writer.start();
+		streamFactory.writeStarted.await();
+
+		assertEquals(sequence[2], unaligner.getNextNonBlocked());
+
+		// the third element does not fit into the queue
+		CheckedThread consumer = new CheckedThread() {
+			@Override
+			public void go() throws Exception {
+				assertEquals(sequence[3], unaligner.getNextNonBlocked());
+				assertNull(unaligner.getNextNonBlocked());
+			}
+		};
+		consumer.start();
+		while (consumer.getState() != Thread.State.WAITING) {
+			Thread.sleep(1L);
+		}
+
+		streamFactory.writeLatch.trigger();
+		consumer.sync();
+		writer.sync();
+
+		assertEquals(3, readElements(snapshot).size());
+	}
+
+	@Test
+	public void testEndOfPartitionCompletesCheckpoint() throws Exception {
+		BufferOrEvent[] sequence = {
+			createBarrier(1, 0), createBuffer(1, 1),
+			new BufferOrEvent(EndOfPartitionEvent.INSTANCE, 1),
+			createBarrier(2, 0)
+		};
+
+		MockInputGate gate = new MockInputGate(PAGE_SIZE, 2, Arrays.asList(sequence));
+		CheckpointBarrierUnaligner unaligner = new CheckpointBarrierUnaligner(gate, 0, 1, MAX_PENDING_CHECKPOINTS);
+		SnapshottingInvokable invokable = new SnapshottingInvokable(unaligner);
+		unaligner.registerCheckpointEventHandler(invokable);
+
+		assertEquals(sequence[1], unaligner.getNextNonBlocked());
+		assertEquals(sequence[2], unaligner.getNextNonBlocked());
+		assertNull(unaligner.getNextNonBlocked());
+
+		assertEquals(Arrays.asList(1L, 2L), invokable.triggeredCheckpoints);
+		assertEquals(1, readElements(invokable.snapshots.get(1L)).size());
+		assertNull(readElements(invokable.snapshots.get(2L)));
+	}
+
+	@Test
+	public void testCancellationBarrierDeclinesCheckpoint() throws Exception {
+		BufferOrEvent[] sequence = {
+			createBarrier(1, 0), createBuffer(1, 1),
+			createCancellationBarrier(1, 1),
+			createCancellationBarrier(2, 0), createBarrier(2, 1),
+			createBarrier(3, 1), createBarrier(3, 0)
+		};
+
+		MockInputGate gate = new MockInputGate(PAGE_SIZE, 2, Arrays.asList(sequence));
+		CheckpointBarrierUnaligner unaligner = new CheckpointBarrierUnaligner(gate, 0, 1, MAX_PENDING_CHECKPOINTS);
+		SnapshottingInvokable invokable = new SnapshottingInvokable(unaligner);
+		unaligner.registerCheckpointEventHandler(invokable);
+
+		assertEquals(sequence[1], unaligner.getNextNonBlocked());
+		assertNull(unaligner.getNextNonBlocked());
+
+		assertEquals(Arrays.asList(1L, 3L), invokable.triggeredCheckpoints);
+		assertEquals(Arrays.asList(1L, 2L), invokable.abortedCheckpoints);
+		assertNull(readElements(invokable.snapshots.get(3L)));
+	}
+
+	@Test
+	public void testRestoreReplaysInFlightData() throws Exception {
+		BufferOrEvent[] sequence = {
+			createBarrier(1, 0), createBuffer(1, 1), createBuffer(0, 2), createBuffer(1, 3), createBarrier(1, 1)
+		};
+
+		MockInputGate gate = new MockInputGate(PAGE_SIZE, 2, Arrays.asList(sequence));
+		CheckpointBarrierUnaligner unaligner = new CheckpointBarrierUnaligner(gate, 1, 2, MAX_PENDING_CHECKPOINTS);
+		SnapshottingInvokable invokable = new SnapshottingInvokable(unaligner);
+		unaligner.registerCheckpointEventHandler(invokable);
+
+		while (unaligner.getNextNonBlocked() != null) {
+			// consume all buffers
+		}
+		List<byte[]> elements = readElements(invokable.snapshots.get(1L));
+
+		BufferOrEvent[] newSequence = { createBuffer(0, 4) };
+		CheckpointBarrierUnaligner restored = new CheckpointBarrierUnaligner(
+			new MockInputGate(PAGE_SIZE, 2, Arrays.asList(newSequence)), 1, 2, MAX_PENDING_CHECKPOINTS);
+		restored.restoreInFlightData(elements);
+		assertFalse(restored.isEmpty());
+
+		// the restored data is replayed before the data from the network
+		assertBuffer(1, 1, restored.getNextNonBlocked());
+		assertBuffer(1, 3, restored.getNextNonBlocked());
+		assertTrue(restored.isEmpty());
+		assertEquals(newSequence[0], restored.getNextNonBlocked());
+		assertNull(restored.getNextNonBlocked());
+
+		// the in-flight data can only be restored with unchanged parallelism
+		CheckpointBarrierUnaligner rescaled = new CheckpointBarrierUnaligner(
+			new MockInputGate(PAGE_SIZE, 2, Collections.emptyList()), 1, 3, MAX_PENDING_CHECKPOINTS);
+		try {
+			rescaled.restoreInFlightData(elements);
+			fail("Expected an IllegalStateException");
+		} catch (IllegalStateException expected) {
+			// expected
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//  Utils
+	// ------------------------------------------------------------------------
+
+	private static BufferOrEvent createBarrier(long id, int channel) {
+		return new BufferOrEvent(new CheckpointBarrier(id, System.currentTimeMillis(), CheckpointOptions.forCheckpointWithDefaultLocation()), channel);
+	}
+
+	private static BufferOrEvent createCancellationBarrier(long id, int channel) {
+		return new BufferOrEvent(new CancelCheckpointMarker(id), channel);
+	}
+
+	private static BufferOrEvent createBuffer(int channel, int value) {
+		Buffer buffer = new NetworkBuffer(MemorySegmentFactory.wrap(new byte[]{(byte) value, 0}), FreeingBufferRecycler.INSTANCE);
+		buffer.setSize(2);
+		return new BufferOrEvent(buffer, channel);
+	}
+
+	private static void assertBuffer(int channel, int value, BufferOrEvent boe) {
+		assertNotNull(boe);
+		assertTrue(boe.isBuffer());
+		assertEquals(channel, boe.getChannelIndex());
+		assertEquals(2, boe.getBuffer().getSize());
+		assertEquals(value, boe.getBuffer().getMemorySegment().get(0));
+	}
+
+	private static int getChannelIndex(byte[] element) {
+		return element[CheckpointBarrierUnaligner.HEADER_SIZE - 1];
+	}
+
+	private static List<byte[]> readElements(RunnableFuture<SnapshotResult<OperatorStateHandle>> future) throws Exception {
+		assertNotNull(future);
+		future.run();
+
+		OperatorStateHandle handle = future.get().getJobManagerOwnedSnapshot();
+		if (handle == null) {
+			return null;
+		}
+
+		OperatorStateHandle.StateMetaInfo metaInfo =
+			handle.getStateNameToPartitionOffsets().get(CheckpointBarrierUnaligner.IN_FLIGHT_DATA_STATE_NAME);
+		assertEquals(OperatorStateHandle.Mode.SPLIT_DISTRIBUTE, metaInfo.getDistributionMode());
+
+		List<byte[]> elements = new ArrayList<>();
+		try (FSDataInputStream in = handle.openInputStream()) {
+			DataInputViewStreamWrapper div = new DataInputViewStreamWrapper(in);
+			for (long offset : metaInfo.getOffsets()) {
+				in.seek(offset);
+				byte[] element = BytePrimitiveArraySerializer.INSTANCE.deserialize(div);
+				elements.add(element);
+			}
+		}
+		return elements;
+	}
+
+	/**
+	 * Requests the snapshot of the in-flight data when a checkpoint is triggered, as the stream task does.
+	 */
+	private static class SnapshottingInvokable extends AbstractInvokable {
+
+		private final CheckpointBarrierUnaligner unaligner;
+
+		private final List<Long> triggeredCheckpoints = new ArrayList<>();
+
+		private final List<Long> abortedCheckpoints = new ArrayList<>();
+
+		private final Map<Long, RunnableFuture<SnapshotResult<OperatorStateHandle>>> snapshots = new HashMap<>();
+
+		private final CheckpointStreamFactory streamFactory;
+
+		SnapshottingInvokable(CheckpointBarrierUnaligner unaligner) {
+			this(unaligner, new MemCheckpointStreamFactory(1024 * 1024));
+		}
+
+		SnapshottingInvokable(CheckpointBarrierUnaligner unaligner, CheckpointStreamFactory streamFactory) {
+			super(new DummyEnvironment("test", 1, 0));
+			this.unaligner = unaligner;
+			this.streamFactory = streamFactory;
+		}
+
+		@Override
+		public void invoke() {
+			throw new UnsupportedOperationException("should never be called");
+		}
+
+		@Override
+		public boolean triggerCheckpoint(CheckpointMetaData checkpointMetaData, CheckpointOptions checkpointOptions) {
+			throw new UnsupportedOperationException("should never be called");
+		}
+
+		@Override
+		public void triggerCheckpointOnBarrier(CheckpointMetaData checkpointMetaData, CheckpointOptions checkpointOptions, CheckpointMetrics checkpointMetrics) {
+			long checkpointId = checkpointMetaData.getCheckpointId();
+			triggeredCheckpoints.add(checkpointId);
+			snapshots.put(checkpointId, unaligner.snapshotInFlightData(checkpointId, streamFactory));
+		}
+
+		@Override
+		public void abortCheckpointOnBarrier(long checkpointId, Throwable cause) {
+			abortedCheckpoints.add(checkpointId);
+		}
+
+		@Override
+		public void notifyCheckpointComplete(long checkpointId) {
+			throw new UnsupportedOperationException("should never be called");
+		}
+	}
+
+	/**
+	 * Creates streams whose writes block until the write latch is triggered.
+	 */
+	private static class BlockingStreamFactory implements CheckpointStreamFactory {
+
+		private final MemCheckpointStreamFactory delegate = new MemCheckpointStreamFactory(1024 * 1024);
+
+		private final OneShotLatch writeStarted = new OneShotLatch();
+
+		private final OneShotLatch writeLatch = new OneShotLatch();
+
+		@Override
+		public CheckpointStateOutputStream createCheckpointStateOutputStream(
+				long checkpointId,
+				CheckpointedStateScope scope) throws IOException {
+
+			CheckpointStateOutputStream out = delegate.createCheckpointStateOutputStream(checkpointId, scope);
+			return new CheckpointStateOutputStream() {
+
+				@Override
+				public void write(int b) throws IOException {
+					writeStarted.trigger();
+					try {
+						writeLatch.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IOException(e);
+					}
+					out.write(b);
+				}
+
+				@Override
+				public long getPos() throws IOException {
+					return out.getPos();
+				}
+
+				@Override
+				public void flush() throws IOException {
+					out.flush();
+				}
+
+				@Override
+				public void sync() throws IOException {
+					out.sync();
+				}
+
+				@Nullable
+				@Override
+				public StreamStateHandle closeAndGetHandle() throws IOException {
+					return out.closeAndGetHandle();
+				}
+
+				@Override
+				public void close() throws IOException {
+					out.close();
+				}
+			};
+		}
+	}
+}
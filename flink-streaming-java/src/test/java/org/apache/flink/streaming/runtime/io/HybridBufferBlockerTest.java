@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.io.disk.iomanager.IOManagerAsync;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.partition.consumer.BufferOrEvent;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link HybridBufferBlocker}.
+ */
+public class HybridBufferBlockerTest extends BufferBlockerTestBase {
+
+	/** The memory budget, which lets the randomized sequences of the base tests overflow to disk. */
+	private static final long MEMORY_BUDGET = 64 * PAGE_SIZE;
+
+	private static IOManager ioManager;
+
+	private HybridBufferBlocker bufferBlocker;
+
+	// ------------------------------------------------------------------------
+	//  Setup / Cleanup
+	// ------------------------------------------------------------------------
+
+	@BeforeClass
+	public static void setupIOManager() {
+		ioManager = new IOManagerAsync();
+	}
+
+	@AfterClass
+	public static void shutdownIOManager() {
+		ioManager.shutdown();
+	}
+
+	@Before
+	public void createBlocker() {
+		bufferBlocker = new HybridBufferBlocker(ioManager, PAGE_SIZE, MEMORY_BUDGET);
+	}
+
+	@After
+	public void cleanupBlocker() throws IOException {
+		if (bufferBlocker != null) {
+			bufferBlocker.close();
+		}
+
+		checkNoTempFilesRemain();
+	}
+
+	@Override
+	public BufferBlocker createBufferBlocker() {
+		return bufferBlocker;
+	}
+
+	/**
+	 * Tests that the buffers within the memory budget are cached, while the following ones are
+	 * spilled and recycled right away, and that the sequence keeps the order of the buffers.
+	 */
+	@Test
+	public void testOverflowToDisk() throws Exception {
+		final int numCached = (int) (MEMORY_BUDGET / PAGE_SIZE);
+		final int numSpilled = 10;
+		final int size = 13;
+
+		BufferOrEvent[] added = new BufferOrEvent[numCached + numSpilled];
+		for (int i = 0; i < added.length; i++) {
+			added[i] = generateRandomBuffer(size, i);
+			bufferBlocker.add(added[i]);
+		}
+
+		for (int i = 0; i < added.length; i++) {
+			assertEquals(i >= numCached, added[i].getBuffer().isRecycled());
+		}
+		assertEquals(numSpilled * (HybridBufferBlocker.HEADER_SIZE + size), bufferBlocker.getBytesSpilled());
+		assertEquals(MEMORY_BUDGET + bufferBlocker.getBytesSpilled(), bufferBlocker.getBytesBlocked());
+
+		BufferOrEventSequence sequence = bufferBlocker.rollOverReusingResources();
+		assertNotNull(sequence);
+		assertEquals(0L, bufferBlocker.getBytesBlocked());
+		assertEquals(0L, bufferBlocker.getBytesSpilled());
+
+		sequence.open();
+		for (int i = 0; i < added.length; i++) {
+			BufferOrEvent next = sequence.getNext();
+			assertNotNull(next);
+			assertEquals(i, next.getChannelIndex());
+
+			Buffer buffer = next.getBuffer();
+			assertEquals(size, buffer.getSize());
+			for (int k = 0; k < size; k++) {
+				assertEquals((byte) k, buffer.getMemorySegment().get(k));
+			}
+			buffer.recycleBuffer();
+		}
+		assertNull(sequence.getNext());
+		sequence.cleanup();
+	}
+
+	/**
+	 * Tests that a zero memory budget spills all the buffers and events.
+	 */
+	@Test
+	public void testZeroMemoryBudget() throws Exception {
+		HybridBufferBlocker spillingBlocker = new HybridBufferBlocker(ioManager, PAGE_SIZE, 0L);
+		try {
+			BufferOrEvent boe = generateRandomBuffer(PAGE_SIZE, 0);
+			spillingBlocker.add(boe);
+
+			assertTrue(boe.getBuffer().isRecycled());
+			assertEquals(spillingBlocker.getBytesBlocked(), spillingBlocker.getBytesSpilled());
+		} finally {
+			spillingBlocker.close();
+		}
+	}
+
+	/**
+	 * Tests that closing the blocker deletes the file of the sequence which is still being spilled.
+	 */
+	@Test
+	public void testCloseWhileSpilling() throws Exception {
+		for (int i = 0; i < 2 * MEMORY_BUDGET / PAGE_SIZE; i++) {
+			bufferBlocker.add(generateRandomBuffer(PAGE_SIZE, 0));
+		}
+		assertTrue(bufferBlocker.getBytesSpilled() > 0);
+
+		bufferBlocker.close();
+		checkNoTempFilesRemain();
+	}
+
+	private static void checkNoTempFilesRemain() {
+		// validate that all temp files have been removed
+		for (File dir : ioManager.getSpillingDirectories()) {
+			for (String file : dir.list()) {
+				if (file != null && !(file.equals(".") || file.equals(".."))) {
+					fail("buffer blocker did not clean up temp files. remaining file: " + file);
+				}
+			}
+		}
+	}
+}
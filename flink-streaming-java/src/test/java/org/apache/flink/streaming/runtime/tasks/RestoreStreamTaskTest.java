@@ -23,6 +23,8 @@ import org.apache.flink.api.common.state.ListStateDescriptor;
 import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
 import org.apache.flink.api.common.typeutils.base.LongSerializer;
 import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.configuration.TaskManagerOptions;
 import org.apache.flink.core.testutils.OneShotLatch;
 import org.apache.flink.runtime.checkpoint.CheckpointMetaData;
 import org.apache.flink.runtime.checkpoint.CheckpointOptions;
@@ -30,12 +32,14 @@ import org.apache.flink.runtime.checkpoint.JobManagerTaskRestore;
 import org.apache.flink.runtime.checkpoint.OperatorSubtaskState;
 import org.apache.flink.runtime.checkpoint.StateAssignmentOperation;
 import org.apache.flink.runtime.checkpoint.TaskStateSnapshot;
+import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
 import org.apache.flink.runtime.jobgraph.OperatorID;
 import org.apache.flink.runtime.jobgraph.OperatorInstanceID;
 import org.apache.flink.runtime.operators.testutils.MockInputSplitProvider;
 import org.apache.flink.runtime.state.StateInitializationContext;
 import org.apache.flink.runtime.state.StateSnapshotContext;
 import org.apache.flink.runtime.state.TestTaskStateManager;
+import org.apache.flink.streaming.api.CheckpointingMode;
 import org.apache.flink.streaming.api.operators.AbstractStreamOperator;
 import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
@@ -206,6 +210,86 @@ public class RestoreStreamTaskTest extends TestLogger {
 		assertEquals(new HashSet<>(Arrays.asList(headOperatorID, tailOperatorID)), RESTORED_OPERATORS);
 	}
 
+	/**
+	 * Tests that the in-flight data of a checkpoint taken without barrier alignment is replayed
+	 * before the data from the network when the task is restored.
+	 */
+	@Test
+	public void testRestoreInFlightData() throws Exception {
+		OperatorID headOperatorID = new OperatorID(42L, 42L);
+
+		OneInputStreamTaskTestHarness<String, String> testHarness = createUnalignedTaskTestHarness(headOperatorID);
+		testHarness.invoke(createUnalignedEnvironment(testHarness));
+		testHarness.waitForTaskRunning();
+		testHarness.taskStateManager.setWaitForReportLatch(new OneShotLatch());
+
+		testHarness.processElement(new StreamRecord<>("before checkpoint"), 0, 1);
+		testHarness.waitForInputProcessing();
+		testHarness.processEvent(new CheckpointBarrier(1L, 1L, CheckpointOptions.forCheckpointWithDefaultLocation()), 0, 0);
+		testHarness.waitForInputProcessing();
+
+		// the record arrives after the barrier of the other channel, but before the barrier of its own channel
+		testHarness.processElement(new StreamRecord<>("in-flight"), 0, 1);
+		testHarness.waitForInputProcessing();
+		testHarness.processEvent(new CheckpointBarrier(1L, 1L, CheckpointOptions.forCheckpointWithDefaultLocation()), 0, 1);
+
+		testHarness.taskStateManager.getWaitForReportLatch().await();
+		assertEquals(1L, testHarness.taskStateManager.getReportedCheckpointId());
+		TaskStateSnapshot taskStateSnapshot = testHarness.taskStateManager.getLastJobManagerTaskStateSnapshot();
+
+		testHarness.endInput();
+		testHarness.waitForTaskCompletion();
+
+		OneInputStreamTaskTestHarness<String, String> restoredTestHarness = createUnalignedTaskTestHarness(headOperatorID);
+		restoredTestHarness.setTaskStateSnapshot(1L, taskStateSnapshot);
+		restoredTestHarness.invoke(createUnalignedEnvironment(restoredTestHarness));
+		restoredTestHarness.waitForTaskRunning();
+
+		restoredTestHarness.processElement(new StreamRecord<>("after restore"), 0, 0);
+		restoredTestHarness.waitForInputProcessing();
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new StreamRecord<>("in-flight"));
+		expectedOutput.add(new StreamRecord<>("after restore"));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, restoredTestHarness.getOutput());
+		assertEquals(Collections.singleton(headOperatorID), RESTORED_OPERATORS);
+
+		restoredTestHarness.endInput();
+		restoredTestHarness.waitForTaskCompletion();
+	}
+
+	private OneInputStreamTaskTestHarness<String, String> createUnalignedTaskTestHarness(OperatorID headOperatorID) {
+		OneInputStreamTaskTestHarness<String, String> testHarness =
+			new OneInputStreamTaskTestHarness<>(
+				OneInputStreamTask::new,
+				1, 2,
+				BasicTypeInfo.STRING_TYPE_INFO,
+				BasicTypeInfo.STRING_TYPE_INFO);
+
+		testHarness.setupOperatorChain(headOperatorID, new StatelessOperator()).finish();
+		testHarness.getStreamConfig().setCheckpointingEnabled(true);
+		testHarness.getStreamConfig().setCheckpointMode(CheckpointingMode.EXACTLY_ONCE);
+
+		return testHarness;
+	}
+
+	private StreamMockEnvironment createUnalignedEnvironment(OneInputStreamTaskTestHarness<String, String> testHarness) {
+		StreamMockEnvironment environment = new StreamMockEnvironment(
+			testHarness.jobConfig,
+			testHarness.taskConfig,
+			testHarness.executionConfig,
+			testHarness.memorySize,
+			new MockInputSplitProvider(),
+			testHarness.bufferSize,
+			testHarness.taskStateManager);
+
+		Configuration taskManagerConfiguration = new Configuration();
+		taskManagerConfiguration.setBoolean(TaskManagerOptions.TASK_CHECKPOINT_UNALIGNED, true);
+		environment.setTaskManagerConfiguration(taskManagerConfiguration);
+
+		return environment;
+	}
+
 	private JobManagerTaskRestore createRunAndCheckpointOperatorChain(
 		OperatorID headId,
 		OneInputStreamOperator<String, String> headOperator,
@@ -52,6 +52,7 @@ import org.apache.flink.runtime.taskmanager.TaskManagerRuntimeInfo;
 import org.apache.flink.runtime.util.TestingTaskManagerRuntimeInfo;
 import org.apache.flink.util.Preconditions;
 
+import java.io.File;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -103,6 +104,8 @@ public class StreamMockEnvironment implements Environment {
 
 	private TaskEventDispatcher taskEventDispatcher = mock(TaskEventDispatcher.class);
 
+	private Configuration taskManagerConfiguration = new Configuration();
+
 	public StreamMockEnvironment(
 		Configuration jobConfig,
 		Configuration taskConfig,
@@ -324,9 +327,13 @@ public class StreamMockEnvironment implements Environment {
 		return wasFailedExternally;
 	}
 
+	public void setTaskManagerConfiguration(Configuration taskManagerConfiguration) {
+		this.taskManagerConfiguration = taskManagerConfiguration;
+	}
+
 	@Override
 	public TaskManagerRuntimeInfo getTaskManagerInfo() {
-		return new TestingTaskManagerRuntimeInfo();
+		return new TestingTaskManagerRuntimeInfo(taskManagerConfiguration, System.getProperty("java.io.tmpdir").split(",|" + File.pathSeparator));
 	}
 
 	@Override